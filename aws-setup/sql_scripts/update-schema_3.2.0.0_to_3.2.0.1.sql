@@ -0,0 +1,11 @@
+ALTER TABLE `hdfs_directory_with_quota_feature` ADD COLUMN `directory_count` bigint(20) NOT NULL DEFAULT '-1';
+
+ALTER TABLE `hdfs_directory_with_quota_feature` ADD COLUMN `symlink_count` bigint(20) NOT NULL DEFAULT '-1';
+
+ALTER TABLE `hdfs_directory_with_quota_feature` ADD COLUMN `length` bigint(20) NOT NULL DEFAULT '-1';
+
+ALTER TABLE `hdfs_quota_update` ADD COLUMN `directory_delta` bigint(20) NOT NULL DEFAULT '0';
+
+ALTER TABLE `hdfs_quota_update` ADD COLUMN `symlink_delta` bigint(20) NOT NULL DEFAULT '0';
+
+ALTER TABLE `hdfs_quota_update` ADD COLUMN `length_delta` bigint(20) NOT NULL DEFAULT '0';
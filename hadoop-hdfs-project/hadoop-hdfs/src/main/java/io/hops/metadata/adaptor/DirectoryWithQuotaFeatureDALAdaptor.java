@@ -70,7 +70,9 @@ public DirectoryWithQuotaFeature convertHDFStoDAL(
       }
       DirectoryWithQuotaFeature hia = 
           new DirectoryWithQuotaFeature(dir.getInodeId(), dir.getQuota().getNameSpace(), dir.getSpaceConsumed().getNameSpace(),
-              dir.getQuota().getStorageSpace(), dir.getSpaceConsumed().getStorageSpace(), typeQuota, typeUsage);
+              dir.getQuota().getStorageSpace(), dir.getSpaceConsumed().getStorageSpace(), typeQuota, typeUsage,
+              dir.getSpaceConsumed().getDirectoryCount(), dir.getSpaceConsumed().getSymlinkCount(),
+              dir.getSpaceConsumed().getLength());
       return hia;
     } else {
       return null;
@@ -90,7 +92,8 @@ public org.apache.hadoop.hdfs.server.namenode.DirectoryWithQuotaFeature convertD
       org.apache.hadoop.hdfs.server.namenode.DirectoryWithQuotaFeature dir
           = new org.apache.hadoop.hdfs.server.namenode.DirectoryWithQuotaFeature.Builder(hia.getInodeId()).
               nameSpaceQuota(hia.getNsQuota()).storageSpaceQuota(hia.getSSQuota()).spaceUsage(hia.getSSUsed()).nameSpaceUsage(
-              hia.getNsUsed()).typeQuotas(typeQuotas).typeUsages(typeUsage).build();
+              hia.getNsUsed()).typeQuotas(typeQuotas).typeUsages(typeUsage).directoryUsage(
+              hia.getDirectoryCount()).symlinkUsage(hia.getSymlinkCount()).lengthUsage(hia.getLength()).build();
       return dir;
     } else {
       return null;
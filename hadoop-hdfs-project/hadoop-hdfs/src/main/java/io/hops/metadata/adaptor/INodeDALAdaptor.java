@@ -90,6 +90,14 @@ public List<org.apache.hadoop.hdfs.server.namenode.INode> findInodesByParentIdAn
     return list;
   }
 
+  @Override
+  public List<org.apache.hadoop.hdfs.server.namenode.INode> findInodesByParentIdAndPartitionIdPPIS(
+          long parentId, long partitionId, String startAfter, int limit) throws StorageException {
+    // not sorted: the page is in index order, which the next page continues from
+    return (List) convertDALtoHDFS(
+            dataAccess.findInodesByParentIdAndPartitionIdPPIS(parentId, partitionId, startAfter, limit));
+  }
+
   @Override
   public List<ProjectedINode> findInodesPPISTx(
           long parentId, long partitionId, EntityContext.LockMode lock) throws StorageException {
@@ -108,6 +116,24 @@ public List<ProjectedINode> findInodesFTISTx(
     return list;
   }
 
+  @Override
+  public List<ProjectedINode> findInodesPPISTx(
+      long[] parentIds, EntityContext.LockMode lock) throws StorageException {
+    List<ProjectedINode> list =
+        dataAccess.findInodesPPISTx(parentIds, lock);
+    Collections.sort(list);
+    return list;
+  }
+
+  @Override
+  public List<ProjectedINode> findInodesFTISTx(
+      long[] parentIds, EntityContext.LockMode lock) throws StorageException {
+    List<ProjectedINode> list =
+        dataAccess.findInodesFTISTx(parentIds, lock);
+    Collections.sort(list);
+    return list;
+  }
+
   public List<org.apache.hadoop.hdfs.server.namenode.INode> lockInodesUsingPkBatchTx(
           String[] names, long[] parentIds, long[] partitionIds, EntityContext.LockMode lock)
           throws StorageException {
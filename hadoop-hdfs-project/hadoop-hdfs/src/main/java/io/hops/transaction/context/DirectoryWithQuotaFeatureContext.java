@@ -213,7 +213,8 @@ private DirectoryWithQuotaFeature clone(DirectoryWithQuotaFeature src, long inod
     return new DirectoryWithQuotaFeature.Builder(inodeId).nameSpaceQuota(src.getQuota().getNameSpace()).
         nameSpaceUsage(src.getSpaceConsumed().getNameSpace()).storageSpaceQuota(src.getQuota().getStorageSpace()).spaceUsage(
         src.getSpaceConsumed().getStorageSpace()).typeQuotas(src.getQuota().getTypeSpaces()).typeUsages(src.
-        getSpaceConsumed().getTypeSpaces()).build();
+        getSpaceConsumed().getTypeSpaces()).directoryUsage(src.getSpaceConsumed().getDirectoryCount()).
+        symlinkUsage(src.getSpaceConsumed().getSymlinkCount()).lengthUsage(src.getSpaceConsumed().getLength()).build();
   }
 
 }
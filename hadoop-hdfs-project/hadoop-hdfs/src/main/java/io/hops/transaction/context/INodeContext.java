@@ -33,9 +33,7 @@
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.hadoop.hdfs.protocol.HdfsConstantsClient;
 import org.apache.hadoop.hdfs.server.namenode.INode;
-import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
 import org.apache.hadoop.hdfs.server.namenode.ServerlessNameNode;
 import org.apache.hadoop.hdfs.serverless.cache.InMemoryINodeCache;
 
@@ -58,6 +56,9 @@ public class INodeContext extends BaseEntityContext<Long, INode> {
       new HashMap<>();
   private final Map<Long, List<INode>> inodesParentIndex =
       new HashMap<>();
+  // pages of children keyed by parent id, start after name and limit
+  private final Map<String, List<INode>> inodesPageIndex =
+      new HashMap<>();
   private final List<INode> renamedInodes = new ArrayList<>();
 
   public INodeContext(INodeDataAccess dataAccess) {
@@ -130,8 +131,10 @@ private INode checkCache(String localName, long parentId) {
    * already contained locally (i.e., going to NDB is not an option here).
    *
    * @param node The INode to add to the cache.
+   * @param readTime The time at which the read of the INode from NDB was issued. The read lease on the cached INode
+   *                 (if leases are enabled) runs from this time.
    */
-  private void tryUpdateCache(INode node) throws TransactionContextException, StorageException {
+  private void tryUpdateCache(INode node, long readTime) throws TransactionContextException, StorageException {
     if (node == null || !EntityContext.areMetadataCacheWritesEnabled()) {
       return;
     }
@@ -140,7 +143,7 @@ private void tryUpdateCache(INode node) throws TransactionContextException, Stor
     if (metadataCache == null) return;
 
     String fullPathName = node.getFullPathName();
-    metadataCache.put(fullPathName, node.getId(), node);
+    metadataCache.put(fullPathName, node.getId(), node, readTime);
   }
 
   @Override
@@ -148,6 +151,7 @@ public void clear() throws TransactionContextException {
     super.clear();
     inodesNameParentIndex.clear();
     inodesParentIndex.clear();
+    inodesPageIndex.clear();
     renamedInodes.clear();
   }
 
@@ -173,6 +177,8 @@ public Collection<INode> findList(FinderType<INode> finder, Object... params)
         return findByParentIdFTIS(iFinder, params);
       case ByParentIdAndPartitionId:
         return findByParentIdAndPartitionIdPPIS(iFinder,params);
+      case ByParentIdAndPartitionIdPage:
+        return findPageByParentIdAndPartitionIdPPIS(iFinder, params);
       case ByNamesParentIdsAndPartitionIds:
         return findBatch(iFinder, params);
       case ByNamesParentIdsAndPartitionIdsCheckLocal:
@@ -334,13 +340,11 @@ public void prepare(TransactionLocks lks)
       }
     }
     
-    final boolean refreshRootCache = RootINodeCache.isRootInCache() &&
-        (modified.stream().filter(inode -> inode.isRoot()).count() > 0
-        || added.stream().filter(inode -> inode.isRoot()).count() > 0);
-    if(refreshRootCache){
-      LOG.trace("Root Inode has been updated, force RootINodeCache to " +
-          "refresh");
-      RootINodeCache.forceRefresh();
+    // Pinned INodes changed by this transaction are read again by the RootINodeCache once it has committed.
+    if (RootINodeCache.isEnabled()) {
+      invalidatePinnedINodes(removed);
+      invalidatePinnedINodes(added);
+      invalidatePinnedINodes(modified);
     }
     
     dataAccess.prepare(removed, added, modified);
@@ -417,6 +421,7 @@ private INode findByInodeIdFTIS(INode.Finder inodeFinder, Object[] params)
     } else {
       if (LOG.isTraceEnabled()) LOG.trace("Retrieving INode ID=" + inodeId + " from intermediate storage.");
       aboutToAccessStorage(inodeFinder, params);
+      long readTime = System.currentTimeMillis();
       result = dataAccess.findInodeByIdFTIS(inodeId);
       gotFromDB(inodeId, result);
       if (result != null) {
@@ -424,7 +429,7 @@ private INode findByInodeIdFTIS(INode.Finder inodeFinder, Object[] params)
         inodesNameParentIndex.put(result.nameParentKey(), result);
         miss(inodeFinder, result, "id", inodeId, "name", result.getLocalName(), "parent_id", result.getParentId(),
           "partition_id", result.getPartitionId());
-        tryUpdateCache(result);
+        tryUpdateCache(result, readTime);
       } else {
         if (LOG.isTraceEnabled()) LOG.trace("Failed to retrieve INode ID=" + inodeId + " from intermediate storage.");
         miss(inodeFinder, result, "id");
@@ -465,32 +470,43 @@ private INode findByNameParentIdAndPartitionIdPK(INode.Finder inodeFinder, Objec
         //trying to upgrade lock. re-read the row from DB
         aboutToAccessStorage(inodeFinder, params);
 
+        long readTime = System.currentTimeMillis();
         result = dataAccess.findInodeByNameParentIdAndPartitionIdPK(name, parentId, partitionId);
         gotFromDBWithPossibleInodeId(result, possibleInodeId);
         inodesNameParentIndex.put(nameParentKey, result);
         missUpgrade(inodeFinder, result, "name", name, "parent_id", parentId, "partition_id", partitionId);
-        tryUpdateCache(result);
+        tryUpdateCache(result, readTime);
       } else {
         if (LOG.isTraceEnabled()) LOG.trace("Successfully retrieved INode '" + name + "', parentID=" + parentId + " from INode Hint Cache.");
         hit(inodeFinder, result, "name", name, "parent_id", parentId, "partition_id", partitionId);
       }
     } else {
       if (!isNewlyAdded(parentId) && !containsRemoved(parentId, name)) {
-        if (canReadCachedRootINode(name, parentId)) {
-          result = RootINodeCache.getRootINode();
-          LOG.trace("Reading root inode from the RootINodeCache: " + result);
-       } else {
+        // INodes served by the RootINodeCache were not read by this transaction, so we do not know when their read
+        // lease would have started. They are not added to the metadata cache, which they do not need anyway.
+        long readTime = -1;
+        if (canReadPinnedINodes()) {
+          result = RootINodeCache.getPinnedINode(name, parentId);
+        }
+        if (result != null) {
+          if (LOG.isTraceEnabled()) LOG.trace("Reading INode '" + name + "', parentID=" + parentId +
+                  " from the RootINodeCache: " + result);
+        } else {
           if (LOG.isTraceEnabled()) LOG.trace("Cannot resolve INode '" + name + "', parentID=" + parentId +
                   " from either cache. Reading from NDB instead.");
           aboutToAccessStorage(inodeFinder, params);
 
+          readTime = System.currentTimeMillis();
           result = dataAccess.findInodeByNameParentIdAndPartitionIdPK(name, parentId, partitionId);
+          RootINodeCache.resolved(result);
         }
         gotFromDBWithPossibleInodeId(result, possibleInodeId);
         inodesNameParentIndex.put(nameParentKey, result);
         miss(inodeFinder, result, "name", name, "parent_id", parentId, "partition_id", partitionId,
             "possible_inode_id",possibleInodeId);
-        tryUpdateCache(result);
+        if (readTime >= 0) {
+          tryUpdateCache(result, readTime);
+        }
       }
     }
     return result;
@@ -505,8 +521,9 @@ private List<INode> findByParentIdFTIS(INode.Finder inodeFinder, Object[] params
       hit(inodeFinder, result, "parent_id", parentId );
     } else {
       aboutToAccessStorage(inodeFinder, params);
+      long readTime = System.currentTimeMillis();
       result = syncInodeInstances(
-          dataAccess.findInodesByParentIdFTIS(parentId));
+          dataAccess.findInodesByParentIdFTIS(parentId), readTime, 0);
       inodesParentIndex.put(parentId, result);
       miss(inodeFinder, result, "parent_id", parentId);
     }
@@ -523,14 +540,37 @@ private List<INode> findByParentIdAndPartitionIdPPIS(INode.Finder inodeFinder, O
       hit(inodeFinder, result, "parent_id", parentId, "partition_id",partitionId);
     } else {
       aboutToAccessStorage(inodeFinder, params);
+      long readTime = System.currentTimeMillis();
       result = syncInodeInstances(
-              dataAccess.findInodesByParentIdAndPartitionIdPPIS(parentId, partitionId));
+              dataAccess.findInodesByParentIdAndPartitionIdPPIS(parentId, partitionId), readTime, 0);
       inodesParentIndex.put(parentId, result);
       miss(inodeFinder, result, "parent_id", parentId, "partition_id",partitionId);
     }
     return result;
   }
 
+  private List<INode> findPageByParentIdAndPartitionIdPPIS(INode.Finder inodeFinder, Object[] params)
+          throws TransactionContextException, StorageException {
+    final Long parentId = (Long) params[0];
+    final Long partitionId = (Long) params[1];
+    final String startAfter = (String) params[2];
+    final Integer limit = (Integer) params[3];
+    final String pageKey = parentId + "/" + startAfter + "/" + limit;
+    List<INode> result = null;
+    if (inodesPageIndex.containsKey(pageKey)) {
+      result = inodesPageIndex.get(pageKey);
+      hit(inodeFinder, result, "parent_id", parentId, "start_after", startAfter, "limit", limit);
+    } else {
+      aboutToAccessStorage(inodeFinder, params);
+      long readTime = System.currentTimeMillis();
+      result = syncInodeInstances(
+              dataAccess.findInodesByParentIdAndPartitionIdPPIS(parentId, partitionId, startAfter, limit), readTime, 0);
+      inodesPageIndex.put(pageKey, result);
+      miss(inodeFinder, result, "parent_id", parentId, "start_after", startAfter, "limit", limit);
+    }
+    return result;
+  }
+
   private List<INode> findBatch(INode.Finder inodeFinder, Object[] params)
       throws TransactionContextException, StorageException {
     final String[] names = (String[]) params[0];
@@ -605,37 +645,57 @@ private List<INode> findBatchWithLocalCacheCheck(INode.Finder inodeFinder,
 
   private List<INode> findBatch(INode.Finder inodeFinder, String[] names,
                                 long[] parentIds, long[] partitionIds) throws StorageException, TransactionContextException {
-    INode rootINode = null;
-    boolean addCachedRootInode = false;
-    if (canReadCachedRootINode(names[0], parentIds[0])) {
-      rootINode = RootINodeCache.getRootINode();
-      if (rootINode != null) {
-        if(names[0].equals(INodeDirectory.ROOT_NAME) && parentIds[0] == HdfsConstantsClient.GRANDFATHER_INODE_ID){
-          LOG.trace("Reading root inode from the RootINodeCache "+rootINode);
-          //remove root from the batch operation. Cached root inode will be added later to the results
-          names = Arrays.copyOfRange(names, 1, names.length);
-          parentIds = Arrays.copyOfRange(parentIds, 1, parentIds.length);
-          partitionIds = Arrays.copyOfRange(partitionIds, 1, partitionIds.length);
-          addCachedRootInode=true;
+    // The leading components of the batch that are pinned are served by the RootINodeCache.
+    List<INode> pinned = new ArrayList<>();
+    if (canReadPinnedINodes()) {
+      while (pinned.size() < names.length) {
+        INode inode = RootINodeCache.getPinnedINode(names[pinned.size()], parentIds[pinned.size()]);
+        if (inode == null) {
+          break;
         }
+        pinned.add(inode);
       }
     }
 
-    List<INode> batch = dataAccess.getINodesPkBatched(names, parentIds, partitionIds);
-    miss(inodeFinder, batch, "names", Arrays.toString(names), "parent_ids",
-            Arrays.toString(parentIds), "partition_ids", Arrays.toString(partitionIds));
-    if (rootINode != null && addCachedRootInode) {
-      batch.add(0, rootINode);
+    List<INode> batch;
+    long readTime = -1;
+    if (pinned.size() == names.length) {
+      if (LOG.isTraceEnabled()) LOG.trace("Reading INodes " + Arrays.toString(names) + " from the RootINodeCache");
+      batch = pinned;
+    } else {
+      if (!pinned.isEmpty()) {
+        if (LOG.isTraceEnabled()) LOG.trace("Reading INodes " + pinned + " from the RootINodeCache");
+        //remove the pinned inodes from the batch operation. They are added later to the results
+        names = Arrays.copyOfRange(names, pinned.size(), names.length);
+        parentIds = Arrays.copyOfRange(parentIds, pinned.size(), parentIds.length);
+        partitionIds = Arrays.copyOfRange(partitionIds, pinned.size(), partitionIds.length);
+      }
+
+      readTime = System.currentTimeMillis();
+      batch = dataAccess.getINodesPkBatched(names, parentIds, partitionIds);
+      miss(inodeFinder, batch, "names", Arrays.toString(names), "parent_ids",
+              Arrays.toString(parentIds), "partition_ids", Arrays.toString(partitionIds));
+      for (INode inode : batch) {
+        RootINodeCache.resolved(inode);
+      }
+      batch.addAll(0, pinned);
     }
-    return syncInodeInstances(batch);
+    return syncInodeInstances(batch, readTime, pinned.size());
   }
 
-  private List<INode> syncInodeInstances(List<INode> newInodes) throws TransactionContextException, StorageException {
+  /**
+   * @param readTime The time at which the read of {@code newInodes} from NDB was issued.
+   * @param numPinned The number of leading INodes of {@code newInodes} that were served by the RootINodeCache
+   *                  rather than read from NDB. These are not added to the metadata cache.
+   */
+  private List<INode> syncInodeInstances(List<INode> newInodes, long readTime, int numPinned)
+      throws TransactionContextException, StorageException {
     List<INode> finalList = new ArrayList<>(newInodes.size());
 
     if (LOG.isTraceEnabled()) LOG.trace("Retrieved batch of INodes from NDB: " + StringUtils.join(newInodes, ", "));
-    
-    for (INode inode : newInodes) {
+
+    for (int i = 0; i < newInodes.size(); i++) {
+      INode inode = newInodes.get(i);
       if (isRemoved(inode.getId())) {
         continue;
       }
@@ -652,7 +712,9 @@ private List<INode> syncInodeInstances(List<INode> newInodes) throws Transaction
         inodesNameParentIndex.put(key, inode);
       }
 
-      tryUpdateCache(inode);
+      if (i >= numPinned) {
+        tryUpdateCache(inode, readTime);
+      }
     }
     Collections.sort(finalList, INode.Order.ByName);
     return finalList;
@@ -700,14 +762,25 @@ private void gotFromDBWithPossibleInodeId(INode result,
     }
   }
 
-  private boolean canReadCachedRootINode(String name, long parentId) {
-    if (name.equals(INodeDirectory.ROOT_NAME) && parentId == HdfsConstantsClient.GRANDFATHER_INODE_ID) {
-      if (RootINodeCache.isRootInCache() && currentLockMode.get() == LockMode.READ_COMMITTED) {
-        return true;
-      } else {
-        return false;
+  /**
+   * Return true if the given INode is at a level pinned by the {@link RootINodeCache}, in which case any NameNode may
+   * have cached it. The ancestors of the INode are looked up in this context, as the transaction has resolved the
+   * path to every INode that it modifies.
+   */
+  public boolean isPinned(INode inode) {
+    return RootINodeCache.isPinned(inode, this::get);
+  }
+
+  private boolean canReadPinnedINodes() {
+    return RootINodeCache.isEnabled() && currentLockMode.get() == LockMode.READ_COMMITTED;
+  }
+
+  private void invalidatePinnedINodes(Collection<INode> inodes) {
+    for (INode inode : inodes) {
+      if (RootINodeCache.isTracked(inode)) {
+        if (LOG.isTraceEnabled()) LOG.trace("Pinned INode " + inode.getId() + " has been updated, invalidating it.");
+        RootINodeCache.invalidate(inode.getId());
       }
     }
-    return false;
   }
 }
@@ -1,30 +1,86 @@
 package io.hops.transaction.context;
 
-import io.hops.exception.StorageException;
+import com.google.common.annotations.VisibleForTesting;
 import io.hops.metadata.HdfsStorageFactory;
 import io.hops.metadata.hdfs.dal.INodeDataAccess;
 import io.hops.transaction.handler.HDFSOperationType;
 import io.hops.transaction.handler.LightWeightRequestHandler;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.server.namenode.INode;
 import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.LongFunction;
+
 import org.apache.hadoop.hdfs.protocol.HdfsConstantsClient;
 
 /**
+ * Caches the INodes of the top levels of the namespace, i.e., the root and its descendants down to
+ * {@code serverless.pinned-ancestors.levels} levels, as every path resolution goes through them.
+ *
+ * The pinned INodes are not polled. An INode is read once, in the background, after a path resolution first goes
+ * through it, and it is read again once it has been invalidated, either by a local transaction that modifies it (see
+ * {@link INodeContext}) or by an INV of the consistency protocol. The consistency protocol sends the INVs of the
+ * INodes at a pinned level to every deployment, as any NameNode may have pinned them (see
+ * {@link #isPinned(INode, LongFunction)}).
+ *
+ * Clients may disable the consistency protocol for their operations, in which case other NameNodes modify pinned
+ * INodes without sending any INV. A pinned INode therefore also expires {@code serverless.pinned-ancestors.ttl-millis}
+ * after it was read, and is then read again.
+ *
  * Created by salman on 2016-08-21.
  */
 public class RootINodeCache {
 
   protected final static Log LOG = LogFactory.getLog(RootINodeCache.class);
-  private static final int UPDATE_TIMER = 200; //ms
+  private static final int RETRY_TIMER = 200; //ms
   private static RootINodeCacheUpdaterThread rootCacheUpdater;
-  private static INode rootINode = null;
-  private static boolean running = false;
+  private static PinnedINodeReader reader;
+  private static volatile boolean running = false;
+  private static volatile int pinnedLevels = 0;
+  private static volatile long ttlMillis = 0;
   private static RootINodeCache instance;
-  private static final boolean ENABLE_CACHE = true;
+
+  /**
+   * The cached INodes, by {@link INode#nameParentKey(long, String)}.
+   */
+  private static final ConcurrentMap<String, PinnedINode> pinnedINodes = new ConcurrentHashMap<>();
+
+  /**
+   * The INodes known to be at a pinned level, by ID. This also contains the INodes that have been resolved but whose
+   * load is still pending, so that their children can be recognized as pinned too.
+   */
+  private static final ConcurrentMap<Long, PinnedKey> pinnedKeys = new ConcurrentHashMap<>();
+
+  private static final BlockingQueue<PinnedKey> loadQueue = new LinkedBlockingQueue<>();
+  private static final Set<String> pendingLoads = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Guards {@link #epoch} and {@link #generations}, and the updates of the cache that must be ordered with them.
+   */
+  private static final Object lock = new Object();
+
+  /**
+   * Incremented whenever all the pinned INodes are evicted at once.
+   */
+  private static long epoch = 0;
+
+  /**
+   * The number of invalidations of each key since it was last cached, so that the updater thread never caches an
+   * INode that has been invalidated while it was being read. The counts are per key, so that the invalidations of
+   * other INodes, which are frequent under write-heavy workloads, do not force the INode to be read again. A key is
+   * only removed once its INode has been cached, which is safe as there is a single updater thread.
+   */
+  private static final Map<String, Long> generations = new HashMap<>();
 
   static {
     instance = new RootINodeCache();
@@ -37,19 +93,43 @@ public static RootINodeCache getInstance() {
     return instance;
   }
 
-  public static void start() {
-    if (!running && ENABLE_CACHE) {
+  /**
+   * @param levels The number of levels of the namespace to pin, including the root. The cache is disabled if this
+   *               is not positive.
+   * @param ttl The number of milliseconds after which a pinned INode is read again, even if it has not been
+   *            invalidated. Pinned INodes never expire if this is not positive.
+   */
+  public static void start(int levels, long ttl) {
+    start(levels, ttl, RootINodeCache::readINode);
+  }
+
+  @VisibleForTesting
+  static synchronized void start(int levels, long ttl, PinnedINodeReader pinnedINodeReader) {
+    if (!running && levels > 0) {
+      pinnedLevels = levels;
+      ttlMillis = ttl;
+      reader = pinnedINodeReader;
+      running = true;
       rootCacheUpdater = new RootINodeCacheUpdaterThread();
+      rootCacheUpdater.setDaemon(true);
       rootCacheUpdater.start();
+      scheduleLoad(new PinnedKey(INodeDirectory.ROOT_NAME, HdfsConstantsClient.GRANDFATHER_INODE_ID,
+          INodeDirectory.ROOT_DIR_DEPTH));
     }
   }
 
-  public static void stop() {
+  public static synchronized void stop() {
     try {
       if (running) {
         running = false;
+        rootCacheUpdater.interrupt();
         rootCacheUpdater.join();
         rootCacheUpdater = null;
+        synchronized (lock) {
+          evictAll();
+        }
+        loadQueue.clear();
+        pendingLoads.clear();
       }
     } catch (InterruptedException e) {
       LOG.error(e);
@@ -57,65 +137,313 @@ public static void stop() {
     }
   }
 
+  public static boolean isEnabled() {
+    return running;
+  }
+
   public static INode getRootINode() {
-    if(rootCacheUpdater!=null) {
-      synchronized (rootCacheUpdater) {
-        return rootINode;
+    return getPinnedINode(INodeDirectory.ROOT_NAME, HdfsConstantsClient.GRANDFATHER_INODE_ID);
+  }
+
+  /**
+   * Return the cached INode with the given name and parent, or null if it is not pinned, not loaded yet, or expired.
+   * An expired INode is read again in the background.
+   */
+  public static INode getPinnedINode(String name, long parentId) {
+    if (!running) {
+      return null;
+    }
+    PinnedINode pinned = pinnedINodes.get(INode.nameParentKey(parentId, name));
+    if (pinned == null) {
+      return null;
+    }
+    if (pinned.isExpired()) {
+      if (pinnedINodes.remove(pinned.key.nameParentKey, pinned)) {
+        if (LOG.isTraceEnabled()) {
+          LOG.trace("RootCache: pinned INode " + pinned.inode.getId() + " (" + pinned.key + ") expired");
+        }
+        scheduleLoad(pinned.key);
       }
-    }else{
       return null;
     }
+    return pinned.inode;
+  }
+
+  /**
+   * Called when a path resolution has read the given INode from the database. If the INode is at a pinned level,
+   * then it is recorded as such, and it is loaded into the cache if it is not cached yet.
+   */
+  public static void resolved(INode inode) {
+    if (!running || inode == null) {
+      return;
+    }
+    short depth = childDepth(inode.getParentId());
+    if (depth < 0 || pinnedKeys.containsKey(inode.getId())) {
+      return;
+    }
+    PinnedKey key = new PinnedKey(inode.getLocalName(), inode.getParentId(), depth);
+    pinnedKeys.put(inode.getId(), key);
+    if (!pinnedINodes.containsKey(key.nameParentKey)) {
+      scheduleLoad(key);
+    }
+  }
+
+  /**
+   * Return true if this NameNode has pinned the given INode, i.e., if the INode must be read again when it is
+   * modified. Whether other NameNodes may have pinned the INode is decided by {@link #isPinned(INode, LongFunction)}.
+   */
+  public static boolean isTracked(INode inode) {
+    return running && pinnedKeys.containsKey(inode.getId());
+  }
+
+  /**
+   * Return true if the given INode is at a pinned level, i.e., if it may be cached by any NameNode. Like
+   * {@link #isPinnedPath(String)}, this only depends on the depth of the INode, and not on whether this NameNode has
+   * resolved it.
+   *
+   * @param ancestors Returns the INode with the given ID, or null if it is not known. This is used to walk up from
+   *                  the INode to the root. An INode whose ancestors cannot be found is assumed to be pinned.
+   */
+  public static boolean isPinned(INode inode, LongFunction<INode> ancestors) {
+    if (!running) {
+      return false;
+    }
+    INode current = inode;
+    for (int depth = INodeDirectory.ROOT_DIR_DEPTH; depth < pinnedLevels; depth++) {
+      if (current.getId() == INode.ROOT_INODE_ID) {
+        return true;
+      }
+      current = ancestors.apply(current.getParentId());
+      if (current == null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return true if the INode at the given path is at a pinned level.
+   */
+  public static boolean isPinnedPath(String path) {
+    if (!running) {
+      return false;
+    }
+    int depth = 0;
+    for (String component : path.split(Path.SEPARATOR)) {
+      if (!component.isEmpty()) {
+        depth++;
+      }
+    }
+    return depth < pinnedLevels;
   }
-  
-  public static void forceRefresh(){
-    if(rootCacheUpdater != null){
-      synchronized (rootCacheUpdater) {
-        rootINode = null;
+
+  /**
+   * Evict the INode with the given ID, if it is pinned, and read it again. The read takes a shared lock, so it
+   * completes once the transaction that modifies the INode has committed.
+   */
+  public static void invalidate(long inodeId) {
+    if (!running) {
+      return;
+    }
+    PinnedKey key;
+    synchronized (lock) {
+      key = pinnedKeys.remove(inodeId);
+      if (key == null) {
+        return;
       }
+      generations.merge(key.nameParentKey, 1L, Long::sum);
+      pinnedINodes.remove(key.nameParentKey);
+    }
+    if (LOG.isTraceEnabled()) {
+      LOG.trace("RootCache: invalidated pinned INode " + inodeId + " (" + key + ")");
+    }
+    scheduleLoad(key);
+  }
+
+  /**
+   * Evict all the pinned INodes. The root is read again right away; the other levels are read again as path
+   * resolutions go through them.
+   */
+  public static void invalidateAll() {
+    if (!running) {
+      return;
+    }
+    synchronized (lock) {
+      evictAll();
     }
+    LOG.debug("RootCache: invalidated all pinned INodes");
+    scheduleLoad(new PinnedKey(INodeDirectory.ROOT_NAME, HdfsConstantsClient.GRANDFATHER_INODE_ID,
+        INodeDirectory.ROOT_DIR_DEPTH));
   }
-  
-  public static boolean isRootInCache() {
-    return rootINode != null;
+
+  private static void evictAll() {
+    epoch++;
+    generations.clear();
+    pinnedINodes.clear();
+    pinnedKeys.clear();
+  }
+
+  /**
+   * Return the depth of a child of the given INode if that child is at a pinned level, or -1 otherwise.
+   */
+  private static short childDepth(long parentId) {
+    if (parentId == HdfsConstantsClient.GRANDFATHER_INODE_ID) {
+      return INodeDirectory.ROOT_DIR_DEPTH;
+    }
+    PinnedKey parentKey = pinnedKeys.get(parentId);
+    if (parentKey == null || parentKey.depth + 1 >= pinnedLevels) {
+      return -1;
+    }
+    return (short) (parentKey.depth + 1);
+  }
+
+  private static void scheduleLoad(PinnedKey key) {
+    if (pendingLoads.add(key.nameParentKey)) {
+      loadQueue.add(key);
+    }
+  }
+
+  /**
+   * Cache the INode read for the given key, unless the key has been invalidated since {@code readVersion} was taken.
+   *
+   * @return False if the INode must be read again.
+   */
+  private static boolean install(PinnedKey key, INode inode, ReadVersion readVersion) {
+    synchronized (lock) {
+      if (!running) {
+        return true;
+      }
+      if (!readVersion.isCurrent(key)) {
+        return false;
+      }
+      generations.remove(key.nameParentKey);
+      if (inode == null) {
+        LOG.debug("RootCache: " + key + " does not exist.");
+        return true;
+      }
+      if (key.depth != INodeDirectory.ROOT_DIR_DEPTH && !pinnedKeys.containsKey(key.parentId)) {
+        // The parent has been invalidated since this INode was resolved, so its depth may no longer be valid.
+        return true;
+      }
+      pinnedKeys.put(inode.getId(), key);
+      pinnedINodes.put(key.nameParentKey, new PinnedINode(key, inode));
+      return true;
+    }
+  }
+
+  /**
+   * The epoch and the generation of a key when the updater thread started to read it.
+   */
+  private static class ReadVersion {
+    private final long epoch;
+    private final long generation;
+
+    ReadVersion(PinnedKey key) {
+      synchronized (lock) {
+        this.epoch = RootINodeCache.epoch;
+        this.generation = generations.getOrDefault(key.nameParentKey, 0L);
+      }
+    }
+
+    private boolean isCurrent(PinnedKey key) {
+      return epoch == RootINodeCache.epoch && generation == generations.getOrDefault(key.nameParentKey, 0L);
+    }
+  }
+
+  @VisibleForTesting
+  interface PinnedINodeReader {
+    INode read(String name, long parentId, long partitionId) throws IOException;
+  }
+
+  private static INode readINode(final String name, final long parentId, final long partitionId)
+      throws IOException {
+    LightWeightRequestHandler getPinnedINode =
+            new LightWeightRequestHandler(HDFSOperationType.GET_ROOT) {
+              @Override
+              public Object performTask() throws IOException {
+                INodeDataAccess da = (INodeDataAccess) HdfsStorageFactory
+                        .getDataAccess(INodeDataAccess.class);
+                // Take a shared lock, so that an INode that is being modified is only read once the modifying
+                // transaction has committed, i.e., after its invalidation.
+                if (!connector.isTransactionActive()) {
+                  connector.beginTransaction();
+                }
+                connector.readLock();
+                INode inode = (INode) da.findInodeByNameParentIdAndPartitionIdPK(name, parentId, partitionId);
+                connector.commit();
+                return inode;
+              }
+            };
+    return (INode) getPinnedINode.handle();
+  }
+
+  private static class PinnedKey {
+    private final String name;
+    private final long parentId;
+    private final short depth;
+    private final String nameParentKey;
+
+    PinnedKey(String name, long parentId, short depth) {
+      this.name = name;
+      this.parentId = parentId;
+      this.depth = depth;
+      this.nameParentKey = INode.nameParentKey(parentId, name);
+    }
+
+    @Override
+    public String toString() {
+      return "name='" + name + "', parentId=" + parentId + ", depth=" + depth;
+    }
+  }
+
+  private static class PinnedINode {
+    private final PinnedKey key;
+    private final INode inode;
+    private final long readTime;
+
+    PinnedINode(PinnedKey key, INode inode) {
+      this.key = key;
+      this.inode = inode;
+      this.readTime = System.currentTimeMillis();
+    }
+
+    private boolean isExpired() {
+      return ttlMillis > 0 && System.currentTimeMillis() - readTime >= ttlMillis;
+    }
   }
 
   private static class RootINodeCacheUpdaterThread extends Thread {
 
+    private INode read(final PinnedKey key) throws IOException {
+      long partitionId = INode.calculatePartitionId(key.parentId, key.name, key.depth);
+      return reader.read(key.name, key.parentId, partitionId);
+    }
+
     @Override
     public void run() {
-      running = true;
       LOG.debug("RootCache Started");
-      final long rootPartitionId = INode.calculatePartitionId(HdfsConstantsClient.GRANDFATHER_INODE_ID,
-          INodeDirectory.ROOT_NAME, INodeDirectory.ROOT_DIR_DEPTH);
-
-      LightWeightRequestHandler getRootINode =
-              new LightWeightRequestHandler(HDFSOperationType.GET_ROOT) {
-                @Override
-                public Object performTask() throws IOException {
-                  INodeDataAccess da = (INodeDataAccess) HdfsStorageFactory
-                          .getDataAccess(INodeDataAccess.class);
-                  INode rootINode = (INode) da.findInodeByNameParentIdAndPartitionIdPK(INodeDirectory.ROOT_NAME,
-                      HdfsConstantsClient.GRANDFATHER_INODE_ID, rootPartitionId);
-                  return rootINode;
-                }
-              };
-
       while (running) {
+        PinnedKey key;
         try {
-          Thread.sleep(UPDATE_TIMER);
-          INode rootInodeRet = (INode) getRootINode.handle();
-          if (rootInodeRet != null) {
-            synchronized (rootCacheUpdater) {
-              rootINode = rootInodeRet;
-            }
-          } else {
-            LOG.debug("RootCache: root does not exist.");
-          }
+          key = loadQueue.take();
         } catch (InterruptedException e) {
-          LOG.warn(e);
-          Thread.currentThread().interrupt();
+          break;
+        }
+        pendingLoads.remove(key.nameParentKey);
+        ReadVersion readVersion = new ReadVersion(key);
+        try {
+          INode inode = read(key);
+          if (!install(key, inode, readVersion)) {
+            scheduleLoad(key);
+          }
         } catch (IOException e) {
-          LOG.warn(e);
+          LOG.warn("RootCache: failed to read " + key, e);
+          try {
+            Thread.sleep(RETRY_TIMER);
+          } catch (InterruptedException ie) {
+            break;
+          }
+          scheduleLoad(key);
         }
       } // end while
     }
@@ -15,19 +15,24 @@
  */
 package io.hops.transaction.handler;
 
+import com.google.common.annotations.VisibleForTesting;
 import io.hops.metrics.TransactionAttempt;
 import io.hops.metrics.TransactionEvent;
 import io.hops.transaction.EntityManager;
 import io.hops.transaction.TransactionInfo;
 import io.hops.transaction.context.INodeContext;
+import io.hops.transaction.lock.BaseINodeLock;
 import io.hops.transaction.lock.HdfsTransactionalLockAcquirer;
+import io.hops.transaction.lock.Lock;
 import io.hops.transaction.lock.TransactionLockAcquirer;
+import io.hops.transaction.lock.TransactionLocks;
 import org.apache.hadoop.hdfs.protocol.RecoveryInProgressException;
 import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
 import org.apache.hadoop.hdfs.server.namenode.INode;
 import org.apache.hadoop.hdfs.server.namenode.ServerlessNameNode;
 import org.apache.hadoop.hdfs.serverless.BaseHandler;
 import org.apache.hadoop.hdfs.serverless.consistency.ConsistencyProtocol;
+import org.apache.hadoop.hdfs.serverless.consistency.ConsistencyProtocolBatcher;
 
 import java.io.IOException;
 import java.util.*;
@@ -58,6 +63,18 @@
    */
   private long parentINodeId = -1L;
 
+  /**
+   * The consistency protocol started by {@link #startConsistencyProtocol} for the current transaction attempt,
+   * or null if the protocol was not started early.
+   */
+  private ConsistencyProtocol pipelinedConsistencyProtocol;
+
+  /**
+   * The deployment to which each INode covered by {@code pipelinedConsistencyProtocol} was mapped when its INVs
+   * were prepared, keyed by INode ID.
+   */
+  private Map<Long, Integer> pipelinedINodeDeployments;
+
   public HopsTransactionalRequestHandler(HDFSOperationType opType) {
     this(opType, false);
   }
@@ -167,6 +184,19 @@ protected final boolean consistencyProtocol(long txStartTime, TransactionAttempt
       shouldRunConsistencyProtocol = (numInvalidated > 0);
     }
 
+    // If the protocol was started when the locks were acquired, then wait for it, and only run it again for the
+    // INodes it did not cover.
+    if (pipelinedConsistencyProtocol != null && invalidatedINodes != null) {
+      ConsistencyProtocol pipelined = pipelinedConsistencyProtocol;
+      Map<Long, Integer> deployments = pipelinedINodeDeployments;
+      pipelinedConsistencyProtocol = null;
+      pipelinedINodeDeployments = null;
+
+      invalidatedINodes = awaitPipelinedConsistencyProtocol(pipelined, deployments, invalidatedINodes,
+              serverlessNameNodeInstance);
+      shouldRunConsistencyProtocol = !invalidatedINodes.isEmpty();
+    }
+
     // If we should run the protocol (i.e., if the size of the collection of invalidated INodes is greater than 0),
     // then we will run it. Otherwise, we skip it altogether.
     if (shouldRunConsistencyProtocol) {
@@ -184,6 +214,16 @@ protected final boolean consistencyProtocol(long txStartTime, TransactionAttempt
       if (totalAcksRequired == 0)
         return true;
 
+      // If batching is enabled, then we hand our protocol (with its pre-computed ACKs) off to the batcher, which
+      // merges it with those of other concurrent write transactions and performs a single round of INVs/ACKs on
+      // behalf of all of them.
+      ConsistencyProtocolBatcher batcher = (serverlessNameNodeInstance == null) ? null :
+              serverlessNameNodeInstance.getConsistencyProtocolBatcher();
+      if (batcher != null && consistencyProtocol.getInvalidatedINodesFiltered() != null) {
+        batcher.submitAndWait(consistencyProtocol, txStartTime, attempt);
+        return true;
+      }
+
       // Check if we should bother running. This potentially saves us from starting another thread and joining ,
       // it which is needlessly expensive if we aren't going to bother running the consistency protocol anyway.
       consistencyProtocol.start();
@@ -223,6 +263,134 @@ protected final boolean consistencyProtocol(long txStartTime, TransactionAttempt
     return true;
   }
 
+  /**
+   * Start the consistency protocol for every INode that the transaction holds a write lock on. The transaction can
+   * only modify those INodes, so their INVs can be issued before in-memory processing has determined which of them
+   * are actually modified. This is only done if pipelining is enabled on the local NameNode.
+   */
+  @Override
+  protected final boolean startConsistencyProtocol(long txStartTime, TransactionAttempt attempt,
+                                                   TransactionLocks locks) throws IOException {
+    pipelinedConsistencyProtocol = null;
+    pipelinedINodeDeployments = null;
+
+    if (ConsistencyProtocol.DO_CONSISTENCY_PROTOCOL.get() == null || !ConsistencyProtocol.DO_CONSISTENCY_PROTOCOL.get()
+            || skipConsistencyProtocol)
+      return false;
+
+    serverlessNameNodeInstance = ServerlessNameNode.tryGetNameNodeInstance(false);
+    if (serverlessNameNodeInstance == null || !serverlessNameNodeInstance.isConsistencyProtocolPipelined())
+      return false;
+
+    INodeContext inodeContext = (INodeContext)EntityManager.getEntityContext(INode.class);
+    if (inodeContext == null)
+      return false;
+
+    Lock inodeLock;
+    try {
+      inodeLock = locks.getLock(Lock.Type.INode);
+    } catch (TransactionLocks.LockNotAddedException ex) {
+      return false;
+    }
+    if (!(inodeLock instanceof BaseINodeLock))
+      return false;
+
+    List<INode> writeLockedINodes = ((BaseINodeLock)inodeLock).getWriteLockedINodes();
+    if (writeLockedINodes.isEmpty())
+      return false;
+
+    ConsistencyProtocol consistencyProtocol = new ConsistencyProtocol(inodeContext, null,
+            attempt, transactionEvent, txStartTime, !serverlessNameNodeInstance.useNdbForConsistencyProtocol(),
+            false, isCompleteOperation, null, writeLockedINodes, parentINodeId);
+
+    // This captures everything the protocol thread needs from the INodes, as they may change once it is running.
+    if (consistencyProtocol.prepareForConcurrentExecution() == 0)
+      return false;
+
+    Map<Long, Integer> deployments = new HashMap<>();
+    for (INode inode : consistencyProtocol.getInvalidatedINodesFiltered())
+      deployments.put(inode.getId(), serverlessNameNodeInstance.getMappedDeploymentNumber(inode));
+
+    if (requestHandlerLOG.isDebugEnabled())
+      requestHandlerLOG.debug("Starting pipelined consistency protocol for " + deployments.size() +
+              " write-locked INode(s).");
+
+    consistencyProtocol.start();
+    pipelinedConsistencyProtocol = consistencyProtocol;
+    pipelinedINodeDeployments = deployments;
+    return true;
+  }
+
+  /**
+   * The protocol thread finishes and cleans up after itself on its own. Waiting for it here would only delay the
+   * rollback, and with it the release of the locks.
+   */
+  @Override
+  protected final void abandonConsistencyProtocol() {
+    pipelinedConsistencyProtocol = null;
+    pipelinedINodeDeployments = null;
+  }
+
+  /**
+   * Wait for the consistency protocol started by {@link #startConsistencyProtocol} to finish.
+   *
+   * The protocol gives up waiting for ACKs after {@link ServerlessNameNode#getTxAckTimeout()}, so we wait for twice
+   * that long before giving up on it.
+   *
+   * @param consistencyProtocol The pipelined protocol.
+   * @param deployments The deployment to which each INode covered by the protocol was mapped, by INode ID.
+   * @param invalidatedINodes The INodes that the transaction actually modified or removed.
+   * @param instance The local NameNode.
+   * @return The invalidated INodes that the pipelined protocol did not cover, and for which the protocol must still
+   * be run before the transaction commits. An INode is not covered if it was not write-locked, or if the transaction
+   * moved it such that it maps to a different deployment.
+   * @throws IOException If the pipelined protocol failed or did not finish in time, in which case the transaction
+   * must abort, just as if the protocol had failed after in-memory processing.
+   */
+  @VisibleForTesting
+  static Collection<INode> awaitPipelinedConsistencyProtocol(ConsistencyProtocol consistencyProtocol,
+                                                             Map<Long, Integer> deployments,
+                                                             Collection<INode> invalidatedINodes,
+                                                             ServerlessNameNode instance) throws IOException {
+    long timeoutMillis = 2L * instance.getTxAckTimeout();
+    try {
+      consistencyProtocol.join(timeoutMillis);
+    } catch (InterruptedException ex) {
+      throw new IOException("Encountered InterruptedException while waiting for pipelined consistency protocol " +
+              "to finish: ", ex);
+    }
+
+    if (consistencyProtocol.isAlive())
+      throw new IOException("Pipelined consistency protocol did not finish within " + timeoutMillis + " ms.");
+
+    if (!consistencyProtocol.getCanProceed()) {
+      List<Exception> exceptions = consistencyProtocol.getExceptions();
+      requestHandlerLOG.error("Pipelined consistency protocol failed with " + exceptions.size() + " exception(s).");
+
+      if (exceptions.isEmpty())
+        throw new IOException("Pipelined consistency protocol failed, but no exception was thrown. Probably timed out.");
+
+      Exception ex = exceptions.get(0);
+      if (ex instanceof IOException)
+        throw (IOException) ex;
+
+      throw new IOException("Exception encountered during pipelined consistency protocol: " + ex.getMessage(), ex);
+    }
+
+    List<INode> uncovered = new ArrayList<>();
+    for (INode inode : invalidatedINodes) {
+      Integer deployment = deployments.get(inode.getId());
+      if (deployment == null || deployment != instance.getMappedDeploymentNumber(inode))
+        uncovered.add(inode);
+    }
+
+    if (requestHandlerLOG.isDebugEnabled())
+      requestHandlerLOG.debug("Pipelined consistency protocol covered " + (invalidatedINodes.size() - uncovered.size()) +
+              "/" + invalidatedINodes.size() + " invalidated INode(s).");
+
+    return uncovered;
+  }
+
   public void setUp() throws IOException {
 
   }
@@ -248,6 +248,19 @@ public TransactionLockTypes.INodeLockType getLockedINodeLockType(
     return allLockedInodesInTx.get(inode);
   }
 
+  /**
+   * Return the INodes that this lock holds a write lock on. A transaction can only modify or remove these
+   * INodes, so they are a superset of the INodes that the transaction will invalidate.
+   */
+  public List<INode> getWriteLockedINodes() {
+    List<INode> writeLocked = new ArrayList<>();
+    for (Map.Entry<INode, TransactionLockTypes.INodeLockType> entry : allLockedInodesInTx.entrySet()) {
+      if (entry.getValue().compareTo(TransactionLockTypes.INodeLockType.WRITE) >= 0)
+        writeLocked.add(entry.getKey());
+    }
+    return writeLocked;
+  }
+
   protected INode find(TransactionLockTypes.INodeLockType lock, String name,
       long parentId, long partitionId, long possibleINodeId)
       throws StorageException, TransactionContextException {
@@ -49,6 +49,9 @@ public class INodeLock extends BaseINodeLock {
   protected boolean skipReadingQuotaAttr;
   protected long namenodeId;
   protected Collection<ActiveNode> activeNamenodes;
+  // range of children to read, all of them if childrenLimit is negative
+  private String childrenStartAfter;
+  private int childrenLimit = -1;
 
   INodeLock(TransactionLockTypes.INodeLockType lockType,
       TransactionLockTypes.INodeResolveType resolveType, String... paths) {
@@ -98,6 +101,18 @@ public INodeLock skipReadingQuotaAttr(boolean val){
     return this;
   }
 
+  /**
+   * Read only the children of the target directory whose names sort after
+   * {@code startAfter}, at most {@code limit} of them, instead of all of its
+   * children. Only applies to PATH_AND_IMMEDIATE_CHILDREN. Directories whose
+   * children are randomly partitioned still have all their children read.
+   */
+  public INodeLock setChildrenRange(String startAfter, int limit) {
+    this.childrenStartAfter = startAfter;
+    this.childrenLimit = limit;
+    return this;
+  }
+
   public INodeLock resolveSymLink(boolean resolveLink) {
     this.resolveLink = resolveLink;
     return this;
@@ -515,7 +530,11 @@ private List<INode> findImmediateChildren(INode lastINode)
     if (lastINode != null) {
       if (lastINode instanceof INodeDirectory) {
         setINodeLockType(TransactionLockTypes.INodeLockType.READ_COMMITTED); //if the parent is locked then taking lock on all children is not necessary
-        children.addAll(((INodeDirectory) lastINode).getChildrenList());
+        List<INode> page = null;
+        if (childrenLimit >= 0) {
+          page = ((INodeDirectory) lastINode).getChildrenPage(childrenStartAfter, childrenLimit);
+        }
+        children.addAll(page != null ? page : ((INodeDirectory) lastINode).getChildrenList());
       }
     }
     return children;
@@ -110,6 +110,7 @@
 import org.apache.hadoop.hdfs.server.namenode.ServerlessNameNode;
 import org.apache.hadoop.hdfs.server.namenode.SafeModeException;
 import org.apache.hadoop.hdfs.protocol.HdfsBlocksMetadata;
+import org.apache.hadoop.hdfs.serverless.invoking.LatencyHistogram;
 import org.apache.hadoop.hdfs.serverless.invoking.ServerlessNameNodeClient;
 import org.apache.hadoop.hdfs.serverless.invoking.ServerlessInvokerBase;
 import org.apache.hadoop.hdfs.serverless.invoking.ServerlessInvokerFactory;
@@ -1937,6 +1938,7 @@ public void clearLatencyValues() {
     }
   }
 
+  @Deprecated
   public DescriptiveStatistics getLatencyStatistics() {
     if (namenode instanceof ServerlessNameNodeClient) {
       ServerlessNameNodeClient client = (ServerlessNameNodeClient)namenode;
@@ -1948,6 +1950,7 @@ public DescriptiveStatistics getLatencyStatistics() {
     }
   }
 
+  @Deprecated
   public DescriptiveStatistics getLatencyHttpStatistics() {
     if (namenode instanceof ServerlessNameNodeClient) {
       ServerlessNameNodeClient client = (ServerlessNameNodeClient)namenode;
@@ -1959,6 +1962,7 @@ public DescriptiveStatistics getLatencyHttpStatistics() {
     }
   }
 
+  @Deprecated
   public DescriptiveStatistics getLatencyTcpStatistics() {
     if (namenode instanceof ServerlessNameNodeClient) {
       ServerlessNameNodeClient client = (ServerlessNameNodeClient)namenode;
@@ -1970,6 +1974,77 @@ public DescriptiveStatistics getLatencyTcpStatistics() {
     }
   }
 
+  /**
+   * Used for merging the latency histograms of other clients into a master client that we use for book-keeping.
+   * @param tcpLatencies Histogram of the latencies of TCP requests.
+   * @param httpLatencies Histogram of the latencies of HTTP requests.
+   */
+  public void addLatencies(LatencyHistogram tcpLatencies, LatencyHistogram httpLatencies) {
+    if (namenode instanceof ServerlessNameNodeClient) {
+      ServerlessNameNodeClient client = (ServerlessNameNodeClient)namenode;
+      client.addLatencies(tcpLatencies, httpLatencies);
+    } else {
+      // The type of the `namenode` variable for Serverless HopsFS should be 'ServerlessNameNodeClient'.
+      // If it isn't, then none of the Serverless-specific APIs will work.
+      throw new IllegalStateException("The internal NameNode client is not of the correct type. That is, it does not implement any Serverless APIs.");
+    }
+  }
+
+  public LatencyHistogram getLatencyHistogram() {
+    if (namenode instanceof ServerlessNameNodeClient) {
+      ServerlessNameNodeClient client = (ServerlessNameNodeClient)namenode;
+      return client.getLatencyHistogram();
+    } else {
+      // The type of the `namenode` variable for Serverless HopsFS should be 'ServerlessNameNodeClient'.
+      // If it isn't, then none of the Serverless-specific APIs will work.
+      throw new IllegalStateException("The internal NameNode client is not of the correct type. That is, it does not implement any Serverless APIs.");
+    }
+  }
+
+  public LatencyHistogram getLatencyHistogramTcp() {
+    if (namenode instanceof ServerlessNameNodeClient) {
+      ServerlessNameNodeClient client = (ServerlessNameNodeClient)namenode;
+      return client.getLatencyHistogramTcp();
+    } else {
+      // The type of the `namenode` variable for Serverless HopsFS should be 'ServerlessNameNodeClient'.
+      // If it isn't, then none of the Serverless-specific APIs will work.
+      throw new IllegalStateException("The internal NameNode client is not of the correct type. That is, it does not implement any Serverless APIs.");
+    }
+  }
+
+  public LatencyHistogram getLatencyHistogramHttp() {
+    if (namenode instanceof ServerlessNameNodeClient) {
+      ServerlessNameNodeClient client = (ServerlessNameNodeClient)namenode;
+      return client.getLatencyHistogramHttp();
+    } else {
+      // The type of the `namenode` variable for Serverless HopsFS should be 'ServerlessNameNodeClient'.
+      // If it isn't, then none of the Serverless-specific APIs will work.
+      throw new IllegalStateException("The internal NameNode client is not of the correct type. That is, it does not implement any Serverless APIs.");
+    }
+  }
+
+  public Map<String, LatencyHistogram> getOperationLatencyHistogramsTcp() {
+    if (namenode instanceof ServerlessNameNodeClient) {
+      ServerlessNameNodeClient client = (ServerlessNameNodeClient)namenode;
+      return client.getOperationLatencyHistogramsTcp();
+    } else {
+      // The type of the `namenode` variable for Serverless HopsFS should be 'ServerlessNameNodeClient'.
+      // If it isn't, then none of the Serverless-specific APIs will work.
+      throw new IllegalStateException("The internal NameNode client is not of the correct type. That is, it does not implement any Serverless APIs.");
+    }
+  }
+
+  public Map<String, LatencyHistogram> getOperationLatencyHistogramsHttp() {
+    if (namenode instanceof ServerlessNameNodeClient) {
+      ServerlessNameNodeClient client = (ServerlessNameNodeClient)namenode;
+      return client.getOperationLatencyHistogramsHttp();
+    } else {
+      // The type of the `namenode` variable for Serverless HopsFS should be 'ServerlessNameNodeClient'.
+      // If it isn't, then none of the Serverless-specific APIs will work.
+      throw new IllegalStateException("The internal NameNode client is not of the correct type. That is, it does not implement any Serverless APIs.");
+    }
+  }
+
   /**
    * Get the namenode associated with this DFSClient object
    * @return the namenode associated with this DFSClient object
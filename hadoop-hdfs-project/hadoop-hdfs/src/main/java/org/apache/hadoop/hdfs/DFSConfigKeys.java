@@ -75,11 +75,18 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
 
   /**
    * When straggler mitigation is enabled, this is the factor X such that a request
-   * must be delayed for (avgLatency * X) ms in order to be re-submitted.
+   * must be delayed for (latency percentile * X) ms in order to be re-submitted.
    */
   public static final String SERVERLESS_STRAGGLER_MITIGATION_THRESHOLD_FACTOR = "serverless.straggler.mitigation.threshold";
   public static final int SERVERLESS_STRAGGLER_MITIGATION_THRESHOLD_FACTOR_DEFAULT = 2;
 
+  /**
+   * When straggler mitigation is enabled, requests are resubmitted once they have been outstanding for
+   * X times this percentile of the recent request latency, where X is the straggler mitigation threshold.
+   */
+  public static final String SERVERLESS_STRAGGLER_MITIGATION_PERCENTILE = "serverless.straggler.mitigation.percentile";
+  public static final double SERVERLESS_STRAGGLER_MITIGATION_PERCENTILE_DEFAULT = 95.0;
+
   /**
    * When enabled, we employ a straggler mitigation technique in which requests that have been
    * submitted but not received a response for X times the average latency are resubmitted.
@@ -141,6 +148,26 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String SERVERLESS_IDLE_GC_THRESHOLD = "serverless.idle.gc.threshold";
   public static final long SERVERLESS_IDLE_GC_THRESHOLD_DEFAULT = 500;
 
+  /**
+   * How long (in milliseconds) NameNodes remember the IDs of requests they have received, so that retransmitted
+   * TCP requests can be recognized as duplicates.
+   */
+  public static final String SERVERLESS_DEDUP_WINDOW_MILLISECONDS = "serverless.dedup.window-ms";
+  public static final long SERVERLESS_DEDUP_WINDOW_MILLISECONDS_DEFAULT = 120000;
+
+  /**
+   * The number of buckets the duplicate-request window is divided into. IDs are expired one bucket at a time.
+   */
+  public static final String SERVERLESS_DEDUP_NUM_BUCKETS = "serverless.dedup.num-buckets";
+  public static final int SERVERLESS_DEDUP_NUM_BUCKETS_DEFAULT = 4;
+
+  /**
+   * Fraction of the NameNode's maximum heap size that the duplicate-request table may occupy.
+   * The table is allocated up-front and never grows beyond this.
+   */
+  public static final String SERVERLESS_DEDUP_HEAP_FRACTION = "serverless.dedup.heap-fraction";
+  public static final float SERVERLESS_DEDUP_HEAP_FRACTION_DEFAULT = 0.01f;
+
   /**
    * If true, then we'll pass an argument to the NNs indicating that they should print their
    * debug output from the underlying NDB C++ library (libndbclient.so).
@@ -183,6 +210,81 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String SERVERLESS_METADATA_CACHE_REDIS_PORT = "serverless.redis.port";
   public static final int SERVERLESS_METADATA_CACHE_REDIS_PORT_DEFAULT = 6379;
 
+  /**
+   * If true, then clients look up and publish parent directory to deployment mappings in Redis when their local
+   * mapping cache misses. Otherwise, clients compute the mappings by consistent hashing and do not need Redis.
+   */
+  public static final String SERVERLESS_METADATA_CACHE_REDIS_ENABLED = "serverless.redis.enabled";
+  public static final boolean SERVERLESS_METADATA_CACHE_REDIS_ENABLED_DEFAULT = false;
+
+  /**
+   * How parent directories are consistently hashed to deployments. Either "fast", which uses a 64-bit FNV-1a hash
+   * of the parent path, or "md5", which is the original placement. Clients and NameNodes must use the same value.
+   */
+  public static final String SERVERLESS_DEPLOYMENT_PLACEMENT = "serverless.deployment-mapping.placement";
+  public static final String SERVERLESS_DEPLOYMENT_PLACEMENT_DEFAULT = "fast";
+
+  /**
+   * If true, then NameNodes detect directories whose children receive many writes and split them, i.e., spread
+   * their children over several deployments. Splits are published through ZooKeeper. Clients, which must use the
+   * same value, then route operations on the children of split directories accordingly.
+   */
+  public static final String SERVERLESS_DIRECTORY_SPLIT_ENABLED = "serverless.directory-split.enabled";
+  public static final boolean SERVERLESS_DIRECTORY_SPLIT_ENABLED_DEFAULT = false;
+
+  /**
+   * The rate, in writes per second, above which a NameNode splits a directory.
+   */
+  public static final String SERVERLESS_DIRECTORY_SPLIT_THRESHOLD = "serverless.directory-split.threshold";
+  public static final double SERVERLESS_DIRECTORY_SPLIT_THRESHOLD_DEFAULT = 1000.0;
+
+  /**
+   * The length, in milliseconds, of the windows over which write rates are measured.
+   */
+  public static final String SERVERLESS_DIRECTORY_SPLIT_WINDOW = "serverless.directory-split.window";
+  public static final long SERVERLESS_DIRECTORY_SPLIT_WINDOW_DEFAULT = 10000;
+
+  /**
+   * The number of deployments over which the children of a split directory are spread.
+   */
+  public static final String SERVERLESS_DIRECTORY_SPLIT_FAN_OUT = "serverless.directory-split.fan-out";
+  public static final int SERVERLESS_DIRECTORY_SPLIT_FAN_OUT_DEFAULT = 4;
+
+  /**
+   * How long, in milliseconds, after a split is published it starts being used for routing and caching. This must
+   * exceed the time it takes for all NameNodes to learn about the split from ZooKeeper.
+   */
+  public static final String SERVERLESS_DIRECTORY_SPLIT_ACTIVATION_DELAY =
+      "serverless.directory-split.activation-delay";
+  public static final long SERVERLESS_DIRECTORY_SPLIT_ACTIVATION_DELAY_DEFAULT = 5000;
+
+  /**
+   * The maximum number of paths sent to a NameNode in a single request of a batch operation (e.g., createBatch).
+   * Larger batches are split into several requests.
+   */
+  public static final String SERVERLESS_BATCH_MAX_SIZE = "serverless.batch.max-size";
+  public static final int SERVERLESS_BATCH_MAX_SIZE_DEFAULT = 256;
+
+  /**
+   * The maximum number of parent directory to deployment mappings cached by a client.
+   */
+  public static final String SERVERLESS_DEPLOYMENT_MAPPING_CACHE_CAPACITY = "serverless.deployment-mapping.cache.capacity";
+  public static final int SERVERLESS_DEPLOYMENT_MAPPING_CACHE_CAPACITY_DEFAULT = 100_000;
+
+  /**
+   * Directories whose children are routed to a fixed deployment rather than by consistent hashing, as a
+   * comma-separated list of entries of the form "directory=deployment" or "directory=readDeployment:writeDeployment".
+   */
+  public static final String SERVERLESS_DEPLOYMENT_MAPPING_EXPLICIT = "serverless.deployment-mapping.explicit";
+
+  /**
+   * If true, then clients connect to ZooKeeper and watch the number of deployments published by the NameNodes. When
+   * it changes, they start routing over the new deployments and drop the deployment mappings that they had cached.
+   */
+  public static final String SERVERLESS_DEPLOYMENT_TOPOLOGY_WATCH_ENABLED =
+      "serverless.deployment-mapping.topology-watch.enabled";
+  public static final boolean SERVERLESS_DEPLOYMENT_TOPOLOGY_WATCH_ENABLED_DEFAULT = false;
+
   /**
    * Serverless HopsFS clients expose a TCP server that NameNodes establish connections with.
    * Clients can then use TCP requests to communicate with NameNodes.
@@ -217,7 +319,8 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
 
   /**
    * We batch individual requests together to reduce per-request overhead.
-   * This is the number of requests per batch.
+   * This is the number of requests per batch. If adaptive batching is enabled,
+   * then this is the largest batch size the invoker may choose.
    */
   public static final String SERVERLESS_HTTP_BATCH_SIZE = "serverless.http.batch-size";
   public static final int SERVERLESS_HTTP_BATCH_SIZE_DEFAULT = 8;
@@ -228,6 +331,68 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String SERVERLESS_TCP_BASE_BUFFER_SIZE = "serverless.tcp.base-buffer-size";
   public static final int SERVERLESS_TCP_BASE_BUFFER_SIZE_DEFAULT = (int)5e6;
 
+  /**
+   * The number of bytes allocated for each of the two buffers (write buffer and object buffer) of a
+   * NameNode's TCP connection to a client. Results larger than the chunk size are split into several
+   * frames, so these buffers only need to be large enough to hold a single chunk (and a single request).
+   */
+  public static final String SERVERLESS_TCP_NAMENODE_BUFFER_SIZE = "serverless.tcp.namenode-buffer-size";
+  public static final int SERVERLESS_TCP_NAMENODE_BUFFER_SIZE_DEFAULT = 262144;
+
+  /**
+   * NameNodes split serialized results into chunks of at most this many bytes when sending them to
+   * clients via TCP/UDP. A chunk and its framing must fit in a single UDP datagram (65,507 bytes) and
+   * in half of the NameNode's TCP buffer; NameNodes refuse to start if it does not.
+   */
+  public static final String SERVERLESS_TCP_RESULT_CHUNK_SIZE = "serverless.tcp.result-chunk-size";
+  public static final int SERVERLESS_TCP_RESULT_CHUNK_SIZE_DEFAULT = 32768;
+
+  /**
+   * If true, then clients coalesce TCP/UDP requests destined for the same NameNode connection into batch
+   * frames. NameNodes execute the requests of a batch concurrently and send their results back in batch
+   * frames as they become ready, coalescing the results that finish while the previous frame is being sent.
+   */
+  public static final String SERVERLESS_TCP_PIPELINING_ENABLED = "serverless.tcp.pipelining.enabled";
+  public static final boolean SERVERLESS_TCP_PIPELINING_ENABLED_DEFAULT = false;
+
+  /**
+   * How long, in microseconds, a client waits for additional requests to the same NameNode before
+   * sending a batch frame.
+   */
+  public static final String SERVERLESS_TCP_PIPELINING_WINDOW_MICROS = "serverless.tcp.pipelining.window-micros";
+  public static final long SERVERLESS_TCP_PIPELINING_WINDOW_MICROS_DEFAULT = 50;
+
+  /**
+   * Maximum number of requests per batch frame.
+   */
+  public static final String SERVERLESS_TCP_PIPELINING_MAX_BATCH_SIZE = "serverless.tcp.pipelining.max-batch-size";
+  public static final int SERVERLESS_TCP_PIPELINING_MAX_BATCH_SIZE_DEFAULT = 32;
+
+  /**
+   * Maximum serialized size, in bytes, of a batch frame. A single request larger than this is sent on
+   * its own. Clients cap this at half of the smaller of their own and the NameNodes' TCP buffers (and,
+   * when using UDP, at the size of a datagram), as a frame that does not fit closes the connection.
+   */
+  public static final String SERVERLESS_TCP_PIPELINING_MAX_BATCH_BYTES = "serverless.tcp.pipelining.max-batch-bytes";
+  public static final int SERVERLESS_TCP_PIPELINING_MAX_BATCH_BYTES_DEFAULT = 65536;
+
+  /**
+   * Number of threads with which a NameNode executes the requests of batch frames. At most this many
+   * requests are queued on top of the running ones; once the queue is full, the thread that reads from
+   * the client's connection runs the request itself, which stops it from reading more requests until
+   * the NameNode catches up.
+   */
+  public static final String SERVERLESS_TCP_PIPELINING_NAMENODE_THREADS = "serverless.tcp.pipelining.namenode-threads";
+  public static final int SERVERLESS_TCP_PIPELINING_NAMENODE_THREADS_DEFAULT = 8;
+
+  /**
+   * How clients choose the NameNode of the target deployment to which a TCP/UDP request is sent:
+   * "random" (the default, as before this option existed), "power-of-two-choices" (the less loaded of two random
+   * NameNodes), or "parent-path-hash" (the same NameNode for all children of a directory, for cache affinity).
+   */
+  public static final String SERVERLESS_TCP_NAMENODE_SELECTION_POLICY = "serverless.tcp.namenode-selection.policy";
+  public static final String SERVERLESS_TCP_NAMENODE_SELECTION_POLICY_DEFAULT = "random";
+
   /**
    * Port to use for UDP server.
    */
@@ -267,17 +432,90 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int SERVERLESS_HTTP_TIMEOUT_DEFAULT = 20;
 
   /**
-   * The interval, in milliseconds, that batched HTTP requests are issued.
+   * The interval, in milliseconds, that batched HTTP requests are issued. If adaptive
+   * batching is enabled, then this is the longest time a request may be held back.
    */
   public static final String SERVERLESS_HTTP_SEND_INTERVAL = "serverless.http.send-interval";
   public static final int SERVERLESS_HTTP_SEND_INTERVAL_DEFAULT = 15;
 
+  /**
+   * If true, then HTTP requests are flushed as soon as they are enqueued for a deployment
+   * with no batch in flight, and the batch size and linger time of each deployment grow
+   * with the queue depth and shrink when the observed invocation latency rises. If false,
+   * then batches of a fixed size are issued every SERVERLESS_HTTP_SEND_INTERVAL milliseconds.
+   */
+  public static final String SERVERLESS_HTTP_ADAPTIVE_BATCHING = "serverless.http.adaptive-batching.enabled";
+  public static final boolean SERVERLESS_HTTP_ADAPTIVE_BATCHING_DEFAULT = false;
+
+  /**
+   * How far, as a fraction, the moving average of the invocation latency of a deployment
+   * may rise above its baseline before adaptive batching shrinks the batches.
+   */
+  public static final String SERVERLESS_HTTP_ADAPTIVE_BATCHING_LATENCY_TOLERANCE =
+      "serverless.http.adaptive-batching.latency-tolerance";
+  public static final float SERVERLESS_HTTP_ADAPTIVE_BATCHING_LATENCY_TOLERANCE_DEFAULT = 0.25f;
+
+  /**
+   * If true, then invokers that support it send file system operation arguments to NameNodes in a compact
+   * binary envelope (a single Base64 field) rather than as a JSON object with one Base64 field per argument.
+   */
+  public static final String SERVERLESS_HTTP_BINARY_ARGUMENTS = "serverless.http.binary-arguments.enabled";
+  public static final boolean SERVERLESS_HTTP_BINARY_ARGUMENTS_DEFAULT = false;
+
   public static final String SERVERLESS_METADATA_CACHE_ENABLED = "serverless.metadatacache.enabled";
   public static final boolean SERVERLESS_METADATA_CACHE_ENABLED_DEFAULT = true;
 
   public static final String SERVERLESS_METADATA_CACHE_CAPACITY = "serverless.metadatacache.capacity";
   public static final int SERVERLESS_METADATA_CACHE_CAPACITY_DEFAULT = 825_000; // Each INode is around 1,168 bytes.
 
+  /**
+   * If true, then the keys of the INode ID and parent ID + local name indices of the metadata cache are stored
+   * off-heap (in direct buffers), leaving only references to the cached paths on the heap.
+   */
+  public static final String SERVERLESS_METADATA_CACHE_OFF_HEAP_INDEX = "serverless.metadatacache.index.off-heap";
+  public static final boolean SERVERLESS_METADATA_CACHE_OFF_HEAP_INDEX_DEFAULT = false;
+
+  /**
+   * If true, then NameNodes periodically export a snapshot of the hottest entries of their metadata cache, and
+   * newly-started NameNodes of the same deployment pre-load their cache from the most recent snapshot.
+   */
+  public static final String SERVERLESS_METADATA_CACHE_SNAPSHOT_ENABLED = "serverless.metadatacache.snapshot.enabled";
+  public static final boolean SERVERLESS_METADATA_CACHE_SNAPSHOT_ENABLED_DEFAULT = false;
+
+  /**
+   * Directory in which metadata cache snapshots are stored. There is one snapshot file per deployment. For the
+   * snapshots to be useful, this directory should be shared by all the instances of a deployment.
+   */
+  public static final String SERVERLESS_METADATA_CACHE_SNAPSHOT_DIR = "serverless.metadatacache.snapshot.dir";
+  public static final String SERVERLESS_METADATA_CACHE_SNAPSHOT_DIR_DEFAULT = "/tmp/lambdafs-cache-snapshots";
+
+  /**
+   * How often, in milliseconds, a NameNode exports a snapshot of its metadata cache.
+   */
+  public static final String SERVERLESS_METADATA_CACHE_SNAPSHOT_INTERVAL = "serverless.metadatacache.snapshot.interval";
+  public static final long SERVERLESS_METADATA_CACHE_SNAPSHOT_INTERVAL_DEFAULT = 30000;
+
+  /**
+   * The maximum number of INodes included in a metadata cache snapshot. The hottest INodes are selected.
+   */
+  public static final String SERVERLESS_METADATA_CACHE_SNAPSHOT_MAX_INODES = "serverless.metadatacache.snapshot.max-inodes";
+  public static final int SERVERLESS_METADATA_CACHE_SNAPSHOT_MAX_INODES_DEFAULT = 50_000;
+
+  /**
+   * The number of levels of the namespace, starting with the root, whose INodes every NameNode keeps pinned in
+   * memory. Pinned INodes are only re-read when they are invalidated, and their INVs are sent to every deployment.
+   * 1 pins only the root. 0 disables the cache.
+   */
+  public static final String SERVERLESS_PINNED_ANCESTORS_LEVELS = "serverless.pinned-ancestors.levels";
+  public static final int SERVERLESS_PINNED_ANCESTORS_LEVELS_DEFAULT = 1;
+
+  /**
+   * The number of milliseconds after which a pinned INode is read again even if it has not been invalidated, as no
+   * INV is sent for the operations of clients that disable the consistency protocol. 0 never expires pinned INodes.
+   */
+  public static final String SERVERLESS_PINNED_ANCESTORS_TTL_MILLIS = "serverless.pinned-ancestors.ttl-millis";
+  public static final long SERVERLESS_PINNED_ANCESTORS_TTL_MILLIS_DEFAULT = 5000;
+
   /**
    * How often, in seconds, the list of active name nodes should be updated.
    */
@@ -297,7 +535,8 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int SERVERLESS_PURGE_INTERVAL_MILLISECONDS_DEFAULT = 60000; // 60 seconds.
 
   /**
-   * How long the worker thread should cache previously-computed results before purging them.
+   * How long NameNodes cache the results of write operations, so that a retransmitted write is answered with
+   * its original result rather than being executed again.
    */
   public static final String SERVERLESS_RESULT_CACHE_INTERVAL_MILLISECONDS =  "serverless.task.cacheinterval";
   public static final int SERVERLESS_RESULT_CACHE_INTERVAL_MILLISECONDS_DEFAULT = 30000; // 30 seconds.
@@ -309,10 +548,11 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int SERVERLESS_NUM_HANDLER_THREADS_DEFAULT = 3;
 
   /**
-   * Maximum of the previous results cache.
+   * Maximum number of write-operation results cached by a NameNode (see
+   * {@link #SERVERLESS_RESULT_CACHE_INTERVAL_MILLISECONDS}).
    */
   public static final String SERVERLESS_RESULT_CACHE_MAXIMUM_SIZE = "serverless.task.maxcachesize";
-  public static final int SERVERLESS_RESULT_CACHE_MAXIMUM_SIZE_DEFAULT = 100;
+  public static final int SERVERLESS_RESULT_CACHE_MAXIMUM_SIZE_DEFAULT = 10000;
 
   /**
    * Comma-delimited list of hostnames of ZooKeeper servers.
@@ -345,6 +585,22 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String SERVERLESS_ZOOKEEPER_SESSION_TIMEOUT = "serverless.zookeeper.sessiontimeout";
   public static final int SERVERLESS_ZOOKEEPER_SESSION_TIMEOUT_DEFAULT = 10000;
 
+  /**
+   * If true, then DataNodes notify NameNodes (via ZooKeeper) each time they publish an intermediate block report,
+   * and NameNodes only retrieve reports from the DataNodes that notified them, rather than querying intermediate
+   * storage for every DataNode on each heartbeat. Must be set to the same value on DataNodes and NameNodes.
+   */
+  public static final String SERVERLESS_IBR_NOTIFICATIONS_ENABLED = "serverless.ibr.notifications.enabled";
+  public static final boolean SERVERLESS_IBR_NOTIFICATIONS_ENABLED_DEFAULT = false;
+
+  /**
+   * When intermediate block report notifications are enabled, NameNodes still query intermediate storage for the
+   * reports of every DataNode this often (in milliseconds), in case a notification was missed (e.g., while the
+   * connection to ZooKeeper was lost).
+   */
+  public static final String SERVERLESS_IBR_FALLBACK_POLL_INTERVAL = "serverless.ibr.fallback-poll-interval";
+  public static final long SERVERLESS_IBR_FALLBACK_POLL_INTERVAL_DEFAULT = 30000;
+
   /**
    * Specifies whether to use ZooKeeper or NDB for storage during consistency protocol.
    */
@@ -361,6 +617,58 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String SERVERLESS_TRANSACTION_ACK_TIMEOUT = "serverless.tx.ack.timeout";
   public static final int SERVERLESS_TRANSACTION_ACK_TIMEOUT_DEFAULT = 20000;
 
+  /**
+   * If true, then concurrent write transactions on the same Leader NN that require ACKs are grouped together
+   * (i.e., "group commit"), and a single round of INVs/ACKs is performed on behalf of the entire group.
+   */
+  public static final String SERVERLESS_CONSISTENCY_BATCHING_ENABLED = "serverless.consistency.batching.enabled";
+  public static final boolean SERVERLESS_CONSISTENCY_BATCHING_ENABLED_DEFAULT = false;
+
+  /**
+   * How long, in microseconds, the first write transaction in a group waits for other transactions to join
+   * the group before the group's INVs are issued.
+   */
+  public static final String SERVERLESS_CONSISTENCY_BATCHING_WINDOW_MICROS = "serverless.consistency.batching.window-micros";
+  public static final long SERVERLESS_CONSISTENCY_BATCHING_WINDOW_MICROS_DEFAULT = 500;
+
+  /**
+   * Maximum number of write transactions whose INVs/ACKs are merged into a single round of the consistency protocol.
+   */
+  public static final String SERVERLESS_CONSISTENCY_BATCHING_MAX_SIZE = "serverless.consistency.batching.max-size";
+  public static final int SERVERLESS_CONSISTENCY_BATCHING_MAX_SIZE_DEFAULT = 64;
+
+  /**
+   * If true, then write transactions start the consistency protocol as soon as their locks are acquired, issuing
+   * INVs for every write-locked INode while in-memory processing is still going on. Before committing, they wait
+   * for those ACKs and run the protocol again for any modified INode that the early round did not cover. This
+   * shortens the time for which locks are held, at the cost of invalidating write-locked INodes that end up
+   * unmodified.
+   */
+  public static final String SERVERLESS_CONSISTENCY_PIPELINED = "serverless.consistency.pipelined.enabled";
+  public static final boolean SERVERLESS_CONSISTENCY_PIPELINED_DEFAULT = false;
+
+  /**
+   * If true, then every INode cached by a NameNode is covered by a time-bounded read lease. A cached INode is
+   * only served until its lease expires (leases are granted when the INode is cached and are NOT renewed by
+   * cache hits). Leader NNs then never need to wait longer than the lease duration for ACKs, since any follower
+   * that has not ACK'd by then can no longer be serving the old version of the INode.
+   */
+  public static final String SERVERLESS_CACHE_LEASES_ENABLED = "serverless.metadatacache.leases.enabled";
+  public static final boolean SERVERLESS_CACHE_LEASES_ENABLED_DEFAULT = false;
+
+  /**
+   * Duration of a read lease, in milliseconds.
+   */
+  public static final String SERVERLESS_CACHE_LEASE_DURATION_MILLISECONDS = "serverless.metadatacache.leases.duration";
+  public static final int SERVERLESS_CACHE_LEASE_DURATION_MILLISECONDS_DEFAULT = 500;
+
+  /**
+   * Extra time, in milliseconds, that a Leader NN waits beyond the lease duration to account for delays in
+   * delivering INVs and for drift between the clocks of different NameNodes.
+   */
+  public static final String SERVERLESS_CACHE_LEASE_MARGIN_MILLISECONDS = "serverless.metadatacache.leases.margin";
+  public static final int SERVERLESS_CACHE_LEASE_MARGIN_MILLISECONDS_DEFAULT = 50;
+
   /**
    * Local mode is used for debugging. In local mode, one NameNode will be deployed locally
    * so that we can profile its memory.
@@ -386,6 +694,14 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String SERVERLESS_LATENCY_WINDOW_SIZE = "serverless.latency.windowsize";
   public static final int SERVERLESS_LATENCY_WINDOW_SIZE_DEFAULT = 50;
 
+  /**
+   * If true, then clients keep every request latency in addition to the latency histograms. This takes memory
+   * proportional to the number of requests, and is only needed by callers of the deprecated
+   * {@code getLatencyStatistics()} family of methods.
+   */
+  public static final String SERVERLESS_LATENCY_RAW_SAMPLES = "serverless.latency.raw-samples.enabled";
+  public static final boolean SERVERLESS_LATENCY_RAW_SAMPLES_DEFAULT = false;
+
   /**
    * OpenWhisk uses an authorization string for HTTP requests. We need this string if we're using the OpenWhisk platform.
    */
@@ -405,6 +721,22 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String SERVERLESS_SUBTREE_DELETE_BATCH_SIZE_LARGE = "serverless.subtree.delete.batchsize.large";
   public static final int SERVERLESS_SUBTREE_DELETE_BATCH_SIZE_LARGE_DEFAULT = 16384;
 
+  /**
+   * If true, then the files of a directory with more than dfs.dir.delete.batch.size children are deleted in batches
+   * of serverless.subtree.delete.batchsize paths (serverless.subtree.delete.batchsize.large for very large
+   * directories), which are offloaded to the NameNodes of the other deployments as they are produced.
+   */
+  public static final String SERVERLESS_SUBTREE_DELETE_OFFLOAD_ENABLED = "serverless.subtree.delete.offload.enabled";
+  public static final boolean SERVERLESS_SUBTREE_DELETE_OFFLOAD_ENABLED_DEFAULT = false;
+
+  /**
+   * The maximum number of batches of subtree deletes that a NameNode offloads to other deployments at a time, across
+   * all of its subtree deletes. Batches produced while that many are outstanding are deleted locally instead.
+   */
+  public static final String SERVERLESS_SUBTREE_DELETE_MAX_OFFLOADED_BATCHES =
+      "serverless.subtree.delete.max-offloaded-batches";
+  public static final int SERVERLESS_SUBTREE_DELETE_MAX_OFFLOADED_BATCHES_DEFAULT = 16;
+
   /**
    * When enabled, we "spoof" network operations to NDB. This is expected to be done exclusively
    * with file read operations. We basically just return a hard-coded {@link LocatedBlocks} object.
@@ -451,6 +783,15 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int DFS_NAMENODE_QUOTA_UPDATE_ID_BATCH_SIZ_DEFAULT = 100000;
   public static final String DFS_NAMENODE_QUOTA_UPDATE_ID_UPDATE_THRESHOLD = "dfs.namenode.quota.update.updateThreshold";
   public static final float DFS_NAMENODE_QUOTA_UPDATE_ID_UPDATE_THRESHOLD_DEFAULT = (float) 0.5;
+  /**
+   * If true (and quota is enabled), the length of every file is propagated to its ancestors through the quota
+   * update pipeline, and getContentSummary on a directory with a quota (an unlimited one is enough) reads the
+   * aggregated counts from that directory's quota row instead of walking its subtree. The result may lag the
+   * namespace by the quota update interval. Quotas set while this was false must be cleared and set again.
+   */
+  public static final String DFS_NAMENODE_CONTENT_SUMMARY_AGGREGATES_ENABLED_KEY =
+      "dfs.namenode.content-summary.aggregates.enabled";
+  public static final boolean DFS_NAMENODE_CONTENT_SUMMARY_AGGREGATES_ENABLED_DEFAULT = false;
 
   //NN batches
   public static final String DFS_NAMENODE_INODEID_BATCH_SIZE = "dfs.namenode.inodeid.batchsize";
@@ -545,6 +886,18 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
 
   public static final String DFS_SUBTREE_EXECUTOR_LIMIT_KEY = "dfs.namenode.subtree-executor-limit";
   public static final int DFS_SUBTREE_EXECUTOR_LIMIT_DEFAULT = 80;
+  /**
+   * The maximum number of threads with which a NameNode reads the directories of the subtrees of subtree operations,
+   * across all of its subtree operations. Each thread uses one NDB session at a time.
+   */
+  public static final String DFS_SUBTREE_COLLECTOR_PARALLELISM_KEY = "dfs.namenode.subtree-collector.parallelism";
+  public static final int DFS_SUBTREE_COLLECTOR_PARALLELISM_DEFAULT = 16;
+  /**
+   * The maximum number of directories of the same tree level whose children are read with a single NDB query when
+   * walking the subtree of a subtree operation.
+   */
+  public static final String DFS_SUBTREE_COLLECTOR_BATCH_SIZE_KEY = "dfs.namenode.subtree-collector.batch-size";
+  public static final int DFS_SUBTREE_COLLECTOR_BATCH_SIZE_DEFAULT = 16;
 
   public static final String DFS_SUBTREE_CLEAN_FAILED_OPS_LOCKS_DELAY_KEY = "dfs.subtree.clean.failed.ops.locks.delay";
   public static final long DFS_SUBTREE_CLEAN_FAILED_OPS_LOCKS_DELAY_DEFAULT = 10*1000*60; //Reclaim locks after 10 mins
@@ -729,6 +1082,14 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   
   public static final String  DFS_LIST_LIMIT = "dfs.ls.limit";
   public static final int     DFS_LIST_LIMIT_DEFAULT = Integer.MAX_VALUE; //1000; [HopsFS] Jira Hops-45
+  /**
+   * If true, getListing reads only the dfs.ls.limit children following startAfter with a range scan of the
+   * (parent_id, name) index, and locks only those, instead of reading and locking every child of the directory.
+   * Entries are then returned in index order. It has no effect unless dfs.ls.limit is set, nor on directories
+   * whose children are randomly partitioned.
+   */
+  public static final String  DFS_NAMENODE_LIST_RANGE_SCAN_ENABLED_KEY = "dfs.namenode.list.range-scan.enabled";
+  public static final boolean DFS_NAMENODE_LIST_RANGE_SCAN_ENABLED_DEFAULT = false;
   public static final String  DFS_CONTENT_SUMMARY_LIMIT_KEY = "dfs.content-summary.limit";
   public static final int     DFS_CONTENT_SUMMARY_LIMIT_DEFAULT = 5000;
   public static final String  DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_KEY = "dfs.content-summary.sleep-microsec";
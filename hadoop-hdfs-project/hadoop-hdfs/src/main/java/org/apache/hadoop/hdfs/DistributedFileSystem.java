@@ -73,6 +73,7 @@
 import org.apache.hadoop.hdfs.security.token.block.InvalidBlockTokenException;
 import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenIdentifier;
 import org.apache.hadoop.hdfs.server.namenode.ServerlessNameNode;
+import org.apache.hadoop.hdfs.serverless.invoking.LatencyHistogram;
 import io.hops.metrics.OperationPerformed;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.security.AccessControlException;
@@ -1346,18 +1347,50 @@ public void clearLatencyValues() {
     dfs.clearLatencyValues();
   }
 
+  @Deprecated
   public DescriptiveStatistics getLatencyStatistics() {
     return dfs.getLatencyStatistics();
   }
 
+  @Deprecated
   public DescriptiveStatistics getLatencyHttpStatistics() {
     return dfs.getLatencyHttpStatistics();
   }
 
+  @Deprecated
   public DescriptiveStatistics getLatencyTcpStatistics() {
     return dfs.getLatencyTcpStatistics();
   }
 
+  /**
+   * Used for merging the latency histograms of other clients into a master client that we use for book-keeping.
+   * @param tcpLatencies Histogram of the latencies of TCP requests.
+   * @param httpLatencies Histogram of the latencies of HTTP requests.
+   */
+  public void addLatencies(LatencyHistogram tcpLatencies, LatencyHistogram httpLatencies) {
+    dfs.addLatencies(tcpLatencies, httpLatencies);
+  }
+
+  public LatencyHistogram getLatencyHistogram() {
+    return dfs.getLatencyHistogram();
+  }
+
+  public LatencyHistogram getLatencyHistogramTcp() {
+    return dfs.getLatencyHistogramTcp();
+  }
+
+  public LatencyHistogram getLatencyHistogramHttp() {
+    return dfs.getLatencyHistogramHttp();
+  }
+
+  public Map<String, LatencyHistogram> getOperationLatencyHistogramsTcp() {
+    return dfs.getOperationLatencyHistogramsTcp();
+  }
+
+  public Map<String, LatencyHistogram> getOperationLatencyHistogramsHttp() {
+    return dfs.getOperationLatencyHistogramsHttp();
+  }
+
   @Override
   public void close() throws IOException {
     try {
@@ -41,6 +41,7 @@
 import org.apache.hadoop.hdfs.serverless.invoking.ArgumentContainer;
 import org.apache.hadoop.hdfs.serverless.invoking.ServerlessInvokerBase;
 import org.apache.hadoop.hdfs.serverless.invoking.ServerlessInvokerFactory;
+import org.apache.hadoop.hdfs.serverless.zookeeper.ZKClient;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.ipc.RemoteException;
 import org.apache.hadoop.util.Time;
@@ -52,8 +53,6 @@
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 
-import static org.apache.hadoop.hdfs.serverless.invoking.InvokerUtilities.serializableToBase64String;
-
 /**
  * A thread per active or standby namenode to perform:
  * <ul>
@@ -724,7 +723,7 @@ public void blockReceivedAndDeleted(DatanodeRegistration registration,
 //    oos.close();
 //    String encoded = Base64.getEncoder().encodeToString(baos.toByteArray());
 
-    String encoded = serializableToBase64String(receivedAndDeletedBlocks);
+    String encoded = IntermediateBlockReportCodec.encode(receivedAndDeletedBlocks);
 
     int reportId = dn.getAndIncrementIntermediateBlockReportCounter();
     LOG.info("Storing intermediate block report " + reportId + " in intermediate storage now...");
@@ -733,6 +732,17 @@ public void blockReceivedAndDeleted(DatanodeRegistration registration,
 
     LOG.info("Successfully stored intermediate block report " + reportId + " in intermediate storage.");
 
+    // Let the NameNodes know that there is a new report to retrieve. If this fails, the NameNodes will still
+    // find the report the next time they poll intermediate storage for it.
+    ZKClient notifier = dn.getBlockReportNotifier();
+    if (notifier != null) {
+      try {
+        notifier.notifyBlockReportPublished(registration.getDatanodeUuid(), reportId);
+      } catch (Exception ex) {
+        LOG.warn("Failed to notify NameNodes of intermediate block report " + reportId + ":", ex);
+      }
+    }
+
     /*if (bpNamenode != null) {
       bpNamenode.blockReceivedAndDeleted(registration, poolId,
           receivedAndDeletedBlocks);
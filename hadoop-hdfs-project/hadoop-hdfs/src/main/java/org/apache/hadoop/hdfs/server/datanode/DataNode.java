@@ -222,6 +222,8 @@
 import org.apache.hadoop.hdfs.protocol.NSQuotaExceededException;
 import org.apache.hadoop.hdfs.protocol.UnresolvedPathException;
 import org.apache.hadoop.hdfs.server.namenode.NotReplicatedYetException;
+import org.apache.hadoop.hdfs.serverless.zookeeper.SyncZKClient;
+import org.apache.hadoop.hdfs.serverless.zookeeper.ZKClient;
 
 /**
  * *******************************************************
@@ -272,6 +274,12 @@ public class DataNode extends ReconfigurableBase
    */
   private volatile int intermediateBlockReportCounter = 0;
 
+  /**
+   * Used to notify NameNodes each time we publish an intermediate block report. Created when the DataNode starts,
+   * and only if {@link DFSConfigKeys#SERVERLESS_IBR_NOTIFICATIONS_ENABLED} is true.
+   */
+  private volatile ZKClient blockReportNotifier;
+
   static {
     HdfsConfiguration.init();
   }
@@ -525,6 +533,14 @@ public synchronized int getAndIncrementIntermediateBlockReportCounter() {
     return tmp;
   }
 
+  /**
+   * Return the client used to notify NameNodes of newly-published intermediate block reports, or null if such
+   * notifications are disabled.
+   */
+  public ZKClient getBlockReportNotifier() {
+    return blockReportNotifier;
+  }
+
   /**
    * Increments the `storageReportGroupCounter` instance variable and returns the value of this variable
    * BEFORE it was incremented during this method's execution.
@@ -1315,6 +1331,15 @@ void startDataNode(Configuration conf, AbstractList<StorageLocation> dataDirs,
     LOG.info("supergroup = " + supergroup);
     initIpcServer(conf);
 
+    // Connect to ZooKeeper before the BPServiceActors start publishing intermediate block reports. This is done
+    // here rather than on first use, so that no thread connects while holding the DataNode's monitor.
+    if (conf.getBoolean(DFSConfigKeys.SERVERLESS_IBR_NOTIFICATIONS_ENABLED,
+            DFSConfigKeys.SERVERLESS_IBR_NOTIFICATIONS_ENABLED_DEFAULT)) {
+      ZKClient notifier = new SyncZKClient(conf);
+      notifier.connect();
+      blockReportNotifier = notifier;
+    }
+
     metrics = DataNodeMetrics.create(conf, getDisplayName());
     
     metrics.getJvmMetrics().setPauseMonitor(pauseMonitor);
@@ -2017,6 +2042,12 @@ private void checkBlockToken(ExtendedBlock block,
   public void shutdown() {
     LOG.debug("Shutting down the DataNode.");
 
+    ZKClient notifier = blockReportNotifier;
+    if (notifier != null) {
+      blockReportNotifier = null;
+      notifier.close();
+    }
+
     if (plugins != null) {
       for (ServicePlugin p : plugins) {
         try {
@@ -47,7 +47,10 @@
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 
 import io.hops.metadata.hdfs.dal.DirectoryWithQuotaFeatureDataAccess;
 import org.apache.hadoop.fs.StorageType;
@@ -90,30 +93,70 @@ public static class BuildingUpFileTreeFailedException extends IOException {
     }
   }
   
-  private class ChildCollector implements Runnable {
-    private final ProjectedINode parent;
-    private final short depth; //this is the depth of the inode in the file system tree
+  /**
+   * A directory whose children are to be collected, along with what its children inherit from it.
+   */
+  private static class CollectedDirectory {
+    private final ProjectedINode inode;
+    private final List<AclEntry> inheritedDefaultsAsAccess;
+    private final byte inheritedStoragePolicy;
+
+    private CollectedDirectory(ProjectedINode inode, List<AclEntry> inheritedDefaultsAsAccess,
+        byte inheritedStoragePolicy) {
+      this.inode = inode;
+      this.inheritedDefaultsAsAccess = inheritedDefaultsAsAccess;
+      this.inheritedStoragePolicy = inheritedStoragePolicy;
+    }
+  }
+
+  /**
+   * Collects the children of a batch of directories of the same tree level, reading them with a single query, and
+   * forks the collection of the child directories in the pool of the worker thread, which other idle workers steal
+   * from.
+   */
+  private class ChildCollector extends RecursiveAction {
+    private final List<CollectedDirectory> parents;
+    private final short depth; //this is the depth of the parent inodes in the file system tree
     private final int level;
-    private List<AclEntry> inheritedDefaultsAsAccess;
     private BlockStoragePolicySuite bsps;
-    private final byte inheritedStoragePolicy;
     
-    private ChildCollector(ProjectedINode parent, short depth, int level, List<AclEntry> inheritedDefaultsAsAccess,
-        BlockStoragePolicySuite bsps, byte inheritedStoragePolicy) {
-      this.parent = parent;
+    private ChildCollector(List<CollectedDirectory> parents, short depth, int level, BlockStoragePolicySuite bsps) {
+      this.parents = parents;
       this.level = level;
       this.depth = depth;
-      this.inheritedDefaultsAsAccess = inheritedDefaultsAsAccess;
       this.bsps = bsps;
-      this.inheritedStoragePolicy = inheritedStoragePolicy;
 
-      int parentDeployment = instance.getMappedDeploymentNumber(parent.getId());
-      // LOG.debug("Parent INode " + parent.toString() + " is mapped to deployment " + parentDeployment);
-      associatedDeployments.add(parentDeployment);
+      for (CollectedDirectory parent : parents) {
+        int parentDeployment = instance.getMappedDeploymentNumber(parent.inode.getId());
+        // LOG.debug("Parent INode " + parent.toString() + " is mapped to deployment " + parentDeployment);
+        associatedDeployments.add(parentDeployment);
+      }
+    }
+
+    private List<ProjectedINode> findChildren(INodeDataAccess<INode> dataAccess) throws StorageException {
+      if (parents.size() == 1) {
+        long parentId = parents.get(0).inode.getId();
+        if (INode.isTreeLevelRandomPartitioned(depth)) {
+          return dataAccess.findInodesFTISTx(parentId, EntityContext.LockMode.READ_COMMITTED);
+        } else {
+          //then the partitioning key is the parent id
+          return dataAccess.findInodesPPISTx(parentId, parentId, EntityContext.LockMode.READ_COMMITTED);
+        }
+      }
+
+      long[] parentIds = new long[parents.size()];
+      for (int i = 0; i < parentIds.length; i++) {
+        parentIds[i] = parents.get(i).inode.getId();
+      }
+      if (INode.isTreeLevelRandomPartitioned(depth)) {
+        return dataAccess.findInodesFTISTx(parentIds, EntityContext.LockMode.READ_COMMITTED);
+      } else {
+        return dataAccess.findInodesPPISTx(parentIds, EntityContext.LockMode.READ_COMMITTED);
+      }
     }
     
     @Override
-    public void run() {
+    protected void compute() {
       LightWeightRequestHandler handler =
           new LightWeightRequestHandler(HDFSOperationType.GET_CHILD_INODES) {
             @Override
@@ -121,41 +164,40 @@ public Object performTask() throws StorageException, IOException {
               INodeDataAccess<INode> dataAccess =
                   (INodeDataAccess) HdfsStorageFactory
                       .getDataAccess(INodeDataAccess.class);
-              List<ProjectedINode> children = Collections.EMPTY_LIST;
-              if (INode.isTreeLevelRandomPartitioned(depth)) {
-                children = dataAccess.findInodesFTISTx(parent.getId(),
-                        EntityContext.LockMode.READ_COMMITTED);
-              } else {
-                //then the partitioning key is the parent id
-                children = dataAccess.findInodesPPISTx(parent.getId(), parent.getId(),
-                        EntityContext.LockMode.READ_COMMITTED);
-              }
+              List<ProjectedINode> children = findChildren(dataAccess);
 
               //locking with FTIS and PPIS is not a good idea. See JIRA HOPS-458
               //using batch operations to lock the children
               lockInodesUsingBatchOperation(children, dataAccess);
 
+              Map<Long, CollectedDirectory> parentsById = new HashMap<>();
+              for (CollectedDirectory parent : parents) {
+                parentsById.put(parent.inode.getId(), parent);
+              }
+
               Map<ProjectedINode, List<AclEntry>> acls = new HashMap<>();
               for (ProjectedINode child : children) {
+                CollectedDirectory parent = parentsById.get(child.getParentId());
                 if (namesystem.isPermissionEnabled() && subAccess != null && child.isDirectory()) {
                   List<AclEntry> inodeAclNoTransaction = INodeUtil.getInodeOwnAclNoTransaction(child);
                   acls.put(child, inodeAclNoTransaction);
                   List<INode> cList = INodeUtil.getChildrenListNotTransactional(child.getId(), depth+1);
                   if (!(cList.isEmpty() && ignoreEmptyDir)) {
                     if (inodeAclNoTransaction.isEmpty()) {
-                      checkAccess(child, subAccess, asAccessEntries(inheritedDefaultsAsAccess));
+                      checkAccess(child, subAccess, asAccessEntries(parent.inheritedDefaultsAsAccess));
                     } else {
                       checkAccess(child, subAccess, inodeAclNoTransaction);
                     }
                   }
                 }
-                addChildNode(parent, level, child, bsps, inheritedStoragePolicy);
+                addChildNode(parent.inode, level, child, bsps, parent.inheritedStoragePolicy);
               }
   
               if (exception != null) {
                 return null;
               }
   
+              List<CollectedDirectory> childDirectories = new ArrayList<>();
               for (ProjectedINode child : children) {
                 List<ActiveNode> activeNamenodes = namesystem.getNameNode().
                     getActiveNameNodes().getActiveNodes();
@@ -178,14 +220,22 @@ public Object performTask() throws StorageException, IOException {
                   int associatedDeployment = instance.getMappedDeploymentNumber(child.getId());
                   associatedDeployments.add(associatedDeployment);
 
-                  byte storagePolicy = inheritedStoragePolicy;
+                  CollectedDirectory parent = parentsById.get(child.getParentId());
+                  byte storagePolicy = parent.inheritedStoragePolicy;
                   if (child.getStoragePolicyID() != HdfsConstantsClient.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED) {
                     storagePolicy = child.getStoragePolicyID();
                   }
-                  collectChildren(child, ((short) (depth + 1)), level + 1, newDefaults.isEmpty()
-                      ? inheritedDefaultsAsAccess : newDefaults, bsps, storagePolicy);
+                  childDirectories.add(new CollectedDirectory(child, newDefaults.isEmpty()
+                      ? parent.inheritedDefaultsAsAccess : newDefaults, storagePolicy));
+                  if (childDirectories.size() >= namesystem.getSubtreeCollectorBatchSize()) {
+                    collectChildren(childDirectories, ((short) (depth + 1)), level + 1, bsps);
+                    childDirectories = new ArrayList<>();
+                  }
                 }
               }
+              if (!childDirectories.isEmpty()) {
+                collectChildren(childDirectories, ((short) (depth + 1)), level + 1, bsps);
+              }
               return null;
             }
           };
@@ -257,7 +307,8 @@ public AbstractFileTree(FSNamesystem namesystem, INodeIdentifier subtreeRootId,
     this.subtreeRootDefaultEntries = subtreeRootDefaultEntries;
     this.inheritedStoragePolicy = inheritedStoragePolicy;
 
-    this.associatedDeployments = new HashSet<>();
+    // Collectors of several directories add to this concurrently.
+    this.associatedDeployments = ConcurrentHashMap.newKeySet();
     this.instance = ServerlessNameNode.tryGetNameNodeInstance(true);
   }
 
@@ -287,8 +338,8 @@ public void buildUp(BlockStoragePolicySuite bsps) throws IOException {
     }
     
     
-    collectChildren(newProjectedInode(subtreeRoot, 0), subtreeRootId.getDepth(), 2, subtreeRootDefaultEntries, bsps,
-        inheritedStoragePolicy);
+    collectChildren(Collections.singletonList(new CollectedDirectory(newProjectedInode(subtreeRoot, 0),
+        subtreeRootDefaultEntries, inheritedStoragePolicy)), subtreeRootId.getDepth(), 2, bsps);
     while (true) {
       try {
         Future future = activeCollectors.poll();
@@ -378,10 +429,18 @@ public Object performTask() throws IOException {
     }.handle(this);
   }
   
-  private void collectChildren(ProjectedINode parent, short depth, int level, List<AclEntry> inheritedDefaults,
-      BlockStoragePolicySuite bsps, byte inheritedStoragePolicy) {
-    activeCollectors.add(namesystem.getFSOperationsExecutor().
-        submit(new ChildCollector(parent, depth, level, inheritedDefaults, bsps, inheritedStoragePolicy)));
+  private void collectChildren(List<CollectedDirectory> parents, short depth, int level,
+      BlockStoragePolicySuite bsps) {
+    ChildCollector collector = new ChildCollector(parents, depth, level, bsps);
+    activeCollectors.add(collector);
+
+    ForkJoinPool pool = namesystem.getSubtreeCollectorPool();
+    Thread currentThread = Thread.currentThread();
+    if (currentThread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) currentThread).getPool() == pool) {
+      collector.fork();
+    } else {
+      pool.execute(collector);
+    }
   }
   
   /**
@@ -437,15 +496,18 @@ protected void addNode(final ProjectedINode node, BlockStoragePolicySuite bsps,
       if (node.isDirectory()) {
         counts.addContent(Content.DIRECTORY, 1);
         usedCounts.addNameSpace(1);
+        usedCounts.addDirectoryCount(1);
       } else if (node.isSymlink()) {
         counts.addContent(Content.SYMLINK, 1);
         usedCounts.addNameSpace(1);
+        usedCounts.addSymlinkCount(1);
       } else {
         counts.addContent(Content.FILE, 1);
         counts.addContent(Content.LENGTH, node.getFileSize());
         counts.addContent(Content.DISKSPACE, node.getFileSize() * INode.HeaderFormat.getReplication(node.getHeader()));
         usedCounts.addStorageSpace(node.getFileSize() * INode.HeaderFormat.getReplication(node.getHeader()));
         usedCounts.addNameSpace(1);
+        usedCounts.addLength(node.getFileSize());
         byte storagePolicy = node.getStoragePolicyID();
         if (storagePolicy == HdfsConstantsClient.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED) {
           storagePolicy = inheritedStoragePolicy;
@@ -526,9 +588,15 @@ public Object performTask() throws StorageException, IOException {
           QuotaCounts fileCounts = new QuotaCounts.Builder().build();
           fileCounts = INodeFile.computeQuotaUsage(bsps, inheritedStoragePolicy,
               ssDeltaNoReplication, replication, fileCounts);
+          fileCounts.addLength(node.getFileSize());
           quotaCounts.add(fileCounts);
         } else {
           quotaCounts.addNameSpace(1);
+          if (node.isDirectory()) {
+            quotaCounts.addDirectoryCount(1);
+          } else {
+            quotaCounts.addSymlinkCount(1);
+          }
         }
       }
     }
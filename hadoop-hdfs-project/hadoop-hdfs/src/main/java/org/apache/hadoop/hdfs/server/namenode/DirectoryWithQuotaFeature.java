@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hdfs.server.namenode;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.hadoop.fs.StorageType;
 import io.hops.exception.StorageException;
 import io.hops.exception.TransactionContextException;
@@ -65,6 +66,13 @@ public Annotation getAnnotated() {
   public static final long DEFAULT_NAMESPACE_QUOTA = Long.MAX_VALUE;
   public static final long DEFAULT_STORAGE_SPACE_QUOTA = HdfsConstants.QUOTA_RESET;
 
+  /**
+   * The directory count, symlink count and length of a quota row whose content
+   * aggregates were never computed, e.g., because the row was created before
+   * the aggregate columns were added to the schema.
+   */
+  public static final long UNINITIALIZED_AGGREGATE = -1;
+
   private QuotaCounts quota;
   private QuotaCounts usage;
   private Long inodeId;
@@ -79,7 +87,7 @@ public Builder(Long inodeId) {
       this.quota = new QuotaCounts.Builder().nameSpace(DEFAULT_NAMESPACE_QUOTA).
           storageSpace(DEFAULT_STORAGE_SPACE_QUOTA).
           typeSpaces(DEFAULT_STORAGE_SPACE_QUOTA).build();
-      this.usage = new QuotaCounts.Builder().nameSpace(1).build();
+      this.usage = new QuotaCounts.Builder().nameSpace(1).directoryCount(1).build();
     }
 
     public Builder nameSpaceQuota(long nameSpaceQuota) {
@@ -112,6 +120,21 @@ public Builder spaceUsage(long spaceQuota) {
       return this;
     }
 
+    public Builder directoryUsage(long directoryCount) {
+      this.usage.setDirectoryCount(directoryCount);
+      return this;
+    }
+
+    public Builder symlinkUsage(long symlinkCount) {
+      this.usage.setSymlinkCount(symlinkCount);
+      return this;
+    }
+
+    public Builder lengthUsage(long length) {
+      this.usage.setLength(length);
+      return this;
+    }
+
     public Builder typeUsages(EnumCounters<StorageType> typeQuotas) {
       this.usage.setTypeSpaces(typeQuotas);
       return this;
@@ -256,10 +279,37 @@ void addSpaceConsumed(final INodeDirectory dir, final QuotaCounts counts)
    * @param delta the change of the namespace/space/type usage
    */
   public void addSpaceConsumed2Cache(QuotaCounts delta) throws TransactionContextException, StorageException {
-    usage.add(delta);
+    applySpaceConsumed(delta);
     save();
   }
 
+  /**
+   * Apply the given change of usage without saving it. Uninitialized
+   * aggregates stay uninitialized.
+   */
+  @VisibleForTesting
+  void applySpaceConsumed(QuotaCounts delta) {
+    boolean aggregatesInitialized = hasAggregates();
+    usage.add(delta);
+    if (!aggregatesInitialized) {
+      // Deltas only make sense on top of computed aggregates. They are set
+      // when the usage is recomputed, i.e., when the quota is set again.
+      usage.setDirectoryCount(UNINITIALIZED_AGGREGATE);
+      usage.setSymlinkCount(UNINITIALIZED_AGGREGATE);
+      usage.setLength(UNINITIALIZED_AGGREGATE);
+    }
+  }
+
+  /**
+   * @return true if the directory count, symlink count and length of the
+   * subtree have been computed, and are maintained by the quota updates.
+   */
+  public boolean hasAggregates() {
+    return usage.getDirectoryCount() != UNINITIALIZED_AGGREGATE &&
+        usage.getSymlinkCount() != UNINITIALIZED_AGGREGATE &&
+        usage.getLength() != UNINITIALIZED_AGGREGATE;
+  }
+
   /** 
    * Sets namespace and storagespace take by the directory rooted
    * at this INode. This should be used carefully. It does not check 
@@ -281,6 +331,9 @@ void setSpaceConsumed(QuotaCounts c) {
     usage.setNameSpace(c.getNameSpace());
     usage.setStorageSpace(c.getStorageSpace());
     usage.setTypeSpaces(c.getTypeSpaces());
+    usage.setDirectoryCount(c.getDirectoryCount());
+    usage.setSymlinkCount(c.getSymlinkCount());
+    usage.setLength(c.getLength());
   }
 
   /** @return the namespace and storagespace and typespace consumed. */
@@ -598,7 +598,16 @@ static INodeDirectory unprotectedSetQuota(
       }
       
       if (!dirNode.isRoot()) {
-        dirNode.setQuota(fsd.getBlockStoragePolicySuite(), nsQuota, ssQuota, fileTreeUsage, type);
+        QuotaCounts usage = fileTreeUsage;
+        if (usage != null && !fsd.isContentSummaryAggregatesEnabled()) {
+          // File lengths are only tracked with aggregates enabled, so the
+          // aggregates of this row would go stale if it were enabled later.
+          usage = new QuotaCounts.Builder().quotaCount(fileTreeUsage).
+              directoryCount(DirectoryWithQuotaFeature.UNINITIALIZED_AGGREGATE).
+              symlinkCount(DirectoryWithQuotaFeature.UNINITIALIZED_AGGREGATE).
+              length(DirectoryWithQuotaFeature.UNINITIALIZED_AGGREGATE).build();
+        }
+        dirNode.setQuota(fsd.getBlockStoragePolicySuite(), nsQuota, ssQuota, usage, type);
         INodeDirectory parent = (INodeDirectory) iip.getINode(-2);
         parent.replaceChild(dirNode); //to update db?
       }
@@ -17,7 +17,7 @@
  */
 package org.apache.hadoop.hdfs.server.namenode;
 
-import com.google.gson.JsonObject;
+import com.google.common.annotations.VisibleForTesting;
 import io.hops.metadata.hdfs.entity.*;
 import io.hops.transaction.handler.HDFSOperationType;
 import io.hops.transaction.handler.HopsTransactionalRequestHandler;
@@ -36,8 +36,6 @@
 import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.hdfs.server.namenode.INode.BlocksMapUpdateInfo;
 import org.apache.hadoop.hdfs.serverless.BaseHandler;
-import org.apache.hadoop.hdfs.serverless.invoking.ArgumentContainer;
-import org.apache.hadoop.hdfs.serverless.invoking.ServerlessInvokerBase;
 import org.apache.hadoop.hdfs.serverless.consistency.ConsistencyProtocol;
 import org.apache.hadoop.ipc.RetriableException;
 import org.apache.hadoop.ipc.Server;
@@ -61,6 +59,12 @@ class FSDirDeleteOp {
   public static int SUBTREE_DELETE_BATCH_SIZE;
   public static int SUBTREE_DELETE_BATCH_SIZE_LARGE;
 
+  /**
+   * The number of deletes of a tree level that may be outstanding before we wait for the oldest ones to complete.
+   */
+  @VisibleForTesting
+  static final int MAX_PENDING_DELETES = 16384;
+
   /**
    * Delete the target directory and collect the blocks under it
    *
@@ -233,7 +237,8 @@ static boolean delete(
 //    }
 //  }
 
-  private static boolean deleteTreeLevel(final FSNamesystem fsn, final String subtreeRootPath, final long subTreeRootID,
+  @VisibleForTesting
+  static boolean deleteTreeLevel(final FSNamesystem fsn, final String subtreeRootPath, final long subTreeRootID,
                                         final AbstractFileTree.FileTree fileTree, int level) throws IOException {
     // if (LOG.isDebugEnabled()) LOG.debug("Deleting tree level " + level + " of tree rooted at " + subtreeRootPath + " (ID = " +subTreeRootID + ") now...");
     LOG.info("Deleting tree level " + level + " of tree rooted at " + subtreeRootPath + " (ID = " +subTreeRootID + ") now...");
@@ -254,30 +259,23 @@ private static boolean deleteTreeLevel(final FSNamesystem fsn, final String subt
 
         Future f = multiTransactionDeleteInternal(fsn, path, subTreeRootID);
         barrier.add(f);
+        if (!drainBarrier(barrier))
+          return false;
       }
       else { // Cannot delete directory. So, delete contents of directory one-by-one.
         // Delete the content of the directory one by one.
         LOG.info("Directory " + dir.getId() + " has too many child files (" + numChildren +
                 "). Deleting content of directory one-by-one.");
-        ServerlessNameNode instance = ServerlessNameNode.tryGetNameNodeInstance(false);
-
-        int BATCH_SIZE;
-
-        // Depending on how large the directory is, we'll use a different batch size.
-        if (numChildren >= 131072)
-          BATCH_SIZE = Integer.MAX_VALUE; // SUBTREE_DELETE_BATCH_SIZE_LARGE;
-        else
-          BATCH_SIZE = Integer.MAX_VALUE; // SUBTREE_DELETE_BATCH_SIZE;
+        SubtreeDeletePipeline pipeline = fsn.getSubtreeDeletePipeline();
 
-        // If we cannot get the instance for some reason (shouldn't happen), or if there just aren't enough files
-        // to batch across multiple NNs, then we'll perform the delete operations locally.
-        if (instance == null || numChildren <= BATCH_SIZE) {
+        // If offloading is disabled, or if there just aren't enough files to batch across multiple NNs, then we'll
+        // perform the delete operations locally.
+        if (pipeline == null || BaseHandler.localModeEnabled || numChildren <= SUBTREE_DELETE_BATCH_SIZE) {
           // These if statements are just to determine what message to log.
-          if (instance == null)
-            LOG.error("Cannot retrieve singleton ServerlessNameNode instance for batched subtree delete.");
+          if (BaseHandler.localModeEnabled)
+            LOG.warn("LocalMode is enabled. We cannot offload to other NNs. Must complete operation locally.");
           else
-          LOG.info("There are not enough files to batch across multiple NNs (Performing all deletes locally.");
-            // if (LOG.isDebugEnabled()) LOG.debug("There are not enough files to batch across multiple NNs (Performing all deletes locally.");
+            LOG.info("Not offloading deletes to other NNs (Performing all deletes locally).");
 
           for (final ProjectedINode inode : children) {
             if (LOG.isDebugEnabled()) LOG.debug("    Trying to delete child INode " + inode.getName() + " (id=" + inode.getId() + ").");
@@ -285,132 +283,45 @@ private static boolean deleteTreeLevel(final FSNamesystem fsn, final String subt
               final String path = fileTree.createAbsolutePath(subtreeRootPath, inode);
               Future f = multiTransactionDeleteInternal(fsn, path, subTreeRootID);
               barrier.add(f);
+              if (!drainBarrier(barrier))
+                return false;
             }
           }
         }
         else {
-          List<String[]> batches = new ArrayList<>();
-          String[] currentBatch = new String[BATCH_SIZE];
-
-//          if (LOG.isDebugEnabled()) LOG.debug("Splitting the " + numChildren + " child files into " +
-//                  numChildren / BATCH_SIZE + " batches of size ~" + BATCH_SIZE + ".");
-
-          LOG.info("Splitting the " + numChildren + " child files into " +
-                  numChildren / BATCH_SIZE + " batches of size ~" + BATCH_SIZE + ".");
-
-          // Create batches of paths of size 'BATCH_SIZE'.
-          // We will partition these batches across multiple other NameNodes in order to complete them in-parallel.
-          // I do this manually rather than using the `partition` function from commons.collections or Guava so that
-          // we can construct the paths for the various nodes as we go.
-          int idx = 0;
-
-          // TODO: Can we potentially optimize this by only iterating over children once?
-          //       We basically do it twice. Once here when creating the batches, and again when deleting them.
-          //       Can we generate the batches in O(1), and then do the extra processing during the O(n) delete
-          //       step? By "extra processing", I mean convert each child to a full path. Just depends on if
-          //       we can split up the `children` set, because it has type Collection<ProjectedINode>.
+          // Depending on how large the directory is, we'll use a different batch size.
+          int batchSize = numChildren >= 131072 ? SUBTREE_DELETE_BATCH_SIZE_LARGE : SUBTREE_DELETE_BATCH_SIZE;
+
+          LOG.info("Deleting the " + numChildren + " children of directory " + dir.getId() + " in batches of " +
+                  batchSize + ".");
+
+          // The batches are produced while iterating over the children, and each batch is dispatched as soon as it
+          // is full. So, only the batches that are still being deleted are held in memory.
+          List<String> batch = new ArrayList<>(batchSize);
+          int numBatches = 0;
+          int numOffloaded = 0;
           for (ProjectedINode node : children) {
             if (node.isDirectory()) continue; // Skip directories like we do when performing the deletes locally.
 
-            final String path = fileTree.createAbsolutePath(subtreeRootPath, node);
-            currentBatch[idx++] = path;
-
-            if (idx >= BATCH_SIZE) {
-              batches.add(currentBatch);
-              currentBatch = new String[BATCH_SIZE];
-              idx = 0;
+            batch.add(fileTree.createAbsolutePath(subtreeRootPath, node));
+            if (batch.size() >= batchSize) {
+              numBatches++;
+              if (dispatchBatch(fsn, pipeline, batch, subTreeRootID, barrier))
+                numOffloaded++;
+              batch = new ArrayList<>(batchSize);
+              if (!drainBarrier(barrier))
+                return false;
             }
           }
 
-          ArrayList<Future> remoteBarrier = new ArrayList<>();
-          // It's possible that we could end up with just one batch (or maybe none) if the directory contains
-          // a bunch of directories, rather than actual files. So, let's make sure we have multiple batches
-          // to process before trying to offload batches to other NNs.
-          if (batches.size() > 1 && !BaseHandler.localModeEnabled) {
-            ExecutorService executorService = Executors.newFixedThreadPool(batches.size() - 1);
-            ServerlessInvokerBase serverlessInvoker = instance.getServerlessInvoker();
-            // final HashMap<String, Future<Boolean>> futures = new HashMap<>();
-            final String serverlessEndpointBase = instance.getServerlessEndpointBase();
-            // if (LOG.isDebugEnabled()) LOG.debug("Submitting " + (batches.size() - 1) + " batch(es) of deletes to other NameNodes.");
-            LOG.info("Submitting " + (batches.size() - 1) + " batch(es) of deletes to other NameNodes.");
-
-            // Offload batches of deletes to other deployments in a round-robin fashion.
-            // We start with a random deployment that is NOT our own deployment.
-            int targetDeployment = ThreadLocalRandom.current().nextInt(0, instance.getNumNormalAndWriteOnlyDeployments());
-
-            // Don't start with our own deployment.
-            if (targetDeployment == instance.getDeploymentNumber()) {
-              targetDeployment++;
-
-              // Loop back around in case we are in the largest-numbered deployment.
-              if (targetDeployment >= instance.getNumNormalAndWriteOnlyDeployments())
-                targetDeployment = 0;
-            }
-
-            for (int i = 1; i < batches.size(); i++) {
-              String[] batch = batches.get(i);
-              String requestId = UUID.randomUUID().toString();
-
-              ArgumentContainer argumentContainer = new ArgumentContainer();
-              argumentContainer.addPrimitive("subtreeRootId", subTreeRootID);
-              argumentContainer.addPrimitive("leaderNameNodeID", instance.getId());
-              argumentContainer.addNonByteArray("paths", batch);
-
-              LOG.info("Targeting deployment " + targetDeployment + " for batch " + i + "/" + batches.size());
-
-              // We're passing this to another thread, so it needs to be final.
-              int targetDeploymentFinalized = targetDeployment;
-              Future<Boolean> future = executorService.submit(() -> {
-                JsonObject response = serverlessInvoker.issueHttpRequestWithRetries(
-                        serverlessInvoker, "subtreeDeleteSubOperation", serverlessEndpointBase,
-                        null, argumentContainer, requestId, targetDeploymentFinalized, true);
-
-                Object result = ServerlessInvokerBase.extractResultFromJsonResponse(response);
-
-                if (result == null) return false;
-                return (boolean) result;
-              });
-
-              // futures.put(requestId, future);
-              remoteBarrier.add(future);
-
-              // Increment the counter so that we target another deployment for the next batch.
-              targetDeployment++;
-
-              // Loop back around.
-              if (targetDeployment >= instance.getNumNormalAndWriteOnlyDeployments())
-                targetDeployment = 0;
-            }
-          }
-          else if (BaseHandler.localModeEnabled) { // Just enables us to write a different print than the base case.
-            LOG.warn("LocalMode is enabled. We cannot offload to other NNs. Must complete operation locally.");
-          }
-          else { // Base case. Just one batch. We'll process it locally.
-            LOG.warn("We somehow ended up with just one batch. No need to offload deletes to other NNs.");
+          if (!batch.isEmpty()) {
+            numBatches++;
+            if (dispatchBatch(fsn, pipeline, batch, subTreeRootID, barrier))
+              numOffloaded++;
           }
 
-          // If "Local Mode" is enabled, then we'll process all the batches locally, one after another.
-          // If "Local Mode" is disabled, then we only want to process the 0-th batch locally. The other
-          // batches will have been off-loaded to other NameNodes, and thus we do not execute them here.
-          // Note that we select the minimum between 1 and batches.size() in case there are 0 batches for
-          // some reason. Thus, if batches.size() is 0, then we'll use 0. Otherwise, we'll use 1.
-          int lastBatchIndexExclusive = (BaseHandler.localModeEnabled ? batches.size() : Math.min(1, batches.size()));
-
-          // Add all the futures corresponding to NameNode invocations to the barrier. There could 0 or more.
-          barrier.addAll(remoteBarrier);
-
-          // It is theoretically possible that we end up with zero batches. This could occur if the directory
-          // we're processing exclusively contains other directories and no files. So, let's make sure we
-          // have at least one batch before trying to process a batch locally.
-          for (int i = 0; i < lastBatchIndexExclusive; i++) {
-            String[] localBatch = batches.get(i);
-            // Process the local batch of deletes.
-            if (LOG.isDebugEnabled()) LOG.debug("Processing local batch " + (i+1) + "/" + batches.size() + " now.");
-            for (String path : localBatch) {
-              Future f = multiTransactionDeleteInternal(fsn, path, subTreeRootID);
-              barrier.add(f);
-            }
-          }
+          LOG.info("Offloaded " + numOffloaded + " of the " + numBatches + " batch(es) of directory " +
+                  dir.getId() + " to other NameNodes.");
         }
 
         emptyDirs.add(dir);
@@ -435,6 +346,48 @@ else if (BaseHandler.localModeEnabled) { // Just enables us to write a different
     return processResponses(barrier);
   }
 
+  /**
+   * Offload a batch of paths to another deployment through the pipeline or, if the pipeline is full, submit their
+   * deletes locally.
+   *
+   * @return True if the batch was offloaded.
+   */
+  @VisibleForTesting
+  static boolean dispatchBatch(final FSNamesystem fsn, SubtreeDeletePipeline pipeline, List<String> batch,
+                                       final long subTreeRootID, ArrayList<Future> barrier) {
+    Future<Boolean> offloaded = pipeline.tryOffload(batch, subTreeRootID);
+    if (offloaded != null) {
+      barrier.add(offloaded);
+      return true;
+    }
+
+    for (String path : batch) {
+      Future f = multiTransactionDeleteInternal(fsn, path, subTreeRootID);
+      barrier.add(f);
+    }
+    return false;
+  }
+
+  /**
+   * Wait for the oldest half of the deletes in the barrier once it holds {@link #MAX_PENDING_DELETES} of them, so
+   * that the deletes of a very large directory are not all queued at once.
+   *
+   * @return False if one of the awaited deletes failed. The other deletes in the barrier are then awaited too.
+   */
+  @VisibleForTesting
+  static boolean drainBarrier(ArrayList<Future> barrier) throws IOException {
+    if (barrier.size() < MAX_PENDING_DELETES)
+      return true;
+
+    List<Future> oldest = barrier.subList(0, barrier.size() / 2);
+    boolean success = processResponses(new ArrayList<>(oldest));
+    oldest.clear();
+
+    if (!success)
+      processResponses(barrier);
+    return success;
+  }
+
   public static boolean processResponses(ArrayList<Future> barrier) throws IOException {
     boolean result = true;
     for (Future f : barrier) {
@@ -18,9 +18,12 @@
 
 package org.apache.hadoop.hdfs.server.namenode;
 
+import io.hops.metadata.HdfsStorageFactory;
+import io.hops.metadata.hdfs.dal.DirectoryWithQuotaFeatureDataAccess;
 import io.hops.metadata.hdfs.entity.INodeIdentifier;
 import io.hops.transaction.handler.HDFSOperationType;
 import io.hops.transaction.handler.HopsTransactionalRequestHandler;
+import io.hops.transaction.handler.LightWeightRequestHandler;
 import io.hops.transaction.lock.INodeLock;
 import io.hops.transaction.lock.LockFactory;
 import io.hops.transaction.lock.LockFactory.BLK;
@@ -76,6 +79,10 @@ static DirectoryListing getListingInt(
     }
 
     final byte[] startAfter = startAfterArg;
+    // Range scans read one child more than a page to tell whether the
+    // directory has more children after the page.
+    final boolean rangeScan = fsd.isListRangeScanEnabled() &&
+        fsd.getLsLimit() < Integer.MAX_VALUE;
     
     HopsTransactionalRequestHandler getListingHandler = new HopsTransactionalRequestHandler(
         HDFSOperationType.GET_LISTING) {
@@ -86,6 +93,9 @@ public void acquireLock(TransactionLocks locks) throws IOException {
             .setNameNodeID(fsd.getFSNamesystem().getNameNode().getId())
             .setActiveNameNodes(fsd.getFSNamesystem().getNameNode().getActiveNameNodes().getActiveNodes())
             .skipReadingQuotaAttr(true);
+        if (rangeScan) {
+          il.setChildrenRange(DFSUtil.bytes2String(startAfter), fsd.getLsLimit() + 1);
+        }
         locks.add(il);
         if (needLocation) {
           locks.add(lf.getBlockLock()).add(lf.getBlockRelated(BLK.RE, BLK.ER, BLK.CR, BLK.UC, BLK.CA));
@@ -108,7 +118,7 @@ public Object performTask() throws IOException {
           }
         }
 
-        return getListing(fsd, iip, srcArg, src, startAfter, needLocation, isSuperUser);
+        return getListing(fsd, iip, srcArg, src, startAfter, needLocation, isSuperUser, rangeScan);
       }
     };
     return (DirectoryListing) getListingHandler.handle();
@@ -220,8 +230,8 @@ private static byte getStoragePolicyID(byte inodePolicy, byte parentPolicy) {
    * @return a partial listing starting after startAfter
    */
   private static DirectoryListing getListing(FSDirectory fsd, INodesInPath iip,
-      String srcArg, String src, byte[] startAfter, boolean needLocation,boolean isSuperUser)
-      throws IOException {
+      String srcArg, String src, byte[] startAfter, boolean needLocation,boolean isSuperUser,
+      boolean rangeScan) throws IOException {
     String srcs = FSDirectory.normalizePath(src);
     final boolean isRawPath = fsd.isReservedRawName(srcArg);
     
@@ -240,8 +250,16 @@ private static DirectoryListing getListing(FSDirectory fsd, INodesInPath iip,
       }
 
       final INodeDirectory dirInode = targetNode.asDirectory();
-      final  List<INode> contents = dirInode.getChildrenList();
-      int startChild = dirInode.nextChild(contents, startAfter);
+      List<INode> contents = null;
+      int startChild = 0;
+      if (rangeScan) {
+        // the page read by the inode lock, starting right after startAfter
+        contents = dirInode.getChildrenPage(DFSUtil.bytes2String(startAfter), fsd.getLsLimit() + 1);
+      }
+      if (contents == null) {
+        contents = dirInode.getChildrenList();
+        startChild = dirInode.nextChild(contents, startAfter);
+      }
       int totalNumChildren = contents.size();
       int numOfListing = Math.min(totalNumChildren - startChild,
           fsd.getLsLimit());
@@ -462,13 +480,24 @@ private static ContentSummary getContentSummaryInt(FSDirectory fsd,
     
     byte[][] pathComponents = FSDirectory.getPathComponentsForReservedPath(src);
     src = fsd.resolvePath(fsd.getPermissionChecker(), src, pathComponents);
+    // With aggregates, like getQuotaUsage, only the directory itself is checked
+    // for READ_EXECUTE access instead of every directory of the subtree.
+    final boolean useAggregates = fsd.isContentSummaryAggregatesEnabled();
     PathInformation pathInfo = fsd.getFSNamesystem().getPathExistingINodesFromDB(src,
-        false, null, null, null, null);
+        false, null, null, useAggregates ? FsAction.READ_EXECUTE : null, null);
     if (pathInfo.getINodesInPath().getLastINode() == null) {
       throw new FileNotFoundException("File does not exist: " + src);
     }
     final INode subtreeRoot = pathInfo.getINodesInPath().getLastINode();
     final QuotaCounts subtreeQuota = pathInfo.getQuota();
+    if (useAggregates && subtreeRoot.isDirectory()) {
+      DirectoryWithQuotaFeature feature = getDirectoryWithQuotaFeature(subtreeRoot.getId());
+      // Quota rows that predate the aggregate columns are walked instead.
+      if (feature != null && feature.hasAggregates()) {
+        fsd.addYieldCount(0);
+        return getContentSummaryFromAggregates(feature);
+      }
+    }
     final INodeIdentifier subtreeRootIdentifier = new INodeIdentifier(subtreeRoot.getId(), subtreeRoot.getParentId(),
         subtreeRoot.getLocalName(), subtreeRoot.getPartitionId());
     subtreeRootIdentifier.setDepth(((short) (INodeDirectory.ROOT_DIR_DEPTH + pathInfo.getPathComponents().length - 1)));
@@ -503,4 +532,46 @@ private static ContentSummary getContentSummaryInt(FSDirectory fsd,
     fsd.addYieldCount(0);
     return cs;
   }
+
+  /**
+   * Read the quota row of a directory, which also holds the content
+   * aggregates of the directory when
+   * {@link org.apache.hadoop.hdfs.DFSConfigKeys#DFS_NAMENODE_CONTENT_SUMMARY_AGGREGATES_ENABLED_KEY}
+   * is set.
+   *
+   * @return the quota row of the directory or null if it has no quota
+   */
+  private static DirectoryWithQuotaFeature getDirectoryWithQuotaFeature(final long inodeId)
+      throws IOException {
+    return (DirectoryWithQuotaFeature) new LightWeightRequestHandler(
+        HDFSOperationType.GET_CONTENT_SUMMARY) {
+      @Override
+      public Object performTask() throws IOException {
+        DirectoryWithQuotaFeatureDataAccess<DirectoryWithQuotaFeature> dataAccess =
+            (DirectoryWithQuotaFeatureDataAccess) HdfsStorageFactory
+                .getDataAccess(DirectoryWithQuotaFeatureDataAccess.class);
+        return dataAccess.findAttributesByPk(inodeId);
+      }
+    }.handle();
+  }
+
+  /**
+   * Build the content summary of a directory from the aggregates of its
+   * quota row. They lag the namespace by at most the quota update interval.
+   */
+  private static ContentSummary getContentSummaryFromAggregates(
+      DirectoryWithQuotaFeature feature) {
+    QuotaCounts quota = feature.getQuota();
+    QuotaCounts usage = feature.getSpaceConsumed();
+    return new ContentSummary.Builder().
+        length(usage.getLength()).
+        fileCount(usage.getFileCount()).
+        directoryCount(usage.getDirectoryCount()).
+        quota(quota.getNameSpace()).
+        spaceConsumed(usage.getStorageSpace()).
+        spaceQuota(quota.getStorageSpace()).
+        typeConsumed(usage.getTypeSpaces().asArray()).
+        typeQuota(quota.getTypeSpaces().asArray()).
+        build();
+  }
 }
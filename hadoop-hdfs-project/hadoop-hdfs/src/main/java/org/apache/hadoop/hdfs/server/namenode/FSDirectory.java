@@ -128,6 +128,7 @@ public class FSDirectory implements Closeable {
   private final int maxComponentLength;
   private final int maxDirItems;
   private final int lsLimit;  // max list limit
+  private final boolean listRangeScanEnabled;
   private final int contentCountLimit; // max content summary counts per run
   private final long contentSleepMicroSec;
   private long yieldCount = 0; // keep track of lock yield count.
@@ -136,6 +137,10 @@ public class FSDirectory implements Closeable {
   
   private boolean quotaEnabled;
 
+  // whether directories with a quota also aggregate file lengths for
+  // getContentSummary
+  private final boolean contentSummaryAggregatesEnabled;
+
   private final boolean isPermissionEnabled;
   /**
    * Support for ACLs is controlled by a configuration flag. If the
@@ -172,6 +177,9 @@ public class FSDirectory implements Closeable {
     this.quotaEnabled =
         conf.getBoolean(DFSConfigKeys.DFS_NAMENODE_QUOTA_ENABLED_KEY,
             DFSConfigKeys.DFS_NAMENODE_QUOTA_ENABLED_DEFAULT);
+    this.contentSummaryAggregatesEnabled = quotaEnabled &&
+        conf.getBoolean(DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_AGGREGATES_ENABLED_KEY,
+            DFSConfigKeys.DFS_NAMENODE_CONTENT_SUMMARY_AGGREGATES_ENABLED_DEFAULT);
 
     namesystem = ns;
 
@@ -212,6 +220,9 @@ public class FSDirectory implements Closeable {
         DFSConfigKeys.DFS_LIST_LIMIT_DEFAULT);
     this.lsLimit = configuredLimit > 0 ? configuredLimit :
         DFSConfigKeys.DFS_LIST_LIMIT_DEFAULT;
+    this.listRangeScanEnabled = conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_LIST_RANGE_SCAN_ENABLED_KEY,
+        DFSConfigKeys.DFS_NAMENODE_LIST_RANGE_SCAN_ENABLED_DEFAULT);
     
     this.accessTimePrecision = conf.getLong(
         DFS_NAMENODE_ACCESSTIME_PRECISION_KEY,
@@ -304,6 +315,10 @@ boolean isXattrsEnabled() {
   int getLsLimit() {
     return lsLimit;
   }
+
+  boolean isListRangeScanEnabled() {
+    return listRangeScanEnabled;
+  }
   
   int getInodeXAttrsLimit() {
     return inodeXAttrsLimit;
@@ -580,6 +595,24 @@ private void updateCount(INodesInPath iip, int numOfINodes,
         .addUpdate(iNode.getId(), counts);
   }
   
+  /**
+   * Propagate a change of the length of a file to the content summary
+   * aggregates of its ancestors. The update is queued on the parent of the
+   * file and forwarded up the tree by the {@link QuotaUpdateManager}.
+   *
+   * @param file the file whose length changed
+   * @param lengthDelta the change of the length of the file
+   */
+  void updateLength(INodeFile file, long lengthDelta)
+      throws StorageException, TransactionContextException {
+    if (!contentSummaryAggregatesEnabled || lengthDelta == 0 ||
+        !namesystem.isImageLoaded()) {
+      return;
+    }
+    namesystem.getQuotaUpdateManager().addUpdate(file.getParentId(),
+        new QuotaCounts.Builder().length(lengthDelta).build());
+  }
+
   /**
    * update quota of each inode and check to see if quota is exceeded.
    * See {@link #updateCount(INodesInPath, int, QuotaCounts, boolean)}
@@ -975,7 +1008,8 @@ long removeLastINode(final INodesInPath iip, boolean forRename,
             typeCounts.add(type, update.getTypeSpaces().get(QuotaUpdate.StorageType.valueOf(type.name())));
           }
           QuotaCounts up = new QuotaCounts.Builder().storageSpace(update.getStorageSpaceDelta()).nameSpace(update.
-              getNamespaceDelta()).typeSpaces(typeCounts).build();
+              getNamespaceDelta()).typeSpaces(typeCounts).directoryCount(update.getDirectoryDelta()).
+              length(update.getLengthDelta()).build();
           outStandingDelta.add(up);
         }
       }
@@ -1697,6 +1731,10 @@ public INodeDirectory getRootDir()
   public boolean isQuotaEnabled() {
     return this.quotaEnabled;
   }
+
+  boolean isContentSummaryAggregatesEnabled() {
+    return this.contentSummaryAggregatesEnabled;
+  }
   
   // add root inode if its not there
   public INodeDirectory createRoot(
@@ -1742,8 +1780,10 @@ public Object performTask() throws IOException {
               // probably because splitting the path "/" on the directory separator (which is '/')
               // yields the String "". So we cache the root INode under the empty String key.
 
+              // We have just written the root INode, so its read lease starts now.
               LOG.debug("Caching the root INode under the key " + INodeDirectory.ROOT_NAME + " now...");
-              namesystem.getMetadataCacheManager().getINodeCache().put(INodeDirectory.ROOT_NAME, newRootINode.getId(), newRootINode);
+              namesystem.getMetadataCacheManager().getINodeCache().put(INodeDirectory.ROOT_NAME, newRootINode.getId(),
+                  newRootINode, System.currentTimeMillis());
             } else {
               LOG.warn("New root INode is null. Cannot cache the INode.");
             }
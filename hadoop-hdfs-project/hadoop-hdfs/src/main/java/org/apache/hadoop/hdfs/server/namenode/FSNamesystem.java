@@ -145,6 +145,7 @@
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -333,6 +334,9 @@ private void logAuditEvent(boolean succeeded, UserGroupInformation ugi,
   private final QuotaUpdateManager quotaUpdateManager;
 
   private final ExecutorService fsOperationsExecutor;
+  private final SubtreeDeletePipeline subtreeDeletePipeline;
+  private final ForkJoinPool subtreeCollectorPool;
+  private final int subtreeCollectorBatchSize;
   private final boolean erasureCodingEnabled;
   private final ErasureCodingManager erasureCodingManager;
 
@@ -523,12 +527,23 @@ static FSNamesystem loadFromDisk(Configuration conf, ServerlessNameNode namenode
       fsOperationsExecutor = Executors.newFixedThreadPool(
           conf.getInt(DFS_SUBTREE_EXECUTOR_LIMIT_KEY,
               DFS_SUBTREE_EXECUTOR_LIMIT_DEFAULT));
+      subtreeCollectorPool = new ForkJoinPool(conf.getInt(DFS_SUBTREE_COLLECTOR_PARALLELISM_KEY,
+          DFS_SUBTREE_COLLECTOR_PARALLELISM_DEFAULT));
+      subtreeCollectorBatchSize = Math.max(1, conf.getInt(DFS_SUBTREE_COLLECTOR_BATCH_SIZE_KEY,
+          DFS_SUBTREE_COLLECTOR_BATCH_SIZE_DEFAULT));
       FSDirDeleteOp.BIGGEST_DELETABLE_DIR = conf.getLong(DFS_DIR_DELETE_BATCH_SIZE,
               DFS_DIR_DELETE_BATCH_SIZE_DEFAULT);
       FSDirDeleteOp.SUBTREE_DELETE_BATCH_SIZE = conf.getInt(SERVERLESS_SUBTREE_DELETE_BATCH_SIZE,
               SERVERLESS_SUBTREE_DELETE_BATCH_SIZE_DEFAULT);
       FSDirDeleteOp.SUBTREE_DELETE_BATCH_SIZE_LARGE = conf.getInt(SERVERLESS_SUBTREE_DELETE_BATCH_SIZE_LARGE,
               SERVERLESS_SUBTREE_DELETE_BATCH_SIZE_LARGE_DEFAULT);
+      if (conf.getBoolean(SERVERLESS_SUBTREE_DELETE_OFFLOAD_ENABLED,
+              SERVERLESS_SUBTREE_DELETE_OFFLOAD_ENABLED_DEFAULT)) {
+        subtreeDeletePipeline = new SubtreeDeletePipeline(conf.getInt(SERVERLESS_SUBTREE_DELETE_MAX_OFFLOADED_BATCHES,
+                SERVERLESS_SUBTREE_DELETE_MAX_OFFLOADED_BATCHES_DEFAULT));
+      } else {
+        subtreeDeletePipeline = null;
+      }
 
       LOG.info("fsOwner             = " + fsOwner);
       LOG.info("superGroup          = " + superGroup);
@@ -704,7 +719,9 @@ private void stopSecretManager() {
   void startCommonServices(Configuration conf, SortedActiveNodeList activeNodes) throws IOException {
     this.registerMBean(); // register the MBean for the FSNamesystemState
     IDsMonitor.getInstance().start();
-    RootINodeCache.start();
+    RootINodeCache.start(conf.getInt(SERVERLESS_PINNED_ANCESTORS_LEVELS,
+        SERVERLESS_PINNED_ANCESTORS_LEVELS_DEFAULT), conf.getLong(SERVERLESS_PINNED_ANCESTORS_TTL_MILLIS,
+        SERVERLESS_PINNED_ANCESTORS_TTL_MILLIS_DEFAULT));
     nnResourceChecker = new NameNodeResourceChecker(conf);
     checkAvailableResources();
     if (isLeader()) {
@@ -931,6 +948,10 @@ void close() {
         smmthread.interrupt();
       if (fsOperationsExecutor != null)
         fsOperationsExecutor.shutdownNow();
+      if (subtreeDeletePipeline != null)
+        subtreeDeletePipeline.shutdown();
+      if (subtreeCollectorPool != null)
+        subtreeCollectorPool.shutdownNow();
     } finally {
       // using finally to ensure we also wait for lease daemon
       try {
@@ -1050,17 +1071,23 @@ private void invalidationReceivedFromZooKeeper(String path) throws Exception {
 
     // TODO: Add support for subtree operations.
     // TODO: Was the above TODO just referring to being able to invalidate by prefix? If so, then that's done.
-    // serverlessNameNode.getZooKeeperClient().acknowledge(path, localNameNodeId);
-    serverlessNameNode.getZooKeeperClient().acknowledge(
-            serverlessNameNode.getDeploymentNumber(), operationId, localNameNodeId);
     if (isSubtreeInvalidation) {
       metadataCacheManager.invalidateINodesByPrefix(subtreeRoot);
+      // The pinned levels are small, so they are simply read again.
+      if (RootINodeCache.isPinnedPath(subtreeRoot))
+        RootINodeCache.invalidateAll();
     } else {
       for (long id : invalidatedINodes) {
         if (LOG.isTraceEnabled()) LOG.trace("Attempting to invalidate INode " + id + " (if we have it cached).");
         metadataCacheManager.invalidateINode(id);
+        RootINodeCache.invalidate(id);
       }
     }
+
+    // Only ACK once the INV has been applied, as the leader proceeds with the write once every follower has ACK'd.
+    // serverlessNameNode.getZooKeeperClient().acknowledge(path, localNameNodeId);
+    serverlessNameNode.getZooKeeperClient().acknowledge(
+            serverlessNameNode.getDeploymentNumber(), operationId, localNameNodeId);
   }
 
   @Override
@@ -1090,6 +1117,7 @@ public void eventReceived(HopsEventOperation eventOperation, String eventName) {
 
     // metadataCache.invalidateKey(inodeId);
     metadataCacheManager.invalidateINode(inodeId);
+    RootINodeCache.invalidate(inodeId);
 
     WriteAcknowledgementDataAccess<WriteAcknowledgement> writeAcknowledgementDataAccess =
             (WriteAcknowledgementDataAccess<WriteAcknowledgement>) HdfsStorageFactory.getDataAccess(WriteAcknowledgementDataAccess.class);
@@ -1165,6 +1193,7 @@ public void invalidateCache() {
     LOG.debug("Invalidating entire cache. Connection to ZooKeeper must have been lost.");
     // metadataCache.invalidateEntireCache();
     metadataCacheManager.invalidateAllINodes();
+    RootINodeCache.invalidateAll();
   }
 
   public static class GetBlockLocationsResult {
@@ -1806,6 +1835,7 @@ boolean truncateInternal(String src, long newLength,
       file.setSize(newData.length);
       final long ssDelta = newLengthInt - oldData.length;
       dir.updateSpaceConsumed(iip, 0, ssDelta, file.getBlockReplication());
+      dir.updateLength(file, ssDelta);
       return true; //truncate is ready
     }
     if(!onBlockBoundary) {
@@ -1819,7 +1849,7 @@ boolean truncateInternal(String src, long newLength,
     // update the quota: use the preferred block size for UC block
     dir.updateCountNoQuotaCheck(iip, iip.length() - 1, delta);
 
-    file.recomputeFileSize();  
+    dir.updateLength(file, file.recomputeFileSize());
     return onBlockBoundary;
   }
 
@@ -3435,7 +3465,7 @@ public Object performTask() throws IOException {
                       " is removed from pendingCreates");
             }
             persistBlocks(srcInt, file);
-            file.recomputeFileSize();
+            dir.updateLength(file, file.recomputeFileSize());
 
             return true;
           }
@@ -3669,6 +3699,7 @@ private boolean completeFileStoredInDataBase(String src, String holder, long fil
       long delta = (data.length - oldSize);
       dir.updateSpaceConsumed(iip, 0,delta, pendingFile
           .getBlockReplication());
+      dir.updateLength(pendingFile, delta);
     }
 
 
@@ -4018,7 +4049,7 @@ public Object performTask() throws IOException {
           pendingFile.getFileUnderConstructionFeature().updateLengthOfLastBlock(pendingFile, lastBlockLength);
         }
         persistBlocks(src2, pendingFile);
-        pendingFile.recomputeFileSize();
+        dir.updateLength(pendingFile, pendingFile.recomputeFileSize());
         return null;
       }
     }.handle(this);
@@ -4200,7 +4231,7 @@ private void commitOrCompleteLastBlock(
   
   public void updateQuotaUponBlockCompletion(final INodeFile fileINode, final INodesInPath iip,
                                              final Block commitBlock) throws IOException {
-    fileINode.recomputeFileSize();
+    dir.updateLength(fileINode, fileINode.recomputeFileSize());
 
     if (dir.isQuotaEnabled()) {
       final long diff = fileINode.getPreferredBlockSize()
@@ -4399,7 +4430,7 @@ void commitBlockSynchronizationInternal(final ExtendedBlock oldBlock,
             storedBlock.setGenerationStamp(newGenerationStamp);
             storedBlock.setNumBytes(newLength);
           }
-          iFile.recomputeFileSize();
+          dir.updateLength(iFile, iFile.recomputeFileSize());
           // find the DatanodeDescriptor objects
           ArrayList<DatanodeDescriptor> trimmedTargets = new ArrayList<>(newTargets.length);
           ArrayList<String> trimmedStorages = new ArrayList<>(newTargets.length);
@@ -6347,7 +6378,7 @@ private void updatePipelineInternal(String clientName, ExtendedBlock oldBlock,
     // Update old block with the new generation stamp and new length
     blockInfo.setNumBytes(newBlock.getNumBytes());
     blockInfo.setGenerationStampAndVerifyReplicas(newBlock.getGenerationStamp(), blockManager.getDatanodeManager());
-    pendingFile.recomputeFileSize();
+    dir.updateLength(pendingFile, pendingFile.recomputeFileSize());
 
     // find the DatanodeStorageInfo objects
     final DatanodeStorageInfo[] storages = blockManager.getDatanodeManager()
@@ -7703,6 +7734,28 @@ public ExecutorService getFSOperationsExecutor() {
     return fsOperationsExecutor;
   }
 
+  /**
+   * Return the pool in which the directories of the subtrees of subtree operations are read.
+   */
+  ForkJoinPool getSubtreeCollectorPool() {
+    return subtreeCollectorPool;
+  }
+
+  /**
+   * Return the maximum number of directories whose children are read with a single query when walking a subtree.
+   */
+  int getSubtreeCollectorBatchSize() {
+    return subtreeCollectorBatchSize;
+  }
+
+  /**
+   * Return the pipeline through which subtree deletes offload batches of deletes to other deployments, or null if
+   * offloading is disabled.
+   */
+  SubtreeDeletePipeline getSubtreeDeletePipeline() {
+    return subtreeDeletePipeline;
+  }
+
   /**
    * Lock a subtree of the filesystem tree.
    * Locking a subtree prevents it from any concurrent write operations.
@@ -78,6 +78,7 @@ public enum Finder implements FinderType<INode> {
     ByINodeIdFTIS,//FTIS full table index scan
     ByParentIdFTIS,
     ByParentIdAndPartitionId,
+    ByParentIdAndPartitionIdPage,
     ByNameParentIdAndPartitionId,
     ByNamesParentIdsAndPartitionIdsCheckLocal,
     ByNamesParentIdsAndPartitionIds;
@@ -96,6 +97,8 @@ public Annotation getAnnotated() {
           return Annotation.IndexScan;
         case ByParentIdAndPartitionId:
           return Annotation.PrunedIndexScan;
+        case ByParentIdAndPartitionIdPage:
+          return Annotation.PrunedIndexScan;
         case ByNameParentIdAndPartitionId:
           return Annotation.PrimaryKey;
         case ByNamesParentIdsAndPartitionIds:
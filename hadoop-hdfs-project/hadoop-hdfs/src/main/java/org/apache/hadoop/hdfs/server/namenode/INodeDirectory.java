@@ -546,6 +546,7 @@ private QuotaCounts computeDirectoryQuotaUsage(BlockStoragePolicySuite bsps,
   public QuotaCounts computeQuotaUsage4CurrentDirectory(
       BlockStoragePolicySuite bsps, byte storagePolicyId, QuotaCounts counts) {
     counts.addNameSpace(1);
+    counts.addDirectoryCount(1);
     return counts;
   }
   
@@ -631,6 +632,27 @@ private List<INode> getChildren()
     }
   }
 
+  /**
+   * Return at most {@code limit} children whose names sort after
+   * {@code startAfter}, in index order, by a range scan of the children.
+   *
+   * @return the children, or null if the children of this directory are
+   * randomly partitioned and thus cannot be range scanned
+   */
+  public List<INode> getChildrenPage(String startAfter, int limit)
+      throws StorageException, TransactionContextException {
+    if (!isInTree()) {
+      return EMPTY_LIST;
+    }
+
+    short childrenDepth = ((short)(myDepth()+1));
+    if(INode.isTreeLevelRandomPartitioned(childrenDepth)){
+      return null;
+    }
+    return (List<INode>) EntityManager
+        .findList(Finder.ByParentIdAndPartitionIdPage, getId(), getId(), startAfter, limit);
+  }
+
   @Override
   public void destroyAndCollectBlocks(final BlockStoragePolicySuite bsps,
       BlocksMapUpdateInfo collectedBlocks, 
@@ -425,6 +425,7 @@ QuotaCounts computeQuotaUsage(BlockStoragePolicySuite bsps, byte blockStoragePol
       throws StorageException, TransactionContextException {
     final long ssDeltaNoReplication = storagespaceConsumedNoReplication();
     final short replication = getBlockReplication();
+    counts.addLength(getSize());
     return computeQuotaUsage(bsps, blockStoragePolicyId,ssDeltaNoReplication,
         replication, counts);
   }
@@ -634,9 +635,16 @@ public void setSize(long size) throws TransactionContextException, StorageExcept
     setSizeNoPersistence(size);
     save();
   }
-  public void recomputeFileSize() throws StorageException, TransactionContextException {
+  /**
+   * Recompute the size of the file from its blocks.
+   *
+   * @return the change of the size of the file
+   */
+  public long recomputeFileSize() throws StorageException, TransactionContextException {
+    final long oldSize = size;
     setSizeNoPersistence(this.computeFileSize(true, false));
     save();
+    return size - oldSize;
   }
 
   protected List<BlockInfoContiguous> getBlocksOrderedByIndex()
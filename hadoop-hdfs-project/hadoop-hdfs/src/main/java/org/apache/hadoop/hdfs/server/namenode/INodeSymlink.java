@@ -77,6 +77,7 @@ public byte[] getSymlink() {
   @Override
   QuotaCounts computeQuotaUsage(BlockStoragePolicySuite bsps, byte storagePolicyId, QuotaCounts counts) {
     counts.addNameSpace(1);
+    counts.addSymlinkCount(1);
     return counts;
   }
   
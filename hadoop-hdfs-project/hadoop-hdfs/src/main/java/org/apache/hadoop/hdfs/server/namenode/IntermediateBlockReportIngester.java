@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import io.hops.metadata.HdfsStorageFactory;
+import io.hops.metadata.hdfs.dal.IntermediateBlockReportDataAccess;
+import io.hops.metadata.hdfs.entity.IntermediateBlockReport;
+import org.apache.hadoop.hdfs.server.protocol.IntermediateBlockReportCodec;
+import org.apache.hadoop.hdfs.server.protocol.StorageReceivedDeletedBlocks;
+import org.apache.hadoop.hdfs.serverless.invoking.InvokerUtilities;
+import org.apache.hadoop.hdfs.serverless.zookeeper.SyncZKClient;
+import org.apache.hadoop.hdfs.serverless.zookeeper.ZKClient;
+import org.apache.zookeeper.Watcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Retrieves intermediate block reports published by DataNodes and applies them to the namesystem.
+ *
+ * By default, the reports of every known DataNode are retrieved each time {@link #ingest(boolean)} is called with
+ * {@code allDataNodes == true} (i.e., on every heartbeat). When notifications are enabled, DataNodes announce each
+ * report they publish via ZooKeeper (see {@link ZKClient#notifyBlockReportPublished(String, int)}). Reports are then
+ * retrieved as soon as they are announced, and only for the DataNodes that announced them. Idle NameNodes therefore
+ * no longer query intermediate storage for every DataNode on each heartbeat.
+ *
+ * All the reports retrieved for a DataNode are merged by storage and applied with a single call to
+ * {@link FSNamesystem#processIncrementalBlockReport(String, StorageReceivedDeletedBlocks)} per storage.
+ */
+public class IntermediateBlockReportIngester {
+  public static final Logger LOG = LoggerFactory.getLogger(IntermediateBlockReportIngester.class);
+
+  private static final Comparator<IntermediateBlockReport> PUBLICATION_ORDER =
+          Comparator.comparingLong(IntermediateBlockReport::getPublishedAt)
+                    .thenComparingInt(IntermediateBlockReport::getReportId);
+
+  private final FSNamesystem namesystem;
+
+  /**
+   * Used to keep track of the most recent publication timestamp of the reports we've processed for each DataNode.
+   */
+  private final HashMap<String, Long> lastReportTimestamp = new HashMap<>();
+
+  /**
+   * IDs of the reports we've already processed whose publication timestamp equals the one in
+   * {@code lastReportTimestamp}. Reports are retrieved by timestamp (inclusive), so we use this to avoid
+   * applying them twice.
+   */
+  private final HashMap<String, Set<Integer>> reportsAtLastTimestamp = new HashMap<>();
+
+  /**
+   * DataNodes that have announced a new report since we last retrieved their reports.
+   */
+  private final Set<String> pendingDataNodes = ConcurrentHashMap.newKeySet();
+
+  /**
+   * True if an ingestion of pending reports has been scheduled but has not started yet.
+   */
+  private final AtomicBoolean ingestionScheduled = new AtomicBoolean(false);
+
+  private final ExecutorService executor;
+
+  private final boolean notificationsEnabled;
+
+  IntermediateBlockReportIngester(FSNamesystem namesystem, ZKClient zkClient, boolean notificationsEnabled) {
+    this.namesystem = namesystem;
+    this.notificationsEnabled = notificationsEnabled;
+
+    if (notificationsEnabled) {
+      this.executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "IBR-Ingester");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+      zkClient.addBlockReportListener(watchedEvent -> {
+        Watcher.Event.EventType type = watchedEvent.getType();
+        if (type != Watcher.Event.EventType.NodeCreated && type != Watcher.Event.EventType.NodeDataChanged)
+          return;
+
+        String path = watchedEvent.getPath();
+        if (path == null || !path.startsWith(SyncZKClient.BLOCK_REPORT_DIR + "/"))
+          return;
+
+        onReportPublished(path.substring(SyncZKClient.BLOCK_REPORT_DIR.length() + 1));
+      });
+    } else {
+      this.executor = null;
+    }
+  }
+
+  /**
+   * @return True if DataNodes announce their reports, in which case there is no need to retrieve the reports of
+   * every DataNode on each heartbeat.
+   */
+  public boolean isNotificationsEnabled() {
+    return notificationsEnabled;
+  }
+
+  /**
+   * Start tracking the reports of the given DataNode.
+   *
+   * @param datanodeUuid The DataNode whose reports should be retrieved.
+   * @param since Only reports published at or after this time will be retrieved.
+   */
+  public synchronized void trackDataNode(String datanodeUuid, long since) {
+    if (!lastReportTimestamp.containsKey(datanodeUuid)) {
+      lastReportTimestamp.put(datanodeUuid, since);
+      reportsAtLastTimestamp.put(datanodeUuid, new HashSet<>());
+    }
+  }
+
+  /**
+   * Called when the given DataNode announces that it has published a new report.
+   */
+  private void onReportPublished(String datanodeUuid) {
+    pendingDataNodes.add(datanodeUuid);
+
+    // If an ingestion is already scheduled, then it will pick this DataNode up.
+    if (ingestionScheduled.compareAndSet(false, true)) {
+      executor.execute(() -> {
+        ingestionScheduled.set(false);
+        try {
+          ingest(false);
+        } catch (IOException ex) {
+          LOG.error("Failed to process intermediate block reports:", ex);
+        }
+      });
+    }
+  }
+
+  /**
+   * Retrieve and apply intermediate block reports.
+   *
+   * @param allDataNodes If true, retrieve the reports of every tracked DataNode. Otherwise, only retrieve the
+   *                     reports of the DataNodes that announced a new report (when notifications are enabled).
+   */
+  public synchronized void ingest(boolean allDataNodes) throws IOException {
+    Collection<String> datanodes;
+    if (allDataNodes || !notificationsEnabled) {
+      pendingDataNodes.clear();
+      datanodes = new ArrayList<>(lastReportTimestamp.keySet());
+    } else {
+      if (pendingDataNodes.isEmpty())
+        return;
+
+      datanodes = new ArrayList<>(pendingDataNodes.size());
+      for (String datanodeUuid : pendingDataNodes) {
+        pendingDataNodes.remove(datanodeUuid);
+        // Reports from DataNodes we haven't registered yet will be retrieved once they're registered.
+        if (lastReportTimestamp.containsKey(datanodeUuid))
+          datanodes.add(datanodeUuid);
+      }
+    }
+
+    if (datanodes.isEmpty())
+      return;
+
+    IntermediateBlockReportDataAccess<IntermediateBlockReport> dataAccess =
+            (IntermediateBlockReportDataAccess) HdfsStorageFactory.getDataAccess(IntermediateBlockReportDataAccess.class);
+
+    IOException failure = null;
+    for (String datanodeUuid : datanodes) {
+      try {
+        ingestDataNode(dataAccess, datanodeUuid);
+      } catch (IOException ex) {
+        // Retry this DataNode's reports the next time around, but keep going with the other DataNodes.
+        pendingDataNodes.add(datanodeUuid);
+        if (failure == null)
+          failure = ex;
+      }
+    }
+
+    if (failure != null)
+      throw failure;
+  }
+
+  private void ingestDataNode(IntermediateBlockReportDataAccess<IntermediateBlockReport> dataAccess,
+                              String datanodeUuid) throws IOException {
+    long lastTimestamp = lastReportTimestamp.get(datanodeUuid);
+    Set<Integer> alreadyProcessed = new HashSet<>(reportsAtLastTimestamp.get(datanodeUuid));
+
+    List<IntermediateBlockReport> reports = dataAccess.getReportsPublishedAfter(datanodeUuid, lastTimestamp);
+    reports.sort(PUBLICATION_ORDER);
+
+    List<StorageReceivedDeletedBlocks> received = new ArrayList<>();
+    for (IntermediateBlockReport report : reports) {
+      if (report.getPublishedAt() == lastTimestamp && alreadyProcessed.contains(report.getReportId()))
+        continue;
+
+      received.addAll(Arrays.asList(IntermediateBlockReportCodec.decode(report.getReceivedAndDeletedBlocks(),
+              encoded -> (StorageReceivedDeletedBlocks[]) InvokerUtilities.base64StringToObject(encoded))));
+
+      if (report.getPublishedAt() != lastTimestamp) {
+        lastTimestamp = report.getPublishedAt();
+        alreadyProcessed.clear();
+      }
+      alreadyProcessed.add(report.getReportId());
+    }
+
+    if (!received.isEmpty()) {
+      StorageReceivedDeletedBlocks[] merged = IntermediateBlockReportCodec.mergeByStorage(received);
+
+      if (LOG.isDebugEnabled())
+        LOG.debug("Applying " + reports.size() + " intermediate block report(s) from DataNode " + datanodeUuid +
+                " covering " + merged.length + " storage(s).");
+
+      for (StorageReceivedDeletedBlocks blocks : merged)
+        namesystem.processIncrementalBlockReport(datanodeUuid, blocks);
+    }
+
+    // Only advance once the reports have been applied, so that they're retrieved again if applying them failed.
+    lastReportTimestamp.put(datanodeUuid, lastTimestamp);
+    reportsAtLastTimestamp.put(datanodeUuid, alreadyProcessed);
+  }
+
+  /**
+   * Stop the background thread used to apply announced reports.
+   */
+  public void stop() {
+    if (executor != null)
+      executor.shutdownNow();
+  }
+}
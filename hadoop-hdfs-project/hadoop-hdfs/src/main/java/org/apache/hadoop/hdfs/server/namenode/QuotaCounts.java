@@ -33,10 +33,20 @@ public class QuotaCounts implements Serializable {
   private EnumCounters<Quota> nsSsCounts;
   // Storage type space counts
   private EnumCounters<StorageType> tsCounts;
+  // Directory count, symlink count and file length. These are not subject to
+  // any quota; they are only carried along the quota update pipeline so that
+  // the content summary of a directory with a quota can be read without a
+  // subtree walk. The file count is the rest of the name space.
+  private long directoryCount;
+  private long symlinkCount;
+  private long length;
 
   public static class Builder {
     private EnumCounters<Quota> nsSsCounts;
     private EnumCounters<StorageType> tsCounts;
+    private long directoryCount;
+    private long symlinkCount;
+    private long length;
 
     public Builder() {
       this.nsSsCounts = new EnumCounters<Quota>(Quota.class);
@@ -65,9 +75,27 @@ public Builder typeSpaces(long val) {
       return this;
     }
 
+    public Builder directoryCount(long val) {
+      this.directoryCount = val;
+      return this;
+    }
+
+    public Builder symlinkCount(long val) {
+      this.symlinkCount = val;
+      return this;
+    }
+
+    public Builder length(long val) {
+      this.length = val;
+      return this;
+    }
+
     public Builder quotaCount(QuotaCounts that) {
       this.nsSsCounts.set(that.nsSsCounts);
       this.tsCounts.set(that.tsCounts);
+      this.directoryCount = that.directoryCount;
+      this.symlinkCount = that.symlinkCount;
+      this.length = that.length;
       return this;
     }
 
@@ -79,16 +107,25 @@ public QuotaCounts build() {
   private QuotaCounts(Builder builder) {
     this.nsSsCounts = builder.nsSsCounts;
     this.tsCounts = builder.tsCounts;
+    this.directoryCount = builder.directoryCount;
+    this.symlinkCount = builder.symlinkCount;
+    this.length = builder.length;
   }
 
   public void add(QuotaCounts that) {
     this.nsSsCounts.add(that.nsSsCounts);
     this.tsCounts.add(that.tsCounts);
+    this.directoryCount += that.directoryCount;
+    this.symlinkCount += that.symlinkCount;
+    this.length += that.length;
   }
 
   public void subtract(QuotaCounts that) {
     this.nsSsCounts.subtract(that.nsSsCounts);
     this.tsCounts.subtract(that.tsCounts);
+    this.directoryCount -= that.directoryCount;
+    this.symlinkCount -= that.symlinkCount;
+    this.length -= that.length;
   }
 
   /**
@@ -100,6 +137,9 @@ public QuotaCounts negation() {
     QuotaCounts ret = new QuotaCounts.Builder().quotaCount(this).build();
     ret.nsSsCounts.negation();
     ret.tsCounts.negation();
+    ret.directoryCount = -ret.directoryCount;
+    ret.symlinkCount = -ret.symlinkCount;
+    ret.length = -ret.length;
     return ret;
   }
 
@@ -152,6 +192,50 @@ public void addTypeSpace(StorageType type, long delta) {
     this.tsCounts.add(type, delta);
   }
 
+  public long getDirectoryCount() {
+    return directoryCount;
+  }
+
+  public void setDirectoryCount(long directoryCount) {
+    this.directoryCount = directoryCount;
+  }
+
+  public void addDirectoryCount(long delta) {
+    this.directoryCount += delta;
+  }
+
+  public long getSymlinkCount() {
+    return symlinkCount;
+  }
+
+  public void setSymlinkCount(long symlinkCount) {
+    this.symlinkCount = symlinkCount;
+  }
+
+  public void addSymlinkCount(long delta) {
+    this.symlinkCount += delta;
+  }
+
+  /**
+   * @return the number of files, that is the name space that is taken neither
+   * by directories nor by symlinks
+   */
+  public long getFileCount() {
+    return getNameSpace() - directoryCount - symlinkCount;
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  public void setLength(long length) {
+    this.length = length;
+  }
+
+  public void addLength(long delta) {
+    this.length += delta;
+  }
+
   public boolean anyNsSsCountGreaterOrEqual(long val) {
     return nsSsCounts.anyGreaterOrEqual(val);
   }
@@ -169,7 +253,10 @@ public boolean equals(Object obj) {
     }
     final QuotaCounts that = (QuotaCounts)obj;
     return this.nsSsCounts.equals(that.nsSsCounts)
-        && this.tsCounts.equals(that.tsCounts);
+        && this.tsCounts.equals(that.tsCounts)
+        && this.directoryCount == that.directoryCount
+        && this.symlinkCount == that.symlinkCount
+        && this.length == that.length;
   }
 
   @Override
@@ -180,6 +267,8 @@ public int hashCode() {
   
   @Override
   public String toString(){
-    return "nsSpCounts: " + nsSsCounts.toString() + " typeCounts: " + tsCounts.toString();
+    return "nsSpCounts: " + nsSsCounts.toString() + " typeCounts: " + tsCounts.toString()
+        + " directoryCount: " + directoryCount + " symlinkCount: " + symlinkCount
+        + " length: " + length;
   }
 }
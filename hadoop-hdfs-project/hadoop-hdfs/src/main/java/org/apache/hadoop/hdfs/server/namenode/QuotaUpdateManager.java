@@ -100,7 +100,8 @@ public void addUpdate(final long inodeId, QuotaCounts counts)
       typeSpaces.put(QuotaUpdate.StorageType.valueOf(t.name()), counts.getTypeSpace(t));
     }
     QuotaUpdate update =
-        new QuotaUpdate(nextId(), inodeId, counts.getNameSpace(), counts.getStorageSpace(), typeSpaces);
+        new QuotaUpdate(nextId(), inodeId, counts.getNameSpace(), counts.getStorageSpace(), typeSpaces,
+            counts.getDirectoryCount(), counts.getSymlinkCount(), counts.getLength());
     EntityManager.add(update);
   }
 
@@ -263,6 +264,9 @@ public Object performTask() throws IOException {
           }
           counts.addStorageSpace(update.getStorageSpaceDelta());
           counts.addNameSpace(update.getNamespaceDelta());
+          counts.addDirectoryCount(update.getDirectoryDelta());
+          counts.addSymlinkCount(update.getSymlinkDelta());
+          counts.addLength(update.getLengthDelta());
           
           for (Map.Entry<QuotaUpdate.StorageType, Long> entry : update.getTypeSpaces().entrySet()) {
             counts.addTypeSpace(StorageType.valueOf(entry.getKey().name()), entry.getValue());
@@ -289,7 +293,8 @@ public Object performTask() throws IOException {
 
         boolean hasParentUpdate = false;
         if (dir != null && dir.getId() != INodeDirectory.ROOT_INODE_ID) {
-          boolean allNull = counts.getStorageSpace()==0 && counts.getNameSpace()==0;
+          boolean allNull = counts.getStorageSpace()==0 && counts.getNameSpace()==0 &&
+              counts.getDirectoryCount()==0 && counts.getSymlinkCount()==0 && counts.getLength()==0;
           Map<QuotaUpdate.StorageType, Long > typeSpace = new HashMap<>();
           for(StorageType type : StorageType.asList()){
             typeSpace.put(QuotaUpdate.StorageType.valueOf(type.name()), counts.getTypeSpace(type));
@@ -297,7 +302,8 @@ public Object performTask() throws IOException {
           }
           if (!allNull) {
             QuotaUpdate parentUpdate = new QuotaUpdate(nextId(), dir.getParentId(), counts.getNameSpace(),
-                counts.getStorageSpace(), typeSpace);
+                counts.getStorageSpace(), typeSpace, counts.getDirectoryCount(), counts.getSymlinkCount(),
+                counts.getLength());
             EntityManager.add(parentUpdate);
             hasParentUpdate = true;
             LOG.debug("adding parent update " + parentUpdate);
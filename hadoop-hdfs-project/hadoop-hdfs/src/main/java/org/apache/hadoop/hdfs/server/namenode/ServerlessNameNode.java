@@ -18,7 +18,8 @@
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Sets;
-import com.google.common.hash.Hashing;
+import org.apache.hadoop.hdfs.serverless.cache.FunctionMetadataMap;
+import org.apache.hadoop.hdfs.serverless.cache.MetadataCacheSnapshot;
 import org.apache.hadoop.hdfs.serverless.execution.ExecutionManager;
 import org.apache.hadoop.util.VersionInfo;
 import io.hops.DalDriver;
@@ -74,10 +75,17 @@
 import org.apache.hadoop.hdfs.server.namenode.startupprogress.StartupProgress;
 import org.apache.hadoop.hdfs.server.namenode.startupprogress.StartupProgressMetrics;
 import org.apache.hadoop.hdfs.server.protocol.*;
+import org.apache.hadoop.hdfs.serverless.invoking.DeploymentRouter;
+import org.apache.hadoop.hdfs.serverless.invoking.DirectorySplit;
+import org.apache.hadoop.hdfs.serverless.invoking.DirectorySplitTable;
+import org.apache.hadoop.hdfs.serverless.invoking.HotDirectoryDetector;
 import org.apache.hadoop.hdfs.serverless.invoking.InvokerUtilities;
 import org.apache.hadoop.hdfs.serverless.invoking.ServerlessInvokerBase;
 import org.apache.hadoop.hdfs.serverless.invoking.ServerlessInvokerFactory;
 import org.apache.hadoop.hdfs.serverless.consistency.ActiveServerlessNameNodeList;
+import org.apache.hadoop.hdfs.serverless.consistency.ConsistencyProtocolBatcher;
+import org.apache.hadoop.hdfs.serverless.exceptions.NameNodeException;
+import org.apache.hadoop.hdfs.serverless.execution.taskarguments.SinglePathTaskArguments;
 import org.apache.hadoop.hdfs.serverless.execution.taskarguments.TaskArguments;
 import org.apache.hadoop.hdfs.serverless.execution.results.NameNodeResult;
 import org.apache.hadoop.hdfs.serverless.userserver.NameNodeTcpUdpClient;
@@ -114,12 +122,15 @@
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static com.google.common.hash.Hashing.consistentHash;
+import static org.apache.hadoop.hdfs.serverless.invoking.ServerlessUtilities.extractParentPath;
 import static io.hops.transaction.lock.LockFactory.getInstance;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.*;
 import org.apache.hadoop.tracing.TraceUtils;
@@ -148,7 +159,6 @@
 import static org.apache.hadoop.hdfs.protocol.HdfsConstants.MAX_PATH_LENGTH;
 import static org.apache.hadoop.hdfs.serverless.BaseHandler.localModeEnabled;
 import static org.apache.hadoop.hdfs.serverless.ServerlessNameNodeKeys.*;
-import static org.apache.hadoop.hdfs.serverless.invoking.ServerlessUtilities.extractParentPath;
 import static org.apache.hadoop.util.ExitUtil.terminate;
 import static org.apache.hadoop.util.Time.now;
 
@@ -234,6 +244,59 @@ public class ServerlessNameNode implements NameNodeStatusMXBean {
    */
   private boolean useNdbForConsistencyProtocol;
 
+  /**
+   * Groups concurrent write transactions so that they share a single round of INVs/ACKs.
+   * This is null if consistency protocol batching is disabled.
+   */
+  private ConsistencyProtocolBatcher consistencyProtocolBatcher;
+
+  /**
+   * If true, write transactions start the consistency protocol as soon as their locks are acquired,
+   * so that it runs concurrently with in-memory processing.
+   */
+  private boolean consistencyProtocolPipelined;
+
+  /**
+   * Maps parent directories to deployments, using the same placement as clients.
+   */
+  private DeploymentRouter deploymentRouter;
+
+  /**
+   * The directories that clients route to a fixed deployment rather than by consistent hashing, by parent directory.
+   * These come from the same configuration as the clients' (see {@link FunctionMetadataMap}).
+   */
+  private Map<String, FunctionMetadataMap.Mapping> configuredDeploymentMappings;
+
+  /**
+   * The directories whose children are spread over several deployments. This is null if directory splitting is
+   * disabled.
+   */
+  private DirectorySplitTable directorySplits;
+
+  /**
+   * Finds directories whose children receive so many writes that they should be split. This is null if directory
+   * splitting is disabled.
+   */
+  private HotDirectoryDetector hotDirectoryDetector;
+
+  /**
+   * Resolves and publishes the splits of hot directories, off the request path.
+   */
+  private ExecutorService directorySplitExecutor;
+
+  private int directorySplitFanOut;
+
+  private long directorySplitActivationDelay;
+
+  /**
+   * If INode read leases are enabled, then this is the maximum amount of time (in milliseconds) that we need to
+   * wait for ACKs after issuing INVs: the lease duration plus a safety margin. After this much time has elapsed,
+   * no follower can still be serving a version of the INode that it cached before receiving our INV.
+   *
+   * This is -1 if read leases are disabled.
+   */
+  private long cacheLeaseWaitMillis = -1;
+
   /**
    * Added by Ben; mostly used for debugging (i.e., making sure the NameNode code that
    * is running is up-to-date with the source code base).
@@ -387,7 +450,8 @@ public class ServerlessNameNode implements NameNodeStatusMXBean {
   static {
     WRITE_OPERATIONS = Sets.newHashSet(
             "abandonBlock", "addBlock", "append", "complete", "concat", "create", "delete",
-            "mkdirs", "rename", "setOwner", "setPermission", "setMetaStatus", "truncate"
+            "mkdirs", "rename", "setOwner", "setPermission", "setMetaStatus", "truncate",
+            "createBatch", "deleteBatch", "mkdirsBatch"
     );
   }
 
@@ -449,9 +513,26 @@ public long getProtocolVersion(String protocol, long clientVersion)
   private final HashMap<String, Long> lastStorageReportGroupIds = new HashMap<>();
 
   /**
-   * Used to keep track of the most recent reportId obtained for each data node.
+   * Retrieves intermediate block reports from intermediate storage and applies them.
    */
-  private final HashMap<String, Long> lastIntermediateBlockReportTimestamp = new HashMap<>();
+  private IntermediateBlockReportIngester intermediateBlockReportIngester;
+
+  /**
+   * Pre-loads the metadata cache from, and periodically exports, the metadata cache snapshot of our deployment.
+   * This is null if metadata cache snapshots are disabled.
+   */
+  private MetadataCacheSnapshot metadataCacheSnapshot;
+
+  /**
+   * When intermediate block report notifications are enabled, we still retrieve the reports of every DataNode
+   * this often, in case a notification was missed.
+   */
+  private long intermediateBlockReportFallbackPollInterval;
+
+  /**
+   * The last time we retrieved the intermediate block reports of every DataNode.
+   */
+  private long lastFullIntermediateBlockReportPoll = -1L;
 
   /**
    * The name of the serverless function in which this NameNode instance is running.
@@ -572,7 +653,14 @@ public void getAndProcessUpdatesFromIntermediateStorage() throws IOException, Cl
                       .getDatanodeListForReport(HdfsConstants.DatanodeReportType.ALL);
 
     retrieveAndProcessStorageReports(dataNodes);
-    getAndProcessIntermediateBlockReports();
+
+    // When DataNodes announce their reports, only poll every DataNode occasionally, in case we missed one.
+    long now = System.currentTimeMillis();
+    if (!intermediateBlockReportIngester.isNotificationsEnabled() ||
+            now - lastFullIntermediateBlockReportPoll >= intermediateBlockReportFallbackPollInterval) {
+      intermediateBlockReportIngester.ingest(true);
+      lastFullIntermediateBlockReportPoll = now;
+    }
 
     lastIntermediateStorageUpdate = System.currentTimeMillis();
   }
@@ -637,17 +725,24 @@ private void toggleMetadataCacheWritesForCurrentOp(String target) {
       return;
     }
 
-    // Step 1: Extract the parent path.
-    String parentOfTargetPath = extractParentPath(target);
-
-    // Compute the target deployment number via consistent hashing of the parent directory of `target`.
-    int targetDeployment = (consistentHash(Hashing.md5().hashString(parentOfTargetPath), numReadWriteDeployments));
+    // Compute the target deployment number from the configured mapping of the parent directory of `target` or, if
+    // there is none, via consistent hashing. This must match the placement used by clients (see FunctionMetadataMap).
+    FunctionMetadataMap.Mapping mapping = configuredDeploymentMappings.isEmpty() ? null :
+            configuredDeploymentMappings.get(extractParentPath(target));
+    int targetDeployment;
+    if (mapping != null && mapping.isValid(numNormalAndWriteOnlyDeployments)) {
+      targetDeployment = mapping.getReadDeployment();
+    } else {
+      DirectorySplit split = (directorySplits == null || directorySplits.isEmpty()) ? null :
+              directorySplits.getActiveSplitOfParent(target, System.currentTimeMillis());
+      targetDeployment = split != null ? split.getDeployment(target, false) :
+              deploymentRouter.getDeployment(target, numReadWriteDeployments);
+    }
 
     boolean enableUpdates = (targetDeployment == deploymentNumber);
 
     if (LOG.isTraceEnabled())
-      LOG.trace("Target path '" + target + "' has parent '" + parentOfTargetPath +
-              "'. Parent consistently hashed to deployment " + targetDeployment +
+      LOG.trace("Parent of target path '" + target + "' mapped to deployment " + targetDeployment +
               ". Cache updates will be " + (enableUpdates ? "ENABLED." : "DISABLED."));
 
     // Enable or disable metadata cache writes based on whether the target deployment num matches our deployment num.
@@ -771,17 +866,21 @@ public void populateOperationsMap() {
       return null;
     });
     operations.put("create", this::create);
+    operations.put("createBatch", args -> performBatch("create", this::create, args));
     operations.put("delete", this::delete);
+    operations.put("deleteBatch", args -> performBatch("delete", this::delete, args));
     operations.put("getActiveNamenodesForClient", args -> getActiveNameNodesWithRefresh());
     operations.put("getBlockLocations", this::getBlockLocations);
     operations.put("getDatanodeReport", this::getDatanodeReport);
     operations.put("getFileInfo", this::getFileInfo);
+    operations.put("getFileInfoBatch", args -> performBatch("getFileInfo", this::getFileInfo, args));
     operations.put("getFileLinkInfo", this::getFileLinkInfo);
     operations.put("getListing", this::getListing);
     operations.put("getServerDefaults", this::getServerDefaults);
     operations.put("getStats", this::getStats);
     operations.put("isFileClosed", this::isFileClosed);
     operations.put("mkdirs", this::mkdirs);
+    operations.put("mkdirsBatch", args -> performBatch("mkdirs", this::mkdirs, args));
     operations.put("ping", args -> nameNodeID); // Ping now returns the NameNode ID.
     operations.put("prewarm", args ->  {
       try {
@@ -855,11 +954,108 @@ public Serializable performOperation(String op, TaskArguments fsArgs)
 
     // Attempt to extract the source argument.
     // If it exists, then we'll enable or disable metadata cache writes accordingly.
-    toggleMetadataCacheWritesForCurrentOp(fsArgs.getString(SRC));
+    String src = fsArgs.getString(SRC);
+    toggleMetadataCacheWritesForCurrentOp(src);
+
+    if (hotDirectoryDetector != null && src != null && isWriteOperation(op))
+      recordWriteForDirectorySplitting(src);
 
     return this.operations.get(op).apply(fsArgs);
   }
 
+  /**
+   * Perform a single-path operation on each of the paths of a batch. The paths are given by {@link
+   * org.apache.hadoop.hdfs.serverless.ServerlessNameNodeKeys#SRCS}, and all the other arguments are shared.
+   *
+   * Each path is processed as if it had been the target of its own request: in its own transaction, with metadata
+   * cache writes enabled only if the path is mapped to this deployment. A failure on one path therefore does not
+   * affect the others.
+   *
+   * @param op The name of the single-path operation.
+   * @param singlePathOperation The implementation of the single-path operation.
+   * @param batchArgs The arguments of the batch operation.
+   *
+   * @return The result of the operation for each path, in order. The result for a path on which the operation
+   * failed is a {@link NameNodeException} describing the failure.
+   */
+  private ArrayList<Serializable> performBatch(String op, CheckedFunction<TaskArguments, Serializable> singlePathOperation,
+                                               TaskArguments batchArgs)
+          throws IOException, ClassNotFoundException, InvocationTargetException, NoSuchMethodException,
+          IllegalAccessException {
+    String[] srcs = batchArgs.getStringArray(SRCS);
+    boolean writeOp = isWriteOperation(op);
+
+    if (LOG.isDebugEnabled())
+      LOG.debug("Performing batched " + op + " operation on " + srcs.length + " path(s).");
+
+    ArrayList<Serializable> results = new ArrayList<>(srcs.length);
+    for (String src : srcs) {
+      toggleMetadataCacheWritesForCurrentOp(src);
+
+      if (hotDirectoryDetector != null && writeOp)
+        recordWriteForDirectorySplitting(src);
+
+      try {
+        results.add(singlePathOperation.apply(new SinglePathTaskArguments(batchArgs, src)));
+      } catch (IOException ex) {
+        if (LOG.isDebugEnabled())
+          LOG.debug("Batched " + op + " operation on '" + src + "' failed: " + ex);
+
+        // Only send the class name and message of the exception, as the other results may be sent over TCP, which
+        // requires every class to be registered with Kryo.
+        results.add(new NameNodeException(ex.getMessage(), ex.getClass().getName()));
+      }
+    }
+
+    return results;
+  }
+
+  /**
+   * Count a write to a child of the parent directory of the given path, and split the directories that turn out to
+   * be hot.
+   */
+  private void recordWriteForDirectorySplitting(String src) {
+    long now = System.currentTimeMillis();
+    hotDirectoryDetector.record(extractParentPath(src), now);
+
+    for (String hotDirectory : hotDirectoryDetector.pollHotDirectories(now)) {
+      String child = hotDirectory.endsWith("/") ? hotDirectory + "child" : hotDirectory + "/child";
+      if (directorySplits.getActiveSplitOfParent(child, Long.MAX_VALUE) != null)
+        continue;
+
+      directorySplitExecutor.execute(() -> splitDirectory(hotDirectory));
+    }
+  }
+
+  /**
+   * Spread the children of the given directory over several deployments, and publish the split via ZooKeeper.
+   */
+  private void splitDirectory(String directory) {
+    try {
+      INode inode = getINodeForCache(directory);
+      if (inode == null || !inode.isDirectory())
+        return;
+
+      DirectorySplit split = DirectorySplit.create(directory, inode.getId(), directorySplitFanOut, deploymentRouter,
+              numNormalAndWriteOnlyDeployments, numReadWriteDeployments,
+              System.currentTimeMillis() + directorySplitActivationDelay);
+      zooKeeperClient.publishDirectorySplit(split);
+      directorySplits.put(split);
+
+      LOG.info("Directory '" + directory + "' is hot. Split it: " + split);
+    } catch (Exception ex) {
+      LOG.error("Failed to split hot directory '" + directory + "':", ex);
+    }
+  }
+
+  /**
+   * Return the directories whose children are spread over several deployments, or null if directory splitting is
+   * disabled.
+   */
+  public DirectorySplitTable getDirectorySplits() {
+    return directorySplits;
+  }
+
   public void refreshActiveNameNodesList() throws IOException {
     synchronized (this) {
       if (activeNameNodes == null)
@@ -1149,53 +1345,6 @@ private void retrieveAndProcessStorageReports(List<DatanodeDescriptor> datanodes
 //    }
   }
 
-  /**
-   * Retrieve Intermediate Block Reports from intermediate storage and process them.
-   */
-  private void getAndProcessIntermediateBlockReports() throws IOException, ClassNotFoundException {
-    IntermediateBlockReportDataAccess<IntermediateBlockReport> dataAccess =
-            (IntermediateBlockReportDataAccess) HdfsStorageFactory.getDataAccess(IntermediateBlockReportDataAccess.class);
-
-//    LOG.info("Retrieving intermediate block reports from intermediate storage now...");
-//    LOG.info("There are " + lastIntermediateBlockReportTimestamp.size()
-//            + " DataNodes for which reports must be retrieved.");
-
-    // Keep track of the DNs whose intermediate block reports we process.
-    // We'll update the timestamp after this loop.
-    long now = System.currentTimeMillis();
-    ArrayList<String> processedReports = new ArrayList<>();
-    for (Map.Entry<String, Long> entry : lastIntermediateBlockReportTimestamp.entrySet()) {
-      String datanodeUuid = entry.getKey();
-      long lastTimestamp = entry.getValue();
-
-//      LOG.info("Retrieving all reports with timestamp >= " + (lastTimestamp + 1) + " for DataNode "
-//              + datanodeUuid + " now...");
-
-      List<IntermediateBlockReport> reports = dataAccess.getReportsPublishedAfter(datanodeUuid, lastTimestamp);
-
-//      LOG.info("Retrieved " + reports.size() + " intermediate block reports published by DataNode "
-//              + datanodeUuid + ".");
-
-      for (IntermediateBlockReport report : reports) {
-        StorageReceivedDeletedBlocks[] blocksArr =
-                (StorageReceivedDeletedBlocks[])InvokerUtilities.base64StringToObject(report.getReceivedAndDeletedBlocks());
-
-//        LOG.info("Processing " + blocksArr.length + " StorageReceivedDeletedBlocks instances from intermediate " +
-//                "block report " + report.getReportId() + ", DataNode UUID = " + datanodeUuid + " now...");
-
-        for (StorageReceivedDeletedBlocks blocks : blocksArr) {
-          namesystem.processIncrementalBlockReport(report.getDatanodeUuid(), blocks);
-        }
-      }
-
-      processedReports.add(datanodeUuid);
-    }
-
-    // Update the entries for all the DNs whose reports we processed.
-    for (String datanodeUuid: processedReports)
-      lastIntermediateBlockReportTimestamp.put(datanodeUuid, now);
-  }
-
   /**
    * Retrieve the DataNodes from intermediate storage. Register any that are not already registered.
    *
@@ -1273,10 +1422,8 @@ private List<DatanodeRegistration> registerDataNodesFromIntermediateStorage() th
       DatanodeRegistration datanodeRegistration = new DatanodeRegistration(
               dnId, storageInfo, new ExportedBlockKeys(), VersionInfo.getVersion());
 
-      // Create an entry for this DataNode.
-      if (!lastIntermediateBlockReportTimestamp.containsKey(datanodeUuid)) {
-        lastIntermediateBlockReportTimestamp.put(datanodeUuid, creationTime);
-      }
+      // Start tracking this DataNode's intermediate block reports.
+      intermediateBlockReportIngester.trackDataNode(datanodeUuid, creationTime);
 
       if (namesystem.getBlockManager().getDatanodeManager().getDatanodeByUuid(
               datanodeRegistration.getDatanodeUuid()) != null) {
@@ -1457,9 +1604,19 @@ private boolean complete(TaskArguments fsArgs) throws IOException, ClassNotFound
     }
 
     // Check to see if we've been sent an intermediate block report.
-    getAndProcessIntermediateBlockReports();
+    intermediateBlockReportIngester.ingest(false);
+
+    boolean completed = namesystem.completeFile(src, clientName, last, fileId, data);
+
+    // The file cannot be completed until the reports of the last block's replicas have been applied. If we rely on
+    // notifications, then the notification of one of those reports may not have arrived yet (or may have been
+    // missed), so retrieve the reports of every DataNode before giving up and making the client retry.
+    if (!completed && last != null && intermediateBlockReportIngester.isNotificationsEnabled()) {
+      intermediateBlockReportIngester.ingest(true);
+      completed = namesystem.completeFile(src, clientName, last, fileId, data);
+    }
 
-    return namesystem.completeFile(src, clientName, last, fileId, data);
+    return completed;
   }
 
   private DirectoryListing getListing(TaskArguments fsArgs) throws IOException {
@@ -2271,6 +2428,27 @@ protected void initialize(Configuration conf) throws Exception {
     else
       LOG.debug("Using ZooKeeper for the consistency protocol.");
 
+    if (conf.getBoolean(SERVERLESS_CACHE_LEASES_ENABLED, SERVERLESS_CACHE_LEASES_ENABLED_DEFAULT)) {
+      this.cacheLeaseWaitMillis =
+              conf.getInt(SERVERLESS_CACHE_LEASE_DURATION_MILLISECONDS, SERVERLESS_CACHE_LEASE_DURATION_MILLISECONDS_DEFAULT) +
+              conf.getInt(SERVERLESS_CACHE_LEASE_MARGIN_MILLISECONDS, SERVERLESS_CACHE_LEASE_MARGIN_MILLISECONDS_DEFAULT);
+      LOG.debug("INode read leases are ENABLED. Will wait at most " + cacheLeaseWaitMillis + " ms for ACKs.");
+    }
+
+    this.consistencyProtocolPipelined =
+            conf.getBoolean(SERVERLESS_CONSISTENCY_PIPELINED, SERVERLESS_CONSISTENCY_PIPELINED_DEFAULT);
+    if (consistencyProtocolPipelined)
+      LOG.debug("Pipelining of the consistency protocol is ENABLED.");
+
+    this.deploymentRouter = new DeploymentRouter(conf);
+    this.configuredDeploymentMappings = FunctionMetadataMap.loadConfiguredMappings(conf);
+    LOG.debug("Using the '" + deploymentRouter.getPlacement() + "' placement of directories to deployments.");
+
+    if (conf.getBoolean(SERVERLESS_CONSISTENCY_BATCHING_ENABLED, SERVERLESS_CONSISTENCY_BATCHING_ENABLED_DEFAULT)) {
+      LOG.debug("Consistency protocol batching (group commit) is ENABLED.");
+      this.consistencyProtocolBatcher = new ConsistencyProtocolBatcher(conf, !useNdbForConsistencyProtocol);
+    }
+
     Instant serverlessInitDone = Instant.now();
     Duration serverlessInitDuration = Duration.between(nameNodeInitStart, serverlessInitDone);
 
@@ -2403,6 +2581,32 @@ protected void initialize(Configuration conf) throws Exception {
     // end of the initialization process. (If we encounter an error that causes us to crash but not terminate,
     // our ephemeral node will not be deleted...)
     this.zooKeeperClient.connect();
+
+    this.intermediateBlockReportFallbackPollInterval = conf.getLong(SERVERLESS_IBR_FALLBACK_POLL_INTERVAL,
+            SERVERLESS_IBR_FALLBACK_POLL_INTERVAL_DEFAULT);
+    this.intermediateBlockReportIngester = new IntermediateBlockReportIngester(namesystem, zooKeeperClient,
+            conf.getBoolean(SERVERLESS_IBR_NOTIFICATIONS_ENABLED, SERVERLESS_IBR_NOTIFICATIONS_ENABLED_DEFAULT));
+
+    if (conf.getBoolean(SERVERLESS_DIRECTORY_SPLIT_ENABLED, SERVERLESS_DIRECTORY_SPLIT_ENABLED_DEFAULT)) {
+      this.directorySplits = new DirectorySplitTable();
+      this.directorySplits.watch(zooKeeperClient);
+
+      // Splitting only helps if there is more than one deployment to split over.
+      this.directorySplitFanOut = conf.getInt(SERVERLESS_DIRECTORY_SPLIT_FAN_OUT,
+              SERVERLESS_DIRECTORY_SPLIT_FAN_OUT_DEFAULT);
+      if (directorySplitFanOut > 1 && numReadWriteDeployments > 1) {
+        this.directorySplitActivationDelay = conf.getLong(SERVERLESS_DIRECTORY_SPLIT_ACTIVATION_DELAY,
+                SERVERLESS_DIRECTORY_SPLIT_ACTIVATION_DELAY_DEFAULT);
+        this.hotDirectoryDetector = new HotDirectoryDetector(HotDirectoryDetector.DEFAULT_CAPACITY,
+                conf.getLong(SERVERLESS_DIRECTORY_SPLIT_WINDOW, SERVERLESS_DIRECTORY_SPLIT_WINDOW_DEFAULT),
+                conf.getDouble(SERVERLESS_DIRECTORY_SPLIT_THRESHOLD, SERVERLESS_DIRECTORY_SPLIT_THRESHOLD_DEFAULT));
+        this.directorySplitExecutor = Executors.newSingleThreadExecutor(r -> {
+          Thread thread = new Thread(r, "DirectorySplitter");
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+    }
     // Note that, since we haven't joined a group yet, we won't be considered active. So, we won't
     // actually be included in the initialization of the active NN list. We'll be added later after
     // we join our deployment's ZooKeeper group.
@@ -2564,6 +2768,9 @@ private void stopCommonServices() {
     if (pauseMonitor != null) {
       pauseMonitor.stop();
     }
+    if (intermediateBlockReportIngester != null) {
+      intermediateBlockReportIngester.stop();
+    }
     if(mdCleaner != null){
       mdCleaner.stopMDCleanerMonitor();
     }
@@ -2643,6 +2850,29 @@ public boolean useNdbForConsistencyProtocol() {
     return useNdbForConsistencyProtocol;
   }
 
+  /**
+   * Return the object used to batch concurrent executions of the consistency protocol,
+   * or null if consistency protocol batching is disabled.
+   */
+  public ConsistencyProtocolBatcher getConsistencyProtocolBatcher() {
+    return consistencyProtocolBatcher;
+  }
+
+  /**
+   * Return true if write transactions should start the consistency protocol as soon as their locks are acquired.
+   */
+  public boolean isConsistencyProtocolPipelined() {
+    return consistencyProtocolPipelined;
+  }
+
+  /**
+   * Return the maximum amount of time (in milliseconds) that a Leader NN must wait for ACKs after issuing INVs
+   * when INode read leases are enabled, or -1 if read leases are disabled.
+   */
+  public long getCacheLeaseWaitMillis() {
+    return cacheLeaseWaitMillis;
+  }
+
   /**
    * Start NameNode.
    * <p/>
@@ -3288,6 +3518,16 @@ private void startActiveServicesInternal() throws IOException {
     try {
       this.zooKeeperClient.createAndJoinGroup(this.functionName, String.valueOf(this.nameNodeID), namesystem);
       namesystem.startActiveServices();
+      publishTopology();
+
+      // We're now listening for INVs, so the snapshot can be safely loaded.
+      if (conf.getBoolean(SERVERLESS_METADATA_CACHE_SNAPSHOT_ENABLED,
+              SERVERLESS_METADATA_CACHE_SNAPSHOT_ENABLED_DEFAULT)) {
+        metadataCacheSnapshot = new MetadataCacheSnapshot(conf, namesystem.getMetadataCacheManager(),
+                deploymentNumber);
+        metadataCacheSnapshot.restore();
+        metadataCacheSnapshot.start();
+      }
       startTrashEmptier(conf);
 
       // Create the thread and tell it to run!
@@ -3297,6 +3537,26 @@ private void startActiveServicesInternal() throws IOException {
     }
   }
 
+  /**
+   * Publish the number of deployments that we were configured with, so that clients that watch it route over the
+   * same deployments as we do. Nothing is written if the published number is already up to date.
+   */
+  private void publishTopology() {
+    if (localModeEnabled) {
+      return;
+    }
+
+    try {
+      int[] topology = zooKeeperClient.getTopology();
+      if (topology == null || topology[0] != numNormalAndWriteOnlyDeployments ||
+          topology[1] != numReadWriteDeployments) {
+        zooKeeperClient.publishTopology(numNormalAndWriteOnlyDeployments, numReadWriteDeployments);
+      }
+    } catch (Exception ex) {
+      LOG.error("Failed to publish the number of deployments to ZooKeeper:", ex);
+    }
+  }
+
   private void exitActiveServices() throws ServiceFailedException {
     try {
       stopActiveServicesInternal();
@@ -3307,6 +3567,9 @@ private void exitActiveServices() throws ServiceFailedException {
 
   private void stopActiveServicesInternal() throws IOException {
     try {
+      if (metadataCacheSnapshot != null) {
+        metadataCacheSnapshot.stop();
+      }
       if (namesystem != null) {
         namesystem.stopActiveServices();
       }
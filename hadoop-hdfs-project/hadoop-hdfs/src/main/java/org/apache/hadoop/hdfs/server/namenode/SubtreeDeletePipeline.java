@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.JsonObject;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hdfs.serverless.invoking.ArgumentContainer;
+import org.apache.hadoop.hdfs.serverless.invoking.ServerlessInvokerBase;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offloads batches of the paths deleted by subtree deletes to the NameNodes of other deployments, which delete them
+ * with the subtreeDeleteSubOperation operation.
+ *
+ * The pipeline is shared by all the subtree deletes of a NameNode. At most {@code maxOffloadedBatches} batches are
+ * outstanding at any time. A batch that is produced while the pipeline is full is not queued; the caller deletes it
+ * itself instead. The batches are sent to the other deployments in a round-robin fashion.
+ */
+class SubtreeDeletePipeline {
+  static final Log LOG = LogFactory.getLog(SubtreeDeletePipeline.class);
+
+  private final ExecutorService executor;
+  private final Semaphore offloadedBatches;
+  private final AtomicInteger nextDeployment;
+
+  SubtreeDeletePipeline(int maxOffloadedBatches) {
+    this.executor = Executors.newFixedThreadPool(maxOffloadedBatches);
+    this.offloadedBatches = new Semaphore(maxOffloadedBatches);
+    this.nextDeployment = new AtomicInteger(ThreadLocalRandom.current().nextInt(0, Integer.MAX_VALUE));
+  }
+
+  /**
+   * Offload the deletion of the given paths to another deployment, unless the pipeline is full or there is no other
+   * deployment.
+   *
+   * @param paths The paths to delete. They must not be modified once this returns.
+   * @param subtreeRootId The INode ID of the root of the subtree being deleted.
+   * @return A future that completes with the result of the remote delete, or null if the batch was not offloaded,
+   * in which case the caller must delete the paths itself.
+   */
+  Future<Boolean> tryOffload(final List<String> paths, final long subtreeRootId) {
+    final ServerlessNameNode instance = ServerlessNameNode.tryGetNameNodeInstance(false);
+    if (instance == null || instance.getNumNormalAndWriteOnlyDeployments() < 2 ||
+        !offloadedBatches.tryAcquire()) {
+      return null;
+    }
+
+    final int targetDeployment = nextTargetDeployment(instance);
+    final ArgumentContainer argumentContainer = new ArgumentContainer();
+    argumentContainer.addPrimitive("subtreeRootId", subtreeRootId);
+    argumentContainer.addPrimitive("leaderNameNodeID", instance.getId());
+    argumentContainer.addNonByteArray("paths", paths.toArray(new String[paths.size()]));
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Offloading the deletion of " + paths.size() + " path(s) to deployment " + targetDeployment + ".");
+    }
+
+    try {
+      return executor.submit(() -> {
+        try {
+          ServerlessInvokerBase serverlessInvoker = instance.getServerlessInvoker();
+          JsonObject response = serverlessInvoker.issueHttpRequestWithRetries(
+              serverlessInvoker, "subtreeDeleteSubOperation", instance.getServerlessEndpointBase(),
+              null, argumentContainer, UUID.randomUUID().toString(), targetDeployment, true);
+
+          Object result = ServerlessInvokerBase.extractResultFromJsonResponse(response);
+          return result != null && (boolean) result;
+        } finally {
+          offloadedBatches.release();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      offloadedBatches.release();
+      return null;
+    }
+  }
+
+  /**
+   * Return the next deployment in a round-robin over all the deployments but the local one.
+   */
+  @VisibleForTesting
+  int nextTargetDeployment(ServerlessNameNode instance) {
+    int numOtherDeployments = instance.getNumNormalAndWriteOnlyDeployments() - 1;
+    int targetDeployment = Math.floorMod(nextDeployment.getAndIncrement(), numOtherDeployments);
+    if (targetDeployment >= instance.getDeploymentNumber()) {
+      targetDeployment++;
+    }
+    return targetDeployment;
+  }
+
+  void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,231 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs.server.protocol;
+
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.protocol.ReceivedDeletedBlockInfo.BlockStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the {@link StorageReceivedDeletedBlocks} of an intermediate block
+ * report in a compact, columnar binary form.
+ *
+ * For each storage, the block IDs, lengths, generation stamps, and statuses
+ * of all the reported blocks are written as contiguous columns, followed by
+ * the (usually absent) deletion hints. Compared to serializing the object
+ * graph, this avoids writing class descriptors and per-block object headers,
+ * and it lets the NameNode decode a report without reflection.
+ *
+ * The encoded report is stored in intermediate storage as a Base64 string
+ * prefixed with {@link #COLUMNAR_PREFIX}. Since '#' is not part of the Base64
+ * alphabet, reports published in the older (serialized object) format can
+ * still be recognized and decoded by {@link #decode(String, Decoder)}.
+ */
+public class IntermediateBlockReportCodec {
+  public static final String COLUMNAR_PREFIX = "#1:";
+
+  /**
+   * Decodes reports that were published in the older, serialized object
+   * format.
+   */
+  public interface Decoder {
+    StorageReceivedDeletedBlocks[] decode(String encoded) throws IOException;
+  }
+
+  private static final StorageType[] STORAGE_TYPES = StorageType.values();
+  private static final DatanodeStorage.State[] STORAGE_STATES =
+      DatanodeStorage.State.values();
+
+  private IntermediateBlockReportCodec() { }
+
+  public static String encode(StorageReceivedDeletedBlocks[] reports)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    out.writeInt(reports.length);
+    for (StorageReceivedDeletedBlocks report : reports) {
+      DatanodeStorage storage = report.getStorage();
+      ReceivedDeletedBlockInfo[] blocks = report.getBlocks();
+
+      out.writeUTF(storage.getStorageID());
+      out.writeByte(storage.getState().ordinal());
+      out.writeByte(storage.getStorageType().ordinal());
+      out.writeInt(blocks.length);
+
+      for (ReceivedDeletedBlockInfo info : blocks) {
+        out.writeLong(info.getBlock().getBlockId());
+      }
+      for (ReceivedDeletedBlockInfo info : blocks) {
+        out.writeLong(info.getBlock().getNumBytes());
+      }
+      for (ReceivedDeletedBlockInfo info : blocks) {
+        out.writeLong(info.getBlock().getGenerationStamp());
+      }
+      for (ReceivedDeletedBlockInfo info : blocks) {
+        out.writeByte(info.getStatus().getCode());
+      }
+      for (ReceivedDeletedBlockInfo info : blocks) {
+        String delHints = info.getDelHints();
+        out.writeBoolean(delHints != null);
+        if (delHints != null) {
+          out.writeUTF(delHints);
+        }
+      }
+    }
+
+    out.flush();
+    return COLUMNAR_PREFIX +
+        Base64.getEncoder().encodeToString(bytes.toByteArray());
+  }
+
+  /**
+   * Decode a report produced by {@link #encode(StorageReceivedDeletedBlocks[])}.
+   *
+   * @param encoded The report, as stored in intermediate storage.
+   * @param legacyDecoder Used to decode reports that are not in the columnar
+   *                      format.
+   */
+  public static StorageReceivedDeletedBlocks[] decode(String encoded,
+      Decoder legacyDecoder) throws IOException {
+    if (!encoded.startsWith(COLUMNAR_PREFIX)) {
+      return legacyDecoder.decode(encoded);
+    }
+
+    byte[] bytes = Base64.getDecoder().decode(
+        encoded.substring(COLUMNAR_PREFIX.length()));
+    DataInputStream in =
+        new DataInputStream(new ByteArrayInputStream(bytes));
+
+    StorageReceivedDeletedBlocks[] reports =
+        new StorageReceivedDeletedBlocks[in.readInt()];
+    for (int i = 0; i < reports.length; i++) {
+      String storageId = in.readUTF();
+      DatanodeStorage.State state =
+          readOrdinal(in, STORAGE_STATES, "storage state", storageId);
+      StorageType storageType =
+          readOrdinal(in, STORAGE_TYPES, "storage type", storageId);
+      int numBlocks = in.readInt();
+
+      long[] blockIds = new long[numBlocks];
+      long[] numBytes = new long[numBlocks];
+      long[] genStamps = new long[numBlocks];
+      for (int j = 0; j < numBlocks; j++) {
+        blockIds[j] = in.readLong();
+      }
+      for (int j = 0; j < numBlocks; j++) {
+        numBytes[j] = in.readLong();
+      }
+      for (int j = 0; j < numBlocks; j++) {
+        genStamps[j] = in.readLong();
+      }
+
+      ReceivedDeletedBlockInfo[] blocks =
+          new ReceivedDeletedBlockInfo[numBlocks];
+      for (int j = 0; j < numBlocks; j++) {
+        BlockStatus status = BlockStatus.fromCode(in.readByte());
+        if (status == null) {
+          throw new IOException("Unknown block status in intermediate " +
+              "block report for storage " + storageId);
+        }
+        blocks[j] = new ReceivedDeletedBlockInfo(
+            new Block(blockIds[j], numBytes[j], genStamps[j]), status, null);
+      }
+      for (int j = 0; j < numBlocks; j++) {
+        if (in.readBoolean()) {
+          blocks[j].setDelHints(in.readUTF());
+        }
+      }
+
+      reports[i] = new StorageReceivedDeletedBlocks(
+          new DatanodeStorage(storageId, state, storageType), blocks);
+    }
+
+    return reports;
+  }
+
+  /**
+   * Read the ordinal of an enum constant, as written by
+   * {@link #encode(StorageReceivedDeletedBlocks[])}.
+   *
+   * @throws IOException If the ordinal is not one of the given constants,
+   *                     e.g. because the report is corrupt or was encoded by
+   *                     a version with more constants.
+   */
+  private static <T> T readOrdinal(DataInputStream in, T[] values,
+      String what, String storageId) throws IOException {
+    int ordinal = in.readByte();
+    if (ordinal < 0 || ordinal >= values.length) {
+      throw new IOException("Unknown " + what + " " + ordinal +
+          " in intermediate block report for storage " + storageId);
+    }
+    return values[ordinal];
+  }
+
+  /**
+   * Combine the given reports from a single DataNode so that each storage
+   * appears exactly once. Blocks keep the order in which they were reported,
+   * so a block that is first being received and then received (or deleted)
+   * is processed in that same order.
+   */
+  public static StorageReceivedDeletedBlocks[] mergeByStorage(
+      Collection<StorageReceivedDeletedBlocks> reports) {
+    Map<String, DatanodeStorage> storages = new LinkedHashMap<>();
+    Map<String, List<ReceivedDeletedBlockInfo>> blocks = new LinkedHashMap<>();
+
+    for (StorageReceivedDeletedBlocks report : reports) {
+      String storageId = report.getStorage().getStorageID();
+      storages.put(storageId, report.getStorage());
+
+      List<ReceivedDeletedBlockInfo> storageBlocks = blocks.get(storageId);
+      if (storageBlocks == null) {
+        storageBlocks = new ArrayList<>();
+        blocks.put(storageId, storageBlocks);
+      }
+      for (ReceivedDeletedBlockInfo info : report.getBlocks()) {
+        storageBlocks.add(info);
+      }
+    }
+
+    StorageReceivedDeletedBlocks[] merged =
+        new StorageReceivedDeletedBlocks[storages.size()];
+    int i = 0;
+    for (Map.Entry<String, DatanodeStorage> entry : storages.entrySet()) {
+      List<ReceivedDeletedBlockInfo> storageBlocks =
+          blocks.get(entry.getKey());
+      merged[i++] = new StorageReceivedDeletedBlocks(entry.getValue(),
+          storageBlocks.toArray(
+              new ReceivedDeletedBlockInfo[storageBlocks.size()]));
+    }
+
+    return merged;
+  }
+}
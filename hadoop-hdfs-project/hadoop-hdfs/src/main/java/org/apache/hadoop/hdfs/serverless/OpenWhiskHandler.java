@@ -9,6 +9,8 @@
 import org.apache.hadoop.hdfs.server.namenode.ServerlessNameNode;
 import org.apache.hadoop.hdfs.serverless.consistency.ConsistencyProtocol;
 import org.apache.hadoop.hdfs.serverless.exceptions.NameNodeException;
+import org.apache.hadoop.hdfs.serverless.execution.ExecutionManager;
+import org.apache.hadoop.hdfs.serverless.execution.taskarguments.BinaryTaskArguments;
 import org.apache.hadoop.hdfs.serverless.execution.taskarguments.JsonTaskArguments;
 import org.apache.hadoop.hdfs.serverless.execution.taskarguments.TaskArguments;
 import org.apache.hadoop.hdfs.serverless.execution.results.NameNodeResult;
@@ -24,8 +26,10 @@
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.apache.hadoop.hdfs.serverless.ServerlessNameNodeKeys.*;
 
@@ -253,7 +257,8 @@ private static JsonObject processBatch(JsonObject userArguments, String[] cmdLin
             String operation = requestArguments.getAsJsonPrimitive(ServerlessNameNodeKeys.OPERATION).getAsString();
 
             // The arguments to the file system operation.
-            JsonObject fsArgs = requestArguments.getAsJsonObject(ServerlessNameNodeKeys.FILE_SYSTEM_OP_ARGS);
+            JsonObject fsArgsJson = requestArguments.getAsJsonObject(ServerlessNameNodeKeys.FILE_SYSTEM_OP_ARGS);
+            TaskArguments fsArgs = getTaskArguments(fsArgsJson);
 
             String clientIpAddress = userArguments.getAsJsonPrimitive(ServerlessNameNodeKeys.CLIENT_INTERNAL_IP).getAsString();
 
@@ -267,7 +272,7 @@ private static JsonObject processBatch(JsonObject userArguments, String[] cmdLin
 
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Client's name: " + clientName + ", Client's IP address: " + clientIpAddress + ", Invoked by: " + invokerIdentity);
-                LOG.debug("Operation arguments: " + fsArgs);
+                LOG.debug("Operation arguments: " + fsArgsJson);
             }
 
             // Execute the desired operation. Capture the result to be packaged and returned to the user.
@@ -298,6 +303,21 @@ private static JsonObject processBatch(JsonObject userArguments, String[] cmdLin
         return createJsonResponse(batchOfResults);
     }
 
+    /**
+     * Wrap the file system operation arguments of a request. Arguments sent in the binary envelope of
+     * {@link org.apache.hadoop.hdfs.serverless.invoking.BinaryArgumentCodec} are decoded directly from their bytes.
+     * Otherwise, the arguments are read from the JSON representation.
+     */
+    private static TaskArguments getTaskArguments(JsonObject fsArgs) {
+        if (fsArgs.has(ServerlessNameNodeKeys.BINARY_FILE_SYSTEM_OP_ARGS)) {
+            byte[] encoded = Base64.getDecoder().decode(
+                    fsArgs.getAsJsonPrimitive(ServerlessNameNodeKeys.BINARY_FILE_SYSTEM_OP_ARGS).getAsString());
+            return new BinaryTaskArguments(encoded);
+        }
+
+        return new JsonTaskArguments(fsArgs);
+    }
+
     /**
      * Executes the NameNode code/operation/function execution.
      * @param op The name of the FS operation to be performed.
@@ -323,7 +343,7 @@ private static JsonObject processBatch(JsonObject userArguments, String[] cmdLin
      * @param startTime Return value from System.currentTimeMillis() called as the VERY first thing the HTTP handler does.
      * @return Result of executing NameNode code/operation/function execution.
      */
-    private static NameNodeResult driver(String op, JsonObject fsArgs, String[] commandLineArguments,
+    private static NameNodeResult driver(String op, TaskArguments fsArgs, String[] commandLineArguments,
                                          String functionName, String clientIPAddress, String requestId,
                                          String clientName, boolean isClientInvoker, boolean tcpEnabled,
                                          boolean udpEnabled, List<Integer> tcpPorts, List<Integer> udpPorts,
@@ -371,8 +391,27 @@ private static NameNodeResult driver(String op, JsonObject fsArgs, String[] comm
 
         currentRequestId.set(requestId);
 
+        // HTTP requests are executed unless this NameNode is still executing the same request (e.g., received via
+        // TCP) or has the cached result of it, in which case we return that result instead of executing it twice.
+        // There is no way for the HTTP client to retrieve a result that was lost, so we redo completed requests whose
+        // result is no longer available.
+        ExecutionManager executionManager = serverlessNameNode.getExecutionManager();
+        CompletableFuture<NameNodeResult> originalExecution;
+        while ((originalExecution = executionManager.tryStartTask(requestId, true)) != null) {
+            NameNodeResult originalResult = originalExecution.join();
+            if (originalResult != null) {
+                LOG.warn("Request " + requestId + " (operation = " + op + ") is a duplicate. Returning the result " +
+                        "of its original execution.");
+                return originalResult;
+            }
+        }
+
         // Wait for the worker thread to execute the task. We'll return the result (if there is one) to the client.
-        serverlessNameNode.getExecutionManager().tryExecuteTask(requestId, op, new JsonTaskArguments(fsArgs), result);
+        try {
+            executionManager.tryExecuteTask(requestId, op, fsArgs, result);
+        } finally {
+            executionManager.finishTask(requestId, op, result);
+        }
 
         // The last step is to establish a TCP connection to the client that invoked us.
         if (isClientInvoker && tcpEnabled) {
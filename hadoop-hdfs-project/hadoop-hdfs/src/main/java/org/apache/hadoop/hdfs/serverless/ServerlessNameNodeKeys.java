@@ -10,6 +10,7 @@ public class ServerlessNameNodeKeys {
     public static final String IS_CLIENT_INVOKER = "isClientInvoker";
     public static final String INVOKER_IDENTITY = "INVOKER_IDENTITY";
     public static final String FILE_SYSTEM_OP_ARGS = "fsArgs";
+    public static final String BINARY_FILE_SYSTEM_OP_ARGS = "fsArgsBinary";
     public static final String RESULT = "RESULT";
     public static final String ALL_RESULTS = "ALL_RESULTS";
     public static final String EXCEPTIONS = "EXCEPTIONS";
@@ -17,6 +18,7 @@ public class ServerlessNameNodeKeys {
     public static final String REQUEST_ID = "requestId";
     public static final String ALL_REQUEST_IDS = "allRequestIds";
     public static final String SRC = "src";
+    public static final String SRCS = "srcs";
     public static final String VALUE = "value";
     public static final String FUNCTION_NAME = "functionName";
     public static final String NAME_NODE_ID = "NAME_NODE_ID";
@@ -0,0 +1,400 @@
+package org.apache.hadoop.hdfs.serverless.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent radix tree keyed by path components (e.g., "/home/ben/docs" is stored under the components
+ * "home" -> "ben" -> "docs"). This replaces the {@link org.apache.commons.collections4.trie.PatriciaTrie} that
+ * {@link InMemoryINodeCache} used to guard with a single, fair read-write lock.
+ *
+ * Reads are completely lock-free. Each node stores its children in a {@link ConcurrentHashMap} and its value in a
+ * volatile field, so {@link #get(String)} and {@link #containsKey(String)} never block, even while other threads are
+ * inserting, evicting, or invalidating entries.
+ *
+ * Writes only synchronize on the node(s) they modify. A node that becomes empty (no value and no children) is
+ * pruned from its parent. Pruning locks the parent and then the child (always in that order) and marks the child
+ * as removed; writers that find themselves on a removed node simply retry from the root. This means that eviction
+ * callbacks and prefix invalidations of unrelated subtrees never contend with one another.
+ *
+ * Keys are normalized into components by splitting on '/' and ignoring empty components, so "" and "/" both
+ * refer to the root of the tree. The original key is retained alongside each value so that callers can map the
+ * entries returned by {@link #removeByPrefix(String)} back onto other key-based caches.
+ *
+ * @param <V> The type of value stored in the trie.
+ */
+public class ConcurrentPathTrie<V> {
+    private static final char SEPARATOR = '/';
+
+    private final Node<V> root = new Node<>(null, "");
+
+    /**
+     * Number of values currently stored in the trie.
+     */
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    /**
+     * Return the value stored under the given path, or null if there is no such value.
+     */
+    public V get(String path) {
+        Node<V> node = find(path);
+
+        if (node == null)
+            return null;
+
+        Leaf<V> leaf = node.leaf;
+        return leaf == null ? null : leaf.value;
+    }
+
+    /**
+     * Return true if a value is stored under the given path.
+     */
+    public boolean containsKey(String path) {
+        return get(path) != null;
+    }
+
+    /**
+     * Return the number of values stored in the trie.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Store the given value under the given path.
+     *
+     * @return The value previously stored under the path, or null if there was none.
+     */
+    public V put(String path, V value) {
+        if (value == null)
+            throw new IllegalArgumentException("ConcurrentPathTrie does not support null values. Key: " + path);
+
+        String[] components = split(path);
+        Leaf<V> leaf = new Leaf<>(path, value);
+
+        while (true) {
+            Node<V> node = getOrCreate(components);
+
+            // The path was pruned out from under us. Start over from the root.
+            if (node == null)
+                continue;
+
+            synchronized (node) {
+                if (node.removed)
+                    continue;
+
+                Leaf<V> previous = node.leaf;
+                node.leaf = leaf;
+
+                if (previous == null) {
+                    size.incrementAndGet();
+                    return null;
+                }
+
+                return previous.value;
+            }
+        }
+    }
+
+    /**
+     * Remove the value stored under the given path.
+     *
+     * @return The value that was removed, or null if there was none.
+     */
+    public V remove(String path) {
+        return removeInternal(path, null);
+    }
+
+    /**
+     * Remove the value stored under the given path, but only if it is the given value. This is used by eviction
+     * callbacks so that they do not remove a value that was re-inserted after the evicted one.
+     *
+     * @return True if the value was removed.
+     */
+    public boolean remove(String path, V expected) {
+        if (expected == null)
+            return false;
+
+        return removeInternal(path, expected) != null;
+    }
+
+    /**
+     * Remove every value whose key is prefixed by the given string, returning the removed entries.
+     *
+     * This mirrors the semantics of {@link org.apache.commons.collections4.trie.PatriciaTrie#prefixMap(Object)}
+     * for path keys. For example, the prefix "/home/ben/doc" matches "/home/ben/doc", "/home/ben/docs", and
+     * "/home/ben/docs/a.txt", whereas "/home/ben/doc/" only matches the descendants of the "/home/ben/doc"
+     * directory, and not the directory itself.
+     *
+     * The removal is not atomic. The entries are removed one node at a time, so a concurrent reader may observe
+     * some of the prefixed entries after others have already been removed, and an entry that is put beneath the
+     * prefix while the removal is in progress may survive it.
+     *
+     * @return The (key, value) pairs that were removed by this call.
+     */
+    public List<Map.Entry<String, V>> removeByPrefix(String prefix) {
+        List<Map.Entry<String, V>> removed = new ArrayList<>();
+        String[] components = split(prefix);
+
+        // A prefix that ends with the separator (or is empty) only matches whole components.
+        boolean lastComponentIsPartial = components.length > 0 &&
+                prefix.charAt(prefix.length() - 1) != SEPARATOR;
+
+        if (!lastComponentIsPartial) {
+            Node<V> node = find(components, components.length);
+
+            if (node != null) {
+                // Only the descendants of the node match, so its own value is left in place.
+                for (Node<V> child : node.children.values()) {
+                    clearSubtree(child, removed);
+                    pruneSingle(child);
+                }
+                prune(node);
+            }
+
+            return removed;
+        }
+
+        Node<V> parent = find(components, components.length - 1);
+
+        if (parent == null)
+            return removed;
+
+        String partial = components[components.length - 1];
+        for (Map.Entry<String, Node<V>> entry : parent.children.entrySet()) {
+            if (entry.getKey().startsWith(partial)) {
+                Node<V> child = entry.getValue();
+                clearSubtree(child, removed);
+                prune(child);
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Remove every value from the trie.
+     */
+    public void clear() {
+        clearSubtree(root, new ArrayList<>());
+    }
+
+    /**
+     * Clear the value of the given node and of every node beneath it, adding the cleared entries to {@code removed}.
+     * Empty descendants are pruned bottom-up as we go.
+     */
+    private void clearSubtree(Node<V> node, List<Map.Entry<String, V>> removed) {
+        for (Node<V> child : node.children.values()) {
+            clearSubtree(child, removed);
+            pruneSingle(child);
+        }
+
+        Leaf<V> leaf;
+        synchronized (node) {
+            leaf = node.leaf;
+            node.leaf = null;
+        }
+
+        if (leaf != null) {
+            size.decrementAndGet();
+            removed.add(leaf);
+        }
+    }
+
+    private V removeInternal(String path, V expected) {
+        Node<V> node = find(path);
+
+        if (node == null)
+            return null;
+
+        Leaf<V> leaf;
+        synchronized (node) {
+            leaf = node.leaf;
+
+            if (leaf == null || (expected != null && leaf.value != expected))
+                return null;
+
+            node.leaf = null;
+        }
+
+        size.decrementAndGet();
+        prune(node);
+        return leaf.value;
+    }
+
+    /**
+     * Walk from the given node towards the root, unlinking each node that has become empty.
+     */
+    private void prune(Node<V> node) {
+        while (node != null && node != root) {
+            Node<V> parent = node.parent;
+
+            if (!pruneSingle(node))
+                return;
+
+            node = parent;
+        }
+    }
+
+    /**
+     * Unlink the given node from its parent if it holds no value and has no children.
+     *
+     * @return True if the node was unlinked.
+     */
+    private boolean pruneSingle(Node<V> node) {
+        Node<V> parent = node.parent;
+
+        if (parent == null)
+            return false;
+
+        // Lock order is always parent, then child.
+        synchronized (parent) {
+            synchronized (node) {
+                if (node.removed || node.leaf != null || !node.children.isEmpty())
+                    return false;
+
+                node.removed = true;
+                parent.children.remove(node.name, node);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return the node for the given components, creating any missing nodes along the way.
+     * Returns null if we encountered a node that was concurrently pruned, in which case the caller should retry.
+     */
+    private Node<V> getOrCreate(String[] components) {
+        Node<V> node = root;
+
+        for (String component : components) {
+            Node<V> child = node.children.get(component);
+
+            if (child == null) {
+                synchronized (node) {
+                    if (node.removed)
+                        return null;
+
+                    final Node<V> parent = node;
+                    child = node.children.computeIfAbsent(component, name -> new Node<>(parent, name));
+                }
+            }
+
+            node = child;
+        }
+
+        return node;
+    }
+
+    private Node<V> find(String path) {
+        String[] components = split(path);
+        return find(components, components.length);
+    }
+
+    /**
+     * Return the node corresponding to the first {@code depth} components, or null if no such node exists.
+     */
+    private Node<V> find(String[] components, int depth) {
+        Node<V> node = root;
+
+        for (int i = 0; i < depth && node != null; i++)
+            node = node.children.get(components[i]);
+
+        return node;
+    }
+
+    /**
+     * Split the given path into its non-empty components.
+     */
+    static String[] split(String path) {
+        if (path == null || path.isEmpty())
+            return new String[0];
+
+        int count = 0;
+        int len = path.length();
+        for (int i = 0; i < len; i++) {
+            if (path.charAt(i) != SEPARATOR && (i == 0 || path.charAt(i - 1) == SEPARATOR))
+                count++;
+        }
+
+        String[] components = new String[count];
+        int idx = 0;
+        int start = -1;
+        for (int i = 0; i <= len; i++) {
+            boolean boundary = i == len || path.charAt(i) == SEPARATOR;
+
+            if (boundary) {
+                if (start >= 0) {
+                    components[idx++] = path.substring(start, i);
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+
+        return components;
+    }
+
+    /**
+     * Immutable (key, value) pair stored in a node. Keeping both in a single object lets readers observe the key
+     * and the value atomically through one volatile read.
+     */
+    private static final class Leaf<V> implements Map.Entry<String, V> {
+        private final String key;
+        private final V value;
+
+        Leaf(String key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException("Entries of ConcurrentPathTrie are immutable.");
+        }
+    }
+
+    private static final class Node<V> {
+        /**
+         * Parent of this node. Null only for the root.
+         */
+        final Node<V> parent;
+
+        /**
+         * The path component associated with this node.
+         */
+        final String name;
+
+        final ConcurrentHashMap<String, Node<V>> children = new ConcurrentHashMap<>(4);
+
+        /**
+         * The value stored at this node, if any. Only written while holding this node's monitor.
+         */
+        volatile Leaf<V> leaf;
+
+        /**
+         * Set once this node has been unlinked from its parent. Only written while holding both the parent's
+         * and this node's monitors.
+         */
+        volatile boolean removed;
+
+        Node(Node<V> parent, String name) {
+            this.parent = parent;
+            this.name = name;
+        }
+    }
+}
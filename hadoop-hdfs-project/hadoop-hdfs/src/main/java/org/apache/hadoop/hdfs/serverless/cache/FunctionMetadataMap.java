@@ -1,107 +1,280 @@
 package org.apache.hadoop.hdfs.serverless.cache;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.serverless.invoking.DeploymentRouter;
+import org.apache.hadoop.hdfs.serverless.invoking.DirectorySplit;
+import org.apache.hadoop.hdfs.serverless.invoking.DirectorySplitTable;
+import org.apache.hadoop.hdfs.serverless.zookeeper.ZKClient;
+import org.apache.zookeeper.Watcher;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisException;
 
-import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.hadoop.hdfs.serverless.invoking.ServerlessUtilities.extractParentPath;
+import static org.apache.hadoop.hdfs.serverless.invoking.ServerlessUtilities.isWriteOperation;
 
 /**
  * Maintains a cache that maps files to the particular serverless functions which cache that
  * file's (or directory's) metadata.
  *
  * Objects of this class are utilized by clients of Serverless HopsFS.
+ *
+ * Most parent directories are mapped by consistent hashing, which is done (and memoized) by a
+ * {@link DeploymentRouter}. Explicit mappings take precedence over computed ones. They are either configured with
+ * {@link DFSConfigKeys#SERVERLESS_DEPLOYMENT_MAPPING_EXPLICIT}, or added with {@link #addEntry(String, long, boolean)}
+ * and kept per parent directory in a bounded, local cache. As long as there is no explicit mapping and Redis is
+ * disabled, lookups go straight to the router, without even extracting the parent directory of the path.
+ *
+ * Like computed mappings, explicit mappings send the writes to a directory to its write deployment and everything
+ * else to its read deployment. Configured mappings may name a separate write deployment, e.g., a write-only one.
+ * Mappings added with {@link #addEntry(String, long, boolean)} or read from Redis name a single deployment, which
+ * serves both.
+ *
+ * Every added mapping carries the version of the topology (i.e., the number of deployments) for which it was
+ * created. Changing the topology bumps the version, which invalidates all added mappings at once without walking the
+ * cache. The topology changes when {@link #setTopology(int, int)} is called or, if the map watches ZooKeeper (see
+ * {@link #watchTopology(ZKClient, TopologyListener)}), when the NameNodes publish a new number of deployments. Configured mappings are kept for as long as the deployments that they name exist. Membership changes of
+ * individual deployments do not affect any mapping, as a deployment keeps its number while its NameNodes come and go.
+ *
+ * Redis is optional. If it is enabled, it is consulted (with a single round trip) only when the local cache misses,
+ * and explicitly-added mappings are written through to it so that they can be shared with other clients. If Redis
+ * cannot be reached, then lookups fall back to consistent hashing and added mappings are only kept locally.
+ *
+ * NameNodes load the configured mappings with {@link #loadConfiguredMappings(Configuration)}, so that they agree
+ * with clients on which deployment caches the metadata of a directory.
  */
 public class FunctionMetadataMap {
     private static final Log LOG = LogFactory.getLog(FunctionMetadataMap.class);
 
     /**
      * Redis client. The mapping is stored in Redis so it can be accessed by both CLI and Java applications.
+     *
+     * This is null if Redis is disabled.
      */
     private final JedisPool redisPool;
 
     /**
-     * The mapping is stored in here.
-     *
-     * This is presently not used; instead, we use a local Redis instance.
+     * The explicitly-added mappings from parent directory paths to deployments.
      */
-    private final HashMap<String, Integer> cache;
+    private final Cache<String, Mapping> cache;
 
-    public FunctionMetadataMap(Configuration conf) {
-        cache = new HashMap<String, Integer>();
+    /**
+     * The configured mappings from parent directory paths to deployments. These are never evicted.
+     */
+    private final Map<String, Mapping> configuredMappings;
 
-        String host = conf.get(DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_ENDPOINT,
-                DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_ENDPOINT_DEFAULT);
+    /**
+     * Computes the mappings of parent directories that were not added explicitly.
+     */
+    private final DeploymentRouter router;
 
-        int port = conf.getInt(DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_PORT,
-                DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_PORT_DEFAULT);
+    /**
+     * The directories whose children are spread over several deployments, or null if directories are never split.
+     */
+    private volatile DirectorySplitTable directorySplits;
 
-        LOG.debug("Creating Redis client for host " + host + ", port " + port);
+    /**
+     * Set once the first mapping is added explicitly, or if mappings are configured. Until then, there are no
+     * explicit mappings to look up.
+     */
+    private volatile boolean hasExplicitMappings = false;
 
-        redisPool = new JedisPool(host, port);
-    }
+    /**
+     * Version of the topology. Mappings created for an older version are ignored.
+     */
+    private final AtomicLong version = new AtomicLong();
 
-    public FunctionMetadataMap() {
-        cache = new HashMap<String, Integer>();
+    /**
+     * The total number of deployments, including write-only and mixed (read-write) deployments.
+     */
+    private volatile int numDeployments;
 
-        String host = DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_ENDPOINT_DEFAULT;
-        int port = DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_PORT_DEFAULT;
+    /**
+     * The number of mixed (read-write) deployments.
+     */
+    private volatile int numReadWriteDeployments;
 
-        LOG.debug("Creating Redis client for host " + host + ", port " + port);
+    private final AtomicLong numHits = new AtomicLong();
 
-        redisPool = new JedisPool(host, port);
-    }
+    private final AtomicLong numMisses = new AtomicLong();
 
     /**
-     * Check if the cache contains an entry for the particular file or directory.
-     * @param path The path of the file or directory of interest.
-     * @return `true` if the cache contains an entry for the given file or directory, otherwise `false`.
+     * @param conf The configuration, which specifies the capacity of the cache and how to reach Redis (if at all).
+     * @param numDeployments The number of unique deployments, including read-only and mixed (read-write).
+     * @param numReadWriteDeployments The number of mixed (read-write) deployments.
      */
-    public boolean containsEntry(String path) {
-        String pathToCache = extractParentPath(path);
+    public FunctionMetadataMap(Configuration conf, int numDeployments, int numReadWriteDeployments) {
+        int capacity = conf.getInt(DFSConfigKeys.SERVERLESS_DEPLOYMENT_MAPPING_CACHE_CAPACITY,
+                DFSConfigKeys.SERVERLESS_DEPLOYMENT_MAPPING_CACHE_CAPACITY_DEFAULT);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(capacity)
+                .build();
 
-        try (Jedis jedis = redisPool.getResource()) {
-            return jedis.exists(pathToCache);
+        this.router = new DeploymentRouter(conf);
+        this.numDeployments = numDeployments;
+        this.numReadWriteDeployments = numReadWriteDeployments;
+
+        this.configuredMappings = loadConfiguredMappings(conf);
+        this.hasExplicitMappings = !configuredMappings.isEmpty();
+
+        if (conf.getBoolean(DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_ENABLED,
+                DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_ENABLED_DEFAULT)) {
+            String host = conf.get(DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_ENDPOINT,
+                    DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_ENDPOINT_DEFAULT);
+
+            int port = conf.getInt(DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_PORT,
+                    DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_PORT_DEFAULT);
+
+            LOG.debug("Creating Redis client for host " + host + ", port " + port);
+
+            redisPool = new JedisPool(host, port);
+        } else {
+            redisPool = null;
         }
     }
 
     /**
-     * Return the particular serverless functions responsible for caching the metadata for the given file or directory.
-     * @return the number of the associated serverless function, or -1 if no
-     *         entry exists in the map for this function yet.
+     * Return the mappings configured with {@link DFSConfigKeys#SERVERLESS_DEPLOYMENT_MAPPING_EXPLICIT}, by parent
+     * directory. Each of them is of the form {@code directory=deployment} or
+     * {@code directory=readDeployment:writeDeployment}.
+     *
+     * @throws IllegalArgumentException If one of the mappings is malformed.
      */
-    public int getFunction(String file) {
-        String pathToCache = extractParentPath(file);
+    public static Map<String, Mapping> loadConfiguredMappings(Configuration conf) {
+        Map<String, Mapping> mappings = new HashMap<>();
+        for (String entry : conf.getTrimmedStrings(DFSConfigKeys.SERVERLESS_DEPLOYMENT_MAPPING_EXPLICIT)) {
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0)
+                throw new IllegalArgumentException("Invalid deployment mapping '" + entry + "'. Expected " +
+                        "'directory=deployment' or 'directory=readDeployment:writeDeployment'.");
 
-        try (Jedis jedis = redisPool.getResource()) {
-            if (jedis.exists(pathToCache))
-                return Integer.parseInt(jedis.get(pathToCache));
-            else
-                return -1;
+            String directory = Paths.get(entry.substring(0, separator).trim()).toString();
+            String[] deployments = entry.substring(separator + 1).split(":");
+            try {
+                int readDeployment = Integer.parseInt(deployments[0].trim());
+                int writeDeployment = deployments.length > 1 ? Integer.parseInt(deployments[1].trim()) : readDeployment;
+                if (deployments.length > 2 || readDeployment < 0 || writeDeployment < 0)
+                    throw new NumberFormatException();
+                mappings.put(directory, new Mapping(readDeployment, writeDeployment, -1L));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid deployments in deployment mapping '" + entry + "'.");
+            }
         }
+        return Collections.unmodifiableMap(mappings);
     }
 
     /**
-     * Given the original path to a target file or directory, return the path that is used by the metadata map/cache.
+     * Return the deployment to which the given operation on the given file or directory should be sent.
      *
-     * Essentially, this attempts to extract the parent directory's path. If it does not exist, then it makes sure
-     * that the parameterized path is the root directory, since otherwise obtaining the parent directory should be
-     * possible.
+     * This never returns -1. If there is no explicit mapping for the parent directory, then the deployment is
+     * computed by consistent hashing, either of the parent directory or, if the parent directory is split, of the
+     * target's name.
      *
-     * @param originalPath The original path to target a file or directory.
-     * @return The path that is used by the metadata map/cache.
+     * @param path The file or directory targeted by the operation.
+     * @param opName The name of the FS operation to be performed.
      */
+    public int getDeployment(String path, String opName) {
+        if (hasExplicitMappings || redisPool != null) {
+            Mapping mapping = getValidMapping(extractParentPath(path));
+            if (mapping != null) {
+                numHits.incrementAndGet();
+                return isWriteOperation(opName) ? mapping.writeDeployment : mapping.readDeployment;
+            }
+            numMisses.incrementAndGet();
+        }
 
+        DirectorySplitTable splits = directorySplits;
+        if (splits != null && !splits.isEmpty()) {
+            DirectorySplit split = splits.getActiveSplitOfParent(path, System.currentTimeMillis());
+            if (split != null)
+                return split.getDeployment(path, isWriteOperation(opName));
+        }
+
+        return router.getDeployment(path, opName, numDeployments, numReadWriteDeployments);
+    }
+
+    /**
+     * Route operations on the children of the directories in the given table according to their split.
+     */
+    public void setDirectorySplits(DirectorySplitTable directorySplits) {
+        this.directorySplits = directorySplits;
+    }
+
+    /**
+     * Return the mapping for the given parent directory if it is configured for deployments that exist, or if it
+     * exists locally or in Redis and was created for the current topology, otherwise null.
+     */
+    private Mapping getValidMapping(String pathToCache) {
+        Mapping mapping = configuredMappings.get(pathToCache);
+        if (mapping != null && mapping.isValid(numDeployments))
+            return mapping;
+
+        mapping = cache.getIfPresent(pathToCache);
+        if (mapping != null && mapping.version == version.get())
+            return mapping;
+
+        if (redisPool == null)
+            return null;
+
+        String value;
+        try (Jedis jedis = redisPool.getResource()) {
+            value = jedis.get(pathToCache);
+        } catch (JedisException ex) {
+            LOG.warn("Failed to look up the deployment mapping of '" + pathToCache + "' in Redis. Falling back to " +
+                    "consistent hashing:", ex);
+            return null;
+        }
+
+        if (value == null)
+            return null;
+
+        int deployment;
+        try {
+            deployment = Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            LOG.warn("Ignoring invalid deployment mapping '" + pathToCache + "' -> '" + value + "' in Redis.");
+            return null;
+        }
+        mapping = new Mapping(deployment, deployment, version.get());
+        cache.put(pathToCache, mapping);
+        hasExplicitMappings = true;
+        return mapping;
+    }
+
+    /**
+     * Check if the cache contains an entry for the particular file or directory.
+     * @param path The path of the file or directory of interest.
+     * @return `true` if the cache contains an entry for the given file or directory, otherwise `false`.
+     */
+    public boolean containsEntry(String path) {
+        return getValidMapping(extractParentPath(path)) != null;
+    }
+
+    /**
+     * Return the particular serverless functions responsible for caching the metadata for the given file or directory.
+     * @return the number of the associated serverless function (i.e., the read deployment of the explicit mapping),
+     *         or -1 if no entry exists in the map for this function yet.
+     */
+    public int getFunction(String file) {
+        Mapping mapping = getValidMapping(extractParentPath(file));
+        return mapping == null ? -1 : mapping.readDeployment;
+    }
 
     /**
      * Add an entry to the cache. Will not overwrite an existing entry unless parameter `overwriteExisting` is true.
+     * The given function serves both the reads and the writes to the parent directory of the given file or directory.
+     * A configured mapping of the same directory takes precedence over the entry.
      * @param path The file or directory (i.e., key) for which we are adding an entry to the cache.
      * @param function The serverless function (i.e., value) associated with the given file.
      * @param overwriteExisting Overwrite an existing entry.
@@ -113,29 +286,178 @@ public boolean addEntry(String path, long function, boolean overwriteExisting) {
         if (LOG.isDebugEnabled())
             LOG.debug("Adding cache entry with key '" + pathToCache + "' for target '" + path + "'. Value: " + function + ".");
 
-        try (Jedis jedis = redisPool.getResource()) {
-            String resp = jedis.set(pathToCache, String.valueOf(function));
+        if (!overwriteExisting && getValidMapping(pathToCache) != null)
+            return false;
+
+        cache.put(pathToCache, new Mapping((int) function, (int) function, version.get()));
+        hasExplicitMappings = true;
 
-            if (LOG.isDebugEnabled())
-                LOG.debug("Response from jedis.set('" + pathToCache + "', " + function + "): " + resp);
+        if (redisPool != null) {
+            try (Jedis jedis = redisPool.getResource()) {
+                String resp = jedis.set(pathToCache, String.valueOf(function));
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Response from jedis.set('" + pathToCache + "', " + function + "): " + resp);
+            } catch (JedisException ex) {
+                LOG.warn("Failed to write the deployment mapping of '" + pathToCache + "' to Redis. The mapping " +
+                        "is only kept locally:", ex);
+            }
         }
 
-        return false;
+        return true;
     }
 
     /**
-     * Return the number of entries in the cache (i.e., the size of the cache).
+     * Update the number of deployments. All added mappings are invalidated. Configured mappings are kept, but only
+     * used while the deployments that they name exist.
+     *
+     * @param numDeployments The number of unique deployments, including read-only and mixed (read-write).
+     * @param numReadWriteDeployments The number of mixed (read-write) deployments.
      */
-    public long size() {
-        try (Jedis jedis = redisPool.getResource()) {
-            return jedis.dbSize();
+    public synchronized void setTopology(int numDeployments, int numReadWriteDeployments) {
+        this.numDeployments = numDeployments;
+        this.numReadWriteDeployments = numReadWriteDeployments;
+        invalidateAll();
+    }
+
+    /**
+     * Route over the number of deployments published in ZooKeeper, both now and whenever the NameNodes publish a new
+     * number. Each time the number changes, the added mappings are invalidated and the given listener is notified.
+     */
+    public void watchTopology(ZKClient zkClient, TopologyListener listener) {
+        zkClient.addTopologyListener(watchedEvent -> {
+            Watcher.Event.EventType type = watchedEvent.getType();
+            if (type == Watcher.Event.EventType.NodeCreated || type == Watcher.Event.EventType.NodeDataChanged)
+                refreshTopology(zkClient, listener);
+        });
+
+        refreshTopology(zkClient, listener);
+    }
+
+    /**
+     * Load the number of deployments published in ZooKeeper, and switch to it if it differs from the current one.
+     */
+    private synchronized void refreshTopology(ZKClient zkClient, TopologyListener listener) {
+        int[] topology;
+        try {
+            topology = zkClient.getTopology();
+        } catch (Exception ex) {
+            LOG.error("Failed to load the number of deployments from ZooKeeper:", ex);
+            return;
+        }
+
+        if (topology == null || (topology[0] == numDeployments && topology[1] == numReadWriteDeployments))
+            return;
+
+        if (topology[1] < 1 || topology[1] > topology[0]) {
+            LOG.warn("Ignoring invalid number of deployments published in ZooKeeper: " + topology[0] +
+                    " deployment(s), " + topology[1] + " of which are mixed (read+write).");
+            return;
         }
+
+        LOG.info("Number of deployments changed from " + numDeployments + " (" + numReadWriteDeployments +
+                " mixed) to " + topology[0] + " (" + topology[1] + " mixed).");
+        setTopology(topology[0], topology[1]);
+        listener.topologyChanged(topology[0], topology[1]);
+    }
+
+    /**
+     * Invalidate all added mappings.
+     */
+    public void invalidateAll() {
+        long newVersion = version.incrementAndGet();
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Invalidating all deployment mappings. New version: " + newVersion + ".");
+
+        cache.invalidateAll();
+    }
+
+    /**
+     * Return the number of explicitly-added entries in the cache (i.e., the size of the cache).
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Return the current version of the topology.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Return the number of lookups that found an explicitly-added mapping.
+     */
+    public long getNumHits() {
+        return numHits.get();
+    }
+
+    /**
+     * Return the number of lookups that consulted the cache but had to fall back to consistent hashing.
+     */
+    public long getNumMisses() {
+        return numMisses.get();
     }
 
     /**
      * Close the redis pool. Should be called on termination.
      */
     public void terminate() {
-        redisPool.close();
+        if (redisPool != null)
+            redisPool.close();
+    }
+
+    /**
+     * Notified when the number of deployments published in ZooKeeper changes.
+     */
+    public interface TopologyListener {
+        /**
+         * @param numDeployments The number of unique deployments, including write-only and mixed (read-write).
+         * @param numReadWriteDeployments The number of mixed (read-write) deployments.
+         */
+        void topologyChanged(int numDeployments, int numReadWriteDeployments);
+    }
+
+    /**
+     * The deployments to which a parent directory is explicitly mapped.
+     */
+    public static final class Mapping {
+        private final int readDeployment;
+
+        private final int writeDeployment;
+
+        /**
+         * The topology version for which this mapping was created, or -1 if it was configured.
+         */
+        private final long version;
+
+        Mapping(int readDeployment, int writeDeployment, long version) {
+            this.readDeployment = readDeployment;
+            this.writeDeployment = writeDeployment;
+            this.version = version;
+        }
+
+        /**
+         * The deployment that serves the reads from the directory, and caches its children's metadata.
+         */
+        public int getReadDeployment() {
+            return readDeployment;
+        }
+
+        /**
+         * The deployment that serves the writes to the directory.
+         */
+        public int getWriteDeployment() {
+            return writeDeployment;
+        }
+
+        /**
+         * Return true if both deployments of this mapping exist when there are the given number of deployments.
+         */
+        public boolean isValid(int numDeployments) {
+            return readDeployment < numDeployments && writeDeployment < numDeployments;
+        }
     }
 }
@@ -2,8 +2,9 @@
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
 import com.github.benmanes.caffeine.cache.RemovalListener;
-import org.apache.commons.collections4.trie.PatriciaTrie;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.server.namenode.INode;
@@ -12,8 +13,7 @@
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.hash.Hashing.consistentHash;
 import static io.hops.transaction.context.EntityContext.*;
@@ -39,18 +39,23 @@ public class InMemoryINodeCache {
     private static final float DEFAULT_LOAD_FACTOR = 0.75f;
 
     /**
-     * Used to synchronize access to the PatriciaTrie {@code prefixMetadataCache} variable.
-     * Multiple threads can access the PatriciaTrie concurrently, so we must synchronize access.
-     * We use a RW lock since much of the time, the threads will just be concurrently reading.
+     * Number of independently-locked segments of the INode ID and parent ID + local name indices.
      */
-    private final ReadWriteLock _mutex = new ReentrantReadWriteLock(true);
+    private static final int INDEX_CONCURRENCY_LEVEL = 64;
+
+    /**
+     * Number of entries the indices are initially sized for. They grow as needed, so we don't pay for sizing them
+     * to the full capacity of the cache when the NameNode is cold-starting.
+     */
+    private static final int INITIAL_INDEX_SIZE = 1 << 14;
 
     /**
      * This is the main cache, along with the cache HashMap.
      *
      * We use this object when we want to grab a bunch of INodes using a path prefix (e.g., /home/ben/docs/).
+     * The trie synchronizes internally on a per-node basis, so lookups never block on evictions or invalidations.
      */
-    private final PatriciaTrie<INode> prefixMetadataCache;
+    private final ConcurrentPathTrie<INode> prefixMetadataCache;
 
     /**
      * Used to control the size of the trie structure. This has a capacity, and entries are automatically
@@ -59,6 +64,11 @@ public class InMemoryINodeCache {
      */
     private final Cache<String, INode> cache;
 
+    /**
+     * Used to give each cached INode its own lease expiration time. This is null if leases are disabled.
+     */
+    private final Policy.VarExpiration<String, INode> leaseExpiration;
+
 //    /**
 //     * Cache that is used when not using a prefix.
 //     */
@@ -67,19 +77,27 @@ public class InMemoryINodeCache {
     /**
      * Mapping between INode IDs and their fully-qualified paths.
      */
-    private final ConcurrentHashMap<Long, String> idToFullPathMap;
+    private final LongToObjectIndex<String> idToFullPathMap;
 
     /**
-     * Mapping between keys of the form [PARENT_ID][LOCAL_NAME], which is how some INodes are
-     * cached/stored by HopsFS during transactions, to the fully-qualified paths of the INode.
+     * Mapping between the parent ID and local name of INodes, which is how some INodes are cached/stored by HopsFS
+     * during transactions, to the fully-qualified paths of the INodes. The key is a 64-bit hash of the parent ID and
+     * local name (see {@link #parentIdAndLocalNameKey(long, String)}), so different INodes may map to the same key.
+     * Lookups therefore verify that the INode they find actually has the requested parent ID and local name.
      */
-    private final ConcurrentHashMap<String, String> parentIdPlusLocalNameToFullPathMapping;
+    private final LongToObjectIndex<String> parentIdPlusLocalNameToFullPathMapping;
 
     private final ThreadLocal<Integer> threadLocalCacheHits = ThreadLocal.withInitial(() -> 0);
     private final ThreadLocal<Integer> threadLocalCacheMisses = ThreadLocal.withInitial(() -> 0);
 
     private final boolean enabled;
 
+    /**
+     * Duration of the read lease attached to each cached INode, in milliseconds. If this is <= 0, then
+     * leases are disabled and cached INodes remain valid until they are invalidated or evicted.
+     */
+    private final long leaseDurationMillis;
+
     private final int deploymentNumber;
 
     /**
@@ -117,8 +135,12 @@ public InMemoryINodeCache(Configuration conf, float loadFactor, int deploymentNu
         this.numNormalAndWriteOnlyDeployments = conf.getInt(SERVERLESS_MAX_DEPLOYMENTS, SERVERLESS_MAX_DEPLOYMENTS_DEFAULT);
         this.numWriteOnlyDeployments = conf.getInt(NUMBER_OF_WRITE_ONLY_DEPLOYMENTS, NUMBER_OF_WRITE_ONLY_DEPLOYMENTS_DEFAULT);
         this.numReadWriteDeployments = this.numNormalAndWriteOnlyDeployments - this.numWriteOnlyDeployments;
-        this.idToFullPathMap = new ConcurrentHashMap<>(cacheCapacity, loadFactor);
-        this.parentIdPlusLocalNameToFullPathMapping = new ConcurrentHashMap<>(cacheCapacity, loadFactor);
+        boolean offHeapIndex = conf.getBoolean(SERVERLESS_METADATA_CACHE_OFF_HEAP_INDEX,
+                SERVERLESS_METADATA_CACHE_OFF_HEAP_INDEX_DEFAULT);
+        int initialIndexSize = Math.min(cacheCapacity, INITIAL_INDEX_SIZE);
+        this.idToFullPathMap = new LongToObjectIndex<>(initialIndexSize, INDEX_CONCURRENCY_LEVEL, offHeapIndex);
+        this.parentIdPlusLocalNameToFullPathMapping =
+                new LongToObjectIndex<>(initialIndexSize, INDEX_CONCURRENCY_LEVEL, offHeapIndex);
         this.deploymentNumber = deploymentNumber;
 
         // this.fullPathMetadataCache = new ConcurrentHashMap<>(capacity, loadFactor);
@@ -127,22 +149,60 @@ public InMemoryINodeCache(Configuration conf, float loadFactor, int deploymentNu
          * This is the main cache, along with the metadataTrie variable. We use this when we want to grab a single
          * INode by its full path.
          */
-        this.prefixMetadataCache = new PatriciaTrie<>();
-        this.cache = Caffeine.newBuilder()
+        this.prefixMetadataCache = new ConcurrentPathTrie<>();
+
+        boolean leasesEnabled = conf.getBoolean(SERVERLESS_CACHE_LEASES_ENABLED, SERVERLESS_CACHE_LEASES_ENABLED_DEFAULT);
+        this.leaseDurationMillis = leasesEnabled ? conf.getInt(SERVERLESS_CACHE_LEASE_DURATION_MILLISECONDS,
+                SERVERLESS_CACHE_LEASE_DURATION_MILLISECONDS_DEFAULT) : -1;
+
+        Caffeine<Object, Object> cacheBuilder = Caffeine.newBuilder()
                 .initialCapacity(cacheCapacity)
-                .maximumSize(cacheCapacity)
+                .maximumSize(cacheCapacity);
+
+        // The read lease on a cached INode begins when the INode was read from NDB, not when it is written to the
+        // cache, as an INV may have been issued (and ACK'd by this NN) in between. Each entry is therefore put with
+        // the remainder of its lease (see put()). Reads do not renew the lease, so a Leader NN knows that no
+        // follower can serve a given version of an INode for longer than the lease duration after the Leader issued
+        // its INVs. Expired entries are reported to the eviction listener below (with cause EXPIRED), which removes
+        // them from the other data structures.
+        if (leaseDurationMillis > 0) {
+            LOG.debug("INode read leases are ENABLED. Lease duration: " + leaseDurationMillis + " ms.");
+            final long leaseDurationNanos = TimeUnit.MILLISECONDS.toNanos(leaseDurationMillis);
+            cacheBuilder.expireAfter(new Expiry<String, INode>() {
+                @Override
+                public long expireAfterCreate(String key, INode value, long currentTime) {
+                    return leaseDurationNanos;
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, INode value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+
+                @Override
+                public long expireAfterRead(String key, INode value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            });
+        }
+
+        this.cache = cacheBuilder
                 .evictionListener((RemovalListener<String, INode>) (fullPath, iNode, removalCause) -> {
-                    _mutex.writeLock().lock();
-                    try {
+                    if (fullPath == null)
+                        return;
+
+                    // Only remove the trie entry if it has not been replaced since it was evicted.
+                    if (iNode != null) {
+                        prefixMetadataCache.remove(fullPath, iNode);
+                        idToFullPathMap.remove(iNode.getId(), fullPath);
+                        parentIdPlusLocalNameToFullPathMapping.remove(
+                                parentIdAndLocalNameKey(iNode.getParentId(), iNode.getLocalName()), fullPath);
+                    } else {
                         prefixMetadataCache.remove(fullPath);
-                    } finally {
-                        _mutex.writeLock().unlock();
                     }
-
-                    if (iNode != null)
-                        idToFullPathMap.remove(iNode.getId());
                 })
                 .build();
+        this.leaseExpiration = leaseDurationMillis > 0 ? cache.policy().expireVariably().orElse(null) : null;
         this.enabled = conf.getBoolean(DFSConfigKeys.SERVERLESS_METADATA_CACHE_ENABLED,
                 DFSConfigKeys.SERVERLESS_METADATA_CACHE_ENABLED_DEFAULT);
     }
@@ -270,11 +330,17 @@ public INode getByParentINodeIdAndLocalName(long parentId, String localName) {
 
         long s = System.currentTimeMillis();
         try {
-            String parentIdPlusLocalName = parentId + localName;
-            String key = parentIdPlusLocalNameToFullPathMapping.getOrDefault(parentIdPlusLocalName, null);
+            String key = parentIdPlusLocalNameToFullPathMapping.get(parentIdAndLocalNameKey(parentId, localName));
 
-            if (key != null)
-                return getByPath(key);
+            if (key != null && isPathOfChild(key, localName)) {
+                INode node = cache.getIfPresent(key);
+
+                // The key is a hash, so make sure we found the INode that was actually requested.
+                if (node != null && node.getParentId() == parentId) {
+                    cacheHit(key);
+                    return node;
+                }
+            }
 
             cacheMiss(localName, parentId);
             return null;
@@ -300,10 +366,9 @@ public INode getByINodeId(long iNodeId) {
 
         long s = System.currentTimeMillis();
         try {
-            if (idToFullPathMap.containsKey(iNodeId)) {
-                String key = idToFullPathMap.get(iNodeId);
+            String key = idToFullPathMap.get(iNodeId);
+            if (key != null)
                 return getByPath(key);
-            }
 
             cacheMiss(iNodeId);
             return null;
@@ -321,6 +386,9 @@ public INode getByINodeId(long iNodeId) {
      * @param key The fully-qualified path of the desired INode
      * @param iNodeId The INode ID of the given metadata object.
      * @param value The metadata object to cache under the given key.
+     * @param readTimeMillis The time at which the read of the INode from NDB was issued. If leases are enabled, then
+     *                       the lease on the INode runs from this time, and the INode is not cached at all if the
+     *                       lease has already expired.
      *
      * @return The previous value associated with key, or null if there was no mapping for key.
      *
@@ -328,7 +396,7 @@ public INode getByINodeId(long iNodeId) {
      *
      * TODO: Should we just remove the return value altogether? It is never used and may cause confusion...
      */
-    public INode put(String key, long iNodeId, INode value) {
+    public INode put(String key, long iNodeId, INode value, long readTimeMillis) {
         if (!enabled)
             return null;
 
@@ -344,24 +412,33 @@ public INode put(String key, long iNodeId, INode value) {
             return null;
         }
 
-        _mutex.writeLock().lock();
-        INode returnValue;
-        try {
-            // Store the metadata in the cache directly.
-            returnValue = prefixMetadataCache.put(key, value);
-        } finally {
-            _mutex.writeLock().unlock();
-            if (LOG.isTraceEnabled()) {
-                long t = System.currentTimeMillis();
-                LOG.trace("Stored INode '" + key + "' (ID=" + iNodeId + ") in cache in " + (t - s) + " ms.");
+        long remainingLeaseMillis = -1;
+        if (leaseExpiration != null) {
+            remainingLeaseMillis = readTimeMillis + leaseDurationMillis - System.currentTimeMillis();
+
+            if (remainingLeaseMillis <= 0) {
+                if (LOG.isTraceEnabled())
+                    LOG.trace("Not caching INode '" + key + "' (ID=" + iNodeId + "), as its lease expired " +
+                            (-remainingLeaseMillis) + " ms ago.");
+
+                return null;
             }
         }
 
-        String parentIdPlusLocalName = value.getParentId() + value.getLocalName();
-        parentIdPlusLocalNameToFullPathMapping.put(parentIdPlusLocalName, key);
+        // Store the metadata in the cache directly.
+        INode returnValue = prefixMetadataCache.put(key, value);
+        if (LOG.isTraceEnabled()) {
+            long t = System.currentTimeMillis();
+            LOG.trace("Stored INode '" + key + "' (ID=" + iNodeId + ") in cache in " + (t - s) + " ms.");
+        }
+
+        parentIdPlusLocalNameToFullPathMapping.put(parentIdAndLocalNameKey(value.getParentId(), value.getLocalName()), key);
 
-        // Put into the Caffeine cache. We use this to implement the LRU policy.
-        cache.put(key, value);
+        // Put into the Caffeine cache. We use this to implement the LRU policy and the leases.
+        if (leaseExpiration != null)
+            leaseExpiration.put(key, value, remainingLeaseMillis, TimeUnit.MILLISECONDS);
+        else
+            cache.put(key, value);
 
         // Create a mapping between the INode ID and the path.
         idToFullPathMap.put(iNodeId, key);
@@ -376,22 +453,17 @@ public boolean containsKey(Object key) {
         if (key == null)
             return false;
 
-        _mutex.readLock().lock();
-        try {
-            // If the given key is a string, then we can use it directly.
-            if (key instanceof String) {
-                return prefixMetadataCache.containsKey(key);
-            } else if (key instanceof Long) {
-                // If the key is a long, we need to check if we've mapped this long to a String key. If so,
-                // then we can get the string version and continue as before.
-                String keyAsStr = idToFullPathMap.getOrDefault((Long) key, null);
-                return keyAsStr != null && prefixMetadataCache.containsKey(keyAsStr);
-            }
-
-            return false;
-        } finally {
-            _mutex.readLock().unlock();
+        // If the given key is a string, then we can use it directly.
+        if (key instanceof String) {
+            return isCached((String) key);
+        } else if (key instanceof Long) {
+            // If the key is a long, we need to check if we've mapped this long to a String key. If so,
+            // then we can get the string version and continue as before.
+            String keyAsStr = idToFullPathMap.get((Long) key);
+            return keyAsStr != null && isCached(keyAsStr);
         }
+
+        return false;
     }
 
     /**
@@ -401,12 +473,7 @@ public int size() {
         if (!enabled)
             return -1;
 
-        _mutex.readLock().lock();
-        try {
-            return prefixMetadataCache.size();
-        } finally {
-            _mutex.readLock().unlock();
-        }
+        return prefixMetadataCache.size();
     }
 
     /**
@@ -417,13 +484,8 @@ public int size() {
      * invalidated.
      */
     public boolean containsKeySkipInvalidCheck(String key) {
-        _mutex.readLock().lock();
-        try {
-            // Directly check if the cache itself contains the key.
-            return prefixMetadataCache.containsKey(key);
-        } finally {
-            _mutex.readLock().unlock();
-        }
+        // Directly check if the cache itself contains the key.
+        return isCached(key);
     }
 
     /**
@@ -432,17 +494,24 @@ public boolean containsKeySkipInvalidCheck(String key) {
     public boolean containsKey(long inodeId) {
         // If the key is a long, we need to check if we've mapped this long to a String key. If so,
         // then we can get the string version and continue as before.
-        _mutex.readLock().lock();
-        try {
-            // If we don't have a mapping for this key, then this will return null, and this function will return false.
-            String keyAsStr = idToFullPathMap.getOrDefault(inodeId, null);
+        // If we don't have a mapping for this key, then this will return null, and this function will return false.
+        String keyAsStr = idToFullPathMap.get(inodeId);
 
-            // Returns true if we are able to resolve the NameNode ID to a string-typed key, that key is not
-            // invalidated, and we're actively caching the key.
-            return keyAsStr != null && prefixMetadataCache.containsKey(keyAsStr);
-        } finally {
-            _mutex.readLock().unlock();
-        }
+        // Returns true if we are able to resolve the NameNode ID to a string-typed key, that key is not
+        // invalidated, and we're actively caching the key.
+        return keyAsStr != null && isCached(keyAsStr);
+    }
+
+    /**
+     * Return true if an INode is cached under the given key and its lease (if any) has not expired. The trie only
+     * learns of an expired lease once the eviction listener runs, so it cannot be consulted on its own.
+     */
+    private boolean isCached(String key) {
+        if (!prefixMetadataCache.containsKey(key))
+            return false;
+
+        // This does not count as an access, and it does not return entries whose lease has expired.
+        return leaseExpiration == null || cache.asMap().containsKey(key);
     }
 
     /**
@@ -456,18 +525,12 @@ protected boolean invalidateKey(long inodeId) {
         if (!enabled)
             return false;
 
-        _mutex.writeLock().lock();
-        try  {
-            if (idToFullPathMap.containsKey(inodeId)) {
-                String key = idToFullPathMap.get(inodeId);
+        String key = idToFullPathMap.get(inodeId);
 
-                return invalidateKeyInternal(key, false);
-            }
+        if (key != null)
+            return invalidateKeyInternal(key, false);
 
-            return false;
-        } finally {
-            _mutex.writeLock().unlock();
-        }
+        return false;
     }
 
     /**
@@ -508,10 +571,10 @@ private boolean invalidateKeyInternal(String key, boolean skipCheck) {
             return false;
 
         long s = System.currentTimeMillis();
-        _mutex.writeLock().lock();
         try {
-            if (skipCheck || containsKeySkipInvalidCheck(key)) {
-                prefixMetadataCache.remove(key);
+            INode removed = prefixMetadataCache.remove(key);
+
+            if (skipCheck || removed != null) {
                 cache.invalidate(key);
                 // fullPathMetadataCache.remove(key);
                 return true;
@@ -519,7 +582,6 @@ private boolean invalidateKeyInternal(String key, boolean skipCheck) {
 
             return false;
         } finally {
-            _mutex.writeLock().unlock();
             if (LOG.isTraceEnabled()) LOG.trace("Invalidated key '" + key +
                     "' in " + (System.currentTimeMillis() - s) + " ms.");
         }
@@ -534,13 +596,9 @@ protected void invalidateEntireCache() {
 
         LOG.warn("Invalidating ENTIRE cache. ");
         long s = System.currentTimeMillis();
-        _mutex.writeLock().lock();
-        try {
-            prefixMetadataCache.clear();
-        } finally {
-            _mutex.writeLock().unlock();
-            if (LOG.isTraceEnabled()) LOG.trace("Invalidated entire cache in " + (System.currentTimeMillis() - s) + " ms.");
-        }
+        prefixMetadataCache.clear();
+        cache.invalidateAll();
+        if (LOG.isTraceEnabled()) LOG.trace("Invalidated entire cache in " + (System.currentTimeMillis() - s) + " ms.");
         idToFullPathMap.clear();
         parentIdPlusLocalNameToFullPathMapping.clear();
         // fullPathMetadataCache.clear();
@@ -550,7 +608,8 @@ protected void invalidateEntireCache() {
      * Invalidate any keys in our cache prefixed by the {@code prefix} parameter.
      *
      * For example, if {@code prefix} were equal to "/home/ben/documents/", then any INodes in our cache that are
-     * stored along that path would be invalidated.
+     * stored beneath that directory would be invalidated, but not the "/home/ben/documents" INode itself. Pass the
+     * path without the trailing slash to also invalidate the directory (see {@link ConcurrentPathTrie#removeByPrefix}).
      *
      * @param prefix Any metadata prefixed by this path will be invalidated.
      *
@@ -564,37 +623,79 @@ protected Collection<INode> invalidateKeysByPrefix(String prefix) {
         long s = System.currentTimeMillis();
         if (LOG.isDebugEnabled()) LOG.debug("Invalidating all INodes prefixed by '" + prefix + "'.");
 
-        _mutex.writeLock().lock();
         List<INode> invalidatedEntries = new ArrayList<>();
 
         try {
-            SortedMap<String, INode> prefixedEntries = prefixMetadataCache.prefixMap(prefix);
-
-            // Avoid concurrent modification exception.
-            ArrayList<Map.Entry<String, INode>> toInvalidate = new ArrayList<>(prefixedEntries.entrySet());
-
-            int numInvalidated = 0;
-            for (Map.Entry<String, INode> entry : toInvalidate) {
-                String path = entry.getKey();
-                INode cachedINode = entry.getValue();
-                // This if-statement invalidates the key. If we were caching the key, then the call
-                // to invalidateKey() returns true, in which case we increment 'numInvalidated'.
-                if (invalidateKey(path, false)) {
-                    numInvalidated++;
-                    invalidatedEntries.add(cachedINode);
-                }
+            // Detach the prefixed entries from the trie one at a time (this is not atomic with respect to
+            // concurrent lookups). We then drop the same keys from the LRU cache so that subsequent lookups miss.
+            List<Map.Entry<String, INode>> prefixedEntries = prefixMetadataCache.removeByPrefix(prefix);
+
+            for (Map.Entry<String, INode> entry : prefixedEntries) {
+                cache.invalidate(entry.getKey());
+                invalidatedEntries.add(entry.getValue());
             }
 
-            if (LOG.isTraceEnabled()) LOG.trace("Invalidated " + numInvalidated + "/" + prefixedEntries.size() + " of the nodes in the prefix map.");
+            if (LOG.isTraceEnabled()) LOG.trace("Invalidated " + invalidatedEntries.size() + " of the nodes in the prefix map.");
 
             return invalidatedEntries;
         } finally {
-            _mutex.writeLock().unlock();
             if (LOG.isTraceEnabled()) LOG.trace("Invalidated all cached INodes prefixed by '" + prefix +
                     "' in " + (System.currentTimeMillis() - s) + " ms.");
         }
     }
 
+    /**
+     * Return the key under which the INode with the given parent ID and local name is stored in
+     * {@link #parentIdPlusLocalNameToFullPathMapping}. This is a 64-bit FNV-1a hash of the local name combined with
+     * the parent ID, which avoids creating a String for every lookup.
+     */
+    static long parentIdAndLocalNameKey(long parentId, String localName) {
+        long h = 0xcbf29ce484222325L ^ parentId;
+        h *= 0x100000001b3L;
+        for (int i = 0; i < localName.length(); i++) {
+            h ^= localName.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * @return True if the given fully-qualified path ends with the path component {@code localName}.
+     */
+    private static boolean isPathOfChild(String path, String localName) {
+        int separator = path.length() - localName.length() - 1;
+        return separator >= 0 && path.charAt(separator) == '/' && path.endsWith(localName);
+    }
+
+    /**
+     * Return up to {@code limit} cached INodes, keyed by their fully-qualified paths, ordered from the most to the
+     * least likely to be retained by the cache (i.e., from hottest to coldest).
+     */
+    public Map<String, INode> getHottest(int limit) {
+        if (!enabled)
+            return Collections.emptyMap();
+
+        return cache.policy().eviction()
+                .map(eviction -> eviction.hottest(limit))
+                .orElseGet(() -> {
+                    Map<String, INode> entries = new LinkedHashMap<>();
+                    for (Map.Entry<String, INode> entry : cache.asMap().entrySet()) {
+                        if (entries.size() >= limit)
+                            break;
+                        entries.put(entry.getKey(), entry.getValue());
+                    }
+                    return entries;
+                });
+    }
+
+    /**
+     * Return the duration of the read lease attached to each cached INode in milliseconds,
+     * or a value <= 0 if leases are disabled.
+     */
+    public long getLeaseDurationMillis() {
+        return leaseDurationMillis;
+    }
+
     public int getNumCacheMissesCurrentRequest() {
         return threadLocalCacheMisses.get();
     }
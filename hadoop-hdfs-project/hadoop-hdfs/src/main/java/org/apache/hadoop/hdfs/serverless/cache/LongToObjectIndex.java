@@ -0,0 +1,357 @@
+package org.apache.hadoop.hdfs.serverless.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent hash map from primitive {@code long} keys to object values.
+ *
+ * Unlike a {@code ConcurrentHashMap<Long, V>}, keys are never boxed, and entries are not wrapped in node objects.
+ * The map is divided into segments, each of which is an open-addressing (linear probing) hash table guarded by its
+ * own {@link StampedLock}. Each segment stores its keys in a {@code long[]}, or, in off-heap mode, in a direct buffer,
+ * so that only the references to the values remain on the heap.
+ *
+ * Reads do not lock. They probe the table optimistically, and only retry under the read lock if a write to the same
+ * segment raced with them.
+ *
+ * Null values are not supported.
+ */
+public class LongToObjectIndex<V> {
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    /**
+     * Segments are resized once they are more than 3/4 full.
+     */
+    private static final int MAX_LOAD_NUMERATOR = 3;
+    private static final int MAX_LOAD_DENOMINATOR = 4;
+
+    private final Segment<V>[] segments;
+
+    private final int segmentMask;
+
+    /**
+     * @param expectedSize The number of entries the index is expected to hold. Used to size the segments up-front.
+     * @param concurrencyLevel The number of segments. Rounded up to a power of two.
+     * @param offHeap If true, keys are stored in direct (off-heap) buffers.
+     */
+    @SuppressWarnings("unchecked")
+    public LongToObjectIndex(int expectedSize, int concurrencyLevel, boolean offHeap) {
+        if (concurrencyLevel < 1)
+            throw new IllegalArgumentException("Concurrency level must be positive. Got: " + concurrencyLevel);
+
+        int numSegments = tableSizeFor(concurrencyLevel);
+        int segmentCapacity = tableSizeFor(Math.max(MIN_SEGMENT_CAPACITY,
+                (int)((long)expectedSize * MAX_LOAD_DENOMINATOR / MAX_LOAD_NUMERATOR / numSegments) + 1));
+
+        this.segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++)
+            segments[i] = new Segment<>(segmentCapacity, offHeap);
+        this.segmentMask = numSegments - 1;
+    }
+
+    public V get(long key) {
+        long hash = mix(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associate the given value with the given key.
+     *
+     * @return The value previously associated with the key, or null if there was none.
+     */
+    public V put(long key, V value) {
+        Objects.requireNonNull(value, "LongToObjectIndex does not support null values.");
+        long hash = mix(key);
+        return segmentFor(hash).put(key, hash, value);
+    }
+
+    /**
+     * Remove the entry for the given key.
+     *
+     * @return The value that was associated with the key, or null if there was none.
+     */
+    public V remove(long key) {
+        long hash = mix(key);
+        return segmentFor(hash).remove(key, hash, null);
+    }
+
+    /**
+     * Remove the entry for the given key only if it is currently mapped to the given value.
+     *
+     * @return True if the entry was removed.
+     */
+    public boolean remove(long key, V expected) {
+        Objects.requireNonNull(expected);
+        long hash = mix(key);
+        return segmentFor(hash).remove(key, hash, expected) != null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    public void clear() {
+        for (Segment<V> segment : segments)
+            segment.clear();
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        // The high bits select the segment, while the low bits select the slot within the segment.
+        return segments[(int)(hash >>> 32) & segmentMask];
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which spreads the bits of the key over the whole range. This matters for INode IDs,
+     * which are mostly sequential.
+     */
+    public static long mix(long key) {
+        key ^= (key >>> 33);
+        key *= 0xff51afd7ed558ccdL;
+        key ^= (key >>> 33);
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= (key >>> 33);
+        return key;
+    }
+
+    private static int tableSizeFor(int n) {
+        int size = Integer.highestOneBit(Math.max(n - 1, 1)) << 1;
+        return size < 0 ? 1 << 30 : size;
+    }
+
+    /**
+     * Stores the keys of a segment, either on or off the heap.
+     */
+    private interface KeyStore {
+        long get(int slot);
+
+        void set(int slot, long key);
+    }
+
+    private static final class HeapKeyStore implements KeyStore {
+        private final long[] keys;
+
+        HeapKeyStore(int capacity) {
+            this.keys = new long[capacity];
+        }
+
+        @Override
+        public long get(int slot) {
+            return keys[slot];
+        }
+
+        @Override
+        public void set(int slot, long key) {
+            keys[slot] = key;
+        }
+    }
+
+    private static final class DirectKeyStore implements KeyStore {
+        private final LongBuffer keys;
+
+        DirectKeyStore(int capacity) {
+            this.keys = ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+
+        @Override
+        public long get(int slot) {
+            return keys.get(slot);
+        }
+
+        @Override
+        public void set(int slot, long key) {
+            keys.put(slot, key);
+        }
+    }
+
+    /**
+     * The keys and values of a segment. Both are replaced together when the segment is resized, so that optimistic
+     * readers never see the keys of one table with the values of another.
+     */
+    private static final class Table {
+        final KeyStore keys;
+
+        final Object[] values;
+
+        Table(int capacity, boolean offHeap) {
+            this.keys = offHeap ? new DirectKeyStore(capacity) : new HeapKeyStore(capacity);
+            this.values = new Object[capacity];
+        }
+    }
+
+    /**
+     * A single open-addressing hash table. A slot is empty if and only if its value is null. Entries are removed by
+     * shifting the entries that follow them backwards, so no tombstones are needed.
+     */
+    private static final class Segment<V> {
+        private final boolean offHeap;
+
+        private final StampedLock lock = new StampedLock();
+
+        private Table table;
+
+        private int size;
+
+        Segment(int capacity, boolean offHeap) {
+            this.offHeap = offHeap;
+            this.table = new Table(capacity, offHeap);
+        }
+
+        V get(long key, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0L) {
+                V value = find(table, key, hash);
+                if (lock.validate(stamp))
+                    return value;
+            }
+
+            stamp = lock.readLock();
+            try {
+                return find(table, key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Probe the given table for the given key. This may run concurrently with a write, in which case the result is
+         * discarded, so the probe is bounded even though a table in a consistent state always has empty slots.
+         */
+        @SuppressWarnings("unchecked")
+        private static <V> V find(Table table, long key, long hash) {
+            Object[] values = table.values;
+            int mask = values.length - 1;
+            int slot = (int)hash & mask;
+            for (int probes = 0; probes < values.length; probes++, slot = (slot + 1) & mask) {
+                Object value = values[slot];
+                if (value == null)
+                    return null;
+                if (table.keys.get(slot) == key)
+                    return (V) value;
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        V put(long key, long hash, V value) {
+            long stamp = lock.writeLock();
+            try {
+                KeyStore keys = table.keys;
+                Object[] values = table.values;
+                int mask = values.length - 1;
+                int slot = (int)hash & mask;
+                for (; values[slot] != null; slot = (slot + 1) & mask) {
+                    if (keys.get(slot) == key) {
+                        V previous = (V) values[slot];
+                        values[slot] = value;
+                        return previous;
+                    }
+                }
+
+                keys.set(slot, key);
+                values[slot] = value;
+
+                if (++size * MAX_LOAD_DENOMINATOR > values.length * MAX_LOAD_NUMERATOR)
+                    resize(values.length << 1);
+
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Remove the entry for the given key. If {@code expected} is non-null, then the entry is only removed if it
+         * is equal to {@code expected}.
+         */
+        @SuppressWarnings("unchecked")
+        V remove(long key, long hash, V expected) {
+            long stamp = lock.writeLock();
+            try {
+                KeyStore keys = table.keys;
+                Object[] values = table.values;
+                int mask = values.length - 1;
+                int slot = (int)hash & mask;
+                for (; values[slot] != null; slot = (slot + 1) & mask) {
+                    if (keys.get(slot) == key)
+                        break;
+                }
+
+                V removed = (V) values[slot];
+                if (removed == null || (expected != null && !expected.equals(removed)))
+                    return null;
+
+                // Shift subsequent entries of the probe sequence back into the hole left by the removed entry.
+                int hole = slot;
+                for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                    long nextKey = keys.get(next);
+                    int home = (int)mix(nextKey) & mask;
+
+                    // Move the entry unless its home slot lies cyclically in (hole, next].
+                    boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+                    if (movable) {
+                        keys.set(hole, nextKey);
+                        values[hole] = values[next];
+                        hole = next;
+                    }
+                }
+
+                values[hole] = null;
+                size--;
+                return removed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = lock.writeLock();
+            try {
+                Arrays.fill(table.values, null);
+                size = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private void resize(int capacity) {
+            Table oldTable = table;
+            Table newTable = new Table(capacity, offHeap);
+
+            int mask = capacity - 1;
+            for (int i = 0; i < oldTable.values.length; i++) {
+                if (oldTable.values[i] == null)
+                    continue;
+
+                long key = oldTable.keys.get(i);
+                int slot = (int)mix(key) & mask;
+                while (newTable.values[slot] != null)
+                    slot = (slot + 1) & mask;
+
+                newTable.keys.set(slot, key);
+                newTable.values[slot] = oldTable.values[i];
+            }
+
+            table = newTable;
+        }
+    }
+}
@@ -13,6 +13,8 @@
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.hadoop.hdfs.DFSConfigKeys.SERVERLESS_METADATA_CACHE_CAPACITY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.SERVERLESS_METADATA_CACHE_CAPACITY_DEFAULT;
@@ -67,29 +69,19 @@ public class MetadataCacheManager {
      */
     private final int cacheCapacity;
 
+    /**
+     * Incremented every time INodes are invalidated. See {@link #getNumInvalidations()}.
+     */
+    private final AtomicLong numInvalidations = new AtomicLong();
+
     public MetadataCacheManager(Configuration configuration, int deploymentNumber) {
         this.cacheCapacity = configuration.getInt(SERVERLESS_METADATA_CACHE_CAPACITY, SERVERLESS_METADATA_CACHE_CAPACITY_DEFAULT);
         inodeCache = new InMemoryINodeCache(configuration, deploymentNumber);
-        encryptionZoneCache = Caffeine.newBuilder()
-                .initialCapacity(cacheCapacity)
-                .maximumSize(cacheCapacity)
-                .build();
-        aceCache = Caffeine.newBuilder()
-                .initialCapacity(cacheCapacity)
-                .maximumSize(cacheCapacity)
-                .build();
-        aceCacheByINodeId = Caffeine.newBuilder()
-                .initialCapacity(cacheCapacity)
-                .maximumSize(cacheCapacity)
-                .build();
-        xAttrCache = Caffeine.newBuilder()
-                .initialCapacity(cacheCapacity)
-                .maximumSize(cacheCapacity)
-                .build();
-        xAttrCacheByINodeId = Caffeine.newBuilder()
-                .initialCapacity(cacheCapacity)
-                .maximumSize(cacheCapacity)
-                .build();
+        encryptionZoneCache = newCacheBuilder().build();
+        aceCache = newCacheBuilder().build();
+        aceCacheByINodeId = newCacheBuilder().build();
+        xAttrCache = newCacheBuilder().build();
+        xAttrCacheByINodeId = newCacheBuilder().build();
 
 //        encryptionZoneCache = new ConcurrentHashMap<>();
 //        aceCache = new ConcurrentHashMap<>();
@@ -98,11 +90,37 @@ public MetadataCacheManager(Configuration configuration, int deploymentNumber) {
         this.replicaCacheManager = ReplicaCacheManager.getInstance();
     }
 
+    /**
+     * Create a builder for one of the caches of INode-associated metadata. If INode read leases are enabled, then
+     * these entries are subject to the same lease duration as the INodes themselves, as they are invalidated along
+     * with their INode.
+     */
+    private Caffeine<Object, Object> newCacheBuilder() {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .initialCapacity(cacheCapacity)
+                .maximumSize(cacheCapacity);
+
+        long leaseDurationMillis = inodeCache.getLeaseDurationMillis();
+        if (leaseDurationMillis > 0)
+            builder.expireAfterWrite(leaseDurationMillis, TimeUnit.MILLISECONDS);
+
+        return builder;
+    }
+
     public ReplicaCacheManager getReplicaCacheManager() { return this.replicaCacheManager; }
 
     public InMemoryINodeCache getINodeCache() { return inodeCache; }
 
+    /**
+     * Return the number of invalidations so far. Callers that read INodes outside of a transaction compare the values
+     * before and after caching them to detect an invalidation they may have missed.
+     */
+    public long getNumInvalidations() {
+        return numInvalidations.get();
+    }
+
     public int invalidateINodesByPrefix(String prefix) {
+        numInvalidations.incrementAndGet();
         Collection<INode> prefixedINodes = inodeCache.invalidateKeysByPrefix(prefix);
 
         if (prefixedINodes == null) return 0;
@@ -118,6 +136,7 @@ public int invalidateINodesByPrefix(String prefix) {
     }
 
     public boolean invalidateINode(String key, boolean skipCheck) {
+        numInvalidations.incrementAndGet();
         INode node = inodeCache.getByPathNoMetrics(key);
 
         if (node != null) {
@@ -132,9 +151,12 @@ public boolean invalidateINode(String key, boolean skipCheck) {
     }
 
     public void invalidateAllINodes() {
+        numInvalidations.incrementAndGet();
         encryptionZoneCache.invalidateAll();
         aceCache.invalidateAll();
         aceCacheByINodeId.invalidateAll();
+        xAttrCache.invalidateAll();
+        xAttrCacheByINodeId.invalidateAll();
 //        encryptionZoneCache.clear();
 //        aceCache.clear();
 //        aceCacheByINodeId.clear();
@@ -142,6 +164,7 @@ public void invalidateAllINodes() {
     }
 
     public boolean invalidateINode(long inodeId) {
+        numInvalidations.incrementAndGet();
         invalidateAces(inodeId);
         encryptionZoneCache.invalidate(inodeId);
         invalidateXAttrs(inodeId);
@@ -185,6 +208,9 @@ private void invalidateAces(long inodeId) {
      * @return The EncryptionZone cached at the given key, or null if it does not exist.
      */
     public EncryptionZone getEncryptionZone(long inodeId) {
+        if (!isLeaseHeld(inodeId))
+            return null;
+
         return encryptionZoneCache.getIfPresent(inodeId);
         //return encryptionZoneCache.getOrDefault(inodeId, null);
     }
@@ -201,12 +227,18 @@ public void putEncryptionZone(long inodeId, EncryptionZone encryptionZone) {
      * Returns null if no such Ace instance exists.
      */
     public Ace getAce(long inodeId, int index) {
+        if (!isLeaseHeld(inodeId))
+            return null;
+
         String key = getAceKey(inodeId, index);
         return aceCache.getIfPresent(key);
         //return aceCache.getOrDefault(key,null);
     }
 
     public StoredXAttr getStoredXAttr(long inodeId, byte namespace, String name) {
+        if (!isLeaseHeld(inodeId))
+            return null;
+
         String key = getXAttrKey(inodeId, namespace, name);
         return xAttrCache.getIfPresent(key);
     }
@@ -214,6 +246,15 @@ public StoredXAttr getStoredXAttr(long inodeId, byte namespace, String name) {
     public void putStoredXAttr(long inodeId, byte namespace, String name, StoredXAttr xattr) {
         String key = getXAttrKey(inodeId, namespace, name);
         xAttrCache.put(key, xattr);
+
+        Set<StoredXAttr> cachedXAttrs = xAttrCacheByINodeId.getIfPresent(inodeId);
+
+        if (cachedXAttrs == null) {
+            cachedXAttrs = new HashSet<>();
+            xAttrCacheByINodeId.put(inodeId, cachedXAttrs);
+        }
+
+        cachedXAttrs.add(xattr);
     }
 
     /**
@@ -234,6 +275,14 @@ public void putAce(long inodeId, int index, Ace ace) {
         cachedAces.add(cachedAce);
     }
 
+    /**
+     * If INode read leases are enabled, then the metadata associated with an INode is only served while the lease on
+     * the INode itself is held, as that lease runs from the time at which the INode was read from NDB.
+     */
+    private boolean isLeaseHeld(long inodeId) {
+        return inodeCache.getLeaseDurationMillis() <= 0 || inodeCache.containsKey(inodeId);
+    }
+
     /**
      * Return the key generated by a given INode ID and an index (for an Ace instance).
      */
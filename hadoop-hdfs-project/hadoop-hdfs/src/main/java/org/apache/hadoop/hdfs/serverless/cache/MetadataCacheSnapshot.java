@@ -0,0 +1,354 @@
+package org.apache.hadoop.hdfs.serverless.cache;
+
+import io.hops.metadata.HdfsStorageFactory;
+import io.hops.metadata.hdfs.dal.INodeDataAccess;
+import io.hops.transaction.handler.HDFSOperationType;
+import io.hops.transaction.handler.LightWeightRequestHandler;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.*;
+
+/**
+ * Exports and restores snapshots of the hottest entries of a {@link MetadataCacheManager}, so that newly-started
+ * NameNodes do not have to resolve every path component one at a time before their cache is warm.
+ *
+ * Each NameNode periodically writes the paths and INode IDs of the hottest INodes in its cache to a snapshot file
+ * shared by its deployment. A new NameNode of the same deployment loads the most recent snapshot when it starts.
+ *
+ * The snapshot only records which INodes are worth caching, not their contents. Not every write issues an
+ * invalidation (e.g., when the deployment has no other NameNodes to invalidate), so nothing tells us whether a cached
+ * copy would still be up-to-date. Instead, the INodes are read again from intermediate storage when the snapshot is
+ * loaded, with batched primary-key reads, one batch per level of the namespace. An entry is only cached if its path
+ * still resolves to the same INode. The reads take shared locks, so an INode that is being modified is only read once
+ * the modifying transaction has committed. An invalidation received while the snapshot is being loaded may have been
+ * applied before the affected entries were cached, in which case the entire cache is invalidated.
+ */
+public class MetadataCacheSnapshot {
+    public static final Logger LOG = LoggerFactory.getLogger(MetadataCacheSnapshot.class);
+
+    /**
+     * Identifies snapshot files, and the version of their format.
+     */
+    private static final int MAGIC = 0x4C465343; // "LFSC"
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Maximum number of INodes read from intermediate storage at once when loading a snapshot.
+     */
+    private static final int READ_BATCH_SIZE = 1024;
+
+    /**
+     * Reads INodes from intermediate storage by primary key. INodes that do not exist are omitted from the result.
+     */
+    interface INodeReader {
+        List<INode> read(String[] names, long[] parentIds, long[] partitionIds) throws IOException;
+    }
+
+    private final MetadataCacheManager cacheManager;
+
+    private final INodeReader inodeReader;
+
+    /**
+     * Name of the ZooKeeper group of the local deployment (i.e., "namenode[deployment_number]").
+     */
+    private final String groupName;
+
+    private final int deploymentNumber;
+
+    /**
+     * The snapshot file of the local deployment.
+     */
+    private final Path snapshotPath;
+
+    private final long exportIntervalMillis;
+
+    private final int maxINodes;
+
+    private ScheduledExecutorService exporter;
+
+    public MetadataCacheSnapshot(Configuration conf, MetadataCacheManager cacheManager, int deploymentNumber) {
+        this(conf, cacheManager, deploymentNumber, MetadataCacheSnapshot::readINodes);
+    }
+
+    MetadataCacheSnapshot(Configuration conf, MetadataCacheManager cacheManager, int deploymentNumber,
+                          INodeReader inodeReader) {
+        this.cacheManager = cacheManager;
+        this.inodeReader = inodeReader;
+        this.deploymentNumber = deploymentNumber;
+        this.groupName = "namenode" + deploymentNumber;
+        this.snapshotPath = Paths.get(conf.get(SERVERLESS_METADATA_CACHE_SNAPSHOT_DIR,
+                SERVERLESS_METADATA_CACHE_SNAPSHOT_DIR_DEFAULT), groupName + ".snapshot");
+        this.exportIntervalMillis = conf.getLong(SERVERLESS_METADATA_CACHE_SNAPSHOT_INTERVAL,
+                SERVERLESS_METADATA_CACHE_SNAPSHOT_INTERVAL_DEFAULT);
+        this.maxINodes = conf.getInt(SERVERLESS_METADATA_CACHE_SNAPSHOT_MAX_INODES,
+                SERVERLESS_METADATA_CACHE_SNAPSHOT_MAX_INODES_DEFAULT);
+    }
+
+    /**
+     * Start periodically exporting snapshots in the background.
+     */
+    public synchronized void start() {
+        if (exporter != null)
+            return;
+
+        exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Cache-Snapshot-Exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        exporter.scheduleWithFixedDelay(() -> {
+            try {
+                export();
+            } catch (Exception ex) {
+                LOG.warn("Failed to export metadata cache snapshot to '" + snapshotPath + "':", ex);
+            }
+        }, exportIntervalMillis, exportIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop exporting snapshots.
+     */
+    public synchronized void stop() {
+        if (exporter != null) {
+            exporter.shutdownNow();
+            exporter = null;
+        }
+    }
+
+    /**
+     * Write the paths and IDs of the hottest INodes in the cache to the snapshot file of the local deployment.
+     *
+     * @return True if a snapshot was written. No snapshot is written if the cache is empty.
+     */
+    public boolean export() throws IOException {
+        Map<String, INode> hottest = cacheManager.getINodeCache().getHottest(maxINodes);
+        if (hottest.isEmpty())
+            return false;
+
+        long s = System.currentTimeMillis();
+        Files.createDirectories(snapshotPath.getParent());
+        Path tmpPath = Files.createTempFile(snapshotPath.getParent(), groupName, ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(tmpPath))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(deploymentNumber);
+
+                List<Map.Entry<String, INode>> entries = new ArrayList<>(hottest.entrySet());
+                out.writeInt(entries.size());
+
+                // Write the coldest entries first, so that the hottest entries are also the most recently
+                // used ones once the snapshot is loaded.
+                for (int i = entries.size() - 1; i >= 0; i--) {
+                    out.writeUTF(entries.get(i).getKey());
+                    out.writeLong(entries.get(i).getValue().getId());
+                }
+            }
+
+            Files.move(tmpPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpPath);
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Exported " + hottest.size() + " INode(s) to metadata cache snapshot '" + snapshotPath +
+                    "' in " + (System.currentTimeMillis() - s) + " ms.");
+
+        return true;
+    }
+
+    /**
+     * Load the snapshot of the local deployment into the cache. Each INode is read again from intermediate storage,
+     * and only cached if its path still resolves to it. This should only be called once we're listening for
+     * invalidations.
+     *
+     * @return The number of INodes loaded into the cache.
+     */
+    public int restore() {
+        if (!Files.exists(snapshotPath))
+            return 0;
+
+        long s = System.currentTimeMillis();
+        List<String> paths = new ArrayList<>();
+        List<Long> inodeIds = new ArrayList<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(snapshotPath))))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != deploymentNumber) {
+                LOG.warn("Ignoring metadata cache snapshot '" + snapshotPath + "', as it is not a valid snapshot " +
+                        "of deployment " + deploymentNumber + ".");
+                return 0;
+            }
+
+            int numEntries = in.readInt();
+            for (int i = 0; i < numEntries; i++) {
+                paths.add(in.readUTF());
+                inodeIds.add(in.readLong());
+            }
+        } catch (IOException ex) {
+            LOG.warn("Failed to read metadata cache snapshot '" + snapshotPath + "':", ex);
+            return 0;
+        }
+
+        // The read leases of the INodes start when they're read, and we must notice any invalidation received
+        // between the reads and the moment the INodes are cached.
+        long readTime = System.currentTimeMillis();
+        long numInvalidations = cacheManager.getNumInvalidations();
+
+        Map<String, INode> resolved;
+        try {
+            resolved = resolve(paths);
+        } catch (IOException ex) {
+            LOG.warn("Failed to read the INodes of metadata cache snapshot '" + snapshotPath + "':", ex);
+            return 0;
+        }
+
+        int numLoaded = 0;
+        for (int i = 0; i < paths.size(); i++) {
+            INode inode = resolved.get(paths.get(i));
+            // The path may now lead to a different INode (e.g., if the original one was deleted and re-created).
+            if (inode == null || inode.getId() != inodeIds.get(i))
+                continue;
+
+            cacheManager.getINodeCache().put(paths.get(i), inode.getId(), inode, readTime);
+            numLoaded++;
+        }
+
+        if (cacheManager.getNumInvalidations() != numInvalidations) {
+            LOG.debug("Invalidation received while loading metadata cache snapshot. Discarding snapshot.");
+            cacheManager.invalidateAllINodes();
+            return 0;
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Loaded " + numLoaded + "/" + paths.size() + " INode(s) from metadata cache snapshot '" +
+                    snapshotPath + "' in " + (System.currentTimeMillis() - s) + " ms.");
+
+        return numLoaded;
+    }
+
+    /**
+     * Resolve the given paths, and all of their ancestors, against intermediate storage.
+     *
+     * @return The INodes of the paths that could be resolved, by path. The root is never included.
+     */
+    private Map<String, INode> resolve(List<String> paths) throws IOException {
+        // The paths to resolve at each depth (i.e., number of components), including those of the ancestors.
+        List<List<String>> pathsByDepth = new ArrayList<>();
+        Map<String, String> parents = new HashMap<>();
+        for (String path : paths) {
+            for (String current = path; !current.equals("/") && !parents.containsKey(current);
+                 current = parentOf(current)) {
+                parents.put(current, parentOf(current));
+                int depth = depthOf(current);
+                while (pathsByDepth.size() <= depth)
+                    pathsByDepth.add(new ArrayList<>());
+                pathsByDepth.get(depth).add(current);
+            }
+        }
+
+        Map<String, INode> resolved = new HashMap<>();
+        for (int depth = 1; depth < pathsByDepth.size(); depth++) {
+            List<String> level = new ArrayList<>();
+            for (String path : pathsByDepth.get(depth)) {
+                String parent = parents.get(path);
+                if (parent.equals("/") || resolved.containsKey(parent))
+                    level.add(path);
+            }
+
+            for (int from = 0; from < level.size(); from += READ_BATCH_SIZE)
+                readBatch(level.subList(from, Math.min(level.size(), from + READ_BATCH_SIZE)), (short) depth,
+                        parents, resolved);
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Read the INodes of the given paths, all of which are at the given depth and whose parents have been resolved,
+     * and add the ones that exist to {@code resolved}.
+     */
+    private void readBatch(List<String> batch, short depth, Map<String, String> parents, Map<String, INode> resolved)
+            throws IOException {
+        String[] names = new String[batch.size()];
+        long[] parentIds = new long[batch.size()];
+        long[] partitionIds = new long[batch.size()];
+
+        for (int i = 0; i < batch.size(); i++) {
+            String path = batch.get(i);
+            String parent = parents.get(path);
+            names[i] = path.substring(path.lastIndexOf('/') + 1);
+            parentIds[i] = parent.equals("/") ? INode.ROOT_INODE_ID : resolved.get(parent).getId();
+            partitionIds[i] = INode.calculatePartitionId(parentIds[i], names[i], depth);
+        }
+
+        Map<String, INode> inodes = new HashMap<>();
+        for (INode inode : inodeReader.read(names, parentIds, partitionIds))
+            inodes.put(INode.nameParentKey(inode.getParentId(), inode.getLocalName()), inode);
+
+        for (int i = 0; i < batch.size(); i++) {
+            INode inode = inodes.get(INode.nameParentKey(parentIds[i], names[i]));
+            if (inode != null)
+                resolved.put(batch.get(i), inode);
+        }
+    }
+
+    private static String parentOf(String path) {
+        int index = path.lastIndexOf('/');
+        return index == 0 ? "/" : path.substring(0, index);
+    }
+
+    private static int depthOf(String path) {
+        int depth = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '/')
+                depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Read the given INodes from intermediate storage. This takes shared locks, so that an INode that is being modified
+     * is only read once the modifying transaction has committed.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<INode> readINodes(final String[] names, final long[] parentIds, final long[] partitionIds)
+            throws IOException {
+        LightWeightRequestHandler handler = new LightWeightRequestHandler(HDFSOperationType.GET_INODES_BATCH) {
+            @Override
+            public Object performTask() throws IOException {
+                INodeDataAccess<INode> da = (INodeDataAccess<INode>) HdfsStorageFactory
+                        .getDataAccess(INodeDataAccess.class);
+                if (!connector.isTransactionActive()) {
+                    connector.beginTransaction();
+                }
+                connector.readLock();
+                List<INode> inodes = da.getINodesPkBatched(names, parentIds, partitionIds);
+                connector.commit();
+                return inodes;
+            }
+        };
+        return (List<INode>) handler.handle();
+    }
+}
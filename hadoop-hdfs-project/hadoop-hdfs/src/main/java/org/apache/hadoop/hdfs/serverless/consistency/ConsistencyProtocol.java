@@ -14,6 +14,7 @@
 import io.hops.transaction.EntityManager;
 import io.hops.transaction.context.EntityContext;
 import io.hops.transaction.context.INodeContext;
+import io.hops.transaction.context.RootINodeCache;
 import io.hops.transaction.handler.TransactionalRequestHandler;
 import io.hops.transaction.lock.HdfsTransactionalLockAcquirer;
 import io.hops.transaction.lock.TransactionLockAcquirer;
@@ -23,6 +24,8 @@
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hdfs.server.namenode.INode;
 import org.apache.hadoop.hdfs.server.namenode.ServerlessNameNode;
+import org.apache.hadoop.hdfs.serverless.invoking.DirectorySplit;
+import org.apache.hadoop.hdfs.serverless.invoking.DirectorySplitTable;
 import org.apache.hadoop.hdfs.serverless.zookeeper.ZKClient;
 import org.apache.hadoop.hdfs.serverless.zookeeper.ZooKeeperInvalidation;
 import org.apache.hadoop.util.ExponentialBackOff;
@@ -196,6 +199,18 @@ public class ConsistencyProtocol extends Thread implements HopsEventListener {
      */
     private long parentINodeId = -1L;
 
+    /**
+     * The time at which we began issuing INVs. If INode read leases are enabled, then every follower's lease on
+     * the invalidated INodes expires (at the latest) one lease duration after this time.
+     */
+    private long invalidationsIssuedTime = -1L;
+
+    /**
+     * The NDB invalidations to issue, grouped by deployment, captured by {@link #prepareForConcurrentExecution()}.
+     * If this is null, then the invalidations are created from {@code invalidatedINodes} when they are issued.
+     */
+    private Map<Integer, List<Invalidation>> preparedInvalidations;
+
     /**
      * Constructor for non-subtree operations.
      *
@@ -289,6 +304,103 @@ public int precomputeAcks() throws IOException {
         return this.totalNumberOfACKsRequiredPreComputed;
     }
 
+    /**
+     * Create an instance that performs a single round of INVs/ACKs on behalf of several write transactions, each of
+     * which has already pre-computed its ACKs (see {@link #precomputeAcks()}).
+     *
+     * The group reuses the involved deployments and the ACK sets that the members computed, rather than querying
+     * the membership of every deployment again. The invalidated INodes of each member were already filtered with that
+     * member's own {@code isCompleteOperation} and {@code parentINodeId}, and the group never filters them again (the
+     * involved deployments are passed in), so those flags do not apply to the group itself.
+     *
+     * @param members The instances whose ACKs were pre-computed. These are never started.
+     * @param transactionAttempt Used for tracking metrics about the group. May be null.
+     * @param transactionEvent Used for tracking metrics about the group. May be null.
+     * @param transactionStartTime The start time of the earliest member.
+     * @param useZooKeeper If true, use ZooKeeper for ACKs and INVs. Otherwise, use the hops-metadata-dal.
+     */
+    static ConsistencyProtocol merge(List<ConsistencyProtocol> members, TransactionAttempt transactionAttempt,
+                                     TransactionEvent transactionEvent, long transactionStartTime,
+                                     boolean useZooKeeper) {
+        Map<Long, INode> mergedINodes = new LinkedHashMap<>();
+        Set<Integer> mergedDeployments = new HashSet<>();
+        for (ConsistencyProtocol member : members) {
+            if (!member.totalAcksWerePreComputed)
+                throw new IllegalArgumentException("Cannot merge an instance of the consistency protocol whose ACKs " +
+                        "were not pre-computed.");
+
+            for (INode inode : member.invalidatedINodesFiltered)
+                mergedINodes.putIfAbsent(inode.getId(), inode);
+            mergedDeployments.addAll(member.involvedDeployments);
+        }
+
+        List<INode> invalidatedINodes = new ArrayList<>(mergedINodes.values());
+        ConsistencyProtocol group = new ConsistencyProtocol(null, mergedDeployments, transactionAttempt,
+                transactionEvent, transactionStartTime, useZooKeeper, false, false, null, invalidatedINodes, -1L);
+        group.invalidatedINodesFiltered = invalidatedINodes;
+
+        for (ConsistencyProtocol member : members) {
+            for (Map.Entry<Integer, Set<Long>> entry : member.waitingForAcksPerDeployment.entrySet())
+                group.waitingForAcksPerDeployment.computeIfAbsent(entry.getKey(), n -> new HashSet<>())
+                        .addAll(entry.getValue());
+            group.nameNodeIdToDeploymentNumberMapping.putAll(member.nameNodeIdToDeploymentNumberMapping);
+        }
+
+        // The ACK records of the members carry their own operation IDs, so they are created again for the group.
+        int totalNumberOfACKsRequired = 0;
+        group.writeAcknowledgementsMap = new HashMap<>();
+        for (Map.Entry<Integer, Set<Long>> entry : group.waitingForAcksPerDeployment.entrySet()) {
+            int deploymentNumber = entry.getKey();
+            List<WriteAcknowledgement> writeAcknowledgements = new ArrayList<>();
+
+            for (long memberId : entry.getValue()) {
+                group.waitingForAcks.add(memberId);
+
+                if (!useZooKeeper)
+                    writeAcknowledgements.add(new WriteAcknowledgement(memberId, deploymentNumber, group.operationId,
+                            false, transactionStartTime, group.serverlessNameNodeInstance.getId()));
+
+                totalNumberOfACKsRequired += 1;
+            }
+
+            if (!useZooKeeper)
+                group.writeAcknowledgementsMap.put(deploymentNumber, writeAcknowledgements);
+        }
+
+        group.countDownLatch = new CountDownLatch(totalNumberOfACKsRequired);
+        group.totalNumberOfACKsRequiredPreComputed = totalNumberOfACKsRequired;
+        group.totalAcksWerePreComputed = true;
+        return group;
+    }
+
+    /**
+     * Prepare this instance to run concurrently with the transaction that is modifying the invalidated INodes.
+     *
+     * This computes the involved deployments and captures the ID and parent ID of every invalidated INode in the
+     * calling thread, so that the protocol thread never reads the INodes while the transaction is changing them
+     * (e.g., when a rename changes the parent ID of an INode). Unlike {@link #precomputeAcks()}, this performs no
+     * I/O. The ACK records are computed by the protocol thread once it is started.
+     *
+     * @return The number of INodes that require INVs. If this is zero, the protocol need not be started.
+     */
+    public int prepareForConcurrentExecution() {
+        if (invalidatedINodes == null)
+            throw new IllegalStateException("Cannot prepare the consistency protocol for concurrent execution if " +
+                    "the set of invalidated INodes is null.");
+
+        computeInvolvedDeployments();
+
+        preparedInvalidations = new HashMap<>();
+        for (INode invalidatedINode : invalidatedINodes) {
+            int mappedDeploymentNumber = serverlessNameNodeInstance.getMappedDeploymentNumber(invalidatedINode);
+            preparedInvalidations.computeIfAbsent(mappedDeploymentNumber, n -> new ArrayList<>())
+                    .add(new Invalidation(invalidatedINode.getId(), invalidatedINode.getParentId(),
+                            serverlessNameNodeInstance.getId(), transactionStartTime, operationId));
+        }
+
+        return invalidatedINodesFiltered.size();
+    }
+
     /**
      * Utility function for running an instance of the Consistency Protocol for subtree operations.
      *
@@ -308,6 +420,12 @@ public static boolean runConsistencyProtocolForSubtreeOperation(Set<Integer> ass
             LOG.debug("Associated deployments: " + StringUtils.join(", ", associatedDeployments));
         }
 
+        // Every NameNode may have pinned the root of the subtree (see RootINodeCache).
+        if (RootINodeCache.isPinnedPath(src)) {
+            associatedDeployments = new HashSet<>(associatedDeployments);
+            addAllDeployments(associatedDeployments);
+        }
+
         // This is sort of a dummy ID.
         long transactionId = UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE;
         long txStartTime = System.currentTimeMillis();
@@ -364,6 +482,12 @@ public static boolean runConsistencyProtocolForSubtreeOperation(Set<Integer> ass
 
     public boolean getCanProceed() { return this.canProceed; }
 
+    /**
+     * Return the invalidated INodes that actually require INVs (i.e., excluding INodes that are under construction).
+     * This is only populated once the involved deployments have been computed (e.g., by {@link #precomputeAcks()}).
+     */
+    public List<INode> getInvalidatedINodesFiltered() { return this.invalidatedINodesFiltered; }
+
     public List<Exception> getExceptions() { return this.exceptions; }
 
     private void computeInvolvedDeployments() {
@@ -395,6 +519,19 @@ private void computeInvolvedDeployments() {
             involvedDeployments.add(mappedDeploymentNumber);
             invalidatedINodesFiltered.add(invalidatedINode);
 
+            // The INodes of the top levels of the namespace may be pinned by any NameNode (see RootINodeCache),
+            // whether or not this NameNode has pinned them itself.
+            if (((INodeContext) callingThreadINodeContext).isPinned(invalidatedINode))
+                addAllDeployments(involvedDeployments);
+
+            // The children of a split directory, and the directory itself (which is on the path to every child),
+            // may be cached by every deployment over which the directory was split.
+            DirectorySplitTable directorySplits = serverlessNameNodeInstance.getDirectorySplits();
+            if (directorySplits != null && !directorySplits.isEmpty()) {
+                addSplitDeployments(directorySplits.getSplit(invalidatedINode.getParentId()));
+                addSplitDeployments(directorySplits.getSplit(invalidatedINode.getId()));
+            }
+
             // We'll have to guest-join the other deployment if the INode is not mapped to our deployment.
             // This is common during subtree operations and when creating a new directory (as that modifies the parent
             // INode of the new directory, which is possibly mapped to a different deployment).
@@ -406,6 +543,20 @@ private void computeInvolvedDeployments() {
         }
     }
 
+    private static void addAllDeployments(Set<Integer> deployments) {
+        int numDeployments = ServerlessNameNode.tryGetNameNodeInstance(true).getNumNormalAndWriteOnlyDeployments();
+        for (int deployment = 0; deployment < numDeployments; deployment++)
+            deployments.add(deployment);
+    }
+
+    private void addSplitDeployments(DirectorySplit split) {
+        if (split == null)
+            return;
+
+        for (int deployment : split.getReadWriteDeployments())
+            involvedDeployments.add(deployment);
+    }
+
     @Override
     public void run() {
         //// // // // // // // // // // ////
@@ -577,6 +728,7 @@ public void run() {
             //
             // Now that we've subscribed to ACK events, we can add our ACKs to the table.
             if (LOG.isTraceEnabled()) LOG.trace("=-----=-----= Step 2 - Writing ACK Records to Intermediate Storage =-----=-----=");
+            invalidationsIssuedTime = System.currentTimeMillis();
             TransactionLockAcquirer locksAcquirer = new HdfsTransactionalLockAcquirer(); // Only used with NDB.
             if (useZooKeeperForACKsAndINVs) {
                 try {
@@ -727,7 +879,8 @@ public void run() {
 
         if (LOG.isDebugEnabled())
             LOG.debug("Completed consistency protocol in " + (System.currentTimeMillis() - startTime) +
-                    " ms for the following INodes: " + StringUtils.join(invalidatedINodes, ", "));
+                    " ms for the following INodes: " + StringUtils.join(
+                            (preparedInvalidations != null) ? preparedInvalidations.values() : invalidatedINodes, ", "));
     }
 
     /**
@@ -868,11 +1021,26 @@ private void waitForAcks() throws Exception {
             LOG.trace("Count value of CountDownLatch: " + countDownLatch.getCount());
         }
 
+        // If read leases are enabled, then we never need to wait longer than the lease duration (plus a margin),
+        // measured from when we began issuing INVs. Any follower that has not ACK'd by then has had its lease on
+        // the invalidated INodes expire, and so it can no longer serve the old version of those INodes.
+        long ackTimeout = serverlessNameNodeInstance.getTxAckTimeout();
+        boolean boundedByLeases = false;
+        long leaseWaitMillis = serverlessNameNodeInstance.getCacheLeaseWaitMillis();
+        if (leaseWaitMillis > 0 && invalidationsIssuedTime > 0) {
+            long remainingLeaseTime = Math.max(0, invalidationsIssuedTime + leaseWaitMillis - System.currentTimeMillis());
+
+            if (remainingLeaseTime < ackTimeout) {
+                ackTimeout = remainingLeaseTime;
+                boundedByLeases = true;
+            }
+        }
+
         s = System.currentTimeMillis();
         // Wait until we're done. If the latch is already at zero, then this will not block.
         boolean success;
         try {
-            success = countDownLatch.await(serverlessNameNodeInstance.getTxAckTimeout(), TimeUnit.MILLISECONDS);
+            success = countDownLatch.await(ackTimeout, TimeUnit.MILLISECONDS);
         } catch (InterruptedException ex) {
             throw new IOException("Interrupted waiting for ACKs from other NameNodes. Waiting on a total of " +
                     waitingForAcks.size() + " ACK(s): " + StringUtils.join(waitingForAcks, ", "));
@@ -881,6 +1049,19 @@ private void waitForAcks() throws Exception {
 
         if (LOG.isTraceEnabled()) LOG.trace("Spent " + (t - s) + " ms waiting on ACKs.");
 
+        if (!success && boundedByLeases) {
+            synchronized (this) {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Read leases on the invalidated INodes have expired. Proceeding with write operation " +
+                            operationId + " without the remaining " + waitingForAcks.size() + " ACK(s): " +
+                            StringUtils.join(waitingForAcks, ", "));
+
+                waitingForAcks.clear();
+                waitingForAcksPerDeployment.values().forEach(Set::clear);
+            }
+            return;
+        }
+
         if (!success) {
             LOG.warn("Timed out while waiting for ACKs from other NNs. Waiting on a total of " +
                     waitingForAcks.size() + " ACK(s): " + StringUtils.join(waitingForAcks, ", "));
@@ -1306,20 +1487,25 @@ private void issueInvalidationsNDB(Collection<INode> invalidatedINodes, long tra
         InvalidationDataAccess<Invalidation> dataAccess =
                 (InvalidationDataAccess<Invalidation>) HdfsStorageFactory.getDataAccess(InvalidationDataAccess.class);
 
-        Map<Integer, List<Invalidation>> invalidationsMap = new HashMap<>();
+        // If the invalidations were captured before the protocol was started, then the transaction may be modifying
+        // the INodes concurrently, so we must not read them here.
+        Map<Integer, List<Invalidation>> invalidationsMap = preparedInvalidations;
+        if (invalidationsMap == null) {
+            invalidationsMap = new HashMap<>();
 
-        for (INode invalidatedINode : invalidatedINodes) {
-            int mappedDeploymentNumber = serverlessNameNodeInstance.getMappedDeploymentNumber(invalidatedINode);
-            List<Invalidation> invalidations = invalidationsMap.getOrDefault(mappedDeploymentNumber, null);
+            for (INode invalidatedINode : invalidatedINodes) {
+                int mappedDeploymentNumber = serverlessNameNodeInstance.getMappedDeploymentNumber(invalidatedINode);
+                List<Invalidation> invalidations = invalidationsMap.getOrDefault(mappedDeploymentNumber, null);
 
-            if (invalidations == null) {
-                invalidations = new ArrayList<>();
-                invalidationsMap.put(mappedDeploymentNumber, invalidations);
-            }
+                if (invalidations == null) {
+                    invalidations = new ArrayList<>();
+                    invalidationsMap.put(mappedDeploymentNumber, invalidations);
+                }
 
-            // int inodeId, int parentId, long leaderNameNodeId, long transactionStartTime, long operationId
-            invalidations.add(new Invalidation(invalidatedINode.getId(), invalidatedINode.getParentId(),
-                    serverlessNameNodeInstance.getId(), transactionStartTime, operationId));
+                // int inodeId, int parentId, long leaderNameNodeId, long transactionStartTime, long operationId
+                invalidations.add(new Invalidation(invalidatedINode.getId(), invalidatedINode.getParentId(),
+                        serverlessNameNodeInstance.getId(), transactionStartTime, operationId));
+            }
         }
 
         for (Map.Entry<Integer, List<Invalidation>> entry : invalidationsMap.entrySet()) {
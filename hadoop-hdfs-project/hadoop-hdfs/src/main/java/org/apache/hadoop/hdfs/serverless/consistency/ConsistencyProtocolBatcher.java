@@ -0,0 +1,353 @@
+package org.apache.hadoop.hdfs.serverless.consistency;
+
+import io.hops.metrics.TransactionAttempt;
+import io.hops.metrics.TransactionEvent;
+import io.hops.transaction.handler.TransactionalRequestHandler;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.*;
+
+/**
+ * Implements "group commit" for the consistency protocol.
+ *
+ * Without batching, every write transaction that modifies cached INodes performs its own INV/ACK round trip
+ * (one {@link org.apache.hadoop.hdfs.serverless.zookeeper.ZooKeeperInvalidation} per transaction, or one batch of
+ * NDB ACK rows per transaction). When many writes arrive at the same Leader NN at once (e.g., a storm of creates
+ * within one directory), each of them pays that latency separately.
+ *
+ * With batching enabled, transactions that require ACKs submit their instance of the {@link ConsistencyProtocol},
+ * whose ACKs have already been pre-computed, to this class rather than running it themselves. The first transaction
+ * to arrive opens a group and waits up to {@code windowMicros} for other transactions to join it. The group's INodes
+ * and ACK sets are then merged, and a single instance of the protocol is executed on behalf of the entire group. A
+ * group of one simply runs the submitted instance. Follower NNs therefore invalidate and ACK exactly once for the
+ * whole group.
+ *
+ * This is safe because every member of the group is still holding its NDB row locks while it waits; no member
+ * commits until the merged round of INVs has been ACK'd by every follower (or the follower has left its deployment).
+ * If the merged round fails, every member of the group is aborted, exactly as if its own round had failed.
+ *
+ * A transaction never waits on the batcher indefinitely. If it is not assigned to a group in time (e.g., because the
+ * batcher has been shut down), or if its group's round does not complete in time, then it runs its own instance of
+ * the protocol directly, as it would with batching disabled.
+ */
+public class ConsistencyProtocolBatcher {
+    private static final Log LOG = LogFactory.getLog(ConsistencyProtocolBatcher.class);
+
+    /**
+     * How long the first member of a group waits for others to join, in nanoseconds.
+     */
+    private final long windowNanos;
+
+    /**
+     * Maximum number of transactions per group.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * If true, use ZooKeeper for ACKs and INVs. Otherwise, use the hops-metadata-dal.
+     */
+    private final boolean useZooKeeper;
+
+    /**
+     * How long a transaction waits to be assigned to a group before it runs its protocol directly, in milliseconds.
+     */
+    private final long assignmentTimeoutMillis;
+
+    /**
+     * How long a transaction waits for a round of the protocol to complete, in milliseconds. The protocol itself
+     * gives up waiting for ACKs after {@code serverless.tx.ack.timeout}, so this only expires if the round is stuck.
+     */
+    private final long completionTimeoutMillis;
+
+    /**
+     * Transactions waiting to be assigned to a group.
+     */
+    private final LinkedBlockingQueue<PendingWrite> pendingWrites = new LinkedBlockingQueue<>();
+
+    /**
+     * Forms groups from the {@code pendingWrites} queue and launches the consistency protocol for each group.
+     */
+    private final Thread groupingThread;
+
+    private volatile boolean running = true;
+
+    public ConsistencyProtocolBatcher(Configuration conf, boolean useZooKeeper) {
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(conf.getLong(SERVERLESS_CONSISTENCY_BATCHING_WINDOW_MICROS,
+                SERVERLESS_CONSISTENCY_BATCHING_WINDOW_MICROS_DEFAULT));
+        this.maxBatchSize = Math.max(1, conf.getInt(SERVERLESS_CONSISTENCY_BATCHING_MAX_SIZE,
+                SERVERLESS_CONSISTENCY_BATCHING_MAX_SIZE_DEFAULT));
+        this.useZooKeeper = useZooKeeper;
+
+        int ackTimeoutMillis = conf.getInt(SERVERLESS_TRANSACTION_ACK_TIMEOUT, SERVERLESS_TRANSACTION_ACK_TIMEOUT_DEFAULT);
+        this.assignmentTimeoutMillis = TimeUnit.NANOSECONDS.toMillis(windowNanos) + ackTimeoutMillis;
+        this.completionTimeoutMillis = 2L * ackTimeoutMillis;
+
+        this.groupingThread = new Thread(this::groupWrites, "ConsistencyProtocolBatcher");
+        this.groupingThread.setDaemon(true);
+        this.groupingThread.start();
+
+        LOG.debug("Created ConsistencyProtocolBatcher with window=" + TimeUnit.NANOSECONDS.toMicros(windowNanos) +
+                " us, maxBatchSize=" + maxBatchSize + ", useZooKeeper=" + useZooKeeper + ".");
+    }
+
+    /**
+     * Submit the consistency protocol of a write transaction and block until the round of INVs/ACKs covering its
+     * INodes has completed.
+     *
+     * @param protocol The transaction's instance of the protocol. Its ACKs must have been pre-computed (see
+     *                 {@link ConsistencyProtocol#precomputeAcks()}), and it must not have been started.
+     * @param transactionStartTime The time at which the transaction began.
+     * @param attempt Used to record the consistency protocol phase timings of the group. May be null.
+     *
+     * @throws IOException If the consistency protocol failed for the group that this transaction was a part of.
+     */
+    public void submitAndWait(ConsistencyProtocol protocol, long transactionStartTime,
+                              TransactionAttempt attempt) throws IOException {
+        PendingWrite pendingWrite = new PendingWrite(protocol, transactionStartTime);
+        pendingWrites.add(pendingWrite);
+
+        // shutdown() clears the flag before the grouping thread drains the queue for the last time. If the flag is
+        // cleared, then that drain may already have happened, so we take the transaction back unless the grouping
+        // thread claimed it first (in which case it is assigned to a group).
+        if (!running && pendingWrite.claim()) {
+            pendingWrites.remove(pendingWrite);
+            runDirectly(protocol);
+            return;
+        }
+
+        Group group;
+        try {
+            if (!pendingWrite.assigned.await(assignmentTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                if (pendingWrite.claim()) {
+                    LOG.warn("Transaction was not assigned to a consistency protocol group within " +
+                            assignmentTimeoutMillis + " ms. Running its consistency protocol directly.");
+                    pendingWrites.remove(pendingWrite);
+                    runDirectly(protocol);
+                    return;
+                }
+
+                // The grouping thread claimed the transaction just now, and is starting the group's protocol.
+                if (!pendingWrite.assigned.await(assignmentTimeoutMillis, TimeUnit.MILLISECONDS))
+                    throw new IOException("Timed out waiting for batched consistency protocol to start.");
+            }
+
+            group = pendingWrite.group;
+            group.protocol.join(completionTimeoutMillis);
+        } catch (InterruptedException ex) {
+            throw new IOException("Interrupted while waiting for batched consistency protocol to complete.", ex);
+        }
+
+        if (group.protocol.isAlive()) {
+            // If the group is just this transaction, then its own instance is the one that is stuck.
+            if (group.protocol == protocol)
+                throw new IOException("Consistency protocol did not complete within " + completionTimeoutMillis +
+                        " ms.");
+
+            LOG.warn("Batched consistency protocol for group of " + group.size + " transaction(s) did not complete " +
+                    "within " + completionTimeoutMillis + " ms. Running this transaction's consistency protocol directly.");
+            runDirectly(protocol);
+            return;
+        }
+
+        if (TransactionalRequestHandler.TX_EVENTS_ENABLED && attempt != null && group.attempt != null &&
+                group.attempt != attempt) {
+            attempt.copyConsistencyPhaseTimes(group.attempt);
+            attempt.setConsistencyBatchSize(group.size);
+        }
+
+        checkOutcome(group.protocol, group.size);
+    }
+
+    /**
+     * Run the given transaction's instance of the protocol on its own, as if batching were disabled.
+     */
+    private void runDirectly(ConsistencyProtocol protocol) throws IOException {
+        protocol.start();
+        try {
+            protocol.join(completionTimeoutMillis);
+        } catch (InterruptedException ex) {
+            throw new IOException("Interrupted while waiting for consistency protocol to complete.", ex);
+        }
+
+        if (protocol.isAlive())
+            throw new IOException("Consistency protocol did not complete within " + completionTimeoutMillis + " ms.");
+
+        checkOutcome(protocol, 1);
+    }
+
+    /**
+     * Throw an exception if the given (completed) protocol failed, so that the transaction aborts.
+     */
+    private static void checkOutcome(ConsistencyProtocol protocol, int groupSize) throws IOException {
+        if (protocol.getCanProceed())
+            return;
+
+        List<Exception> exceptions = protocol.getExceptions();
+
+        if (exceptions.isEmpty())
+            throw new IOException("Consistency protocol failed for group of " + groupSize +
+                    " transaction(s), but no exception was thrown. Probably timed out.");
+
+        Exception ex = exceptions.get(0);
+        if (ex instanceof IOException)
+            throw (IOException) ex;
+
+        throw new IOException("Exception encountered during consistency protocol: " + ex.getMessage(), ex);
+    }
+
+    /**
+     * Stop forming new groups. Transactions already assigned to a group are unaffected, and the remaining ones are
+     * either grouped one last time by the grouping thread or run their protocol directly.
+     */
+    public void shutdown() {
+        running = false;
+        groupingThread.interrupt();
+    }
+
+    /**
+     * Main loop of the grouping thread.
+     */
+    private void groupWrites() {
+        while (running) {
+            List<PendingWrite> batch = new ArrayList<>();
+
+            try {
+                batch.add(pendingWrites.take());
+
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        // Grab anything that is already waiting, but do not wait any longer.
+                        pendingWrites.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+
+                    PendingWrite next = pendingWrites.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException ex) {
+                if (running)
+                    LOG.warn("ConsistencyProtocolBatcher interrupted while forming a group.");
+                // Fall through so that anything we've already dequeued is still processed.
+            }
+
+            if (!batch.isEmpty())
+                launchGroup(batch);
+        }
+
+        // Process anything left in the queue so that no transaction blocks forever.
+        List<PendingWrite> remaining = new ArrayList<>();
+        pendingWrites.drainTo(remaining);
+        if (!remaining.isEmpty())
+            launchGroup(remaining);
+    }
+
+    /**
+     * Merge the given transactions into a single group and start the consistency protocol for that group.
+     */
+    private void launchGroup(List<PendingWrite> batch) {
+        // Skip any transaction that stopped waiting and is running its protocol directly.
+        batch.removeIf(pendingWrite -> !pendingWrite.claim());
+        if (batch.isEmpty())
+            return;
+
+        ConsistencyProtocol protocol;
+        TransactionAttempt groupAttempt = null;
+
+        if (batch.size() == 1) {
+            // Nothing to merge, so the transaction's own instance runs, with its own flags and ACKs.
+            protocol = batch.get(0).protocol;
+        } else {
+            List<ConsistencyProtocol> members = new ArrayList<>(batch.size());
+            long earliestStartTime = Long.MAX_VALUE;
+            for (PendingWrite pendingWrite : batch) {
+                members.add(pendingWrite.protocol);
+                earliestStartTime = Math.min(earliestStartTime, pendingWrite.transactionStartTime);
+            }
+
+            TransactionEvent groupEvent = null;
+            long groupId = UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE;
+            if (TransactionalRequestHandler.TX_EVENTS_ENABLED) {
+                groupAttempt = new TransactionAttempt(0);
+                groupEvent = new TransactionEvent(groupId);
+                groupEvent.setTransactionStartTime(earliestStartTime);
+                groupEvent.addAttempt(groupAttempt);
+            }
+
+            // The group reuses the involved deployments and ACK sets that the members pre-computed.
+            protocol = ConsistencyProtocol.merge(members, groupAttempt, groupEvent, earliestStartTime, useZooKeeper);
+        }
+
+        Group group = new Group(protocol, groupAttempt, batch.size());
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Running batched consistency protocol for group of " + batch.size() + " transaction(s) covering " +
+                    protocol.getInvalidatedINodesFiltered().size() + " INode(s).");
+
+        // Start the protocol before releasing the members so that they can join() on it.
+        protocol.start();
+        for (PendingWrite pendingWrite : batch) {
+            pendingWrite.group = group;
+            pendingWrite.assigned.countDown();
+        }
+    }
+
+    /**
+     * A write transaction waiting for its INVs to be ACK'd.
+     */
+    private static class PendingWrite {
+        final ConsistencyProtocol protocol;
+        final long transactionStartTime;
+
+        /**
+         * Released once this transaction has been assigned to a group whose protocol has started.
+         */
+        final CountDownLatch assigned = new CountDownLatch(1);
+
+        volatile Group group;
+
+        /**
+         * Set by whichever of the grouping thread and the transaction itself decides who runs its protocol.
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+        PendingWrite(ConsistencyProtocol protocol, long transactionStartTime) {
+            this.protocol = protocol;
+            this.transactionStartTime = transactionStartTime;
+        }
+
+        /**
+         * @return True if the caller is the first to claim this transaction.
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+
+    /**
+     * A set of transactions sharing a single execution of the consistency protocol.
+     */
+    private static class Group {
+        final ConsistencyProtocol protocol;
+        final TransactionAttempt attempt;
+        final int size;
+
+        Group(ConsistencyProtocol protocol, TransactionAttempt attempt, int size) {
+            this.protocol = protocol;
+            this.attempt = attempt;
+            this.size = size;
+        }
+    }
+}
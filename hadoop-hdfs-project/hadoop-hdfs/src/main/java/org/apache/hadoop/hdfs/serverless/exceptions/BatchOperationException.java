@@ -0,0 +1,48 @@
+package org.apache.hadoop.hdfs.serverless.exceptions;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Thrown when a batch file system operation failed on some of its paths. The operation was still performed on all
+ * the other paths, and their results are available via {@link #getResults()}.
+ */
+public class BatchOperationException extends IOException {
+    private static final long serialVersionUID = 6402716829340592615L;
+
+    private final Serializable[] results;
+
+    private final IOException[] failures;
+
+    /**
+     * @param results The result for each path of the batch, in order, or null for the paths on which the operation
+     *                failed.
+     * @param failures The exception for each path of the batch, in order, or null for the paths on which the
+     *                 operation succeeded.
+     * @param numFailures The number of non-null entries of {@code failures}.
+     * @param firstFailure The first non-null entry of {@code failures}.
+     */
+    public BatchOperationException(Serializable[] results, IOException[] failures, int numFailures,
+                                   IOException firstFailure) {
+        super("Operation failed on " + numFailures + " of " + failures.length + " path(s). First failure: " +
+                firstFailure, firstFailure);
+        this.results = results;
+        this.failures = failures;
+    }
+
+    /**
+     * Return the result for each path of the batch, in order. Entries for paths on which the operation failed are
+     * null.
+     */
+    public Serializable[] getResults() {
+        return results;
+    }
+
+    /**
+     * Return the exception for each path of the batch, in order. Entries for paths on which the operation succeeded
+     * are null.
+     */
+    public IOException[] getFailures() {
+        return failures;
+    }
+}
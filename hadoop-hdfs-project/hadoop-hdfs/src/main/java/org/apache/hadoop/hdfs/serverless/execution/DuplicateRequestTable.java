@@ -0,0 +1,236 @@
+package org.apache.hadoop.hdfs.serverless.execution;
+
+import org.apache.hadoop.hdfs.serverless.cache.LongToObjectIndex;
+
+import java.util.Arrays;
+
+/**
+ * Bounded, time-windowed record of the request IDs that a NameNode has already seen.
+ *
+ * The table is a ring of {@code numBuckets} open-addressing hash sets of primitive longs, each keyed by a 64-bit
+ * hash of the request ID. New IDs are always added to the current bucket. Once the current bucket has covered
+ * {@code windowMillis / numBuckets} milliseconds (or has become full), the ring advances and the oldest bucket is
+ * cleared and reused. Request IDs are therefore remembered for at least {@code windowMillis * (numBuckets - 1) /
+ * numBuckets} milliseconds, unless the NameNode receives more than {@code maxEntries} requests in that time.
+ *
+ * All storage is allocated up-front, so the memory used by the table never grows, no matter how long the
+ * NameNode stays warm, and the table does not create any garbage while recording request IDs.
+ *
+ * Because only hashes are stored, two different request IDs could in principle collide. With 64-bit hashes of
+ * (random) UUIDs and a few hundred thousand live entries, the chance of this happening is negligible. A collision
+ * would only cause a request to be reported as a duplicate, which the client handles by resubmitting with
+ * {@link org.apache.hadoop.hdfs.serverless.ServerlessNameNodeKeys#FORCE_REDO}.
+ *
+ * This class is thread safe.
+ */
+public class DuplicateRequestTable {
+    /**
+     * Marks an empty slot. Hashes that happen to be equal to this value are remapped in {@link #hash(String)}.
+     */
+    private static final long EMPTY = 0L;
+
+    /**
+     * Slots per bucket are twice the number of entries the bucket may hold, keeping the load factor at or below 0.5.
+     */
+    private static final int SLOTS_PER_ENTRY = 2;
+
+    private final long[][] buckets;
+
+    /**
+     * Number of entries currently stored in each bucket.
+     */
+    private final int[] sizes;
+
+    /**
+     * The maximum number of entries stored in a single bucket.
+     */
+    private final int maxEntriesPerBucket;
+
+    /**
+     * The amount of time, in milliseconds, covered by a single bucket.
+     */
+    private final long bucketIntervalMillis;
+
+    /**
+     * Index of the bucket into which new request IDs are added.
+     */
+    private int current = 0;
+
+    /**
+     * The time at which the current bucket started receiving new entries.
+     */
+    private long currentBucketStartTime;
+
+    /**
+     * @param maxEntries The maximum number of request IDs retained across all buckets.
+     * @param windowMillis Approximately how long request IDs are retained, in milliseconds.
+     * @param numBuckets The number of buckets into which the window is divided. Must be at least 2.
+     */
+    public DuplicateRequestTable(int maxEntries, long windowMillis, int numBuckets) {
+        this(maxEntries, windowMillis, numBuckets, System.currentTimeMillis());
+    }
+
+    DuplicateRequestTable(int maxEntries, long windowMillis, int numBuckets, long startTime) {
+        if (numBuckets < 2)
+            throw new IllegalArgumentException("Number of buckets must be at least 2. Got: " + numBuckets);
+        if (maxEntries < numBuckets)
+            throw new IllegalArgumentException("Maximum number of entries (" + maxEntries +
+                    ") must be at least the number of buckets (" + numBuckets + ").");
+        if (windowMillis <= 0)
+            throw new IllegalArgumentException("Window must be positive. Got: " + windowMillis);
+
+        this.maxEntriesPerBucket = maxEntries / numBuckets;
+        this.bucketIntervalMillis = Math.max(1, windowMillis / numBuckets);
+
+        int slots = Integer.highestOneBit(Math.max(maxEntriesPerBucket * SLOTS_PER_ENTRY - 1, 1)) << 1;
+        this.buckets = new long[numBuckets][slots];
+        this.sizes = new int[numBuckets];
+        this.currentBucketStartTime = startTime;
+    }
+
+    /**
+     * Size a table so that it occupies roughly {@code memoryBytes} bytes of memory.
+     *
+     * @param memoryBytes The amount of memory, in bytes, that the table may use.
+     * @param windowMillis Approximately how long request IDs are retained, in milliseconds.
+     * @param numBuckets The number of buckets into which the window is divided.
+     */
+    public static DuplicateRequestTable withMemoryBudget(long memoryBytes, long windowMillis, int numBuckets) {
+        long maxEntries = memoryBytes / ((long)Long.BYTES * SLOTS_PER_ENTRY);
+        maxEntries = Math.max(numBuckets, Math.min(maxEntries, Integer.MAX_VALUE / (SLOTS_PER_ENTRY * 2)));
+        return new DuplicateRequestTable((int)maxEntries, windowMillis, numBuckets);
+    }
+
+    /**
+     * Record the given request ID.
+     *
+     * @return True if the request ID had not been seen (within the window) before this call, otherwise false.
+     */
+    public boolean add(String requestId) {
+        return add(hash(requestId), System.currentTimeMillis());
+    }
+
+    /**
+     * @return True if the given request ID has been seen within the window.
+     */
+    public boolean contains(String requestId) {
+        return contains(hash(requestId), System.currentTimeMillis());
+    }
+
+    synchronized boolean add(long hash, long now) {
+        advance(now);
+
+        if (containsHash(hash))
+            return false;
+
+        if (sizes[current] >= maxEntriesPerBucket) {
+            rotate();
+            currentBucketStartTime = now;
+        }
+
+        insert(buckets[current], hash);
+        sizes[current]++;
+        return true;
+    }
+
+    synchronized boolean contains(long hash, long now) {
+        advance(now);
+        return containsHash(hash);
+    }
+
+    /**
+     * @return The total number of request IDs currently retained.
+     */
+    public synchronized int size() {
+        int total = 0;
+        for (int size : sizes)
+            total += size;
+        return total;
+    }
+
+    /**
+     * @return The maximum number of request IDs that may be retained at once.
+     */
+    public int capacity() {
+        return maxEntriesPerBucket * buckets.length;
+    }
+
+    /**
+     * Advance the ring by however many bucket intervals have elapsed since the current bucket was started.
+     */
+    private void advance(long now) {
+        long elapsedIntervals = (now - currentBucketStartTime) / bucketIntervalMillis;
+
+        if (elapsedIntervals <= 0)
+            return;
+
+        // If the whole window has elapsed, then everything is expired.
+        int toRotate = (int)Math.min(elapsedIntervals, buckets.length);
+        for (int i = 0; i < toRotate; i++)
+            rotate();
+
+        // Keep bucket boundaries aligned to the interval so that entries expire on schedule.
+        currentBucketStartTime += elapsedIntervals * bucketIntervalMillis;
+    }
+
+    /**
+     * Start a new bucket, discarding the contents of the oldest one.
+     */
+    private void rotate() {
+        current = (current + 1) % buckets.length;
+
+        if (sizes[current] > 0) {
+            Arrays.fill(buckets[current], EMPTY);
+            sizes[current] = 0;
+        }
+    }
+
+    private boolean containsHash(long hash) {
+        for (int i = 0; i < buckets.length; i++) {
+            if (sizes[i] > 0 && lookup(buckets[i], hash))
+                return true;
+        }
+
+        return false;
+    }
+
+    private static boolean lookup(long[] table, long hash) {
+        int mask = table.length - 1;
+        int idx = (int)hash & mask;
+
+        while (true) {
+            long slot = table[idx];
+            if (slot == hash)
+                return true;
+            if (slot == EMPTY)
+                return false;
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    private static void insert(long[] table, long hash) {
+        int mask = table.length - 1;
+        int idx = (int)hash & mask;
+
+        while (table[idx] != EMPTY)
+            idx = (idx + 1) & mask;
+
+        table[idx] = hash;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the given request ID, followed by the MurmurHash3 finalizer so that the low-order bits
+     * (which select the slot) depend on every character.
+     */
+    static long hash(String requestId) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < requestId.length(); i++) {
+            h ^= requestId.charAt(i);
+            h *= 0x100000001b3L;
+        }
+
+        h = LongToObjectIndex.mix(h);
+
+        return h == EMPTY ? 1L : h;
+    }
+}
@@ -1,5 +1,7 @@
 package org.apache.hadoop.hdfs.serverless.execution;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.hops.exception.StorageException;
 import io.hops.metadata.HdfsStorageFactory;
 import io.hops.metadata.hdfs.dal.WriteAcknowledgementDataAccess;
@@ -17,6 +19,7 @@
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
@@ -45,9 +48,24 @@ public class ExecutionManager {
     private final ServerlessNameNode serverlessNameNodeInstance;
 
     /**
-     * All the tasks we're either executing or have successfully executed.
+     * IDs of the tasks we're either executing or have recently executed. This is bounded both in time and in
+     * size, so that it does not grow for the entire lifetime of a warm NameNode.
      */
-    private final Set<String> seenTasks;
+    private final DuplicateRequestTable seenTasks;
+
+    /**
+     * The tasks we're currently executing, by task ID. Each future is completed with the task's result once the task
+     * has finished, so that retransmissions of a task that is still running can wait for its result rather than
+     * executing it a second time.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<NameNodeResult>> runningTasks = new ConcurrentHashMap<>();
+
+    /**
+     * The results of recently-completed write operations, by task ID. Retransmissions of these tasks are answered
+     * with the cached result, as executing a write operation twice is generally not safe. The results of read
+     * operations are not cached, as those can simply be executed again.
+     */
+    private final Cache<String, NameNodeResult> completedWriteResults;
 
     /**
      * Cache of previously-computed results. These results are kept in-memory for a configurable period of time
@@ -153,7 +171,22 @@ public ExecutionManager(Configuration conf, ServerlessNameNode serverlessNameNod
 //                .build();
 //        this.currentlyExecutingTasks = Collections.newSetFromMap(new ConcurrentHashMap<>());
 //        this.completedTasks = Collections.newSetFromMap(new ConcurrentHashMap<>());
-        this.seenTasks = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        long dedupWindowMillis = conf.getLong(SERVERLESS_DEDUP_WINDOW_MILLISECONDS,
+                SERVERLESS_DEDUP_WINDOW_MILLISECONDS_DEFAULT);
+        int dedupNumBuckets = conf.getInt(SERVERLESS_DEDUP_NUM_BUCKETS, SERVERLESS_DEDUP_NUM_BUCKETS_DEFAULT);
+        float dedupHeapFraction = conf.getFloat(SERVERLESS_DEDUP_HEAP_FRACTION, SERVERLESS_DEDUP_HEAP_FRACTION_DEFAULT);
+        this.seenTasks = DuplicateRequestTable.withMemoryBudget(
+                (long)(Runtime.getRuntime().maxMemory() * dedupHeapFraction), dedupWindowMillis, dedupNumBuckets);
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Duplicate request table can hold " + seenTasks.capacity() + " request IDs (window=" +
+                    dedupWindowMillis + " ms, buckets=" + dedupNumBuckets + ").");
+
+        this.completedWriteResults = Caffeine.newBuilder()
+                .maximumSize(conf.getInt(SERVERLESS_RESULT_CACHE_MAXIMUM_SIZE, SERVERLESS_RESULT_CACHE_MAXIMUM_SIZE_DEFAULT))
+                .expireAfterWrite(Duration.ofMillis(conf.getInt(SERVERLESS_RESULT_CACHE_INTERVAL_MILLISECONDS,
+                        SERVERLESS_RESULT_CACHE_INTERVAL_MILLISECONDS_DEFAULT)))
+                .build();
 
         this.serverlessNameNodeInstance = serverlessNameNode;
         this.writeAcknowledgementsToDelete = new LinkedBlockingQueue<>();
@@ -456,17 +489,62 @@ private void tryUpdateFromIntermediateStorage() {
 //    }
 
     /**
-     * Check if the task identified by the given ID is a duplicate.
+     * Record that the task identified by the given ID has been received, and check if it is a duplicate.
      *
      * @param taskId the task ID of the task for which we are checking if it is a duplicate
-     * @return true if the task is a duplicate, otherwise false.
+     * @return true if the task was already received (within the duplicate-request window), otherwise false.
      */
-//    public synchronized boolean isTaskDuplicate(String taskId) {
-//        //return currentlyExecutingTasks.asMap().containsKey(taskId) || completedTasks.asMap().containsKey(taskId);
-//        //return currentlyExecutingTasks.containsKey(taskId) || completedTasks.containsKey(taskId);
-//        // return currentlyExecutingTasks.contains(taskId) || completedTasks.contains(taskId);
-//        return seenTasks.contains(taskId);
-//    }
+    public boolean isTaskDuplicate(String taskId) {
+        return !seenTasks.add(taskId);
+    }
+
+    /**
+     * Called before executing the task identified by the given ID. If the caller may execute the task, then the task
+     * is marked as running, and the caller must call {@link #finishTask(String, String, NameNodeResult)} once it is
+     * done. Otherwise, the task is a duplicate, and the caller must reply with the result of the returned future.
+     *
+     * A task that is still running is never executed a second time, even if the client asked us to redo it: the
+     * returned future completes with the result of the running execution. Likewise, a write operation whose result
+     * is still cached is not executed again.
+     *
+     * @param taskId The unique ID of the task.
+     * @param forceRedo True if the client asked us to execute the task again if its result is no longer available.
+     * @return Null if the caller must execute the task. Otherwise, a future that completes with the result of the
+     * original execution of the task, or with null if the task has already completed, its result is no longer
+     * available and {@code forceRedo} is false.
+     */
+    public CompletableFuture<NameNodeResult> tryStartTask(String taskId, boolean forceRedo) {
+        CompletableFuture<NameNodeResult> execution = new CompletableFuture<>();
+        CompletableFuture<NameNodeResult> running = runningTasks.putIfAbsent(taskId, execution);
+        if (running != null)
+            return running;
+
+        // We own the task's entry in runningTasks, so no other thread can start or finish this task right now.
+        NameNodeResult previousResult = completedWriteResults.getIfPresent(taskId);
+        boolean duplicate = isTaskDuplicate(taskId);
+        if (previousResult == null && (!duplicate || forceRedo))
+            return null;
+
+        // Release the entry, completing it for any retransmission that found it in the meantime.
+        runningTasks.remove(taskId, execution);
+        execution.complete(previousResult);
+        return execution;
+    }
+
+    /**
+     * Called once a task started via {@link #tryStartTask(String, boolean)} has been executed. Hands the result to
+     * any retransmissions of the task that arrived while it was running, and caches it if it is the result of a
+     * write operation.
+     */
+    public void finishTask(String taskId, String operationName, NameNodeResult result) {
+        // Cache the result before removing the running task, so that a retransmission always finds one or the other.
+        if (ServerlessNameNode.isWriteOperation(operationName))
+            completedWriteResults.put(taskId, result);
+
+        CompletableFuture<NameNodeResult> execution = runningTasks.remove(taskId);
+        if (execution != null)
+            execution.complete(result);
+    }
 
 //    /**
 //     * Handler for when the worker thread encounters a duplicate task.
@@ -44,6 +44,12 @@ protected enum State {WAITING, DONE, CANCELLED, ERROR}
      */
     protected final BlockingQueue<T> resultQueue = new ArrayBlockingQueue<>(1);
 
+    /**
+     * Completed with the first result posted to this future, so that callers can react to the result without
+     * blocking a thread on {@link #get()}.
+     */
+    private final CompletableFuture<T> completion = new CompletableFuture<>();
+
     public ServerlessFuture(String requestId, String operationName) {
         this.requestId = requestId;
         this.operationName = operationName;
@@ -70,6 +76,25 @@ public ServerlessFuture(String requestId, String operationName) {
      */
     public abstract boolean cancel(boolean mayInterruptIfRunning);
 
+    /**
+     * Return a stage that is completed with the first result posted to this future, including the result posted
+     * when the future is cancelled.
+     *
+     * Dependent actions are executed by the thread that posts the result (e.g., a network thread of the
+     * {@link UserServer}) unless an executor is specified, so they should not block.
+     */
+    public CompletionStage<T> toCompletionStage() {
+        // Hand out a dependent stage so that callers cannot complete this future themselves.
+        return completion.thenApply(result -> result);
+    }
+
+    /**
+     * Notify those waiting on {@link #toCompletionStage()} of the given result.
+     */
+    protected void notifyCompletion(T result) {
+        completion.complete(result);
+    }
+
     @Override
     public synchronized boolean isCancelled() {
         return state == State.CANCELLED;
@@ -91,9 +116,10 @@ public boolean postResultImmediate(T result) {
         try {
             boolean success = resultQueue.offer(result);
 
-            if (success)
+            if (success) {
                 this.state = State.DONE;
-            else
+                notifyCompletion(result);
+            } else
                 LOG.error("Could not post result for future " + getRequestId() + " as result queue is full.");
 
             return success;
@@ -113,6 +139,7 @@ public void postResult(T result) {
         try {
             resultQueue.put(result);
             this.state = State.DONE;
+            notifyCompletion(result);
         }
         catch (Exception ex) {
             LOG.error("Exception encountered while attempting to post result to TCP future: ", ex);
@@ -32,27 +32,38 @@ public JsonObject get() throws InterruptedException, ExecutionException {
         final JsonObject response = this.resultQueue.take();
         if (LOG.isDebugEnabled()) LOG.debug("Got result for future " + requestId + ".");
 
-        if (response.has(LOCAL_EXCEPTION)) {
-            String genericExceptionType = response.get(LOCAL_EXCEPTION).getAsString();
-
-            if (genericExceptionType.equalsIgnoreCase("NoHttpResponseException")) {
-                throw new ExecutionException(new NoHttpResponseException("Target NameNode (or perhaps the FaaS platform itself) failed to respond with a valid HTTP response."));
-            }
-            else if (genericExceptionType.equalsIgnoreCase("SocketTimeoutException")) {
-                throw new ExecutionException((new SocketTimeoutException("Timeout occurred during socket read or accept.")));
-            } else {
-                LOG.error("Unexpected error encountered while invoking NN via HTTP: " + genericExceptionType);
-
-                // TODO(ben): This is gross. Maybe return the real exception from the NameNode?
-                //            It's just that serializing the full exception can be expensive...
-                throw new ExecutionException(new IOException("The file system operation could not be completed. "
-                        + "Encountered unexpected " + genericExceptionType + " while invoking NN."));
-            }
-        }
+        Exception localException = getLocalException(response);
+        if (localException != null)
+            throw new ExecutionException(localException);
 
         return response;
     }
 
+    /**
+     * Return the exception encountered locally while issuing the HTTP request that produced the given response
+     * (e.g., a timeout), or null if the request completed and the response came from a NameNode.
+     */
+    public static Exception getLocalException(JsonObject response) {
+        if (!response.has(LOCAL_EXCEPTION))
+            return null;
+
+        String genericExceptionType = response.get(LOCAL_EXCEPTION).getAsString();
+
+        if (genericExceptionType.equalsIgnoreCase("NoHttpResponseException")) {
+            return new NoHttpResponseException("Target NameNode (or perhaps the FaaS platform itself) failed to respond with a valid HTTP response.");
+        }
+        else if (genericExceptionType.equalsIgnoreCase("SocketTimeoutException")) {
+            return new SocketTimeoutException("Timeout occurred during socket read or accept.");
+        } else {
+            LOG.error("Unexpected error encountered while invoking NN via HTTP: " + genericExceptionType);
+
+            // TODO(ben): This is gross. Maybe return the real exception from the NameNode?
+            //            It's just that serializing the full exception can be expensive...
+            return new IOException("The file system operation could not be completed. "
+                    + "Encountered unexpected " + genericExceptionType + " while invoking NN.");
+        }
+    }
+
     @Override
     public JsonObject get(long timeout, @Nonnull TimeUnit unit)
             throws InterruptedException, ExecutionException, TimeoutException {
@@ -73,6 +84,7 @@ public boolean cancel(boolean mayInterruptIfRunning) {
 
         try {
             resultQueue.put(cancellationMessage);
+            notifyCompletion(cancellationMessage);
         } catch (InterruptedException e) {
             LOG.error("Exception encountered while cancelling future for request " + requestId + ":", e);
 
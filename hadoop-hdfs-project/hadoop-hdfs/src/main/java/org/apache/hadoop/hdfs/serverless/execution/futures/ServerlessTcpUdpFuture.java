@@ -85,6 +85,7 @@ public long getTargetNameNodeId() {
     public void cancel(String reason, boolean shouldRetry) throws InterruptedException {
         state = State.CANCELLED;
         resultQueue.put(CancelledResult.getInstance());
+        notifyCompletion(CancelledResult.getInstance());
         if (LOG.isDebugEnabled()) LOG.debug("Cancelled future " + requestId + " for operation " +
                 operationName + ". Reason: " + reason);
     }
@@ -0,0 +1,160 @@
+package org.apache.hadoop.hdfs.serverless.execution.taskarguments;
+
+import org.apache.hadoop.hdfs.serverless.invoking.BinaryArgumentCodec;
+import org.apache.hadoop.hdfs.serverless.invoking.BinaryArgumentCodec.EncodedObject;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Task arguments delivered in the binary envelope produced by {@link BinaryArgumentCodec}.
+ *
+ * Primitives, Strings, and byte[] arguments are available immediately. Serializable objects are only deserialized
+ * the first time they are requested.
+ */
+public class BinaryTaskArguments implements TaskArguments {
+    private HashMap<String, Object> taskArguments;
+
+    public BinaryTaskArguments(byte[] encodedArguments) {
+        this.taskArguments = BinaryArgumentCodec.decode(encodedArguments);
+    }
+
+    private BinaryTaskArguments() { }
+
+    /**
+     * Return the value associated with the given key, deserializing it first if necessary.
+     */
+    private Object get(String key) {
+        Object value = taskArguments.get(key);
+
+        if (value instanceof EncodedObject) {
+            value = ((EncodedObject)value).decode();
+            taskArguments.put(key, value);
+        } else if (value instanceof EncodedObject[]) {
+            EncodedObject[] encoded = (EncodedObject[])value;
+            Object[] decoded = new Object[encoded.length];
+            for (int i = 0; i < encoded.length; i++)
+                decoded[i] = encoded[i].decode();
+            value = toTypedArray(decoded);
+            taskArguments.put(key, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Copy the given elements into an array whose component type is the most specific class shared by all the
+     * elements, so that callers can assign the result of {@link #getObjectArray(String)} to, e.g., a
+     * {@code DatanodeInfo[]}.
+     */
+    private static Object[] toTypedArray(Object[] elements) {
+        Class<?> componentType = null;
+        for (Object element : elements) {
+            if (element == null)
+                continue;
+
+            if (componentType == null)
+                componentType = element.getClass();
+
+            while (!componentType.isInstance(element))
+                componentType = componentType.getSuperclass();
+        }
+
+        if (componentType == null || componentType == Object.class)
+            return elements;
+
+        Object[] typed = (Object[])Array.newInstance(componentType, elements.length);
+        System.arraycopy(elements, 0, typed, 0, elements.length);
+        return typed;
+    }
+
+    private Object getRequired(String key) {
+        Object value = get(key);
+
+        if (value == null)
+            throw new IllegalArgumentException("Task Arguments do not contain entry for key '" + key + "'");
+
+        return value;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return taskArguments.containsKey(key);
+    }
+
+    @Override
+    public String getString(String key) {
+        return (String)get(key);
+    }
+
+    @Override
+    public <T> T getObject(String key) {
+        return (T)get(key);
+    }
+
+    @Override
+    public long getLong(String key) {
+        return ((Number)getRequired(key)).longValue();
+    }
+
+    @Override
+    public <T> List<T> getList(String key) {
+        Object value = get(key);
+
+        if (value == null)
+            return null;
+
+        if (value instanceof Object[])
+            return new ArrayList<>(Arrays.asList((T[])value));
+
+        return (List<T>)value;
+    }
+
+    @Override
+    public <T> T[] getObjectArray(String key) {
+        return (T[])getRequired(key);
+    }
+
+    @Override
+    public Integer[] getIntegerArray(String key) {
+        return (Integer[])get(key);
+    }
+
+    @Override
+    public String[] getStringArray(String key) {
+        return (String[])get(key);
+    }
+
+    @Override
+    public byte[] getByteArray(String key) {
+        return (byte[])get(key);
+    }
+
+    @Override
+    public int getInt(String key) {
+        return ((Number)getRequired(key)).intValue();
+    }
+
+    @Override
+    public short getShort(String key) {
+        return ((Number)getRequired(key)).shortValue();
+    }
+
+    @Override
+    public boolean getBoolean(String key) {
+        return (boolean)getRequired(key);
+    }
+
+    @Override
+    public List<String> getStringList(String key) {
+        String[] value = getStringArray(key);
+
+        if (value == null)
+            return null;
+
+        return new ArrayList<>(Arrays.asList(value));
+    }
+}
@@ -0,0 +1,86 @@
+package org.apache.hadoop.hdfs.serverless.execution.taskarguments;
+
+import java.util.List;
+
+import static org.apache.hadoop.hdfs.serverless.ServerlessNameNodeKeys.SRC;
+
+/**
+ * The arguments of one path of a batch operation: the arguments shared by all paths of the batch, with
+ * {@link org.apache.hadoop.hdfs.serverless.ServerlessNameNodeKeys#SRC} set to the given path. This lets the
+ * single-path implementation of an operation be reused for each path of the batch.
+ */
+public class SinglePathTaskArguments implements TaskArguments {
+    private final TaskArguments batchArguments;
+
+    private final String src;
+
+    public SinglePathTaskArguments(TaskArguments batchArguments, String src) {
+        this.batchArguments = batchArguments;
+        this.src = src;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return SRC.equals(key) || batchArguments.contains(key);
+    }
+
+    @Override
+    public String getString(String key) {
+        return SRC.equals(key) ? src : batchArguments.getString(key);
+    }
+
+    @Override
+    public <T> T getObject(String key) {
+        return batchArguments.getObject(key);
+    }
+
+    @Override
+    public long getLong(String key) {
+        return batchArguments.getLong(key);
+    }
+
+    @Override
+    public <T> List<T> getList(String key) {
+        return batchArguments.getList(key);
+    }
+
+    @Override
+    public <T> T[] getObjectArray(String key) {
+        return batchArguments.getObjectArray(key);
+    }
+
+    @Override
+    public Integer[] getIntegerArray(String key) {
+        return batchArguments.getIntegerArray(key);
+    }
+
+    @Override
+    public String[] getStringArray(String key) {
+        return batchArguments.getStringArray(key);
+    }
+
+    @Override
+    public byte[] getByteArray(String key) {
+        return batchArguments.getByteArray(key);
+    }
+
+    @Override
+    public int getInt(String key) {
+        return batchArguments.getInt(key);
+    }
+
+    @Override
+    public short getShort(String key) {
+        return batchArguments.getShort(key);
+    }
+
+    @Override
+    public boolean getBoolean(String key) {
+        return batchArguments.getBoolean(key);
+    }
+
+    @Override
+    public List<String> getStringList(String key) {
+        return batchArguments.getStringList(key);
+    }
+}
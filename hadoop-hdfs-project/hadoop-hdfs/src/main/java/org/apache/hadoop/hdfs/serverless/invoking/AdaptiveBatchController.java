@@ -0,0 +1,333 @@
+package org.apache.hadoop.hdfs.serverless.invoking;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when the HTTP requests enqueued for a deployment are flushed and how many of them go into one batch.
+ *
+ * The decisions follow Nagle's algorithm with an AIMD (additive-increase, multiplicative-decrease) controller on
+ * top. If a deployment has no batch in flight, then its requests are flushed as soon as they are enqueued, so an
+ * idle client does not pay any batching delay. Otherwise, requests linger in the queue until the batch limit is
+ * reached or the oldest request has waited for the linger time.
+ *
+ * When a batch completes, the controller looks at the invocation latency and at how deep the queue was when the
+ * batch was cut. If more requests were queued than fit into one batch, then the client is producing requests faster
+ * than they are sent, and the batch limit and linger time are increased additively so that each invocation carries
+ * more requests. Larger batches take longer to process though, so if the latency rises above its baseline, then the
+ * batches have outgrown what the deployment absorbs without queueing, and both are halved. They are halved as well
+ * once the queue is shallow. Since the latency only ever pushes the batch limit down, it cannot feed back into
+ * growing it.
+ *
+ * After a decrease, the batches that were cut with the old limit are ignored, and the moving average of the latency
+ * starts over with the first batch cut with the new limit. Otherwise the average would still reflect the larger
+ * batches, and the limit would be halved repeatedly for a single episode of congestion.
+ *
+ * Methods that depend on the time accept it as an argument so that the controller can be driven by a fake clock.
+ */
+public class AdaptiveBatchController {
+    /**
+     * Weight of a new sample in the exponentially-weighted moving average of the invocation latency.
+     */
+    private static final double LATENCY_EWMA_WEIGHT = 0.2;
+
+    /**
+     * Weight of the moving average in the latency baseline. The baseline drops to the moving average right away, but
+     * only rises towards it by this fraction of the difference per sample, so that it follows lasting latency shifts
+     * within a few dozen batches while still marking a rise as such.
+     */
+    private static final double BASELINE_EWMA_WEIGHT = 0.05;
+
+    /**
+     * The reason for which the requests of a deployment were flushed, or not.
+     */
+    public enum Decision {
+        /** No batch was in flight, so the requests were sent immediately. */
+        IDLE,
+        /** Enough requests were enqueued to fill a batch. */
+        FULL,
+        /** The oldest enqueued request waited for the linger time. */
+        LINGER,
+        /** The requests were held back to be batched with later ones. */
+        DEFERRED
+    }
+
+    private final DeploymentState[] states;
+
+    private final int maxBatchSize;
+
+    private final long maxLingerMillis;
+
+    private final double latencyTolerance;
+
+    private final AtomicLong[] decisionCounts = new AtomicLong[Decision.values().length];
+
+    private final AtomicLong numIncreases = new AtomicLong();
+
+    private final AtomicLong numDecreases = new AtomicLong();
+
+    /**
+     * @param numDeployments The number of deployments to which requests are sent.
+     * @param maxBatchSize The largest batch limit the controller may choose.
+     * @param maxLingerMillis The longest time, in milliseconds, the controller may hold back a request.
+     * @param latencyTolerance How far, as a fraction, the latency may rise above its baseline before the
+     *                         controller considers the deployment to be congested and shrinks the batches.
+     */
+    public AdaptiveBatchController(int numDeployments, int maxBatchSize, long maxLingerMillis,
+                                   double latencyTolerance) {
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("The maximum batch size must be positive. Specified value " +
+                    maxBatchSize + " is not.");
+        if (maxLingerMillis < 0)
+            throw new IllegalArgumentException("The maximum linger time must be non-negative. Specified value " +
+                    maxLingerMillis + " is not.");
+
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerMillis = maxLingerMillis;
+        this.latencyTolerance = latencyTolerance;
+
+        this.states = new DeploymentState[numDeployments];
+        for (int i = 0; i < numDeployments; i++)
+            states[i] = new DeploymentState();
+
+        for (int i = 0; i < decisionCounts.length; i++)
+            decisionCounts[i] = new AtomicLong();
+    }
+
+    /**
+     * Record that a request was enqueued for the given deployment.
+     *
+     * @return True if the deployment has no batch in flight, in which case the caller should flush right away.
+     */
+    public boolean onEnqueue(int deployment, long nowMillis) {
+        DeploymentState state = states[deployment];
+        synchronized (state) {
+            if (state.firstEnqueuedMillis < 0)
+                state.firstEnqueuedMillis = nowMillis;
+            return state.inFlight == 0;
+        }
+    }
+
+    /**
+     * Decide whether the requests currently enqueued for the given deployment should be flushed now. The decision is
+     * counted in the metrics of this controller.
+     *
+     * @param queueDepth The number of requests currently enqueued for the deployment.
+     */
+    public Decision decide(int deployment, int queueDepth, long nowMillis) {
+        DeploymentState state = states[deployment];
+        Decision decision;
+        synchronized (state) {
+            // A request may have been enqueued after the queue was drained but before the drain was recorded.
+            if (state.firstEnqueuedMillis < 0)
+                state.firstEnqueuedMillis = nowMillis;
+
+            if (state.inFlight == 0)
+                decision = Decision.IDLE;
+            else if (queueDepth >= state.batchLimit)
+                decision = Decision.FULL;
+            else if (nowMillis - state.firstEnqueuedMillis >= (long) state.lingerMillis)
+                decision = Decision.LINGER;
+            else
+                decision = Decision.DEFERRED;
+        }
+
+        decisionCounts[decision.ordinal()].incrementAndGet();
+        return decision;
+    }
+
+    /**
+     * Record that the queue of the given deployment was drained into {@code numBatches} batches.
+     *
+     * @param queueDepth The number of requests that were drained.
+     */
+    public void onFlush(int deployment, int numBatches, int queueDepth) {
+        DeploymentState state = states[deployment];
+        synchronized (state) {
+            state.inFlight += numBatches;
+            state.firstEnqueuedMillis = -1;
+            state.lastFlushDepth = queueDepth;
+        }
+    }
+
+    /**
+     * Record that a batch sent to the given deployment has completed after {@code latencyMillis} milliseconds,
+     * and adjust the batch limit and linger time of the deployment.
+     *
+     * @return True if the deployment has no other batch in flight, in which case any requests that were deferred
+     * in the meantime can be flushed right away.
+     */
+    public boolean onBatchCompleted(int deployment, double latencyMillis) {
+        DeploymentState state = states[deployment];
+        boolean increased = false;
+        boolean decreased = false;
+        synchronized (state) {
+            state.inFlight = Math.max(0, state.inFlight - 1);
+
+            // This batch was cut before the last decrease, so its latency says nothing about the current limit.
+            if (state.staleBatches > 0) {
+                state.staleBatches--;
+                return state.inFlight == 0;
+            }
+
+            if (state.latencyEwma < 0) {
+                state.latencyEwma = latencyMillis;
+                if (state.latencyBaseline < 0)
+                    state.latencyBaseline = latencyMillis;
+            } else {
+                state.latencyEwma += LATENCY_EWMA_WEIGHT * (latencyMillis - state.latencyEwma);
+            }
+
+            if (state.latencyEwma < state.latencyBaseline)
+                state.latencyBaseline = state.latencyEwma;
+            else
+                state.latencyBaseline += BASELINE_EWMA_WEIGHT * (state.latencyEwma - state.latencyBaseline);
+
+            boolean congested = state.latencyEwma > state.latencyBaseline * (1 + latencyTolerance);
+
+            if (congested || state.lastFlushDepth * 2 < state.batchLimit) {
+                if (state.batchLimit > 1 || state.lingerMillis > 0) {
+                    state.batchLimit = Math.max(1, state.batchLimit / 2);
+                    state.lingerMillis = state.lingerMillis / 2;
+                    decreased = true;
+                }
+            } else if (state.lastFlushDepth > state.batchLimit &&
+                    (state.batchLimit < maxBatchSize || state.lingerMillis < maxLingerMillis)) {
+                state.batchLimit = Math.min(maxBatchSize, state.batchLimit + 1);
+                state.lingerMillis = Math.min(maxLingerMillis, state.lingerMillis + lingerStep());
+                increased = true;
+            }
+
+            if (decreased && congested) {
+                state.staleBatches = state.inFlight;
+                state.latencyEwma = -1;
+            }
+
+            if (increased)
+                numIncreases.incrementAndGet();
+            else if (decreased)
+                numDecreases.incrementAndGet();
+
+            return state.inFlight == 0;
+        }
+    }
+
+    /**
+     * Record that a batch sent to the given deployment failed, so it no longer counts as in flight. The latency of
+     * failed batches says little about the load of the deployment, so the batch limit and linger time are kept.
+     *
+     * @return True if the deployment has no other batch in flight.
+     */
+    public boolean onBatchAbandoned(int deployment) {
+        DeploymentState state = states[deployment];
+        synchronized (state) {
+            state.inFlight = Math.max(0, state.inFlight - 1);
+            return state.inFlight == 0;
+        }
+    }
+
+    /**
+     * Forget about all batches in flight. Used when sending failed part-way and the batches cannot be accounted for.
+     */
+    public void resetInFlight() {
+        for (DeploymentState state : states) {
+            synchronized (state) {
+                state.inFlight = 0;
+            }
+        }
+    }
+
+    /**
+     * The linger time grows by this much per increase, so that it reaches its maximum about when the batch limit does.
+     */
+    private double lingerStep() {
+        return Math.max(1.0, (double) maxLingerMillis / maxBatchSize);
+    }
+
+    /**
+     * Return the number of requests after which a batch for the given deployment is cut.
+     */
+    public int getBatchLimit(int deployment) {
+        DeploymentState state = states[deployment];
+        synchronized (state) {
+            return state.batchLimit;
+        }
+    }
+
+    /**
+     * Return the time, in milliseconds, for which requests to the given deployment are held back.
+     */
+    public long getLingerMillis(int deployment) {
+        DeploymentState state = states[deployment];
+        synchronized (state) {
+            return (long) state.lingerMillis;
+        }
+    }
+
+    /**
+     * Return the moving average of the invocation latency of the given deployment in milliseconds,
+     * or -1 if no batch has completed since the controller started or since it last shrank the batches.
+     */
+    public double getLatencyEwma(int deployment) {
+        DeploymentState state = states[deployment];
+        synchronized (state) {
+            return state.latencyEwma;
+        }
+    }
+
+    public int getNumInFlight(int deployment) {
+        DeploymentState state = states[deployment];
+        synchronized (state) {
+            return state.inFlight;
+        }
+    }
+
+    /**
+     * Return the number of times the given decision has been made.
+     */
+    public long getDecisionCount(Decision decision) {
+        return decisionCounts[decision.ordinal()].get();
+    }
+
+    public long getNumIncreases() {
+        return numIncreases.get();
+    }
+
+    public long getNumDecreases() {
+        return numDecreases.get();
+    }
+
+    public int getNumDeployments() {
+        return states.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("AdaptiveBatchController(");
+        for (Decision decision : Decision.values())
+            builder.append(decision.name().toLowerCase()).append('=').append(getDecisionCount(decision)).append(", ");
+        builder.append("increases=").append(getNumIncreases())
+                .append(", decreases=").append(getNumDecreases());
+        for (int i = 0; i < states.length; i++) {
+            builder.append(", deployment").append(i).append("=[limit=").append(getBatchLimit(i))
+                    .append(", linger=").append(getLingerMillis(i))
+                    .append("ms, latency=").append(String.format("%.2f", getLatencyEwma(i)))
+                    .append("ms, inFlight=").append(getNumInFlight(i)).append(']');
+        }
+        return builder.append(')').toString();
+    }
+
+    /**
+     * Batching state of a single deployment. Guarded by its own monitor.
+     */
+    private static class DeploymentState {
+        int batchLimit = 1;
+        double lingerMillis = 0;
+        int inFlight = 0;
+        long firstEnqueuedMillis = -1;
+        int lastFlushDepth = 0;
+        /** The number of batches in flight that were cut before the last decrease. */
+        int staleBatches = 0;
+        double latencyEwma = -1;
+        double latencyBaseline = -1;
+    }
+}
@@ -205,6 +205,14 @@ public JsonObject convertToJsonObject() throws IOException {
         return arguments;
     }
 
+    /**
+     * Package the arguments into the compact binary envelope of {@link BinaryArgumentCodec}.
+     * @return The encoded arguments.
+     */
+    public byte[] convertToBinary() {
+        return BinaryArgumentCodec.encode(allArguments);
+    }
+
     /**
      * Add the given primitive to the arguments.
      * @param key The argument's name.
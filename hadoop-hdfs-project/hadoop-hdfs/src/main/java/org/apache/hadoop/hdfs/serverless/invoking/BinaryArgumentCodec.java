@@ -0,0 +1,340 @@
+package org.apache.hadoop.hdfs.serverless.invoking;
+
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of file system operation arguments, used in place of the per-argument JSON/Base64
+ * representation produced by {@link ArgumentContainer#convertToJsonObject()}.
+ *
+ * The JSON representation builds a tree of {@link com.google.gson.JsonElement} objects and serializes and
+ * Base64-encodes each non-primitive argument separately (and every element of an object array separately). The
+ * binary envelope instead writes every argument into a single byte[] as a (key, type tag, value) triple. Primitives
+ * are written as fixed-width values, Strings as length-prefixed UTF-8, and byte[] arguments as raw slices. Only
+ * arbitrary {@link Serializable} objects still go through FST (see {@link InvokerUtilities#serializableToBytes}).
+ *
+ * Layout: {@code [version:1][numArguments:4] (keyLength:2 key:UTF-8 tag:1 value)*}. Null elements of String[]
+ * arguments are written with a length of -1, and every element of an Integer[] argument is preceded by a byte that
+ * tells whether it is null.
+ *
+ * Decoding checks every length and element count against the number of bytes left before reading, so a truncated or
+ * corrupt envelope is rejected with an {@link IllegalArgumentException}.
+ *
+ * Encoding reuses a per-thread buffer, and decoding reads directly from the given byte[]. Serializable objects are
+ * only deserialized when the NameNode actually asks for them (see
+ * {@link org.apache.hadoop.hdfs.serverless.execution.taskarguments.BinaryTaskArguments}).
+ */
+public class BinaryArgumentCodec {
+    public static final byte VERSION = 2;
+
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_SHORT = 4;
+    private static final byte TAG_BYTE = 5;
+    private static final byte TAG_BOOLEAN = 6;
+    private static final byte TAG_DOUBLE = 7;
+    private static final byte TAG_FLOAT = 8;
+    private static final byte TAG_CHAR = 9;
+    private static final byte TAG_BYTES = 10;
+    private static final byte TAG_STRING_ARRAY = 11;
+    private static final byte TAG_INTEGER_ARRAY = 12;
+    private static final byte TAG_OBJECT = 13;
+    private static final byte TAG_OBJECT_ARRAY = 14;
+
+    /**
+     * The length written in place of a null element of a String[] argument.
+     */
+    private static final int NULL_LENGTH = -1;
+
+    /**
+     * The smallest number of bytes an argument occupies: an empty key, a tag, and a one-byte value.
+     */
+    private static final int MIN_ARGUMENT_SIZE = 4;
+
+    private static final int INITIAL_BUFFER_SIZE = 512;
+
+    /**
+     * Buffers larger than this are not retained by the per-thread pool once encoding completes.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1 << 20;
+
+    private static final ThreadLocal<ByteBuffer> buffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+
+    /**
+     * A {@link Serializable} argument that has not been deserialized yet.
+     */
+    public static final class EncodedObject {
+        private final byte[] source;
+        private final int offset;
+        private final int length;
+
+        EncodedObject(byte[] source, int offset, int length) {
+            this.source = source;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public Object decode() {
+            byte[] bytes = (offset == 0 && length == source.length) ? source :
+                    Arrays.copyOfRange(source, offset, offset + length);
+            return InvokerUtilities.bytesToObject(bytes);
+        }
+    }
+
+    /**
+     * Encode the given arguments.
+     *
+     * @throws IllegalArgumentException If one of the arguments is of an unsupported type.
+     */
+    public static byte[] encode(Map<String, Object> arguments) {
+        ByteBuffer buf = buffers.get();
+        buf.clear();
+
+        buf = ensureCapacity(buf, 5);
+        buf.put(VERSION);
+        buf.putInt(arguments.size());
+
+        for (Map.Entry<String, Object> entry : arguments.entrySet())
+            buf = encodeArgument(buf, entry.getKey(), entry.getValue());
+
+        byte[] encoded = Arrays.copyOf(buf.array(), buf.position());
+
+        if (buf.capacity() > MAX_RETAINED_BUFFER_SIZE)
+            buffers.remove();
+        else
+            buffers.set(buf);
+
+        return encoded;
+    }
+
+    /**
+     * Decode arguments produced by {@link #encode(Map)}. Serializable objects are returned as
+     * {@link EncodedObject} instances, which the caller may decode on demand.
+     *
+     * @throws IllegalArgumentException If the given bytes are not a valid argument envelope.
+     */
+    public static HashMap<String, Object> decode(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+
+        try {
+            byte version = buf.get();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Unsupported argument envelope version: " + version);
+
+            int numArguments = readCount(buf, MIN_ARGUMENT_SIZE);
+            HashMap<String, Object> arguments = new HashMap<>((int)(numArguments / 0.75f) + 1);
+
+            for (int i = 0; i < numArguments; i++) {
+                String key = readString(buf, checkLength(buf, buf.getShort() & 0xFFFF, 1));
+                arguments.put(key, decodeValue(buf, bytes));
+            }
+
+            return arguments;
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Truncated argument envelope (" + bytes.length + " bytes).", ex);
+        }
+    }
+
+    private static ByteBuffer encodeArgument(ByteBuffer buf, String key, Object value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        buf = ensureCapacity(buf, 3 + keyBytes.length);
+        buf.putShort((short)keyBytes.length);
+        buf.put(keyBytes);
+
+        if (value instanceof String) {
+            buf = ensureCapacity(buf, 1);
+            buf.put(TAG_STRING);
+            buf = writeString(buf, (String)value);
+        } else if (value instanceof Integer) {
+            buf = ensureCapacity(buf, 5);
+            buf.put(TAG_INT).putInt((Integer)value);
+        } else if (value instanceof Long) {
+            buf = ensureCapacity(buf, 9);
+            buf.put(TAG_LONG).putLong((Long)value);
+        } else if (value instanceof Short) {
+            buf = ensureCapacity(buf, 3);
+            buf.put(TAG_SHORT).putShort((Short)value);
+        } else if (value instanceof Byte) {
+            buf = ensureCapacity(buf, 2);
+            buf.put(TAG_BYTE).put((Byte)value);
+        } else if (value instanceof Boolean) {
+            buf = ensureCapacity(buf, 2);
+            buf.put(TAG_BOOLEAN).put((byte)((Boolean)value ? 1 : 0));
+        } else if (value instanceof Double) {
+            buf = ensureCapacity(buf, 9);
+            buf.put(TAG_DOUBLE).putDouble((Double)value);
+        } else if (value instanceof Float) {
+            buf = ensureCapacity(buf, 5);
+            buf.put(TAG_FLOAT).putFloat((Float)value);
+        } else if (value instanceof Character) {
+            buf = ensureCapacity(buf, 3);
+            buf.put(TAG_CHAR).putChar((Character)value);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[])value;
+            buf = ensureCapacity(buf, 5 + bytes.length);
+            buf.put(TAG_BYTES).putInt(bytes.length).put(bytes);
+        } else if (value instanceof String[]) {
+            String[] strings = (String[])value;
+            buf = ensureCapacity(buf, 5);
+            buf.put(TAG_STRING_ARRAY).putInt(strings.length);
+            for (String s : strings) {
+                if (s == null)
+                    buf = ensureCapacity(buf, 4).putInt(NULL_LENGTH);
+                else
+                    buf = writeString(buf, s);
+            }
+        } else if (value instanceof Integer[]) {
+            Integer[] ints = (Integer[])value;
+            buf = ensureCapacity(buf, 5 + 5 * ints.length);
+            buf.put(TAG_INTEGER_ARRAY).putInt(ints.length);
+            for (Integer i : ints) {
+                if (i == null)
+                    buf.put((byte)0);
+                else
+                    buf.put((byte)1).putInt(i);
+            }
+        } else if (value instanceof Object[]) {
+            Object[] objects = (Object[])value;
+            buf = ensureCapacity(buf, 5);
+            buf.put(TAG_OBJECT_ARRAY).putInt(objects.length);
+            for (Object o : objects)
+                buf = writeObject(buf, key, o);
+        } else if (value instanceof Serializable) {
+            buf = ensureCapacity(buf, 1);
+            buf.put(TAG_OBJECT);
+            buf = writeObject(buf, key, value);
+        } else {
+            throw new IllegalArgumentException("Value associated with key \"" + key + "\" is not of a valid type: " +
+                    (value == null ? "null" : value.getClass().getSimpleName()));
+        }
+
+        return buf;
+    }
+
+    private static Object decodeValue(ByteBuffer buf, byte[] source) {
+        byte tag = buf.get();
+
+        switch (tag) {
+            case TAG_STRING:
+                return readString(buf, checkLength(buf, buf.getInt(), 1));
+            case TAG_INT:
+                return buf.getInt();
+            case TAG_LONG:
+                return buf.getLong();
+            case TAG_SHORT:
+                return buf.getShort();
+            case TAG_BYTE:
+                return buf.get();
+            case TAG_BOOLEAN:
+                return buf.get() != 0;
+            case TAG_DOUBLE:
+                return buf.getDouble();
+            case TAG_FLOAT:
+                return buf.getFloat();
+            case TAG_CHAR:
+                return buf.getChar();
+            case TAG_BYTES: {
+                byte[] bytes = new byte[readCount(buf, 1)];
+                buf.get(bytes);
+                return bytes;
+            }
+            case TAG_STRING_ARRAY: {
+                String[] strings = new String[readCount(buf, 4)];
+                for (int i = 0; i < strings.length; i++) {
+                    int length = buf.getInt();
+                    strings[i] = length == NULL_LENGTH ? null : readString(buf, checkLength(buf, length, 1));
+                }
+                return strings;
+            }
+            case TAG_INTEGER_ARRAY: {
+                Integer[] ints = new Integer[readCount(buf, 1)];
+                for (int i = 0; i < ints.length; i++)
+                    ints[i] = buf.get() == 0 ? null : buf.getInt();
+                return ints;
+            }
+            case TAG_OBJECT:
+                return readObject(buf, source);
+            case TAG_OBJECT_ARRAY: {
+                EncodedObject[] objects = new EncodedObject[readCount(buf, 4)];
+                for (int i = 0; i < objects.length; i++)
+                    objects[i] = readObject(buf, source);
+                return objects;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown type tag in argument envelope: " + tag);
+        }
+    }
+
+    private static ByteBuffer writeString(ByteBuffer buf, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buf = ensureCapacity(buf, 4 + bytes.length);
+        buf.putInt(bytes.length).put(bytes);
+        return buf;
+    }
+
+    private static String readString(ByteBuffer buf, int length) {
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+        buf.position(buf.position() + length);
+        return s;
+    }
+
+    private static ByteBuffer writeObject(ByteBuffer buf, String key, Object value) {
+        if (!(value instanceof Serializable))
+            throw new IllegalArgumentException("Element of argument \"" + key + "\" is not Serializable: " +
+                    (value == null ? "null" : value.getClass().getSimpleName()));
+
+        byte[] bytes = InvokerUtilities.serializableToBytes((Serializable)value);
+        buf = ensureCapacity(buf, 4 + bytes.length);
+        buf.putInt(bytes.length).put(bytes);
+        return buf;
+    }
+
+    private static EncodedObject readObject(ByteBuffer buf, byte[] source) {
+        int length = checkLength(buf, buf.getInt(), 1);
+        EncodedObject object = new EncodedObject(source, buf.position(), length);
+        buf.position(buf.position() + length);
+        return object;
+    }
+
+    /**
+     * Read a length or element count, and check that that many elements of at least {@code elementSize} bytes each
+     * can still be read.
+     */
+    private static int readCount(ByteBuffer buf, int elementSize) {
+        return checkLength(buf, buf.getInt(), elementSize);
+    }
+
+    /**
+     * Return the given length or element count if that many elements of at least {@code elementSize} bytes each can
+     * still be read.
+     *
+     * @throws IllegalArgumentException If the count is negative or exceeds the remaining bytes.
+     */
+    private static int checkLength(ByteBuffer buf, int count, int elementSize) {
+        if (count < 0 || (long)count * elementSize > buf.remaining())
+            throw new IllegalArgumentException("Invalid length " + count + " in argument envelope at offset " +
+                    buf.position() + ": only " + buf.remaining() + " bytes remain.");
+        return count;
+    }
+
+    /**
+     * Return a buffer with room for at least {@code needed} more bytes, containing everything written so far.
+     */
+    private static ByteBuffer ensureCapacity(ByteBuffer buf, int needed) {
+        if (buf.remaining() >= needed)
+            return buf;
+
+        int newCapacity = Math.max(buf.capacity() * 2, buf.position() + needed);
+        ByteBuffer larger = ByteBuffer.allocate(newCapacity);
+        buf.flip();
+        larger.put(buf);
+        return larger;
+    }
+}
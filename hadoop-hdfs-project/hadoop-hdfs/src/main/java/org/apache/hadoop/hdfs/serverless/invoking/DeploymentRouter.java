@@ -0,0 +1,163 @@
+package org.apache.hadoop.hdfs.serverless.invoking;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.hash.Hashing.consistentHash;
+
+/**
+ * Maps files and directories to the deployment responsible for them by consistent hashing of their parent directory.
+ *
+ * Two placements are supported:
+ *
+ *  - {@link #FAST}: the parent directory is hashed with a 64-bit FNV-1a hash directly over the characters of the
+ *    original path. The parent path is never materialized, so routing allocates nothing.
+ *  - {@link #MD5}: the original placement, which MD5-hashes the parent path extracted by
+ *    {@link ServerlessUtilities#extractParentPath(String)}. Deployments that cannot re-partition their metadata
+ *    caches at once can keep using it while they migrate.
+ *
+ * In both cases, recent results are memoized in a small direct-mapped table, keyed by the fast hash of the parent
+ * path and the number of deployments. This makes the MD5 placement nearly as cheap as the fast one for workloads that
+ * keep operating on the same directories.
+ *
+ * Clients and NameNodes must use the same placement, as NameNodes only cache the metadata mapped to their deployment.
+ */
+public class DeploymentRouter {
+    public static final String FAST = "fast";
+    public static final String MD5 = "md5";
+
+    /**
+     * Number of entries of the memoization table. Must be a power of two.
+     */
+    static final int MEMO_SIZE = 1024;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final boolean md5;
+
+    private final AtomicReferenceArray<MemoEntry> memo = new AtomicReferenceArray<>(MEMO_SIZE);
+
+    /**
+     * @param placement Either {@link #FAST} or {@link #MD5}.
+     */
+    public DeploymentRouter(String placement) {
+        switch (placement) {
+            case FAST:
+                this.md5 = false;
+                break;
+            case MD5:
+                this.md5 = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown deployment placement '" + placement +
+                        "'. Valid placements are '" + FAST + "' and '" + MD5 + "'.");
+        }
+    }
+
+    /**
+     * Create a router using the placement specified by {@link DFSConfigKeys#SERVERLESS_DEPLOYMENT_PLACEMENT}.
+     */
+    public DeploymentRouter(Configuration conf) {
+        this(conf.get(DFSConfigKeys.SERVERLESS_DEPLOYMENT_PLACEMENT,
+                DFSConfigKeys.SERVERLESS_DEPLOYMENT_PLACEMENT_DEFAULT).toLowerCase());
+    }
+
+    public String getPlacement() {
+        return md5 ? MD5 : FAST;
+    }
+
+    /**
+     * Return the deployment to which the given operation on the given file or directory should be sent.
+     *
+     * @param fileOrDirectory The file or directory in question.
+     * @param opName The name of the FS operation to be performed.
+     * @param numDeployments The number of unique deployments, including read-only and mixed (read-write).
+     * @param numReadWriteDeployments The number of mixed (read-write) deployments.
+     */
+    public int getDeployment(String fileOrDirectory, String opName, int numDeployments, int numReadWriteDeployments) {
+        if (ServerlessUtilities.isWriteOperation(opName) && numDeployments != numReadWriteDeployments) {
+            // Write-only deployments are numbered after the mixed (read-write) deployments.
+            return numReadWriteDeployments + getDeployment(fileOrDirectory, numDeployments - numReadWriteDeployments);
+        }
+
+        return getDeployment(fileOrDirectory, numReadWriteDeployments);
+    }
+
+    /**
+     * Return the bucket in the range [0, numBuckets) to which the parent directory of the given file or directory
+     * is consistently hashed.
+     */
+    public int getDeployment(String fileOrDirectory, int numBuckets) {
+        long parentHash = hashParentPath(fileOrDirectory);
+
+        int index = (int) (parentHash ^ (parentHash >>> 32)) & (MEMO_SIZE - 1);
+        MemoEntry entry = memo.get(index);
+        if (entry != null && entry.parentHash == parentHash && entry.numBuckets == numBuckets)
+            return entry.bucket;
+
+        int bucket;
+        if (md5)
+            bucket = ServerlessUtilities.getDeploymentForPath(fileOrDirectory, null, numBuckets, numBuckets);
+        else
+            bucket = consistentHash(parentHash, numBuckets);
+
+        memo.set(index, new MemoEntry(parentHash, numBuckets, bucket));
+        return bucket;
+    }
+
+    /**
+     * Hash the parent directory of the given path without extracting it.
+     *
+     * The parent directory is determined as by {@link ServerlessUtilities#extractParentPath(String)}: trailing
+     * slashes are ignored, repeated slashes count as one, the parent of a top-level entry is the root, and a path
+     * without any slash is its own parent.
+     */
+    static long hashParentPath(String path) {
+        // Find the end of the path, ignoring trailing slashes.
+        int end = path.length();
+        while (end > 1 && path.charAt(end - 1) == '/')
+            end--;
+
+        // The parent ends at the last slash before that.
+        int lastSlash = path.lastIndexOf('/', end - 1);
+        if (lastSlash > 0) {
+            end = lastSlash;
+            while (end > 1 && path.charAt(end - 1) == '/')
+                end--;
+        } else if (lastSlash == 0) {
+            end = 1;
+        }
+
+        long hash = FNV_OFFSET_BASIS;
+        char previous = 0;
+        for (int i = 0; i < end; i++) {
+            char c = path.charAt(i);
+            if (c == '/' && previous == '/')
+                continue;
+
+            hash ^= c;
+            hash *= FNV_PRIME;
+            previous = c;
+        }
+
+        return hash;
+    }
+
+    /**
+     * A memoized routing decision. Immutable, so that entries can be shared between threads without locking.
+     */
+    private static class MemoEntry {
+        final long parentHash;
+        final int numBuckets;
+        final int bucket;
+
+        MemoEntry(long parentHash, int numBuckets, int bucket) {
+            this.parentHash = parentHash;
+            this.numBuckets = numBuckets;
+            this.bucket = bucket;
+        }
+    }
+}
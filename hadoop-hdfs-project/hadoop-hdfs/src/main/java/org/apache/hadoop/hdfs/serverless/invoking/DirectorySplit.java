@@ -0,0 +1,166 @@
+package org.apache.hadoop.hdfs.serverless.invoking;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import static com.google.common.hash.Hashing.consistentHash;
+
+/**
+ * Spreads the children of a hot directory over several deployments.
+ *
+ * Normally, every file and directory is mapped to a deployment by consistent hashing of its parent directory (see
+ * {@link DeploymentRouter}), so all the children of a directory end up on the same deployment. Once a directory is
+ * split, its children are instead mapped by consistent hashing of their own name over a fixed set of deployments:
+ * {@link #getReadWriteDeployments()} for reads and, if there are write-only deployments,
+ * {@link #getWriteDeployments()} for writes. The first deployment of each set is the one the directory was mapped
+ * to before the split.
+ *
+ * Splits are published through ZooKeeper. They become active (i.e., are used for routing and for deciding what
+ * to cache) {@link #getActiveAfter() some time} after they are published, so that every NameNode knows about a
+ * split before its deployments start caching the children of the directory. The consistency protocol takes splits
+ * into account as soon as they are known.
+ *
+ * Instances are immutable.
+ */
+public class DirectorySplit implements Serializable {
+    private static final long serialVersionUID = 4311284517339160870L;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String parentPath;
+
+    private final long parentINodeId;
+
+    private final int[] readWriteDeployments;
+
+    private final int[] writeDeployments;
+
+    private final long activeAfter;
+
+    /**
+     * @param parentPath The path of the split directory, as returned by
+     *                   {@link ServerlessUtilities#extractParentPath(String)} for its children.
+     * @param parentINodeId The INode ID of the split directory.
+     * @param readWriteDeployments The mixed (read-write) deployments over which the children are spread.
+     * @param writeDeployments The write-only deployments over which writes to the children are spread. Empty if
+     *                         there are no write-only deployments.
+     * @param activeAfter Time, in milliseconds since the epoch, from which the split is used for routing.
+     */
+    public DirectorySplit(String parentPath, long parentINodeId, int[] readWriteDeployments, int[] writeDeployments,
+                          long activeAfter) {
+        if (readWriteDeployments.length == 0)
+            throw new IllegalArgumentException("A directory must be split over at least one read-write deployment.");
+
+        this.parentPath = parentPath;
+        this.parentINodeId = parentINodeId;
+        this.readWriteDeployments = readWriteDeployments.clone();
+        this.writeDeployments = writeDeployments.clone();
+        this.activeAfter = activeAfter;
+    }
+
+    /**
+     * Create a split of the given directory over {@code fanOut} consecutive deployments, starting with the ones to
+     * which the directory is currently mapped.
+     *
+     * @param router Used to find the deployments to which the directory is currently mapped.
+     * @param numDeployments The number of unique deployments, including read-only and mixed (read-write).
+     * @param numReadWriteDeployments The number of mixed (read-write) deployments.
+     */
+    public static DirectorySplit create(String parentPath, long parentINodeId, int fanOut, DeploymentRouter router,
+                                        int numDeployments, int numReadWriteDeployments, long activeAfter) {
+        // Any child of the directory is mapped like the directory's children were before the split.
+        String child = parentPath.endsWith("/") ? parentPath + "child" : parentPath + "/child";
+
+        int numWriteDeployments = numDeployments - numReadWriteDeployments;
+        int[] readWriteDeployments = consecutive(router.getDeployment(child, numReadWriteDeployments), 0,
+                Math.min(fanOut, numReadWriteDeployments), numReadWriteDeployments);
+        int[] writeDeployments = numWriteDeployments == 0 ? new int[0] :
+                consecutive(router.getDeployment(child, numWriteDeployments), numReadWriteDeployments,
+                        Math.min(fanOut, numWriteDeployments), numWriteDeployments);
+
+        return new DirectorySplit(parentPath, parentINodeId, readWriteDeployments, writeDeployments, activeAfter);
+    }
+
+    private static int[] consecutive(int first, int offset, int count, int range) {
+        int[] deployments = new int[count];
+        for (int i = 0; i < count; i++)
+            deployments[i] = offset + (first + i) % range;
+        return deployments;
+    }
+
+    /**
+     * Return the deployment to which an operation on the given child of the split directory should be sent.
+     *
+     * @param writeOp True if the operation may be sent to a write-only deployment.
+     */
+    public int getDeployment(String childPath, boolean writeOp) {
+        int[] deployments = writeOp && writeDeployments.length > 0 ? writeDeployments : readWriteDeployments;
+        if (deployments.length == 1)
+            return deployments[0];
+
+        return deployments[consistentHash(hashName(childPath), deployments.length)];
+    }
+
+    /**
+     * Hash the last component of the given path, ignoring trailing slashes.
+     */
+    static long hashName(String path) {
+        int end = path.length();
+        while (end > 1 && path.charAt(end - 1) == '/')
+            end--;
+
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = path.lastIndexOf('/', end - 1) + 1; i < end; i++) {
+            hash ^= path.charAt(i);
+            hash *= FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Return true if the given deployment may cache the children of the split directory.
+     */
+    public boolean isCachedBy(int deployment) {
+        for (int readWriteDeployment : readWriteDeployments) {
+            if (readWriteDeployment == deployment)
+                return true;
+        }
+        return false;
+    }
+
+    public boolean isActive(long nowMillis) {
+        return nowMillis >= activeAfter;
+    }
+
+    public String getParentPath() {
+        return parentPath;
+    }
+
+    public long getParentINodeId() {
+        return parentINodeId;
+    }
+
+    /**
+     * Return the mixed (read-write) deployments that may cache the children of the split directory.
+     */
+    public int[] getReadWriteDeployments() {
+        return readWriteDeployments.clone();
+    }
+
+    public int[] getWriteDeployments() {
+        return writeDeployments.clone();
+    }
+
+    public long getActiveAfter() {
+        return activeAfter;
+    }
+
+    @Override
+    public String toString() {
+        return "DirectorySplit(path=" + parentPath + ", id=" + parentINodeId + ", readWriteDeployments=" +
+                Arrays.toString(readWriteDeployments) + ", writeDeployments=" + Arrays.toString(writeDeployments) +
+                ", activeAfter=" + activeAfter + ")";
+    }
+}
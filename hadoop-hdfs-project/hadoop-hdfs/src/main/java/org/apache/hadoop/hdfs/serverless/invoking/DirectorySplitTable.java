@@ -0,0 +1,118 @@
+package org.apache.hadoop.hdfs.serverless.invoking;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hdfs.serverless.zookeeper.SyncZKClient;
+import org.apache.hadoop.hdfs.serverless.zookeeper.ZKClient;
+import org.apache.zookeeper.Watcher;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link DirectorySplit}s known to a client or NameNode, indexed by the hash of the split directory's path
+ * (for routing) and by its INode ID (for the consistency protocol).
+ *
+ * Lookups are lock-free and, as long as no directory has been split, amount to a single volatile read.
+ */
+public class DirectorySplitTable {
+    private static final Log LOG = LogFactory.getLog(DirectorySplitTable.class);
+
+    private final ConcurrentHashMap<Long, DirectorySplit> byParentPathHash = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Long, DirectorySplit> byParentINodeId = new ConcurrentHashMap<>();
+
+    private volatile boolean empty = true;
+
+    /**
+     * Add or replace the given split.
+     */
+    public void put(DirectorySplit split) {
+        // Hash the path of a child, as routing only ever hashes the parent of the target path.
+        String parentPath = split.getParentPath();
+        String child = parentPath.endsWith("/") ? parentPath + "child" : parentPath + "/child";
+
+        byParentPathHash.put(DeploymentRouter.hashParentPath(child), split);
+        byParentINodeId.put(split.getParentINodeId(), split);
+        empty = false;
+    }
+
+    /**
+     * Replace the contents of this table with the given splits.
+     */
+    public synchronized void replaceAll(Collection<DirectorySplit> splits) {
+        for (DirectorySplit split : splits)
+            put(split);
+
+        byParentINodeId.values().retainAll(splits);
+        byParentPathHash.values().retainAll(splits);
+        empty = byParentINodeId.isEmpty();
+    }
+
+    /**
+     * Return the split of the parent directory of the given file or directory, if the split is active,
+     * otherwise null.
+     */
+    public DirectorySplit getActiveSplitOfParent(String fileOrDirectory, long nowMillis) {
+        if (empty)
+            return null;
+
+        DirectorySplit split = byParentPathHash.get(DeploymentRouter.hashParentPath(fileOrDirectory));
+        return split != null && split.isActive(nowMillis) ? split : null;
+    }
+
+    /**
+     * Return the split of the directory with the given INode ID, whether or not it is active, or null if the
+     * directory is not split.
+     */
+    public DirectorySplit getSplit(long parentINodeId) {
+        if (empty)
+            return null;
+
+        return byParentINodeId.get(parentINodeId);
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    public int size() {
+        return byParentINodeId.size();
+    }
+
+    /**
+     * Load all the splits published in ZooKeeper, and keep this table up to date as new splits are published.
+     */
+    public void watch(ZKClient zkClient) {
+        zkClient.addDirectorySplitListener(watchedEvent -> {
+            Watcher.Event.EventType type = watchedEvent.getType();
+            if (type != Watcher.Event.EventType.NodeCreated && type != Watcher.Event.EventType.NodeDataChanged &&
+                    type != Watcher.Event.EventType.NodeDeleted)
+                return;
+
+            String path = watchedEvent.getPath();
+            if (path == null || !path.startsWith(SyncZKClient.DIRECTORY_SPLIT_DIR + "/"))
+                return;
+
+            refresh(zkClient);
+        });
+
+        refresh(zkClient);
+    }
+
+    /**
+     * Reload all the splits published in ZooKeeper.
+     */
+    public void refresh(ZKClient zkClient) {
+        try {
+            List<DirectorySplit> splits = zkClient.getDirectorySplits();
+            replaceAll(splits);
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Loaded " + splits.size() + " directory split(s) from ZooKeeper: " + splits);
+        } catch (Exception ex) {
+            LOG.error("Failed to load directory splits from ZooKeeper:", ex);
+        }
+    }
+}
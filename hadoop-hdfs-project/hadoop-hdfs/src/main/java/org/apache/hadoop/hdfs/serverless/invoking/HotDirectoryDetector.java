@@ -0,0 +1,163 @@
+package org.apache.hadoop.hdfs.serverless.invoking;
+
+import io.hops.metrics.OperationPerformed;
+import org.apache.hadoop.hdfs.server.namenode.ServerlessNameNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the directories whose children receive the most write operations, using the Space-Saving algorithm over
+ * fixed time windows.
+ *
+ * At most {@code capacity} directories are tracked at once. When a write targets an untracked directory and all the
+ * counters are taken, the directory with the lowest count is evicted and the new directory inherits its count (as
+ * an overestimate). Any directory that receives more than {@code 1 / capacity} of the writes of a window is
+ * guaranteed to be tracked. At the end of each window, the directories whose guaranteed count corresponds to at
+ * least the threshold rate are reported as hot, and the counters are reset.
+ *
+ * The detector is fed by NameNodes with the operations they execute, and by clients with the
+ * {@link OperationPerformed} records of their operations. All methods are thread-safe.
+ */
+public class HotDirectoryDetector {
+    /**
+     * The default number of directories tracked at once.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final int capacity;
+
+    private final long windowMillis;
+
+    /**
+     * The number of writes a directory must receive within one window to be hot.
+     */
+    private final long thresholdCount;
+
+    private final Map<String, Counter> counters;
+
+    private long windowStart = -1;
+
+    /**
+     * Directories found to be hot at the end of the most recent window that have not been polled yet.
+     */
+    private List<String> hotDirectories = Collections.emptyList();
+
+    /**
+     * @param capacity The number of directories tracked at once.
+     * @param windowMillis The length of a window in milliseconds.
+     * @param thresholdOpsPerSecond The write rate above which a directory is hot.
+     */
+    public HotDirectoryDetector(int capacity, long windowMillis, double thresholdOpsPerSecond) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("The capacity must be positive. Specified value " + capacity +
+                    " is not.");
+        if (windowMillis < 1)
+            throw new IllegalArgumentException("The window length must be positive. Specified value " +
+                    windowMillis + " is not.");
+
+        this.capacity = capacity;
+        this.windowMillis = windowMillis;
+        this.thresholdCount = Math.max(1, (long) Math.ceil(thresholdOpsPerSecond * windowMillis / 1000.0));
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Record a write to a child of the given directory.
+     */
+    public synchronized void record(String parentPath, long nowMillis) {
+        rollWindow(nowMillis);
+
+        Counter counter = counters.get(parentPath);
+        if (counter != null) {
+            counter.count++;
+            return;
+        }
+
+        if (counters.size() < capacity) {
+            counters.put(parentPath, new Counter(1, 0));
+            return;
+        }
+
+        // Evict the directory with the lowest count. The new directory may have received up to that many writes
+        // while it was not tracked.
+        String minPath = null;
+        long minCount = Long.MAX_VALUE;
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            if (entry.getValue().count < minCount) {
+                minPath = entry.getKey();
+                minCount = entry.getValue().count;
+            }
+        }
+        counters.remove(minPath);
+        counters.put(parentPath, new Counter(minCount + 1, minCount));
+    }
+
+    /**
+     * Record the given operation if it is a write operation that targets a path.
+     */
+    public void record(OperationPerformed operationPerformed) {
+        String targetPath = operationPerformed.getTargetPath();
+        if (targetPath == null || !ServerlessNameNode.isWriteOperation(operationPerformed.getOperationName()))
+            return;
+
+        record(ServerlessUtilities.extractParentPath(targetPath), operationPerformed.getInvokedAtTime());
+    }
+
+    /**
+     * Return the directories found to be hot at the end of the most recent window, unless they were already returned
+     * by an earlier call. Returns an empty list if there are none.
+     */
+    public synchronized List<String> pollHotDirectories(long nowMillis) {
+        rollWindow(nowMillis);
+
+        List<String> result = hotDirectories;
+        hotDirectories = Collections.emptyList();
+        return result;
+    }
+
+    /**
+     * If the current window has ended, then determine its hot directories and start a new window.
+     */
+    private void rollWindow(long nowMillis) {
+        if (windowStart < 0) {
+            windowStart = nowMillis;
+            return;
+        }
+
+        if (nowMillis - windowStart < windowMillis)
+            return;
+
+        List<String> hot = new ArrayList<>();
+        for (Iterator<Map.Entry<String, Counter>> it = counters.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Counter> entry = it.next();
+            Counter counter = entry.getValue();
+            if (counter.count - counter.error >= thresholdCount)
+                hot.add(entry.getKey());
+            it.remove();
+        }
+
+        if (!hot.isEmpty())
+            hotDirectories = hot;
+
+        // Windows that passed without any writes are skipped.
+        windowStart = nowMillis - (nowMillis - windowStart) % windowMillis;
+    }
+
+    /**
+     * The number of writes counted for a directory, of which up to {@code error} may have gone to other directories.
+     */
+    private static class Counter {
+        long count;
+        final long error;
+
+        Counter(long count, long error) {
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.apache.hadoop.hdfs.serverless.invoking;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-memory histogram of request latencies, in the spirit of HdrHistogram.
+ *
+ * Latencies are recorded in microseconds into log-linear buckets. Values below {@code 2 * SUB_BUCKET_COUNT} get a
+ * bucket each. Above that, every power of two is split into {@code SUB_BUCKET_COUNT} equally wide buckets, so
+ * every value is tracked to within about 3% of itself. Values above {@link #MAX_TRACKABLE_MICROS} (roughly 19 hours)
+ * are clamped into the last bucket. The histogram occupies the same amount of memory regardless of how many values
+ * are recorded.
+ *
+ * Recording is lock-free and can be done by any number of threads at once. Queries read the buckets without
+ * stopping writers, so a query that runs concurrently with recording may or may not include the values recorded
+ * in the meantime. {@link #reset()} is not atomic with respect to concurrent recording either.
+ */
+public class LatencyHistogram implements Serializable {
+    private static final long serialVersionUID = -1496023957348910293L;
+
+    /**
+     * Each power of two is split into 2^SUB_BUCKET_BITS buckets.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Values below this get a bucket of their own.
+     */
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1;
+
+    /**
+     * Exponent of the smallest value that is not tracked exactly.
+     */
+    private static final int FIRST_EXPONENT = SUB_BUCKET_BITS + 1;
+
+    /**
+     * Exponent of the largest power of two that is tracked.
+     */
+    private static final int LAST_EXPONENT = 35;
+
+    /**
+     * The largest latency, in microseconds, that is tracked. Larger values are recorded as this one.
+     */
+    public static final long MAX_TRACKABLE_MICROS = (1L << (LAST_EXPONENT + 1)) - 1;
+
+    static final int NUM_BUCKETS = LINEAR_LIMIT + (LAST_EXPONENT - FIRST_EXPONENT + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+
+    private final LongAdder totalCount = new LongAdder();
+
+    private final LongAdder totalMicros = new LongAdder();
+
+    private final AtomicLong minMicros = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicLong maxMicros = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Return the index of the bucket containing the given non-negative value.
+     */
+    static int bucketIndex(long micros) {
+        if (micros < LINEAR_LIMIT)
+            return (int) micros;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (micros >>> shift) - SUB_BUCKET_COUNT;
+        return LINEAR_LIMIT + (exponent - FIRST_EXPONENT) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Return the smallest value that falls into the bucket with the given index.
+     */
+    static long bucketLowerBound(int index) {
+        if (index < LINEAR_LIMIT)
+            return index;
+
+        int offset = index - LINEAR_LIMIT;
+        int shift = offset / SUB_BUCKET_COUNT + FIRST_EXPONENT - SUB_BUCKET_BITS;
+        return (long) (SUB_BUCKET_COUNT + offset % SUB_BUCKET_COUNT) << shift;
+    }
+
+    /**
+     * Return the value by which the bucket with the given index is represented in queries, which is its midpoint.
+     */
+    static long bucketMidpoint(int index) {
+        if (index < LINEAR_LIMIT)
+            return index;
+
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + FIRST_EXPONENT - SUB_BUCKET_BITS;
+        return bucketLowerBound(index) + ((1L << shift) >>> 1);
+    }
+
+    /**
+     * Record a latency in milliseconds. Negative values are ignored.
+     */
+    public void recordMillis(double latencyMillis) {
+        if (latencyMillis < 0 || Double.isNaN(latencyMillis))
+            return;
+
+        recordMicros(Math.round(latencyMillis * 1000.0));
+    }
+
+    /**
+     * Record a latency in microseconds. Negative values are ignored.
+     */
+    public void recordMicros(long latencyMicros) {
+        if (latencyMicros < 0)
+            return;
+
+        long clamped = Math.min(latencyMicros, MAX_TRACKABLE_MICROS);
+        counts.incrementAndGet(bucketIndex(clamped));
+        totalCount.increment();
+        totalMicros.add(clamped);
+        updateMin(clamped);
+        updateMax(clamped);
+    }
+
+    private void updateMin(long micros) {
+        long current = minMicros.get();
+        while (micros < current && !minMicros.compareAndSet(current, micros))
+            current = minMicros.get();
+    }
+
+    private void updateMax(long micros) {
+        long current = maxMicros.get();
+        while (micros > current && !maxMicros.compareAndSet(current, micros))
+            current = maxMicros.get();
+    }
+
+    /**
+     * Add all values recorded by {@code other} to this histogram.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count > 0)
+                counts.addAndGet(i, count);
+        }
+        totalCount.add(other.totalCount.sum());
+        totalMicros.add(other.totalMicros.sum());
+
+        long otherMin = other.minMicros.get();
+        if (otherMin != Long.MAX_VALUE)
+            updateMin(otherMin);
+        long otherMax = other.maxMicros.get();
+        if (otherMax != Long.MIN_VALUE)
+            updateMax(otherMax);
+    }
+
+    /**
+     * Return a new histogram containing the values currently recorded by this one.
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(this);
+        return copy;
+    }
+
+    /**
+     * Discard all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++)
+            counts.set(i, 0);
+        totalCount.reset();
+        totalMicros.reset();
+        minMicros.set(Long.MAX_VALUE);
+        maxMicros.set(Long.MIN_VALUE);
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    /**
+     * Return the sum of all recorded latencies in microseconds.
+     */
+    long getTotalMicros() {
+        return totalMicros.sum();
+    }
+
+    /**
+     * Return the number of values recorded in the bucket with the given index.
+     */
+    long getBucketCount(int index) {
+        return counts.get(index);
+    }
+
+    /**
+     * Return the exact mean of the recorded latencies in milliseconds, or NaN if none were recorded.
+     */
+    public double getMeanMillis() {
+        long count = totalCount.sum();
+        if (count == 0)
+            return Double.NaN;
+        return totalMicros.sum() / (count * 1000.0);
+    }
+
+    /**
+     * Return the smallest recorded latency in milliseconds, or NaN if none were recorded.
+     */
+    public double getMinMillis() {
+        long min = minMicros.get();
+        return min == Long.MAX_VALUE ? Double.NaN : min / 1000.0;
+    }
+
+    /**
+     * Return the largest recorded latency in milliseconds, or NaN if none were recorded.
+     */
+    public double getMaxMillis() {
+        long max = maxMicros.get();
+        return max == Long.MIN_VALUE ? Double.NaN : max / 1000.0;
+    }
+
+    /**
+     * Return the latency, in milliseconds, below which the given percentage of the recorded latencies lie, or NaN
+     * if none were recorded. The result is accurate to within the width of one bucket.
+     *
+     * @param percentile The percentile, in the range (0, 100].
+     */
+    public double getPercentileMillis(double percentile) {
+        return percentileMillis(new LatencyHistogram[] { this }, percentile);
+    }
+
+    /**
+     * Return the given percentile, in milliseconds, of the latencies recorded by all the given histograms together.
+     */
+    static double percentileMillis(LatencyHistogram[] histograms, double percentile) {
+        if (percentile <= 0 || percentile > 100)
+            throw new IllegalArgumentException("The percentile must be within the interval (0, 100]. " +
+                    "Specified value " + percentile + " is not.");
+
+        // Count from the buckets rather than from the total so that the walk below always terminates on a bucket
+        // that actually holds values, even while other threads are recording.
+        long count = 0;
+        for (LatencyHistogram histogram : histograms) {
+            for (int i = 0; i < NUM_BUCKETS; i++)
+                count += histogram.counts.get(i);
+        }
+        if (count == 0)
+            return Double.NaN;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            for (LatencyHistogram histogram : histograms)
+                seen += histogram.counts.get(i);
+
+            if (seen >= rank)
+                return bucketMidpoint(i) / 1000.0;
+        }
+
+        return MAX_TRACKABLE_MICROS / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        if (getCount() == 0)
+            return "LatencyHistogram(n=0)";
+
+        return String.format("LatencyHistogram(n=%d, mean=%.3f ms, min=%.3f ms, p50=%.3f ms, p90=%.3f ms, " +
+                        "p99=%.3f ms, p99.9=%.3f ms, max=%.3f ms)", getCount(), getMeanMillis(), getMinMillis(),
+                getPercentileMillis(50), getPercentileMillis(90), getPercentileMillis(99),
+                getPercentileMillis(99.9), getMaxMillis());
+    }
+}
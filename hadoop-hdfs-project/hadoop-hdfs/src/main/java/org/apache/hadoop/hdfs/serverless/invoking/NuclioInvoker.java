@@ -74,7 +74,7 @@ public ServerlessHttpFuture enqueueHttpRequest(String operationName, String func
 
         if (requestId == null) requestId = UUID.randomUUID().toString();
 
-        JsonObject fsArgs = fileSystemOperationArguments.convertToJsonObject();
+        JsonObject fsArgs = packageFileSystemOperationArguments(fileSystemOperationArguments);
         // HttpPost request = new HttpPost(getFunctionUri(targetDeployment, fsArgs));
 
         return enqueueHttpRequestInt(operationName, nameNodeArgumentsJson, fsArgs, requestId,
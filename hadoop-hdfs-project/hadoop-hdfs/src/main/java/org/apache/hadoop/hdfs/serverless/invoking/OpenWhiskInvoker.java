@@ -149,7 +149,7 @@ public ServerlessHttpFuture enqueueHttpRequest(String operationName, String func
         if (requestId == null)
             requestId = UUID.randomUUID().toString();
 
-        JsonObject fsArgs = fileSystemOperationArguments.convertToJsonObject();
+        JsonObject fsArgs = packageFileSystemOperationArguments(fileSystemOperationArguments);
         return enqueueHttpRequestInt(operationName, nameNodeArgumentsJson, fsArgs, requestId, targetDeployment, subtreeOperation);
     }
 
@@ -185,7 +185,7 @@ protected void sendEnqueuedRequests() throws UnsupportedEncodingException, Socke
                                 StringUtils.join(", ", requestBatch.keySet()));
                     }
 
-                    prepareAndInvokeRequestBatch(requestBatch, requestUri, authorizationString);
+                    prepareAndInvokeRequestBatch(requestBatch, i, requestUri, authorizationString);
                     totalNumBatchedRequestsIssued++;
                 }
             }
@@ -194,6 +194,15 @@ protected void sendEnqueuedRequests() throws UnsupportedEncodingException, Socke
         if (LOG.isDebugEnabled()) LOG.debug("Issued a total of " + totalNumBatchedRequestsIssued + " batched HTTP request(s).");
     }
 
+    /**
+     * NameNodes invoked via OpenWhisk decode binary arguments in
+     * {@link org.apache.hadoop.hdfs.serverless.OpenWhiskHandler}.
+     */
+    @Override
+    protected boolean supportsBinaryArguments() {
+        return true;
+    }
+
     /**
      * Return an HTTP client configured appropriately for the OpenWhisk serverless platform.
      */
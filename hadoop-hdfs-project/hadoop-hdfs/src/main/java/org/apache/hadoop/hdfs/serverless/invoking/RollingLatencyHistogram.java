@@ -0,0 +1,109 @@
+package org.apache.hadoop.hdfs.serverless.invoking;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency histogram over (approximately) the most recent {@code windowSize} values.
+ *
+ * The window is split into {@link #NUM_SLOTS} {@link LatencyHistogram} slots that are filled one after another. When
+ * the current slot has received its share of the window, recording moves on to the next slot, which is cleared first.
+ * Queries combine all the slots, so they cover between {@code (NUM_SLOTS - 1) / NUM_SLOTS} of the window and the
+ * whole window. Recording is lock-free. A value recorded by one thread while another thread is clearing the slot may
+ * be lost, which is acceptable for a statistic that only steers timeouts.
+ */
+public class RollingLatencyHistogram {
+    /**
+     * The number of slots into which the window is split.
+     */
+    static final int NUM_SLOTS = 4;
+
+    private final LatencyHistogram[] slots = new LatencyHistogram[NUM_SLOTS];
+
+    private final long valuesPerSlot;
+
+    private final AtomicLong numRecorded = new AtomicLong();
+
+    /**
+     * @param windowSize The number of most recent values over which queries are answered.
+     */
+    public RollingLatencyHistogram(int windowSize) {
+        if (windowSize < 1)
+            throw new IllegalArgumentException("The window size must be positive. Specified value " +
+                    windowSize + " is not.");
+
+        this.valuesPerSlot = Math.max(1, (windowSize + NUM_SLOTS - 1) / NUM_SLOTS);
+        for (int i = 0; i < NUM_SLOTS; i++)
+            slots[i] = new LatencyHistogram();
+    }
+
+    /**
+     * Record a latency in milliseconds. Negative values are ignored.
+     */
+    public void recordMillis(double latencyMillis) {
+        if (latencyMillis < 0 || Double.isNaN(latencyMillis))
+            return;
+
+        long n = numRecorded.getAndIncrement();
+        LatencyHistogram slot = slots[(int) ((n / valuesPerSlot) % NUM_SLOTS)];
+
+        // The first value of each round through a slot evicts the values the slot held in the previous round.
+        if (n >= NUM_SLOTS * valuesPerSlot && n % valuesPerSlot == 0)
+            slot.reset();
+
+        slot.recordMillis(latencyMillis);
+    }
+
+    /**
+     * Return the number of values the window currently covers.
+     */
+    public long getCount() {
+        long count = 0;
+        for (LatencyHistogram slot : slots)
+            count += slot.getCount();
+        return count;
+    }
+
+    /**
+     * Return the mean of the latencies in the window in milliseconds, or NaN if the window is empty.
+     */
+    public double getMeanMillis() {
+        long count = 0;
+        long totalMicros = 0;
+        for (LatencyHistogram slot : slots) {
+            count += slot.getCount();
+            totalMicros += slot.getTotalMicros();
+        }
+
+        if (count == 0)
+            return Double.NaN;
+        return totalMicros / (count * 1000.0);
+    }
+
+    /**
+     * Return the given percentile of the latencies in the window in milliseconds, or NaN if the window is empty.
+     *
+     * @param percentile The percentile, in the range (0, 100].
+     */
+    public double getPercentileMillis(double percentile) {
+        return LatencyHistogram.percentileMillis(slots, percentile);
+    }
+
+    /**
+     * Return a histogram containing the values currently in the window.
+     */
+    public LatencyHistogram getSnapshot() {
+        LatencyHistogram snapshot = new LatencyHistogram();
+        for (LatencyHistogram slot : slots)
+            snapshot.add(slot);
+        return snapshot;
+    }
+
+    /**
+     * Empty the window.
+     */
+    public void reset() {
+        for (LatencyHistogram slot : slots)
+            slot.reset();
+        numRecorded.set(0);
+    }
+}
@@ -49,6 +49,7 @@
 import java.security.cert.X509Certificate;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.apache.hadoop.hdfs.DFSConfigKeys.*;
 import static org.apache.hadoop.hdfs.serverless.ServerlessNameNodeKeys.*;
@@ -225,6 +226,12 @@ public abstract class ServerlessInvokerBase {
     protected boolean tcpEnabled;
     protected boolean udpEnabled;
 
+    /**
+     * If True (and supported by this invoker), then file system operation arguments are sent using the
+     * binary envelope of {@link BinaryArgumentCodec}.
+     */
+    protected boolean binaryArgumentsEnabled;
+
     /**
      * The TCP port that we ultimately bound to. See the comment in 'ServerlessNameNodeClient' for its
      * 'tcpServerPort' instance field for explanation as to why this field exists.
@@ -268,10 +275,23 @@ public abstract class ServerlessInvokerBase {
     protected int batchSize;
 
     /**
-     * The interval, in milliseconds, that HTTP requests are issued.
+     * The interval, in milliseconds, that HTTP requests are issued. With adaptive batching,
+     * this is the longest time for which a request is held back instead.
      */
     protected int sendInterval;
 
+    /**
+     * Decides when the requests of each deployment are flushed and how many requests go into one batch.
+     * This is null if adaptive batching is disabled, in which case the fixed batch size and send interval are used.
+     */
+    private AdaptiveBatchController batchController;
+
+    /**
+     * Set while an immediate flush has been submitted to the scheduler but has not started yet, so that a burst of
+     * requests to idle deployments results in a single flush.
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
     protected String functionUriBase;
 
     /**
@@ -339,6 +359,21 @@ protected int createRequestBatches(List<List<JsonObject>> batchedRequests) {
             if (deploymentQueue.size() > 0) {
                 if (LOG.isDebugEnabled()) LOG.debug("Deployment " + i + " has " + deploymentQueue.size() + " requests enqueued...");
 
+                int maxBatchSize = batchSize;
+                if (batchController != null) {
+                    AdaptiveBatchController.Decision decision =
+                            batchController.decide(i, deploymentQueue.size(), System.currentTimeMillis());
+
+                    if (decision == AdaptiveBatchController.Decision.DEFERRED) {
+                        if (LOG.isTraceEnabled()) LOG.trace("Deferring " + deploymentQueue.size() +
+                                " request(s) for deployment " + i + " to batch them with later requests.");
+                        continue;
+                    }
+
+                    maxBatchSize = batchController.getBatchLimit(i);
+                }
+                int numRequestsDrained = 0;
+
                 JsonObject currentBatch = new JsonObject();
                 deploymentBatches.add(currentBatch);
 
@@ -359,7 +394,9 @@ protected int createRequestBatches(List<List<JsonObject>> batchedRequests) {
 
                     String requestId = request.get(REQUEST_ID).getAsString();
 
-                    if (subtreeRequests.contains(requestId)) {
+                    // Entries are removed as their requests are batched, so the set only ever holds requests
+                    // that are still waiting in the queue.
+                    if (subtreeRequests.remove(requestId)) {
                         if (LOG.isDebugEnabled())
                             LOG.debug("Request " + requestId +
                                 " is a subtree operation. Current batch contains a subtree operation.");
@@ -368,12 +405,13 @@ protected int createRequestBatches(List<List<JsonObject>> batchedRequests) {
 
                     currentBatch.add(requestId, request);
                     totalNumRequests++;
+                    numRequestsDrained++;
 
                     // If the current batch's size is equal to that of the batch size parameter,
                     // then we need to start a new batch.
-                    if (currentBatch.size() > batchSize) {
+                    if (currentBatch.size() > maxBatchSize) {
                         if (LOG.isTraceEnabled()) LOG.trace("Current batch for deployment " + i +
-                                " has reached maximum size (" + batchSize + "). Starting new batch.");
+                                " has reached maximum size (" + maxBatchSize + "). Starting new batch.");
 
                         // If there are more outgoing requests to process for this deployment, then create a new batch.
                         if (deploymentQueue.size() > 0) {
@@ -385,6 +423,9 @@ protected int createRequestBatches(List<List<JsonObject>> batchedRequests) {
                     // The request has been fully processed and is ready to be sent, so add it to the set.
                     processedRequestIds.add(requestId);
                 }
+
+                if (batchController != null)
+                    batchController.onFlush(i, deploymentBatches.size(), numRequestsDrained);
             }
         }
 
@@ -499,6 +540,8 @@ public void setConfiguration(Configuration conf, String invokerIdentity, String
                 DFSConfigKeys.SERVERLESS_HTTP_TIMEOUT_DEFAULT) * 1000; // Convert from seconds to milliseconds.
         batchSize = conf.getInt(SERVERLESS_HTTP_BATCH_SIZE, SERVERLESS_HTTP_BATCH_SIZE_DEFAULT);
         sendInterval = conf.getInt(SERVERLESS_HTTP_SEND_INTERVAL, SERVERLESS_HTTP_SEND_INTERVAL_DEFAULT);
+        binaryArgumentsEnabled = supportsBinaryArguments() &&
+                conf.getBoolean(SERVERLESS_HTTP_BINARY_ARGUMENTS, SERVERLESS_HTTP_BINARY_ARGUMENTS_DEFAULT);
         this.functionUriBase = functionUriBase;
 
         if (this.localMode) {
@@ -553,29 +596,48 @@ public void setConfiguration(Configuration conf, String invokerIdentity, String
             outgoingRequests.add(new LinkedBlockingQueue<>());
         }
 
+        int schedulerInterval = sendInterval;
+        if (conf.getBoolean(SERVERLESS_HTTP_ADAPTIVE_BATCHING, SERVERLESS_HTTP_ADAPTIVE_BATCHING_DEFAULT)) {
+            batchController = new AdaptiveBatchController(totalNumDeployments, batchSize, sendInterval,
+                    conf.getFloat(SERVERLESS_HTTP_ADAPTIVE_BATCHING_LATENCY_TOLERANCE,
+                            SERVERLESS_HTTP_ADAPTIVE_BATCHING_LATENCY_TOLERANCE_DEFAULT));
+
+            // Requests to idle deployments are flushed as soon as they are enqueued, so the schedule only has to
+            // pick up requests whose linger time has expired. It runs a few times per maximum linger time so that
+            // requests are not held back much longer than the controller intends.
+            schedulerInterval = Math.max(1, sendInterval / 4);
+        }
+
         configured = true;
 
         // Schedule the processing and sending of enqueued HTTP requests on a schedule with fixed delay.
-        // This means that the scheduled operation will execute `sendInterval` milliseconds after the previous
+        // This means that the scheduled operation will execute `schedulerInterval` milliseconds after the previous
         // execution completes. This will occur indefinitely.
         scheduler.scheduleWithFixedDelay(
-                this::scheduledRequestProcessor, sendInterval, sendInterval, TimeUnit.MILLISECONDS);
+                this::scheduledRequestProcessor, schedulerInterval, schedulerInterval, TimeUnit.MILLISECONDS);
     }
 
     /**
      * This method is executed by a {@link ScheduledExecutorService} instance every
-     * {@link ServerlessInvokerBase#sendInterval} milliseconds.
+     * {@link ServerlessInvokerBase#sendInterval} milliseconds (or more often with adaptive batching),
+     * as well as whenever an immediate flush is requested by {@link ServerlessInvokerBase#requestFlush()}.
      */
     private void scheduledRequestProcessor() {
+        flushRequested.set(false);
+
         try {
             sendEnqueuedRequests();
         } catch (Exception e) {
             LOG.error("Exception encountered while issuing HTTP requests:", e);
             handleAlreadyProcessedRequestsOnException();
+
+            // We cannot tell which of the batches were sent, so do not let the lost ones hold back future requests.
+            if (batchController != null)
+                batchController.resetInFlight();
         } finally {
-            // Each time we process the enqueued requests, we clear this set and the subtreeRequests set.
+            // Each time we process the enqueued requests, we clear this set. Entries of the subtreeRequests set are
+            // removed as their requests are batched, as subtree requests may be enqueued while we're running.
             processedRequestIds.clear();
-            subtreeRequests.clear();
         }
     }
 
@@ -609,7 +671,46 @@ private void handleAlreadyProcessedRequestsOnException() {
      * @param targetDeployment The deployment to which this request is to be directed.
      */
     private void enqueueRequest(JsonObject requestArguments, int targetDeployment) {
+        if (batchController == null) {
+            outgoingRequests.get(targetDeployment).add(requestArguments);
+            return;
+        }
+
+        // Record the request before adding it to the queue, so that the queue is never drained before the request
+        // has started its linger time.
+        boolean idle = batchController.onEnqueue(targetDeployment, System.currentTimeMillis());
         outgoingRequests.get(targetDeployment).add(requestArguments);
+
+        // If there is no batch in flight to this deployment, then there is nothing to wait for.
+        if (idle)
+            requestFlush();
+    }
+
+    /**
+     * Run the request processor on the scheduler's thread as soon as possible, unless such a run is already pending.
+     * The scheduler has a single thread, so this never runs concurrently with the periodic processing.
+     */
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true))
+            scheduler.execute(this::scheduledRequestProcessor);
+    }
+
+    /**
+     * Report the outcome of a batch sent to the given deployment to the adaptive batching controller.
+     *
+     * @param deploymentNumber The deployment to which the batch was sent.
+     * @param latencyMillis The time it took for the batch to complete, or a negative value if it failed.
+     */
+    private void onBatchFinished(int deploymentNumber, double latencyMillis) {
+        if (batchController == null || deploymentNumber < 0)
+            return;
+
+        boolean idle = latencyMillis < 0 ? batchController.onBatchAbandoned(deploymentNumber) :
+                batchController.onBatchCompleted(deploymentNumber, latencyMillis);
+
+        // Requests deferred while the batch was in flight do not have to wait for their linger time to expire.
+        if (idle && outgoingRequests.get(deploymentNumber).size() > 0)
+            requestFlush();
     }
 
     public void setConsistencyProtocolEnabled(boolean enabled) {
@@ -706,19 +807,44 @@ protected ServerlessHttpFuture enqueueHttpRequestInt(String operationName,
         // TODO: Eventually switch this to trace rather than debug.
         if (LOG.isDebugEnabled()) LOG.debug("Enqueuing HTTP request " + requestId +
                 " for submission with deployment " + targetDeployment);
-        enqueueRequest(nameNodeArguments, targetDeployment);
-
+        // Record this before enqueuing the request, as the request may be batched as soon as it is enqueued.
         if (subtreeOperation) {
             if (LOG.isDebugEnabled())
                 LOG.debug("Recording that request " + requestId + " is a subtree operation.");
             subtreeRequests.add(requestId);
         }
 
+        // Register the future first, as the request may be sent (and answered) as soon as it is enqueued.
         ServerlessHttpFuture future = new ServerlessHttpFuture(requestId, operationName);
         futures.put(requestId, future);
+
+        enqueueRequest(nameNodeArguments, targetDeployment);
         return future;
     }
 
+    /**
+     * Return true if the NameNodes targeted by this invoker can decode arguments sent using
+     * {@link BinaryArgumentCodec}. Invokers that support it override this.
+     */
+    protected boolean supportsBinaryArguments() {
+        return false;
+    }
+
+    /**
+     * Package the given file system operation arguments for inclusion in an HTTP request, using the binary
+     * envelope if it is enabled and the JSON representation otherwise.
+     */
+    protected JsonObject packageFileSystemOperationArguments(ArgumentContainer fileSystemOperationArguments)
+            throws IOException {
+        if (!binaryArgumentsEnabled)
+            return fileSystemOperationArguments.convertToJsonObject();
+
+        JsonObject fsArgs = new JsonObject();
+        fsArgs.addProperty(BINARY_FILE_SYSTEM_OP_ARGS,
+                Base64.getEncoder().encodeToString(fileSystemOperationArguments.convertToBinary()));
+        return fsArgs;
+    }
+
     /**
      * Mark a particular request as complete. This just amounts to remove the future associated with the request from
      * the future mapping. This should be called by clients once they've received a correct result for their request.
@@ -891,14 +1017,108 @@ public JsonObject issueHttpRequestWithRetries(ServerlessInvokerBase invokerInsta
                 invokerInstance.maxHttpRetries + " attempts.");
     }
 
+    /**
+     * Non-blocking counterpart of {@link #issueHttpRequestWithRetries}. The request is retried with the same
+     * exponential back-off, but no thread waits for the response or sleeps between attempts: retries are scheduled
+     * on this invoker's scheduler.
+     *
+     * @return A future completed with the response from the Serverless NameNode, or completed exceptionally with an
+     * {@link IOException} if the request could not be completed.
+     */
+    public CompletableFuture<JsonObject> issueHttpRequestWithRetriesAsync(String operationName,
+                                                                       String functionUriBase,
+                                                                       HashMap<String, Object> nameNodeArguments,
+                                                                       ArgumentContainer fileSystemOperationArguments,
+                                                                       String requestId, int targetDeployment,
+                                                                       boolean subtreeOperation) {
+        if (targetDeployment == -1) {
+            if (ServerlessUtilities.WRITE_OPS.contains(operationName)) {
+                targetDeployment = ThreadLocalRandom.current().nextInt(
+                        numReadWriteDeployments, numNormalAndWriteOnlyDeployments);
+            } else {
+                targetDeployment = rng.nextInt(numReadWriteDeployments);
+            }
+        }
+
+        ExponentialBackOff exponentialBackoff = new ExponentialBackOff.Builder()
+                .setMaximumRetries(maxHttpRetries)
+                .setInitialIntervalMillis(10000)
+                .setMaximumIntervalMillis(30000)
+                .setMultiplier(2.25)
+                .setRandomizationFactor(0.5)
+                .build();
+
+        CompletableFuture<JsonObject> result = new CompletableFuture<>();
+        issueHttpRequestAttempt(operationName, functionUriBase, nameNodeArguments, fileSystemOperationArguments,
+                requestId, targetDeployment, subtreeOperation, exponentialBackoff, result);
+        return result;
+    }
+
+    /**
+     * Issue one attempt of a request submitted via {@link #issueHttpRequestWithRetriesAsync}, and schedule the next
+     * attempt if this one fails.
+     */
+    private void issueHttpRequestAttempt(String operationName, String functionUriBase,
+                                         HashMap<String, Object> nameNodeArguments,
+                                         ArgumentContainer fileSystemOperationArguments, String requestId,
+                                         int targetDeployment, boolean subtreeOperation,
+                                         ExponentialBackOff exponentialBackoff, CompletableFuture<JsonObject> result) {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Issuing HTTP request " + requestId + " to deployment " + targetDeployment + ", attempt " +
+                    (exponentialBackoff.getNumberOfRetries()+1) + "/" + maxHttpRetries + ".");
+
+        ServerlessHttpFuture future;
+        try {
+            future = enqueueHttpRequest(operationName, functionUriBase, nameNodeArguments,
+                    fileSystemOperationArguments, requestId, targetDeployment, subtreeOperation);
+        } catch (IOException | RuntimeException ex) {
+            result.completeExceptionally(ex);
+            return;
+        }
+
+        future.toCompletionStage().thenAccept(response -> {
+            Exception localException = ServerlessHttpFuture.getLocalException(response);
+            if (localException == null) {
+                if (response.has("body"))
+                    response = response.get("body").getAsJsonObject();
+
+                markComplete(requestId);
+                result.complete(response);
+                return;
+            }
+
+            LOG.error("Attempt " + (exponentialBackoff.getNumberOfRetries()) + " to issue request " + requestId +
+                    " targeting deployment " + targetDeployment + " failed:", localException);
+
+            long backoffInterval = exponentialBackoff.getBackOffInMillis();
+            if (backoffInterval < 0 ||
+                    exponentialBackoff.getNumberOfRetries() >= exponentialBackoff.getMaximumRetries()) {
+                result.completeExceptionally(new IOException("The file system operation could not be completed. " +
+                        "Failed to invoke Serverless NameNode " + targetDeployment + " after " +
+                        maxHttpRetries + " attempts."));
+                return;
+            }
+
+            scheduler.schedule(() -> issueHttpRequestAttempt(operationName, functionUriBase, nameNodeArguments,
+                    fileSystemOperationArguments, requestId, targetDeployment, subtreeOperation, exponentialBackoff,
+                    result), backoffInterval, TimeUnit.MILLISECONDS);
+        }).whenComplete((ignored, ex) -> {
+            // Do not leave the caller waiting forever if the response could not be handled.
+            if (ex != null)
+                result.completeExceptionally(ex);
+        });
+    }
+
     /**
      * Package up a batch of requests and send them to the target deployment via an HTTP request.
      *
      * @param requestBatch The batch of requests we're sending.
+     * @param deploymentNumber The deployment to which the batch is sent.
      * @param requestUri The HTTP endpoint of the target deployment.
      * @param authorizationString Included with the request. Used for authorizing the request.
      */
-    protected void prepareAndInvokeRequestBatch(JsonObject requestBatch, String requestUri, String authorizationString)
+    protected void prepareAndInvokeRequestBatch(JsonObject requestBatch, int deploymentNumber, String requestUri,
+                                                String authorizationString)
             throws SocketException, UnknownHostException, UnsupportedEncodingException {
         // This is the top-level JSON object passed along with the HTTP POST request.
         JsonObject topLevel = new JsonObject();
@@ -934,9 +1154,10 @@ protected void prepareAndInvokeRequestBatch(JsonObject requestBatch, String requ
         request.setHeader(HttpHeaders.CONTENT_TYPE, "application/json");
 
         try {
-            doInvoke(request, topLevel, requestBatch.keySet());
+            doInvoke(request, topLevel, requestBatch.keySet(), deploymentNumber);
         } catch (IOException ex) {
             LOG.error("Encountered IOException while issuing batched HTTP request:", ex);
+            onBatchFinished(deploymentNumber, -1);
         }
     }
 
@@ -947,10 +1168,11 @@ protected void prepareAndInvokeRequestBatch(JsonObject requestBatch, String requ
      * @param requestArguments This presumably contains a batch of multiple individual requests
      *                         that will all be processed by the same NameNode.
      * @param requestIds The IDs of the individual requests contained within the batch.
+     * @param deploymentNumber The deployment to which the batch is sent.
      */
-    protected void doInvoke(HttpPost request, JsonObject requestArguments, Set<String> requestIds)
-            throws IOException {
-        final long invokeStart = System.currentTimeMillis();
+    protected void doInvoke(HttpPost request, JsonObject requestArguments, Set<String> requestIds,
+                            int deploymentNumber) throws IOException {
+        final long invokeStart = System.nanoTime();
 
         // Prepare the HTTP POST request.
         StringEntity parameters = new StringEntity(requestArguments.toString());
@@ -967,10 +1189,10 @@ protected void doInvoke(HttpPost request, JsonObject requestArguments, Set<Strin
             @Override
             public void completed(HttpResponse httpResponse) {
                 int responseCode = httpResponse.getStatusLine().getStatusCode();
+                double timeElapsed = (System.nanoTime() - invokeStart) / 1.0e6;
+                onBatchFinished(deploymentNumber, timeElapsed);
 
                 if (LOG.isDebugEnabled()) {
-                    long currentTime = System.nanoTime();
-                    double timeElapsed = (currentTime - invokeStart) / 1.0e6;
                     LOG.debug("Received HTTP " + responseCode +
                             " response code. Time elapsed: " + timeElapsed + " milliseconds.");
                     LOG.debug("httpResponse = " + httpResponse);
@@ -1023,6 +1245,8 @@ public void completed(HttpResponse httpResponse) {
 
             @Override
             public void failed(Exception e) {
+                onBatchFinished(deploymentNumber, -1);
+
                 LOG.error("Batched HTTP request containing " + requestIds.size() +
                         " individual request(s) has failed. Request IDs: " +
                         StringUtils.join(", ", requestIds) + ". Reason for failure:", e);
@@ -1048,6 +1272,7 @@ public void failed(Exception e) {
 
             @Override
             public void cancelled() {
+                onBatchFinished(deploymentNumber, -1);
                 LOG.warn("HTTP request has been cancelled.");
                 request.releaseConnection();
             }
@@ -1341,6 +1566,14 @@ protected void addStandardArguments(JsonObject nameNodeArgumentsJson)
     // DEBUGGING/METRICS //
     ///////////////////////
 
+    /**
+     * Return the controller whose flush decisions, batch limits, and linger times serve as the metrics of adaptive
+     * batching, or null if adaptive batching is disabled.
+     */
+    public AdaptiveBatchController getBatchController() {
+        return batchController;
+    }
+
     public static ConcurrentHashMap<String, TransactionsStats.ServerlessStatisticsPackage> getStatisticsPackages() {
         return statisticsPackages;
     }
@@ -25,6 +25,7 @@
 import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.protocol.*;
 import org.apache.hadoop.hdfs.security.token.block.DataEncryptionKey;
 import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenIdentifier;
@@ -33,7 +34,10 @@
 import org.apache.hadoop.hdfs.server.protocol.DatanodeStorageReport;
 import org.apache.hadoop.hdfs.serverless.OpenWhiskHandler;
 import org.apache.hadoop.hdfs.serverless.ServerlessNameNodeKeys;
+import org.apache.hadoop.hdfs.serverless.cache.FunctionMetadataMap;
 import io.hops.metrics.OperationPerformed;
+import org.apache.hadoop.hdfs.serverless.exceptions.BatchOperationException;
+import org.apache.hadoop.hdfs.serverless.exceptions.NameNodeException;
 import org.apache.hadoop.hdfs.serverless.exceptions.NoConnectionAvailableException;
 import org.apache.hadoop.hdfs.serverless.exceptions.TcpRequestCancelledException;
 import org.apache.hadoop.hdfs.serverless.execution.futures.ServerlessHttpFuture;
@@ -48,12 +52,14 @@
 import org.apache.hadoop.io.EnumSetWritable;
 import org.apache.hadoop.io.ObjectWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.ipc.RemoteException;
 import org.apache.hadoop.security.AccessControlException;
 import org.apache.hadoop.security.token.Token;
 import org.apache.hadoop.util.ExponentialBackOff;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Serializable;
 import java.nio.file.FileAlreadyExistsException;
 import java.sql.SQLException;
@@ -64,7 +70,6 @@
 import static org.apache.hadoop.hdfs.DFSConfigKeys.*;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.SERVERLESS_PLATFORM_DEFAULT;
 import static org.apache.hadoop.hdfs.serverless.ServerlessNameNodeKeys.*;
-import static org.apache.hadoop.hdfs.serverless.invoking.ServerlessUtilities.getDeploymentForPath;
 
 /**
  * This serves as an adapter between the DFSClient interface and the serverless NameNode API.
@@ -104,21 +109,24 @@ public class ServerlessNameNodeClient implements ClientProtocol {
 
     /**
      * Number of unique deployments.
+     *
+     * This, the total number of deployments and the number of write-only deployments change when the NameNodes
+     * publish a new number of deployments (see {@link #watchTopology()}).
      */
-    private final int numReadWriteDeployments;
+    private volatile int numReadWriteDeployments;
 
     /**
      * The total number of deployments, including write-only and mixed (read-write) deployments.
      *
      * Notably, this does NOT include fault-tolerant deployments.
      */
-    private final int numNormalAndWriteOnlyDeployments;
+    private volatile int numNormalAndWriteOnlyDeployments;
 
     /**
      * The number of write-only deployments. The first write-only deployment can be calculated as
      * numNormalAndWriteOnlyDeployments - numWriteDeployments.
      */
-    private final int numWriteOnlyDeployments;
+    private volatile int numWriteOnlyDeployments;
 
 
 
@@ -160,30 +168,79 @@ public class ServerlessNameNodeClient implements ClientProtocol {
     protected boolean consistencyProtocolEnabled = true;
 
     /**
-     * Statistics about per-invocation latency. This includes both TCP and HTTP requests.
+     * Histogram of per-invocation latency. This includes both TCP and HTTP requests.
      */
-    private final DescriptiveStatistics latency;
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+    /**
+     * Histogram of per-invocation latency. This is just for TCP requests.
+     */
+    private final LatencyHistogram latencyHistogramTcp = new LatencyHistogram();
+
+    /**
+     * Histogram of per-invocation latency. This is just for HTTP requests.
+     */
+    private final LatencyHistogram latencyHistogramHttp = new LatencyHistogram();
+
+    /**
+     * Histogram of the most recent per-invocation latencies (TCP and HTTP). Drives straggler mitigation
+     * and anti-thrashing mode.
+     */
+    private final RollingLatencyHistogram recentLatency;
+
+    /**
+     * Per-operation histograms of TCP request latency, keyed by operation name.
+     */
+    private final ConcurrentHashMap<String, LatencyHistogram> operationLatencyTcp = new ConcurrentHashMap<>();
 
     /**
-     * Statistics about per-invocation latency. This includes both TCP and HTTP requests.
-     * This instance has a window so that we can calculate a rolling average.
+     * Per-operation histograms of HTTP request latency, keyed by operation name.
      */
-    private final DescriptiveStatistics latencyWithWindow;
+    private final ConcurrentHashMap<String, LatencyHistogram> operationLatencyHttp = new ConcurrentHashMap<>();
 
     /**
-     * Statistics about per-invocation latency. This is just for TCP requests.
+     * If true, then every latency is also stored in the {@link DescriptiveStatistics} objects below, whose memory
+     * grows with the number of requests. Only the deprecated getters read them.
+     */
+    private final boolean rawLatencySamplesEnabled;
+
+    /**
+     * Every per-invocation latency (TCP and HTTP). Only filled if {@code rawLatencySamplesEnabled} is true.
+     */
+    private final DescriptiveStatistics latency;
+
+    /**
+     * Every TCP per-invocation latency. Only filled if {@code rawLatencySamplesEnabled} is true.
      */
     private final DescriptiveStatistics latencyTcp;
 
     /**
-     * Statistics about per-invocation latency. This is just for HTTP requests.
+     * Every HTTP per-invocation latency. Only filled if {@code rawLatencySamplesEnabled} is true.
      */
     private final DescriptiveStatistics latencyHttp;
 
     /**
-     * For debugging, keep track of the operations we've performed.
+     * For debugging, keep track of the operations we've performed. Operations submitted asynchronously complete on
+     * other threads, so this must be thread-safe.
      */
-    private final HashMap<String, OperationPerformed> operationsPerformed = new HashMap<>();
+    private final ConcurrentHashMap<String, OperationPerformed> operationsPerformed = new ConcurrentHashMap<>();
+
+    /**
+     * Enforces the timeouts of the TCP requests of operations submitted asynchronously. Shared by all clients in
+     * this JVM, as its tasks only complete futures.
+     */
+    private static final ScheduledThreadPoolExecutor asyncScheduler;
+
+    static {
+        asyncScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "AsyncRequestTimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Most requests complete before they time out. Do not keep their cancelled timeouts around.
+        asyncScheduler.setRemoveOnCancelPolicy(true);
+    }
 
     /**
      * Threshold at which we stop targeting specific deployments in an effort to prevent additional pods
@@ -228,10 +285,16 @@ public class ServerlessNameNodeClient implements ClientProtocol {
 
     /**
      * When straggler mitigation is enabled, this is the factor X such that a request
-     * must be delayed for (avgLatency * X) ms in order to be re-submitted.
+     * must be delayed for (latency percentile * X) ms in order to be re-submitted.
      */
     protected int stragglerMitigationThresholdFactor;
 
+    /**
+     * The percentile of the recent request latency that is multiplied by {@code stragglerMitigationThresholdFactor}
+     * to obtain the straggler mitigation timeout.
+     */
+    protected double stragglerMitigationPercentile;
+
     /**
      * When enabled, we employ a straggler mitigation technique in which requests that have been
      * submitted but not received a response for X times the average latency are resubmitted.
@@ -258,6 +321,23 @@ public class ServerlessNameNodeClient implements ClientProtocol {
      */
     private final ZKClient zkClient;
 
+    /**
+     * Maps parent directories to the deployments responsible for them, so that routing a request usually takes a
+     * single local lookup.
+     */
+    private final FunctionMetadataMap deploymentMapping;
+
+    /**
+     * Finds the directories whose children this client writes to most. This is null if directory splitting is
+     * disabled.
+     */
+    private HotDirectoryDetector hotDirectoryDetector;
+
+    /**
+     * True once {@link #zkClient} has been connected.
+     */
+    private boolean zkConnected = false;
+
     /**
      * When enabled, clients using a newly-created TCP server can piggy-back off of existing connections of other
      * TCP servers running within the same VM. This prevents too many HTTP requests from being issued all-at-once.
@@ -282,6 +362,11 @@ public class ServerlessNameNodeClient implements ClientProtocol {
      */
     private final int maxNumTcpAttempts;
 
+    /**
+     * Maximum number of paths sent to a NameNode in a single request of a batch operation.
+     */
+    private final int maxBatchSize;
+
     /**
      * Currently using this as the chances of submitting an HTTP request specifically when a failure has
      * occurred recently in the target deployment. This is different from its original purpose.
@@ -325,6 +410,13 @@ public ServerlessNameNodeClient(Configuration conf, DFSClient dfsClient) throws
                 SERVERLESS_STRAGGLER_MITIGATION_DEFAULT);
         stragglerMitigationThresholdFactor = conf.getInt(SERVERLESS_STRAGGLER_MITIGATION_THRESHOLD_FACTOR,
                 SERVERLESS_STRAGGLER_MITIGATION_THRESHOLD_FACTOR_DEFAULT);
+        stragglerMitigationPercentile = conf.getDouble(SERVERLESS_STRAGGLER_MITIGATION_PERCENTILE,
+                SERVERLESS_STRAGGLER_MITIGATION_PERCENTILE_DEFAULT);
+        if (stragglerMitigationPercentile <= 0 || stragglerMitigationPercentile > 100)
+            throw new IllegalArgumentException("The straggler mitigation percentile must be within the interval " +
+                    "(0, 100]. Value specified: " + stragglerMitigationPercentile);
+        rawLatencySamplesEnabled = conf.getBoolean(SERVERLESS_LATENCY_RAW_SAMPLES,
+                SERVERLESS_LATENCY_RAW_SAMPLES_DEFAULT);
         minimumStragglerMitigationTimeout = conf.getInt(SERVERLESS_STRAGGLER_MITIGATION_MIN_TIMEOUT,
                 SERVERLESS_STRAGGLER_MITIGATION_MIN_TIMEOUT_DEFAULT);
         serverlessFunctionLogLevel = conf.get(
@@ -334,6 +426,7 @@ public ServerlessNameNodeClient(Configuration conf, DFSClient dfsClient) throws
         connectionSharingProbability = conf.getDouble(SERVERLESS_CONNECTION_SHARING_CHANCE,
                 SERVERLESS_CONNECTION_SHARING_CHANCE_DEFAULT);
         maxNumTcpAttempts = conf.getInt(SERVERLESS_TCP_RETRY_MAX, SERVERLESS_TCP_RETRY_MAX_DEFAULT);
+        maxBatchSize = Math.max(1, conf.getInt(SERVERLESS_BATCH_MAX_SIZE, SERVERLESS_BATCH_MAX_SIZE_DEFAULT));
         issueHttpAfterFailureChance = conf.getDouble(SERVERLESS_ISSUE_HTTP_CHANCE_AFTER_FAILURE_CHANCE,
                 SERVERLESS_ISSUE_HTTP_CHANCE_AFTER_FAILURE_CHANCE_DEFAULT);
 
@@ -391,12 +484,50 @@ public ServerlessNameNodeClient(Configuration conf, DFSClient dfsClient) throws
         this.latency = new DescriptiveStatistics();
         this.latencyTcp = new DescriptiveStatistics();
         this.latencyHttp = new DescriptiveStatistics();
-        this.latencyWithWindow = new DescriptiveStatistics(latencyWindowSize);
+        this.recentLatency = new RollingLatencyHistogram(latencyWindowSize);
 
         this.recentFailuresCache = Caffeine.newBuilder()
                 .maximumSize(numNormalAndWriteOnlyDeployments)
                 .expireAfterWrite(Duration.ofSeconds(20))
                 .build();
+
+        this.deploymentMapping = new FunctionMetadataMap(conf, numNormalAndWriteOnlyDeployments,
+                numReadWriteDeployments);
+        if (!localMode && conf.getBoolean(SERVERLESS_DEPLOYMENT_TOPOLOGY_WATCH_ENABLED,
+                SERVERLESS_DEPLOYMENT_TOPOLOGY_WATCH_ENABLED_DEFAULT))
+            watchTopology();
+
+        if (!localMode && conf.getBoolean(SERVERLESS_DIRECTORY_SPLIT_ENABLED, SERVERLESS_DIRECTORY_SPLIT_ENABLED_DEFAULT)) {
+            connectToZooKeeper();
+            DirectorySplitTable directorySplits = new DirectorySplitTable();
+            directorySplits.watch(zkClient);
+            deploymentMapping.setDirectorySplits(directorySplits);
+
+            this.hotDirectoryDetector = new HotDirectoryDetector(HotDirectoryDetector.DEFAULT_CAPACITY,
+                    conf.getLong(SERVERLESS_DIRECTORY_SPLIT_WINDOW, SERVERLESS_DIRECTORY_SPLIT_WINDOW_DEFAULT),
+                    conf.getDouble(SERVERLESS_DIRECTORY_SPLIT_THRESHOLD, SERVERLESS_DIRECTORY_SPLIT_THRESHOLD_DEFAULT));
+        }
+    }
+
+    private synchronized void connectToZooKeeper() {
+        if (zkConnected)
+            return;
+
+        zkClient.connect();
+        zkConnected = true;
+    }
+
+    /**
+     * Connect to ZooKeeper and route over the number of deployments published by the NameNodes, both now and
+     * whenever it changes.
+     */
+    private void watchTopology() {
+        connectToZooKeeper();
+        deploymentMapping.watchTopology(zkClient, (numDeployments, numReadWriteDeployments) -> {
+            this.numNormalAndWriteOnlyDeployments = numDeployments;
+            this.numReadWriteDeployments = numReadWriteDeployments;
+            this.numWriteOnlyDeployments = numDeployments - numReadWriteDeployments;
+        });
     }
 
     public void setBenchmarkModeEnabled(boolean benchmarkModeEnabled) {
@@ -421,6 +552,25 @@ public void recordNameNodeCrash(int deployment) {
         recentFailuresCache.put(deployment, true);
     }
 
+    /**
+     * Return the cache of parent directory to deployment mappings used to route requests.
+     */
+    public FunctionMetadataMap getDeploymentMapping() { return this.deploymentMapping; }
+
+    /**
+     * Return the directories whose children this client wrote to at a rate above the directory split threshold in
+     * the most recent window, unless they were already returned by an earlier call. NameNodes split such directories
+     * on their own. This is mainly useful for analyzing workloads.
+     *
+     * @return The hot directories, or an empty list if there are none or if directory splitting is disabled.
+     */
+    public List<String> pollHotDirectories() {
+        if (hotDirectoryDetector == null)
+            return Collections.emptyList();
+
+        return hotDirectoryDetector.pollHotDirectories(System.currentTimeMillis());
+    }
+
     /**
      * Extract the result from the NN.
      *
@@ -504,6 +654,9 @@ public String getServerlessFunctionLogLevel() {
     }
 
     public int printDebugInformation() {
+        if (serverlessInvoker != null && serverlessInvoker.getBatchController() != null)
+            LOG.info("HTTP batching: " + serverlessInvoker.getBatchController());
+
         return this.serverAndInvokerManager.printDebugInformation();
     }
 
@@ -536,15 +689,11 @@ public void setHttpTcpReplacementChance(double chance) {
      * @param httpLatencies Latencies from HTTP requests.
      */
     public void addLatencies(double[] tcpLatencies, double[] httpLatencies) {
-        for (double tcpLatency : tcpLatencies) {
-            latencyTcp.addValue(tcpLatency);
-            latency.addValue(tcpLatency);
-        }
+        for (double tcpLatency : tcpLatencies)
+            mergeLatency(tcpLatency, latencyHistogramTcp, latencyTcp);
 
-        for (double httpLatency : httpLatencies) {
-            latencyHttp.addValue(httpLatency);
-            latency.addValue(httpLatency);
-        }
+        for (double httpLatency : httpLatencies)
+            mergeLatency(httpLatency, latencyHistogramHttp, latencyHttp);
     }
 
     /**
@@ -554,37 +703,58 @@ public void addLatencies(double[] tcpLatencies, double[] httpLatencies) {
      * @param httpLatencies Latencies from HTTP requests.
      */
     public void addLatencies(Collection<Double> tcpLatencies, Collection<Double> httpLatencies) {
-        for (double tcpLatency : tcpLatencies) {
-            latencyTcp.addValue(tcpLatency);
-            latency.addValue(tcpLatency);
-        }
+        for (double tcpLatency : tcpLatencies)
+            mergeLatency(tcpLatency, latencyHistogramTcp, latencyTcp);
+
+        for (double httpLatency : httpLatencies)
+            mergeLatency(httpLatency, latencyHistogramHttp, latencyHttp);
+    }
 
-        for (double httpLatency : httpLatencies) {
-            latencyHttp.addValue(httpLatency);
-            latency.addValue(httpLatency);
+    /**
+     * Used for merging the latency histograms of other clients into a master client that we use for book-keeping.
+     * Unlike the other {@code addLatencies} methods, this does not need the individual latencies of the other
+     * clients, so those clients need not keep raw samples.
+     * @param tcpLatencies Histogram of the latencies of TCP requests.
+     * @param httpLatencies Histogram of the latencies of HTTP requests.
+     */
+    public void addLatencies(LatencyHistogram tcpLatencies, LatencyHistogram httpLatencies) {
+        latencyHistogramTcp.add(tcpLatencies);
+        latencyHistogram.add(tcpLatencies);
+        latencyHistogramHttp.add(httpLatencies);
+        latencyHistogram.add(httpLatencies);
+    }
+
+    /**
+     * Record a latency merged in from another client. Merged latencies do not affect the rolling window,
+     * as they do not describe the requests of this client.
+     */
+    private void mergeLatency(double latencyMillis, LatencyHistogram transportHistogram,
+                              DescriptiveStatistics transportStatistics) {
+        transportHistogram.recordMillis(latencyMillis);
+        latencyHistogram.recordMillis(latencyMillis);
+
+        if (rawLatencySamplesEnabled) {
+            transportStatistics.addValue(latencyMillis);
+            latency.addValue(latencyMillis);
         }
     }
 
     /**
-     * Add latency values to the statistics objects. Only adds the values if they are positive. So, if
+     * Add latency values to the histograms. Only adds the values if they are positive. So, if
      * you only want to add a tcp latency, then pass something < 0 for httpLatency.
+     *
+     * @param operationName The name of the file system operation that the request performed.
      */
-    private void addLatency(double tcpLatency, double httpLatency) {
-        if (tcpLatency > 0) {
-            latencyTcp.addValue(tcpLatency);
-            latency.addValue(tcpLatency);
-            latencyWithWindow.addValue(tcpLatency);
-        }
+    private void addLatency(String operationName, double tcpLatency, double httpLatency) {
+        if (tcpLatency > 0)
+            recordLatency(operationName, tcpLatency, latencyHistogramTcp, operationLatencyTcp, latencyTcp);
 
-        if (httpLatency > 0) {
-            latencyHttp.addValue(httpLatency);
-            latency.addValue(httpLatency);
-            latencyWithWindow.addValue(httpLatency);
-        }
+        if (httpLatency > 0)
+            recordLatency(operationName, httpLatency, latencyHistogramHttp, operationLatencyHttp, latencyHttp);
 
         // If the latency threshold is <= 0, then we don't bother with this feature.
         if (latencyThreshold > 0) {
-            double averageLatency = latencyWithWindow.getMean();
+            double averageLatency = recentLatency.getMeanMillis();
 
             // If anti-thrashing mode is already enabled, then the latency being high doesn't change anything.
             // Thus, anti-thrashing mode must currently be disabled for us to check if latency is high.
@@ -603,9 +773,24 @@ else if (antiThrashingModeEnabled && averageLatency < latencyThreshold) {
         }
     }
 
+    private void recordLatency(String operationName, double latencyMillis, LatencyHistogram transportHistogram,
+                               ConcurrentHashMap<String, LatencyHistogram> operationHistograms,
+                               DescriptiveStatistics transportStatistics) {
+        transportHistogram.recordMillis(latencyMillis);
+        latencyHistogram.recordMillis(latencyMillis);
+        recentLatency.recordMillis(latencyMillis);
+        operationHistograms.computeIfAbsent(operationName, op -> new LatencyHistogram()).recordMillis(latencyMillis);
+
+        if (rawLatencySamplesEnabled) {
+            transportStatistics.addValue(latencyMillis);
+            latency.addValue(latencyMillis);
+        }
+    }
+
     /**
      * Calculate the timeout to use for an TCP request. If straggler mitigation is enabled, then the
-     * timeout is based on the average latency, with a minimum of two milliseconds. Alternatively, if
+     * timeout is based on a high percentile of the recent latency (see {@code stragglerMitigationPercentile}),
+     * with a minimum of {@code minimumStragglerMitigationTimeout} milliseconds. Alternatively, if
      * straggler mitigation is disabled, then we just use the HTTP timeout for our TCP timeout.
      *
      * Also, when using straggler mitigation, we don't count every timeout towards our exponential backoff.
@@ -634,9 +819,13 @@ private long calculateRequestTimeout(boolean stragglerResubmissionAlreadyOccurre
 
         long requestTimeout;
         if (stragglerMitigationEnabled && !stragglerResubmissionAlreadyOccurred) {
-            // First, calculate the potential timeout using the current average latency and the threshold factor.
-            long averageLatencyRoundedDown = (long)Math.floor(latencyWithWindow.getMean());
-            requestTimeout = averageLatencyRoundedDown * stragglerMitigationThresholdFactor;
+            // First, calculate the potential timeout using a high percentile of the recent latency and the
+            // threshold factor. Using a tail percentile rather than the mean keeps us from resubmitting requests
+            // that are merely on the slow side of a wide latency distribution. If no latency has been recorded
+            // yet, the percentile is NaN, which rounds down to 0 and is clamped to the minimum timeout below.
+            long latencyPercentileRoundedDown =
+                    (long)Math.floor(recentLatency.getPercentileMillis(stragglerMitigationPercentile));
+            requestTimeout = latencyPercentileRoundedDown * stragglerMitigationThresholdFactor;
 
             // Next, clamp the request timeout to a minimum value of at least 'minimumStragglerMitigationTimeout' ms.
             // Then, if the timeout is > than the standard timeout we'd normally use, just use the standard timeout.
@@ -763,11 +952,12 @@ private Object submitFsOperationViaTcp(String operationName, ArgumentContainer o
 
             NameNodeResult result = (NameNodeResult)response;
 
-            // If the NameNode is reporting that this FS operation was a duplicate, then we check to see if
-            // we're actually still waiting on a result for the operation. If we are, then it might have been
-            // lost (e.g., network connection terminated while NN sending result back to us) or something like
-            // that. In that case, we resubmit the FS operation with an additional argument indicating that the
-            // NN should execute the FS operation regardless of whether it is a duplicate.
+            // If the NameNode is reporting that this FS operation was a duplicate, then it has already completed the
+            // operation, but it no longer has the result (a NameNode answers retransmissions of operations that are
+            // still running, and of recent writes, with the original result). The result might have been lost (e.g.,
+            // network connection terminated while NN sending result back to us) or something like that. In that
+            // case, we resubmit the FS operation with an additional argument indicating that the NN should execute
+            // the FS operation again. FORCE_REDO never causes an operation that is still running to run twice.
             if (result.isDuplicate()) {
                 LOG.warn("Received 'DUPLICATE REQUEST' notification via TCP for request " + requestId + "...");
                 LOG.warn("Resubmitting request " + requestId + " with FORCE_REDO...");
@@ -778,22 +968,12 @@ private Object submitFsOperationViaTcp(String operationName, ArgumentContainer o
                 continue;
             }
 
-            if (result.getException() != null) {
-                LOG.error("NameNode encountered " + result.getException().getClass().getSimpleName() +
-                        " while executing task " + requestId + " (operation=" + operationName + ").");
-
-                if (result.getException() instanceof FileNotFoundException)
-                    throw (FileNotFoundException)result.getException();
-                else if (result.getException() instanceof IOException)
-                    throw (IOException)result.getException();
-                else // Throw a "generic" IOException.
-                    throw new IOException("Encountered unexpected " + result.getException().getClass().getSimpleName() +
-                            " while executing task " + requestId + " (operation=" + operationName + ").", result.getException());
-            }
+            if (result.getException() != null)
+                throw toIOException(result.getException(), operationName, requestId);
 
             long localEnd = System.currentTimeMillis();
 
-            addLatency(localEnd - localStart, -1);
+            addLatency(operationName, localEnd - localStart, -1);
 
             if (!benchmarkModeEnabled)
                 // Collect and save/record metrics.
@@ -852,6 +1032,54 @@ else if (connectionSharingEnabled && Math.random() > (1.0 - connectionSharingPro
         return targetServer;
     }
 
+    /**
+     * Decide whether, as there is no TCP connection to the target deployment, a request should be issued via
+     * any available TCP connection rather than via HTTP.
+     *
+     * @param targetDeploymentTcp The deployment the TCP request was supposed to target.
+     * @param failedDueToConnectionLoss True if an earlier attempt of the request failed due to a lost connection.
+     */
+    private boolean shouldUseAnyTcpConnection(int targetDeploymentTcp, boolean failedDueToConnectionLoss) {
+        return failedDueToConnectionLoss || antiThrashingModeEnabled ||
+                (recentFailuresCache.asMap().containsKey(targetDeploymentTcp) && Math.random() <= issueHttpAfterFailureChance);
+    }
+
+    /**
+     * Try to find a TCP server with an active connection to any deployment.
+     * @return A TCP server with at least one active connection if one exists, otherwise null.
+     */
+    private UserServer tryGetAnyUserServer() {
+        // If our assigned server has at least one active connection, then we'll use it.
+        // Otherwise, we'll attempt to use another TCP server on this VM (if connection sharing is enabled).
+        if (tcpServer.getNumActiveConnections() > 0)
+            return tcpServer;
+
+        if (connectionSharingEnabled) {
+            // If it is enabled, then we do it 100% of the time due to anti-thrashing.
+            if (LOG.isTraceEnabled())
+                LOG.trace("Attempting to use Connection Sharing in conjunction with Anti-Thrashing/Fault Recovery mode.");
+            return serverAndInvokerManager.findServerWithAtLeastOneActiveConnection();
+        }
+
+        return null;
+    }
+
+    /**
+     * Convert an exception encountered by a NameNode while executing a file system operation to the exception
+     * thrown to the caller of the operation.
+     */
+    private static IOException toIOException(Throwable ex, String operationName, String requestId) {
+        LOG.error("NameNode encountered " + ex.getClass().getSimpleName() +
+                " while executing task " + requestId + " (operation=" + operationName + ").");
+
+        if (ex instanceof IOException)
+            return (IOException)ex;
+
+        // Return a "generic" IOException.
+        return new IOException("Encountered unexpected " + ex.getClass().getSimpleName() +
+                " while executing task " + requestId + " (operation=" + operationName + ").", ex);
+    }
+
     /**
      * Attempt to find an active connection to the appropriate deployment and issue a TCP request using
      * said connection. If no connection can be found, then throw an exception and fall back to HTTP.
@@ -911,8 +1139,7 @@ private Object trySubmitFsOperationViaTcp(int targetDeployment, String operation
             // that there may be many (10's or 100's) of requests that had targeted the crashed/reclaimed NameNode.
             // If all of these requests were to fall back to HTTP, then the FaaS platform may massively over-provision
             // NameNodes in that deployment due to the surge of requests.
-            if (targetServer == null && (failedDueToConnectionLoss || antiThrashingModeEnabled ||
-                    (recentFailuresCache.asMap().containsKey(targetDeploymentTcp) && Math.random() <= issueHttpAfterFailureChance))) {
+            if (targetServer == null && shouldUseAnyTcpConnection(targetDeploymentTcp, failedDueToConnectionLoss)) {
 
                 if (LOG.isTraceEnabled())
                     LOG.trace("Anti-thrashing mode is enabled or we recently experienced a crash/reclamation. " +
@@ -925,17 +1152,7 @@ private Object trySubmitFsOperationViaTcp(int targetDeployment, String operation
                 // request if we already know there are no available TCP connections. That being said, if we lose
                 // all TCP connections prior to issuing the request, then we'll just fall back to HTTP.
                 targetDeploymentTcp = -1;
-
-                // If our assigned server has at least one active connection, then we'll use it.
-                // Otherwise, we'll attempt to use another TCP server on this VM (if connection sharing is enabled).
-                if (tcpServer.getNumActiveConnections() > 0)
-                    targetServer = tcpServer;
-                else if (connectionSharingEnabled) {
-                    // If it is enabled, then we do it 100% of the time due to anti-thrashing.
-                    if (LOG.isTraceEnabled())
-                        LOG.trace("Attempting to use Connection Sharing in conjunction with Anti-Thrashing/Fault Recovery mode.");
-                    targetServer = serverAndInvokerManager.findServerWithAtLeastOneActiveConnection();
-                }
+                targetServer = tryGetAnyUserServer();
 
                 // Slightly different error state from the one below. In this case, we could not find a connection
                 // to the original target deployment, nor could we find a viable connection to ANY other deployments.
@@ -1024,8 +1241,7 @@ private Object submitOperationToNameNode(String operationName, ArgumentContainer
         String srcFileOrDirectory = null;
         if (srcArgument != null) {
             srcFileOrDirectory = (String)srcArgument;
-            targetDeployment = getDeploymentForPath(srcFileOrDirectory, operationName,
-                    numNormalAndWriteOnlyDeployments, numReadWriteDeployments);
+            targetDeployment = deploymentMapping.getDeployment(srcFileOrDirectory, operationName);
         }
 
         // If tcpEnabled is false, we don't even bother checking to see if we can issue a TCP request.
@@ -1098,7 +1314,7 @@ private JsonObject submitFsOperationViaHttp(int targetDeployment, String operati
 
         long endTime = System.currentTimeMillis();
 
-        addLatency(-1, endTime - startTime);
+        addLatency(operationName, -1, endTime - startTime);
 
         if (!benchmarkModeEnabled)
             createAndStoreOperationPerformed(response, operationName, requestId, startTime, endTime,
@@ -1107,17 +1323,7 @@ private JsonObject submitFsOperationViaHttp(int targetDeployment, String operati
         if (response.has(EXCEPTION)) {
             Exception ex = (Exception)
                     InvokerUtilities.base64StringToObject(response.getAsJsonPrimitive(EXCEPTION).getAsString());
-
-            LOG.error("NameNode encountered " + ex.getClass().getSimpleName() +
-                    " while executing task " + requestId + " (operation=" + operationName + ").");
-
-            if (ex instanceof FileNotFoundException)
-                throw (FileNotFoundException)ex;
-            else if (ex instanceof IOException)
-                throw (IOException)ex;
-            else // Throw a "generic" IOException.
-                throw new IOException("Encountered unexpected " + ex.getClass().getSimpleName() +
-                        " while executing task " + requestId + " (operation=" + operationName + ").", ex);
+            throw toIOException(ex, operationName, requestId);
         }
 
         return response;
@@ -1140,6 +1346,356 @@ private Object submitOperationToNameNode(String operationName, ArgumentContainer
         return this.submitOperationToNameNode(operationName, opArguments, false);
     }
 
+    /**
+     * Asynchronous counterpart of {@link #submitOperationToNameNode(String, ArgumentContainer, boolean, boolean)}.
+     * The operation goes through the same steps (TCP attempts with straggler resubmission, then HTTP with retries),
+     * but no thread waits on any of them, so a single thread can keep many operations in flight.
+     *
+     * @param operationName The name of the FS operation that the NameNode should perform.
+     * @param opArguments The arguments to be passed to the specified file system operation.
+     * @param subtreeOperation If true, then the timeout for requests is adjusted, as subtree operations can take
+     *                         a very long time, depending on the size of the subtree.
+     * @param writeOp Indicates whether we're performing a write operation.
+     *
+     * @return A future completed with the result extracted from the NameNode's response (see
+     * {@link #extractResultFromNameNode(Object)}), or completed exceptionally with the {@link IOException} that the
+     * synchronous API would have thrown. Dependent actions run in the common fork-join pool unless an executor is
+     * specified.
+     */
+    private CompletableFuture<Object> submitOperationToNameNodeAsync(String operationName,
+                                                                     ArgumentContainer opArguments,
+                                                                     boolean subtreeOperation, boolean writeOp) {
+        String srcFileOrDirectory = (String)opArguments.get(ServerlessNameNodeKeys.SRC);
+        int targetDeployment;
+        try {
+            targetDeployment = srcFileOrDirectory == null ? -1 :
+                    deploymentMapping.getDeployment(srcFileOrDirectory, operationName);
+        } catch (RuntimeException ex) {
+            CompletableFuture<Object> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+            return failed;
+        }
+
+        return submitOperationToNameNodeAsync(operationName, opArguments, subtreeOperation, writeOp,
+                srcFileOrDirectory, targetDeployment);
+    }
+
+    /**
+     * Variant of {@link #submitOperationToNameNodeAsync(String, ArgumentContainer, boolean, boolean)} that sends
+     * the operation to the given deployment rather than to the deployment of its target.
+     *
+     * @param srcFileOrDirectory The target file or directory, if any. Only used for logging and metrics.
+     * @param targetDeployment The deployment to which the operation is sent, or -1 for any deployment.
+     */
+    private CompletableFuture<Object> submitOperationToNameNodeAsync(String operationName,
+                                                                     ArgumentContainer opArguments,
+                                                                     boolean subtreeOperation, boolean writeOp,
+                                                                     String srcFileOrDirectory,
+                                                                     int targetDeployment) {
+        CompletableFuture<Object> response;
+        try {
+            response = new AsyncOperation(operationName, opArguments, subtreeOperation, writeOp,
+                    srcFileOrDirectory, targetDeployment).start();
+        } catch (RuntimeException ex) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(ex);
+        }
+
+        // Complete the caller's future off the threads that receive responses, so that dependent actions cannot
+        // hold up the processing of other responses.
+        return response.thenApplyAsync(this::extractResultFromNameNode);
+    }
+
+    /**
+     * A file system operation submitted via {@link #submitOperationToNameNodeAsync}.
+     *
+     * Each step of the operation is started when the previous one completes, instead of by a thread waiting on it:
+     * TCP requests are timed out by {@link #asyncScheduler}, and HTTP requests are retried by the invoker's
+     * scheduler. The steps of an operation never run concurrently, so its state needs no synchronization.
+     *
+     * Unlike the synchronous API, an exception reported by a NameNode via TCP completes the operation rather than
+     * causing it to be resubmitted via HTTP, as it would only be reported again.
+     */
+    private class AsyncOperation {
+        private final String operationName;
+        private final ArgumentContainer opArguments;
+        private final boolean subtreeOperation;
+        private final boolean writeOp;
+        private final String requestId = UUID.randomUUID().toString();
+
+        /**
+         * The target file or directory, if any.
+         */
+        private final String srcFileOrDirectory;
+
+        /**
+         * The deployment responsible for the target file or directory, or -1 if the operation has no target.
+         */
+        private final int targetDeployment;
+
+        /**
+         * Completed with the response from the NameNode once the operation is done.
+         */
+        private final CompletableFuture<Object> response = new CompletableFuture<>();
+
+        // State shared by the TCP requests of the operation.
+        private int targetDeploymentTcp;
+        private int numTcpRequestsAttempted = 0;
+        private boolean failedDueToConnectionLoss = false;
+
+        // State of the TCP server currently being used (see submitFsOperationViaTcp).
+        private UserServer targetServer;
+        private TcpUdpRequestPayload tcpRequestPayload;
+        private ExponentialBackOff exponentialBackOff;
+        private long backoffInterval;
+        private boolean stragglerResubmissionAlreadyOccurred;
+        private boolean wasResubmittedViaStragglerMitigation;
+        private long localStart;
+
+        AsyncOperation(String operationName, ArgumentContainer opArguments, boolean subtreeOperation,
+                       boolean writeOp, String srcFileOrDirectory, int targetDeployment) {
+            this.operationName = operationName;
+            this.opArguments = opArguments;
+            this.subtreeOperation = subtreeOperation;
+            this.writeOp = writeOp;
+            this.srcFileOrDirectory = srcFileOrDirectory;
+            this.targetDeployment = targetDeployment;
+
+            // Randomly select a deployment if there is no target.
+            this.targetDeploymentTcp = targetDeployment == -1 ? rng.nextInt(numReadWriteDeployments) :
+                    targetDeployment;
+        }
+
+        CompletableFuture<Object> start() {
+            if (tcpEnabled)
+                submitViaTcp();
+            else
+                submitViaHttp(false);
+
+            return response;
+        }
+
+        /**
+         * Find a TCP server to use for the next TCP attempt and issue the request with it. Fall back to HTTP if
+         * there is none, or if we have already made the maximum number of attempts.
+         */
+        private void submitViaTcp() {
+            if (numTcpRequestsAttempted >= maxNumTcpAttempts) {
+                LOG.error("Failed to successfully issue a TCP/UDP request for task " + requestId + " after " +
+                        maxNumTcpAttempts + " attempts. Falling back to HTTP instead.");
+                submitViaHttp(true);
+                return;
+            }
+
+            targetServer = tryGetUserServer(targetDeploymentTcp);
+            if (targetServer == null && shouldUseAnyTcpConnection(targetDeploymentTcp, failedDueToConnectionLoss)) {
+                targetDeploymentTcp = -1;
+                targetServer = tryGetAnyUserServer();
+            }
+
+            if (targetServer == null) {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("No TCP/UDP connection to deployment " + targetDeploymentTcp + " (src: " +
+                            srcFileOrDirectory + "). RequestID: " + requestId);
+                submitViaHttp(true);
+                return;
+            }
+
+            tcpRequestPayload = new TcpUdpRequestPayload(requestId, operationName, consistencyProtocolEnabled,
+                    OpenWhiskHandler.getLogLevelIntFromString(serverlessFunctionLogLevel),
+                    opArguments.getAllArguments(), benchmarkModeEnabled, serverAndInvokerManager.getActiveTcpPorts(),
+                    udpEnabled ? serverAndInvokerManager.getActiveUdpPorts() : null);
+            exponentialBackOff = new ExponentialBackOff.Builder()
+                    .setMaximumRetries(5)
+                    .setInitialIntervalMillis(1000)
+                    .setMaximumIntervalMillis(3500)
+                    .setRandomizationFactor(0.50)
+                    .setMultiplier(2.0)
+                    .build();
+            backoffInterval = exponentialBackOff.getBackOffInMillis();
+            stragglerResubmissionAlreadyOccurred = false;
+            wasResubmittedViaStragglerMitigation = false;
+
+            issueTcpRequest();
+        }
+
+        /**
+         * Issue the TCP request to the current TCP server, and handle the response once it arrives or the request
+         * times out.
+         */
+        private void issueTcpRequest() {
+            if (backoffInterval < 0) {
+                LOG.error("Failed to complete request " + requestId + " for operation " + operationName + " via TCP.");
+                numTcpRequestsAttempted++;
+                submitViaTcp();
+                return;
+            }
+
+            long requestTimeout = calculateRequestTimeout(
+                    stragglerResubmissionAlreadyOccurred, backoffInterval, subtreeOperation);
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug((targetServer.isUdpEnabled() ? "UDP" : "TCP") + " (async). OpName=" + operationName +
+                        ". RequestID=" + requestId + ". Attempt " + exponentialBackOff.getNumberOfRetries() + "/" +
+                        exponentialBackOff.getMaximumRetries() + ". Target='" + srcFileOrDirectory +
+                        "'. TargetDeployment=" + targetDeploymentTcp + ". Timeout=" + requestTimeout + " ms.");
+            }
+
+            localStart = System.currentTimeMillis();
+            CompletableFuture<Object> tcpResponse;
+            try {
+                tcpResponse = targetServer.issueTcpRequestAsync(targetDeploymentTcp, false, requestId,
+                        tcpRequestPayload, !stragglerResubmissionAlreadyOccurred, writeOp);
+            } catch (NoConnectionAvailableException ex) {
+                submitViaHttp(true);
+                return;
+            } catch (IOException ex) {
+                numTcpRequestsAttempted++;
+                submitViaTcp();
+                return;
+            } catch (ExecutionException | InterruptedException ex) {
+                LOG.error("Exception encountered while invoking TCP request " + requestId + " for operation " +
+                        operationName + ":", ex);
+
+                backoffInterval = exponentialBackOff.getBackOffInMillis();
+                issueTcpRequest();
+                return;
+            }
+
+            ScheduledFuture<?> timeout = asyncScheduler.schedule(
+                    () -> tcpResponse.completeExceptionally(new TimeoutException()),
+                    requestTimeout, TimeUnit.MILLISECONDS);
+
+            tcpResponse.whenCompleteAsync((result, ex) -> {
+                timeout.cancel(false);
+
+                try {
+                    if (ex == null)
+                        handleTcpResponse(result);
+                    else
+                        handleTcpTimeout();
+                } catch (RuntimeException runtimeException) {
+                    response.completeExceptionally(runtimeException);
+                }
+            });
+        }
+
+        /**
+         * Handle a TCP request that timed out, resubmitting it via straggler mitigation or after backing off.
+         */
+        private void handleTcpTimeout() {
+            // This mirrors the handling of TimeoutException in submitFsOperationViaTcp.
+            if (stragglerMitigationEnabled) {
+                if (stragglerResubmissionAlreadyOccurred) {
+                    LOG.error("Timed out while waiting for " + (targetServer.isUdpEnabled() ? "UDP" : "TCP") +
+                            " response for request " + requestId + ".");
+                    LOG.error("Already submitted a straggler mitigation request. Counting this as a 'real' timeout.");
+                    stragglerResubmissionAlreadyOccurred = false;
+                } else {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Will resubmit request " + requestId + " shortly via straggler mitigation...");
+                    stragglerResubmissionAlreadyOccurred = true;
+                    wasResubmittedViaStragglerMitigation = true;
+
+                    // If this isn't a write operation, then make the NN redo it so that it may go faster.
+                    if (!ServerlessNameNode.isWriteOperation(operationName))
+                        tcpRequestPayload.getFsOperationArguments().put(FORCE_REDO, true);
+                    issueTcpRequest();
+                    return;
+                }
+            } else {
+                LOG.error("Timed out while waiting for TCP response for request " + requestId + ".");
+            }
+
+            backoffInterval = exponentialBackOff.getBackOffInMillis();
+            issueTcpRequest();
+        }
+
+        /**
+         * Handle a response received via TCP.
+         */
+        private void handleTcpResponse(Object tcpResponse) {
+            // This only ever happens when the request is cancelled due to connection loss. Retry using TCP before
+            // falling back to HTTP.
+            if (tcpResponse instanceof CancelledResult) {
+                LOG.error("Request " + requestId + " was cancelled due to connection loss.");
+                opArguments.addPrimitive(FORCE_REDO, true);
+                failedDueToConnectionLoss = true;
+                numTcpRequestsAttempted++;
+                submitViaTcp();
+                return;
+            }
+
+            NameNodeResult result = (NameNodeResult)tcpResponse;
+
+            if (result.isDuplicate()) {
+                LOG.warn("Received 'DUPLICATE REQUEST' notification via TCP for request " + requestId + "...");
+                LOG.warn("Resubmitting request " + requestId + " with FORCE_REDO...");
+
+                tcpRequestPayload.getFsOperationArguments().put(FORCE_REDO, true);
+                issueTcpRequest();
+                return;
+            }
+
+            if (result.getException() != null) {
+                response.completeExceptionally(toIOException(result.getException(), operationName, requestId));
+                return;
+            }
+
+            long localEnd = System.currentTimeMillis();
+
+            addLatency(operationName, localEnd - localStart, -1);
+
+            if (!benchmarkModeEnabled)
+                createAndStoreOperationPerformed((NameNodeResultWithMetrics)result, operationName, requestId,
+                        localStart, localEnd, wasResubmittedViaStragglerMitigation, srcFileOrDirectory);
+
+            response.complete(result);
+        }
+
+        /**
+         * Issue the request via HTTP.
+         *
+         * @param tcpTriedAndFailed Indicates whether we tried issuing this request by TCP first.
+         */
+        private void submitViaHttp(boolean tcpTriedAndFailed) {
+            if (LOG.isTraceEnabled())
+                LOG.trace("Issuing HTTP request for request " + requestId + "(op=" + operationName + ")");
+
+            long startTime = System.currentTimeMillis();
+
+            serverlessInvoker.issueHttpRequestWithRetriesAsync(operationName, dfsClient.serverlessEndpoint, null,
+                    opArguments, requestId, targetDeployment, subtreeOperation).whenComplete((httpResponse, ex) -> {
+                if (ex != null) {
+                    response.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ?
+                            ex.getCause() : ex);
+                    return;
+                }
+
+                try {
+                    long endTime = System.currentTimeMillis();
+
+                    addLatency(operationName, -1, endTime - startTime);
+
+                    if (!benchmarkModeEnabled)
+                        createAndStoreOperationPerformed(httpResponse, operationName, requestId, startTime, endTime,
+                                tcpTriedAndFailed, srcFileOrDirectory);
+
+                    if (httpResponse.has(EXCEPTION)) {
+                        Exception nameNodeException = (Exception)InvokerUtilities.base64StringToObject(
+                                httpResponse.getAsJsonPrimitive(EXCEPTION).getAsString());
+                        response.completeExceptionally(toIOException(nameNodeException, operationName, requestId));
+                        return;
+                    }
+
+                    response.complete(httpResponse);
+                } catch (RuntimeException runtimeException) {
+                    response.completeExceptionally(runtimeException);
+                }
+            });
+        }
+    }
+
     /**
      * Return the set of IDs of all NameNodes for which there is at least one
      * server with an active connection to the NameNode.
@@ -1220,6 +1776,9 @@ private void createAndStoreOperationPerformed(JsonObject response, String operat
                     this.dfsClient.clientName, numGarbageCollections, garbageCollectionTime, targetPath,
                     this.tcpServer != null ? this.tcpServer.getTcpPort() : -1);
             operationsPerformed.put(requestId, operationPerformed);
+
+            if (hotDirectoryDetector != null)
+                hotDirectoryDetector.record(operationPerformed);
         } catch (NullPointerException ex) {
             LOG.error("Unexpected NullPointerException encountered while creating OperationPerformed from JSON response:", ex);
             LOG.error("Response: " + response);
@@ -1263,6 +1822,9 @@ private void createAndStoreOperationPerformed(NameNodeResultWithMetrics result,
                 this.dfsClient.clientName, numGarbageCollections, garbageCollectionTime, targetPath,
                 this.tcpServer != null ? this.tcpServer.getTcpPort() : -1);
         operationsPerformed.put(requestId, operationPerformed);
+
+        if (hotDirectoryDetector != null)
+            hotDirectoryDetector.record(operationPerformed);
     }
 
     /**
@@ -1510,7 +2072,7 @@ public void printLatencyStatistics(int choice) {
     }
 
     /**
-     * Print the average, min, max, std. dev of latency.
+     * Print the average, min, max, and tail percentiles of latency.
      *
      * If choice <= 0, prints both TCP and HTTP.
      * If choice == 1, prints just TCP.
@@ -1520,53 +2082,108 @@ public void printLatencyStatistics(int choice) {
      */
     public void printLatencyStatisticsDetailed(int choice) {
         if (choice <= 0) {
-            System.out.println("AVG Latency (ms): Both: " + latency.getMean() + ", TCP: " + latencyTcp.getMean() +
-                    ", HTTP: " + latencyHttp.getMean() + " ");
-            System.out.println("Min Latency (ms): Both: " + latency.getMin() + ", TCP: " + latencyTcp.getMin() +
-                    ", HTTP: " + latencyHttp.getMin() + " ");
-            System.out.println("Max Latency (ms): Both: " + latency.getMax() + ", TCP: " + latencyTcp.getMax() +
-                    ", HTTP: " + latencyHttp.getMax() + "");
-            System.out.println("STD DEV Latency: Both: " + latency.getStandardDeviation() + ", TCP: " +
-                    latencyTcp.getStandardDeviation() + ", HTTP: " + latencyHttp.getStandardDeviation() + "");
+            System.out.println("AVG Latency (ms): Both: " + latencyHistogram.getMeanMillis() + ", TCP: " +
+                    latencyHistogramTcp.getMeanMillis() + ", HTTP: " + latencyHistogramHttp.getMeanMillis() + " ");
+            System.out.println("Min Latency (ms): Both: " + latencyHistogram.getMinMillis() + ", TCP: " +
+                    latencyHistogramTcp.getMinMillis() + ", HTTP: " + latencyHistogramHttp.getMinMillis() + " ");
+            System.out.println("Max Latency (ms): Both: " + latencyHistogram.getMaxMillis() + ", TCP: " +
+                    latencyHistogramTcp.getMaxMillis() + ", HTTP: " + latencyHistogramHttp.getMaxMillis() + "");
+            System.out.println("Latency (Both): " + latencyHistogram);
+            System.out.println("Latency (TCP): " + latencyHistogramTcp);
+            System.out.println("Latency (HTTP): " + latencyHistogramHttp);
         } else if (choice == 1) {
-            LOG.info("AVG Latency (TCP): " + latencyTcp.getMean());
-            LOG.info("MIN Latency (TCP): " + latencyTcp.getMin());
-            LOG.info("MAX Latency (TCP): " + latencyTcp.getMax());
-            LOG.info("STD DEV Latency (TCP): " + latencyTcp.getStandardDeviation());
+            LOG.info("Latency (TCP): " + latencyHistogramTcp);
+            for (Map.Entry<String, LatencyHistogram> entry : operationLatencyTcp.entrySet())
+                LOG.info("Latency (TCP, " + entry.getKey() + "): " + entry.getValue());
         } else {
-            LOG.info("AVG Latency (HTTP): " + latencyHttp.getMean());
-            LOG.info("MIN Latency (HTTP): " + latencyHttp.getMin());
-            LOG.info("MAX Latency (HTTP): " + latencyHttp.getMax());
-            LOG.info("STD DEV Latency (HTTP): " + latencyHttp.getStandardDeviation());
+            LOG.info("Latency (HTTP): " + latencyHistogramHttp);
+            for (Map.Entry<String, LatencyHistogram> entry : operationLatencyHttp.entrySet())
+                LOG.info("Latency (HTTP, " + entry.getKey() + "): " + entry.getValue());
         }
     }
 
+    /**
+     * Return a copy of the histogram of the latency of all (TCP & HTTP) requests.
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram.copy();
+    }
+
+    /**
+     * Return a copy of the histogram of the latency of TCP requests.
+     */
+    public LatencyHistogram getLatencyHistogramTcp() {
+        return latencyHistogramTcp.copy();
+    }
+
+    /**
+     * Return a copy of the histogram of the latency of HTTP requests.
+     */
+    public LatencyHistogram getLatencyHistogramHttp() {
+        return latencyHistogramHttp.copy();
+    }
+
+    /**
+     * Return a histogram of the most recent (TCP & HTTP) latencies, as used for straggler mitigation.
+     */
+    public LatencyHistogram getRecentLatencyHistogram() {
+        return recentLatency.getSnapshot();
+    }
+
+    /**
+     * Return copies of the per-operation histograms of the latency of TCP requests, keyed by operation name.
+     */
+    public Map<String, LatencyHistogram> getOperationLatencyHistogramsTcp() {
+        return copyHistograms(operationLatencyTcp);
+    }
+
+    /**
+     * Return copies of the per-operation histograms of the latency of HTTP requests, keyed by operation name.
+     */
+    public Map<String, LatencyHistogram> getOperationLatencyHistogramsHttp() {
+        return copyHistograms(operationLatencyHttp);
+    }
+
+    private static Map<String, LatencyHistogram> copyHistograms(Map<String, LatencyHistogram> histograms) {
+        Map<String, LatencyHistogram> copies = new HashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet())
+            copies.put(entry.getKey(), entry.getValue().copy());
+        return copies;
+    }
+
     /**
      * Return a copy of the latency (TCP & HTTP) DescriptiveStatistics object.
+     *
+     * @deprecated The statistics are only filled if {@link DFSConfigKeys#SERVERLESS_LATENCY_RAW_SAMPLES} is
+     * enabled. Use {@link #getLatencyHistogram()} instead.
      */
+    @Deprecated
     public DescriptiveStatistics getLatencyStatistics() {
         return latency.copy();
     }
 
     /**
-     * Return a copy of the latency (TCP & HTTP) DescriptiveStatistics object.
+     * Return a copy of the latency (HTTP) DescriptiveStatistics object.
+     *
+     * @deprecated The statistics are only filled if {@link DFSConfigKeys#SERVERLESS_LATENCY_RAW_SAMPLES} is
+     * enabled. Use {@link #getLatencyHistogramHttp()} instead.
      */
+    @Deprecated
     public DescriptiveStatistics getLatencyHttpStatistics() {
         return latencyHttp.copy();
     }
 
     /**
-     * Return a copy of the latency (TCP & HTTP) DescriptiveStatistics object.
+     * Return a copy of the latency (TCP) DescriptiveStatistics object.
+     *
+     * @deprecated The statistics are only filled if {@link DFSConfigKeys#SERVERLESS_LATENCY_RAW_SAMPLES} is
+     * enabled. Use {@link #getLatencyHistogramTcp()} instead.
      */
+    @Deprecated
     public DescriptiveStatistics getLatencyTcpStatistics() {
         return latencyTcp.copy();
     }
 
-    /**
-     * Return a copy of the moving window latency (TCP & HTTP) DescriptiveStatistics object.
-     */
-    public DescriptiveStatistics getLatencyWithWindowStatistics() { return this.latencyWithWindow.copy(); }
-
     /**
      * Clear both HTTP and TCP latency values.
      */
@@ -1574,18 +2191,31 @@ public void clearLatencyValues() {
         this.latency.clear();
         this.latencyHttp.clear();
         this.latencyTcp.clear();
-        this.latencyWithWindow.clear();
+        this.latencyHistogram.reset();
+        this.latencyHistogramHttp.reset();
+        this.latencyHistogramTcp.reset();
+        this.operationLatencyHttp.clear();
+        this.operationLatencyTcp.clear();
+        this.recentLatency.reset();
     }
 
     /**
      * Clear HTTP latency values.
      */
-    public void clearLatencyValuesHttp() { this.latencyHttp.clear();}
+    public void clearLatencyValuesHttp() {
+        this.latencyHttp.clear();
+        this.latencyHistogramHttp.reset();
+        this.operationLatencyHttp.clear();
+    }
 
     /**
      * Clear TCP latency values.
      */
-    public void clearLatencyValuesTcp() { this.latencyTcp.clear();}
+    public void clearLatencyValuesTcp() {
+        this.latencyTcp.clear();
+        this.latencyHistogramTcp.reset();
+        this.operationLatencyTcp.clear();
+    }
 
     /**
      * Shuts down this client. Currently, the only steps taken during shut-down is the stopping of the TCP server.
@@ -1606,6 +2236,282 @@ public JsonObject latencyBenchmark(String connectionUrl, String dataSource, Stri
         throw new UnsupportedOperationException("Function has not yet been implemented.");
     }
 
+    /*
+     * Asynchronous variants of the most common metadata operations. These take the same arguments as their
+     * ClientProtocol counterparts, but return immediately. The returned futures are completed with the same results,
+     * or completed exceptionally with the IOExceptions the synchronous variants would have thrown.
+     */
+
+    /**
+     * Asynchronous variant of {@link #create(String, FsPermission, String, EnumSetWritable, boolean, short, long,
+     * CryptoProtocolVersion[], EncodingPolicy)}.
+     */
+    public CompletableFuture<HdfsFileStatus> createAsync(String src, FsPermission masked,
+                                                         EnumSetWritable<CreateFlag> flag, boolean createParent,
+                                                         short replication, long blockSize, EncodingPolicy policy) {
+        ArgumentContainer opArguments;
+        try {
+            opArguments = getCreateArguments(src, masked, flag, createParent, blockSize, policy);
+        } catch (IOException ex) {
+            CompletableFuture<HdfsFileStatus> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+            return failed;
+        }
+
+        return submitOperationToNameNodeAsync("create", opArguments, true, false)
+                .thenApply(result -> (HdfsFileStatus)result);
+    }
+
+    /**
+     * Asynchronous variant of {@link #mkdirs(String, FsPermission, boolean)}.
+     */
+    public CompletableFuture<Boolean> mkdirsAsync(String src, FsPermission masked, boolean createParent) {
+        ArgumentContainer opArguments = new ArgumentContainer();
+
+        opArguments.put(ServerlessNameNodeKeys.SRC, src);
+        opArguments.put("masked", masked);
+        opArguments.put("createParent", createParent);
+
+        return submitOperationToNameNodeAsync("mkdirs", opArguments, false, true).thenApply(result -> {
+            if (result == null)
+                throw new CompletionException(new IOException("Received null response for mkdirs operation..."));
+            return (Boolean)result;
+        });
+    }
+
+    /**
+     * Asynchronous variant of {@link #delete(String, boolean)}.
+     */
+    public CompletableFuture<Boolean> deleteAsync(String src, boolean recursive) {
+        ArgumentContainer opArguments = new ArgumentContainer();
+
+        opArguments.put(ServerlessNameNodeKeys.SRC, src);
+        opArguments.put("recursive", recursive);
+
+        return submitOperationToNameNodeAsync("delete", opArguments, true, true)
+                .thenApply(result -> result != null && (Boolean)result);
+    }
+
+    /**
+     * Asynchronous variant of {@link #rename(String, String)}.
+     */
+    public CompletableFuture<Boolean> renameAsync(String src, String dst) {
+        ArgumentContainer opArguments = new ArgumentContainer();
+
+        opArguments.put(ServerlessNameNodeKeys.SRC, src);
+        opArguments.put("dst", dst);
+
+        Integer[] optionsArr = new Integer[1];
+        optionsArr[0] = 0; // 0 is the Options.Rename ordinal/value for `NONE`
+        opArguments.put("options", optionsArr);
+
+        return submitOperationToNameNodeAsync("rename", opArguments, true, true).thenApply(result -> true);
+    }
+
+    /**
+     * Asynchronous variant of {@link #getFileInfo(String)}.
+     */
+    public CompletableFuture<HdfsFileStatus> getFileInfoAsync(String src) {
+        ArgumentContainer opArguments = new ArgumentContainer();
+
+        opArguments.put(ServerlessNameNodeKeys.SRC, src);
+
+        return submitOperationToNameNodeAsync("getFileInfo", opArguments, false, false)
+                .thenApply(result -> (HdfsFileStatus)result);
+    }
+
+    /**
+     * Asynchronous variant of {@link #getListing(String, byte[], boolean)}.
+     */
+    public CompletableFuture<DirectoryListing> getListingAsync(String src, byte[] startAfter, boolean needLocation) {
+        ArgumentContainer opArguments = new ArgumentContainer();
+
+        opArguments.put(ServerlessNameNodeKeys.SRC, src);
+        opArguments.put("startAfter", startAfter);
+        opArguments.put("needLocation", needLocation);
+
+        return submitOperationToNameNodeAsync("getListing", opArguments, false, false)
+                .thenApply(result -> (DirectoryListing)result);
+    }
+
+    /*
+     * Batch variants of common metadata operations. These perform an operation on many paths with a few requests:
+     * the paths are grouped by the deployment they are mapped to, and each group is sent to its deployment in
+     * requests of up to `maxBatchSize` paths, all of which are in flight at once. The NameNode performs the operation
+     * on each path of a request separately, so a failure on one path does not affect the others. If the operation
+     * fails on some paths, then a BatchOperationException with the results for the other paths is thrown once all
+     * the requests are done.
+     */
+
+    /**
+     * Batch variant of {@link #getFileInfo(String)}.
+     *
+     * @return The file status of each path, in order, or null for the paths that do not exist.
+     */
+    public HdfsFileStatus[] getFileInfoBatch(String[] srcs) throws IOException {
+        Serializable[] results = submitBatchOperationToNameNode("getFileInfoBatch", srcs, new ArgumentContainer(),
+                false);
+
+        HdfsFileStatus[] statuses = new HdfsFileStatus[results.length];
+        for (int i = 0; i < results.length; i++)
+            statuses[i] = (HdfsFileStatus)results[i];
+
+        return statuses;
+    }
+
+    /**
+     * Batch variant of {@link #mkdirs(String, FsPermission, boolean)}.
+     *
+     * @return The result of the operation on each path, in order.
+     */
+    public boolean[] mkdirsBatch(String[] srcs, FsPermission masked, boolean createParent) throws IOException {
+        ArgumentContainer sharedArguments = new ArgumentContainer();
+
+        sharedArguments.put("masked", masked);
+        sharedArguments.put("createParent", createParent);
+
+        return toBooleans(submitBatchOperationToNameNode("mkdirsBatch", srcs, sharedArguments, true));
+    }
+
+    /**
+     * Batch variant of {@link #create(String, FsPermission, String, EnumSetWritable, boolean, short, long,
+     * CryptoProtocolVersion[], EncodingPolicy)}.
+     *
+     * @return The file status of each created file, in order.
+     */
+    public HdfsFileStatus[] createBatch(String[] srcs, FsPermission masked, EnumSetWritable<CreateFlag> flag,
+                                        boolean createParent, long blockSize, EncodingPolicy policy)
+            throws IOException {
+        ArgumentContainer sharedArguments = getCreateArguments(null, masked, flag, createParent, blockSize, policy);
+
+        Serializable[] results = submitBatchOperationToNameNode("createBatch", srcs, sharedArguments, false);
+
+        HdfsFileStatus[] statuses = new HdfsFileStatus[results.length];
+        for (int i = 0; i < results.length; i++)
+            statuses[i] = (HdfsFileStatus)results[i];
+
+        return statuses;
+    }
+
+    /**
+     * Batch variant of {@link #delete(String, boolean)}.
+     *
+     * @return The result of the operation on each path, in order.
+     */
+    public boolean[] deleteBatch(String[] srcs, boolean recursive) throws IOException {
+        ArgumentContainer sharedArguments = new ArgumentContainer();
+
+        sharedArguments.put("recursive", recursive);
+
+        return toBooleans(submitBatchOperationToNameNode("deleteBatch", srcs, sharedArguments, true));
+    }
+
+    private static boolean[] toBooleans(Serializable[] results) {
+        boolean[] booleans = new boolean[results.length];
+        for (int i = 0; i < results.length; i++)
+            booleans[i] = results[i] != null && (Boolean)results[i];
+
+        return booleans;
+    }
+
+    /**
+     * Perform a batch operation on the given paths. See the comment above {@link #getFileInfoBatch(String[])}.
+     *
+     * @param operationName The name of the batch operation that the NameNodes should perform.
+     * @param srcs The paths on which to perform the operation.
+     * @param sharedArguments The arguments of the operation other than the paths.
+     * @param writeOp Indicates whether we're performing a write operation.
+     *
+     * @return The result of the operation on each path, in order.
+     *
+     * @throws BatchOperationException If the operation failed on some paths.
+     */
+    private Serializable[] submitBatchOperationToNameNode(String operationName, String[] srcs,
+                                                          ArgumentContainer sharedArguments, boolean writeOp)
+            throws IOException {
+        // Group the indices of the paths by the deployment each path is mapped to. The batch operation is routed like
+        // the corresponding single-path operation, as both are write operations or neither is.
+        Map<Integer, List<Integer>> indicesByDeployment = new HashMap<>();
+        for (int i = 0; i < srcs.length; i++)
+            indicesByDeployment.computeIfAbsent(deploymentMapping.getDeployment(srcs[i], operationName),
+                    deployment -> new ArrayList<>()).add(i);
+
+        List<int[]> requestIndices = new ArrayList<>();
+        List<CompletableFuture<Object>> requests = new ArrayList<>();
+        for (Map.Entry<Integer, List<Integer>> group : indicesByDeployment.entrySet()) {
+            List<Integer> indices = group.getValue();
+
+            for (int start = 0; start < indices.size(); start += maxBatchSize) {
+                int[] chunk = new int[Math.min(maxBatchSize, indices.size() - start)];
+                String[] chunkSrcs = new String[chunk.length];
+                for (int j = 0; j < chunk.length; j++) {
+                    chunk[j] = indices.get(start + j);
+                    chunkSrcs[j] = srcs[chunk[j]];
+                }
+
+                ArgumentContainer opArguments = new ArgumentContainer();
+                for (Map.Entry<String, Object> argument : sharedArguments.getAllArguments().entrySet())
+                    opArguments.put(argument.getKey(), argument.getValue());
+                opArguments.put(ServerlessNameNodeKeys.SRCS, chunkSrcs);
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Submitting " + operationName + " operation on " + chunk.length +
+                            " path(s) to deployment " + group.getKey() + ".");
+
+                // Use the longer timeouts of subtree operations, as a batch may take a while to process.
+                requestIndices.add(chunk);
+                requests.add(submitOperationToNameNodeAsync(operationName, opArguments, true, writeOp,
+                        null, group.getKey()));
+            }
+        }
+
+        Serializable[] results = new Serializable[srcs.length];
+        IOException[] failures = new IOException[srcs.length];
+        int numFailures = 0;
+        IOException firstFailure = null;
+        for (int r = 0; r < requests.size(); r++) {
+            int[] chunk = requestIndices.get(r);
+
+            List<Serializable> chunkResults = null;
+            IOException requestFailure = null;
+            try {
+                chunkResults = (List<Serializable>)requests.get(r).get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + operationName + " operation.");
+            } catch (ExecutionException ex) {
+                requestFailure = ex.getCause() instanceof IOException ? (IOException)ex.getCause() :
+                        new IOException("Exception encountered while submitting operation " + operationName +
+                                " to NameNode.", ex.getCause());
+            }
+
+            for (int j = 0; j < chunk.length; j++) {
+                IOException failure = requestFailure;
+                if (failure == null) {
+                    Serializable result = chunkResults.get(j);
+                    if (result instanceof NameNodeException) {
+                        NameNodeException nameNodeException = (NameNodeException)result;
+                        failure = new RemoteException(nameNodeException.getTrueExceptionName(),
+                                nameNodeException.getMessage()).unwrapRemoteException();
+                    } else {
+                        results[chunk[j]] = result;
+                    }
+                }
+
+                if (failure != null) {
+                    failures[chunk[j]] = failure;
+                    if (numFailures++ == 0)
+                        firstFailure = failure;
+                }
+            }
+        }
+
+        if (numFailures > 0)
+            throw new BatchOperationException(results, failures, numFailures, firstFailure);
+
+        return results;
+    }
+
     @Override
     public LocatedBlocks getBlockLocations(String src, long offset, long length) throws IOException {
         LocatedBlocks locatedBlocks = null;
@@ -1684,7 +2590,31 @@ public HdfsFileStatus create(String src, FsPermission masked, String clientName,
         // format for the Serverless NameNode.
         HdfsFileStatus stat = null;
 
-        // Arguments for the 'create' filesystem operation.
+        ArgumentContainer opArguments = getCreateArguments(src, masked, flag, createParent, blockSize, policy);
+
+        Object responseFromNN;
+        try {
+            responseFromNN = submitOperationToNameNode("create", opArguments, true);
+        } catch (ExecutionException | InterruptedException ex) {
+            LOG.error("Exception encountered while submitting operation create to NameNode:", ex);
+            throw new IOException("Exception encountered while submitting operation create to NameNode.");
+        }
+
+        // Extract the result from the Json response.
+        // If there's an exception, then it will be logged by this function.
+        Object result = extractResultFromNameNode(responseFromNN);
+        if (result != null)
+            stat = (HdfsFileStatus)result;
+
+        return stat;
+    }
+
+    /**
+     * Prepare the arguments for the 'create' file system operation.
+     */
+    private ArgumentContainer getCreateArguments(String src, FsPermission masked, EnumSetWritable<CreateFlag> flag,
+                                                 boolean createParent, long blockSize, EncodingPolicy policy)
+            throws IOException {
         ArgumentContainer opArguments = new ArgumentContainer();
 
         opArguments.put(ServerlessNameNodeKeys.SRC, src);
@@ -1712,21 +2642,7 @@ public HdfsFileStatus create(String src, FsPermission masked, String clientName,
             opArguments.put("targetReplication", policy.getTargetReplication());
         }
 
-        Object responseFromNN;
-        try {
-            responseFromNN = submitOperationToNameNode("create", opArguments, true);
-        } catch (ExecutionException | InterruptedException ex) {
-            LOG.error("Exception encountered while submitting operation create to NameNode:", ex);
-            throw new IOException("Exception encountered while submitting operation create to NameNode.");
-        }
-
-        // Extract the result from the Json response.
-        // If there's an exception, then it will be logged by this function.
-        Object result = extractResultFromNameNode(responseFromNN);
-        if (result != null)
-            stat = (HdfsFileStatus)result;
-
-        return stat;
+        return opArguments;
     }
 
     @Override
@@ -19,16 +19,27 @@
  */
 public class ServerlessUtilities {
     private static final String[] WRITE_OP_VALUES =
-            new String[] { "create", "delete", "rename", "rename2", "complete", "append" };
+            new String[] { "create", "delete", "rename", "rename2", "complete", "append", "createBatch", "deleteBatch" };
 
     /**
      * Names of all supported write operations.
      */
     protected static final Set<String> WRITE_OPS = new HashSet<>(Arrays.asList(WRITE_OP_VALUES));
 
+    /**
+     * Return true if the FS operation with the given name modifies the namespace and may therefore be sent to a
+     * write-only deployment.
+     */
+    public static boolean isWriteOperation(String opName) {
+        return opName != null && WRITE_OPS.contains(opName);
+    }
+
     /**
      * Return the INode-NN mapping cache entry for the given file or directory.
      *
+     * This computes the original ("md5") placement. Routing should normally go through a {@link DeploymentRouter},
+     * which supports both placements and memoizes its results.
+     *
      * This function returns -1 if no such entry exists.
      * @param fileOrDirectory The file or directory in question.
      * @param opName The name of the FS operation to be performed.
@@ -40,7 +51,7 @@ public class ServerlessUtilities {
     public static int getDeploymentForPath(String fileOrDirectory, String opName,
                                            int numDeployments,
                                            int numReadWriteDeployments) {
-        if (WRITE_OPS.contains(opName) && numDeployments != numReadWriteDeployments) {
+        if (isWriteOperation(opName) && numDeployments != numReadWriteDeployments) {
             int numWriteDeployments = numDeployments - numReadWriteDeployments;
 
             // This will generate a number between [0, numWriteDeployments).
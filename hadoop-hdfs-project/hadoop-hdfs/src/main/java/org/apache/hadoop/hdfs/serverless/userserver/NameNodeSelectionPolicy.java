@@ -0,0 +1,65 @@
+package org.apache.hadoop.hdfs.serverless.userserver;
+
+import java.util.List;
+
+/**
+ * Chooses which NameNode of a deployment receives a TCP/UDP request, given the NameNodes of that deployment to which
+ * the client currently has a connection.
+ *
+ * The policy is selected with {@link org.apache.hadoop.hdfs.DFSConfigKeys#SERVERLESS_TCP_NAMENODE_SELECTION_POLICY}.
+ */
+public interface NameNodeSelectionPolicy {
+    String RANDOM = "random";
+    String POWER_OF_TWO_CHOICES = "power-of-two-choices";
+    String PARENT_PATH_HASH = "parent-path-hash";
+
+    /**
+     * A NameNode that a request may be sent to, along with what the client knows about its current load.
+     */
+    interface Candidate {
+        /**
+         * The unique ID of the NameNode.
+         */
+        long getNameNodeId();
+
+        /**
+         * The number of requests sent to the NameNode by this client that have not been answered yet.
+         */
+        int getNumInFlight();
+
+        /**
+         * The moving average of the time it took the NameNode to answer this client's requests, in milliseconds.
+         * Zero if the NameNode has not answered any requests yet.
+         */
+        double getLatencyEwmaMillis();
+    }
+
+    /**
+     * Choose the NameNode to which a request is sent.
+     *
+     * @param candidates The NameNodes to choose from. Never empty.
+     * @param path The path targeted by the request, or null if the request does not target a path.
+     * @return One of the candidates.
+     */
+    <T extends Candidate> T select(List<T> candidates, String path);
+
+    /**
+     * Create the policy with the given name.
+     *
+     * @throws IllegalArgumentException If there is no policy with the given name.
+     */
+    static NameNodeSelectionPolicy create(String name) {
+        switch (name) {
+            case RANDOM:
+                return new RandomSelectionPolicy();
+            case POWER_OF_TWO_CHOICES:
+                return new PowerOfTwoChoicesSelectionPolicy();
+            case PARENT_PATH_HASH:
+                return new ParentPathHashSelectionPolicy();
+            default:
+                throw new IllegalArgumentException("Unknown NameNode selection policy '" + name +
+                        "'. Valid policies are '" + RANDOM + "', '" + POWER_OF_TWO_CHOICES + "' and '" +
+                        PARENT_PATH_HASH + "'.");
+        }
+    }
+}
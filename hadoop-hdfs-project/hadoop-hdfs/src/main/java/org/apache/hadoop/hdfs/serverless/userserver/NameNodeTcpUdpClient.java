@@ -17,6 +17,8 @@
 import org.apache.hadoop.hdfs.serverless.consistency.ConsistencyProtocol;
 import org.apache.hadoop.hdfs.serverless.exceptions.NameNodeException;
 import org.apache.hadoop.hdfs.serverless.exceptions.UnsupportedObjectPayloadException;
+import org.apache.hadoop.hdfs.serverless.execution.ExecutionManager;
+import org.apache.hadoop.hdfs.serverless.execution.results.DuplicateRequest;
 import org.apache.hadoop.hdfs.serverless.execution.taskarguments.HashMapTaskArguments;
 import org.apache.hadoop.hdfs.serverless.execution.results.NameNodeResult;
 import org.apache.hadoop.hdfs.serverless.execution.results.NameNodeResultWithMetrics;
@@ -25,9 +27,13 @@
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.apache.hadoop.hdfs.serverless.OpenWhiskHandler.getLogLevelFromInteger;
 
@@ -56,6 +62,24 @@ public class NameNodeTcpUdpClient {
      */
     private static final int CONNECTION_TIMEOUT = 8000;
 
+    /**
+     * Upper bound on the number of bytes a {@link TcpResultChunk} frame adds on top of its data (request ID,
+     * chunk indices, lengths, and Kryo framing).
+     */
+    static final int CHUNK_FRAME_OVERHEAD_BYTES = 256;
+
+    /**
+     * The largest payload of a UDP datagram (65,535 bytes less the IP and UDP headers).
+     */
+    static final int MAX_UDP_PAYLOAD_BYTES = 65507;
+
+    /**
+     * Bounds on how long a thread waiting for room in a write buffer sleeps before checking again, in milliseconds.
+     * Waiters are normally woken up by the connection's idle event, so these only matter if an event is missed.
+     */
+    private static final long MIN_WRITE_BUFFER_WAIT_MILLIS = 1;
+    private static final long MAX_WRITE_BUFFER_WAIT_MILLIS = 64;
+
     /**
      * Mapping from instances of ServerlessHopsFSClient to their associated TCP/UDP client object. Recall that each
      * ServerlessHopsFSClient represents a particular client of HopsFS that the NameNode is talking to. We map
@@ -90,39 +114,25 @@ public class NameNodeTcpUdpClient {
     private final ServerlessNameNode serverlessNameNode;
 
     /**
-     * The size, in bytes, used for the "Write Buffer" of new TCP connections. Objects are serialized to
-     * the "Write Buffer" where the bytes are queued until they can be written to the TCP socket.
-     */
-    private static final int defaultWriteBufferSizeBytes = (int)1e6;
-
-    /**
-     * The size, in bytes, used for the object buffer of new TCP connections. Object buffers are used
-     * to hold the bytes for a single object graph until it can be sent over the network or deserialized.
-     */
-    private static final int defaultObjectBufferSizeBytes = (int)1e6;
-
-    /**
-     * The maximum size, in bytes, that can be used for a TCP write buffer or a TCP object buffer.
+     * The size, in bytes, being used for TCP write buffers. Objects are serialized to the "Write Buffer" where
+     * the bytes are queued until they can be written to the TCP socket.
      *
-     * If we find that we're trying to write data that is larger than the buffer(s), then we change the
-     * size of the buffers for future TCP connections to hopefully avoid the problem. This variable sets a hard limit
-     * on the maximum size of a buffer.
+     * Results larger than {@code resultChunkSize} are sent as several {@link TcpResultChunk} frames, so this
+     * buffer only needs to hold a few chunks at a time rather than the largest possible result.
      */
-    private static final int maxBufferSize =(int)1e6;
+    private final int writeBufferSize;
 
     /**
-     * The current size, in bytes, being used for TCP write buffers. If we notice a buffer overflow,
-     * then we increase the size of this buffer for future TCP connections in the hopes that we'll
-     * avoid a buffer overflow.
+     * The size, in bytes, being used for TCP object buffers. Object buffers are used to hold the bytes for a
+     * single object graph (i.e., a single request or a single {@link TcpResultChunk}) until it can be sent over
+     * the network or deserialized.
      */
-    private final int writeBufferSize;
+    private final int objectBufferSize;
 
     /**
-     * The current size, in bytes, being used for TCP object buffers. If we notice a buffer overflow,
-     * then we increase the size of this buffer for future TCP connections in the hopes that we'll
-     * avoid a buffer overflow.
+     * Serialized results are split into chunks of at most this many bytes.
      */
-    private int objectBufferSize;
+    private final int resultChunkSize;
 
     /**
      * The amount of RAM (in megabytes) that this function has been allocated. Used when determining the number of active
@@ -153,6 +163,27 @@ public class NameNodeTcpUdpClient {
      */
     private boolean useUDP;
 
+    /**
+     * Notified whenever the write buffer of a connection drains below the idle threshold, so that threads waiting
+     * for room in the buffer (see {@link #sendChunk(Connection, TcpResultChunk, int)}) can proceed.
+     */
+    private final ConcurrentHashMap<Connection, Object> writeBufferMonitors = new ConcurrentHashMap<>();
+
+    /**
+     * The results of batched requests that are waiting to be sent back over each connection. See
+     * {@link #sendBatchedResult(Connection, NameNodeResult)}.
+     */
+    private final ConcurrentHashMap<Connection, PendingResults> pendingResults = new ConcurrentHashMap<>();
+
+    /**
+     * Executes the requests of {@link TcpRequestBatch} frames concurrently.
+     *
+     * The pool and its queue are bounded. Once both are full, the thread that submits a request (i.e., the thread
+     * that reads from the client's connection) runs it itself, so that it stops reading more requests until we
+     * catch up.
+     */
+    private final ThreadPoolExecutor batchExecutor;
+
     /**
      * We compare the `doConsistencyProtocol` included in requests and only update the real one if there's a change.
      */
@@ -184,11 +215,33 @@ public NameNodeTcpUdpClient(Configuration conf, ServerlessNameNode serverlessNam
         }
         LOG.debug("TCP/UDP Debug logging is DISABLED.");
 
-        this.writeBufferSize = defaultWriteBufferSizeBytes;
-        this.objectBufferSize = defaultObjectBufferSizeBytes;
+        this.writeBufferSize = conf.getInt(DFSConfigKeys.SERVERLESS_TCP_NAMENODE_BUFFER_SIZE,
+                DFSConfigKeys.SERVERLESS_TCP_NAMENODE_BUFFER_SIZE_DEFAULT);
+        this.objectBufferSize = this.writeBufferSize;
+        this.resultChunkSize = conf.getInt(DFSConfigKeys.SERVERLESS_TCP_RESULT_CHUNK_SIZE,
+                DFSConfigKeys.SERVERLESS_TCP_RESULT_CHUNK_SIZE_DEFAULT);
+
+        // A chunk that does not fit in a datagram is silently dropped when using UDP, and one that does not fit in
+        // the write buffer closes the connection when using TCP. Either way, the client would never get the result.
+        int maxChunkSize = Math.min(MAX_UDP_PAYLOAD_BYTES - CHUNK_FRAME_OVERHEAD_BYTES, this.writeBufferSize / 2);
+        if (this.resultChunkSize <= 0 || this.resultChunkSize > maxChunkSize)
+            throw new IllegalArgumentException("Invalid value for " + DFSConfigKeys.SERVERLESS_TCP_RESULT_CHUNK_SIZE +
+                    ": " + this.resultChunkSize + " bytes. The value must be positive and at most " + maxChunkSize +
+                    " bytes, so that a chunk fits in a single UDP datagram and in half of the " + this.writeBufferSize +
+                    "-byte write buffer.");
 
         this.maximumConnections = calculateMaxNumberTcpConnections();
 
+        int numBatchThreads = Math.max(1, conf.getInt(DFSConfigKeys.SERVERLESS_TCP_PIPELINING_NAMENODE_THREADS,
+                DFSConfigKeys.SERVERLESS_TCP_PIPELINING_NAMENODE_THREADS_DEFAULT));
+        this.batchExecutor = new ThreadPoolExecutor(numBatchThreads, numBatchThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(numBatchThreads), runnable -> {
+                    Thread thread = new Thread(runnable, "NN-TcpBatchWorker");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.batchExecutor.allowCoreThreadTimeOut(true);
+
         this.connectionsPerVm = new ConcurrentHashMap<>();
 
         this.clients = Caffeine.newBuilder()
@@ -210,7 +263,8 @@ public NameNodeTcpUdpClient(Configuration conf, ServerlessNameNode serverlessNam
 
         LOG.info("Created NameNodeTcpUdpClient(NN ID=" + nameNodeId + ", deployment#=" + deploymentNumber +
                 ", writeBufferSize=" + writeBufferSize + " bytes, objectBufferSize=" + objectBufferSize +
-                " bytes, maximumConnections=" + maximumConnections + ").");
+                " bytes, resultChunkSize=" + resultChunkSize + " bytes, maximumConnections=" + maximumConnections +
+                ", batchThreads=" + numBatchThreads + ").");
     }
 
     /**
@@ -226,7 +280,7 @@ public NameNodeTcpUdpClient(Configuration conf, ServerlessNameNode serverlessNam
      * @return The maximum number of concurrent TCP connections permitted at any given time.
      */
     private int calculateMaxNumberTcpConnections() {
-        int combinedBufferSize = maxBufferSize * 2;
+        int combinedBufferSize = writeBufferSize + objectBufferSize;
 
         // We multiply by 1e6 to convert to bytes, as the actionMemory variable is in MB.
         int memoryAvailableForConnections = (int) Math.floor(memoryFractionReservedForTcpBuffers * actionMemory * 1.0e6);
@@ -330,6 +384,19 @@ public boolean addClient(ServerlessHopsFSClient newClient) throws IOException {
                 LOG.debug("Attempting to connect to new client connection " + newClient);
         }
 
+        // The idle event is delivered on the update thread rather than through the ThreadedListener below, as the
+        // latter's thread may itself be the one waiting for room in the write buffer.
+        tcpClient.addListener(new Listener() {
+            public void idle(Connection connection) {
+                Object monitor = writeBufferMonitors.get(connection);
+                if (monitor != null) {
+                    synchronized (monitor) {
+                        monitor.notifyAll();
+                    }
+                }
+            }
+        });
+
         tcpClient.addListener(new Listener.ThreadedListener(new Listener() {
             /**
              * This listener is responsible for handling messages received from HopsFS clients. These messages will
@@ -347,7 +414,17 @@ public void received(Connection connection, Object object) {
                     if (LOG.isDebugEnabled())
                         LOG.debug("[TCP/UDP Client] NN " + nameNodeId + " Received work from " +
                                 connection.getRemoteAddressTCP() + ".");
-                    result = handleWorkAssignment((TcpUdpRequestPayload)object, receivedAtTime, newClient);
+                    handleWorkAssignment((TcpUdpRequestPayload)object, receivedAtTime, newClient)
+                            .thenAccept(workResult -> sendResult(connection, workResult));
+                    return; // The result is sent once it is ready.
+                }
+                else if (object instanceof TcpRequestBatch) {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("[TCP/UDP Client] NN " + nameNodeId + " Received batch of " +
+                                ((TcpRequestBatch)object).size() + " requests from " +
+                                connection.getRemoteAddressTCP() + ".");
+                    handleRequestBatch(connection, (TcpRequestBatch)object, receivedAtTime, newClient);
+                    return; // The results are sent by the batch executor.
                 }
                 else if (object instanceof FrameworkMessage.KeepAlive) {
                     // The server periodically sends KeepAlive objects to prevent the client from disconnecting
@@ -364,8 +441,7 @@ else if (object instanceof FrameworkMessage.KeepAlive) {
                             object.getClass().getSimpleName() + " are not supported payload types for Serverless NameNodes."));
                 }
 
-                result.prepare(serverlessNameNode.getNamesystem().getMetadataCacheManager());
-                sendData(connection, result);
+                sendResult(connection, result);
             }
 
             public void disconnected (Connection connection) {
@@ -388,6 +464,16 @@ public void disconnected (Connection connection) {
                         newClient.getClientIp(), ip -> ConcurrentHashMap.newKeySet());
                 connectedPorts.remove(newClient.getTcpPort());
 
+                pendingResults.remove(connection);
+
+                // Wake up anyone waiting for room in the write buffer, so that they see the connection is closed.
+                Object monitor = writeBufferMonitors.remove(connection);
+                if (monitor != null) {
+                    synchronized (monitor) {
+                        monitor.notifyAll();
+                    }
+                }
+
                 tcpClient.stop();
             }
         }));
@@ -474,63 +560,201 @@ public void run() {
 
     /**
      * Send an object over a connection via TCP.
+     *
+     * {@link NameNodeResult} objects are serialized exactly once and sent as one or more {@link TcpResultChunk}
+     * frames, each of which fits within the connection's buffers. The {@link UserServer} reassembles the chunks
+     * before completing the associated future. This is what allows us to use small per-connection buffers (most
+     * operations return a few hundred bytes) while still supporting large results, such as listing a directory
+     * with many files or returning the {@link org.apache.hadoop.hdfs.protocol.LocatedBlocks} of a large file.
+     *
      * @param connection The connection over which we're sending an object.
      * @param payload The object to send.
      */
     private void sendData(Connection connection, Object payload) {
-        int bytesSent;
-
-        // TODO: We may want to serialize the object BEFORE calling connection.sendTCP().
-        //       Then, we can check if the bytes are larger than the buffer size. If they
-        //       are, then we can send the object in pieces, and it can be reconstructed
-        //       at the client. This reconstruction can occur within the TCP server. That is,
-        //       the TCP server can determine if it has received a chunk of an object or the
-        //       full payload. If it received a chunk, then it waits until all chunks are
-        //       received before handing it off to whoever is waiting on it.
-        // TODO: (continued) This issue is that we want to use small buffer sizes, as many operations,
-        //       such as file reads/writes, require a very small amount of data to be sent. But operations
-        //       such as listing the contents of a directory with a large number of files will require
-        //       more (e.g., a directory with ~1000 files requires just over 60,000 bytes).
+        if (payload instanceof NameNodeResult) {
+            sendChunked(connection, ((NameNodeResult)payload).getRequestId(), payload);
+            return;
+        }
 
-        if (useUDP)
-            bytesSent = connection.sendUDP(payload);
-        else
-            bytesSent = connection.sendTCP(payload);
+        int bytesSent = send(connection, payload);
 
         if (LOG.isDebugEnabled())
             LOG.debug("[TCP/UDP Client] Sent " + bytesSent + " bytes to HopsFS client at " +
                     connection.getRemoteAddressTCP());
+    }
 
-        // Increase the buffer size for future TCP connections to hopefully avoid buffer overflows.
-//        if (bytesSent > objectBufferSize) {
-//            LOG.warn("[TCP/UDP Client] Sent object of size " + bytesSent
-//                    + " bytes when object buffer is only of size " + objectBufferSize + " bytes.");
-//
-//            // Do not go above the max buffer size.
-//            int oldBufferSize = objectBufferSize;
-//            objectBufferSize = Math.min(objectBufferSize * 2, maxBufferSize);
-//
-//            // If we were able to increase the buffer size, then print a message indicating that
-//            // we did so. If we were already at the max, then we'll print a warning, but currently
-//            // we don't do anything about it, so future TCP sends of the same object size will fail.
-//            if (oldBufferSize < objectBufferSize)
-//                if (LOG.isDebugEnabled()) LOG.debug(
-//                        "[TCP/UDP Client] Increasing buffer size of future TCP connections to " +
-//                                objectBufferSize + " bytes.");
-//            else
-//                // TODO: What should we do if this occurs?
-//                LOG.warn("[TCP/UDP Client] Already at the maximum buffer size for TCP connections...");
-//        }
+    /**
+     * Serialize the given result and send it as a sequence of {@link TcpResultChunk} frames.
+     *
+     * If the connection's write buffer does not have room for the next chunk, then we wait for it to drain
+     * rather than overflowing it (which would cause KryoNet to close the connection). Several threads may send
+     * results over the same connection at once; their chunks are interleaved.
+     *
+     * @param connection The connection over which we're sending the result.
+     * @param frameId Identifies the chunks of this result. This must be unique among the results concurrently
+     *                being sent over the connection.
+     * @param result The result to send.
+     */
+    private void sendChunked(Connection connection, String frameId, Object result) {
+        byte[] bytes = ServerlessClientServerUtilities.serializeForChunking(result);
+        int numChunks = Math.max(1, (bytes.length + resultChunkSize - 1) / resultChunkSize);
+        int bytesSent = 0;
+
+        for (int i = 0; i < numChunks; i++) {
+            int offset = i * resultChunkSize;
+            int length = Math.min(resultChunkSize, bytes.length - offset);
+
+            // Avoid a copy in the common case of a result that fits within a single chunk.
+            byte[] data = (numChunks == 1) ? bytes : Arrays.copyOfRange(bytes, offset, offset + length);
+            TcpResultChunk chunk = new TcpResultChunk(frameId, i, numChunks, bytes.length, offset, data);
+
+            int chunkBytesSent = sendChunk(connection, chunk, length + CHUNK_FRAME_OVERHEAD_BYTES);
+            if (chunkBytesSent < 0) {
+                LOG.warn("[TCP/UDP Client] Connection to HopsFS client closed after sending " + i + "/" + numChunks +
+                        " chunk(s) of result " + frameId + ".");
+                return;
+            }
+
+            bytesSent += chunkBytesSent;
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("[TCP/UDP Client] Sent " + bytesSent + " bytes (" + numChunks + " chunk(s)) to HopsFS client at " +
+                    connection.getRemoteAddressTCP());
+    }
+
+    /**
+     * Send a single chunk, first blocking until the connection's TCP write buffer has room for {@code numBytes}
+     * more bytes.
+     *
+     * The waiting thread is woken up by the connection's idle event, which KryoNet fires once the write buffer has
+     * drained below the idle threshold. In case an event is missed, the thread also checks again after a bounded
+     * wait, which backs off exponentially. The check and the send happen under the connection's monitor, so that
+     * two threads cannot both see room for one chunk and then both write to the buffer.
+     *
+     * @return The number of bytes sent, or -1 if the connection was closed while waiting.
+     */
+    private int sendChunk(Connection connection, TcpResultChunk chunk, int numBytes) {
+        if (useUDP)
+            return connection.sendUDP(chunk);
+
+        Object monitor = writeBufferMonitors.computeIfAbsent(connection, c -> new Object());
+        long waitMillis = MIN_WRITE_BUFFER_WAIT_MILLIS;
+
+        synchronized (monitor) {
+            while (connection.getTcpWriteBufferSize() + numBytes > writeBufferSize) {
+                if (!connection.isConnected()) {
+                    // The monitor may have been created after the connection's disconnected event removed it.
+                    writeBufferMonitors.remove(connection, monitor);
+                    return -1;
+                }
+
+                try {
+                    monitor.wait(waitMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+
+                waitMillis = Math.min(waitMillis * 2, MAX_WRITE_BUFFER_WAIT_MILLIS);
+            }
+
+            return connection.sendTCP(chunk);
+        }
+    }
+
+    private int send(Connection connection, Object payload) {
+        if (useUDP)
+            return connection.sendUDP(payload);
+        else
+            return connection.sendTCP(payload);
+    }
+
+    /**
+     * Execute every request of a {@link TcpRequestBatch} concurrently on the batch executor. The results are sent
+     * back to the client in {@link TcpResultBatch} frames as they become ready (see
+     * {@link #sendBatchedResult(Connection, NameNodeResult)}), so a slow request does not hold back the others.
+     *
+     * This returns once every request has been handed to the executor, which may run some of them on this thread
+     * if it is saturated (see {@link #batchExecutor}).
+     */
+    private void handleRequestBatch(Connection connection, TcpRequestBatch batch, long receivedAtTime,
+                                    ServerlessHopsFSClient newClient) {
+        List<TcpUdpRequestPayload> requests = batch.getRequests();
+        if (requests.isEmpty())
+            return;
+
+        for (TcpUdpRequestPayload request : requests)
+            batchExecutor.execute(() -> {
+                CompletableFuture<NameNodeResult> result;
+                try {
+                    result = handleWorkAssignment(request, receivedAtTime, newClient);
+                } catch (RuntimeException ex) {
+                    LOG.error("[TCP/UDP Client] Failed to execute batched request " + request.getRequestId() + ":", ex);
+                    NameNodeResult errorResult = new NameNodeResult(request.getRequestId(), request.getOperationName());
+                    errorResult.setException(ex);
+                    result = CompletableFuture.completedFuture(errorResult);
+                }
+
+                result.thenAccept(workResult -> sendBatchedResult(connection, workResult));
+            });
+    }
+
+    /**
+     * Prepare the result of a batched request and queue it to be sent back to the client.
+     *
+     * Whichever thread finds no other thread sending over the connection sends every queued result, as a single
+     * {@link TcpResultBatch} if there are several, and keeps doing so until the queue is empty. The results that
+     * become ready while a batch is being sent are thus coalesced into the next one, and a result never waits for
+     * a request that is still executing.
+     */
+    private void sendBatchedResult(Connection connection, NameNodeResult result) {
+        result.prepare(serverlessNameNode.getNamesystem().getMetadataCacheManager());
+
+        PendingResults pending = pendingResults.computeIfAbsent(connection, c -> new PendingResults());
+        pending.results.add(result);
+
+        // If another thread holds the flag, then it sends our result once it has finished its current batch. We
+        // check the queue again after releasing the flag, in case a result was queued just before we released it.
+        while (!pending.results.isEmpty() && pending.sending.compareAndSet(false, true)) {
+            try {
+                ArrayList<NameNodeResult> batch = new ArrayList<>();
+                NameNodeResult next;
+                while ((next = pending.results.poll()) != null)
+                    batch.add(next);
+
+                if (batch.size() == 1)
+                    sendData(connection, batch.get(0));
+                else if (batch.size() > 1)
+                    sendChunked(connection, "batch-" + batch.get(0).getRequestId(), new TcpResultBatch(batch));
+            } finally {
+                pending.sending.set(false);
+            }
+        }
+
+        // The entry may have been created after the connection's disconnected event removed it.
+        if (!connection.isConnected())
+            pendingResults.remove(connection, pending);
+    }
+
+    /**
+     * Prepare the given result and send it back to the client.
+     */
+    private void sendResult(Connection connection, NameNodeResult result) {
+        result.prepare(serverlessNameNode.getNamesystem().getMetadataCacheManager());
+        sendData(connection, result);
     }
 
     /**
      * Execute a file system operation request from a client.
      * @param args The arguments for the function.
      * @param startTime The time at which we received the request.
-     * @return The result object that we'll ultimately send back to the client. This contains the result of the
-     * FS operation as well as some metric information.
+     * @return A future of the result object that we'll ultimately send back to the client. This contains the result
+     * of the FS operation as well as some metric information. The future is already complete unless the request is
+     * a retransmission of a request that we're still executing, in which case it completes with the result of the
+     * original execution.
      */
-    private NameNodeResult handleWorkAssignment(TcpUdpRequestPayload args, long startTime, ServerlessHopsFSClient newClient) {
+    private CompletableFuture<NameNodeResult> handleWorkAssignment(TcpUdpRequestPayload args, long startTime, ServerlessHopsFSClient newClient) {
         String requestId = args.getRequestId();
         BaseHandler.currentRequestId.set(requestId);
 
@@ -560,8 +784,30 @@ private NameNodeResult handleWorkAssignment(TcpUdpRequestPayload args, long star
             ((NameNodeResultWithMetrics)tcpResult).setFnStartTime(startTime);
         }
 
-        serverlessNameNode.getExecutionManager().tryExecuteTask(
-                requestId, op, new HashMapTaskArguments(fsArgs), tcpResult);
+        // Retransmissions of a request that is still running, or of a write whose result is still cached, are
+        // answered with the result of the original execution, even if the client asked us to redo the operation.
+        // Retransmissions of other completed requests are rejected unless the client explicitly asked us to redo the
+        // operation. The client resubmits with FORCE_REDO if it is still waiting on the original result.
+        ExecutionManager executionManager = serverlessNameNode.getExecutionManager();
+        boolean forceRedo = Boolean.TRUE.equals(fsArgs.get(ServerlessNameNodeKeys.FORCE_REDO));
+        CompletableFuture<NameNodeResult> originalExecution = executionManager.tryStartTask(requestId, forceRedo);
+        if (originalExecution != null) {
+            LOG.warn("[TCP/UDP Client] Received duplicate request " + requestId + " (operation = " + op + ").");
+            final NameNodeResult duplicateResult = tcpResult;
+            return originalExecution.thenApply(originalResult -> {
+                if (originalResult != null)
+                    return originalResult;
+
+                duplicateResult.addResult(new DuplicateRequest("TCP", requestId), true);
+                return duplicateResult;
+            });
+        }
+
+        try {
+            executionManager.tryExecuteTask(requestId, op, new HashMapTaskArguments(fsArgs), tcpResult);
+        } finally {
+            executionManager.finishTask(requestId, op, tcpResult);
+        }
 
         long s = System.nanoTime();
         // Only bother trying to connect if there's at least one non-existent connection.
@@ -576,7 +822,7 @@ private NameNodeResult handleWorkAssignment(TcpUdpRequestPayload args, long star
             LOG.debug("Attempted additional connections in " + ((t - s) / 1.0e6) + " ms.");
         }
 
-        return tcpResult;
+        return CompletableFuture.completedFuture(tcpResult);
     }
 
 //    private NameNodeResult handleWorkAssignment(JsonObject args, long startTime) {
@@ -668,4 +914,16 @@ public boolean removeClient(ServerlessHopsFSClient client) {
     public int numClients() {
         return (int) clients.estimatedSize();
     }
+
+    /**
+     * The results of batched requests that are waiting to be sent back over a connection.
+     */
+    private static class PendingResults {
+        private final ConcurrentLinkedQueue<NameNodeResult> results = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Held by the thread that is sending results over the connection.
+         */
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+    }
 }
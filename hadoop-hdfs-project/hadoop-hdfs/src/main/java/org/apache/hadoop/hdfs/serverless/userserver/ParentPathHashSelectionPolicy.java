@@ -0,0 +1,76 @@
+package org.apache.hadoop.hdfs.serverless.userserver;
+
+import org.apache.hadoop.hdfs.serverless.cache.LongToObjectIndex;
+
+import java.util.List;
+
+/**
+ * Sends all requests targeting the children of the same directory to the same NameNode of the deployment, so that
+ * the directory's metadata is cached by one NameNode instead of being loaded into the cache of every NameNode.
+ *
+ * NameNodes are chosen by rendezvous (highest random weight) hashing of the parent path and the NameNode ID. When a
+ * NameNode joins or leaves the deployment, only the directories that hash to that NameNode move. To keep a hot
+ * directory from overloading its NameNode, a NameNode whose in-flight requests exceed {@link #LOAD_FACTOR} times
+ * the average (plus one) is skipped in favor of the next-highest scoring one, as in consistent hashing with bounded
+ * loads.
+ *
+ * Requests that do not target a path fall back to {@link PowerOfTwoChoicesSelectionPolicy}.
+ */
+public class ParentPathHashSelectionPolicy implements NameNodeSelectionPolicy {
+    /**
+     * How far above the average number of in-flight requests a NameNode may be before it is skipped.
+     */
+    static final double LOAD_FACTOR = 1.25;
+
+    private final PowerOfTwoChoicesSelectionPolicy fallback = new PowerOfTwoChoicesSelectionPolicy();
+
+    @Override
+    public <T extends Candidate> T select(List<T> candidates, String path) {
+        if (path == null)
+            return fallback.select(candidates, null);
+
+        int numCandidates = candidates.size();
+        if (numCandidates == 1)
+            return candidates.get(0);
+
+        long parentHash = LongToObjectIndex.mix(getParent(path).hashCode());
+
+        int totalInFlight = 0;
+        for (T candidate : candidates)
+            totalInFlight += candidate.getNumInFlight();
+        double maxInFlight = LOAD_FACTOR * totalInFlight / numCandidates + 1;
+
+        // Take the highest scoring candidate that is not overloaded. At least one candidate is at or below the
+        // average, unless the counts changed while we were reading them.
+        T best = null;
+        long bestScore = Long.MIN_VALUE;
+        for (T candidate : candidates) {
+            if (candidate.getNumInFlight() > maxInFlight)
+                continue;
+
+            long score = LongToObjectIndex.mix(parentHash ^ candidate.getNameNodeId());
+            if (best == null || score > bestScore) {
+                best = candidate;
+                bestScore = score;
+            }
+        }
+
+        return best != null ? best : fallback.select(candidates, null);
+    }
+
+    /**
+     * Return the parent directory of the given path, or the path itself if it is the root.
+     */
+    static String getParent(String path) {
+        int lastSlash = path.lastIndexOf('/');
+
+        // Ignore a trailing slash, as in "/a/b/".
+        if (lastSlash == path.length() - 1 && lastSlash > 0)
+            lastSlash = path.lastIndexOf('/', lastSlash - 1);
+
+        if (lastSlash <= 0)
+            return "/";
+
+        return path.substring(0, lastSlash);
+    }
+}
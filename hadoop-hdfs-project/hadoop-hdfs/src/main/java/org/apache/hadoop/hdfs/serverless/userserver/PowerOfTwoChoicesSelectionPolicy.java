@@ -0,0 +1,40 @@
+package org.apache.hadoop.hdfs.serverless.userserver;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples two distinct NameNodes of the target deployment at random and sends the request to the less loaded one.
+ *
+ * The load of a NameNode is estimated as the number of this client's requests it has yet to answer, weighted by
+ * the moving average of its latency. Comparing just two random NameNodes avoids herding every client onto the same
+ * "least loaded" NameNode, while still keeping hot NameNodes from accumulating a backlog.
+ */
+public class PowerOfTwoChoicesSelectionPolicy implements NameNodeSelectionPolicy {
+    @Override
+    public <T extends Candidate> T select(List<T> candidates, String path) {
+        int numCandidates = candidates.size();
+        if (numCandidates == 1)
+            return candidates.get(0);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(numCandidates);
+
+        // Pick the second candidate from the remaining ones, so that the two are always distinct.
+        int second = random.nextInt(numCandidates - 1);
+        if (second >= first)
+            second++;
+
+        T firstCandidate = candidates.get(first);
+        T secondCandidate = candidates.get(second);
+        return cost(secondCandidate) < cost(firstCandidate) ? secondCandidate : firstCandidate;
+    }
+
+    /**
+     * The expected time until the NameNode answers a new request. NameNodes without latency samples yet are
+     * compared by their number of in-flight requests alone.
+     */
+    static double cost(Candidate candidate) {
+        return (candidate.getNumInFlight() + 1) * (candidate.getLatencyEwmaMillis() + 1);
+    }
+}
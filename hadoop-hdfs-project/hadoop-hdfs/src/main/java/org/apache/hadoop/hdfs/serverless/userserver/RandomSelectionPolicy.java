@@ -0,0 +1,17 @@
+package org.apache.hadoop.hdfs.serverless.userserver;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sends each request to a uniformly random NameNode of the target deployment.
+ */
+public class RandomSelectionPolicy implements NameNodeSelectionPolicy {
+    @Override
+    public <T extends Candidate> T select(List<T> candidates, String path) {
+        if (candidates.size() == 1)
+            return candidates.get(0);
+
+        return candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+    }
+}
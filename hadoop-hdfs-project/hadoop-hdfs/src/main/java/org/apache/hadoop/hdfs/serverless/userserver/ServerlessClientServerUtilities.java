@@ -1,6 +1,8 @@
 package org.apache.hadoop.hdfs.serverless.userserver;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.serializers.JavaSerializer;
 import com.mysql.clusterj.ClusterJDatastoreException;
 import com.mysql.clusterj.ClusterJException;
@@ -63,6 +65,54 @@ public class ServerlessClientServerUtilities {
      */
     public static final String OPERATION_INFO = "INFO";
 
+    /**
+     * Kryo instances used to serialize results before they are split into {@link TcpResultChunk} objects (and to
+     * deserialize them once they've been reassembled). Kryo is not thread-safe, and the Kryo instance of a KryoNet
+     * endpoint is used by that endpoint's update thread, so we maintain our own instance per thread.
+     *
+     * These are configured via {@link #registerClassesToBeTransferred(Kryo)}, just like the KryoNet endpoints,
+     * so the class IDs agree on both sides of the connection.
+     */
+    private static final ThreadLocal<Kryo> chunkKryo = ThreadLocal.withInitial(() -> {
+        Kryo kryo = new Kryo();
+        registerClassesToBeTransferred(kryo);
+        return kryo;
+    });
+
+    /**
+     * Reusable, growable output buffers for {@link #serializeForChunking(Object)}.
+     */
+    private static final ThreadLocal<Output> chunkOutput = ThreadLocal.withInitial(() -> new Output(4096, -1));
+
+    /**
+     * If a thread's output buffer grows beyond this many bytes (i.e., because it serialized an unusually large
+     * result), then it is discarded after use so that we do not hold onto the memory indefinitely.
+     */
+    private static final int MAX_RETAINED_OUTPUT_BUFFER_SIZE = (int)1e6;
+
+    /**
+     * Serialize the given object so that it may be sent as one or more {@link TcpResultChunk} objects, or as part
+     * of a {@link TcpRequestBatch}.
+     */
+    public static byte[] serializeForChunking(Object object) {
+        Output output = chunkOutput.get();
+        output.reset();
+        chunkKryo.get().writeClassAndObject(output, object);
+        byte[] bytes = output.toBytes();
+
+        if (output.getBuffer().length > MAX_RETAINED_OUTPUT_BUFFER_SIZE)
+            chunkOutput.remove();
+
+        return bytes;
+    }
+
+    /**
+     * Deserialize an object previously serialized by {@link #serializeForChunking(Object)}.
+     */
+    public static Object deserializeChunked(byte[] bytes) {
+        return chunkKryo.get().readClassAndObject(new Input(bytes));
+    }
+
     /**
      * Register all the classes that are going to be sent over the network.
      *
@@ -150,5 +200,9 @@ public static synchronized void registerClassesToBeTransferred(Kryo kryo) {
         kryo.register(IllegalArgumentException.class, new JavaSerializer());
         kryo.register(org.apache.hadoop.fs.FileAlreadyExistsException.class, new JavaSerializer());
         kryo.register(Collections.EMPTY_LIST.getClass());
+        kryo.register(TcpResultChunk.class);
+        kryo.register(TcpRequestBatch.class);
+        kryo.register(TcpResultBatch.class);
+        kryo.register(String[].class);
     }
 }
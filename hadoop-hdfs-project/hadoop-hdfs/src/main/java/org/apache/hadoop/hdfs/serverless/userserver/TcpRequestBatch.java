@@ -0,0 +1,56 @@
+package org.apache.hadoop.hdfs.serverless.userserver;
+
+import java.util.ArrayList;
+
+/**
+ * Several {@link TcpUdpRequestPayload} objects sent to a NameNode in a single TCP/UDP frame.
+ *
+ * Clients with many in-flight operations coalesce the requests destined for the same NameNode connection within
+ * a short window and send them together, which reduces the number of writes/syscalls and Kryo headers per
+ * operation. The NameNode executes the requests concurrently and replies with {@link TcpResultBatch} frames, each
+ * holding the results that became ready together.
+ *
+ * The client must know the size of each request in order to cap the size of the frame, so it serializes each
+ * request once (see {@link ServerlessClientServerUtilities#serializeForChunking(Object)}) and sends those bytes
+ * rather than serializing the requests a second time when writing the frame.
+ */
+public class TcpRequestBatch {
+    /**
+     * The serialized requests in this batch.
+     */
+    private ArrayList<byte[]> serializedRequests;
+
+    /**
+     * Default constructor, required by Kryo.
+     */
+    private TcpRequestBatch() { }
+
+    public TcpRequestBatch(ArrayList<byte[]> serializedRequests) {
+        this.serializedRequests = serializedRequests;
+    }
+
+    /**
+     * Deserialize and return the requests in this batch.
+     */
+    public ArrayList<TcpUdpRequestPayload> getRequests() {
+        ArrayList<TcpUdpRequestPayload> requests = new ArrayList<>(size());
+        if (serializedRequests != null) {
+            for (byte[] serializedRequest : serializedRequests)
+                requests.add((TcpUdpRequestPayload) ServerlessClientServerUtilities.deserializeChunked(serializedRequest));
+        }
+
+        return requests;
+    }
+
+    /**
+     * Return the number of requests in this batch.
+     */
+    public int size() {
+        return serializedRequests == null ? 0 : serializedRequests.size();
+    }
+
+    @Override
+    public String toString() {
+        return "TcpRequestBatch(numRequests=" + size() + ")";
+    }
+}
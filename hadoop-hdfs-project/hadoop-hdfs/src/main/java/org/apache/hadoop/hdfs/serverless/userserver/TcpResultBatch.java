@@ -0,0 +1,36 @@
+package org.apache.hadoop.hdfs.serverless.userserver;
+
+import org.apache.hadoop.hdfs.serverless.execution.results.NameNodeResult;
+
+import java.util.ArrayList;
+
+/**
+ * Several results of the requests in a {@link TcpRequestBatch}, sent back to the client in a single write. The
+ * results that become ready while another batch is being sent over the connection are coalesced into the next one.
+ *
+ * Like individual results, these are serialized once and sent as one or more {@link TcpResultChunk} frames.
+ */
+public class TcpResultBatch {
+    /**
+     * The results of the requests in the batch.
+     */
+    private ArrayList<NameNodeResult> results;
+
+    /**
+     * Default constructor, required by Kryo.
+     */
+    private TcpResultBatch() { }
+
+    public TcpResultBatch(ArrayList<NameNodeResult> results) {
+        this.results = results;
+    }
+
+    public ArrayList<NameNodeResult> getResults() {
+        return results;
+    }
+
+    @Override
+    public String toString() {
+        return "TcpResultBatch(numResults=" + (results == null ? 0 : results.size()) + ")";
+    }
+}
@@ -0,0 +1,148 @@
+package org.apache.hadoop.hdfs.serverless.userserver;
+
+/**
+ * A single frame of a {@link org.apache.hadoop.hdfs.serverless.execution.results.NameNodeResult} sent from a
+ * NameNode to a client over TCP/UDP.
+ *
+ * NameNodes serialize each result exactly once and then split the serialized bytes into one or more chunks, each
+ * of which is small enough to fit within the (deliberately small) per-connection KryoNet buffers. The
+ * {@link UserServer} buffers the chunks of a given request until all of them have arrived, reassembles the bytes,
+ * and deserializes the result before completing the associated future.
+ *
+ * Results that fit within a single chunk are sent as a single frame with {@code numChunks == 1}, which the
+ * {@link UserServer} deserializes immediately without any buffering.
+ */
+public class TcpResultChunk {
+    /**
+     * Unique ID of the request/task whose result this chunk belongs to.
+     */
+    private String requestId;
+
+    /**
+     * Position of this chunk within the result, starting from 0.
+     */
+    private int chunkIndex;
+
+    /**
+     * The total number of chunks that make up the result.
+     */
+    private int numChunks;
+
+    /**
+     * The total size, in bytes, of the serialized result.
+     */
+    private int totalLength;
+
+    /**
+     * Offset, in bytes, of this chunk's data within the serialized result.
+     */
+    private int offset;
+
+    /**
+     * The bytes of the serialized result carried by this chunk.
+     */
+    private byte[] data;
+
+    /**
+     * Default constructor, required by Kryo.
+     */
+    private TcpResultChunk() { }
+
+    public TcpResultChunk(String requestId, int chunkIndex, int numChunks, int totalLength, int offset,
+                          byte[] data) {
+        this.requestId = requestId;
+        this.chunkIndex = chunkIndex;
+        this.numChunks = numChunks;
+        this.totalLength = totalLength;
+        this.offset = offset;
+        this.data = data;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public int getNumChunks() {
+        return numChunks;
+    }
+
+    public int getTotalLength() {
+        return totalLength;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return "TcpResultChunk(requestId=" + requestId + ", chunk=" + (chunkIndex + 1) + "/" + numChunks +
+                ", chunkBytes=" + (data == null ? 0 : data.length) + ", totalBytes=" + totalLength + ")";
+    }
+
+    /**
+     * Accumulates the chunks of a single result on the receiving side.
+     */
+    static class Assembly {
+        private final byte[] buffer;
+        private final boolean[] received;
+        private int numReceived = 0;
+
+        /**
+         * The time at which the first chunk of the result arrived, from {@link System#currentTimeMillis()}.
+         */
+        private final long createdAt = System.currentTimeMillis();
+
+        Assembly(int numChunks, int totalLength) {
+            this.buffer = new byte[totalLength];
+            this.received = new boolean[numChunks];
+        }
+
+        long getCreatedAt() {
+            return createdAt;
+        }
+
+        /**
+         * @return True if the given chunk belongs to a result of the same shape as this one. If it does not, then it
+         * belongs to a later transmission of the result (e.g., after the request was resubmitted).
+         */
+        boolean matches(TcpResultChunk chunk) {
+            return chunk.getNumChunks() == received.length && chunk.getTotalLength() == buffer.length;
+        }
+
+        /**
+         * Copy the given chunk into place.
+         *
+         * @param chunk The chunk to add.
+         *
+         * @return True once every chunk of the result has been received.
+         */
+        boolean add(TcpResultChunk chunk) {
+            int idx = chunk.getChunkIndex();
+
+            if (idx < 0 || idx >= received.length || chunk.getOffset() < 0 ||
+                    chunk.getOffset() + chunk.getData().length > buffer.length)
+                throw new IllegalArgumentException("Received " + chunk + " with invalid chunk index or offset.");
+
+            if (!received[idx]) {
+                System.arraycopy(chunk.getData(), 0, buffer, chunk.getOffset(), chunk.getData().length);
+                received[idx] = true;
+                numReceived++;
+            }
+
+            return numReceived == received.length;
+        }
+
+        byte[] getBytes() {
+            return buffer;
+        }
+    }
+}
@@ -26,6 +26,8 @@
 import java.net.InetSocketAddress;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.hadoop.hdfs.DFSConfigKeys.*;
 import static org.apache.hadoop.hdfs.serverless.userserver.ServerlessClientServerUtilities.OPERATION_REGISTER;
@@ -182,6 +184,38 @@ public class UserServer {
     private final int tcpKeepAlive;
     private final int tcpTimeout;
 
+    /**
+     * If true, requests to the same NameNode connection are coalesced into {@link TcpRequestBatch} frames.
+     */
+    private final boolean pipeliningEnabled;
+
+    /**
+     * How long we wait for additional requests before flushing a batch, in microseconds.
+     */
+    private final long pipeliningWindowMicros;
+
+    /**
+     * Maximum number of requests per {@link TcpRequestBatch}.
+     */
+    private final int maxPipelinedBatchSize;
+
+    /**
+     * Maximum serialized size, in bytes, of a {@link TcpRequestBatch}. See
+     * {@link org.apache.hadoop.hdfs.DFSConfigKeys#SERVERLESS_TCP_PIPELINING_MAX_BATCH_BYTES}.
+     */
+    private final int maxPipelinedBatchBytes;
+
+    /**
+     * Flushes the pending requests of each connection once the pipelining window has elapsed.
+     * Only created if pipelining is enabled.
+     */
+    private final ScheduledExecutorService batchFlusher;
+
+    /**
+     * Chooses the NameNode of the target deployment to which each request is sent.
+     */
+    private final NameNodeSelectionPolicy selectionPolicy;
+
     /**
      * Constructor.
      *
@@ -251,6 +285,37 @@ public UserServer(Configuration conf, ServerlessNameNodeClient client, int tcpPo
         tcpTimeout = conf.getInt(SERVERLESS_TCP_TIMEOUT, SERVERLESS_TCP_TIMEOUT_DEFAULT);
         tcpKeepAlive = conf.getInt(SERVERLESS_TCP_KEEPALIVE_INTERVAL, SERVERLESS_TCP_KEEPALIVE_INTERVAL_DEFAULT);
 
+        pipeliningEnabled = conf.getBoolean(SERVERLESS_TCP_PIPELINING_ENABLED,
+                SERVERLESS_TCP_PIPELINING_ENABLED_DEFAULT);
+        pipeliningWindowMicros = conf.getLong(SERVERLESS_TCP_PIPELINING_WINDOW_MICROS,
+                SERVERLESS_TCP_PIPELINING_WINDOW_MICROS_DEFAULT);
+        maxPipelinedBatchSize = Math.max(1, conf.getInt(SERVERLESS_TCP_PIPELINING_MAX_BATCH_SIZE,
+                SERVERLESS_TCP_PIPELINING_MAX_BATCH_SIZE_DEFAULT));
+
+        // A frame must fit in our write buffer and in the NameNode's object buffer (and, when using UDP, in a
+        // single datagram), or the connection is closed. We leave half of each buffer for the frames around it.
+        int nameNodeBufferSize = conf.getInt(SERVERLESS_TCP_NAMENODE_BUFFER_SIZE,
+                SERVERLESS_TCP_NAMENODE_BUFFER_SIZE_DEFAULT);
+        int maxBatchBytes = Math.min(actualBufferSize, nameNodeBufferSize) / 2;
+        if (useUDP)
+            maxBatchBytes = Math.min(maxBatchBytes,
+                    NameNodeTcpUdpClient.MAX_UDP_PAYLOAD_BYTES - NameNodeTcpUdpClient.CHUNK_FRAME_OVERHEAD_BYTES);
+        maxPipelinedBatchBytes = Math.max(1, Math.min(maxBatchBytes, conf.getInt(
+                SERVERLESS_TCP_PIPELINING_MAX_BATCH_BYTES, SERVERLESS_TCP_PIPELINING_MAX_BATCH_BYTES_DEFAULT)));
+
+        selectionPolicy = NameNodeSelectionPolicy.create(conf.getTrimmed(SERVERLESS_TCP_NAMENODE_SELECTION_POLICY,
+                SERVERLESS_TCP_NAMENODE_SELECTION_POLICY_DEFAULT));
+
+        if (pipeliningEnabled) {
+            batchFlusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "UserServer-" + tcpPort + "-BatchFlusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            batchFlusher = null;
+        }
+
 //        if (LOG.isDebugEnabled())
 //            LOG.debug("User server " + (enabled ? "ENABLED." : "DISABLED.") + " Running in " +
 //                (useUDP ? "TCP-UDP mode." : "TCP-only mode."));
@@ -299,6 +364,8 @@ public void terminate() {
         LOG.debug("HopsFSUserServer " + tcpPort + " stopping now...");
         this.server.removeListener(serverListener);
         LOG.debug("HopsFSUserServer " + tcpPort + " removed listener.");
+        if (batchFlusher != null)
+            batchFlusher.shutdownNow();
         this.server.stop();
         LOG.debug("HopsFSUserServer " + tcpPort + " stopped successfully.");
     }
@@ -481,17 +548,16 @@ private NameNodeConnection getConnection(long nameNodeId) {
     }
 
     /**
-     * Get a random TCP connection for a NameNode from the specified deployment.
+     * Get a TCP connection for a NameNode from the specified deployment, chosen by the {@link NameNodeSelectionPolicy}.
      *
      * @param deploymentNumber The deployment for which a connection is desired.
-     * @param performingWrite If True, then we're performing a write op, and thus we'll target the NN with the smallest
-     *                        ID in that deployment.
+     * @param payload The request that is to be sent over the connection.
      *
      * @throws NoConnectionAvailableException If there are no connections available to the target deployment.
      *
-     * @return a random, active connection if one exists. Otherwise, returns null.
+     * @return an active connection if one exists.
      */
-    private NameNodeConnection getRandomConnection(int deploymentNumber, boolean performingWrite)
+    private NameNodeConnection selectConnection(int deploymentNumber, TcpUdpRequestPayload payload)
             throws NoConnectionAvailableException {
         ConcurrentHashMap<Long, NameNodeConnection> deploymentConnections =
                 activeConnectionsPerDeployment.get(deploymentNumber);
@@ -505,19 +571,26 @@ private NameNodeConnection getRandomConnection(int deploymentNumber, boolean per
 //                return deploymentConnections.get(smallestNameNodeId);
 //        }
 
-        // Return a random NameNode connection.
-        NameNodeConnection[] values = deploymentConnections.values().toArray(new NameNodeConnection[0]);
+        List<NameNodeConnection> values = new ArrayList<>(deploymentConnections.values());
 
         // If there are no available connections, then we will return null to indicate that this is the case.
-        if (values.length == 0)
+        if (values.size() == 0)
             throw new NoConnectionAvailableException(serverPrefix + " Was about to issue " + (useUDP ? "UDP" : "TCP") +
                     " request to NameNode deployment " + deploymentNumber + ", but no such connections exist...");
 
-        // If there's just one, don't bother with the RNG object. Just return the first available connection.
-        if (values.length == 1)
-            return values[0];
+        // If there's just one, don't bother with the selection policy. Just return the first available connection.
+        if (values.size() == 1)
+            return values.get(0);
 
-        return values[(rng.nextInt(values.length))];
+        return selectionPolicy.select(values, getTargetPath(payload));
+    }
+
+    /**
+     * Return the path targeted by the given request, or null if it does not target a path.
+     */
+    private static String getTargetPath(TcpUdpRequestPayload payload) {
+        Object src = payload.getFsOperationArguments().get(ServerlessNameNodeKeys.SRC);
+        return src instanceof String ? (String) src : null;
     }
 
     /**
@@ -549,7 +622,7 @@ public int getUdpPort() {
     }
 
     /**
-     * Get a random TCP connection for a NameNode from the specified deployment.
+     * Get a TCP connection for a NameNode from the specified deployment, chosen by the {@link NameNodeSelectionPolicy}.
      * Will not return a TCP connection to the NameNode with the given ID. If
      * that is the only TCP connection available for that deployment, then
      * this will just return null, thereby indicating that there are no TCP
@@ -559,21 +632,22 @@ public int getUdpPort() {
      * stragglers to a different NN than the one to which they were originally sent.
      *
      * @param deploymentNumber The deployment for which a connection is desired.
+     * @param payload The request that is to be sent over the connection.
      * @param excludedNameNode NN who should not have its connections returned.
      *
-     * @return a random, active connection if one exists. Otherwise, returns null.
+     * @return an active connection if one exists.
      * @throws NoConnectionAvailableException If there are no connections available to the target deployment (aside
      * from possibly a connection to the excluded name node).
      */
-    private NameNodeConnection getRandomConnection(int deploymentNumber, long excludedNameNode)
+    private NameNodeConnection selectConnection(int deploymentNumber, TcpUdpRequestPayload payload,
+                                                long excludedNameNode)
             throws NoConnectionAvailableException {
         ConcurrentHashMap<Long, NameNodeConnection> deploymentConnections =
                 activeConnectionsPerDeployment.get(deploymentNumber);
 
-        // Return a random NameNode connection.
         ArrayList<NameNodeConnection> values = new ArrayList<>();
 
-        // Do not add the excluded NN to the set of connections from which we're randomly picking one.
+        // Do not add the excluded NN to the set of connections from which we're picking one.
         for (NameNodeConnection conn : deploymentConnections.values()) {
             if (conn.name != excludedNameNode)
                 values.add(conn);
@@ -589,11 +663,11 @@ private NameNodeConnection getRandomConnection(int deploymentNumber, long exclud
                     ". Cannot issue TCP/UDP request.");
         }
 
-        // If there's just one, don't bother with the RNG object. Just return the first available connection.
+        // If there's just one, don't bother with the selection policy. Just return the first available connection.
         if (values.size() == 1)
             return values.get(0);
 
-        return values.get(rng.nextInt(values.size()));
+        return selectionPolicy.select(values, getTargetPath(payload));
     }
 
     /**
@@ -852,6 +926,9 @@ public boolean deactivateFuture(String requestId) {
                     List<ServerlessTcpUdpFuture> futures = submittedFutures.get(connection.name);
                     futures.remove(future);
                 }
+
+                if (connection != null)
+                    connection.requestAbandoned(requestId);
             }
 
             return true;
@@ -860,6 +937,103 @@ public boolean deactivateFuture(String requestId) {
         return false;
     }
 
+    /**
+     * Queue the given request to be sent to the NameNode at the other end of the given connection. The first request
+     * to be queued on an idle connection schedules a flush after {@code pipeliningWindowMicros}, so every request
+     * queued within that window is sent in the same frame.
+     */
+    private void enqueueRequest(NameNodeConnection connection, TcpUdpRequestPayload payload) {
+        connection.pendingRequests.add(payload);
+
+        if (connection.flushScheduled.compareAndSet(false, true))
+            batchFlusher.schedule(() -> flushRequests(connection), pipeliningWindowMicros, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Send all requests queued on the given connection, using as few frames as possible. A frame holds at most
+     * {@code maxPipelinedBatchSize} requests and, unless it holds a single request, at most
+     * {@code maxPipelinedBatchBytes} bytes.
+     *
+     * Each batched request is serialized exactly once, and its size is taken from those bytes, which are also what
+     * the {@link TcpRequestBatch} carries. A request that is alone in the queue is sent as is.
+     *
+     * This only ever runs on the {@code batchFlusher} thread, so it is the sole consumer of the queue.
+     */
+    private void flushRequests(NameNodeConnection connection) {
+        // Clear the flag before draining. Requests queued after this point either get drained below or schedule
+        // another flush, so no request is ever left behind.
+        connection.flushScheduled.set(false);
+
+        // A request that did not fit in the previous frame, and which therefore starts the next one.
+        byte[] carried = null;
+
+        while (true) {
+            if (carried == null) {
+                TcpUdpRequestPayload first = connection.pendingRequests.poll();
+                if (first == null)
+                    return;
+
+                // There is nothing to coalesce it with, so there is no need to know its size.
+                if (connection.pendingRequests.isEmpty()) {
+                    sendFrame(connection, first, 1);
+                    return;
+                }
+
+                carried = ServerlessClientServerUtilities.serializeForChunking(first);
+            }
+
+            ArrayList<byte[]> batch = new ArrayList<>();
+            batch.add(carried);
+            int batchBytes = carried.length;
+            carried = null;
+
+            TcpUdpRequestPayload next;
+            while (batch.size() < maxPipelinedBatchSize && (next = connection.pendingRequests.poll()) != null) {
+                byte[] bytes = ServerlessClientServerUtilities.serializeForChunking(next);
+                if (batchBytes + bytes.length > maxPipelinedBatchBytes) {
+                    carried = bytes;
+                    break;
+                }
+
+                batch.add(bytes);
+                batchBytes += bytes.length;
+            }
+
+            if (!sendFrame(connection, new TcpRequestBatch(batch), batch.size()))
+                return;
+
+            if (carried == null && batch.size() < maxPipelinedBatchSize)
+                return;
+        }
+    }
+
+    /**
+     * Send a frame of pipelined requests to the NameNode at the other end of the given connection.
+     *
+     * @return False if the connection is closed, in which case the frame and every other queued request are dropped.
+     */
+    private boolean sendFrame(NameNodeConnection connection, Object frame, int numRequests) {
+        // If the connection was lost, then the associated futures are cancelled by the disconnect handler.
+        if (!connection.isConnected()) {
+            LOG.warn(serverPrefix + " Dropping " + numRequests + " pipelined request(s) to NameNode " +
+                    connection + ", as the connection is closed.");
+            connection.pendingRequests.clear();
+            return false;
+        }
+
+        int bytesSent;
+        if (useUDP)
+            bytesSent = connection.sendUDP(frame);
+        else
+            bytesSent = connection.sendTCP(frame);
+
+        if (LOG.isDebugEnabled())
+            LOG.debug(serverPrefix + " Sent " + numRequests + " pipelined request(s) (" + bytesSent +
+                    " bytes) to NameNode " + connection + ".");
+
+        return true;
+    }
+
     /**
      * Issue a TCP request to the given NameNode. Ths function will check to ensure that the connection exists
      * first before issuing the connection.
@@ -900,16 +1074,16 @@ public ServerlessTcpUdpFuture issueTcpRequest(int deploymentNumber, boolean bypa
                 // We only want to try to grab a connection if at least one other connection to this deployment exists.
                 // If no other connections are available, then we raise an exception.
                 if (connectionExists(deploymentNumber, previousConnection.name))
-                    tcpConnection = getRandomConnection(deploymentNumber, previousConnection.name);
+                    tcpConnection = selectConnection(deploymentNumber, payload, previousConnection.name);
                 else
                     throw new NoConnectionAvailableException(serverPrefix + " There are no TCP/UDP connections to deployment " +
                             deploymentNumber + " except for possibly a connection to excluded NN " + previousConnection.name +
                             ". Cannot issue TCP/UDP request.");
             } else {
-                tcpConnection = getRandomConnection(deploymentNumber, writeOp);
+                tcpConnection = selectConnection(deploymentNumber, payload);
             }
         } else {
-            tcpConnection = getRandomConnection(deploymentNumber, writeOp);
+            tcpConnection = selectConnection(deploymentNumber, payload);
         }
 
         // Make sure the connection variable is non-null.
@@ -938,7 +1112,19 @@ public ServerlessTcpUdpFuture issueTcpRequest(int deploymentNumber, boolean bypa
                 tcpConnection.name, k -> new ArrayList<>());
 
         incompleteFutures.add(requestResponseFuture);
-        futureToNameNodeMapping.put(requestId, tcpConnection);
+
+        // If the request is being resubmitted to another NameNode, then the previous one no longer counts it as
+        // in flight. Otherwise, a NameNode that timed out would look busier than it is for as long as we run.
+        NameNodeConnection previousConnection = futureToNameNodeMapping.put(requestId, tcpConnection);
+        if (previousConnection != null && previousConnection != tcpConnection)
+            previousConnection.requestAbandoned(requestId);
+        tcpConnection.requestSent(requestId);
+
+        if (pipeliningEnabled) {
+            // The request will be sent (possibly along with others) once the pipelining window elapses.
+            enqueueRequest(tcpConnection, payload);
+            return requestResponseFuture;
+        }
 
         long sendStart = System.nanoTime();
 
@@ -988,42 +1174,12 @@ public Object issueTcpRequestAndWait(int deploymentNumber, boolean bypassCheck,
                                          TcpUdpRequestPayload payload, long timeout,
                                          boolean tryToAvoidTargetingSameNameNode, boolean writeOp)
             throws ExecutionException, InterruptedException, TimeoutException, IOException, NoConnectionAvailableException{
-        if (deploymentNumber == -1) {
-            // Randomly select an available connection. This is implemented using existing constructs, so it
-            // is a little awkward. We have a mapping of ALL active NN connections from NN ID --> Connection, and
-            // we have a mapping from NN ID --> Deployment Number. So, we randomly select a NN ID from the active
-            // connection mapping, then we resolve the NN ID to the deployment number, and use that as the target
-            // deployment. The NN ID we randomly select may not be the NN we actually issue a request to, as we
-            // pass that NN's deployment number. If we have multiple connections for that deployment, we may
-            // randomly pick a different connection from that deployment.
-
-            // So, get the IDs of all NNs for which we have an active connections.
-            Long[] activeNameNodeConnectionIDs = allActiveConnections.keySet().toArray(new Long[0]);
-
-            // Randomly select an ID from among all the IDs.
-            long nameNodeId = activeNameNodeConnectionIDs[rng.nextInt(activeNameNodeConnectionIDs.length)];
-
-            // Resolve that ID to a deployment, and use that as the target deployment.
-            deploymentNumber = nameNodeIdToDeploymentMapping.get(nameNodeId);
-
-            if (LOG.isTraceEnabled())
-                LOG.trace("No target deployment specified for TCP request. Randomly selected deployment " + deploymentNumber);
-        }
-
-        if (resultsWithoutFutures.asMap().containsKey(requestId)) {
-            if (LOG.isDebugEnabled()) LOG.debug("Found result for request " + requestId +
-                    "in ResultsWithoutFutures cache. Returning cached result.");
-            NameNodeResult previouslyReceivedResult = resultsWithoutFutures.asMap().remove(requestId);
+        if (deploymentNumber == -1)
+            deploymentNumber = selectRandomConnectedDeployment();
 
-            // There could be a race where the cache entry expires after we've checked if it exists, but before
-            // we remove it. So, we check to ensure it is non-null before posting the result.
-            if (previouslyReceivedResult != null)
-                return previouslyReceivedResult;
-        }
-        else if (completedFutures.asMap().containsKey(requestId)) {
-            ServerlessTcpUdpFuture future = completedFutures.getIfPresent(requestId);
-            if (future != null && future.isDone()) return future.get();
-        }
+        Object previousResult = getPreviouslyReceivedResult(requestId);
+        if (previousResult != null)
+            return previousResult;
 
         long startTime = System.nanoTime();
         ServerlessTcpUdpFuture requestResponseFuture = issueTcpRequest(
@@ -1059,6 +1215,167 @@ else if (LOG.isTraceEnabled())
         }
     }
 
+    /**
+     * Randomly select a deployment from among those to which we have an active connection.
+     */
+    private int selectRandomConnectedDeployment() {
+        // Randomly select an available connection. This is implemented using existing constructs, so it
+        // is a little awkward. We have a mapping of ALL active NN connections from NN ID --> Connection, and
+        // we have a mapping from NN ID --> Deployment Number. So, we randomly select a NN ID from the active
+        // connection mapping, then we resolve the NN ID to the deployment number, and use that as the target
+        // deployment. The NN ID we randomly select may not be the NN we actually issue a request to, as we
+        // pass that NN's deployment number. If we have multiple connections for that deployment, we may
+        // randomly pick a different connection from that deployment.
+
+        // So, get the IDs of all NNs for which we have an active connections.
+        Long[] activeNameNodeConnectionIDs = allActiveConnections.keySet().toArray(new Long[0]);
+
+        // Randomly select an ID from among all the IDs.
+        long nameNodeId = activeNameNodeConnectionIDs[rng.nextInt(activeNameNodeConnectionIDs.length)];
+
+        // Resolve that ID to a deployment, and use that as the target deployment.
+        int deploymentNumber = nameNodeIdToDeploymentMapping.get(nameNodeId);
+
+        if (LOG.isTraceEnabled())
+            LOG.trace("No target deployment specified for TCP request. Randomly selected deployment " + deploymentNumber);
+
+        return deploymentNumber;
+    }
+
+    /**
+     * If a result for the given request has already been received (e.g., for an earlier submission of the same
+     * request), then return it. Otherwise, return null.
+     */
+    private Object getPreviouslyReceivedResult(String requestId) throws ExecutionException, InterruptedException {
+        if (resultsWithoutFutures.asMap().containsKey(requestId)) {
+            if (LOG.isDebugEnabled()) LOG.debug("Found result for request " + requestId +
+                    "in ResultsWithoutFutures cache. Returning cached result.");
+            NameNodeResult previouslyReceivedResult = resultsWithoutFutures.asMap().remove(requestId);
+
+            // There could be a race where the cache entry expires after we've checked if it exists, but before
+            // we remove it. So, we check to ensure it is non-null before posting the result.
+            if (previouslyReceivedResult != null)
+                return previouslyReceivedResult;
+        }
+        else if (completedFutures.asMap().containsKey(requestId)) {
+            ServerlessTcpUdpFuture future = completedFutures.getIfPresent(requestId);
+            if (future != null && future.isDone()) return future.get();
+        }
+
+        return null;
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #issueTcpRequestAndWait}. Issue a TCP request to the given NameNode
+     * deployment and return a future that is completed with the response from the NameNode, or with a
+     * cancelled result if the connection is lost first. No thread waits for the response, so it is up to
+     * the caller to time out the request.
+     *
+     * @param deploymentNumber The NameNode to issue a request to. If this is -1, then the TCP server will randomly
+     *                         select a target deployment/NameNode from among all available, active connections.
+     * @return A future for the response from the NameNode.
+     * @throws IOException If the request could not be issued because there is no connection to the deployment.
+     */
+    public CompletableFuture<Object> issueTcpRequestAsync(int deploymentNumber, boolean bypassCheck, String requestId,
+                                                          TcpUdpRequestPayload payload,
+                                                          boolean tryToAvoidTargetingSameNameNode, boolean writeOp)
+            throws ExecutionException, InterruptedException, IOException, NoConnectionAvailableException {
+        if (deploymentNumber == -1)
+            deploymentNumber = selectRandomConnectedDeployment();
+
+        Object previousResult = getPreviouslyReceivedResult(requestId);
+        if (previousResult != null)
+            return CompletableFuture.completedFuture(previousResult);
+
+        ServerlessTcpUdpFuture requestResponseFuture = issueTcpRequest(
+                deploymentNumber, bypassCheck, requestId, payload, tryToAvoidTargetingSameNameNode, writeOp);
+
+        if (requestResponseFuture == null)
+            throw new IOException("Issuing TCP request returned null instead of future. Must have been no connections.");
+
+        return requestResponseFuture.toCompletionStage().thenApply(result -> (Object) result).toCompletableFuture();
+    }
+
+    /**
+     * Handle a chunk of a result received from a remote NameNode. Once every chunk of the result has been received,
+     * the result is deserialized and passed to {@link #handleResult(NameNodeResult, NameNodeConnection)}.
+     *
+     * @param chunk The chunk we received from the remote NameNode.
+     * @param connection The connection on which the chunk was received.
+     */
+    private void handleResultChunk(TcpResultChunk chunk, NameNodeConnection connection) {
+        byte[] bytes;
+
+        if (chunk.getNumChunks() == 1) {
+            bytes = chunk.getData();
+        } else {
+            expirePartialResults(connection);
+
+            TcpResultChunk.Assembly assembly = connection.partialResults.get(chunk.getRequestId());
+            if (assembly == null || !assembly.matches(chunk)) {
+                // Re-insert, so that the map stays ordered by creation time.
+                connection.partialResults.remove(chunk.getRequestId());
+                assembly = new TcpResultChunk.Assembly(chunk.getNumChunks(), chunk.getTotalLength());
+                connection.partialResults.put(chunk.getRequestId(), assembly);
+            }
+
+            try {
+                if (!assembly.add(chunk))
+                    return;
+            } catch (IllegalArgumentException ex) {
+                LOG.error(serverPrefix + " Discarding result for request " + chunk.getRequestId() +
+                        " from NameNode " + connection + ":", ex);
+                connection.partialResults.remove(chunk.getRequestId());
+                return;
+            }
+
+            connection.partialResults.remove(chunk.getRequestId());
+            bytes = assembly.getBytes();
+        }
+
+        Object result;
+        try {
+            result = ServerlessClientServerUtilities.deserializeChunked(bytes);
+        } catch (RuntimeException ex) {
+            // The future will time out and the request will be resubmitted.
+            LOG.error(serverPrefix + " Failed to deserialize " + bytes.length + "-byte result for request " +
+                    chunk.getRequestId() + " from NameNode " + connection + ":", ex);
+            return;
+        }
+
+        if (result instanceof NameNodeResult) {
+            handleResult((NameNodeResult) result, connection);
+        } else if (result instanceof TcpResultBatch) {
+            for (NameNodeResult batchedResult : ((TcpResultBatch) result).getResults())
+                handleResult(batchedResult, connection);
+        } else {
+            LOG.warn(serverPrefix + " Reassembled object of unexpected type " +
+                    (result == null ? "null" : result.getClass().getSimpleName()) + " for request " +
+                    chunk.getRequestId() + " from NameNode " + connection + ".");
+        }
+    }
+
+    /**
+     * Discard the partially-received results of the given connection whose first chunk arrived more than one TCP
+     * timeout ago. The associated requests have timed out (and may have been resubmitted), and their remaining
+     * chunks may never arrive, e.g., if they were sent via UDP and dropped.
+     */
+    private void expirePartialResults(NameNodeConnection connection) {
+        if (connection.partialResults.isEmpty())
+            return;
+
+        long cutoff = System.currentTimeMillis() - tcpTimeout;
+        Iterator<TcpResultChunk.Assembly> iterator = connection.partialResults.values().iterator();
+
+        // The map is ordered by creation time, so we can stop at the first assembly that has not expired.
+        while (iterator.hasNext()) {
+            if (iterator.next().getCreatedAt() >= cutoff)
+                break;
+
+            iterator.remove();
+        }
+    }
+
     /**
      * Handle a result received from a remote NameNode.
      * @param result The result we received from the remote NameNode.
@@ -1095,6 +1412,8 @@ private void handleResult(NameNodeResult result, NameNodeConnection connection)
         List<ServerlessTcpUdpFuture> incompleteFutures = submittedFutures.get(connection.name);
         incompleteFutures.remove(future);
 
+        connection.requestCompleted(requestId);
+
         if (LOG.isDebugEnabled()) {
             if (result instanceof NameNodeResultWithMetrics) {
                 NameNodeResultWithMetrics resultWithMetrics = (NameNodeResultWithMetrics)result;
@@ -1164,13 +1483,95 @@ private void cancelActiveFutures(long nameNodeId, List<ServerlessTcpUdpFuture> i
      * Wrapper around Kryo connection objects in order to track per-connection state without needing to use
      * connection IDs to perform state look-up.
      */
-    static class NameNodeConnection extends Connection {
+    static class NameNodeConnection extends Connection implements NameNodeSelectionPolicy.Candidate {
+        /**
+         * Weight of a new sample in the moving average of the latency of this connection's NameNode.
+         */
+        private static final double LATENCY_EWMA_WEIGHT = 0.2;
+
         /**
          * Name of the connection. It's just the unique ID of the NameNode to which we are connected.
          * NameNode IDs are longs, so that's why this is of type long.
          */
         public long name = -1; // Hides super type.
 
+        /**
+         * Results whose {@link TcpResultChunk} frames have only partially arrived, keyed by request ID and ordered
+         * by the arrival of their first chunk. Results that are still incomplete after the TCP timeout are discarded.
+         *
+         * This is only accessed by the server's update thread (i.e., from within the listener), so it need not
+         * be thread-safe.
+         */
+        final LinkedHashMap<String, TcpResultChunk.Assembly> partialResults = new LinkedHashMap<>();
+
+        /**
+         * Requests waiting to be sent as part of the next batch frame. Only used when pipelining is enabled.
+         */
+        final ConcurrentLinkedQueue<TcpUdpRequestPayload> pendingRequests = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Indicates whether a flush of {@code pendingRequests} has already been scheduled.
+         */
+        final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+        /**
+         * The times, from {@link System#nanoTime()}, at which the requests that the NameNode has yet to answer
+         * were sent, keyed by request ID.
+         */
+        private final ConcurrentHashMap<String, Long> inFlightRequests = new ConcurrentHashMap<>();
+
+        private final AtomicInteger numInFlight = new AtomicInteger();
+
+        private volatile double latencyEwmaMillis = 0;
+
+        /**
+         * Record that the request with the given ID was sent to the NameNode.
+         */
+        void requestSent(String requestId) {
+            if (inFlightRequests.put(requestId, System.nanoTime()) == null)
+                numInFlight.incrementAndGet();
+        }
+
+        /**
+         * Record that the NameNode answered the request with the given ID, and update its average latency.
+         */
+        void requestCompleted(String requestId) {
+            Long sendTime = inFlightRequests.remove(requestId);
+            if (sendTime == null)
+                return;
+
+            numInFlight.decrementAndGet();
+            double latencyMillis = (System.nanoTime() - sendTime) / 1.0e6;
+            synchronized (inFlightRequests) {
+                latencyEwmaMillis = latencyEwmaMillis == 0 ? latencyMillis :
+                        latencyEwmaMillis + LATENCY_EWMA_WEIGHT * (latencyMillis - latencyEwmaMillis);
+            }
+        }
+
+        /**
+         * Record that the request with the given ID will not be answered over this connection (e.g., because it was
+         * resolved via HTTP or resubmitted to another NameNode).
+         */
+        void requestAbandoned(String requestId) {
+            if (inFlightRequests.remove(requestId) != null)
+                numInFlight.decrementAndGet();
+        }
+
+        @Override
+        public long getNameNodeId() {
+            return name;
+        }
+
+        @Override
+        public int getNumInFlight() {
+            return numInFlight.get();
+        }
+
+        @Override
+        public double getLatencyEwmaMillis() {
+            return latencyEwmaMillis;
+        }
+
         /**
          * Default constructor.
          */
@@ -1209,7 +1610,10 @@ public void received(Connection conn, Object object) {
             NameNodeConnection connection = (NameNodeConnection)conn;
 
             // If we received a JsonObject, then add it to the queue for processing.
-            if (object instanceof NameNodeResult) {
+            if (object instanceof TcpResultChunk) {
+                handleResultChunk((TcpResultChunk) object, connection);
+            }
+            else if (object instanceof NameNodeResult) {
                 NameNodeResult result = (NameNodeResult) object;
                 handleResult(result, connection);
             }
@@ -1270,6 +1674,9 @@ private void checkStatusOfDisconnectedNameNode(long nnId, int deploymentNumber)
         public void disconnected(Connection conn) {
             NameNodeConnection connection = (NameNodeConnection)conn;
 
+            // Any partially-received results are lost. The associated futures are cancelled/resubmitted below.
+            connection.partialResults.clear();
+
             if (connection.name != -1) {
                 long nnId = connection.name;
 
@@ -7,11 +7,15 @@
 import org.apache.curator.framework.recipes.watch.PersistentWatcher;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.serverless.invoking.DirectorySplit;
 import org.apache.hadoop.hdfs.serverless.invoking.InvokerUtilities;
 import org.apache.zookeeper.*;
 import org.apache.zookeeper.data.Stat;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -35,6 +39,23 @@ public class SyncZKClient implements ZKClient {
      */
     public static final String GUEST_DIR = "/guest";
 
+    /**
+     * Directory under which DataNodes announce newly-published intermediate block reports. The full path for a
+     * given DataNode would be: [BLOCK_REPORT_DIR]/[datanode_uuid].
+     */
+    public static final String BLOCK_REPORT_DIR = "/IBR";
+
+    /**
+     * Directory under which NameNodes publish directory splits. The full path for a given split would be:
+     * [DIRECTORY_SPLIT_DIR]/[parent_inode_id].
+     */
+    public static final String DIRECTORY_SPLIT_DIR = "/splits";
+
+    /**
+     * ZNode in which NameNodes publish the number of deployments, as "numDeployments:numReadWriteDeployments".
+     */
+    public static final String TOPOLOGY_PATH = "/topology";
+
     /**
      * Encapsulates a connection to the ZooKeeper ensemble.
      */
@@ -389,6 +410,110 @@ public void addInvalidationListener(String groupName, Watcher watcher) {
         persistentWatcher.getListenable().addListener(watcher);
     }
 
+    @Override
+    public void notifyBlockReportPublished(String datanodeUuid, int reportId) throws Exception {
+        String path = BLOCK_REPORT_DIR + "/" + datanodeUuid;
+        byte[] data = ByteBuffer.allocate(4).putInt(reportId).array();
+
+        // The ZNode only needs to be created once per DataNode. After that, we just update its data, which
+        // triggers a `NodeDataChanged` event for NameNodes watching the directory.
+        try {
+            this.client.setData().forPath(path, data);
+        } catch (KeeperException.NoNodeException ex) {
+            try {
+                this.client.create().creatingParentsIfNeeded().withMode(CreateMode.PERSISTENT).forPath(path, data);
+            } catch (KeeperException.NodeExistsException ex2) {
+                this.client.setData().forPath(path, data);
+            }
+        }
+    }
+
+    @Override
+    public void addBlockReportListener(Watcher watcher) {
+        PersistentWatcher persistentWatcher = getOrCreatePersistentWatcher(BLOCK_REPORT_DIR, true);
+        persistentWatcher.getListenable().addListener(watcher);
+    }
+
+    @Override
+    public void publishDirectorySplit(DirectorySplit split) throws Exception {
+        String path = DIRECTORY_SPLIT_DIR + "/" + split.getParentINodeId();
+        byte[] data = InvokerUtilities.serializableToBytes(split);
+
+        try {
+            this.client.setData().forPath(path, data);
+        } catch (KeeperException.NoNodeException ex) {
+            try {
+                this.client.create().creatingParentsIfNeeded().withMode(CreateMode.PERSISTENT).forPath(path, data);
+            } catch (KeeperException.NodeExistsException ex2) {
+                this.client.setData().forPath(path, data);
+            }
+        }
+    }
+
+    @Override
+    public List<DirectorySplit> getDirectorySplits() throws Exception {
+        List<String> children;
+        try {
+            children = this.client.getChildren().forPath(DIRECTORY_SPLIT_DIR);
+        } catch (KeeperException.NoNodeException ex) {
+            // Nothing has been split yet.
+            return new ArrayList<>();
+        }
+
+        List<DirectorySplit> splits = new ArrayList<>(children.size());
+        for (String child : children) {
+            try {
+                byte[] data = this.client.getData().forPath(DIRECTORY_SPLIT_DIR + "/" + child);
+                splits.add((DirectorySplit) InvokerUtilities.bytesToObject(data));
+            } catch (KeeperException.NoNodeException ex) {
+                // The split was removed after we listed it.
+            }
+        }
+        return splits;
+    }
+
+    @Override
+    public void addDirectorySplitListener(Watcher watcher) {
+        PersistentWatcher persistentWatcher = getOrCreatePersistentWatcher(DIRECTORY_SPLIT_DIR, true);
+        persistentWatcher.getListenable().addListener(watcher);
+    }
+
+    @Override
+    public void publishTopology(int numDeployments, int numReadWriteDeployments) throws Exception {
+        byte[] data = (numDeployments + ":" + numReadWriteDeployments).getBytes(StandardCharsets.UTF_8);
+
+        try {
+            this.client.setData().forPath(TOPOLOGY_PATH, data);
+        } catch (KeeperException.NoNodeException ex) {
+            try {
+                this.client.create().creatingParentsIfNeeded().withMode(CreateMode.PERSISTENT)
+                        .forPath(TOPOLOGY_PATH, data);
+            } catch (KeeperException.NodeExistsException ex2) {
+                this.client.setData().forPath(TOPOLOGY_PATH, data);
+            }
+        }
+    }
+
+    @Override
+    public int[] getTopology() throws Exception {
+        byte[] data;
+        try {
+            data = this.client.getData().forPath(TOPOLOGY_PATH);
+        } catch (KeeperException.NoNodeException ex) {
+            // No NameNode has published the number of deployments yet.
+            return null;
+        }
+
+        String[] counts = new String(data, StandardCharsets.UTF_8).split(":");
+        return new int[] { Integer.parseInt(counts[0]), Integer.parseInt(counts[1]) };
+    }
+
+    @Override
+    public void addTopologyListener(Watcher watcher) {
+        PersistentWatcher persistentWatcher = getOrCreatePersistentWatcher(TOPOLOGY_PATH, false);
+        persistentWatcher.getListenable().addListener(watcher);
+    }
+
     private void addGuestListener(String groupName, Watcher watcher) {
         String path = getPath(groupName, null, false);
         PersistentWatcher persistentWatcher = getOrCreatePersistentWatcher(path, false);
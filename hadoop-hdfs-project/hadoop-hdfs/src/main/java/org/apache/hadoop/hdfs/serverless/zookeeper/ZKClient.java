@@ -1,6 +1,7 @@
 package org.apache.hadoop.hdfs.serverless.zookeeper;
 
 import org.apache.curator.framework.recipes.nodes.GroupMember;
+import org.apache.hadoop.hdfs.serverless.invoking.DirectorySplit;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.Watcher;
 
@@ -218,6 +219,74 @@ void joinGroupAsGuest(String groupName, String memberId, Watcher watcher,
      */
     void removeInvalidation(long operationId, String groupName) throws Exception;
 
+    /**
+     * Notify NameNodes that the DataNode identified by the given UUID has published a new intermediate block report.
+     * This creates or updates the DataNode's ZNode under {@link SyncZKClient#BLOCK_REPORT_DIR}.
+     *
+     * @param datanodeUuid The DataNode that published the report.
+     * @param reportId The ID of the report that was published.
+     */
+    void notifyBlockReportPublished(String datanodeUuid, int reportId) throws Exception;
+
+    /**
+     * Add a listener to the Watch for the intermediate block report ZNode directory. The listener will receive a
+     * {@code NodeCreated} or {@code NodeDataChanged} event, whose path ends with the DataNode's UUID, each time a
+     * DataNode publishes an intermediate block report.
+     *
+     * This will create and start a recursive Persistent Watcher for the directory if one does not already exist.
+     *
+     * @param watcher Watcher object to be added. Serves as the callback for the event notification.
+     */
+    void addBlockReportListener(Watcher watcher);
+
+    /**
+     * Publish the given directory split, replacing any earlier split of the same directory. This creates or updates
+     * the split's ZNode under {@link SyncZKClient#DIRECTORY_SPLIT_DIR}, which is named after the INode ID of the
+     * split directory.
+     */
+    void publishDirectorySplit(DirectorySplit split) throws Exception;
+
+    /**
+     * Return all the directory splits that have been published.
+     */
+    List<DirectorySplit> getDirectorySplits() throws Exception;
+
+    /**
+     * Add a listener to the Watch for the directory split ZNode directory. The listener will receive a
+     * {@code NodeCreated}, {@code NodeDataChanged} or {@code NodeDeleted} event, whose path ends with the INode ID
+     * of the split directory, each time a split is published or removed.
+     *
+     * This will create and start a recursive Persistent Watcher for the directory if one does not already exist.
+     *
+     * @param watcher Watcher object to be added. Serves as the callback for the event notification.
+     */
+    void addDirectorySplitListener(Watcher watcher);
+
+    /**
+     * Publish the number of deployments, replacing the previously-published number. This creates or updates the
+     * ZNode at {@link SyncZKClient#TOPOLOGY_PATH}.
+     *
+     * @param numDeployments The number of unique deployments, including write-only and mixed (read-write).
+     * @param numReadWriteDeployments The number of mixed (read-write) deployments.
+     */
+    void publishTopology(int numDeployments, int numReadWriteDeployments) throws Exception;
+
+    /**
+     * Return the published number of deployments as {@code [numDeployments, numReadWriteDeployments]}, or null if
+     * no number has been published yet.
+     */
+    int[] getTopology() throws Exception;
+
+    /**
+     * Add a listener to the Watch for the topology ZNode. The listener will receive a {@code NodeCreated} or
+     * {@code NodeDataChanged} event each time the number of deployments is published.
+     *
+     * This will create and start a Persistent Watcher for the ZNode if one does not already exist.
+     *
+     * @param watcher Watcher object to be added. Serves as the callback for the event notification.
+     */
+    void addTopologyListener(Watcher watcher);
+
     /**
      * Remove a listener from the Watch for the given group. This removes the watcher from the PERMANENT sub-group.
      *
@@ -0,0 +1,235 @@
+package io.hops.transaction.context;
+
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.protocol.HdfsConstantsClient;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestRootINodeCache {
+  private static final PermissionStatus PERMISSIONS =
+      new PermissionStatus("user", "group", FsPermission.getDefault());
+
+  private static final long TIMEOUT_MILLIS = 10000;
+
+  /**
+   * The INodes in intermediate storage, by parent ID and local name.
+   */
+  private Map<String, INode> storage;
+
+  /**
+   * The number of reads of each INode, by local name.
+   */
+  private Map<String, AtomicInteger> reads;
+
+  /**
+   * If set, reads of the INode with the given name wait until the latch is released, and then return the INode as it
+   * was before they waited.
+   */
+  private volatile String blockedName;
+  private volatile CountDownLatch blockedReadStarted;
+  private volatile CountDownLatch blockedReadReleased;
+
+  private INode root;
+
+  @Before
+  public void setUp() throws IOException {
+    storage = new ConcurrentHashMap<>();
+    reads = new ConcurrentHashMap<>();
+    root = store(INode.ROOT_INODE_ID, HdfsConstantsClient.GRANDFATHER_INODE_ID, INodeDirectory.ROOT_NAME);
+  }
+
+  @After
+  public void tearDown() {
+    if (blockedReadReleased != null) {
+      blockedReadReleased.countDown();
+    }
+    RootINodeCache.stop();
+  }
+
+  private INode store(long id, long parentId, String name) throws IOException {
+    INode inode = new INodeDirectory(id, name, PERMISSIONS);
+    inode.setParentIdNoPersistance(parentId);
+    storage.put(INode.nameParentKey(parentId, name), inode);
+    return inode;
+  }
+
+  private INode read(String name, long parentId, long partitionId) throws IOException {
+    reads.computeIfAbsent(name, n -> new AtomicInteger()).incrementAndGet();
+    INode inode = storage.get(INode.nameParentKey(parentId, name));
+    if (name.equals(blockedName)) {
+      blockedReadStarted.countDown();
+      try {
+        blockedReadReleased.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+    }
+    return inode;
+  }
+
+  private void blockReadsOf(String name) {
+    blockedReadStarted = new CountDownLatch(1);
+    blockedReadReleased = new CountDownLatch(1);
+    blockedName = name;
+  }
+
+  private void awaitBlockedRead() throws InterruptedException {
+    assertTrue(blockedReadStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+  }
+
+  private void releaseBlockedRead() {
+    blockedName = null;
+    blockedReadReleased.countDown();
+  }
+
+  private static void awaitPinned(INode expected, Supplier<INode> pinned) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (pinned.get() != expected) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("Timed out waiting for " + expected + " to be pinned, found " + pinned.get());
+      }
+      Thread.sleep(10);
+    }
+  }
+
+  private static void awaitPinned(INode expected) throws InterruptedException {
+    awaitPinned(expected, () -> RootINodeCache.getPinnedINode(expected.getLocalName(), expected.getParentId()));
+  }
+
+  @Test
+  public void testPinnedLevelsDoNotDependOnResolvedINodes() throws IOException {
+    INode a = store(2, INode.ROOT_INODE_ID, "a");
+    INode b = store(3, 2, "b");
+    INode c = store(4, 3, "c");
+    Map<Long, INode> ancestors = new HashMap<>();
+    for (INode inode : new INode[] { root, a, b, c }) {
+      ancestors.put(inode.getId(), inode);
+    }
+
+    // Nothing has been resolved, so this NameNode has pinned nothing but the root. Other NameNodes may have pinned
+    // the first three levels, which must therefore be invalidated on every deployment.
+    RootINodeCache.start(3, 0, this::read);
+    assertFalse(RootINodeCache.isTracked(a));
+    assertTrue(RootINodeCache.isPinned(root, ancestors::get));
+    assertTrue(RootINodeCache.isPinned(a, ancestors::get));
+    assertTrue(RootINodeCache.isPinned(b, ancestors::get));
+    assertFalse(RootINodeCache.isPinned(c, ancestors::get));
+    assertTrue(RootINodeCache.isPinnedPath("/a/b"));
+    assertFalse(RootINodeCache.isPinnedPath("/a/b/c"));
+
+    // An INode whose ancestors are unknown may be at a pinned level.
+    assertTrue(RootINodeCache.isPinned(c, id -> null));
+
+    RootINodeCache.stop();
+    assertFalse(RootINodeCache.isPinned(a, ancestors::get));
+  }
+
+  @Test
+  public void testInvalidatedINodeIsReadAgain() throws Exception {
+    INode a = store(2, INode.ROOT_INODE_ID, "a");
+    RootINodeCache.start(2, 0, this::read);
+    awaitPinned(root, RootINodeCache::getRootINode);
+
+    RootINodeCache.resolved(a);
+    awaitPinned(a);
+    assertTrue(RootINodeCache.isTracked(a));
+
+    INode modified = store(2, INode.ROOT_INODE_ID, "a");
+    RootINodeCache.invalidate(a.getId());
+    awaitPinned(modified);
+    assertTrue(RootINodeCache.isTracked(modified));
+  }
+
+  @Test
+  public void testInvalidationDuringReadIsReadAgain() throws Exception {
+    INode a = store(2, INode.ROOT_INODE_ID, "a");
+    RootINodeCache.start(2, 0, this::read);
+    awaitPinned(root, RootINodeCache::getRootINode);
+
+    blockReadsOf("a");
+    RootINodeCache.resolved(a);
+    awaitBlockedRead();
+
+    // The INode is modified and invalidated after it has been read, but before it has been cached.
+    INode modified = store(2, INode.ROOT_INODE_ID, "a");
+    RootINodeCache.invalidate(a.getId());
+    releaseBlockedRead();
+
+    awaitPinned(modified);
+  }
+
+  @Test
+  public void testInvalidationOfOtherINodesDuringRead() throws Exception {
+    INode a = store(2, INode.ROOT_INODE_ID, "a");
+    INode b = store(3, INode.ROOT_INODE_ID, "b");
+    RootINodeCache.start(2, 0, this::read);
+    awaitPinned(root, RootINodeCache::getRootINode);
+    RootINodeCache.resolved(b);
+    awaitPinned(b);
+
+    blockReadsOf("a");
+    RootINodeCache.resolved(a);
+    awaitBlockedRead();
+
+    // Invalidating another INode must not discard the read of this one.
+    RootINodeCache.invalidate(b.getId());
+    releaseBlockedRead();
+
+    awaitPinned(a);
+    awaitPinned(b);
+    assertEquals(1, reads.get("a").get());
+  }
+
+  @Test
+  public void testInvalidateAllEvictsEverything() throws Exception {
+    INode a = store(2, INode.ROOT_INODE_ID, "a");
+    RootINodeCache.start(2, 0, this::read);
+    awaitPinned(root, RootINodeCache::getRootINode);
+    RootINodeCache.resolved(a);
+    awaitPinned(a);
+
+    INode modifiedRoot = store(INode.ROOT_INODE_ID, HdfsConstantsClient.GRANDFATHER_INODE_ID,
+        INodeDirectory.ROOT_NAME);
+    RootINodeCache.invalidateAll();
+    assertFalse(RootINodeCache.isTracked(a));
+    assertNull(RootINodeCache.getPinnedINode("a", INode.ROOT_INODE_ID));
+    awaitPinned(modifiedRoot, RootINodeCache::getRootINode);
+    assertSame(modifiedRoot, RootINodeCache.getRootINode());
+  }
+
+  @Test
+  public void testExpiredINodeIsReadAgain() throws Exception {
+    INode a = store(2, INode.ROOT_INODE_ID, "a");
+    RootINodeCache.start(2, 50, this::read);
+    awaitPinned(root, RootINodeCache::getRootINode);
+    RootINodeCache.resolved(a);
+    awaitPinned(a);
+
+    // The INode is modified by a transaction that did not run the consistency protocol, so no INV is received.
+    INode modified = store(2, INode.ROOT_INODE_ID, "a");
+    Thread.sleep(100);
+    assertNull(RootINodeCache.getPinnedINode("a", INode.ROOT_INODE_ID));
+    awaitPinned(modified);
+    assertTrue(RootINodeCache.isTracked(modified));
+  }
+}
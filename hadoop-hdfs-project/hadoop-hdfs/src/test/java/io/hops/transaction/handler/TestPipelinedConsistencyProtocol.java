@@ -0,0 +1,208 @@
+package io.hops.transaction.handler;
+
+import io.hops.transaction.lock.TransactionLocks;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.apache.hadoop.hdfs.server.namenode.ServerlessNameNode;
+import org.apache.hadoop.hdfs.serverless.consistency.ConsistencyProtocol;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class TestPipelinedConsistencyProtocol {
+  private static final PermissionStatus PERMISSIONS =
+      new PermissionStatus("user", "group", FsPermission.getDefault());
+
+  private ServerlessNameNode nameNode;
+
+  @Before
+  public void setUp() throws Exception {
+    nameNode = mock(ServerlessNameNode.class);
+    when(nameNode.getTxAckTimeout()).thenReturn(50);
+    setNameNodeInstance(nameNode);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    setNameNodeInstance(null);
+    ConsistencyProtocol.DO_CONSISTENCY_PROTOCOL.remove();
+  }
+
+  private static void setNameNodeInstance(ServerlessNameNode instance) throws Exception {
+    Field field = ServerlessNameNode.class.getDeclaredField("instance");
+    field.setAccessible(true);
+    field.set(null, instance);
+  }
+
+  private static INode inode(long id, long parentId) throws IOException {
+    INode inode = new INodeDirectory(id, "inode-" + id, PERMISSIONS);
+    inode.setParentIdNoPersistance(parentId);
+    return inode;
+  }
+
+  /**
+   * A protocol that does not contact any other NameNode, and that ends with the given outcome once it is released.
+   */
+  private static class FakeProtocol extends ConsistencyProtocol {
+    private final boolean canProceed;
+    private final List<Exception> exceptions = new ArrayList<>();
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    FakeProtocol(boolean canProceed, Exception... exceptions) {
+      super(null, null, null, null, 0, true, false, false, null, Collections.<INode>emptyList(), -1);
+      this.canProceed = canProceed;
+      this.exceptions.addAll(Arrays.asList(exceptions));
+    }
+
+    FakeProtocol released() {
+      released.countDown();
+      return this;
+    }
+
+    @Override
+    public void run() {
+      try {
+        released.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public boolean getCanProceed() {
+      return canProceed;
+    }
+
+    @Override
+    public List<Exception> getExceptions() {
+      return exceptions;
+    }
+  }
+
+  private static Collection<INode> await(ConsistencyProtocol protocol, Map<Long, Integer> deployments,
+      Collection<INode> invalidatedINodes, ServerlessNameNode nameNode) throws IOException {
+    protocol.start();
+    return HopsTransactionalRequestHandler.awaitPipelinedConsistencyProtocol(protocol, deployments,
+        invalidatedINodes, nameNode);
+  }
+
+  @Test
+  public void testUncoveredINodesAreReturned() throws Exception {
+    INode covered = inode(2, 1);
+    INode notWriteLocked = inode(3, 1);
+    INode moved = inode(4, 5);
+    when(nameNode.getMappedDeploymentNumber(covered)).thenReturn(0);
+    when(nameNode.getMappedDeploymentNumber(notWriteLocked)).thenReturn(0);
+    when(nameNode.getMappedDeploymentNumber(moved)).thenReturn(1);
+
+    // The INVs went out for the two write-locked INodes, both of which mapped to deployment 0 at the time.
+    Map<Long, Integer> deployments = new HashMap<>();
+    deployments.put(covered.getId(), 0);
+    deployments.put(moved.getId(), 0);
+
+    // The protocol must still be run, before commit, for the INodes that the pipelined round did not reach.
+    Collection<INode> uncovered = await(new FakeProtocol(true).released(), deployments,
+        Arrays.asList(covered, notWriteLocked, moved), nameNode);
+    assertEquals(Arrays.asList(notWriteLocked, moved), uncovered);
+
+    // If the pipelined round covered everything, then nothing is left to do before commit.
+    uncovered = await(new FakeProtocol(true).released(), deployments, Collections.singletonList(covered), nameNode);
+    assertTrue(uncovered.isEmpty());
+  }
+
+  @Test
+  public void testFailedProtocolAbortsTransaction() throws Exception {
+    IOException cause = new IOException("Follower did not ACK.");
+    Map<Long, Integer> deployments = Collections.singletonMap(2L, 0);
+    List<INode> invalidated = Collections.singletonList(inode(2, 1));
+
+    try {
+      await(new FakeProtocol(false, cause).released(), deployments, invalidated, nameNode);
+      fail("The transaction must abort if the pipelined consistency protocol failed.");
+    } catch (IOException e) {
+      assertSame(cause, e);
+    }
+
+    try {
+      await(new FakeProtocol(false).released(), deployments, invalidated, nameNode);
+      fail("The transaction must abort if the pipelined consistency protocol failed.");
+    } catch (IOException e) {
+      // Expected.
+    }
+
+    try {
+      await(new FakeProtocol(false, new IllegalStateException("Lost ZooKeeper session.")).released(), deployments,
+          invalidated, nameNode);
+      fail("The transaction must abort if the pipelined consistency protocol failed.");
+    } catch (IOException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  @Test
+  public void testTimedOutProtocolAbortsTransaction() throws Exception {
+    FakeProtocol protocol = new FakeProtocol(true);
+    try {
+      await(protocol, Collections.singletonMap(2L, 0), Collections.singletonList(inode(2, 1)), nameNode);
+      fail("The transaction must abort if the pipelined consistency protocol did not finish in time.");
+    } catch (IOException e) {
+      assertTrue(protocol.isAlive());
+    } finally {
+      protocol.released();
+      protocol.join();
+    }
+  }
+
+  @Test
+  public void testNotPipelinedWhenDisabled() throws Exception {
+    HopsTransactionalRequestHandler handler = new HopsTransactionalRequestHandler(HDFSOperationType.TEST) {
+      @Override
+      public void acquireLock(TransactionLocks locks) throws IOException {
+      }
+
+      @Override
+      public Object performTask() throws IOException {
+        return null;
+      }
+    };
+    TransactionLocks locks = mock(TransactionLocks.class);
+
+    // Pipelining is disabled on the NameNode, so the protocol only runs after in-memory processing, as before.
+    when(nameNode.isConsistencyProtocolPipelined()).thenReturn(false);
+    assertFalse(handler.startConsistencyProtocol(0, null, locks));
+
+    // The consistency protocol itself is disabled.
+    when(nameNode.isConsistencyProtocolPipelined()).thenReturn(true);
+    ConsistencyProtocol.DO_CONSISTENCY_PROTOCOL.set(false);
+    assertFalse(handler.startConsistencyProtocol(0, null, locks));
+
+    // There is no NameNode.
+    ConsistencyProtocol.DO_CONSISTENCY_PROTOCOL.set(true);
+    setNameNodeInstance(null);
+    assertFalse(handler.startConsistencyProtocol(0, null, locks));
+
+    verifyZeroInteractions(locks);
+  }
+}
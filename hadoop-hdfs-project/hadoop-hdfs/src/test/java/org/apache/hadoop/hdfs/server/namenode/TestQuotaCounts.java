@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestQuotaCounts {
+
+  @Test
+  public void testDirectoryCountAndLengthFollowDeltas() {
+    QuotaCounts usage = new QuotaCounts.Builder().nameSpace(1).directoryCount(1).build();
+
+    // a sub-directory holding two files of 10 and 20 bytes
+    QuotaCounts subtree = new QuotaCounts.Builder().nameSpace(3).storageSpace(90)
+        .directoryCount(1).length(30).build();
+    usage.add(subtree);
+    assertEquals(4, usage.getNameSpace());
+    assertEquals(2, usage.getDirectoryCount());
+    assertEquals(30, usage.getLength());
+
+    QuotaCounts copy = new QuotaCounts.Builder().quotaCount(usage).build();
+    assertEquals(usage, copy);
+    copy.addLength(1);
+    assertFalse(usage.equals(copy));
+
+    usage.add(subtree.negation());
+    assertEquals(new QuotaCounts.Builder().nameSpace(1).directoryCount(1).build(), usage);
+  }
+
+  @Test
+  public void testSymlinksAreNotCountedAsFiles() {
+    QuotaCounts usage = new QuotaCounts.Builder().nameSpace(1).directoryCount(1).build();
+
+    // a file and a symlink to it
+    QuotaCounts file = new QuotaCounts.Builder().nameSpace(1).storageSpace(30).length(10).build();
+    QuotaCounts symlink = new QuotaCounts.Builder().nameSpace(1).symlinkCount(1).build();
+    usage.add(file);
+    usage.add(symlink);
+    assertEquals(3, usage.getNameSpace());
+    assertEquals(1, usage.getDirectoryCount());
+    assertEquals(1, usage.getSymlinkCount());
+    assertEquals(1, usage.getFileCount());
+
+    usage.add(symlink.negation());
+    assertEquals(0, usage.getSymlinkCount());
+    assertEquals(1, usage.getFileCount());
+  }
+
+  @Test
+  public void testUninitializedAggregatesIgnoreDeltas() {
+    QuotaCounts subtree = new QuotaCounts.Builder().nameSpace(3).storageSpace(90)
+        .directoryCount(1).length(30).build();
+
+    DirectoryWithQuotaFeature initialized = new DirectoryWithQuotaFeature.Builder(2L).build();
+    assertTrue(initialized.hasAggregates());
+    initialized.applySpaceConsumed(subtree);
+    assertTrue(initialized.hasAggregates());
+    assertEquals(2, initialized.getSpaceConsumed().getDirectoryCount());
+    assertEquals(30, initialized.getSpaceConsumed().getLength());
+
+    // e.g., a quota row that predates the aggregate columns
+    DirectoryWithQuotaFeature uninitialized = new DirectoryWithQuotaFeature.Builder(3L)
+        .directoryUsage(DirectoryWithQuotaFeature.UNINITIALIZED_AGGREGATE)
+        .symlinkUsage(DirectoryWithQuotaFeature.UNINITIALIZED_AGGREGATE)
+        .lengthUsage(DirectoryWithQuotaFeature.UNINITIALIZED_AGGREGATE).build();
+    assertFalse(uninitialized.hasAggregates());
+    uninitialized.applySpaceConsumed(subtree);
+    assertFalse(uninitialized.hasAggregates());
+    assertEquals(4, uninitialized.getSpaceConsumed().getNameSpace());
+    assertEquals(90, uninitialized.getSpaceConsumed().getStorageSpace());
+    assertEquals(DirectoryWithQuotaFeature.UNINITIALIZED_AGGREGATE,
+        uninitialized.getSpaceConsumed().getLength());
+  }
+}
@@ -0,0 +1,326 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import io.hops.metadata.hdfs.entity.ProjectedINode;
+import org.apache.hadoop.hdfs.serverless.invoking.ArgumentContainer;
+import org.apache.hadoop.hdfs.serverless.invoking.ServerlessInvokerBase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestSubtreeDeletePipeline {
+  private static final long DIR_ID = 2;
+  private static final int NUM_FILES = 25;
+  private static final int BATCH_SIZE = 10;
+
+  private long biggestDeletableDir;
+  private int batchSize;
+  private int largeBatchSize;
+
+  private FSNamesystem fsn;
+  private ExecutorService localExecutor;
+  private SubtreeDeletePipeline pipeline;
+  private AbstractFileTree.FileTree fileTree;
+
+  @Before
+  public void setUp() throws Exception {
+    biggestDeletableDir = FSDirDeleteOp.BIGGEST_DELETABLE_DIR;
+    batchSize = FSDirDeleteOp.SUBTREE_DELETE_BATCH_SIZE;
+    largeBatchSize = FSDirDeleteOp.SUBTREE_DELETE_BATCH_SIZE_LARGE;
+    FSDirDeleteOp.BIGGEST_DELETABLE_DIR = 2;
+    FSDirDeleteOp.SUBTREE_DELETE_BATCH_SIZE = BATCH_SIZE;
+    FSDirDeleteOp.SUBTREE_DELETE_BATCH_SIZE_LARGE = BATCH_SIZE;
+
+    // Local deletes complete successfully without touching the database.
+    localExecutor = mock(ExecutorService.class);
+    doReturn(CompletableFuture.completedFuture(true)).when(localExecutor).submit(any(Callable.class));
+
+    pipeline = mock(SubtreeDeletePipeline.class);
+    fsn = mock(FSNamesystem.class);
+    when(fsn.getFSOperationsExecutor()).thenReturn(localExecutor);
+    when(fsn.getSubtreeDeletePipeline()).thenReturn(pipeline);
+
+    // A directory that is too large to delete directly, holding NUM_FILES files and one sub-directory.
+    ProjectedINode dir = inode(DIR_ID, 1, "dir", true);
+    List<ProjectedINode> children = new ArrayList<>();
+    for (int i = 0; i < NUM_FILES; i++) {
+      children.add(inode(DIR_ID + 1 + i, DIR_ID, "file-" + i, false));
+    }
+    children.add(inode(DIR_ID + 1 + NUM_FILES, DIR_ID, "subdir", true));
+
+    fileTree = mock(AbstractFileTree.FileTree.class);
+    when(fileTree.getDirsByLevel(1)).thenReturn(Collections.singleton(dir));
+    when(fileTree.getChildren(DIR_ID)).thenReturn(children);
+    when(fileTree.createAbsolutePath(anyString(), any(ProjectedINode.class))).thenAnswer(new Answer<String>() {
+      @Override
+      public String answer(InvocationOnMock invocation) {
+        return invocation.getArguments()[0] + "/" + ((ProjectedINode) invocation.getArguments()[1]).getName();
+      }
+    });
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FSDirDeleteOp.BIGGEST_DELETABLE_DIR = biggestDeletableDir;
+    FSDirDeleteOp.SUBTREE_DELETE_BATCH_SIZE = batchSize;
+    FSDirDeleteOp.SUBTREE_DELETE_BATCH_SIZE_LARGE = largeBatchSize;
+    setNameNodeInstance(null);
+  }
+
+  private static void setNameNodeInstance(ServerlessNameNode instance) throws Exception {
+    Field field = ServerlessNameNode.class.getDeclaredField("instance");
+    field.setAccessible(true);
+    field.set(null, instance);
+  }
+
+  private static ProjectedINode inode(long id, long parentId, String name, boolean isDir) {
+    return new ProjectedINode(id, parentId, name, 0, isDir, (short) 0755, 0, 0, 0, false, false, false, false, 0,
+        0, 0, (byte) 0, 0, (byte) 0, (byte) 0);
+  }
+
+  /**
+   * A future that records whether it was awaited.
+   */
+  private static class TrackedFuture extends CompletableFuture<Boolean> {
+    private volatile boolean awaited;
+
+    TrackedFuture(boolean result) {
+      complete(result);
+    }
+
+    @Override
+    public Boolean get() throws InterruptedException, ExecutionException {
+      awaited = true;
+      return super.get();
+    }
+  }
+
+  @Test
+  public void testEveryBatchIsOffloaded() throws Exception {
+    final List<List<String>> offloaded = new ArrayList<>();
+    when(pipeline.tryOffload(any(List.class), anyLong())).thenAnswer(new Answer<Future<Boolean>>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public Future<Boolean> answer(InvocationOnMock invocation) {
+        offloaded.add(new ArrayList<>((List<String>) invocation.getArguments()[0]));
+        return CompletableFuture.completedFuture(true);
+      }
+    });
+
+    assertTrue(FSDirDeleteOp.deleteTreeLevel(fsn, "/root", 1, fileTree, 1));
+
+    // Two full batches, and the partial batch left over at the end. Sub-directories are not part of any batch.
+    assertEquals(3, offloaded.size());
+    assertEquals(BATCH_SIZE, offloaded.get(0).size());
+    assertEquals(BATCH_SIZE, offloaded.get(1).size());
+    assertEquals(NUM_FILES - 2 * BATCH_SIZE, offloaded.get(2).size());
+
+    Set<String> paths = new HashSet<>();
+    for (List<String> batch : offloaded) {
+      paths.addAll(batch);
+    }
+    assertEquals(NUM_FILES, paths.size());
+    for (int i = 0; i < NUM_FILES; i++) {
+      assertTrue(paths.contains("/root/file-" + i));
+    }
+
+    // Only the emptied directory itself is deleted locally.
+    verify(localExecutor, times(1)).submit(any(Callable.class));
+  }
+
+  @Test
+  public void testFullPipelineFallsBackToLocalDeletes() throws Exception {
+    when(pipeline.tryOffload(any(List.class), anyLong())).thenReturn(null);
+
+    assertTrue(FSDirDeleteOp.deleteTreeLevel(fsn, "/root", 1, fileTree, 1));
+
+    // Every file, including those of the partial batch, and then the emptied directory.
+    verify(pipeline, times(3)).tryOffload(any(List.class), anyLong());
+    verify(localExecutor, times(NUM_FILES + 1)).submit(any(Callable.class));
+  }
+
+  @Test
+  public void testDispatchBatch() throws Exception {
+    List<String> batch = new ArrayList<>();
+    batch.add("/root/a");
+    batch.add("/root/b");
+    ArrayList<Future> barrier = new ArrayList<>();
+
+    Future<Boolean> remote = CompletableFuture.completedFuture(true);
+    when(pipeline.tryOffload(batch, 1)).thenReturn(remote);
+    assertTrue(FSDirDeleteOp.dispatchBatch(fsn, pipeline, batch, 1, barrier));
+    assertEquals(1, barrier.size());
+    assertTrue(barrier.get(0) == remote);
+    verify(localExecutor, never()).submit(any(Callable.class));
+
+    barrier.clear();
+    when(pipeline.tryOffload(batch, 1)).thenReturn(null);
+    assertFalse(FSDirDeleteOp.dispatchBatch(fsn, pipeline, batch, 1, barrier));
+    assertEquals(batch.size(), barrier.size());
+    verify(localExecutor, times(batch.size())).submit(any(Callable.class));
+  }
+
+  @Test
+  public void testDrainBarrierAwaitsRemainingDeletesAfterFailure() throws Exception {
+    ArrayList<Future> barrier = new ArrayList<>();
+    List<TrackedFuture> futures = new ArrayList<>();
+    for (int i = 0; i < FSDirDeleteOp.MAX_PENDING_DELETES; i++) {
+      TrackedFuture future = new TrackedFuture(i != 0);
+      futures.add(future);
+      barrier.add(future);
+    }
+
+    assertFalse(FSDirDeleteOp.drainBarrier(barrier));
+    for (TrackedFuture future : futures) {
+      assertTrue(future.awaited);
+    }
+
+    // The oldest half was removed from the barrier.
+    assertEquals(FSDirDeleteOp.MAX_PENDING_DELETES - FSDirDeleteOp.MAX_PENDING_DELETES / 2, barrier.size());
+  }
+
+  @Test
+  public void testDrainBarrierWaitsForOldestHalf() throws Exception {
+    ArrayList<Future> barrier = new ArrayList<>();
+    List<TrackedFuture> futures = new ArrayList<>();
+    for (int i = 0; i < FSDirDeleteOp.MAX_PENDING_DELETES - 1; i++) {
+      TrackedFuture future = new TrackedFuture(true);
+      futures.add(future);
+      barrier.add(future);
+    }
+
+    // Below the limit, nothing is awaited.
+    assertTrue(FSDirDeleteOp.drainBarrier(barrier));
+    assertEquals(FSDirDeleteOp.MAX_PENDING_DELETES - 1, barrier.size());
+
+    TrackedFuture last = new TrackedFuture(true);
+    futures.add(last);
+    barrier.add(last);
+    assertTrue(FSDirDeleteOp.drainBarrier(barrier));
+    assertEquals(FSDirDeleteOp.MAX_PENDING_DELETES / 2, barrier.size());
+    for (int i = 0; i < futures.size(); i++) {
+      assertEquals(i < FSDirDeleteOp.MAX_PENDING_DELETES / 2, futures.get(i).awaited);
+    }
+  }
+
+  @Test
+  public void testNextTargetDeploymentIsNeverLocal() {
+    SubtreeDeletePipeline pipeline = new SubtreeDeletePipeline(1);
+    try {
+      ServerlessNameNode instance = mock(ServerlessNameNode.class);
+      int numDeployments = 4;
+      when(instance.getNumNormalAndWriteOnlyDeployments()).thenReturn(numDeployments);
+
+      for (int local = 0; local < numDeployments; local++) {
+        when(instance.getDeploymentNumber()).thenReturn(local);
+
+        Set<Integer> targets = new HashSet<>();
+        for (int i = 0; i < 4 * numDeployments; i++) {
+          int target = pipeline.nextTargetDeployment(instance);
+          assertNotEquals(local, target);
+          assertTrue(target >= 0 && target < numDeployments);
+          targets.add(target);
+        }
+
+        // The round-robin reaches every other deployment.
+        assertEquals(numDeployments - 1, targets.size());
+      }
+    } finally {
+      pipeline.shutdown();
+    }
+  }
+
+  @Test
+  public void testTryOffloadWhenPipelineIsFull() throws Exception {
+    final CountDownLatch released = new CountDownLatch(1);
+    ServerlessInvokerBase invoker = mock(ServerlessInvokerBase.class);
+    when(invoker.issueHttpRequestWithRetries(any(ServerlessInvokerBase.class), anyString(), anyString(),
+        any(HashMap.class), any(ArgumentContainer.class), anyString(), anyInt(), anyBoolean()))
+        .thenAnswer(new Answer<Object>() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            released.await();
+            return null;
+          }
+        });
+
+    ServerlessNameNode instance = mock(ServerlessNameNode.class);
+    when(instance.getNumNormalAndWriteOnlyDeployments()).thenReturn(3);
+    when(instance.getServerlessInvoker()).thenReturn(invoker);
+    setNameNodeInstance(instance);
+
+    SubtreeDeletePipeline pipeline = new SubtreeDeletePipeline(1);
+    try {
+      Future<Boolean> first = pipeline.tryOffload(Collections.singletonList("/root/a"), 1);
+      assertNotNull(first);
+
+      // The only slot is taken, so the caller must delete the second batch itself.
+      assertNull(pipeline.tryOffload(Collections.singletonList("/root/b"), 1));
+
+      released.countDown();
+      try {
+        first.get(10, TimeUnit.SECONDS);
+      } catch (ExecutionException e) {
+        // The fake invoker does not return a response.
+      }
+
+      // The slot is free again.
+      Future<Boolean> third = pipeline.tryOffload(Collections.singletonList("/root/c"), 1);
+      assertNotNull(third);
+    } finally {
+      released.countDown();
+      pipeline.shutdown();
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs.server.protocol;
+
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.protocol.ReceivedDeletedBlockInfo.BlockStatus;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestIntermediateBlockReportCodec {
+
+  private static StorageReceivedDeletedBlocks[] createReport() {
+    return new StorageReceivedDeletedBlocks[] {
+        new StorageReceivedDeletedBlocks(
+            new DatanodeStorage("DS-1", DatanodeStorage.State.NORMAL,
+                StorageType.SSD),
+            new ReceivedDeletedBlockInfo[] {
+                new ReceivedDeletedBlockInfo(new Block(1, 10, 100),
+                    BlockStatus.RECEIVING_BLOCK, null),
+                new ReceivedDeletedBlockInfo(new Block(2, 20, 200),
+                    BlockStatus.DELETED_BLOCK, "dn2")}),
+        new StorageReceivedDeletedBlocks(new DatanodeStorage("DS-2"),
+            new ReceivedDeletedBlockInfo[] {
+                new ReceivedDeletedBlockInfo(new Block(3, 30, 300),
+                    BlockStatus.RECEIVED_BLOCK, null)})};
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    StorageReceivedDeletedBlocks[] original = createReport();
+    String encoded = IntermediateBlockReportCodec.encode(original);
+    assertTrue(encoded.startsWith(IntermediateBlockReportCodec.COLUMNAR_PREFIX));
+
+    StorageReceivedDeletedBlocks[] decoded =
+        IntermediateBlockReportCodec.decode(encoded, null);
+
+    assertEquals(original.length, decoded.length);
+    for (int i = 0; i < original.length; i++) {
+      DatanodeStorage storage = decoded[i].getStorage();
+      assertEquals(original[i].getStorage().getStorageID(),
+          storage.getStorageID());
+      assertEquals(original[i].getStorage().getState(), storage.getState());
+      assertEquals(original[i].getStorage().getStorageType(),
+          storage.getStorageType());
+
+      ReceivedDeletedBlockInfo[] blocks = decoded[i].getBlocks();
+      assertEquals(original[i].getBlocks().length, blocks.length);
+      for (int j = 0; j < blocks.length; j++) {
+        ReceivedDeletedBlockInfo expected = original[i].getBlocks()[j];
+        assertEquals(expected.getBlock(), blocks[j].getBlock());
+        assertEquals(expected.getBlock().getNumBytes(),
+            blocks[j].getBlock().getNumBytes());
+        assertEquals(expected.getStatus(), blocks[j].getStatus());
+        assertEquals(expected.getDelHints(), blocks[j].getDelHints());
+      }
+    }
+    assertNull(decoded[0].getBlocks()[0].getDelHints());
+  }
+
+  /**
+   * Encode a report of a single storage without blocks, with the given raw
+   * state and storage type ordinals.
+   */
+  private static String encodeStorage(int state, int storageType)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(1);
+    out.writeUTF("DS-1");
+    out.writeByte(state);
+    out.writeByte(storageType);
+    out.writeInt(0);
+    out.flush();
+    return IntermediateBlockReportCodec.COLUMNAR_PREFIX +
+        Base64.getEncoder().encodeToString(bytes.toByteArray());
+  }
+
+  private static void assertRejected(String encoded) {
+    try {
+      IntermediateBlockReportCodec.decode(encoded, null);
+      fail("Decoded a report with an unknown storage state or type");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("DS-1"));
+    }
+  }
+
+  @Test
+  public void testUnknownOrdinalsAreRejected() throws Exception {
+    int normal = DatanodeStorage.State.NORMAL.ordinal();
+    int disk = StorageType.DISK.ordinal();
+    assertEquals(1,
+        IntermediateBlockReportCodec.decode(encodeStorage(normal, disk), null)
+            .length);
+
+    assertRejected(encodeStorage(DatanodeStorage.State.values().length, disk));
+    assertRejected(encodeStorage(-1, disk));
+    assertRejected(encodeStorage(normal, StorageType.values().length));
+    assertRejected(encodeStorage(normal, 0xff));
+  }
+
+  @Test
+  public void testLegacyReportsUseFallbackDecoder() throws Exception {
+    final StorageReceivedDeletedBlocks[] legacy = createReport();
+    StorageReceivedDeletedBlocks[] decoded =
+        IntermediateBlockReportCodec.decode("rO0ABXVy",
+            new IntermediateBlockReportCodec.Decoder() {
+              @Override
+              public StorageReceivedDeletedBlocks[] decode(String encoded) {
+                return legacy;
+              }
+            });
+
+    assertSame(legacy, decoded);
+  }
+
+  @Test
+  public void testMergeByStorage() {
+    StorageReceivedDeletedBlocks[] first = createReport();
+    StorageReceivedDeletedBlocks[] second = createReport();
+
+    List<StorageReceivedDeletedBlocks> reports = new ArrayList<>();
+    reports.addAll(Arrays.asList(first));
+    reports.addAll(Arrays.asList(second));
+
+    StorageReceivedDeletedBlocks[] merged =
+        IntermediateBlockReportCodec.mergeByStorage(reports);
+
+    assertEquals(2, merged.length);
+    assertEquals("DS-1", merged[0].getStorage().getStorageID());
+    assertArrayEquals(new ReceivedDeletedBlockInfo[] {
+        first[0].getBlocks()[0], first[0].getBlocks()[1],
+        second[0].getBlocks()[0], second[0].getBlocks()[1]},
+        merged[0].getBlocks());
+    assertEquals(2, merged[1].getBlocks().length);
+  }
+}
@@ -0,0 +1,136 @@
+package org.apache.hadoop.hdfs.serverless.cache;
+
+import org.apache.commons.collections4.trie.PatriciaTrie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * JMH benchmark comparing the {@link ConcurrentPathTrie} used by {@link InMemoryINodeCache} against the
+ * previous design (a {@link PatriciaTrie} guarded by a single fair {@link ReentrantReadWriteLock}).
+ *
+ * The workload is a mix of path lookups, inserts/evictions, and occasional prefix invalidations, as seen by a
+ * NameNode under heavy read load. Run with {@link #main(String[])} to sweep 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathTrieBenchmark {
+  private static final int NUM_DIRECTORIES = 1_000;
+  private static final int FILES_PER_DIRECTORY = 100;
+
+  /**
+   * Percentage of operations that are writes (put + evict). One in every hundred writes is a prefix invalidation.
+   */
+  @Param({"1", "10"})
+  public int writePercent;
+
+  private String[] paths;
+
+  private ConcurrentPathTrie<String> concurrentTrie;
+
+  private PatriciaTrie<String> patriciaTrie;
+  private ReadWriteLock patriciaLock;
+
+  @Setup
+  public void setup() {
+    paths = new String[NUM_DIRECTORIES * FILES_PER_DIRECTORY];
+    concurrentTrie = new ConcurrentPathTrie<>();
+    patriciaTrie = new PatriciaTrie<>();
+    patriciaLock = new ReentrantReadWriteLock(true);
+
+    int idx = 0;
+    for (int d = 0; d < NUM_DIRECTORIES; d++) {
+      for (int f = 0; f < FILES_PER_DIRECTORY; f++) {
+        String path = "/user/bench/dir" + d + "/file" + f;
+        paths[idx++] = path;
+        concurrentTrie.put(path, path);
+        patriciaTrie.put(path, path);
+      }
+    }
+  }
+
+  @Benchmark
+  public void concurrentPathTrie(Blackhole bh) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    String path = paths[random.nextInt(paths.length)];
+
+    if (random.nextInt(100) >= writePercent) {
+      bh.consume(concurrentTrie.get(path));
+    } else if (random.nextInt(100) == 0) {
+      bh.consume(concurrentTrie.removeByPrefix(path.substring(0, path.lastIndexOf('/') + 1)));
+    } else {
+      concurrentTrie.remove(path);
+      concurrentTrie.put(path, path);
+    }
+  }
+
+  @Benchmark
+  public void lockedPatriciaTrie(Blackhole bh) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    String path = paths[random.nextInt(paths.length)];
+
+    if (random.nextInt(100) >= writePercent) {
+      patriciaLock.readLock().lock();
+      try {
+        bh.consume(patriciaTrie.get(path));
+      } finally {
+        patriciaLock.readLock().unlock();
+      }
+    } else if (random.nextInt(100) == 0) {
+      patriciaLock.writeLock().lock();
+      try {
+        SortedMap<String, String> prefixed =
+            patriciaTrie.prefixMap(path.substring(0, path.lastIndexOf('/') + 1));
+        ArrayList<Map.Entry<String, String>> toRemove = new ArrayList<>(prefixed.entrySet());
+        for (Map.Entry<String, String> entry : toRemove)
+          patriciaTrie.remove(entry.getKey());
+        bh.consume(toRemove);
+      } finally {
+        patriciaLock.writeLock().unlock();
+      }
+    } else {
+      patriciaLock.writeLock().lock();
+      try {
+        patriciaTrie.remove(path);
+        patriciaTrie.put(path, path);
+      } finally {
+        patriciaLock.writeLock().unlock();
+      }
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    for (int threads : new int[] {1, 2, 4, 8, 16, 32, 64}) {
+      Options opt = new OptionsBuilder()
+          .include(PathTrieBenchmark.class.getSimpleName())
+          .threads(threads)
+          .build();
+      new Runner(opt).run();
+    }
+  }
+}
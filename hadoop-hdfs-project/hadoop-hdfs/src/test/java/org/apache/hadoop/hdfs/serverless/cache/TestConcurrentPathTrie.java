@@ -0,0 +1,137 @@
+package org.apache.hadoop.hdfs.serverless.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestConcurrentPathTrie {
+
+  @Test
+  public void testSplit() {
+    assertArrayEquals(new String[0], ConcurrentPathTrie.split(""));
+    assertArrayEquals(new String[0], ConcurrentPathTrie.split("/"));
+    assertArrayEquals(new String[] {"a", "b"}, ConcurrentPathTrie.split("/a//b/"));
+  }
+
+  @Test
+  public void testPutGetRemove() {
+    ConcurrentPathTrie<String> trie = new ConcurrentPathTrie<>();
+    assertNull(trie.put("/a/b", "ab"));
+    assertNull(trie.put("/a", "a"));
+    assertEquals("ab", trie.put("/a/b", "ab2"));
+    assertEquals(2, trie.size());
+    assertEquals("ab2", trie.get("/a/b"));
+    assertNull(trie.get("/a/c"));
+
+    assertFalse(trie.remove("/a/b", "ab"));
+    assertTrue(trie.remove("/a/b", "ab2"));
+    assertEquals("a", trie.remove("/a"));
+    assertEquals(0, trie.size());
+    assertFalse(trie.containsKey("/a"));
+  }
+
+  @Test
+  public void testRemoveByPrefixMatchesStringPrefix() {
+    ConcurrentPathTrie<String> trie = new ConcurrentPathTrie<>();
+    trie.put("/home/ben/doc", "1");
+    trie.put("/home/ben/docs", "2");
+    trie.put("/home/ben/docs/a.txt", "3");
+    trie.put("/home/ben/music", "4");
+
+    Set<String> removed = keys(trie.removeByPrefix("/home/ben/doc"));
+    assertEquals(new HashSet<>(Arrays.asList(
+        "/home/ben/doc", "/home/ben/docs", "/home/ben/docs/a.txt")), removed);
+    assertEquals(1, trie.size());
+    assertEquals("4", trie.get("/home/ben/music"));
+
+    trie.put("/home/ben/doc", "1");
+    trie.put("/home/ben/docs", "2");
+    removed = keys(trie.removeByPrefix("/home/ben/doc/"));
+    assertTrue(removed.isEmpty());
+    assertEquals("1", trie.get("/home/ben/doc"));
+
+    trie.removeByPrefix("/");
+    assertEquals(0, trie.size());
+  }
+
+  @Test
+  public void testRemoveByPrefixWithTrailingSlashOnlyRemovesDescendants() {
+    ConcurrentPathTrie<String> trie = new ConcurrentPathTrie<>();
+    trie.put("/home/ben/docs", "1");
+    trie.put("/home/ben/docs/a.txt", "2");
+    trie.put("/home/ben/docs/sub/b.txt", "3");
+    trie.put("/home/ben/docs2", "4");
+
+    Set<String> removed = keys(trie.removeByPrefix("/home/ben/docs/"));
+    assertEquals(new HashSet<>(Arrays.asList("/home/ben/docs/a.txt", "/home/ben/docs/sub/b.txt")), removed);
+    assertEquals("1", trie.get("/home/ben/docs"));
+    assertEquals("4", trie.get("/home/ben/docs2"));
+    assertEquals(2, trie.size());
+
+    // Without the trailing slash, the directory itself matches as well.
+    removed = keys(trie.removeByPrefix("/home/ben/docs"));
+    assertEquals(new HashSet<>(Arrays.asList("/home/ben/docs", "/home/ben/docs2")), removed);
+    assertEquals(0, trie.size());
+  }
+
+  @Test
+  public void testConcurrentPutAndPrefixRemoval() throws Exception {
+    final ConcurrentPathTrie<Integer> trie = new ConcurrentPathTrie<>();
+    final int numThreads = 8;
+    final int numOps = 5000;
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    List<Thread> threads = new ArrayList<>();
+
+    for (int t = 0; t < numThreads; t++) {
+      final int id = t;
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+          for (int i = 0; i < numOps; i++) {
+            String path = "/dir" + (i % 16) + "/t" + id + "/f" + i;
+            trie.put(path, i);
+            if (i % 100 == 0)
+              trie.removeByPrefix("/dir" + (i % 16) + "/t" + id + "/");
+          }
+        } catch (Throwable ex) {
+          error.set(ex);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+
+    start.countDown();
+    for (Thread thread : threads)
+      thread.join();
+
+    if (error.get() != null)
+      throw new AssertionError(error.get());
+
+    // The size counter must agree with the number of values that are actually reachable.
+    int reachable = trie.removeByPrefix("/").size();
+    assertEquals(0, trie.size());
+    assertTrue(reachable > 0);
+  }
+
+  private static Set<String> keys(List<Map.Entry<String, String>> entries) {
+    Set<String> keys = new HashSet<>();
+    for (Map.Entry<String, String> entry : entries)
+      keys.add(entry.getKey());
+    return keys;
+  }
+}
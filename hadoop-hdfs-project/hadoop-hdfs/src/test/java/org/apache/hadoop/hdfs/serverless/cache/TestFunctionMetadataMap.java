@@ -0,0 +1,174 @@
+package org.apache.hadoop.hdfs.serverless.cache;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.serverless.invoking.DeploymentRouter;
+import org.apache.hadoop.hdfs.serverless.zookeeper.SyncZKClient;
+import org.apache.hadoop.hdfs.serverless.zookeeper.ZKClient;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestFunctionMetadataMap {
+
+  @Test
+  public void testComputedMappingsMatchRouter() {
+    FunctionMetadataMap map = new FunctionMetadataMap(new Configuration(), 5, 3);
+    DeploymentRouter router = new DeploymentRouter(new Configuration());
+
+    for (int i = 0; i < 100; i++) {
+      String path = "/dir" + i + "/file";
+      assertEquals(router.getDeployment(path, "getFileInfo", 5, 3), map.getDeployment(path, "getFileInfo"));
+      assertEquals(router.getDeployment(path, "create", 5, 3), map.getDeployment(path, "create"));
+    }
+
+    // Without explicit mappings, nothing is cached per directory.
+    assertEquals(0, map.getNumMisses());
+    assertEquals(0, map.size());
+  }
+
+  @Test
+  public void testExplicitMappingsAndInvalidation() {
+    FunctionMetadataMap map = new FunctionMetadataMap(new Configuration(), 4, 4);
+    assertFalse(map.containsEntry("/a/b"));
+    assertEquals(-1, map.getFunction("/a/b"));
+
+    assertTrue(map.addEntry("/a/b", 2, false));
+    assertFalse(map.addEntry("/a/c", 3, false));
+    assertEquals(2, map.getDeployment("/a/d", "create"));
+    assertEquals(2, map.getDeployment("/a/d", "getFileInfo"));
+
+    assertTrue(map.addEntry("/a/b", 1, true));
+    assertEquals(1, map.getFunction("/a/b"));
+    long version = map.getVersion();
+    map.setTopology(8, 8);
+    assertTrue(map.getVersion() > version);
+    assertEquals(-1, map.getFunction("/a/b"));
+    assertEquals(new DeploymentRouter(new Configuration()).getDeployment("/a/b", "create", 8, 8),
+        map.getDeployment("/a/b", "create"));
+  }
+
+  @Test
+  public void testConfiguredMappings() {
+    Configuration conf = new Configuration();
+    conf.set(DFSConfigKeys.SERVERLESS_DEPLOYMENT_MAPPING_EXPLICIT, "/hot/=1, /split=0:4, /far=7");
+    FunctionMetadataMap map = new FunctionMetadataMap(conf, 5, 3);
+
+    assertEquals(1, map.getDeployment("/hot/file", "create"));
+    assertEquals(1, map.getDeployment("/hot/file", "getFileInfo"));
+    assertEquals(4, map.getDeployment("/split/file", "create"));
+    assertEquals(0, map.getDeployment("/split/file", "getFileInfo"));
+
+    // Mappings to deployments that do not exist are ignored.
+    DeploymentRouter router = new DeploymentRouter(conf);
+    assertEquals(-1, map.getFunction("/far/file"));
+    assertEquals(router.getDeployment("/far/file", "create", 5, 3), map.getDeployment("/far/file", "create"));
+
+    // Configured mappings take precedence over added ones, and survive topology changes.
+    map.addEntry("/hot/file", 2, true);
+    assertEquals(1, map.getDeployment("/hot/file", "create"));
+    map.setTopology(8, 8);
+    assertEquals(1, map.getDeployment("/hot/file", "create"));
+    assertEquals(7, map.getDeployment("/far/file", "create"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidConfiguredMapping() {
+    Configuration conf = new Configuration();
+    conf.set(DFSConfigKeys.SERVERLESS_DEPLOYMENT_MAPPING_EXPLICIT, "/hot=one");
+    new FunctionMetadataMap(conf, 4, 4);
+  }
+
+  @Test
+  public void testTopologyChangeInvalidatesMappings() {
+    final int[][] published = { null };
+    final List<Watcher> listeners = new ArrayList<>();
+    ZKClient zkClient = (ZKClient) Proxy.newProxyInstance(ZKClient.class.getClassLoader(),
+        new Class<?>[] { ZKClient.class }, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getTopology":
+              return published[0];
+            case "addTopologyListener":
+              listeners.add((Watcher) args[0]);
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+
+    FunctionMetadataMap map = new FunctionMetadataMap(new Configuration(), 4, 4);
+    final List<int[]> notifications = new ArrayList<>();
+    map.watchTopology(zkClient, (numDeployments, numReadWrite) ->
+        notifications.add(new int[] { numDeployments, numReadWrite }));
+    assertEquals(1, listeners.size());
+    assertTrue(notifications.isEmpty());
+
+    assertTrue(map.addEntry("/a/b", 2, false));
+    long version = map.getVersion();
+
+    // Publishing the same number of deployments changes nothing.
+    published[0] = new int[] { 4, 4 };
+    listeners.get(0).process(new WatchedEvent(Watcher.Event.EventType.NodeCreated,
+        Watcher.Event.KeeperState.SyncConnected, SyncZKClient.TOPOLOGY_PATH));
+    assertEquals(version, map.getVersion());
+    assertEquals(2, map.getFunction("/a/b"));
+
+    // A new number of deployments invalidates the added mappings, and lookups hash over the new deployments.
+    published[0] = new int[] { 8, 6 };
+    listeners.get(0).process(new WatchedEvent(Watcher.Event.EventType.NodeDataChanged,
+        Watcher.Event.KeeperState.SyncConnected, SyncZKClient.TOPOLOGY_PATH));
+    assertTrue(map.getVersion() > version);
+    assertEquals(-1, map.getFunction("/a/b"));
+    assertEquals(new DeploymentRouter(new Configuration()).getDeployment("/a/b", "create", 8, 6),
+        map.getDeployment("/a/b", "create"));
+    assertEquals(1, notifications.size());
+    assertEquals(8, notifications.get(0)[0]);
+    assertEquals(6, notifications.get(0)[1]);
+  }
+
+  @Test
+  public void testRedisFailureFallsBackToHashing() {
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_ENABLED, true);
+    conf.set(DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_ENDPOINT, "127.0.0.1");
+    // Nothing listens on this port, so every Redis request fails.
+    conf.setInt(DFSConfigKeys.SERVERLESS_METADATA_CACHE_REDIS_PORT, 1);
+    FunctionMetadataMap map = new FunctionMetadataMap(conf, 4, 4);
+
+    try {
+      assertEquals(new DeploymentRouter(conf).getDeployment("/a/b", "create", 4, 4),
+          map.getDeployment("/a/b", "create"));
+      assertEquals(-1, map.getFunction("/a/b"));
+
+      // Added mappings are kept locally.
+      assertTrue(map.addEntry("/a/b", 3, false));
+      assertEquals(3, map.getDeployment("/a/c", "create"));
+    } finally {
+      map.terminate();
+    }
+  }
+
+  @Test
+  public void testLoadConfiguredMappings() {
+    Configuration conf = new Configuration();
+    conf.set(DFSConfigKeys.SERVERLESS_DEPLOYMENT_MAPPING_EXPLICIT, "/hot/=1, /split=0:4");
+    Map<String, FunctionMetadataMap.Mapping> mappings = FunctionMetadataMap.loadConfiguredMappings(conf);
+
+    assertEquals(2, mappings.size());
+    assertEquals(1, mappings.get("/hot").getReadDeployment());
+    assertEquals(1, mappings.get("/hot").getWriteDeployment());
+    assertEquals(0, mappings.get("/split").getReadDeployment());
+    assertEquals(4, mappings.get("/split").getWriteDeployment());
+    assertTrue(mappings.get("/split").isValid(5));
+    assertFalse(mappings.get("/split").isValid(4));
+  }
+}
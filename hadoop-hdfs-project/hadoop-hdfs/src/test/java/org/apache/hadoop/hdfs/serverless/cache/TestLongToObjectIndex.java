@@ -0,0 +1,128 @@
+package org.apache.hadoop.hdfs.serverless.cache;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestLongToObjectIndex {
+
+  @Test
+  public void testPutGetRemove() {
+    LongToObjectIndex<String> index = new LongToObjectIndex<>(0, 4, false);
+
+    assertNull(index.put(0L, "/"));
+    assertNull(index.put(42L, "/a"));
+    assertEquals("/a", index.put(42L, "/b"));
+
+    assertEquals("/", index.get(0L));
+    assertEquals("/b", index.get(42L));
+    assertNull(index.get(7L));
+    assertEquals(2, index.size());
+
+    assertFalse(index.remove(42L, "/a"));
+    assertTrue(index.remove(42L, "/b"));
+    assertNull(index.get(42L));
+    assertEquals("/", index.remove(0L));
+    assertEquals(0, index.size());
+  }
+
+  @Test
+  public void testMatchesHashMapOnHeap() {
+    checkAgainstHashMap(false);
+  }
+
+  @Test
+  public void testMatchesHashMapOffHeap() {
+    checkAgainstHashMap(true);
+  }
+
+  /**
+   * Apply a random mix of operations over a small key range, so that the segments are resized and entries are
+   * frequently removed from the middle of probe sequences.
+   */
+  private void checkAgainstHashMap(boolean offHeap) {
+    LongToObjectIndex<Long> index = new LongToObjectIndex<>(0, 2, offHeap);
+    Map<Long, Long> expected = new HashMap<>();
+    Random random = new Random(1234);
+
+    for (int i = 0; i < 200_000; i++) {
+      long key = random.nextInt(5000);
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(key), index.remove(key));
+      } else {
+        long value = random.nextLong();
+        assertEquals(expected.put(key, value), index.put(key, value));
+      }
+    }
+
+    assertEquals(expected.size(), index.size());
+    for (long key = 0; key < 5000; key++)
+      assertEquals(expected.get(key), index.get(key));
+
+    index.clear();
+    assertEquals(0, index.size());
+    assertNull(index.get(expected.keySet().iterator().next()));
+  }
+
+  @Test
+  public void testConcurrentReadsDuringWrites() throws Exception {
+    final LongToObjectIndex<Long> index = new LongToObjectIndex<>(0, 1, false);
+    // Keys 0-999 are never removed, so readers must always find them.
+    for (long key = 0; key < 1000; key++)
+      index.put(key, -key);
+
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    // Keys 1000-2999 are added and removed, which resizes the segment and shifts entries along the probe sequences
+    // that the readers are following.
+    Thread writer = new Thread(() -> {
+      Random random = new Random(1234);
+      for (int i = 0; i < 500_000; i++) {
+        long key = 1000 + random.nextInt(2000);
+        if (random.nextBoolean())
+          index.put(key, -key);
+        else
+          index.remove(key);
+      }
+      done.set(true);
+    });
+
+    Thread[] readers = new Thread[4];
+    for (int i = 0; i < readers.length; i++) {
+      readers[i] = new Thread(() -> {
+        Random random = new Random();
+        try {
+          while (!done.get()) {
+            long key = random.nextInt(3000);
+            Long value = index.get(key);
+            if (key < 1000)
+              assertEquals(Long.valueOf(-key), value);
+            else if (value != null)
+              assertEquals(-key, (long) value);
+          }
+        } catch (Throwable t) {
+          failure.compareAndSet(null, t);
+        }
+      });
+      readers[i].start();
+    }
+
+    writer.start();
+    writer.join();
+    for (Thread reader : readers)
+      reader.join();
+
+    if (failure.get() != null)
+      throw new AssertionError(failure.get());
+  }
+}
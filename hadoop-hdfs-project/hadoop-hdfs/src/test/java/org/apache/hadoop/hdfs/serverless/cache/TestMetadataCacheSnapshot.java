@@ -0,0 +1,157 @@
+package org.apache.hadoop.hdfs.serverless.cache;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.SERVERLESS_METADATA_CACHE_SNAPSHOT_DIR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestMetadataCacheSnapshot {
+  private static final PermissionStatus PERMISSIONS =
+      new PermissionStatus("user", "group", FsPermission.getDefault());
+
+  private Configuration conf;
+
+  /**
+   * The INodes in intermediate storage, by parent ID and local name.
+   */
+  private Map<String, INode> storage;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = new Configuration();
+    conf.set(SERVERLESS_METADATA_CACHE_SNAPSHOT_DIR,
+        Files.createTempDirectory("metadata-cache-snapshot").toString());
+    storage = new HashMap<>();
+  }
+
+  private INode store(long id, long parentId, String name) throws IOException {
+    INode inode = new INodeDirectory(id, name, PERMISSIONS);
+    inode.setParentIdNoPersistance(parentId);
+    storage.put(INode.nameParentKey(parentId, name), inode);
+    return inode;
+  }
+
+  private void delete(long parentId, String name) {
+    storage.remove(INode.nameParentKey(parentId, name));
+  }
+
+  private List<INode> read(String[] names, long[] parentIds, long[] partitionIds) {
+    List<INode> inodes = new ArrayList<>();
+    for (int i = 0; i < names.length; i++) {
+      INode inode = storage.get(INode.nameParentKey(parentIds[i], names[i]));
+      if (inode != null)
+        inodes.add(inode);
+    }
+    return inodes;
+  }
+
+  private void exportSnapshot(String... paths) throws IOException {
+    MetadataCacheManager cacheManager = new MetadataCacheManager(conf, 0);
+    for (String path : paths) {
+      INode inode = resolve(path);
+      cacheManager.getINodeCache().put(path, inode.getId(), inode, System.currentTimeMillis());
+    }
+
+    assertTrue(new MetadataCacheSnapshot(conf, cacheManager, 0, this::read).export());
+  }
+
+  private INode resolve(String path) {
+    INode inode = null;
+    long parentId = INode.ROOT_INODE_ID;
+    for (String name : path.substring(1).split("/")) {
+      inode = storage.get(INode.nameParentKey(parentId, name));
+      parentId = inode.getId();
+    }
+    return inode;
+  }
+
+  @Test
+  public void testRestoreRereadsINodes() throws IOException {
+    store(2, INode.ROOT_INODE_ID, "a");
+    INode b = store(3, 2, "b");
+    exportSnapshot("/a", "/a/b");
+
+    // The INode is modified without invalidating anything.
+    INode modified = store(3, 2, "b");
+
+    MetadataCacheManager cacheManager = new MetadataCacheManager(conf, 0);
+    assertEquals(2, new MetadataCacheSnapshot(conf, cacheManager, 0, this::read).restore());
+    assertEquals(2, cacheManager.getINodeCache().getByPath("/a").getId());
+    assertNotSame(b, cacheManager.getINodeCache().getByPath("/a/b"));
+    assertSame(modified, cacheManager.getINodeCache().getByPath("/a/b"));
+  }
+
+  @Test
+  public void testRestoreAfterWriteWithoutFollowers() throws IOException {
+    store(2, INode.ROOT_INODE_ID, "a");
+    store(3, 2, "b");
+    store(4, 2, "c");
+    store(5, 4, "d");
+    exportSnapshot("/a", "/a/b", "/a/c", "/a/c/d");
+
+    // A NameNode with no followers deletes and re-creates /a/b, and deletes /a/c (and thus /a/c/d). No INVs are
+    // issued, as there is nobody to invalidate.
+    store(6, 2, "b");
+    delete(2, "c");
+
+    MetadataCacheManager cacheManager = new MetadataCacheManager(conf, 0);
+    assertEquals(1, new MetadataCacheSnapshot(conf, cacheManager, 0, this::read).restore());
+    assertEquals(2, cacheManager.getINodeCache().getByPath("/a").getId());
+    assertNull(cacheManager.getINodeCache().getByPath("/a/b"));
+    assertNull(cacheManager.getINodeCache().getByPath("/a/c"));
+    assertNull(cacheManager.getINodeCache().getByPath("/a/c/d"));
+  }
+
+  @Test
+  public void testRestoreAfterRenameWithoutFollowers() throws IOException {
+    store(2, INode.ROOT_INODE_ID, "a");
+    store(3, 2, "b");
+    exportSnapshot("/a", "/a/b");
+
+    // /a is renamed to /x. Its children are unchanged, but can no longer be reached through /a.
+    delete(INode.ROOT_INODE_ID, "a");
+    store(2, INode.ROOT_INODE_ID, "x");
+
+    MetadataCacheManager cacheManager = new MetadataCacheManager(conf, 0);
+    assertEquals(0, new MetadataCacheSnapshot(conf, cacheManager, 0, this::read).restore());
+    assertNull(cacheManager.getINodeCache().getByPath("/a"));
+    assertNull(cacheManager.getINodeCache().getByPath("/a/b"));
+  }
+
+  @Test
+  public void testInvalidationDuringRestoreDiscardsSnapshot() throws IOException {
+    store(2, INode.ROOT_INODE_ID, "a");
+    store(3, 2, "b");
+    exportSnapshot("/a", "/a/b");
+
+    final MetadataCacheManager cacheManager = new MetadataCacheManager(conf, 0);
+    MetadataCacheSnapshot snapshot = new MetadataCacheSnapshot(conf, cacheManager, 0,
+        (names, parentIds, partitionIds) -> {
+          // An INV arrives after the INodes have been read, but before they're cached.
+          List<INode> inodes = read(names, parentIds, partitionIds);
+          cacheManager.invalidateINode(3);
+          return inodes;
+        });
+
+    assertEquals(0, snapshot.restore());
+    assertNull(cacheManager.getINodeCache().getByPath("/a"));
+    assertNull(cacheManager.getINodeCache().getByPath("/a/b"));
+  }
+}
@@ -0,0 +1,44 @@
+package org.apache.hadoop.hdfs.serverless.execution;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestDuplicateRequestTable {
+
+  @Test
+  public void testDetectsDuplicatesWithinWindow() {
+    DuplicateRequestTable table = new DuplicateRequestTable(1000, 1000, 4, 0);
+    long hash = DuplicateRequestTable.hash(UUID.randomUUID().toString());
+
+    assertTrue(table.add(hash, 0));
+    assertFalse(table.add(hash, 10));
+    assertTrue(table.contains(hash, 500));
+    assertFalse(table.add(hash, 700));
+  }
+
+  @Test
+  public void testExpiresAfterWindow() {
+    DuplicateRequestTable table = new DuplicateRequestTable(1000, 1000, 4, 0);
+    long hash = DuplicateRequestTable.hash(UUID.randomUUID().toString());
+
+    assertTrue(table.add(hash, 0));
+    assertFalse(table.contains(hash, 1000));
+    assertTrue(table.add(hash, 1000));
+  }
+
+  @Test
+  public void testSizeIsBounded() {
+    DuplicateRequestTable table = new DuplicateRequestTable(64, 60000, 4, 0);
+
+    for (int i = 0; i < 10000; i++)
+      assertTrue(table.add(DuplicateRequestTable.hash(UUID.randomUUID().toString()), 0));
+
+    assertTrue(table.size() <= table.capacity());
+    assertEquals(64, table.capacity());
+  }
+}
@@ -0,0 +1,56 @@
+package org.apache.hadoop.hdfs.serverless.execution.futures;
+
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.apache.hadoop.hdfs.serverless.ServerlessNameNodeKeys.LOCAL_EXCEPTION;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestServerlessHttpFuture {
+
+  @Test
+  public void testCompletionStageSeesPostedResult() throws Exception {
+    ServerlessHttpFuture future = new ServerlessHttpFuture("request", "getFileInfo");
+    CompletableFuture<JsonObject> stage = future.toCompletionStage().toCompletableFuture();
+    assertFalse(stage.isDone());
+
+    JsonObject response = new JsonObject();
+    assertTrue(future.postResultImmediate(response));
+
+    assertSame(response, stage.getNow(null));
+    assertNull(ServerlessHttpFuture.getLocalException(response));
+
+    // Blocking callers still receive the result.
+    assertSame(response, future.get());
+
+    // Completing the stage handed out does not affect the future.
+    stage.complete(new JsonObject());
+    assertSame(response, future.toCompletionStage().toCompletableFuture().getNow(null));
+  }
+
+  @Test
+  public void testCancellationCompletesStage() throws Exception {
+    ServerlessHttpFuture future = new ServerlessHttpFuture("request", "mkdirs");
+    CompletableFuture<JsonObject> stage = future.toCompletionStage().toCompletableFuture();
+
+    assertTrue(future.cancel(true));
+    JsonObject response = stage.getNow(null);
+    assertTrue(response.has(LOCAL_EXCEPTION));
+    assertTrue(ServerlessHttpFuture.getLocalException(response) instanceof IOException);
+
+    try {
+      future.get();
+      fail("Expected the cancellation to be reported.");
+    } catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof IOException);
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package org.apache.hadoop.hdfs.serverless.execution.taskarguments;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.apache.hadoop.hdfs.serverless.ServerlessNameNodeKeys.SRC;
+import static org.apache.hadoop.hdfs.serverless.ServerlessNameNodeKeys.SRCS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestSinglePathTaskArguments {
+
+  @Test
+  public void testOverridesOnlySrc() {
+    HashMap<String, Object> arguments = new HashMap<>();
+    arguments.put(SRCS, new String[] { "/a/1", "/a/2" });
+    arguments.put("createParent", true);
+    arguments.put("blockSize", 128L);
+    TaskArguments batchArguments = new HashMapTaskArguments(arguments);
+
+    TaskArguments pathArguments = new SinglePathTaskArguments(batchArguments, "/a/2");
+
+    assertTrue(pathArguments.contains(SRC));
+    assertEquals("/a/2", pathArguments.getString(SRC));
+    assertTrue(pathArguments.getBoolean("createParent"));
+    assertEquals(128L, pathArguments.getLong("blockSize"));
+    assertArrayEquals(new String[] { "/a/1", "/a/2" }, pathArguments.getStringArray(SRCS));
+    assertFalse(pathArguments.contains("recursive"));
+  }
+}
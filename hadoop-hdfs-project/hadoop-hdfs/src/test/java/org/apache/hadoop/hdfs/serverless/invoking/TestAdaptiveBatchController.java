@@ -0,0 +1,129 @@
+package org.apache.hadoop.hdfs.serverless.invoking;
+
+import org.apache.hadoop.hdfs.serverless.invoking.AdaptiveBatchController.Decision;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestAdaptiveBatchController {
+
+  @Test
+  public void testFlushesImmediatelyWhenIdle() {
+    AdaptiveBatchController controller = new AdaptiveBatchController(2, 8, 16, 0.25);
+
+    assertTrue(controller.onEnqueue(0, 0));
+    assertEquals(Decision.IDLE, controller.decide(0, 1, 0));
+    controller.onFlush(0, 1, 1);
+
+    // With a batch in flight, the request is not sent right away. It fills a batch
+    // on its own though, as the controller starts out with a batch limit of one.
+    assertFalse(controller.onEnqueue(0, 1));
+    assertEquals(Decision.FULL, controller.decide(0, 1, 1));
+
+    // The other deployment is unaffected.
+    assertTrue(controller.onEnqueue(1, 1));
+    assertEquals(1, controller.getDecisionCount(Decision.IDLE));
+    assertEquals(1, controller.getDecisionCount(Decision.FULL));
+  }
+
+  @Test
+  public void testGrowsUnderLoadAndShrinksWhenQuiet() {
+    AdaptiveBatchController controller = new AdaptiveBatchController(1, 8, 16, 0.25);
+    controller.onFlush(0, 1, 1);
+    controller.onBatchCompleted(0, 50);
+
+    // Deep queues make the batches grow until the maximum batch size.
+    for (int i = 0; i < 20; i++) {
+      controller.onFlush(0, 1, 20);
+      controller.onBatchCompleted(0, 50);
+    }
+    assertEquals(8, controller.getBatchLimit(0));
+    assertEquals(16, controller.getLingerMillis(0));
+
+    controller.onFlush(0, 1, 1);
+    assertFalse(controller.onEnqueue(0, 100));
+    assertEquals(Decision.DEFERRED, controller.decide(0, 1, 110));
+    assertEquals(Decision.LINGER, controller.decide(0, 1, 116));
+    assertEquals(Decision.FULL, controller.decide(0, 8, 110));
+
+    // Shallow queues at the baseline latency halve the batch limit and linger time.
+    assertTrue(controller.onBatchCompleted(0, 50));
+    assertEquals(4, controller.getBatchLimit(0));
+    assertEquals(8, controller.getLingerMillis(0));
+    assertTrue(controller.getNumDecreases() > 0);
+  }
+
+  @Test
+  public void testShrinksWhenLatencyRises() {
+    AdaptiveBatchController controller = new AdaptiveBatchController(1, 8, 16, 0.25);
+    for (int i = 0; i < 10; i++) {
+      controller.onFlush(0, 1, 20);
+      controller.onBatchCompleted(0, 10);
+    }
+    assertEquals(8, controller.getBatchLimit(0));
+
+    // A rising latency shrinks the batches even though the queue is still deep. The other batch was cut with the old
+    // limit, so its latency does not shrink them again.
+    controller.onFlush(0, 2, 20);
+    controller.onBatchCompleted(0, 100);
+    assertEquals(4, controller.getBatchLimit(0));
+    controller.onBatchCompleted(0, 100);
+    assertEquals(4, controller.getBatchLimit(0));
+    assertEquals(0, controller.getNumInFlight(0));
+
+    // The latency of the batches cut with the new limit is compared against the baseline again.
+    controller.onFlush(0, 1, 20);
+    controller.onBatchCompleted(0, 100);
+    assertEquals(2, controller.getBatchLimit(0));
+    assertTrue(controller.getNumDecreases() > 0);
+  }
+
+  /**
+   * Simulate a deployment that is always backlogged and whose batch latency grows with the batch size, and return
+   * the batch limit after each batch.
+   */
+  private static int[] simulate(AdaptiveBatchController controller, double fixedMillis, double perRequestMillis,
+                                int numBatches) {
+    int[] limits = new int[numBatches];
+    for (int i = 0; i < numBatches; i++) {
+      int batchSize = controller.getBatchLimit(0);
+      controller.onFlush(0, 1, 1000);
+      controller.onBatchCompleted(0, fixedMillis + perRequestMillis * batchSize);
+      limits[i] = controller.getBatchLimit(0);
+    }
+    return limits;
+  }
+
+  @Test
+  public void testConvergesWhenLatencyGrowsWithBatchSize() {
+    AdaptiveBatchController controller = new AdaptiveBatchController(1, 256, 16, 0.25);
+    int[] limits = simulate(controller, 20, 5, 2000);
+
+    // The batches never run to the cap, and after warming up, the limit oscillates in the same band forever.
+    int firstMax = 0, firstMin = Integer.MAX_VALUE, secondMax = 0, secondMin = Integer.MAX_VALUE;
+    for (int i = 0; i < limits.length; i++) {
+      assertTrue(limits[i] >= 1 && limits[i] < 256);
+      if (i >= 200 && i < 1100) {
+        firstMax = Math.max(firstMax, limits[i]);
+        firstMin = Math.min(firstMin, limits[i]);
+      } else if (i >= 1100) {
+        secondMax = Math.max(secondMax, limits[i]);
+        secondMin = Math.min(secondMin, limits[i]);
+      }
+    }
+    assertEquals(firstMax, secondMax);
+    assertEquals(firstMin, secondMin);
+    assertTrue(firstMax < 64);
+    assertTrue(firstMin > 1);
+  }
+
+  @Test
+  public void testGrowsToTheCapWhenLatencyIsFlat() {
+    AdaptiveBatchController controller = new AdaptiveBatchController(1, 32, 16, 0.25);
+    int[] limits = simulate(controller, 50, 0.01, 200);
+    assertEquals(32, limits[limits.length - 1]);
+    assertEquals(0, controller.getNumDecreases());
+  }
+}
@@ -0,0 +1,88 @@
+package org.apache.hadoop.hdfs.serverless.invoking;
+
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.serverless.execution.taskarguments.BinaryTaskArguments;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestBinaryArgumentCodec {
+
+  @Test
+  public void testRoundTrip() {
+    ArgumentContainer args = new ArgumentContainer();
+    args.put("src", "/user/test/file");
+    args.put("replication", (short) 3);
+    args.put("blockSize", 134217728L);
+    args.put("createParent", true);
+    args.put("data", new byte[] {1, 2, 3});
+    args.put("favoredNodes", new String[] {"dn1", "dn2"});
+    args.put("masked", new FsPermission((short) 0644));
+
+    BinaryTaskArguments decoded = new BinaryTaskArguments(args.convertToBinary());
+
+    assertEquals("/user/test/file", decoded.getString("src"));
+    assertEquals(3, decoded.getShort("replication"));
+    assertEquals(134217728L, decoded.getLong("blockSize"));
+    assertTrue(decoded.getBoolean("createParent"));
+    assertArrayEquals(new byte[] {1, 2, 3}, decoded.getByteArray("data"));
+    assertEquals(Arrays.asList("dn1", "dn2"), decoded.getStringList("favoredNodes"));
+    assertEquals(new FsPermission((short) 0644), decoded.getObject("masked"));
+    assertFalse(decoded.contains("missing"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedEnvelope() {
+    ArgumentContainer args = new ArgumentContainer();
+    args.put("src", "/user/test/file");
+    byte[] encoded = args.convertToBinary();
+
+    BinaryArgumentCodec.decode(Arrays.copyOf(encoded, encoded.length - 2));
+  }
+
+  @Test
+  public void testNullArrayElements() {
+    Map<String, Object> args = new HashMap<>();
+    args.put("favoredNodes", new String[] {"dn1", null, ""});
+    args.put("counts", new Integer[] {1, null, 3});
+
+    Map<String, Object> decoded = BinaryArgumentCodec.decode(BinaryArgumentCodec.encode(args));
+    assertArrayEquals(new String[] {"dn1", null, ""}, (String[]) decoded.get("favoredNodes"));
+    assertArrayEquals(new Integer[] {1, null, 3}, (Integer[]) decoded.get("counts"));
+  }
+
+  @Test
+  public void testTruncatedAtEveryOffset() {
+    Map<String, Object> args = new HashMap<>();
+    args.put("src", "/user/test/file");
+    args.put("data", new byte[] {1, 2, 3});
+    args.put("favoredNodes", new String[] {"dn1", null});
+    args.put("counts", new Integer[] {1, null});
+    byte[] encoded = BinaryArgumentCodec.encode(args);
+
+    for (int length = 0; length < encoded.length; length++) {
+      try {
+        BinaryArgumentCodec.decode(Arrays.copyOf(encoded, length));
+        fail("Decoded an envelope truncated to " + length + " of " + encoded.length + " bytes.");
+      } catch (IllegalArgumentException expected) {
+        // The truncation is reported as such.
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeLength() {
+    ByteBuffer buf = ByteBuffer.allocate(16);
+    buf.put(BinaryArgumentCodec.VERSION).putInt(1).putShort((short) 1).put((byte) 'k').put((byte) 1).putInt(-5);
+    BinaryArgumentCodec.decode(Arrays.copyOf(buf.array(), buf.position()));
+  }
+}
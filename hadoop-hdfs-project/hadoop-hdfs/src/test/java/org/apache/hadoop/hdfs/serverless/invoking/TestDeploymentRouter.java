@@ -0,0 +1,52 @@
+package org.apache.hadoop.hdfs.serverless.invoking;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestDeploymentRouter {
+
+  @Test
+  public void testParentHashMatchesExtractedParent() {
+    String[] paths = { "/", "/a", "/a/b", "/a/b/", "//a//b", "/a/b/c", "/a/b//c/", "a", "a/b", "/dir/file.txt" };
+    for (String path : paths) {
+      String parent = ServerlessUtilities.extractParentPath(path);
+      assertEquals(path, DeploymentRouter.hashParentPath(parent + "/x"), DeploymentRouter.hashParentPath(path));
+    }
+
+    assertEquals(DeploymentRouter.hashParentPath("/a"), DeploymentRouter.hashParentPath("/"));
+    assertNotEquals(DeploymentRouter.hashParentPath("/a/b"), DeploymentRouter.hashParentPath("/b/a"));
+  }
+
+  @Test
+  public void testMd5PlacementIsUnchanged() {
+    DeploymentRouter router = new DeploymentRouter(DeploymentRouter.MD5);
+    for (int i = 0; i < 2000; i++) {
+      String path = "/dir" + (i % 300) + "/file" + i;
+      assertEquals(ServerlessUtilities.getDeploymentForPath(path, "create", 7, 5),
+          router.getDeployment(path, "create", 7, 5));
+      assertEquals(ServerlessUtilities.getDeploymentForPath(path, "getFileInfo", 7, 5),
+          router.getDeployment(path, "getFileInfo", 7, 5));
+    }
+  }
+
+  @Test
+  public void testFastPlacementSpreadsDirectories() {
+    DeploymentRouter router = new DeploymentRouter(DeploymentRouter.FAST);
+    int[] counts = new int[10];
+    for (int i = 0; i < 10000; i++) {
+      int deployment = router.getDeployment("/dir" + i + "/file", null, 10, 10);
+      assertEquals(deployment, router.getDeployment("/dir" + i + "/other", null, 10, 10));
+      counts[deployment]++;
+    }
+
+    for (int count : counts)
+      assertTrue(count > 800 && count < 1200);
+
+    // Write operations go to the write-only deployments, which are numbered after the read-write ones.
+    int writeDeployment = router.getDeployment("/dir0/file", "create", 12, 10);
+    assertTrue(writeDeployment >= 10 && writeDeployment < 12);
+  }
+}
@@ -0,0 +1,82 @@
+package org.apache.hadoop.hdfs.serverless.invoking;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestDirectorySplit {
+
+  @Test
+  public void testDetectorReportsHotDirectoriesOnce() {
+    HotDirectoryDetector detector = new HotDirectoryDetector(4, 1000, 100);
+
+    for (int i = 0; i < 150; i++)
+      detector.record("/hot", i);
+    // Many colder directories compete for the remaining counters.
+    for (int i = 0; i < 90; i++)
+      detector.record("/cold" + i, 500);
+    assertTrue(detector.pollHotDirectories(999).isEmpty());
+
+    assertEquals(Collections.singletonList("/hot"), detector.pollHotDirectories(1000));
+    assertTrue(detector.pollHotDirectories(1001).isEmpty());
+
+    // The counters start over with each window.
+    for (int i = 0; i < 50; i++)
+      detector.record("/hot", 1500);
+    assertTrue(detector.pollHotDirectories(2000).isEmpty());
+  }
+
+  @Test
+  public void testSplitSpreadsChildren() {
+    DeploymentRouter router = new DeploymentRouter(DeploymentRouter.FAST);
+    DirectorySplit split = DirectorySplit.create("/hot", 42, 3, router, 8, 6, 100);
+
+    int[] readWriteDeployments = split.getReadWriteDeployments();
+    assertEquals(3, readWriteDeployments.length);
+    assertEquals(router.getDeployment("/hot/x", 6), readWriteDeployments[0]);
+    assertEquals(2, split.getWriteDeployments().length);
+
+    Set<Integer> used = new HashSet<>();
+    Set<Integer> usedForWrites = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      int deployment = split.getDeployment("/hot/file" + i, false);
+      assertTrue(split.isCachedBy(deployment));
+      used.add(deployment);
+
+      int writeDeployment = split.getDeployment("/hot/file" + i + "/", true);
+      assertTrue(writeDeployment >= 6 && writeDeployment < 8);
+      usedForWrites.add(writeDeployment);
+    }
+    assertEquals(3, used.size());
+    assertEquals(2, usedForWrites.size());
+  }
+
+  @Test
+  public void testTableLookups() {
+    DirectorySplitTable table = new DirectorySplitTable();
+    assertTrue(table.isEmpty());
+    assertNull(table.getActiveSplitOfParent("/hot/file", 0));
+
+    DeploymentRouter router = new DeploymentRouter(DeploymentRouter.FAST);
+    DirectorySplit split = DirectorySplit.create("/hot", 42, 2, router, 4, 4, 100);
+    table.put(split);
+
+    assertNull(table.getActiveSplitOfParent("/hot/file", 99));
+    assertSame(split, table.getActiveSplitOfParent("/hot//file/", 100));
+    assertNull(table.getActiveSplitOfParent("/hot", 100));
+    assertSame(split, table.getSplit(42));
+
+    table.replaceAll(Collections.<DirectorySplit>emptyList());
+    assertTrue(table.isEmpty());
+    assertNull(table.getSplit(42));
+    assertFalse(split.isActive(99));
+  }
+}
@@ -0,0 +1,74 @@
+package org.apache.hadoop.hdfs.serverless.invoking;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestLatencyHistogram {
+
+  @Test
+  public void testBucketsCoverAllValues() {
+    int previous = -1;
+    for (long v = 0; v < 1L << 20; v++) {
+      int index = LatencyHistogram.bucketIndex(v);
+      assertTrue(index == previous || index == previous + 1);
+      assertTrue(LatencyHistogram.bucketLowerBound(index) <= v);
+      previous = index;
+    }
+
+    assertEquals(LatencyHistogram.NUM_BUCKETS - 1,
+        LatencyHistogram.bucketIndex(LatencyHistogram.MAX_TRACKABLE_MICROS));
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 1000; i++)
+      histogram.recordMillis(i);
+    histogram.recordMillis(-1);
+
+    assertEquals(1000, histogram.getCount());
+    assertEquals(500.5, histogram.getMeanMillis(), 1e-9);
+    assertEquals(1.0, histogram.getMinMillis(), 1e-9);
+    assertEquals(1000.0, histogram.getMaxMillis(), 1e-9);
+
+    // Every value is tracked to within about 3% of itself.
+    assertEquals(500, histogram.getPercentileMillis(50), 500 * 0.04);
+    assertEquals(950, histogram.getPercentileMillis(95), 950 * 0.04);
+    assertEquals(990, histogram.getPercentileMillis(99), 990 * 0.04);
+    assertTrue(Double.isNaN(new LatencyHistogram().getPercentileMillis(99)));
+  }
+
+  @Test
+  public void testMergeAndReset() {
+    LatencyHistogram a = new LatencyHistogram();
+    LatencyHistogram b = new LatencyHistogram();
+    a.recordMillis(2);
+    b.recordMillis(4);
+
+    a.add(b);
+    assertEquals(2, a.getCount());
+    assertEquals(3.0, a.getMeanMillis(), 1e-9);
+    assertEquals(4.0, a.getMaxMillis(), 1e-9);
+
+    a.reset();
+    assertEquals(0, a.getCount());
+    assertEquals(1, b.getCount());
+  }
+
+  @Test
+  public void testRollingWindowForgetsOldValues() {
+    RollingLatencyHistogram window = new RollingLatencyHistogram(8);
+    for (int i = 0; i < 8; i++)
+      window.recordMillis(100);
+    assertEquals(100.0, window.getMeanMillis(), 1e-9);
+
+    // After a whole window of small values, the large ones are gone.
+    for (int i = 0; i < 8; i++)
+      window.recordMillis(1);
+    assertEquals(1.0, window.getMeanMillis(), 1e-9);
+    assertEquals(1.0, window.getPercentileMillis(99), 1e-9);
+    assertTrue(window.getCount() <= 8);
+  }
+}
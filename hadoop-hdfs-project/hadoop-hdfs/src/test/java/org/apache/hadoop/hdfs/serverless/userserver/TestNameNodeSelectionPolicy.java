@@ -0,0 +1,111 @@
+package org.apache.hadoop.hdfs.serverless.userserver;
+
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestNameNodeSelectionPolicy {
+
+  private static class FakeNameNode implements NameNodeSelectionPolicy.Candidate {
+    private final long id;
+    private int numInFlight;
+    private double latency;
+
+    FakeNameNode(long id, int numInFlight, double latency) {
+      this.id = id;
+      this.numInFlight = numInFlight;
+      this.latency = latency;
+    }
+
+    @Override
+    public long getNameNodeId() {
+      return id;
+    }
+
+    @Override
+    public int getNumInFlight() {
+      return numInFlight;
+    }
+
+    @Override
+    public double getLatencyEwmaMillis() {
+      return latency;
+    }
+  }
+
+  @Test
+  public void testDefaultPolicyIsRandom() {
+    // Load-aware selection is opt-in; clients keep spreading requests uniformly unless configured otherwise.
+    assertTrue(NameNodeSelectionPolicy.create(DFSConfigKeys.SERVERLESS_TCP_NAMENODE_SELECTION_POLICY_DEFAULT)
+        instanceof RandomSelectionPolicy);
+  }
+
+  @Test
+  public void testPowerOfTwoChoicesAvoidsLoadedNameNode() {
+    FakeNameNode idle = new FakeNameNode(1, 0, 5);
+    FakeNameNode busy = new FakeNameNode(2, 50, 100);
+    List<FakeNameNode> candidates = new ArrayList<>();
+    candidates.add(idle);
+    candidates.add(busy);
+
+    NameNodeSelectionPolicy policy =
+        NameNodeSelectionPolicy.create(NameNodeSelectionPolicy.POWER_OF_TWO_CHOICES);
+    for (int i = 0; i < 100; i++)
+      assertSame(idle, policy.select(candidates, "/a/b"));
+  }
+
+  @Test
+  public void testParentPathHashIsStableAndSpreadsDirectories() {
+    List<FakeNameNode> candidates = new ArrayList<>();
+    for (long id = 100; id < 108; id++)
+      candidates.add(new FakeNameNode(id, 0, 1));
+
+    NameNodeSelectionPolicy policy =
+        NameNodeSelectionPolicy.create(NameNodeSelectionPolicy.PARENT_PATH_HASH);
+
+    // Siblings go to the same NameNode.
+    FakeNameNode target = policy.select(candidates, "/dir/file1");
+    assertSame(target, policy.select(candidates, "/dir/file2"));
+    assertSame(target, policy.select(candidates, "/dir/sub/"));
+
+    // Different directories do not all end up on the same NameNode.
+    boolean spread = false;
+    for (int i = 0; i < 32 && !spread; i++)
+      spread = policy.select(candidates, "/dir" + i + "/file") != target;
+    assertTrue(spread);
+
+    // Removing another NameNode does not move the directory.
+    FakeNameNode other = candidates.get(0) == target ? candidates.get(1) : candidates.get(0);
+    candidates.remove(other);
+    assertSame(target, policy.select(candidates, "/dir/file1"));
+  }
+
+  @Test
+  public void testParentPathHashSkipsOverloadedNameNode() {
+    List<FakeNameNode> candidates = new ArrayList<>();
+    for (long id = 0; id < 4; id++)
+      candidates.add(new FakeNameNode(id, 0, 1));
+
+    NameNodeSelectionPolicy policy =
+        NameNodeSelectionPolicy.create(NameNodeSelectionPolicy.PARENT_PATH_HASH);
+    FakeNameNode target = policy.select(candidates, "/hot/file");
+    target.numInFlight = 100;
+
+    assertNotSame(target, policy.select(candidates, "/hot/file"));
+  }
+
+  @Test
+  public void testGetParent() {
+    assertEquals("/", ParentPathHashSelectionPolicy.getParent("/"));
+    assertEquals("/", ParentPathHashSelectionPolicy.getParent("/a"));
+    assertEquals("/a", ParentPathHashSelectionPolicy.getParent("/a/b"));
+    assertEquals("/a", ParentPathHashSelectionPolicy.getParent("/a/b/"));
+  }
+}
@@ -0,0 +1,38 @@
+package org.apache.hadoop.hdfs.serverless.userserver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestTcpResultChunk {
+
+  @Test
+  public void testAssemblyReassemblesChunksInAnyOrder() {
+    TcpResultChunk.Assembly assembly = new TcpResultChunk.Assembly(3, 5);
+
+    assertFalse(assembly.add(new TcpResultChunk("r", 2, 3, 5, 4, new byte[] {5})));
+    assertFalse(assembly.add(new TcpResultChunk("r", 0, 3, 5, 0, new byte[] {1, 2})));
+    // Duplicates are ignored.
+    assertFalse(assembly.add(new TcpResultChunk("r", 0, 3, 5, 0, new byte[] {1, 2})));
+    assertTrue(assembly.add(new TcpResultChunk("r", 1, 3, 5, 2, new byte[] {3, 4})));
+
+    assertArrayEquals(new byte[] {1, 2, 3, 4, 5}, assembly.getBytes());
+  }
+
+  @Test
+  public void testAssemblyOnlyMatchesChunksOfTheSameShape() {
+    TcpResultChunk.Assembly assembly = new TcpResultChunk.Assembly(2, 4);
+
+    assertTrue(assembly.matches(new TcpResultChunk("r", 1, 2, 4, 2, new byte[] {3, 4})));
+    assertFalse(assembly.matches(new TcpResultChunk("r", 1, 3, 4, 2, new byte[] {3})));
+    assertFalse(assembly.matches(new TcpResultChunk("r", 1, 2, 6, 3, new byte[] {4, 5, 6})));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAssemblyRejectsChunksOutOfBounds() {
+    TcpResultChunk.Assembly assembly = new TcpResultChunk.Assembly(2, 4);
+    assembly.add(new TcpResultChunk("r", 1, 2, 4, 3, new byte[] {4, 5}));
+  }
+}
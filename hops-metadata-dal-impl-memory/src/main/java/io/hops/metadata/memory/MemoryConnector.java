@@ -0,0 +1,390 @@
+package io.hops.metadata.memory;
+
+import io.hops.StorageConnector;
+import io.hops.exception.StorageException;
+import io.hops.metadata.common.EntityDataAccess;
+import io.hops.transaction.context.EntityContext.LockMode;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link StorageConnector} for the in-memory tables.
+ *
+ * Like the ClusterJ connector, each thread has its own session, which tracks the lock mode set by
+ * {@link #readLock()}, {@link #writeLock()} and {@link #readCommitted()} and the thread's current transaction. The
+ * session is discarded when the transaction commits or rolls back, so the lock mode reverts to read-committed.
+ *
+ * Data access calls made outside of a transaction are executed in their own single-statement transaction. Within a
+ * transaction, {@link #read}, {@link #scan} and {@link #scanIndex} observe the transaction's own buffered writes.
+ */
+public class MemoryConnector implements StorageConnector<MemoryConnector.Session> {
+    private static final Log LOG = LogFactory.getLog(MemoryConnector.class);
+
+    /**
+     * How long a transaction waits for a row lock before failing with a
+     * {@link io.hops.exception.TransientDeadLockException}.
+     */
+    public static final String LOCK_TIMEOUT_MILLIS = "io.hops.metadata.memory.lock.timeout.ms";
+    public static final long LOCK_TIMEOUT_MILLIS_DEFAULT = 5000L;
+
+    private static final MemoryConnector instance = new MemoryConnector();
+
+    public enum WriteMode {
+        /**
+         * The row must not exist yet. Mirrors ClusterJ's {@code makePersistent}.
+         */
+        INSERT,
+
+        /**
+         * The row must already exist. Mirrors ClusterJ's {@code updatePersistent}.
+         */
+        UPDATE,
+
+        /**
+         * Insert or overwrite. Mirrors ClusterJ's {@code savePersistent}. Also used for deletes.
+         */
+        SAVE
+    }
+
+    /**
+     * Per-thread state.
+     */
+    public static final class Session {
+        private LockMode lockMode = LockMode.READ_COMMITTED;
+
+        private MemoryTransaction transaction;
+
+        public LockMode getLockMode() {
+            return lockMode;
+        }
+
+        boolean isTransactionActive() {
+            return transaction != null && transaction.isActive();
+        }
+    }
+
+    private final ThreadLocal<Session> sessions = ThreadLocal.withInitial(Session::new);
+
+    private volatile long lockTimeoutMillis = LOCK_TIMEOUT_MILLIS_DEFAULT;
+
+    private volatile Map<Class, EntityDataAccess> dataAccessMap = Collections.emptyMap();
+
+    private MemoryConnector() { }
+
+    public static MemoryConnector getInstance() {
+        return instance;
+    }
+
+    @Override
+    public void setConfiguration(Properties conf) throws StorageException {
+        String timeout = conf.getProperty(LOCK_TIMEOUT_MILLIS);
+        if (timeout != null) {
+            try {
+                lockTimeoutMillis = Long.parseLong(timeout.trim());
+            } catch (NumberFormatException ex) {
+                throw new StorageException("Invalid value for " + LOCK_TIMEOUT_MILLIS + ": " + timeout);
+            }
+        }
+        LOG.debug("In-memory storage configured with a row lock timeout of " + lockTimeoutMillis + " ms.");
+    }
+
+    /**
+     * Called by {@link MemoryStorageFactory} so that the format methods can clear the tables.
+     */
+    void setDataAccessMap(Map<Class, EntityDataAccess> dataAccessMap) {
+        this.dataAccessMap = dataAccessMap;
+    }
+
+    @Override
+    public Session obtainSession() throws StorageException {
+        return sessions.get();
+    }
+
+    @Override
+    public Session obtainSession(boolean requireUnique) throws StorageException {
+        return obtainSession();
+    }
+
+    @Override
+    public void returnSession(boolean error) throws StorageException {
+        Session session = sessions.get();
+        if (error && session.isTransactionActive())
+            session.transaction.rollback();
+        sessions.remove();
+    }
+
+    @Override
+    public void beginTransaction() throws StorageException {
+        Session session = obtainSession();
+        if (session.isTransactionActive()) {
+            LOG.fatal("Prevented starting transaction within a transaction.");
+            throw new Error("Can not start Tx inside another Tx");
+        }
+        session.transaction = new MemoryTransaction(lockTimeoutMillis);
+    }
+
+    @Override
+    public void commit() throws StorageException {
+        Session session = obtainSession();
+        try {
+            if (!session.isTransactionActive())
+                throw new StorageException("The transaction is not began!");
+            session.transaction.commit();
+        } finally {
+            sessions.remove();
+        }
+    }
+
+    /**
+     * It rolls back only when the transaction is active.
+     */
+    @Override
+    public void rollback() throws StorageException {
+        Session session = obtainSession();
+        if (session.isTransactionActive())
+            session.transaction.rollback();
+        sessions.remove();
+    }
+
+    @Override
+    public boolean isTransactionActive() throws StorageException {
+        return obtainSession().isTransactionActive();
+    }
+
+    @Override
+    public void readLock() throws StorageException {
+        obtainSession().lockMode = LockMode.READ_LOCK;
+    }
+
+    @Override
+    public void writeLock() throws StorageException {
+        obtainSession().lockMode = LockMode.WRITE_LOCK;
+    }
+
+    @Override
+    public void readCommitted() throws StorageException {
+        obtainSession().lockMode = LockMode.READ_COMMITTED;
+    }
+
+    /**
+     * Read a single row using the lock mode of the current session.
+     */
+    public <V> V read(MemoryTable<V> table, RowKey key) throws StorageException {
+        return read(table, key, obtainSession().lockMode);
+    }
+
+    /**
+     * Read a single row. Within a transaction, the row is locked first unless the lock mode is read-committed, and
+     * the transaction's own writes to the row are applied to the committed version.
+     *
+     * @return The row, or null if it does not exist. The returned object may be the stored row and must not be
+     * modified.
+     */
+    public <V> V read(MemoryTable<V> table, RowKey key, LockMode lockMode) throws StorageException {
+        Session session = obtainSession();
+        if (!session.isTransactionActive())
+            return table.get(key);
+
+        if (lockMode != LockMode.READ_COMMITTED)
+            session.transaction.lock(table, key, lockMode == LockMode.WRITE_LOCK);
+        return session.transaction.overlay(table, key, table.get(key));
+    }
+
+    /**
+     * Read the rows with the given keys, skipping rows that do not exist or no longer satisfy the given filter once
+     * locked. Used to turn an unlocked index or range scan into a locking one.
+     */
+    public <V> List<V> readAll(MemoryTable<V> table, List<RowKey> keys, LockMode lockMode, Predicate<V> filter)
+            throws StorageException {
+        List<V> rows = new ArrayList<>(keys.size());
+        for (RowKey key : keys) {
+            V row = read(table, key, lockMode);
+            if (row != null && filter.test(row))
+                rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Read the rows whose primary key starts with the given prefix, in key order, including the rows inserted by the
+     * current transaction.
+     */
+    public <V> List<V> scan(MemoryTable<V> table, RowKey prefix, LockMode lockMode) throws StorageException {
+        return readAll(table, merge(table.scanKeys(prefix), writtenKeys(table, prefix)), lockMode, row -> true);
+    }
+
+    /**
+     * Read up to {@code limit} rows whose primary key starts with the given prefix and sorts after {@code after}, in
+     * key order, including the rows inserted by the current transaction.
+     */
+    public <V> List<V> scan(MemoryTable<V> table, RowKey prefix, RowKey after, int limit, LockMode lockMode)
+            throws StorageException {
+        List<RowKey> written = writtenKeys(table, prefix);
+        written.removeIf(key -> key.compareTo(after) <= 0);
+
+        // Fetch enough committed keys to make up for the rows that the current transaction has deleted.
+        List<RowKey> keys = merge(
+                table.scanKeys(prefix, after, (int) Math.min(Integer.MAX_VALUE, (long) limit + written.size())),
+                written);
+
+        List<V> rows = new ArrayList<>(Math.min(limit, keys.size()));
+        for (RowKey key : keys) {
+            if (rows.size() >= limit)
+                break;
+            V row = read(table, key, lockMode);
+            if (row != null)
+                rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Read the rows whose key in the given secondary index starts with the given prefix, including the rows the
+     * current transaction has written with a matching index key. Rows whose index key no longer matches once read are
+     * skipped.
+     */
+    public <V> List<V> scanIndex(MemoryTable<V> table, String indexName, RowKey prefix, LockMode lockMode)
+            throws StorageException {
+        Set<RowKey> keys = new LinkedHashSet<>(table.scanIndexKeys(indexName, prefix));
+
+        Session session = obtainSession();
+        if (session.isTransactionActive()) {
+            for (RowKey key : session.transaction.writtenKeys(table, RowKey.of())) {
+                V row = session.transaction.overlay(table, key, table.get(key));
+                if (row != null && table.indexKey(indexName, row).startsWith(prefix))
+                    keys.add(key);
+            }
+        }
+
+        return readAll(table, new ArrayList<>(keys), lockMode,
+                row -> table.indexKey(indexName, row).startsWith(prefix));
+    }
+
+    private List<RowKey> writtenKeys(MemoryTable<?> table, RowKey prefix) throws StorageException {
+        Session session = obtainSession();
+        return session.isTransactionActive() ? session.transaction.writtenKeys(table, prefix) : new ArrayList<>();
+    }
+
+    /**
+     * Merge the given committed keys with the given keys that the current transaction has written, in key order.
+     */
+    private static List<RowKey> merge(List<RowKey> committedKeys, List<RowKey> written) {
+        if (written.isEmpty())
+            return committedKeys;
+
+        TreeSet<RowKey> keys = new TreeSet<>(committedKeys);
+        keys.addAll(written);
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Write a single row. Within a transaction the write is buffered until commit; otherwise it is committed
+     * immediately.
+     *
+     * @param change Computes the new version of the row from the current one, which is null if the row does not
+     *               exist. Returning null deletes the row. Must not modify the current row, and may be applied more
+     *               than once.
+     */
+    public <V> void write(MemoryTable<V> table, RowKey key, WriteMode mode, UnaryOperator<V> change)
+            throws StorageException {
+        Session session = obtainSession();
+        if (session.isTransactionActive()) {
+            session.transaction.write(table, key, mode, change);
+        } else {
+            MemoryTransaction tx = new MemoryTransaction(lockTimeoutMillis);
+            tx.write(table, key, mode, change);
+            tx.commit();
+        }
+    }
+
+    public <V> void put(MemoryTable<V> table, RowKey key, WriteMode mode, V value) throws StorageException {
+        write(table, key, mode, current -> value);
+    }
+
+    public <V> void delete(MemoryTable<V> table, RowKey key) throws StorageException {
+        write(table, key, WriteMode.SAVE, current -> null);
+    }
+
+    @Override
+    public boolean formatStorage() throws StorageException {
+        return formatAllStorageNonTransactional();
+    }
+
+    @Override
+    public boolean formatYarnStorage() throws StorageException {
+        return formatYarnStorageNonTransactional();
+    }
+
+    @Override
+    public boolean formatHDFSStorage() throws StorageException {
+        return formatHDFSStorageNonTransactional();
+    }
+
+    @Override
+    public boolean formatAllStorageNonTransactional() throws StorageException {
+        for (EntityDataAccess dataAccess : dataAccessMap.values())
+            clear(dataAccess);
+        return true;
+    }
+
+    /**
+     * There are no YARN tables in memory.
+     */
+    @Override
+    public boolean formatYarnStorageNonTransactional() throws StorageException {
+        return true;
+    }
+
+    @Override
+    public boolean formatHDFSStorageNonTransactional() throws StorageException {
+        return formatAllStorageNonTransactional();
+    }
+
+    @Override
+    public boolean formatStorage(Class<? extends EntityDataAccess>... das) throws StorageException {
+        for (Class<? extends EntityDataAccess> da : das)
+            clear(dataAccessMap.get(da));
+        return true;
+    }
+
+    private void clear(EntityDataAccess dataAccess) {
+        if (dataAccess instanceof MemoryDataAccess)
+            ((MemoryDataAccess) dataAccess).clear();
+    }
+
+    @Override
+    public void stopStorage() throws StorageException {
+        // Nothing to release.
+    }
+
+    @Override
+    public void setPartitionKey(Class className, Object key) throws StorageException {
+        // There are no partitions to prune.
+    }
+
+    @Override
+    public void flush() throws StorageException {
+        // Writes are buffered in the transaction until commit.
+    }
+
+    @Override
+    public String getClusterConnectString() {
+        return "memory";
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return "memory";
+    }
+}
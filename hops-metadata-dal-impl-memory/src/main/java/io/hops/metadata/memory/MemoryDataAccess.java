@@ -0,0 +1,11 @@
+package io.hops.metadata.memory;
+
+/**
+ * Implemented by every in-memory data access so that the connector can clear its tables when formatting.
+ */
+public interface MemoryDataAccess {
+    /**
+     * Delete every row of the tables owned by this data access.
+     */
+    void clear();
+}
@@ -0,0 +1,170 @@
+package io.hops.metadata.memory;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.memory.MemoryConnector.WriteMode;
+import io.hops.transaction.context.EntityContext.LockMode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Base class of the in-memory data accesses that keep a single entity type in a single {@link MemoryTable}.
+ *
+ * Rows go through {@link #copy(Object)} on the way in and on the way out, so subclasses of mutable entities must
+ * override it. Lookups and scans go through the {@link MemoryConnector}, so they lock rows according to the lock mode
+ * of the session and observe the writes of the current transaction, like a ClusterJ lookup or query would. The
+ * {@code count} helpers stand in for the MySQL server queries of the NDB implementation, which run outside of the
+ * ClusterJ transaction, and therefore only see committed rows.
+ */
+public abstract class MemoryEntityDataAccess<E> implements MemoryDataAccess {
+    protected final MemoryConnector connector = MemoryConnector.getInstance();
+
+    protected final MemoryTable<E> table;
+
+    protected MemoryEntityDataAccess(MemoryTable<E> table) {
+        this.table = table;
+    }
+
+    protected abstract RowKey primaryKey(E entity);
+
+    /**
+     * Copy the given entity. Entities are returned as-is by default, which is only correct for immutable ones.
+     */
+    protected E copy(E entity) {
+        return entity;
+    }
+
+    protected LockMode lockMode() throws StorageException {
+        return connector.obtainSession().getLockMode();
+    }
+
+    protected E find(RowKey key) throws StorageException {
+        return find(key, lockMode());
+    }
+
+    protected E find(RowKey key, LockMode lockMode) throws StorageException {
+        E row = connector.read(table, key, lockMode);
+        return row == null ? null : copy(row);
+    }
+
+    /**
+     * Return the rows whose primary key starts with the given prefix, in key order.
+     */
+    protected List<E> scan(RowKey prefix) throws StorageException {
+        return copyAll(connector.scan(table, prefix, lockMode()));
+    }
+
+    /**
+     * Return the rows whose primary key starts with any of the given values, like a batch of partition-pruned scans.
+     */
+    protected List<E> scanEach(long[] firstParts) throws StorageException {
+        List<E> rows = new ArrayList<>();
+        for (long firstPart : firstParts)
+            rows.addAll(scan(RowKey.of(firstPart)));
+        return rows;
+    }
+
+    /**
+     * Return the rows whose key in the given secondary index starts with the given prefix.
+     */
+    protected List<E> scanIndex(String indexName, RowKey prefix) throws StorageException {
+        return copyAll(connector.scanIndex(table, indexName, prefix, lockMode()));
+    }
+
+    /**
+     * Return the rows that satisfy the given filter, in key order. Like an NDB query without an index, this scans
+     * the whole table.
+     */
+    protected List<E> scanAll(Predicate<E> filter) throws StorageException {
+        List<E> rows = new ArrayList<>();
+        for (E row : connector.scan(table, RowKey.of(), lockMode())) {
+            if (filter.test(row))
+                rows.add(copy(row));
+        }
+        return rows;
+    }
+
+    /**
+     * Count the committed rows that satisfy the given filter.
+     */
+    protected int count(Predicate<E> filter) {
+        int count = 0;
+        for (E row : table.values()) {
+            if (filter.test(row))
+                count++;
+        }
+        return count;
+    }
+
+    protected int count() {
+        return table.size();
+    }
+
+    protected void insert(E entity) throws StorageException {
+        connector.put(table, primaryKey(entity), WriteMode.INSERT, copy(entity));
+    }
+
+    protected void update(E entity) throws StorageException {
+        connector.put(table, primaryKey(entity), WriteMode.UPDATE, copy(entity));
+    }
+
+    protected void save(E entity) throws StorageException {
+        connector.put(table, primaryKey(entity), WriteMode.SAVE, copy(entity));
+    }
+
+    protected void delete(E entity) throws StorageException {
+        connector.delete(table, primaryKey(entity));
+    }
+
+    /**
+     * Delete the given rows and save the others, in the order of the NDB implementations. Any collection may be
+     * null.
+     */
+    protected void prepare(Collection<E> removed, Collection<E> newed, Collection<E> modified)
+            throws StorageException {
+        if (removed != null) {
+            for (E entity : removed)
+                delete(entity);
+        }
+        if (newed != null) {
+            for (E entity : newed)
+                save(entity);
+        }
+        if (modified != null) {
+            for (E entity : modified)
+                save(entity);
+        }
+    }
+
+    /**
+     * Delete the rows that satisfy the given filter and return how many there were.
+     */
+    protected int removeAll(Predicate<E> filter) throws StorageException {
+        List<E> removed = scanAll(filter);
+        for (E entity : removed)
+            delete(entity);
+        return removed.size();
+    }
+
+    @Override
+    public void clear() {
+        table.clear();
+    }
+
+    /**
+     * Install the given row directly, bypassing transactions and locks. Only for populating a table as part of
+     * {@link #clear()}.
+     */
+    protected void load(E entity) {
+        table.apply(primaryKey(entity), copy(entity));
+    }
+
+    protected List<E> copyAll(Collection<E> rows) {
+        List<E> copies = new ArrayList<>(rows.size());
+        for (E row : rows)
+            copies.add(copy(row));
+        return copies;
+    }
+}
@@ -0,0 +1,227 @@
+package io.hops.metadata.memory;
+
+import io.hops.DalStorageFactory;
+import io.hops.StorageConnector;
+import io.hops.exception.StorageException;
+import io.hops.exception.StorageInitializtionException;
+import io.hops.metadata.common.EntityDataAccess;
+import io.hops.metadata.election.dal.HdfsLeDescriptorDataAccess;
+import io.hops.metadata.hdfs.dal.AceDataAccess;
+import io.hops.metadata.hdfs.dal.ActiveBlockReportsDataAccess;
+import io.hops.metadata.hdfs.dal.BlockChecksumDataAccess;
+import io.hops.metadata.hdfs.dal.BlockInfoDataAccess;
+import io.hops.metadata.hdfs.dal.BlockLookUpDataAccess;
+import io.hops.metadata.hdfs.dal.CacheDirectiveDataAccess;
+import io.hops.metadata.hdfs.dal.CachePoolDataAccess;
+import io.hops.metadata.hdfs.dal.CachedBlockDataAccess;
+import io.hops.metadata.hdfs.dal.CorruptReplicaDataAccess;
+import io.hops.metadata.hdfs.dal.DataNodeDataAccess;
+import io.hops.metadata.hdfs.dal.DatanodeStorageDataAccess;
+import io.hops.metadata.hdfs.dal.DirectoryWithQuotaFeatureDataAccess;
+import io.hops.metadata.hdfs.dal.EncodingStatusDataAccess;
+import io.hops.metadata.hdfs.dal.EncryptionZoneDataAccess;
+import io.hops.metadata.hdfs.dal.ExcessReplicaDataAccess;
+import io.hops.metadata.hdfs.dal.FileProvXAttrBufferDataAccess;
+import io.hops.metadata.hdfs.dal.FileProvenanceDataAccess;
+import io.hops.metadata.hdfs.dal.GroupDataAccess;
+import io.hops.metadata.hdfs.dal.HashBucketDataAccess;
+import io.hops.metadata.hdfs.dal.INodeDataAccess;
+import io.hops.metadata.hdfs.dal.InMemoryInodeDataAccess;
+import io.hops.metadata.hdfs.dal.IntermediateBlockReportDataAccess;
+import io.hops.metadata.hdfs.dal.InvalidateBlockDataAccess;
+import io.hops.metadata.hdfs.dal.InvalidationDataAccess;
+import io.hops.metadata.hdfs.dal.LargeOnDiskInodeDataAccess;
+import io.hops.metadata.hdfs.dal.LeaseCreationLocksDataAccess;
+import io.hops.metadata.hdfs.dal.LeaseDataAccess;
+import io.hops.metadata.hdfs.dal.LeasePathDataAccess;
+import io.hops.metadata.hdfs.dal.MediumOnDiskInodeDataAccess;
+import io.hops.metadata.hdfs.dal.MetadataLogDataAccess;
+import io.hops.metadata.hdfs.dal.MisReplicatedRangeQueueDataAccess;
+import io.hops.metadata.hdfs.dal.OngoingSubTreeOpsDataAccess;
+import io.hops.metadata.hdfs.dal.PendingBlockDataAccess;
+import io.hops.metadata.hdfs.dal.QuotaUpdateDataAccess;
+import io.hops.metadata.hdfs.dal.ReplicaDataAccess;
+import io.hops.metadata.hdfs.dal.ReplicaUnderConstructionDataAccess;
+import io.hops.metadata.hdfs.dal.RetryCacheEntryDataAccess;
+import io.hops.metadata.hdfs.dal.SafeBlocksDataAccess;
+import io.hops.metadata.hdfs.dal.ServerlessNameNodeDataAccess;
+import io.hops.metadata.hdfs.dal.SmallOnDiskInodeDataAccess;
+import io.hops.metadata.hdfs.dal.StorageDataAccess;
+import io.hops.metadata.hdfs.dal.StorageIdMapDataAccess;
+import io.hops.metadata.hdfs.dal.StorageReportDataAccess;
+import io.hops.metadata.hdfs.dal.UnderReplicatedBlockDataAccess;
+import io.hops.metadata.hdfs.dal.UserDataAccess;
+import io.hops.metadata.hdfs.dal.UserGroupDataAccess;
+import io.hops.metadata.hdfs.dal.VariableDataAccess;
+import io.hops.metadata.hdfs.dal.WriteAcknowledgementDataAccess;
+import io.hops.metadata.hdfs.dal.XAttrDataAccess;
+import io.hops.metadata.memory.dalimpl.election.HdfsLeDescriptorMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.AceMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.ActiveBlockReportsMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.BlockChecksumMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.BlockInfoMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.BlockLookUpMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.CacheDirectiveMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.CachePoolMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.CachedBlockMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.CorruptReplicaMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.DataNodeMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.DatanodeStorageMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.DirectoryWithQuotaFeatureMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.EncodingStatusMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.EncryptionZoneMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.ExcessReplicaMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.FileProvXAttrBufferMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.FileProvenanceMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.GroupMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.HashBucketMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.INodeMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.InMemoryFileInodeMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.IntermediateBlockReportMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.InvalidateBlockMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.InvalidationMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.LargeOnDiskFileInodeMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.LeaseCreationLocksMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.LeaseMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.LeasePathMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.MediumOnDiskFileInodeMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.MetadataLogMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.MisReplicatedRangeQueueMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.OngoingSubTreeOpsMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.PendingBlockMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.QuotaUpdateMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.ReplicaMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.ReplicaUnderConstructionMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.RetryCacheEntryMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.SafeBlocksMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.ServerlessNameNodeMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.SmallOnDiskFileInodeMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.StorageIdMapMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.StorageMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.StorageReportMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.UnderReplicatedBlockMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.UserGroupMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.UserMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.VariableMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.WriteAcknowledgementMemoryDataAccess;
+import io.hops.metadata.memory.dalimpl.hdfs.XAttrMemoryDataAccess;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Storage driver that keeps the metadata in the memory of the current JVM instead of in NDB.
+ *
+ * Intended for benchmarking and testing the NameNode's transaction and caching layers without a MySQL Cluster
+ * deployment. Every HDFS table the NameNode uses is provided, along with the write acknowledgement and invalidation
+ * tables of the consistency protocol. {@link #getDataAccess(Class)} returns null for the YARN tables and the erasure
+ * coding job tables. Nothing is persisted, and the tables are shared by every NameNode in the JVM.
+ *
+ * Enable it by setting {@code dfs.storage.driver.class} to this class.
+ */
+public class MemoryStorageFactory implements DalStorageFactory {
+    private static final Log LOG = LogFactory.getLog(MemoryStorageFactory.class);
+
+    private final Map<Class, EntityDataAccess> dataAccessMap = new HashMap<>();
+
+    @Override
+    public void setConfiguration(Properties conf) throws StorageInitializtionException {
+        try {
+            MemoryConnector.getInstance().setConfiguration(conf);
+        } catch (StorageException ex) {
+            throw new StorageInitializtionException(ex);
+        }
+        initDataAccessMap();
+        MemoryConnector.getInstance().setDataAccessMap(Collections.unmodifiableMap(dataAccessMap));
+        LOG.info("Using in-memory metadata storage with tables for " + dataAccessMap.keySet().size() +
+                " data access types.");
+    }
+
+    private void initDataAccessMap() {
+        ReplicaMemoryDataAccess replicaDataAccess = new ReplicaMemoryDataAccess();
+        GroupMemoryDataAccess groupDataAccess = new GroupMemoryDataAccess();
+
+        dataAccessMap.put(InvalidationDataAccess.class, new InvalidationMemoryDataAccess());
+        dataAccessMap.put(WriteAcknowledgementDataAccess.class, new WriteAcknowledgementMemoryDataAccess());
+        dataAccessMap.put(ServerlessNameNodeDataAccess.class, new ServerlessNameNodeMemoryDataAccess());
+        dataAccessMap.put(DataNodeDataAccess.class, new DataNodeMemoryDataAccess());
+        dataAccessMap.put(StorageReportDataAccess.class, new StorageReportMemoryDataAccess());
+        dataAccessMap.put(DatanodeStorageDataAccess.class, new DatanodeStorageMemoryDataAccess());
+        dataAccessMap.put(IntermediateBlockReportDataAccess.class, new IntermediateBlockReportMemoryDataAccess());
+        dataAccessMap.put(StorageDataAccess.class, new StorageMemoryDataAccess());
+        dataAccessMap.put(BlockInfoDataAccess.class, new BlockInfoMemoryDataAccess(replicaDataAccess));
+        dataAccessMap.put(PendingBlockDataAccess.class, new PendingBlockMemoryDataAccess());
+        dataAccessMap.put(ReplicaUnderConstructionDataAccess.class, new ReplicaUnderConstructionMemoryDataAccess());
+        dataAccessMap.put(INodeDataAccess.class, new INodeMemoryDataAccess());
+        dataAccessMap.put(DirectoryWithQuotaFeatureDataAccess.class, new DirectoryWithQuotaFeatureMemoryDataAccess());
+        dataAccessMap.put(LeaseDataAccess.class, new LeaseMemoryDataAccess());
+        dataAccessMap.put(LeasePathDataAccess.class, new LeasePathMemoryDataAccess());
+        dataAccessMap.put(OngoingSubTreeOpsDataAccess.class, new OngoingSubTreeOpsMemoryDataAccess());
+        dataAccessMap.put(InMemoryInodeDataAccess.class, new InMemoryFileInodeMemoryDataAccess());
+        dataAccessMap.put(SmallOnDiskInodeDataAccess.class, new SmallOnDiskFileInodeMemoryDataAccess());
+        dataAccessMap.put(MediumOnDiskInodeDataAccess.class, new MediumOnDiskFileInodeMemoryDataAccess());
+        dataAccessMap.put(LargeOnDiskInodeDataAccess.class, new LargeOnDiskFileInodeMemoryDataAccess());
+        dataAccessMap.put(HdfsLeDescriptorDataAccess.class, new HdfsLeDescriptorMemoryDataAccess());
+        dataAccessMap.put(ReplicaDataAccess.class, replicaDataAccess);
+        dataAccessMap.put(CorruptReplicaDataAccess.class, new CorruptReplicaMemoryDataAccess());
+        dataAccessMap.put(ExcessReplicaDataAccess.class, new ExcessReplicaMemoryDataAccess());
+        dataAccessMap.put(InvalidateBlockDataAccess.class, new InvalidateBlockMemoryDataAccess());
+        dataAccessMap.put(UnderReplicatedBlockDataAccess.class, new UnderReplicatedBlockMemoryDataAccess());
+        dataAccessMap.put(VariableDataAccess.class, new VariableMemoryDataAccess());
+        dataAccessMap.put(StorageIdMapDataAccess.class, new StorageIdMapMemoryDataAccess());
+        dataAccessMap.put(EncodingStatusDataAccess.class, new EncodingStatusMemoryDataAccess());
+        dataAccessMap.put(BlockLookUpDataAccess.class, new BlockLookUpMemoryDataAccess());
+        dataAccessMap.put(SafeBlocksDataAccess.class, new SafeBlocksMemoryDataAccess());
+        dataAccessMap.put(MisReplicatedRangeQueueDataAccess.class, new MisReplicatedRangeQueueMemoryDataAccess());
+        dataAccessMap.put(QuotaUpdateDataAccess.class, new QuotaUpdateMemoryDataAccess());
+        dataAccessMap.put(BlockChecksumDataAccess.class, new BlockChecksumMemoryDataAccess());
+        dataAccessMap.put(MetadataLogDataAccess.class, new MetadataLogMemoryDataAccess());
+        dataAccessMap.put(UserDataAccess.class, new UserMemoryDataAccess());
+        dataAccessMap.put(GroupDataAccess.class, groupDataAccess);
+        dataAccessMap.put(UserGroupDataAccess.class, new UserGroupMemoryDataAccess(groupDataAccess));
+        dataAccessMap.put(HashBucketDataAccess.class, new HashBucketMemoryDataAccess());
+        dataAccessMap.put(AceDataAccess.class, new AceMemoryDataAccess());
+        dataAccessMap.put(RetryCacheEntryDataAccess.class, new RetryCacheEntryMemoryDataAccess());
+        dataAccessMap.put(CacheDirectiveDataAccess.class, new CacheDirectiveMemoryDataAccess());
+        dataAccessMap.put(CachePoolDataAccess.class, new CachePoolMemoryDataAccess());
+        dataAccessMap.put(CachedBlockDataAccess.class, new CachedBlockMemoryDataAccess());
+        dataAccessMap.put(ActiveBlockReportsDataAccess.class, new ActiveBlockReportsMemoryDataAccess());
+        dataAccessMap.put(XAttrDataAccess.class, new XAttrMemoryDataAccess());
+        dataAccessMap.put(EncryptionZoneDataAccess.class, new EncryptionZoneMemoryDataAccess());
+        dataAccessMap.put(FileProvenanceDataAccess.class, new FileProvenanceMemoryDataAccess());
+        dataAccessMap.put(FileProvXAttrBufferDataAccess.class, new FileProvXAttrBufferMemoryDataAccess());
+        dataAccessMap.put(LeaseCreationLocksDataAccess.class, new LeaseCreationLocksMemoryDataAccess());
+    }
+
+    @Override
+    public StorageConnector getConnector() {
+        return MemoryConnector.getInstance();
+    }
+
+    @Override
+    public EntityDataAccess getDataAccess(Class type) {
+        return dataAccessMap.get(type);
+    }
+
+    /**
+     * The tables live on the heap, so there is no separate storage capacity to run out of.
+     */
+    @Override
+    public boolean hasResources(double threshold) throws StorageException {
+        return true;
+    }
+
+    @Override
+    public float getResourceMemUtilization() throws StorageException {
+        return 0;
+    }
+
+    @Override
+    public Map<Class, EntityDataAccess> getDataAccessMap() {
+        return dataAccessMap;
+    }
+}
@@ -0,0 +1,227 @@
+package io.hops.metadata.memory;
+
+import io.hops.exception.StorageException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * A table of rows sorted by primary key, with optional secondary indexes and per-row locks.
+ *
+ * Reads never block: they go straight to the underlying {@link ConcurrentSkipListMap} and therefore observe the most
+ * recently committed version of each row, like an NDB read-committed read. Locking reads and all writes go through a
+ * {@link MemoryTransaction}, which acquires the row locks of this table and applies its buffered changes on commit.
+ *
+ * Values are stored as-is, so callers must never hand out or keep references to stored rows if the row type is
+ * mutable.
+ */
+public class MemoryTable<V> {
+    private final String name;
+
+    private final ConcurrentSkipListMap<RowKey, V> rows = new ConcurrentSkipListMap<>();
+
+    /**
+     * Secondary indexes by name. Each maps (index key + primary key) to the primary key.
+     */
+    private final Map<String, SecondaryIndex<V>> indexes = new HashMap<>();
+
+    private final ConcurrentHashMap<RowKey, RowLock> locks = new ConcurrentHashMap<>();
+
+    public MemoryTable(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Add a secondary index to this table. Must be called before any rows are written.
+     *
+     * @param indexName Name used to refer to the index in {@link #scanIndexKeys(String, RowKey)}.
+     * @param extractor Computes the index key of a row.
+     */
+    public MemoryTable<V> withIndex(String indexName, Function<V, RowKey> extractor) {
+        indexes.put(indexName, new SecondaryIndex<>(extractor));
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public V get(RowKey key) {
+        return rows.get(key);
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    public Collection<V> values() {
+        return rows.values();
+    }
+
+    /**
+     * Return the rows whose primary key starts with the given prefix, in key order.
+     */
+    public List<V> scan(RowKey prefix) {
+        return new ArrayList<>(prefixMap(prefix).values());
+    }
+
+    /**
+     * Return the primary keys that start with the given prefix, in key order.
+     */
+    public List<RowKey> scanKeys(RowKey prefix) {
+        return new ArrayList<>(prefixMap(prefix).keySet());
+    }
+
+    /**
+     * Return the primary keys that start with the given prefix and sort after {@code after}, in key order, stopping
+     * after {@code limit} keys.
+     */
+    public List<RowKey> scanKeys(RowKey prefix, RowKey after, int limit) {
+        List<RowKey> keys = new ArrayList<>();
+        for (RowKey key : rows.tailMap(after, false).keySet()) {
+            if (keys.size() >= limit || !key.startsWith(prefix))
+                break;
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * Return the primary keys of the rows whose key in the given secondary index starts with the given prefix.
+     */
+    public List<RowKey> scanIndexKeys(String indexName, RowKey prefix) {
+        SecondaryIndex<V> index = getIndex(indexName);
+        List<RowKey> keys = new ArrayList<>();
+        for (Map.Entry<RowKey, RowKey> entry : index.entries.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix))
+                break;
+            keys.add(entry.getValue());
+        }
+        return keys;
+    }
+
+    /**
+     * Return the primary keys of the rows whose key in the given secondary index lies in {@code [from, to)}, in
+     * index order, stopping after {@code limit} keys.
+     */
+    public List<RowKey> scanIndexKeys(String indexName, RowKey from, RowKey to, int limit) {
+        SecondaryIndex<V> index = getIndex(indexName);
+        List<RowKey> keys = new ArrayList<>();
+        for (RowKey primaryKey : index.entries.subMap(from, true, to, false).values()) {
+            if (keys.size() >= limit)
+                break;
+            keys.add(primaryKey);
+        }
+        return keys;
+    }
+
+    /**
+     * Return true if there is at least one row whose primary key starts with the given prefix.
+     */
+    public boolean containsPrefix(RowKey prefix) {
+        RowKey first = rows.ceilingKey(prefix);
+        return first != null && first.startsWith(prefix);
+    }
+
+    /**
+     * Return the rows whose key in the given secondary index starts with the given prefix. Rows that changed between
+     * the index lookup and the row lookup are filtered out.
+     */
+    public List<V> scanIndex(String indexName, RowKey prefix) {
+        Function<V, RowKey> extractor = getIndex(indexName).extractor;
+        List<V> result = new ArrayList<>();
+        for (RowKey key : scanIndexKeys(indexName, prefix)) {
+            V row = rows.get(key);
+            if (row != null && extractor.apply(row).startsWith(prefix))
+                result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * Return the key of the given row in the given secondary index.
+     */
+    public RowKey indexKey(String indexName, V row) {
+        return getIndex(indexName).extractor.apply(row);
+    }
+
+    private SecondaryIndex<V> getIndex(String indexName) {
+        SecondaryIndex<V> index = indexes.get(indexName);
+        if (index == null)
+            throw new IllegalArgumentException("Table " + name + " has no index named " + indexName);
+        return index;
+    }
+
+    private ConcurrentNavigableMap<RowKey, V> prefixMap(RowKey prefix) {
+        // The prefix sorts before every key that extends it, so the matching keys form a contiguous run starting at
+        // the prefix itself. Find the end of that run by walking it.
+        ConcurrentNavigableMap<RowKey, V> tail = rows.tailMap(prefix, true);
+        RowKey end = null;
+        for (RowKey key : tail.keySet()) {
+            if (!key.startsWith(prefix)) {
+                end = key;
+                break;
+            }
+        }
+        return end == null ? tail : tail.headMap(end, false);
+    }
+
+    /**
+     * Install the given value for the given key, or delete the row if the value is null, keeping the secondary
+     * indexes in sync. Only called by {@link MemoryTransaction} while it holds the exclusive lock on the row.
+     */
+    synchronized void apply(RowKey key, V value) {
+        V previous = value == null ? rows.remove(key) : rows.put(key, value);
+
+        for (SecondaryIndex<V> index : indexes.values()) {
+            if (previous != null)
+                index.entries.remove(index.extractor.apply(previous).append(key));
+            if (value != null)
+                index.entries.put(index.extractor.apply(value).append(key), key);
+        }
+    }
+
+    public synchronized void clear() {
+        rows.clear();
+        for (SecondaryIndex<V> index : indexes.values())
+            index.entries.clear();
+    }
+
+    /**
+     * Lock the given row on behalf of the given transaction, blocking until the lock is granted or the timeout
+     * expires. Rows need not exist to be locked.
+     */
+    void lock(MemoryTransaction tx, RowKey key, boolean exclusive, long timeoutMillis) throws StorageException {
+        while (true) {
+            RowLock lock = locks.computeIfAbsent(key, k -> new RowLock());
+            if (lock.acquire(tx, exclusive, timeoutMillis))
+                return;
+
+            // The lock was retired after we looked it up. Help remove it, then try again with a fresh one.
+            locks.remove(key, lock);
+        }
+    }
+
+    void unlock(MemoryTransaction tx, RowKey key) {
+        RowLock lock = locks.get(key);
+        if (lock != null && lock.release(tx))
+            locks.remove(key, lock);
+    }
+
+    private static final class SecondaryIndex<V> {
+        private final Function<V, RowKey> extractor;
+
+        private final ConcurrentSkipListMap<RowKey, RowKey> entries = new ConcurrentSkipListMap<>();
+
+        SecondaryIndex(Function<V, RowKey> extractor) {
+            this.extractor = extractor;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.hops.metadata.memory;
+
+import io.hops.exception.StorageException;
+import io.hops.exception.TupleAlreadyExistedException;
+import io.hops.metadata.memory.MemoryConnector.WriteMode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * A transaction against the in-memory tables.
+ *
+ * Row locks taken by locking reads are held until the transaction ends. Writes are buffered in the order they are
+ * issued and only applied on commit, after the transaction has taken the exclusive lock on every row it writes.
+ * Uncommitted writes are therefore never visible to other transactions, and rolling back just means discarding the
+ * buffer. A transaction does observe its own buffered writes: {@link #overlay} applies them to the committed version
+ * of a row, and {@link #writtenKeys} lets range scans find rows the transaction has inserted. Write preconditions are
+ * only checked on commit, as ClusterJ only checks them when the session is flushed.
+ */
+final class MemoryTransaction {
+    private static final class Write<V> {
+        final MemoryTable<V> table;
+        final RowKey key;
+        final WriteMode mode;
+
+        /**
+         * Computes the new version of the row from the current one. Returning null deletes the row. Applied once
+         * per read of the row by this transaction and once more on commit.
+         */
+        final UnaryOperator<V> change;
+
+        Write(MemoryTable<V> table, RowKey key, WriteMode mode, UnaryOperator<V> change) {
+            this.table = table;
+            this.key = key;
+            this.mode = mode;
+            this.change = change;
+        }
+    }
+
+    private final long lockTimeoutMillis;
+
+    /**
+     * Rows locked by this transaction, per table.
+     */
+    private final Map<MemoryTable<?>, Set<RowKey>> heldLocks = new IdentityHashMap<>();
+
+    private final List<Write<?>> writes = new ArrayList<>();
+
+    /**
+     * The buffered writes again, by table and row, in the order they were issued.
+     */
+    private final Map<MemoryTable<?>, NavigableMap<RowKey, List<Write<?>>>> writesByRow = new IdentityHashMap<>();
+
+    private boolean active = true;
+
+    MemoryTransaction(long lockTimeoutMillis) {
+        this.lockTimeoutMillis = lockTimeoutMillis;
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    void lock(MemoryTable<?> table, RowKey key, boolean exclusive) throws StorageException {
+        table.lock(this, key, exclusive, lockTimeoutMillis);
+        heldLocks.computeIfAbsent(table, t -> new LinkedHashSet<>()).add(key);
+    }
+
+    <V> void write(MemoryTable<V> table, RowKey key, WriteMode mode, UnaryOperator<V> change) {
+        Write<V> write = new Write<>(table, key, mode, change);
+        writes.add(write);
+        writesByRow.computeIfAbsent(table, t -> new TreeMap<>()).computeIfAbsent(key, k -> new ArrayList<>())
+                .add(write);
+    }
+
+    /**
+     * Return the given row as this transaction sees it: the committed version with the transaction's buffered writes
+     * to the row applied in order. Returns null if the row does not exist or the transaction deleted it.
+     */
+    @SuppressWarnings("unchecked")
+    <V> V overlay(MemoryTable<V> table, RowKey key, V committed) {
+        NavigableMap<RowKey, List<Write<?>>> tableWrites = writesByRow.get(table);
+        List<Write<?>> rowWrites = tableWrites == null ? null : tableWrites.get(key);
+        if (rowWrites == null)
+            return committed;
+
+        V row = committed;
+        for (Write<?> write : rowWrites)
+            row = ((Write<V>) write).change.apply(row);
+        return row;
+    }
+
+    /**
+     * Return the keys of the rows of the given table that start with the given prefix and were written by this
+     * transaction, in key order. The rows may have been deleted.
+     */
+    List<RowKey> writtenKeys(MemoryTable<?> table, RowKey prefix) {
+        NavigableMap<RowKey, List<Write<?>>> tableWrites = writesByRow.get(table);
+        if (tableWrites == null)
+            return Collections.emptyList();
+
+        List<RowKey> keys = new ArrayList<>();
+        for (RowKey key : tableWrites.tailMap(prefix, true).keySet()) {
+            if (!key.startsWith(prefix))
+                break;
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * Lock every written row exclusively, check the write preconditions, and install the changes. All locks are
+     * released afterwards, whether or not the commit succeeded.
+     */
+    void commit() throws StorageException {
+        try {
+            for (Write<?> write : writes)
+                lock(write.table, write.key, true);
+
+            // The final version of each written row. Computed up-front so that a failed precondition leaves every
+            // table untouched.
+            Map<MemoryTable<?>, Map<RowKey, Object>> staged = new LinkedHashMap<>();
+            for (Write<?> write : writes)
+                stage(write, staged);
+
+            for (Map.Entry<MemoryTable<?>, Map<RowKey, Object>> entry : staged.entrySet())
+                install(entry.getKey(), entry.getValue());
+        } finally {
+            end();
+        }
+    }
+
+    void rollback() {
+        end();
+    }
+
+    private <V> void stage(Write<V> write, Map<MemoryTable<?>, Map<RowKey, Object>> staged)
+            throws StorageException {
+        Map<RowKey, Object> tableChanges = staged.computeIfAbsent(write.table, t -> new HashMap<>());
+
+        @SuppressWarnings("unchecked")
+        V current = tableChanges.containsKey(write.key) ? (V) tableChanges.get(write.key) : write.table.get(write.key);
+
+        if (write.mode == WriteMode.INSERT && current != null)
+            throw new TupleAlreadyExistedException("Row " + write.key + " already exists in table " +
+                    write.table.getName());
+        if (write.mode == WriteMode.UPDATE && current == null)
+            throw new StorageException("Row " + write.key + " does not exist in table " + write.table.getName());
+
+        tableChanges.put(write.key, write.change.apply(current));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void install(MemoryTable<V> table, Map<RowKey, Object> changes) {
+        for (Map.Entry<RowKey, Object> change : changes.entrySet())
+            table.apply(change.getKey(), (V) change.getValue());
+    }
+
+    private void end() {
+        active = false;
+        writes.clear();
+        writesByRow.clear();
+        for (Map.Entry<MemoryTable<?>, Set<RowKey>> entry : heldLocks.entrySet()) {
+            for (RowKey key : entry.getValue())
+                entry.getKey().unlock(this, key);
+        }
+        heldLocks.clear();
+    }
+}
@@ -0,0 +1,85 @@
+package io.hops.metadata.memory;
+
+import java.util.Arrays;
+
+/**
+ * Composite primary key of a row in a {@link MemoryTable}.
+ *
+ * Keys are ordered lexicographically by their parts, and a key sorts immediately before every key that it is a
+ * prefix of. This lets a table answer "all rows whose key starts with X" with a single ordered range scan, which
+ * is how the partition-pruned index scans of NDB are emulated.
+ */
+public final class RowKey implements Comparable<RowKey> {
+    private final Comparable[] parts;
+
+    private final int hash;
+
+    private RowKey(Comparable[] parts) {
+        this.parts = parts;
+        this.hash = Arrays.hashCode(parts);
+    }
+
+    public static RowKey of(Comparable... parts) {
+        for (Comparable part : parts) {
+            if (part == null)
+                throw new IllegalArgumentException("RowKey parts must be non-null: " + Arrays.toString(parts));
+        }
+        return new RowKey(parts.clone());
+    }
+
+    /**
+     * Return a new key consisting of the parts of this key followed by the parts of {@code suffix}.
+     */
+    public RowKey append(RowKey suffix) {
+        Comparable[] combined = Arrays.copyOf(parts, parts.length + suffix.parts.length);
+        System.arraycopy(suffix.parts, 0, combined, parts.length, suffix.parts.length);
+        return new RowKey(combined);
+    }
+
+    public Comparable getPart(int index) {
+        return parts[index];
+    }
+
+    public boolean startsWith(RowKey prefix) {
+        if (prefix.parts.length > parts.length)
+            return false;
+
+        for (int i = 0; i < prefix.parts.length; i++) {
+            if (!parts[i].equals(prefix.parts[i]))
+                return false;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public int compareTo(RowKey other) {
+        int common = Math.min(parts.length, other.parts.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = parts[i].compareTo(other.parts[i]);
+            if (cmp != 0)
+                return cmp;
+        }
+        return Integer.compare(parts.length, other.parts.length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof RowKey))
+            return false;
+        RowKey other = (RowKey) o;
+        return hash == other.hash && Arrays.equals(parts, other.parts);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(parts);
+    }
+}
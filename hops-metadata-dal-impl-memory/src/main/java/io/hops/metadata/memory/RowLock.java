@@ -0,0 +1,86 @@
+package io.hops.metadata.memory;
+
+import io.hops.exception.StorageException;
+import io.hops.exception.TransientDeadLockException;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Shared/exclusive lock on a single row, owned by transactions rather than threads.
+ *
+ * A transaction that is the sole shared holder of a row may upgrade to an exclusive lock. Waiters give up after the
+ * configured timeout and throw a {@link TransientDeadLockException}, which is how NDB reports lock wait timeouts, so
+ * that the usual retry logic of the transaction handlers applies unchanged.
+ *
+ * Once a lock has been released by every holder it is retired and removed from its table. A transaction that finds
+ * a retired lock must look the lock up again.
+ */
+final class RowLock {
+    private MemoryTransaction exclusiveOwner;
+
+    private final Set<MemoryTransaction> sharedOwners = new HashSet<>(2);
+
+    private boolean retired = false;
+
+    /**
+     * Acquire this lock on behalf of the given transaction.
+     *
+     * @return False if the lock has been retired, in which case nothing was acquired.
+     */
+    synchronized boolean acquire(MemoryTransaction tx, boolean exclusive, long timeoutMillis)
+            throws StorageException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        while (!retired && !isGrantable(tx, exclusive)) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                throw new TransientDeadLockException("Timed out after " + timeoutMillis + " ms waiting for " +
+                        (exclusive ? "exclusive" : "shared") + " row lock.");
+            try {
+                wait(remaining);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new StorageException("Interrupted while waiting for row lock.", ex);
+            }
+        }
+
+        if (retired)
+            return false;
+
+        if (exclusive)
+            exclusiveOwner = tx;
+        else
+            sharedOwners.add(tx);
+        return true;
+    }
+
+    private boolean isGrantable(MemoryTransaction tx, boolean exclusive) {
+        if (exclusiveOwner != null && exclusiveOwner != tx)
+            return false;
+
+        if (!exclusive)
+            return true;
+
+        return sharedOwners.isEmpty() || (sharedOwners.size() == 1 && sharedOwners.contains(tx));
+    }
+
+    /**
+     * Release every mode of this lock held by the given transaction.
+     *
+     * @return True if the lock is no longer held by anyone and has been retired.
+     */
+    synchronized boolean release(MemoryTransaction tx) {
+        if (exclusiveOwner == tx)
+            exclusiveOwner = null;
+        sharedOwners.remove(tx);
+
+        notifyAll();
+
+        if (exclusiveOwner == null && sharedOwners.isEmpty()) {
+            retired = true;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,50 @@
+package io.hops.metadata.memory.dalimpl.election;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.election.TablesDef;
+import io.hops.metadata.election.dal.HdfsLeDescriptorDataAccess;
+import io.hops.metadata.election.entity.LeDescriptor;
+import io.hops.metadata.election.entity.LeDescriptor.HdfsLeDescriptor;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+
+/**
+ * In-memory version of the table of HDFS leader election descriptors, keyed by (partitionVal, id) like the NDB table.
+ */
+public class HdfsLeDescriptorMemoryDataAccess extends MemoryEntityDataAccess<LeDescriptor>
+        implements HdfsLeDescriptorDataAccess<LeDescriptor>, TablesDef.HdfsLeaderTableDef {
+
+    public HdfsLeDescriptorMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(LeDescriptor descriptor) {
+        return RowKey.of(descriptor.getPartitionVal(), descriptor.getId());
+    }
+
+    @Override
+    protected LeDescriptor copy(LeDescriptor descriptor) {
+        return new HdfsLeDescriptor(descriptor.getId(), descriptor.getCounter(), descriptor.getRpcAddresses(),
+                descriptor.getHttpAddress(), descriptor.getLocationDomainId());
+    }
+
+    @Override
+    public LeDescriptor findByPkey(long id, int partitionKey) throws StorageException {
+        return find(RowKey.of(partitionKey, id));
+    }
+
+    @Override
+    public Collection<LeDescriptor> findAll() throws StorageException {
+        return scan(RowKey.of());
+    }
+
+    @Override
+    public void prepare(Collection<LeDescriptor> removed, Collection<LeDescriptor> newed,
+                        Collection<LeDescriptor> modified) throws StorageException {
+        super.prepare(removed, newed, modified);
+    }
+}
@@ -0,0 +1,51 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.AceDataAccess;
+import io.hops.metadata.hdfs.entity.Ace;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory version of the ACL entries table, keyed by (inodeId, index) like the NDB table.
+ */
+public class AceMemoryDataAccess extends MemoryEntityDataAccess<Ace>
+        implements AceDataAccess<Ace>, TablesDef.AcesTableDef {
+
+    public AceMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(Ace ace) {
+        return RowKey.of(ace.getInodeId(), ace.getIndex());
+    }
+
+    @Override
+    protected Ace copy(Ace ace) {
+        return ace.copy();
+    }
+
+    @Override
+    public List<Ace> getAcesByPKBatched(long inodeId, int[] ids) throws StorageException {
+        List<Ace> aces = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Ace ace = find(RowKey.of(inodeId, id));
+            if (ace != null)
+                aces.add(ace);
+        }
+        return aces;
+    }
+
+    @Override
+    public void prepare(Collection<Ace> removed, Collection<Ace> newed, Collection<Ace> modified)
+            throws StorageException {
+        super.prepare(removed, newed, modified);
+    }
+}
@@ -0,0 +1,63 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.ActiveBlockReportsDataAccess;
+import io.hops.metadata.hdfs.entity.ActiveBlockReport;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.List;
+
+/**
+ * In-memory version of the table of block reports being processed, keyed by DataNode address.
+ */
+public class ActiveBlockReportsMemoryDataAccess extends MemoryEntityDataAccess<ActiveBlockReport>
+        implements ActiveBlockReportsDataAccess<ActiveBlockReport>, TablesDef.ActiveBlockReports {
+
+    public ActiveBlockReportsMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(ActiveBlockReport report) {
+        return RowKey.of(report.getDnAddress());
+    }
+
+    @Override
+    protected ActiveBlockReport copy(ActiveBlockReport report) {
+        return new ActiveBlockReport(report.getDnAddress(), report.getNnId(), report.getNnAddress(),
+                report.getStartTime(), report.getNumBlocks());
+    }
+
+    @Override
+    public int countActiveRports() throws StorageException {
+        return count();
+    }
+
+    @Override
+    public void addActiveReport(ActiveBlockReport report) throws StorageException {
+        save(report);
+    }
+
+    @Override
+    public void removeActiveReport(ActiveBlockReport report) throws StorageException {
+        delete(report);
+    }
+
+    @Override
+    public ActiveBlockReport getActiveBlockReport(ActiveBlockReport report) throws StorageException {
+        return find(primaryKey(report));
+    }
+
+    @Override
+    public List<ActiveBlockReport> getAll() throws StorageException {
+        return scanAll(report -> true);
+    }
+
+    @Override
+    public void removeAll() throws StorageException {
+        removeAll(report -> true);
+    }
+}
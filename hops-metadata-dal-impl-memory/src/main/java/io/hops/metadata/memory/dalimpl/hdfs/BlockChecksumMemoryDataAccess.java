@@ -0,0 +1,63 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.BlockChecksumDataAccess;
+import io.hops.metadata.hdfs.entity.BlockChecksum;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+
+/**
+ * In-memory version of the block checksums table, keyed by (inodeId, blockIndex) like the NDB table.
+ */
+public class BlockChecksumMemoryDataAccess extends MemoryEntityDataAccess<BlockChecksum>
+        implements BlockChecksumDataAccess<BlockChecksum>, TablesDef.BlockChecksumTableDef {
+
+    public BlockChecksumMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(BlockChecksum checksum) {
+        return RowKey.of(checksum.getInodeId(), checksum.getBlockIndex());
+    }
+
+    @Override
+    protected BlockChecksum copy(BlockChecksum checksum) {
+        return new BlockChecksum(checksum.getInodeId(), checksum.getBlockIndex(), checksum.getChecksum());
+    }
+
+    @Override
+    public void add(BlockChecksum checksum) throws StorageException {
+        insert(checksum);
+    }
+
+    @Override
+    public void update(BlockChecksum checksum) throws StorageException {
+        super.update(checksum);
+    }
+
+    @Override
+    public void delete(BlockChecksum checksum) throws StorageException {
+        super.delete(checksum);
+    }
+
+    @Override
+    public BlockChecksum find(long inodeId, int blockIndex) throws StorageException {
+        return find(RowKey.of(inodeId, blockIndex));
+    }
+
+    @Override
+    public Collection<BlockChecksum> findAll(long inodeId) throws StorageException {
+        return scan(RowKey.of(inodeId));
+    }
+
+    @Override
+    public void deleteAll(long inodeId) throws StorageException {
+        for (BlockChecksum checksum : findAll(inodeId))
+            delete(checksum);
+    }
+}
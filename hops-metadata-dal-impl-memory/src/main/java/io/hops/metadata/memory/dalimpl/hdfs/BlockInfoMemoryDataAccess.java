@@ -0,0 +1,202 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.BlockInfoDataAccess;
+import io.hops.metadata.hdfs.entity.BlockInfo;
+import io.hops.metadata.hdfs.entity.Replica;
+import io.hops.metadata.memory.MemoryConnector;
+import io.hops.metadata.memory.MemoryConnector.WriteMode;
+import io.hops.metadata.memory.MemoryDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+import io.hops.transaction.context.EntityContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-memory version of the block table, keyed by (inodeId, blockId) like the NDB table. The queries by storage are
+ * answered through the storage index of the replica table, as the NDB implementation does.
+ */
+public class BlockInfoMemoryDataAccess implements BlockInfoDataAccess<BlockInfo>, MemoryDataAccess,
+        TablesDef.BlockInfoTableDef {
+    private final MemoryConnector connector = MemoryConnector.getInstance();
+
+    private final MemoryTable<BlockInfo> table = new MemoryTable<>(TABLE_NAME);
+
+    private final ReplicaMemoryDataAccess replicas;
+
+    public BlockInfoMemoryDataAccess(ReplicaMemoryDataAccess replicas) {
+        this.replicas = replicas;
+    }
+
+    private static RowKey primaryKey(long inodeId, long blockId) {
+        return RowKey.of(inodeId, blockId);
+    }
+
+    private static RowKey primaryKey(BlockInfo block) {
+        return primaryKey(block.getInodeId(), block.getBlockId());
+    }
+
+    @Override
+    public int countAll() throws StorageException {
+        return table.size();
+    }
+
+    @Override
+    public int countAllCompleteBlocks() throws StorageException {
+        int count = 0;
+        for (BlockInfo block : table.values()) {
+            if (block.getBlockUCState() == 0)
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public BlockInfo findById(long blockId, long inodeId) throws StorageException {
+        BlockInfo block = connector.read(table, primaryKey(inodeId, blockId));
+        return block == null ? null : copy(block);
+    }
+
+    @Override
+    public List<BlockInfo> findByInodeId(long inodeId) throws StorageException {
+        EntityContext.LockMode lockMode = connector.obtainSession().getLockMode();
+        return copyAll(connector.scan(table, RowKey.of(inodeId), lockMode));
+    }
+
+    @Override
+    public List<BlockInfo> findByInodeIds(long[] inodeIds) throws StorageException {
+        List<BlockInfo> blocks = new ArrayList<>();
+        for (long inodeId : inodeIds)
+            blocks.addAll(findByInodeId(inodeId));
+        return blocks;
+    }
+
+    @Override
+    public List<BlockInfo> findAllBlocks() throws StorageException {
+        return copyAll(table.values());
+    }
+
+    @Override
+    public List<BlockInfo> findAllBlocks(long startID, long endID) throws StorageException {
+        List<BlockInfo> blocks = new ArrayList<>();
+        for (BlockInfo block : table.values()) {
+            if (block.getBlockId() >= startID && block.getBlockId() < endID)
+                blocks.add(copy(block));
+        }
+        return blocks;
+    }
+
+    @Override
+    public List<BlockInfo> findBlockInfosByStorageId(int storageId) throws StorageException {
+        return readBlocksOf(replicas.getReplicas(storageId));
+    }
+
+    /**
+     * Return the blocks of the given storage whose IDs lie in the first non-empty window
+     * {@code [from + k * size, from + (k + 1) * size]}.
+     */
+    @Override
+    public List<BlockInfo> findBlockInfosByStorageId(int storageId, long from, int size) throws StorageException {
+        // The NDB implementation probes window after window until it finds a non-empty one. Jump straight to the
+        // window containing the next block instead, which also terminates if there are no more blocks.
+        long next = replicas.nextBlockId(storageId, from);
+        if (next < 0)
+            return new ArrayList<>();
+
+        if (size > 0 && next > from)
+            from += (next - from - 1) / size * size;
+        long to = size > 0 && from <= Long.MAX_VALUE - size ? from + size : Long.MAX_VALUE;
+        return readBlocksOf(replicas.getReplicas(storageId, from, to));
+    }
+
+    @Override
+    public List<BlockInfo> findBlockInfosBySids(List<Integer> sids) throws StorageException {
+        List<Replica> all = new ArrayList<>();
+        for (int sid : sids)
+            all.addAll(replicas.getReplicas(sid));
+        return readBlocksOf(all);
+    }
+
+    @Override
+    public Set<Long> findINodeIdsByStorageId(int storageId) throws StorageException {
+        Set<Long> inodeIds = new HashSet<>();
+        for (Replica replica : replicas.getReplicas(storageId))
+            inodeIds.add(replica.getInodeId());
+        return inodeIds;
+    }
+
+    @Override
+    public List<BlockInfo> findByIds(long[] blockIds, long[] inodeIds) throws StorageException {
+        EntityContext.LockMode lockMode = connector.obtainSession().getLockMode();
+        List<BlockInfo> blocks = new ArrayList<>(blockIds.length);
+        for (int i = 0; i < blockIds.length; i++) {
+            BlockInfo block = connector.read(table, primaryKey(inodeIds[i], blockIds[i]), lockMode);
+            if (block != null)
+                blocks.add(copy(block));
+        }
+        return blocks;
+    }
+
+    @Override
+    public boolean existsOnAnyStorage(long inodeId, long blockId, List<Integer> sids) throws StorageException {
+        for (int sid : sids) {
+            if (replicas.exists(inodeId, blockId, sid))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void prepare(Collection<BlockInfo> removed, Collection<BlockInfo> newed, Collection<BlockInfo> modified)
+            throws StorageException {
+        for (BlockInfo block : removed)
+            connector.delete(table, primaryKey(block));
+
+        for (BlockInfo block : newed)
+            connector.put(table, primaryKey(block), WriteMode.SAVE, copy(block));
+
+        for (BlockInfo block : modified)
+            connector.put(table, primaryKey(block), WriteMode.SAVE, copy(block));
+    }
+
+    @Override
+    public void deleteBlocksForFile(long inodeID) throws StorageException {
+        for (BlockInfo block : connector.scan(table, RowKey.of(inodeID), EntityContext.LockMode.READ_COMMITTED))
+            connector.delete(table, primaryKey(block));
+    }
+
+    private List<BlockInfo> readBlocksOf(List<Replica> replicasOfBlocks) throws StorageException {
+        long[] blockIds = new long[replicasOfBlocks.size()];
+        long[] inodeIds = new long[replicasOfBlocks.size()];
+        for (int i = 0; i < blockIds.length; i++) {
+            blockIds[i] = replicasOfBlocks.get(i).getBlockId();
+            inodeIds[i] = replicasOfBlocks.get(i).getInodeId();
+        }
+        return findByIds(blockIds, inodeIds);
+    }
+
+    @Override
+    public void clear() {
+        table.clear();
+    }
+
+    private static List<BlockInfo> copyAll(Collection<BlockInfo> blocks) {
+        List<BlockInfo> copies = new ArrayList<>(blocks.size());
+        for (BlockInfo block : blocks)
+            copies.add(copy(block));
+        return copies;
+    }
+
+    private static BlockInfo copy(BlockInfo block) {
+        return new BlockInfo(block.getBlockId(), block.getBlockIndex(), block.getInodeId(), block.getNumBytes(),
+                block.getGenerationStamp(), block.getBlockUCState(), block.getTimeStamp(),
+                block.getPrimaryNodeIndex(), block.getBlockRecoveryId(), block.getTruncateBlockNumBytes(),
+                block.getTruncateBlockGenerationStamp());
+    }
+}
@@ -0,0 +1,69 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.BlockLookUpDataAccess;
+import io.hops.metadata.hdfs.entity.BlockLookUp;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory version of the table that maps block IDs to the INodes they belong to.
+ */
+public class BlockLookUpMemoryDataAccess extends MemoryEntityDataAccess<BlockLookUp>
+        implements BlockLookUpDataAccess<BlockLookUp>, TablesDef.BlockLookUpTableDef {
+    private static final long NOT_FOUND_ROW = -1000L;
+
+    public BlockLookUpMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(BlockLookUp lookUp) {
+        return RowKey.of(lookUp.getBlockId());
+    }
+
+    @Override
+    protected BlockLookUp copy(BlockLookUp lookUp) {
+        return new BlockLookUp(lookUp.getBlockId(), lookUp.getInodeId());
+    }
+
+    @Override
+    public BlockLookUp findByBlockId(long blockId) throws StorageException {
+        return find(RowKey.of(blockId));
+    }
+
+    @Override
+    public long[] findINodeIdsByBlockIds(long[] blockIds) throws StorageException {
+        long[] inodeIds = new long[blockIds.length];
+        for (int i = 0; i < blockIds.length; i++) {
+            BlockLookUp lookUp = findByBlockId(blockIds[i]);
+            inodeIds[i] = lookUp == null ? NOT_FOUND_ROW : lookUp.getInodeId();
+        }
+        return inodeIds;
+    }
+
+    @Override
+    public void prepare(Collection<BlockLookUp> modified, Collection<BlockLookUp> removed)
+            throws StorageException {
+        prepare(removed, null, modified);
+    }
+
+    @Override
+    public Map<Long, List<Long>> getINodeIdsForBlockIds(long[] blockIds) throws StorageException {
+        Map<Long, List<Long>> inodeToBlockIds = new HashMap<>(blockIds.length);
+        for (long blockId : blockIds) {
+            BlockLookUp lookUp = findByBlockId(blockId);
+            if (lookUp != null)
+                inodeToBlockIds.computeIfAbsent(lookUp.getInodeId(), inodeId -> new ArrayList<>()).add(blockId);
+        }
+        return inodeToBlockIds;
+    }
+}
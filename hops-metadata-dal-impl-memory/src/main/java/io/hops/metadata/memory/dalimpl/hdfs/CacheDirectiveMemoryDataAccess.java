@@ -0,0 +1,60 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.CacheDirectiveDataAccess;
+import io.hops.metadata.hdfs.entity.CacheDirective;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+
+/**
+ * In-memory version of the cache directives table, keyed by directive ID.
+ */
+public class CacheDirectiveMemoryDataAccess extends MemoryEntityDataAccess<CacheDirective>
+        implements CacheDirectiveDataAccess<CacheDirective>, TablesDef.CacheDirectiveTableDef {
+
+    public CacheDirectiveMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(CacheDirective directive) {
+        return RowKey.of(directive.getId());
+    }
+
+    @Override
+    protected CacheDirective copy(CacheDirective directive) {
+        return new CacheDirective(directive.getId(), directive.getPath(), directive.getReplication(),
+                directive.getExpiryTime(), directive.getBytesNeeded(), directive.getBytesCached(),
+                directive.getFilesNeeded(), directive.getFilesCached(), directive.getPool());
+    }
+
+    @Override
+    public CacheDirective find(long key) throws StorageException {
+        return find(RowKey.of(key));
+    }
+
+    @Override
+    public Collection<CacheDirective> findAll() throws StorageException {
+        return scanAll(directive -> true);
+    }
+
+    @Override
+    public Collection<CacheDirective> findByPool(String pool) throws StorageException {
+        return scanAll(directive -> pool.equals(directive.getPool()));
+    }
+
+    @Override
+    public Collection<CacheDirective> findByIdAndPool(long id, String pool) throws StorageException {
+        return scanAll(directive -> directive.getId() >= id && (pool == null || pool.equals(directive.getPool())));
+    }
+
+    @Override
+    public void prepare(Collection<CacheDirective> removed, Collection<CacheDirective> modified)
+            throws StorageException {
+        prepare(removed, null, modified);
+    }
+}
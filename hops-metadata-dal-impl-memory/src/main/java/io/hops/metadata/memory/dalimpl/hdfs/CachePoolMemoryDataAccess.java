@@ -0,0 +1,47 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.CachePoolDataAccess;
+import io.hops.metadata.hdfs.entity.CachePool;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+
+/**
+ * In-memory version of the cache pools table, keyed by pool name.
+ */
+public class CachePoolMemoryDataAccess extends MemoryEntityDataAccess<CachePool>
+        implements CachePoolDataAccess<CachePool>, TablesDef.CachePoolTableDef {
+
+    public CachePoolMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(CachePool pool) {
+        return RowKey.of(pool.getPoolName());
+    }
+
+    @Override
+    public CachePool find(String key) throws StorageException {
+        return find(RowKey.of(key));
+    }
+
+    @Override
+    public Collection<CachePool> findAboveName(String key) throws StorageException {
+        return scanAll(pool -> pool.getPoolName().compareTo(key) > 0);
+    }
+
+    @Override
+    public Collection<CachePool> findAll() throws StorageException {
+        return scanAll(pool -> true);
+    }
+
+    @Override
+    public void prepare(Collection<CachePool> removed, Collection<CachePool> modified) throws StorageException {
+        prepare(removed, null, modified);
+    }
+}
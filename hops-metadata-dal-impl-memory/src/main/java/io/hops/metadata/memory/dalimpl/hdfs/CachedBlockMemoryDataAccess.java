@@ -0,0 +1,79 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.CachedBlockDataAccess;
+import io.hops.metadata.hdfs.entity.CachedBlock;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory version of the cached blocks table, keyed by (inodeId, blockId, datanodeId), with an index on the
+ * DataNode.
+ */
+public class CachedBlockMemoryDataAccess extends MemoryEntityDataAccess<CachedBlock>
+        implements CachedBlockDataAccess<CachedBlock>, TablesDef.CachedBlockTableDef {
+    private static final String DATANODE_INDEX = "datanode";
+
+    public CachedBlockMemoryDataAccess() {
+        super(new MemoryTable<CachedBlock>(TABLE_NAME)
+                .withIndex(DATANODE_INDEX, block -> RowKey.of(block.getDatanodeId())));
+    }
+
+    @Override
+    protected RowKey primaryKey(CachedBlock block) {
+        return RowKey.of(block.getInodeId(), block.getBlockId(), block.getDatanodeId());
+    }
+
+    @Override
+    public void prepare(Collection<CachedBlock> removed, Collection<CachedBlock> newed,
+                        Collection<CachedBlock> modified) throws StorageException {
+        super.prepare(removed, newed, modified);
+    }
+
+    @Override
+    public CachedBlock find(long blockId, long inodeId, String datanodeId) throws StorageException {
+        return find(RowKey.of(inodeId, blockId, datanodeId));
+    }
+
+    @Override
+    public List<CachedBlock> findCachedBlockById(long blockId) throws StorageException {
+        return scanAll(block -> block.getBlockId() == blockId);
+    }
+
+    @Override
+    public List<CachedBlock> findCachedBlockByINodeId(long inodeId) throws StorageException {
+        return scan(RowKey.of(inodeId));
+    }
+
+    @Override
+    public List<CachedBlock> findCachedBlockByINodeIds(long[] inodeIds) throws StorageException {
+        return scanEach(inodeIds);
+    }
+
+    @Override
+    public List<CachedBlock> findByIds(long[] blockIds, long[] inodeIds, String datanodeId) throws StorageException {
+        List<CachedBlock> blocks = new ArrayList<>();
+        for (int i = 0; i < blockIds.length; i++) {
+            CachedBlock block = find(blockIds[i], inodeIds[i], datanodeId);
+            if (block != null)
+                blocks.add(block);
+        }
+        return blocks;
+    }
+
+    @Override
+    public List<CachedBlock> findCachedBlockByDatanodeId(String datanodeId) throws StorageException {
+        return scanIndex(DATANODE_INDEX, RowKey.of(datanodeId));
+    }
+
+    @Override
+    public List<CachedBlock> findAll() throws StorageException {
+        return scanAll(block -> true);
+    }
+}
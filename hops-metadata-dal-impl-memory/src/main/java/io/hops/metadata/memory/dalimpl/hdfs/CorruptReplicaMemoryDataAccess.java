@@ -0,0 +1,80 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.CorruptReplicaDataAccess;
+import io.hops.metadata.hdfs.entity.CorruptReplica;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-memory version of the corrupt replicas table, keyed by (inodeId, blockId, storageId) like the NDB table.
+ */
+public class CorruptReplicaMemoryDataAccess extends MemoryEntityDataAccess<CorruptReplica>
+        implements CorruptReplicaDataAccess<CorruptReplica>, TablesDef.CorruptReplicaTableDef {
+
+    public CorruptReplicaMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(CorruptReplica replica) {
+        return RowKey.of(replica.getInodeId(), replica.getBlockId(), replica.getStorageId());
+    }
+
+    @Override
+    protected CorruptReplica copy(CorruptReplica replica) {
+        return new CorruptReplica(replica.getStorageId(), replica.getBlockId(), replica.getInodeId(),
+                replica.getReason());
+    }
+
+    @Override
+    public int countAll() throws StorageException {
+        return count();
+    }
+
+    @Override
+    public int countAllUniqueBlk() throws StorageException {
+        Set<Long> blockIds = new HashSet<>();
+        for (CorruptReplica replica : table.values())
+            blockIds.add(replica.getBlockId());
+        return blockIds.size();
+    }
+
+    @Override
+    public CorruptReplica findByPk(long blockId, int sid, int inodeId) throws StorageException {
+        return find(RowKey.of((long) inodeId, blockId, sid));
+    }
+
+    @Override
+    public List<CorruptReplica> findAll() throws StorageException {
+        return scanAll(replica -> true);
+    }
+
+    @Override
+    public List<CorruptReplica> findByBlockId(long blockId, long inodeId) throws StorageException {
+        return scan(RowKey.of(inodeId, blockId));
+    }
+
+    @Override
+    public List<CorruptReplica> findByINodeId(long inodeId) throws StorageException {
+        return scan(RowKey.of(inodeId));
+    }
+
+    @Override
+    public List<CorruptReplica> findByINodeIds(long[] inodeIds) throws StorageException {
+        return scanEach(inodeIds);
+    }
+
+    @Override
+    public void prepare(Collection<CorruptReplica> removed, Collection<CorruptReplica> newed)
+            throws StorageException {
+        prepare(removed, newed, null);
+    }
+}
@@ -0,0 +1,68 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.dal.DBFileDataAccess;
+import io.hops.metadata.hdfs.entity.FileInodeData;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+/**
+ * Base class of the in-memory versions of the tables that store the data of small files, keyed by INode ID. Each
+ * table accepts files of a single storage type, and reports the size of the data column of its NDB counterpart.
+ */
+abstract class DBFileMemoryDataAccess extends MemoryEntityDataAccess<FileInodeData>
+        implements DBFileDataAccess<FileInodeData> {
+    private final FileInodeData.Type type;
+
+    private final int length;
+
+    DBFileMemoryDataAccess(String tableName, FileInodeData.Type type, int length) {
+        super(new MemoryTable<>(tableName));
+        this.type = type;
+        this.length = length;
+    }
+
+    @Override
+    protected RowKey primaryKey(FileInodeData data) {
+        return RowKey.of(data.getInodeId());
+    }
+
+    @Override
+    protected FileInodeData copy(FileInodeData data) {
+        return new FileInodeData(data.getInodeId(), data.getInodeData().clone(), data.getSize(),
+                data.getDBFileStorageType());
+    }
+
+    @Override
+    public void add(FileInodeData data) throws StorageException {
+        checkType(data);
+        save(data);
+    }
+
+    @Override
+    public FileInodeData get(long inodeId) throws StorageException {
+        return find(RowKey.of(inodeId));
+    }
+
+    @Override
+    public void delete(FileInodeData data) throws StorageException {
+        checkType(data);
+        super.delete(data);
+    }
+
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    @Override
+    public int getLength() throws StorageException {
+        return length;
+    }
+
+    private void checkType(FileInodeData data) {
+        if (data.getDBFileStorageType() != type)
+            throw new IllegalArgumentException("Expecting " + type + " object. Got: " + data.getDBFileStorageType());
+    }
+}
@@ -0,0 +1,47 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.DataNodeDataAccess;
+import io.hops.metadata.hdfs.entity.DataNodeMeta;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.List;
+
+/**
+ * In-memory version of the table in which DataNodes publish their addresses, keyed by DataNode UUID.
+ */
+public class DataNodeMemoryDataAccess extends MemoryEntityDataAccess<DataNodeMeta>
+        implements DataNodeDataAccess<DataNodeMeta>, TablesDef.DataNodesTableDef {
+
+    public DataNodeMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(DataNodeMeta dataNode) {
+        return RowKey.of(dataNode.getDatanodeUuid());
+    }
+
+    @Override
+    public DataNodeMeta getDataNode(String uuid) throws StorageException {
+        return find(RowKey.of(uuid));
+    }
+
+    @Override
+    public void removeDataNode(String uuid) throws StorageException {
+        connector.delete(table, RowKey.of(uuid));
+    }
+
+    @Override
+    public void addDataNode(DataNodeMeta dataNode) throws StorageException {
+        save(dataNode);
+    }
+
+    @Override
+    public List<DataNodeMeta> getAllDataNodes() throws StorageException {
+        return scanAll(dataNode -> true);
+    }
+}
@@ -0,0 +1,56 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.DatanodeStorageDataAccess;
+import io.hops.metadata.hdfs.entity.DatanodeStorage;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.List;
+
+/**
+ * In-memory version of the DataNode storages table. Rows are keyed by (datanodeUuid, storageId) rather than the
+ * (storageId, datanodeUuid) of the NDB table, so that the storages of a DataNode can be found with a prefix scan.
+ */
+public class DatanodeStorageMemoryDataAccess extends MemoryEntityDataAccess<DatanodeStorage>
+        implements DatanodeStorageDataAccess<DatanodeStorage>, TablesDef.DatanodeStoragesTableDef {
+
+    public DatanodeStorageMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(DatanodeStorage storage) {
+        return RowKey.of(storage.getDatanodeUuid(), storage.getStorageId());
+    }
+
+    @Override
+    public DatanodeStorage getDatanodeStorage(String storageId, String datanodeUuid) throws StorageException {
+        return find(RowKey.of(datanodeUuid, storageId));
+    }
+
+    @Override
+    public List<DatanodeStorage> getDatanodeStorages(String datanodeUuid) throws StorageException {
+        return scan(RowKey.of(datanodeUuid));
+    }
+
+    @Override
+    public void removeDatanodeStorage(String storageId, String datanodeUuid) throws StorageException {
+        connector.delete(table, RowKey.of(datanodeUuid, storageId));
+    }
+
+    @Override
+    public int removeDatanodeStorages(String datanodeUuid) throws StorageException {
+        List<DatanodeStorage> storages = getDatanodeStorages(datanodeUuid);
+        for (DatanodeStorage storage : storages)
+            delete(storage);
+        return storages.size();
+    }
+
+    @Override
+    public void addDatanodeStorage(DatanodeStorage storage) throws StorageException {
+        save(storage);
+    }
+}
@@ -0,0 +1,69 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.DirectoryWithQuotaFeatureDataAccess;
+import io.hops.metadata.hdfs.entity.DirectoryWithQuotaFeature;
+import io.hops.metadata.hdfs.entity.INodeCandidatePrimaryKey;
+import io.hops.metadata.hdfs.entity.QuotaUpdate;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory version of the table of directory quotas and usage, keyed by INode ID.
+ */
+public class DirectoryWithQuotaFeatureMemoryDataAccess extends MemoryEntityDataAccess<DirectoryWithQuotaFeature>
+        implements DirectoryWithQuotaFeatureDataAccess<DirectoryWithQuotaFeature>,
+        TablesDef.DirectoryWithQuotaFeatureTableDef {
+
+    public DirectoryWithQuotaFeatureMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(DirectoryWithQuotaFeature feature) {
+        return RowKey.of(feature.getInodeId());
+    }
+
+    @Override
+    protected DirectoryWithQuotaFeature copy(DirectoryWithQuotaFeature feature) {
+        return new DirectoryWithQuotaFeature(feature.getInodeId(), feature.getNsQuota(), feature.getNsUsed(),
+                feature.getSSQuota(), feature.getSSUsed(), copy(feature.getTypeQuota()),
+                copy(feature.getTypeUsed()), feature.getDirectoryCount(), feature.getSymlinkCount(),
+                feature.getLength());
+    }
+
+    private static Map<QuotaUpdate.StorageType, Long> copy(Map<QuotaUpdate.StorageType, Long> map) {
+        return map == null ? null : new HashMap<>(map);
+    }
+
+    @Override
+    public DirectoryWithQuotaFeature findAttributesByPk(Long inodeId) throws StorageException {
+        return find(RowKey.of(inodeId));
+    }
+
+    @Override
+    public Collection<DirectoryWithQuotaFeature> findAttributesByPkList(List<INodeCandidatePrimaryKey> inodePks)
+            throws StorageException {
+        List<DirectoryWithQuotaFeature> features = new ArrayList<>();
+        for (INodeCandidatePrimaryKey pk : inodePks) {
+            DirectoryWithQuotaFeature feature = findAttributesByPk(pk.getInodeId());
+            if (feature != null)
+                features.add(feature);
+        }
+        return features;
+    }
+
+    @Override
+    public void prepare(Collection<DirectoryWithQuotaFeature> modified, Collection<DirectoryWithQuotaFeature> removed)
+            throws StorageException {
+        prepare(removed, null, modified);
+    }
+}
@@ -0,0 +1,244 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.EncodingStatusDataAccess;
+import io.hops.metadata.hdfs.entity.EncodingStatus;
+import io.hops.metadata.hdfs.entity.EncodingStatus.ParityStatus;
+import io.hops.metadata.hdfs.entity.EncodingStatus.Status;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In-memory version of the erasure coding status table, keyed by INode ID, with an index on the parity INode.
+ *
+ * The status queries of the NDB implementation go through the MySQL server, outside of the current transaction, so
+ * here they only see committed rows too.
+ */
+public class EncodingStatusMemoryDataAccess extends MemoryEntityDataAccess<EncodingStatus>
+        implements EncodingStatusDataAccess<EncodingStatus>, TablesDef.EncodingStatusTableDef {
+    private static final String PARITY_INDEX = "parity";
+
+    private static final Comparator<EncodingStatus> BY_STATUS_TIME =
+            nullsFirst(EncodingStatus::getStatusModificationTime);
+
+    private static final Comparator<EncodingStatus> BY_PARITY_STATUS_TIME =
+            nullsFirst(EncodingStatus::getParityStatusModificationTime);
+
+    /**
+     * Most lost blocks first, preferring source files over parity files, then the earliest failures first.
+     */
+    private static final Comparator<EncodingStatus> REPAIR_PRIORITY =
+            Comparator.comparingInt((EncodingStatus status) -> lostBlocks(status) + lostParityBlocks(status))
+                    .thenComparingInt(EncodingStatusMemoryDataAccess::lostBlocks)
+                    .reversed()
+                    .thenComparing(BY_STATUS_TIME);
+
+    public EncodingStatusMemoryDataAccess() {
+        super(new MemoryTable<EncodingStatus>(TABLE_NAME).withIndex(PARITY_INDEX,
+                status -> status.getParityInodeId() == null ? RowKey.of() : RowKey.of(status.getParityInodeId())));
+    }
+
+    @Override
+    protected RowKey primaryKey(EncodingStatus status) {
+        return RowKey.of(status.getInodeId());
+    }
+
+    @Override
+    protected EncodingStatus copy(EncodingStatus status) {
+        return new EncodingStatus(status);
+    }
+
+    @Override
+    public void add(EncodingStatus status) throws StorageException {
+        insert(status);
+    }
+
+    @Override
+    public void update(EncodingStatus status) throws StorageException {
+        super.update(status);
+    }
+
+    @Override
+    public void delete(EncodingStatus status) throws StorageException {
+        super.delete(status);
+    }
+
+    @Override
+    public EncodingStatus findByInodeId(long inodeId) throws StorageException {
+        return find(RowKey.of(inodeId));
+    }
+
+    @Override
+    public Collection<EncodingStatus> findByInodeIds(Collection<Long> inodeIds) throws StorageException {
+        List<EncodingStatus> statuses = new ArrayList<>(inodeIds.size());
+        for (long inodeId : inodeIds) {
+            EncodingStatus status = findByInodeId(inodeId);
+            if (status != null)
+                statuses.add(status);
+        }
+        return statuses;
+    }
+
+    @Override
+    public EncodingStatus findByParityInodeId(long inodeId) throws StorageException {
+        List<EncodingStatus> statuses = scanIndex(PARITY_INDEX, RowKey.of(inodeId));
+        return statuses.isEmpty() ? null : statuses.get(0);
+    }
+
+    @Override
+    public Collection<EncodingStatus> findByParityInodeIds(List<Long> inodeIds) throws StorageException {
+        List<EncodingStatus> statuses = new ArrayList<>();
+        for (long inodeId : inodeIds)
+            statuses.addAll(scanIndex(PARITY_INDEX, RowKey.of(inodeId)));
+        return statuses.isEmpty() ? null : statuses;
+    }
+
+    @Override
+    public Collection<EncodingStatus> findRequestedEncodings(int limit) throws StorageException {
+        return query(status -> status.getStatus() == Status.ENCODING_REQUESTED ||
+                status.getStatus() == Status.COPY_ENCODING_REQUESTED, BY_STATUS_TIME, limit);
+    }
+
+    @Override
+    public int countRequestedEncodings() throws StorageException {
+        return countWithStatus(Status.ENCODING_REQUESTED);
+    }
+
+    @Override
+    public Collection<EncodingStatus> findRequestedRepairs(int limit) throws StorageException {
+        return query(status -> status.getStatus() == Status.REPAIR_REQUESTED, REPAIR_PRIORITY, limit);
+    }
+
+    @Override
+    public int countRequestedRepairs() throws StorageException {
+        return countWithStatus(Status.REPAIR_REQUESTED);
+    }
+
+    @Override
+    public Collection<EncodingStatus> findActiveEncodings() throws StorageException {
+        return findWithStatus(Status.ENCODING_ACTIVE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int countActiveEncodings() throws StorageException {
+        return countWithStatus(Status.ENCODING_ACTIVE);
+    }
+
+    @Override
+    public Collection<EncodingStatus> findEncoded(int limit) throws StorageException {
+        return findWithStatus(Status.ENCODED, limit);
+    }
+
+    @Override
+    public int countEncoded() throws StorageException {
+        return countWithStatus(Status.ENCODED);
+    }
+
+    @Override
+    public Collection<EncodingStatus> findActiveRepairs() throws StorageException {
+        return findWithStatus(Status.REPAIR_ACTIVE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int countActiveRepairs() throws StorageException {
+        return countWithStatus(Status.REPAIR_ACTIVE);
+    }
+
+    @Override
+    public Collection<EncodingStatus> findRequestedParityRepairs(int limit) throws StorageException {
+        return query(status -> status.getParityStatus() == ParityStatus.REPAIR_REQUESTED &&
+                status.getStatus() != Status.REPAIR_ACTIVE && status.getStatus() != Status.REPAIR_FAILED,
+                BY_PARITY_STATUS_TIME, limit);
+    }
+
+    @Override
+    public int countRequestedParityRepairs() throws StorageException {
+        return countWithParityStatus(ParityStatus.REPAIR_REQUESTED);
+    }
+
+    @Override
+    public Collection<EncodingStatus> findActiveParityRepairs() throws StorageException {
+        return query(status -> status.getParityStatus() == ParityStatus.REPAIR_ACTIVE, BY_PARITY_STATUS_TIME,
+                Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int countActiveParityRepairs() throws StorageException {
+        return countWithParityStatus(ParityStatus.REPAIR_ACTIVE);
+    }
+
+    @Override
+    public void setLostBlockCount(int n) {
+    }
+
+    @Override
+    public int getLostBlockCount() {
+        return 0;
+    }
+
+    @Override
+    public void setLostParityBlockCount(int n) {
+    }
+
+    @Override
+    public int getLostParityBlockCount() {
+        return 0;
+    }
+
+    @Override
+    public Collection<EncodingStatus> findDeleted(int limit) throws StorageException {
+        return findWithStatus(Status.DELETED, limit);
+    }
+
+    @Override
+    public Collection<EncodingStatus> findRevoked() throws StorageException {
+        return scanAll(status -> Boolean.TRUE.equals(status.getRevoked()));
+    }
+
+    private List<EncodingStatus> findWithStatus(Status findStatus, int limit) {
+        return query(status -> status.getStatus() == findStatus, BY_STATUS_TIME, limit);
+    }
+
+    private int countWithStatus(Status findStatus) {
+        return count(status -> status.getStatus() == findStatus);
+    }
+
+    private int countWithParityStatus(ParityStatus findStatus) {
+        return count(status -> status.getParityStatus() == findStatus);
+    }
+
+    /**
+     * Return up to {@code limit} committed rows that satisfy the given filter, in the given order.
+     */
+    private List<EncodingStatus> query(Predicate<EncodingStatus> filter, Comparator<EncodingStatus> order,
+                                       int limit) {
+        List<EncodingStatus> statuses = new ArrayList<>();
+        for (EncodingStatus status : table.values()) {
+            if (filter.test(status))
+                statuses.add(copy(status));
+        }
+        statuses.sort(order);
+        return statuses.size() > limit ? new ArrayList<>(statuses.subList(0, limit)) : statuses;
+    }
+
+    private static Comparator<EncodingStatus> nullsFirst(Function<EncodingStatus, Long> time) {
+        return Comparator.comparing(time, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+
+    private static int lostBlocks(EncodingStatus status) {
+        return status.getLostBlocks() == null ? 0 : status.getLostBlocks();
+    }
+
+    private static int lostParityBlocks(EncodingStatus status) {
+        return status.getLostParityBlocks() == null ? 0 : status.getLostParityBlocks();
+    }
+}
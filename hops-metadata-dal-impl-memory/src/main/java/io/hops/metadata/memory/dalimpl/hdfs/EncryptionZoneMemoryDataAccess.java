@@ -0,0 +1,56 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.EncryptionZoneDataAccess;
+import io.hops.metadata.hdfs.entity.EncryptionZone;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory version of the encryption zones table, keyed by the INode ID of the zone root.
+ */
+public class EncryptionZoneMemoryDataAccess extends MemoryEntityDataAccess<EncryptionZone>
+        implements EncryptionZoneDataAccess<EncryptionZone>, TablesDef.EncryptionZones {
+
+    public EncryptionZoneMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(EncryptionZone zone) {
+        return RowKey.of(zone.getInodeId());
+    }
+
+    @Override
+    public List<EncryptionZone> getAll() throws StorageException {
+        return scanAll(zone -> true);
+    }
+
+    @Override
+    public List<EncryptionZone> getEncryptionZoneByInodeIdBatch(List<Long> inodeIds) throws StorageException {
+        List<EncryptionZone> zones = new ArrayList<>(inodeIds.size());
+        for (long inodeId : inodeIds) {
+            EncryptionZone zone = getEncryptionZoneByInodeId(inodeId);
+            if (zone != null)
+                zones.add(zone);
+        }
+        return zones;
+    }
+
+    @Override
+    public EncryptionZone getEncryptionZoneByInodeId(long inodeId) throws StorageException {
+        return find(RowKey.of(inodeId));
+    }
+
+    @Override
+    public void prepare(Collection<EncryptionZone> removed, Collection<EncryptionZone> newed,
+                        Collection<EncryptionZone> modified) throws StorageException {
+        super.prepare(removed, newed, modified);
+    }
+}
@@ -0,0 +1,87 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.ExcessReplicaDataAccess;
+import io.hops.metadata.hdfs.entity.ExcessReplica;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-memory version of the excess replicas table, keyed by (inodeId, blockId, storageId) like the NDB table, with an
+ * index on the storage.
+ */
+public class ExcessReplicaMemoryDataAccess extends MemoryEntityDataAccess<ExcessReplica>
+        implements ExcessReplicaDataAccess<ExcessReplica>, TablesDef.ExcessReplicaTableDef {
+    private static final String STORAGE_INDEX = "storage";
+
+    public ExcessReplicaMemoryDataAccess() {
+        super(new MemoryTable<ExcessReplica>(TABLE_NAME)
+                .withIndex(STORAGE_INDEX, replica -> RowKey.of(replica.getStorageId())));
+    }
+
+    @Override
+    protected RowKey primaryKey(ExcessReplica replica) {
+        return RowKey.of(replica.getInodeId(), replica.getBlockId(), replica.getStorageId());
+    }
+
+    @Override
+    protected ExcessReplica copy(ExcessReplica replica) {
+        return new ExcessReplica(replica.getStorageId(), replica.getBlockId(), replica.getInodeId());
+    }
+
+    @Override
+    public int countAll() throws StorageException {
+        return count();
+    }
+
+    @Override
+    public List<ExcessReplica> findExcessReplicaBySid(int sid) throws StorageException {
+        return scanIndex(STORAGE_INDEX, RowKey.of(sid));
+    }
+
+    @Override
+    public List<ExcessReplica> findExcessReplicaByBlockId(long bId, long inodeId) throws StorageException {
+        return scan(RowKey.of(inodeId, bId));
+    }
+
+    @Override
+    public List<ExcessReplica> findExcessReplicaByINodeId(long inodeId) throws StorageException {
+        return scan(RowKey.of(inodeId));
+    }
+
+    @Override
+    public List<ExcessReplica> findExcessReplicaByINodeIds(long[] inodeIds) throws StorageException {
+        return scanEach(inodeIds);
+    }
+
+    @Override
+    public ExcessReplica findByPK(long blockId, int sid, long inodeId) throws StorageException {
+        return find(RowKey.of(inodeId, blockId, sid));
+    }
+
+    @Override
+    public void prepare(Collection<ExcessReplica> removed, Collection<ExcessReplica> newed,
+                        Collection<ExcessReplica> modified) throws StorageException {
+        super.prepare(removed, newed, modified);
+    }
+
+    @Override
+    public void removeAll() throws StorageException {
+        removeAll(replica -> true);
+    }
+
+    @Override
+    public int countAllUniqueBlk() throws StorageException {
+        Set<Long> blockIds = new HashSet<>();
+        for (ExcessReplica replica : table.values())
+            blockIds.add(replica.getBlockId());
+        return blockIds.size();
+    }
+}
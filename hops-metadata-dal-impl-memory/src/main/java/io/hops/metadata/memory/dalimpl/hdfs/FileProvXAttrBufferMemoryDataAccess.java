@@ -0,0 +1,46 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.FileProvXAttrBufferDataAccess;
+import io.hops.metadata.hdfs.entity.FileProvXAttrBufferEntry;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+
+/**
+ * In-memory version of the buffer of provenance extended attributes. The NDB table splits each value into several
+ * rows, whereas here each (inodeId, namespace, name, inodeLogicalTime) is a single row.
+ */
+public class FileProvXAttrBufferMemoryDataAccess extends MemoryEntityDataAccess<FileProvXAttrBufferEntry>
+        implements FileProvXAttrBufferDataAccess<FileProvXAttrBufferEntry>, TablesDef.FileProvXAttrBufferTableDef {
+
+    public FileProvXAttrBufferMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(FileProvXAttrBufferEntry entry) {
+        return RowKey.of(entry.getInodeId(), entry.getNamespace(), entry.getName(), entry.getINodeLogicalTime());
+    }
+
+    @Override
+    protected FileProvXAttrBufferEntry copy(FileProvXAttrBufferEntry entry) {
+        byte[] value = entry.getValue();
+        return new FileProvXAttrBufferEntry(entry.getInodeId(), entry.getNamespace(), entry.getName(),
+                entry.getINodeLogicalTime(), value == null ? null : value.clone());
+    }
+
+    @Override
+    public void add(FileProvXAttrBufferEntry entry) throws StorageException {
+        save(entry);
+    }
+
+    @Override
+    public void addAll(Collection<FileProvXAttrBufferEntry> entries) throws StorageException {
+        for (FileProvXAttrBufferEntry entry : entries)
+            save(entry);
+    }
+}
@@ -0,0 +1,39 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.FileProvenanceDataAccess;
+import io.hops.metadata.hdfs.entity.FileProvenanceEntry;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+
+/**
+ * In-memory version of the file provenance log, keyed like the NDB table. The log is only ever appended to.
+ */
+public class FileProvenanceMemoryDataAccess extends MemoryEntityDataAccess<FileProvenanceEntry>
+        implements FileProvenanceDataAccess<FileProvenanceEntry>, TablesDef.FileProvenanceTableDef {
+
+    public FileProvenanceMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(FileProvenanceEntry logEntry) {
+        return RowKey.of(logEntry.getInodeId(), logEntry.getOperation(), logEntry.getLogicalTime(),
+                logEntry.getTimestamp(), logEntry.getAppId(), logEntry.getUserId(), logEntry.getTieBreaker());
+    }
+
+    @Override
+    public void add(FileProvenanceEntry logEntry) throws StorageException {
+        save(logEntry);
+    }
+
+    @Override
+    public void addAll(Collection<FileProvenanceEntry> logEntries) throws StorageException {
+        for (FileProvenanceEntry logEntry : logEntries)
+            save(logEntry);
+    }
+}
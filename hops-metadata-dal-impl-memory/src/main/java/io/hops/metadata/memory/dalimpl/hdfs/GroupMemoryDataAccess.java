@@ -0,0 +1,64 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.GroupDataAccess;
+import io.hops.metadata.hdfs.entity.Group;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory version of the groups table, keyed by group ID. IDs are assigned from a counter, like the auto-increment
+ * column of the NDB table.
+ */
+public class GroupMemoryDataAccess extends MemoryEntityDataAccess<Group>
+        implements GroupDataAccess<Group>, TablesDef.GroupsTableDef {
+    private static final String NAME_INDEX = "name";
+
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    public GroupMemoryDataAccess() {
+        super(new MemoryTable<Group>(TABLE_NAME).withIndex(NAME_INDEX, group -> RowKey.of(group.getName())));
+    }
+
+    @Override
+    protected RowKey primaryKey(Group group) {
+        return RowKey.of(group.getId());
+    }
+
+    @Override
+    public Group getGroup(int groupId) throws StorageException {
+        return find(RowKey.of(groupId));
+    }
+
+    @Override
+    public Group getGroup(String groupName) throws StorageException {
+        List<Group> groups = scanIndex(NAME_INDEX, RowKey.of(groupName));
+        return groups.size() == 1 ? groups.get(0) : null;
+    }
+
+    @Override
+    public Group addGroup(String groupName) throws StorageException {
+        Group group = getGroup(groupName);
+        if (group == null) {
+            group = new Group(nextId.getAndIncrement(), groupName);
+            insert(group);
+        }
+        return group;
+    }
+
+    @Override
+    public void removeGroup(int groupId) throws StorageException {
+        connector.delete(table, RowKey.of(groupId));
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        nextId.set(1);
+    }
+}
@@ -0,0 +1,48 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.HashBucketDataAccess;
+import io.hops.metadata.hdfs.entity.HashBucket;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+
+/**
+ * In-memory version of the table of block report hash buckets, keyed by (storageId, bucketId) like the NDB table.
+ */
+public class HashBucketMemoryDataAccess extends MemoryEntityDataAccess<HashBucket>
+        implements HashBucketDataAccess<HashBucket>, TablesDef.HashBucketsTableDef {
+
+    public HashBucketMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(HashBucket bucket) {
+        return RowKey.of(bucket.getStorageId(), bucket.getBucketId());
+    }
+
+    @Override
+    protected HashBucket copy(HashBucket bucket) {
+        byte[] hash = bucket.getHash();
+        return new HashBucket(bucket.getStorageId(), bucket.getBucketId(), hash == null ? null : hash.clone());
+    }
+
+    @Override
+    public HashBucket findBucket(int storageId, int bucketId) throws StorageException {
+        return find(RowKey.of(storageId, bucketId));
+    }
+
+    @Override
+    public Collection<HashBucket> findBucketsByStorageId(int storageId) throws StorageException {
+        return scan(RowKey.of(storageId));
+    }
+
+    @Override
+    public void prepare(Collection<HashBucket> removed, Collection<HashBucket> modified) throws StorageException {
+        prepare(removed, null, modified);
+    }
+}
@@ -0,0 +1,330 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.INodeDataAccess;
+import io.hops.metadata.hdfs.entity.INode;
+import io.hops.metadata.hdfs.entity.INodeIdentifier;
+import io.hops.metadata.hdfs.entity.INodeMetadataLogEntry;
+import io.hops.metadata.hdfs.entity.ProjectedINode;
+import io.hops.metadata.memory.MemoryConnector;
+import io.hops.metadata.memory.MemoryConnector.WriteMode;
+import io.hops.metadata.memory.MemoryDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+import io.hops.transaction.context.EntityContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory version of the INode table.
+ *
+ * Rows are keyed by (parentId, partitionId, name) rather than NDB's (partitionId, parentId, name). The two keys
+ * identify the same rows, but this ordering lets both the "all children of a directory" and the "children of a
+ * directory in one partition" scans be answered with a single prefix scan. Lookups by INode ID go through a
+ * secondary index, like the ID index of the NDB table.
+ */
+public class INodeMemoryDataAccess implements INodeDataAccess<INode>, MemoryDataAccess, TablesDef.INodeTableDef {
+    private static final String ID_INDEX = "id";
+
+    private final MemoryConnector connector = MemoryConnector.getInstance();
+
+    private final MemoryTable<INode> table =
+            new MemoryTable<INode>(TABLE_NAME).withIndex(ID_INDEX, inode -> RowKey.of(inode.getId()));
+
+    private static RowKey primaryKey(String name, long parentId, long partitionId) {
+        return RowKey.of(parentId, partitionId, name);
+    }
+
+    private static RowKey primaryKey(INode inode) {
+        return primaryKey(inode.getName(), inode.getParentId(), inode.getPartitionId());
+    }
+
+    @Override
+    public INode findInodeByIdFTIS(long inodeId) throws StorageException {
+        List<INode> results = findById(inodeId, connector.obtainSession().getLockMode());
+        if (results.size() > 1)
+            throw new StorageException("Fetching inode by id:" + inodeId + ". Only one record was expected. Found: " +
+                    results.size());
+        return results.isEmpty() ? null : copy(results.get(0));
+    }
+
+    private List<INode> findById(long inodeId, EntityContext.LockMode lockMode) throws StorageException {
+        return connector.scanIndex(table, ID_INDEX, RowKey.of(inodeId), lockMode);
+    }
+
+    @Override
+    public Collection<INode> findInodesByIdsFTIS(long[] inodeIds) throws StorageException {
+        EntityContext.LockMode lockMode = connector.obtainSession().getLockMode();
+        List<INode> inodes = new ArrayList<>();
+        for (long inodeId : inodeIds) {
+            for (INode inode : findById(inodeId, lockMode))
+                inodes.add(copy(inode));
+        }
+        return inodes.isEmpty() ? null : inodes;
+    }
+
+    @Override
+    public List<INode> findInodesByParentIdFTIS(long parentId) throws StorageException {
+        return copyAll(scanChildren(RowKey.of(parentId), connector.obtainSession().getLockMode()));
+    }
+
+    @Override
+    public List<INode> findInodesByParentIdAndPartitionIdPPIS(long parentId, long partitionId)
+            throws StorageException {
+        return copyAll(scanChildren(RowKey.of(parentId, partitionId), connector.obtainSession().getLockMode()));
+    }
+
+    @Override
+    public List<INode> findInodesByParentIdAndPartitionIdPPIS(long parentId, long partitionId, String startAfter,
+                                                              int limit) throws StorageException {
+        RowKey prefix = RowKey.of(parentId, partitionId);
+        RowKey after = startAfter.isEmpty() ? prefix : primaryKey(startAfter, parentId, partitionId);
+        return copyAll(connector.scan(table, prefix, after, limit, connector.obtainSession().getLockMode()));
+    }
+
+    @Override
+    public List<ProjectedINode> findInodesPPISTx(long parentId, long partitionId, EntityContext.LockMode lock)
+            throws StorageException {
+        return project(scanChildren(RowKey.of(parentId, partitionId), lock));
+    }
+
+    @Override
+    public List<ProjectedINode> findInodesFTISTx(long parentId, EntityContext.LockMode lock)
+            throws StorageException {
+        return project(scanChildren(RowKey.of(parentId), lock));
+    }
+
+    @Override
+    public List<ProjectedINode> findInodesPPISTx(long[] parentIds, EntityContext.LockMode lock)
+            throws StorageException {
+        List<ProjectedINode> children = new ArrayList<>();
+        for (long parentId : parentIds) {
+            children.addAll(findInodesPPISTx(parentId, parentId, lock));
+        }
+        return children;
+    }
+
+    @Override
+    public List<ProjectedINode> findInodesFTISTx(long[] parentIds, EntityContext.LockMode lock)
+            throws StorageException {
+        List<ProjectedINode> children = new ArrayList<>();
+        for (long parentId : parentIds) {
+            children.addAll(findInodesFTISTx(parentId, lock));
+        }
+        return children;
+    }
+
+    private List<INode> scanChildren(RowKey prefix, EntityContext.LockMode lockMode) throws StorageException {
+        return connector.scan(table, prefix, lockMode);
+    }
+
+    @Override
+    public INode findInodeByNameParentIdAndPartitionIdPK(String name, long parentId, long partitionId)
+            throws StorageException {
+        INode inode = connector.read(table, primaryKey(name, parentId, partitionId));
+        return inode == null ? null : copy(inode);
+    }
+
+    @Override
+    public List<INode> getINodesPkBatched(String[] names, long[] parentIds, long[] partitionIds)
+            throws StorageException {
+        return readBatch(names, parentIds, partitionIds, connector.obtainSession().getLockMode());
+    }
+
+    @Override
+    public List<INode> lockInodesUsingPkBatchTx(String[] names, long[] parentIds, long[] partitionIds,
+                                                EntityContext.LockMode lock) throws StorageException {
+        return readBatch(names, parentIds, partitionIds, lock);
+    }
+
+    private List<INode> readBatch(String[] names, long[] parentIds, long[] partitionIds,
+                                  EntityContext.LockMode lockMode) throws StorageException {
+        List<INode> inodes = new ArrayList<>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            INode inode = connector.read(table, primaryKey(names[i], parentIds[i], partitionIds[i]), lockMode);
+            if (inode != null)
+                inodes.add(copy(inode));
+        }
+        return inodes;
+    }
+
+    @Override
+    public List<INodeIdentifier> getAllINodeFiles(long startId, long endId) throws StorageException {
+        List<INodeIdentifier> files = new ArrayList<>();
+        for (INode inode : table.values()) {
+            if (!inode.isDirectory() && inode.getId() >= startId && inode.getId() < endId)
+                files.add(new INodeIdentifier(inode.getId(), inode.getParentId(), inode.getName(),
+                        inode.getPartitionId()));
+        }
+        return files;
+    }
+
+    @Override
+    public boolean haveFilesWithIdsGreaterThan(long id) throws StorageException {
+        for (INode inode : table.values()) {
+            if (inode.getHeader() != 0 && inode.getId() > id)
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean haveFilesWithIdsBetween(long startId, long endId) throws StorageException {
+        for (INode inode : table.values()) {
+            if (inode.getHeader() != 0 && inode.getId() >= startId && inode.getId() < endId)
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long getMinFileId() throws StorageException {
+        long min = Long.MAX_VALUE;
+        for (INode inode : table.values()) {
+            if (inode.getHeader() != 0)
+                min = Math.min(min, inode.getId());
+        }
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    @Override
+    public long getMaxFileId() throws StorageException {
+        long max = 0;
+        for (INode inode : table.values()) {
+            if (inode.getHeader() != 0)
+                max = Math.max(max, inode.getId());
+        }
+        return max;
+    }
+
+    @Override
+    public int countAllFiles() throws StorageException {
+        int count = 0;
+        for (INode inode : table.values()) {
+            if (inode.getHeader() != 0)
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void prepare(Collection<INode> removed, Collection<INode> newed, Collection<INode> modified)
+            throws StorageException {
+        for (INode inode : removed)
+            connector.delete(table, primaryKey(inode));
+
+        for (INode inode : newed)
+            connector.put(table, primaryKey(inode), WriteMode.SAVE, copy(inode));
+
+        for (INode inode : modified)
+            connector.put(table, primaryKey(inode), WriteMode.SAVE, copy(inode));
+    }
+
+    @Override
+    public int countAll() throws StorageException {
+        return table.size();
+    }
+
+    @Override
+    public boolean hasChildren(long parentId, boolean areChildrenRandomlyPartitioned) throws StorageException {
+        // Children that are not randomly partitioned live in their parent's partition.
+        return table.containsPrefix(areChildrenRandomlyPartitioned ? RowKey.of(parentId) :
+                RowKey.of(parentId, parentId));
+    }
+
+    @Override
+    public List<INode> allINodes() throws StorageException {
+        return copyAll(table.values());
+    }
+
+    @Override
+    public List<INode> findINodes(String name) throws StorageException {
+        List<INode> inodes = new ArrayList<>();
+        for (INode inode : table.values()) {
+            if (inode.getName().equals(name))
+                inodes.add(copy(inode));
+        }
+        return inodes;
+    }
+
+    @Override
+    public void deleteInode(String name) throws StorageException {
+        for (INode inode : findINodes(name))
+            connector.delete(table, primaryKey(inode));
+    }
+
+    @Override
+    public void updateLogicalTime(Collection<INodeMetadataLogEntry> logEntries) throws StorageException {
+        for (INodeMetadataLogEntry logEntry : logEntries) {
+            RowKey key = primaryKey(logEntry.getName(), logEntry.getParentId(), logEntry.getPartitionId());
+            connector.write(table, key, WriteMode.SAVE, current -> {
+                if (current == null)
+                    return null;
+                INode updated = copy(current);
+                updated.setLogicalTime(logEntry.getLogicalTime());
+                return updated;
+            });
+        }
+    }
+
+    @Override
+    public int countSubtreeLockedInodes() throws StorageException {
+        int count = 0;
+        for (INode inode : table.values()) {
+            if (inode.isSubtreeLocked())
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public long getMaxId() throws StorageException {
+        long max = 0;
+        for (INode inode : table.values())
+            max = Math.max(max, inode.getId());
+        return max;
+    }
+
+    @Override
+    public void clear() {
+        table.clear();
+    }
+
+    private static List<INode> copyAll(Collection<INode> inodes) {
+        List<INode> copies = new ArrayList<>(inodes.size());
+        for (INode inode : inodes)
+            copies.add(copy(inode));
+        return copies;
+    }
+
+    private static List<ProjectedINode> project(List<INode> inodes) {
+        List<ProjectedINode> projected = new ArrayList<>(inodes.size());
+        for (INode inode : inodes) {
+            projected.add(new ProjectedINode(inode.getId(), inode.getParentId(), inode.getName(),
+                    inode.getPartitionId(), inode.isDirectory(), inode.getPermission(), inode.getUserID(),
+                    inode.getGroupID(), inode.getHeader(), inode.getSymlink() != null, inode.isDirWithQuota(),
+                    inode.isUnderConstruction(), inode.isSubtreeLocked(), inode.getSubtreeLockOwner(),
+                    inode.getFileSize(), inode.getLogicalTime(), inode.getStoragePolicyID(), inode.getNumAces(),
+                    inode.getNumUserXAttrs(), inode.getNumSysXAttrs()));
+        }
+        return projected;
+    }
+
+    /**
+     * Copy the persisted columns of the given INode. Stored rows are never shared with callers, as INodes are
+     * mutable.
+     */
+    static INode copy(INode inode) {
+        return new INode(inode.getId(), inode.getName(), inode.getParentId(), inode.getPartitionId(),
+                inode.isDirectory(), inode.isDirWithQuota(), inode.getModificationTime(), inode.getAccessTime(),
+                inode.getUserID(), inode.getGroupID(), inode.getPermission(), inode.isUnderConstruction(),
+                inode.getClientName(), inode.getClientMachine(), inode.getGenerationStamp(), inode.getHeader(),
+                inode.getSymlink(), inode.isSubtreeLocked(), inode.getSubtreeLockOwner(),
+                inode.getMetaStatus().getVal(), inode.getFileSize(), inode.isFileStoredInDB(),
+                inode.getLogicalTime(), inode.getStoragePolicyID(), inode.getChildrenNum(), inode.getNumAces(),
+                inode.getNumUserXAttrs(), inode.getNumSysXAttrs());
+    }
+}
@@ -0,0 +1,16 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.InMemoryInodeDataAccess;
+import io.hops.metadata.hdfs.entity.FileInodeData;
+
+/**
+ * In-memory version of the table that stores the data of the smallest files, which NDB keeps in memory.
+ */
+public class InMemoryFileInodeMemoryDataAccess extends DBFileMemoryDataAccess
+        implements InMemoryInodeDataAccess<FileInodeData>, TablesDef.FileInodeInMemoryData {
+
+    public InMemoryFileInodeMemoryDataAccess() {
+        super(TABLE_NAME, FileInodeData.Type.InmemoryFile, 1024);
+    }
+}
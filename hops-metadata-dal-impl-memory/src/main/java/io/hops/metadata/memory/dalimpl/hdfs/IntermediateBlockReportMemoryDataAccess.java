@@ -0,0 +1,76 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.IntermediateBlockReportDataAccess;
+import io.hops.metadata.hdfs.entity.IntermediateBlockReport;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory version of the intermediate block reports table. Rows are keyed by (datanodeUuid, reportId) rather than
+ * the (reportId, datanodeUuid) of the NDB table, so that the reports of a DataNode are contiguous and sorted by ID.
+ */
+public class IntermediateBlockReportMemoryDataAccess extends MemoryEntityDataAccess<IntermediateBlockReport>
+        implements IntermediateBlockReportDataAccess<IntermediateBlockReport>,
+        TablesDef.IntermediateBlockReportsTableDef {
+
+    public IntermediateBlockReportMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(IntermediateBlockReport report) {
+        return RowKey.of(report.getDatanodeUuid(), report.getReportId());
+    }
+
+    @Override
+    public IntermediateBlockReport getReport(int reportId, String datanodeUuid) throws StorageException {
+        return find(RowKey.of(datanodeUuid, reportId));
+    }
+
+    @Override
+    public List<IntermediateBlockReport> getReports(String datanodeUuid) throws StorageException {
+        return scan(RowKey.of(datanodeUuid));
+    }
+
+    @Override
+    public List<IntermediateBlockReport> getReports(String datanodeUuid, int minimumReportId)
+            throws StorageException {
+        List<IntermediateBlockReport> reports = new ArrayList<>();
+        for (IntermediateBlockReport report : getReports(datanodeUuid)) {
+            if (report.getReportId() >= minimumReportId)
+                reports.add(report);
+        }
+        return reports;
+    }
+
+    @Override
+    public List<IntermediateBlockReport> getReportsPublishedAfter(String datanodeUuid, long publishedAt)
+            throws StorageException {
+        List<IntermediateBlockReport> reports = new ArrayList<>();
+        for (IntermediateBlockReport report : getReports(datanodeUuid)) {
+            if (report.getPublishedAt() >= publishedAt)
+                reports.add(report);
+        }
+        return reports;
+    }
+
+    @Override
+    public void addReport(int reportId, String datanodeUuid, long publishedAt, String poolId,
+                          String receivedAndDeletedBlocks) throws StorageException {
+        save(new IntermediateBlockReport(reportId, datanodeUuid, publishedAt, poolId, receivedAndDeletedBlocks));
+    }
+
+    @Override
+    public int deleteReports(String datanodeUuid) throws StorageException {
+        List<IntermediateBlockReport> reports = getReports(datanodeUuid);
+        for (IntermediateBlockReport report : reports)
+            delete(report);
+        return reports.size();
+    }
+}
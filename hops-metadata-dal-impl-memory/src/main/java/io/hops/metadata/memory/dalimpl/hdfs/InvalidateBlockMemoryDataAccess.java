@@ -0,0 +1,118 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.InvalidateBlockDataAccess;
+import io.hops.metadata.hdfs.entity.InvalidatedBlock;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory version of the table of replicas waiting to be invalidated, keyed by (inodeId, blockId, storageId) like
+ * the NDB table, with an index on (storageId, blockId).
+ */
+public class InvalidateBlockMemoryDataAccess extends MemoryEntityDataAccess<InvalidatedBlock>
+        implements InvalidateBlockDataAccess<InvalidatedBlock>, TablesDef.InvalidatedBlockTableDef {
+    private static final String STORAGE_INDEX = "storage";
+
+    public InvalidateBlockMemoryDataAccess() {
+        super(new MemoryTable<InvalidatedBlock>(TABLE_NAME)
+                .withIndex(STORAGE_INDEX, block -> RowKey.of(block.getStorageId(), block.getBlockId())));
+    }
+
+    @Override
+    protected RowKey primaryKey(InvalidatedBlock block) {
+        return RowKey.of(block.getInodeId(), block.getBlockId(), block.getStorageId());
+    }
+
+    @Override
+    protected InvalidatedBlock copy(InvalidatedBlock block) {
+        return new InvalidatedBlock(block.getStorageId(), block.getBlockId(), block.getGenerationStamp(),
+                block.getNumBytes(), block.getInodeId());
+    }
+
+    @Override
+    public int countAll() throws StorageException {
+        return count();
+    }
+
+    @Override
+    public List<InvalidatedBlock> findInvalidatedBlockByStorageId(int storageId) throws StorageException {
+        return scanIndex(STORAGE_INDEX, RowKey.of(storageId));
+    }
+
+    @Override
+    public Map<Long, Long> findInvalidatedBlockBySidUsingMySQLServer(int sid) throws StorageException {
+        Map<Long, Long> blocks = new HashMap<>();
+        for (InvalidatedBlock block : table.scanIndex(STORAGE_INDEX, RowKey.of(sid)))
+            blocks.put(block.getBlockId(), block.getGenerationStamp());
+        return blocks;
+    }
+
+    @Override
+    public List<InvalidatedBlock> findInvalidatedBlocksByBlockId(long bid, long inodeId) throws StorageException {
+        return scan(RowKey.of(inodeId, bid));
+    }
+
+    @Override
+    public List<InvalidatedBlock> findInvalidatedBlocksByINodeId(long inodeId) throws StorageException {
+        return scan(RowKey.of(inodeId));
+    }
+
+    @Override
+    public List<InvalidatedBlock> findInvalidatedBlocksByINodeIds(long[] inodeIds) throws StorageException {
+        return scanEach(inodeIds);
+    }
+
+    @Override
+    public List<InvalidatedBlock> findAllInvalidatedBlocks() throws StorageException {
+        return scanAll(block -> true);
+    }
+
+    @Override
+    public List<InvalidatedBlock> findInvalidatedBlocksbyPKS(long[] blockIds, long[] inodesIds, int[] storageIds)
+            throws StorageException {
+        List<InvalidatedBlock> blocks = new ArrayList<>();
+        for (int i = 0; i < blockIds.length; i++) {
+            InvalidatedBlock block = find(RowKey.of(inodesIds[i], blockIds[i], storageIds[i]));
+            if (block != null)
+                blocks.add(block);
+        }
+        return blocks;
+    }
+
+    @Override
+    public InvalidatedBlock findInvBlockByPkey(long blockId, int sid, long inodeId) throws StorageException {
+        return find(RowKey.of(inodeId, blockId, sid));
+    }
+
+    @Override
+    public void prepare(Collection<InvalidatedBlock> removed, Collection<InvalidatedBlock> newed,
+                        Collection<InvalidatedBlock> modified) throws StorageException {
+        super.prepare(removed, newed, modified);
+    }
+
+    @Override
+    public void removeAll() throws StorageException {
+        removeAll(block -> true);
+    }
+
+    @Override
+    public void removeAllByStorageId(int sid) throws StorageException {
+        for (InvalidatedBlock block : findInvalidatedBlockByStorageId(sid))
+            delete(block);
+    }
+
+    @Override
+    public void removeByBlockIdAndStorageId(long blockId, int sid) throws StorageException {
+        for (InvalidatedBlock block : scanIndex(STORAGE_INDEX, RowKey.of(sid, blockId)))
+            delete(block);
+    }
+}
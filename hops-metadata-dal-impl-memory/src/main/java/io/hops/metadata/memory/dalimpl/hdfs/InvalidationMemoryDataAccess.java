@@ -0,0 +1,93 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.dal.InvalidationDataAccess;
+import io.hops.metadata.hdfs.entity.Invalidation;
+import io.hops.metadata.memory.MemoryConnector;
+import io.hops.metadata.memory.MemoryConnector.WriteMode;
+import io.hops.metadata.memory.MemoryDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory version of the per-deployment invalidation tables, keyed by (inodeId, operationId, leaderNameNodeId)
+ * like the NDB tables. {@link Invalidation} is immutable, so rows are stored and returned without copying.
+ */
+public class InvalidationMemoryDataAccess implements InvalidationDataAccess<Invalidation>, MemoryDataAccess {
+    private static final Log LOG = LogFactory.getLog(InvalidationMemoryDataAccess.class);
+
+    private static final String TABLE_NAME_PREFIX = "invalidations_deployment";
+
+    private final MemoryConnector connector = MemoryConnector.getInstance();
+
+    /**
+     * One table per deployment, created on first use.
+     */
+    private final ConcurrentHashMap<Integer, MemoryTable<Invalidation>> tables = new ConcurrentHashMap<>();
+
+    private MemoryTable<Invalidation> getTable(int deploymentNumber) {
+        if (deploymentNumber < 0)
+            throw new IllegalArgumentException("Deployment number must be non-negative. Specified value " +
+                    deploymentNumber + " is not.");
+
+        return tables.computeIfAbsent(deploymentNumber, n -> new MemoryTable<>(TABLE_NAME_PREFIX + n));
+    }
+
+    private static RowKey primaryKey(Invalidation invalidation) {
+        return RowKey.of(invalidation.getINodeId(), invalidation.getOperationId(),
+                invalidation.getLeaderNameNodeId());
+    }
+
+    @Override
+    public void addInvalidation(Invalidation invalidation, int deploymentNumber) throws StorageException {
+        LOG.debug("ADD " + invalidation.toString() + ", deployment=" + deploymentNumber);
+        connector.put(getTable(deploymentNumber), primaryKey(invalidation), WriteMode.INSERT, invalidation);
+    }
+
+    @Override
+    public void addInvalidations(Collection<Invalidation> invalidations, int deploymentNumber)
+            throws StorageException {
+        for (Invalidation invalidation : invalidations)
+            addInvalidation(invalidation, deploymentNumber);
+    }
+
+    @Override
+    public void addInvalidations(Invalidation[] invalidations, int deploymentNumber) throws StorageException {
+        addInvalidations(Arrays.asList(invalidations), deploymentNumber);
+    }
+
+    @Override
+    public List<Invalidation> getInvalidationsForINode(long inodeId, int deploymentNumber) throws StorageException {
+        return connector.scan(getTable(deploymentNumber), RowKey.of(inodeId), connector.obtainSession().getLockMode());
+    }
+
+    @Override
+    public void deleteInvalidations(Collection<Invalidation> invalidations, int deploymentNumber)
+            throws StorageException {
+        for (Invalidation invalidation : invalidations)
+            deleteInvalidation(invalidation, deploymentNumber);
+    }
+
+    @Override
+    public void deleteInvalidations(Invalidation[] invalidations, int deploymentNumber) throws StorageException {
+        deleteInvalidations(Arrays.asList(invalidations), deploymentNumber);
+    }
+
+    @Override
+    public void deleteInvalidation(Invalidation invalidation, int deploymentNumber) throws StorageException {
+        connector.delete(getTable(deploymentNumber), primaryKey(invalidation));
+    }
+
+    @Override
+    public void clear() {
+        for (MemoryTable<Invalidation> table : tables.values())
+            table.clear();
+    }
+}
@@ -0,0 +1,44 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.LargeOnDiskInodeDataAccess;
+import io.hops.metadata.hdfs.entity.FileInodeData;
+
+import java.util.Arrays;
+
+/**
+ * In-memory version of the table that stores the data of the largest files kept in the database. The NDB table
+ * splits each file into chunks of {@link #CHUNK_SIZE} bytes; here each file is a single row, and {@link #count()}
+ * reports the number of chunks the NDB table would hold.
+ */
+public class LargeOnDiskFileInodeMemoryDataAccess extends DBFileMemoryDataAccess
+        implements LargeOnDiskInodeDataAccess<FileInodeData>, TablesDef.FileInodeLargeDiskData {
+    private static final int CHUNK_SIZE = 8000;
+
+    public LargeOnDiskFileInodeMemoryDataAccess() {
+        super(TABLE_NAME, FileInodeData.Type.OnDiskFile, CHUNK_SIZE);
+    }
+
+    @Override
+    public FileInodeData get(long inodeId, int size) throws StorageException {
+        FileInodeData data = get(inodeId);
+        if (data == null)
+            return null;
+        return new FileInodeData(inodeId, Arrays.copyOf(data.getInodeData(), size), size,
+                FileInodeData.Type.OnDiskFile);
+    }
+
+    @Override
+    public int count() {
+        int chunks = 0;
+        for (FileInodeData data : table.values())
+            chunks += (data.getSize() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        return chunks;
+    }
+
+    @Override
+    public int countUniqueFiles() throws StorageException {
+        return super.count();
+    }
+}
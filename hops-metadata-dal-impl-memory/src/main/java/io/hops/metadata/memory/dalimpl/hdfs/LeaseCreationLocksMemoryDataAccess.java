@@ -0,0 +1,51 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.LeaseCreationLocksDataAccess;
+import io.hops.metadata.hdfs.entity.LeaseCreationLock;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+/**
+ * In-memory version of the lease creation locks table. Each row only exists to be locked by the transactions that
+ * create leases.
+ */
+public class LeaseCreationLocksMemoryDataAccess extends MemoryEntityDataAccess<LeaseCreationLock>
+        implements LeaseCreationLocksDataAccess<LeaseCreationLock>, TablesDef.LeaseCreationLocksTableDef {
+
+    public LeaseCreationLocksMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(LeaseCreationLock lock) {
+        return RowKey.of(lock.getLock());
+    }
+
+    @Override
+    protected LeaseCreationLock copy(LeaseCreationLock lock) {
+        return new LeaseCreationLock(lock.getLock());
+    }
+
+    @Override
+    public LeaseCreationLock lock(int lockRow) throws StorageException {
+        if (find(RowKey.of(lockRow)) == null)
+            throw new StorageException("Cluster misconfiguration. Lease creation lock row not found");
+        return new LeaseCreationLock(lockRow);
+    }
+
+    @Override
+    public void createLockRows(int count) throws StorageException {
+        for (int i = 0; i < count; i++) {
+            if (find(RowKey.of(i)) == null)
+                save(new LeaseCreationLock(i));
+        }
+    }
+
+    @Override
+    public void removeAll() throws StorageException {
+        removeAll(lock -> true);
+    }
+}
@@ -0,0 +1,108 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.LeaseDataAccess;
+import io.hops.metadata.hdfs.entity.Lease;
+import io.hops.metadata.memory.MemoryConnector;
+import io.hops.metadata.memory.MemoryConnector.WriteMode;
+import io.hops.metadata.memory.MemoryDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory version of the lease table, keyed by (holderId, holder) like the NDB table.
+ */
+public class LeaseMemoryDataAccess implements LeaseDataAccess<Lease>, MemoryDataAccess, TablesDef.LeaseTableDef {
+    private static final Log LOG = LogFactory.getLog(LeaseMemoryDataAccess.class);
+
+    private final MemoryConnector connector = MemoryConnector.getInstance();
+
+    private final MemoryTable<Lease> table = new MemoryTable<>(TABLE_NAME);
+
+    private static RowKey primaryKey(String holder, int holderId) {
+        return RowKey.of(holderId, holder);
+    }
+
+    private static RowKey primaryKey(Lease lease) {
+        return primaryKey(lease.getHolder(), lease.getHolderId());
+    }
+
+    @Override
+    public int countAll() throws StorageException {
+        return table.size();
+    }
+
+    @Override
+    public Collection<Lease> findByTimeLimit(long timeLimit) throws StorageException {
+        List<Lease> leases = new ArrayList<>();
+        for (Lease lease : table.values()) {
+            if (lease.getLastUpdate() < timeLimit)
+                leases.add(copy(lease));
+        }
+        return leases;
+    }
+
+    @Override
+    public Collection<Lease> findAll() throws StorageException {
+        List<Lease> leases = new ArrayList<>();
+        for (Lease lease : table.values())
+            leases.add(copy(lease));
+        return leases;
+    }
+
+    @Override
+    public Lease findByPKey(String holder, int holderId) throws StorageException {
+        Lease lease = connector.read(table, primaryKey(holder, holderId));
+        return lease == null ? null : copy(lease);
+    }
+
+    @Override
+    public Lease findByHolderId(int holderId) throws StorageException {
+        List<Lease> leases = connector.scan(table, RowKey.of(holderId), connector.obtainSession().getLockMode());
+
+        if (leases.size() > 1) {
+            LOG.error("Error in selectLeaseTableInternal: Multiple rows with same holderID");
+            return null;
+        } else if (leases.size() == 1) {
+            return copy(leases.get(0));
+        } else {
+            LOG.info("No rows found for holderID:" + holderId + " in Lease table");
+            return null;
+        }
+    }
+
+    @Override
+    public void prepare(Collection<Lease> removed, Collection<Lease> newLeases, Collection<Lease> modified)
+            throws StorageException {
+        for (Lease lease : removed)
+            connector.delete(table, primaryKey(lease));
+
+        for (Lease lease : newLeases)
+            connector.put(table, primaryKey(lease), WriteMode.SAVE, copy(lease));
+
+        for (Lease lease : modified)
+            connector.put(table, primaryKey(lease), WriteMode.SAVE, copy(lease));
+    }
+
+    @Override
+    public void removeAll() throws StorageException {
+        for (Lease lease : table.values())
+            connector.delete(table, primaryKey(lease));
+    }
+
+    @Override
+    public void clear() {
+        table.clear();
+    }
+
+    private static Lease copy(Lease lease) {
+        return new Lease(lease.getHolder(), lease.getHolderId(), lease.getLastUpdate(), lease.getCount());
+    }
+}
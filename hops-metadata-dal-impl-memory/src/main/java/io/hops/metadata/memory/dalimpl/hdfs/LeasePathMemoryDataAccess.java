@@ -0,0 +1,72 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.LeasePathDataAccess;
+import io.hops.metadata.hdfs.entity.LeasePath;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory version of the lease paths table, keyed by (holderId, path) like the NDB table, with an index on the
+ * path.
+ */
+public class LeasePathMemoryDataAccess extends MemoryEntityDataAccess<LeasePath>
+        implements LeasePathDataAccess<LeasePath>, TablesDef.LeasePathTableDef {
+    private static final String PATH_INDEX = "path";
+
+    public LeasePathMemoryDataAccess() {
+        super(new MemoryTable<LeasePath>(TABLE_NAME).withIndex(PATH_INDEX, lp -> RowKey.of(lp.getPath())));
+    }
+
+    @Override
+    protected RowKey primaryKey(LeasePath lp) {
+        return RowKey.of(lp.getHolderId(), lp.getPath());
+    }
+
+    @Override
+    protected LeasePath copy(LeasePath lp) {
+        return new LeasePath(lp.getPath(), lp.getHolderId(), lp.getLastBlockId(), lp.getPenultimateBlockId());
+    }
+
+    @Override
+    public Collection<LeasePath> findByHolderId(int holderId) throws StorageException {
+        return scan(RowKey.of(holderId));
+    }
+
+    @Override
+    public Collection<LeasePath> findByPrefix(String prefix) throws StorageException {
+        return scanAll(lp -> lp.getPath().startsWith(prefix));
+    }
+
+    @Override
+    public Collection<LeasePath> findAll() throws StorageException {
+        return scanAll(lp -> true);
+    }
+
+    @Override
+    public LeasePath findByPath(String path) throws StorageException {
+        List<LeasePath> lps = scanIndex(PATH_INDEX, RowKey.of(path));
+        if (lps.isEmpty())
+            return null;
+        else if (lps.size() == 1)
+            return lps.get(0);
+        else
+            throw new StorageException("Found more than one path");
+    }
+
+    @Override
+    public void prepare(Collection<LeasePath> removed, Collection<LeasePath> newed, Collection<LeasePath> modified)
+            throws StorageException {
+        super.prepare(removed, newed, modified);
+    }
+
+    @Override
+    public void removeAll() throws StorageException {
+        removeAll(lp -> true);
+    }
+}
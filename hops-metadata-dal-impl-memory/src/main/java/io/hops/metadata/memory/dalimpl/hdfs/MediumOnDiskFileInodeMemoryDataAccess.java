@@ -0,0 +1,16 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.MediumOnDiskInodeDataAccess;
+import io.hops.metadata.hdfs.entity.FileInodeData;
+
+/**
+ * In-memory version of the table that stores the data of medium-sized files that NDB keeps on disk.
+ */
+public class MediumOnDiskFileInodeMemoryDataAccess extends DBFileMemoryDataAccess
+        implements MediumOnDiskInodeDataAccess<FileInodeData>, TablesDef.FileInodeMediumlDiskData {
+
+    public MediumOnDiskFileInodeMemoryDataAccess() {
+        super(TABLE_NAME, FileInodeData.Type.OnDiskFile, 4000);
+    }
+}
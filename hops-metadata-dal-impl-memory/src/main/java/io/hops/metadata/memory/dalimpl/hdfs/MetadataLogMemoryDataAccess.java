@@ -0,0 +1,65 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.MetadataLogDataAccess;
+import io.hops.metadata.hdfs.entity.INodeMetadataLogEntry;
+import io.hops.metadata.hdfs.entity.MetadataLogEntry;
+import io.hops.metadata.memory.MemoryConnector.WriteMode;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+
+/**
+ * In-memory version of the metadata log, keyed by (datasetId, inodeId, logicalTime) like the NDB table. Like the NDB
+ * implementation, this also maintains the INode to dataset lookup table for the INode operations that are logged.
+ */
+public class MetadataLogMemoryDataAccess extends MemoryEntityDataAccess<MetadataLogEntry>
+        implements MetadataLogDataAccess<MetadataLogEntry>, TablesDef.MetadataLogTableDef {
+    /**
+     * The dataset of each logged INode, by INode ID.
+     */
+    private final MemoryTable<Long> lookupTable = new MemoryTable<>(LOOKUP_TABLE_NAME);
+
+    public MetadataLogMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(MetadataLogEntry logEntry) {
+        return RowKey.of(logEntry.getDatasetId(), logEntry.getInodeId(), logEntry.getLogicalTime());
+    }
+
+    @Override
+    public void add(MetadataLogEntry logEntry) throws StorageException {
+        insert(logEntry);
+
+        if (INodeMetadataLogEntry.isValidOperation(logEntry.getOperationId())) {
+            RowKey lookupKey = RowKey.of(logEntry.getInodeId());
+            INodeMetadataLogEntry.Operation operation = ((INodeMetadataLogEntry) logEntry).getOperation();
+            if (operation == INodeMetadataLogEntry.Operation.Add)
+                connector.put(lookupTable, lookupKey, WriteMode.SAVE, logEntry.getDatasetId());
+            else if (operation == INodeMetadataLogEntry.Operation.Delete)
+                connector.delete(lookupTable, lookupKey);
+        }
+    }
+
+    @Override
+    public void addAll(Collection<MetadataLogEntry> logEntries) throws StorageException {
+        for (MetadataLogEntry logEntry : logEntries)
+            add(logEntry);
+    }
+
+    @Override
+    public Collection<MetadataLogEntry> find(long fileId) throws StorageException {
+        return scanAll(logEntry -> logEntry.getInodeId() == fileId);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        lookupTable.clear();
+    }
+}
@@ -0,0 +1,54 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.MisReplicatedRangeQueueDataAccess;
+import io.hops.metadata.hdfs.entity.MisReplicatedRange;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.List;
+
+/**
+ * In-memory version of the queue of block ranges still to be checked for mis-replication. Like the NDB table, it is
+ * keyed by NameNode ID alone, so each NameNode has at most one range in the queue.
+ */
+public class MisReplicatedRangeQueueMemoryDataAccess extends MemoryEntityDataAccess<MisReplicatedRange>
+        implements MisReplicatedRangeQueueDataAccess, TablesDef.MisReplicatedRangeQueueTableDef {
+
+    public MisReplicatedRangeQueueMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(MisReplicatedRange range) {
+        return RowKey.of(range.getNnId());
+    }
+
+    @Override
+    public void insert(MisReplicatedRange range) throws StorageException {
+        save(range);
+    }
+
+    @Override
+    public void remove(MisReplicatedRange range) throws StorageException {
+        delete(range);
+    }
+
+    @Override
+    public void remove(List<MisReplicatedRange> ranges) throws StorageException {
+        for (MisReplicatedRange range : ranges)
+            delete(range);
+    }
+
+    @Override
+    public List<MisReplicatedRange> getAll() throws StorageException {
+        return scanAll(range -> true);
+    }
+
+    @Override
+    public int countAll() throws StorageException {
+        return count();
+    }
+}
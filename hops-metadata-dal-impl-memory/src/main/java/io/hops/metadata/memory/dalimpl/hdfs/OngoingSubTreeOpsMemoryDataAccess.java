@@ -0,0 +1,95 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.OngoingSubTreeOpsDataAccess;
+import io.hops.metadata.hdfs.entity.SubTreeOperation;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-memory version of the table of ongoing subtree operations, keyed by the path of the subtree root.
+ */
+public class OngoingSubTreeOpsMemoryDataAccess extends MemoryEntityDataAccess<SubTreeOperation>
+        implements OngoingSubTreeOpsDataAccess<SubTreeOperation>, TablesDef.OnGoingSubTreeOpsDef {
+
+    public OngoingSubTreeOpsMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(SubTreeOperation op) {
+        return RowKey.of(op.getPath());
+    }
+
+    @Override
+    protected SubTreeOperation copy(SubTreeOperation op) {
+        return new SubTreeOperation(op.getPath(), op.getInodeID(), op.getNameNodeId(), op.getOpType(),
+                op.getStartTime(), op.getUser(), op.getAsyncLockRecoveryTime());
+    }
+
+    @Override
+    public SubTreeOperation findByPath(String path) throws StorageException {
+        return find(RowKey.of(path));
+    }
+
+    @Override
+    public Collection<SubTreeOperation> findByPathsByPrefix(String prefix) throws StorageException {
+        return scanAll(op -> op.getPath().startsWith(prefix));
+    }
+
+    @Override
+    public Collection<SubTreeOperation> allOpsByNN(long nnID) throws StorageException {
+        return scanAll(op -> op.getNameNodeId() == nnID);
+    }
+
+    @Override
+    public Collection<SubTreeOperation> allOpsToRecoverAsync() throws StorageException {
+        return scanAll(op -> op.getAsyncLockRecoveryTime() > 0);
+    }
+
+    @Override
+    public Collection<SubTreeOperation> allDeadOperations(long[] aliveNNIDs, long time) throws StorageException {
+        Set<Long> alive = toSet(aliveNNIDs);
+        return scanAll(op -> !alive.contains(op.getNameNodeId()) && op.getStartTime() < time);
+    }
+
+    @Override
+    public Collection<SubTreeOperation> allSlowActiveOperations(long[] aliveNNIDs, long time)
+            throws StorageException {
+        Set<Long> alive = toSet(aliveNNIDs);
+        return scanAll(op -> alive.contains(op.getNameNodeId()) && op.getStartTime() < time);
+    }
+
+    @Override
+    public long getLockTime(long inodeID) throws StorageException {
+        List<SubTreeOperation> ops = scanAll(op -> op.getInodeID() == inodeID);
+        if (ops.size() > 1)
+            throw new StorageException("Multiple subtree locks found for same INode: " + inodeID);
+        return ops.isEmpty() ? 0 : ops.get(0).getStartTime();
+    }
+
+    @Override
+    public Collection<SubTreeOperation> allOps() throws StorageException {
+        return scanAll(op -> true);
+    }
+
+    @Override
+    public void prepare(Collection<SubTreeOperation> removed, Collection<SubTreeOperation> newed,
+                        Collection<SubTreeOperation> modified) throws StorageException {
+        super.prepare(removed, newed, modified);
+    }
+
+    private static Set<Long> toSet(long[] ids) {
+        Set<Long> set = new HashSet<>(ids.length);
+        for (long id : ids)
+            set.add(id);
+        return set;
+    }
+}
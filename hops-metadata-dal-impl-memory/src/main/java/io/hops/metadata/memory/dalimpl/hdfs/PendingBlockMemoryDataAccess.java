@@ -0,0 +1,76 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.PendingBlockDataAccess;
+import io.hops.metadata.hdfs.entity.PendingBlockInfo;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory version of the pending replications table, keyed by (inodeId, blockId) like the NDB table.
+ */
+public class PendingBlockMemoryDataAccess extends MemoryEntityDataAccess<PendingBlockInfo>
+        implements PendingBlockDataAccess<PendingBlockInfo>, TablesDef.PendingBlockTableDef {
+
+    public PendingBlockMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(PendingBlockInfo block) {
+        return RowKey.of(block.getInodeId(), block.getBlockId());
+    }
+
+    @Override
+    protected PendingBlockInfo copy(PendingBlockInfo block) {
+        return new PendingBlockInfo(block.getBlockId(), block.getInodeId(), block.getTimeStamp(),
+                block.getTargets() == null ? null : new ArrayList<>(block.getTargets()));
+    }
+
+    @Override
+    public List<PendingBlockInfo> findByTimeLimitLessThan(long timeLimit) throws StorageException {
+        return scanAll(block -> block.getTimeStamp() < timeLimit);
+    }
+
+    @Override
+    public List<PendingBlockInfo> findAll() throws StorageException {
+        return scanAll(block -> true);
+    }
+
+    @Override
+    public PendingBlockInfo findByBlockAndInodeIds(long blockId, long inodeId) throws StorageException {
+        return find(RowKey.of(inodeId, blockId));
+    }
+
+    @Override
+    public List<PendingBlockInfo> findByINodeId(long inodeId) throws StorageException {
+        return scan(RowKey.of(inodeId));
+    }
+
+    @Override
+    public List<PendingBlockInfo> findByINodeIds(long[] inodeIds) throws StorageException {
+        return scanEach(inodeIds);
+    }
+
+    @Override
+    public int countValidPendingBlocks(long timeLimit) throws StorageException {
+        return count(block -> block.getTimeStamp() > timeLimit);
+    }
+
+    @Override
+    public void prepare(Collection<PendingBlockInfo> removed, Collection<PendingBlockInfo> newed,
+                        Collection<PendingBlockInfo> modified) throws StorageException {
+        super.prepare(removed, newed, modified);
+    }
+
+    @Override
+    public void removeAll() throws StorageException {
+        removeAll(block -> true);
+    }
+}
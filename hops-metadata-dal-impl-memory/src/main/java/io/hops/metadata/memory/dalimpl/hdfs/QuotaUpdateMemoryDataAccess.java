@@ -0,0 +1,77 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.QuotaUpdateDataAccess;
+import io.hops.metadata.hdfs.entity.QuotaUpdate;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * In-memory version of the quota updates table, keyed by (id, inodeId) like the NDB table, with an index on the
+ * INode.
+ */
+public class QuotaUpdateMemoryDataAccess extends MemoryEntityDataAccess<QuotaUpdate>
+        implements QuotaUpdateDataAccess<QuotaUpdate>, TablesDef.QuotaUpdateTableDef {
+    private static final String INODE_INDEX = "inode";
+
+    public QuotaUpdateMemoryDataAccess() {
+        super(new MemoryTable<QuotaUpdate>(TABLE_NAME)
+                .withIndex(INODE_INDEX, update -> RowKey.of(update.getInodeId())));
+    }
+
+    @Override
+    protected RowKey primaryKey(QuotaUpdate update) {
+        return RowKey.of(update.getId(), update.getInodeId());
+    }
+
+    @Override
+    protected QuotaUpdate copy(QuotaUpdate update) {
+        return new QuotaUpdate(update.getId(), update.getInodeId(), update.getNamespaceDelta(),
+                update.getStorageSpaceDelta(),
+                update.getTypeSpaces() == null ? null : new HashMap<>(update.getTypeSpaces()),
+                update.getDirectoryDelta(), update.getSymlinkDelta(), update.getLengthDelta());
+    }
+
+    @Override
+    public void prepare(Collection<QuotaUpdate> modified, Collection<QuotaUpdate> removed)
+            throws StorageException {
+        prepare(removed, null, modified);
+    }
+
+    /**
+     * Like the MySQL query of the NDB implementation, this runs outside of the current transaction and only sees
+     * committed updates.
+     */
+    @Override
+    public List<QuotaUpdate> findLimited(int limit) throws StorageException {
+        List<QuotaUpdate> updates = new ArrayList<>();
+        for (QuotaUpdate update : table.values()) {
+            if (updates.size() >= limit)
+                break;
+            updates.add(copy(update));
+        }
+        return updates;
+    }
+
+    @Override
+    public List<QuotaUpdate> findByInodeId(long inodeId) throws StorageException {
+        return scanIndex(INODE_INDEX, RowKey.of(inodeId));
+    }
+
+    @Override
+    public QuotaUpdate findByKey(int id, long inodeId) throws StorageException {
+        return find(RowKey.of(id, inodeId));
+    }
+
+    @Override
+    public int getCount() throws StorageException {
+        return count();
+    }
+}
@@ -0,0 +1,185 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.ReplicaDataAccess;
+import io.hops.metadata.hdfs.entity.Replica;
+import io.hops.metadata.memory.MemoryConnector;
+import io.hops.metadata.memory.MemoryConnector.WriteMode;
+import io.hops.metadata.memory.MemoryDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+import io.hops.transaction.context.EntityContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory version of the replica table, keyed by (inodeId, blockId, storageId) like the NDB table. A secondary
+ * index on (storageId, blockId) serves the per-storage queries of block reports, including the block ID windows.
+ */
+public class ReplicaMemoryDataAccess implements ReplicaDataAccess<Replica>, MemoryDataAccess,
+        TablesDef.ReplicaTableDef {
+    static final String STORAGE_INDEX = "storage";
+
+    private final MemoryConnector connector = MemoryConnector.getInstance();
+
+    private final MemoryTable<Replica> table = new MemoryTable<Replica>(TABLE_NAME)
+            .withIndex(STORAGE_INDEX, replica -> RowKey.of(replica.getStorageId(), replica.getBlockId()));
+
+    static RowKey primaryKey(long inodeId, long blockId, int storageId) {
+        return RowKey.of(inodeId, blockId, storageId);
+    }
+
+    private static RowKey primaryKey(Replica replica) {
+        return primaryKey(replica.getInodeId(), replica.getBlockId(), replica.getStorageId());
+    }
+
+    @Override
+    public List<Replica> findReplicasById(long blockId, long inodeId) throws StorageException {
+        return scan(RowKey.of(inodeId, blockId));
+    }
+
+    @Override
+    public List<Replica> findReplicasByINodeId(long inodeId) throws StorageException {
+        return scan(RowKey.of(inodeId));
+    }
+
+    @Override
+    public List<Replica> findReplicasByINodeIds(long[] inodeIds) throws StorageException {
+        List<Replica> replicas = new ArrayList<>();
+        for (long inodeId : inodeIds)
+            replicas.addAll(scan(RowKey.of(inodeId)));
+        return replicas;
+    }
+
+    private List<Replica> scan(RowKey prefix) throws StorageException {
+        EntityContext.LockMode lockMode = connector.obtainSession().getLockMode();
+        return copyAll(connector.scan(table, prefix, lockMode));
+    }
+
+    @Override
+    public Map<Long, Long> findBlockAndInodeIdsByStorageId(int storageId) throws StorageException {
+        Map<Long, Long> blockToINode = new HashMap<>();
+        for (Replica replica : getReplicas(storageId))
+            blockToINode.put(replica.getBlockId(), replica.getInodeId());
+        return blockToINode;
+    }
+
+    @Override
+    public Map<Long, Long> findBlockAndInodeIdsByStorageIdAndBucketId(int storageId, int bucketId)
+            throws StorageException {
+        Map<Long, Long> blockToINode = new HashMap<>();
+        for (Replica replica : getReplicas(storageId)) {
+            if (replica.getBucketId() == bucketId)
+                blockToINode.put(replica.getBlockId(), replica.getInodeId());
+        }
+        return blockToINode;
+    }
+
+    @Override
+    public Map<Long, Long> findBlockAndInodeIdsByStorageIdAndBucketIds(int sId, List<Integer> mismatchedBuckets)
+            throws StorageException {
+        Set<Integer> buckets = new HashSet<>(mismatchedBuckets);
+        Map<Long, Long> blockToINode = new HashMap<>();
+        for (Replica replica : getReplicas(sId)) {
+            if (buckets.contains(replica.getBucketId()))
+                blockToINode.put(replica.getBlockId(), replica.getInodeId());
+        }
+        return blockToINode;
+    }
+
+    @Override
+    public boolean hasBlocksWithIdGreaterThan(int storageId, long from) throws StorageException {
+        return !table.scanIndexKeys(STORAGE_INDEX, RowKey.of(storageId, from), RowKey.of(storageId + 1), 1)
+                .isEmpty();
+    }
+
+    @Override
+    public int countAllReplicasForStorageId(int sid) throws StorageException {
+        return table.scanIndexKeys(STORAGE_INDEX, RowKey.of(sid)).size();
+    }
+
+    @Override
+    public void prepare(Collection<Replica> removed, Collection<Replica> newed, Collection<Replica> modified)
+            throws StorageException {
+        for (Replica replica : removed)
+            connector.delete(table, primaryKey(replica));
+
+        for (Replica replica : newed)
+            connector.put(table, primaryKey(replica), WriteMode.SAVE, copy(replica));
+
+        for (Replica replica : modified)
+            connector.put(table, primaryKey(replica), WriteMode.SAVE, copy(replica));
+    }
+
+    @Override
+    public long findBlockIdAtIndex(int storageId, long index, int maxFetchingSize) throws StorageException {
+        // Blocks are counted from one, in block ID order.
+        if (index <= 0 || index > Integer.MAX_VALUE)
+            return 0;
+
+        List<RowKey> keys = table.scanIndexKeys(STORAGE_INDEX, RowKey.of(storageId), RowKey.of(storageId + 1),
+                (int) index);
+        if (keys.size() < index)
+            return 0;
+        return (Long) keys.get((int) index - 1).getPart(1);
+    }
+
+    /**
+     * Return the (uncopied) replicas on the given storage, in block ID order.
+     */
+    List<Replica> getReplicas(int storageId) {
+        return table.scanIndex(STORAGE_INDEX, RowKey.of(storageId));
+    }
+
+    /**
+     * Return the (uncopied) replicas on the given storage whose block ID lies in {@code [fromBlockId, toBlockId]}.
+     */
+    List<Replica> getReplicas(int storageId, long fromBlockId, long toBlockId) {
+        List<Replica> replicas = new ArrayList<>();
+        RowKey to = toBlockId == Long.MAX_VALUE ? RowKey.of(storageId + 1) : RowKey.of(storageId, toBlockId + 1);
+        for (RowKey key : table.scanIndexKeys(STORAGE_INDEX, RowKey.of(storageId, fromBlockId), to,
+                Integer.MAX_VALUE)) {
+            Replica replica = table.get(key);
+            if (replica != null)
+                replicas.add(replica);
+        }
+        return replicas;
+    }
+
+    /**
+     * Return the smallest block ID stored on the given storage that is at least {@code fromBlockId}, or -1.
+     */
+    long nextBlockId(int storageId, long fromBlockId) {
+        List<RowKey> keys = table.scanIndexKeys(STORAGE_INDEX, RowKey.of(storageId, fromBlockId),
+                RowKey.of(storageId + 1), 1);
+        return keys.isEmpty() ? -1 : (Long) keys.get(0).getPart(1);
+    }
+
+    boolean exists(long inodeId, long blockId, int storageId) {
+        return table.get(primaryKey(inodeId, blockId, storageId)) != null;
+    }
+
+    @Override
+    public void clear() {
+        table.clear();
+    }
+
+    private static List<Replica> copyAll(List<Replica> replicas) {
+        List<Replica> copies = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas)
+            copies.add(copy(replica));
+        return copies;
+    }
+
+    private static Replica copy(Replica replica) {
+        return new Replica(replica.getStorageId(), replica.getBlockId(), replica.getInodeId(),
+                replica.getBucketId());
+    }
+}
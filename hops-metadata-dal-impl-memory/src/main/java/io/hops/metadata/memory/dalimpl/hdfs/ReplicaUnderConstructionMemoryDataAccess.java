@@ -0,0 +1,71 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.ReplicaUnderConstructionDataAccess;
+import io.hops.metadata.hdfs.entity.ReplicaUnderConstruction;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory version of the replicas under construction table, keyed by (inodeId, blockId, storageId) like the NDB
+ * table.
+ */
+public class ReplicaUnderConstructionMemoryDataAccess extends MemoryEntityDataAccess<ReplicaUnderConstruction>
+        implements ReplicaUnderConstructionDataAccess<ReplicaUnderConstruction>,
+        TablesDef.ReplicaUnderConstructionTableDef {
+
+    public ReplicaUnderConstructionMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(ReplicaUnderConstruction replica) {
+        return RowKey.of(replica.getInodeId(), replica.getBlockId(), replica.getStorageId());
+    }
+
+    @Override
+    protected ReplicaUnderConstruction copy(ReplicaUnderConstruction replica) {
+        return new ReplicaUnderConstruction(replica.getState(), replica.getStorageId(), replica.getBlockId(),
+                replica.getInodeId(), replica.getBucketId(), replica.getChosenAsPrimary(),
+                replica.getGenerationStamp());
+    }
+
+    @Override
+    public List<ReplicaUnderConstruction> findReplicaUnderConstructionByBlockId(long blockId, long inodeId)
+            throws StorageException {
+        return scan(RowKey.of(inodeId, blockId));
+    }
+
+    @Override
+    public List<ReplicaUnderConstruction> findReplicaUnderConstructionByINodeId(long inodeId)
+            throws StorageException {
+        return scan(RowKey.of(inodeId));
+    }
+
+    @Override
+    public List<ReplicaUnderConstruction> findReplicaUnderConstructionByINodeIds(long[] inodeIds)
+            throws StorageException {
+        return scanEach(inodeIds);
+    }
+
+    @Override
+    public void prepare(Collection<ReplicaUnderConstruction> removed, Collection<ReplicaUnderConstruction> newed,
+                        Collection<ReplicaUnderConstruction> modified) throws StorageException {
+        super.prepare(removed, newed, modified);
+    }
+
+    @Override
+    public int countAll() throws StorageException {
+        return count();
+    }
+
+    @Override
+    public List<ReplicaUnderConstruction> findAll() throws StorageException {
+        return scanAll(replica -> true);
+    }
+}
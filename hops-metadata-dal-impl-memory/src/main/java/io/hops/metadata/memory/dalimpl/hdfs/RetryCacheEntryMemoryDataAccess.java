@@ -0,0 +1,66 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.RetryCacheEntryDataAccess;
+import io.hops.metadata.hdfs.entity.RetryCacheEntry;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory version of the retry cache table, keyed by (clientId, callId, epoch) like the NDB table. Client IDs are
+ * wrapped in a {@link ByteBuffer} so that they compare by content.
+ */
+public class RetryCacheEntryMemoryDataAccess extends MemoryEntityDataAccess<RetryCacheEntry>
+        implements RetryCacheEntryDataAccess<RetryCacheEntry>, TablesDef.RetryCacheEntryTableDef {
+
+    public RetryCacheEntryMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    private static RowKey primaryKey(byte[] clientId, int callId, long epoch) {
+        return RowKey.of(ByteBuffer.wrap(clientId.clone()), callId, epoch);
+    }
+
+    @Override
+    protected RowKey primaryKey(RetryCacheEntry entry) {
+        return primaryKey(entry.getClientId(), entry.getCallId(), entry.getEpoch());
+    }
+
+    @Override
+    protected RetryCacheEntry copy(RetryCacheEntry entry) {
+        return new RetryCacheEntry(entry.getClientId(), entry.getCallId(), entry.getPayload(),
+                entry.getExpirationTime(), entry.getEpoch(), entry.getState());
+    }
+
+    @Override
+    public RetryCacheEntry find(RetryCacheEntry.PrimaryKey key) throws StorageException {
+        return find(primaryKey(key.getClientId(), key.getCallId(), key.getEpoch()));
+    }
+
+    @Override
+    public void prepare(Collection<RetryCacheEntry> removed, Collection<RetryCacheEntry> modified)
+            throws StorageException {
+        prepare(removed, null, modified);
+    }
+
+    @Override
+    public int removeOlds(long epoch) throws StorageException {
+        return removeAll(entry -> entry.getEpoch() == epoch);
+    }
+
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    @Override
+    public List<RetryCacheEntry> findAll() throws StorageException {
+        return scanAll(entry -> true);
+    }
+}
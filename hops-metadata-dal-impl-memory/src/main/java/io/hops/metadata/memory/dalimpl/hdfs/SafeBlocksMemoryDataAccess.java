@@ -0,0 +1,53 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.SafeBlocksDataAccess;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+
+/**
+ * In-memory version of the table of blocks that have reached their minimum replication during safe mode, keyed by
+ * block ID.
+ */
+public class SafeBlocksMemoryDataAccess extends MemoryEntityDataAccess<Long>
+        implements SafeBlocksDataAccess, TablesDef.SafeBlocksTableDef {
+
+    public SafeBlocksMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(Long blockId) {
+        return RowKey.of(blockId);
+    }
+
+    @Override
+    public void insert(Collection<Long> safeBlocks) throws StorageException {
+        for (Long blockId : safeBlocks)
+            save(blockId);
+    }
+
+    @Override
+    public void remove(Long safeBlock) throws StorageException {
+        delete(safeBlock);
+    }
+
+    @Override
+    public int countAll() throws StorageException {
+        return count();
+    }
+
+    @Override
+    public void removeAll() throws StorageException {
+        removeAll(blockId -> true);
+    }
+
+    @Override
+    public boolean isSafe(Long blockId) throws StorageException {
+        return find(RowKey.of(blockId)) != null;
+    }
+}
@@ -0,0 +1,84 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.ServerlessNameNodeDataAccess;
+import io.hops.metadata.hdfs.entity.ServerlessNameNodeMeta;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.List;
+
+/**
+ * In-memory version of the serverless NameNodes table, keyed by (nameNodeId, functionName) like the NDB table, with
+ * an index on the function name. Lookups that match several rows return the most recently created one, as the NDB
+ * implementation does.
+ */
+public class ServerlessNameNodeMemoryDataAccess extends MemoryEntityDataAccess<ServerlessNameNodeMeta>
+        implements ServerlessNameNodeDataAccess<ServerlessNameNodeMeta>, TablesDef.ServerlessNameNodesTableDef {
+    private static final String FUNCTION_NAME_INDEX = "function_name";
+
+    public ServerlessNameNodeMemoryDataAccess() {
+        super(new MemoryTable<ServerlessNameNodeMeta>(TABLE_NAME)
+                .withIndex(FUNCTION_NAME_INDEX, nameNode -> RowKey.of(nameNode.getFunctionName())));
+    }
+
+    @Override
+    protected RowKey primaryKey(ServerlessNameNodeMeta nameNode) {
+        return RowKey.of(nameNode.getNameNodeId(), nameNode.getFunctionName());
+    }
+
+    @Override
+    public ServerlessNameNodeMeta getServerlessNameNode(long nameNodeId, String functionName)
+            throws StorageException {
+        return find(RowKey.of(nameNodeId, functionName));
+    }
+
+    @Override
+    public ServerlessNameNodeMeta getServerlessNameNodeByNameNodeId(long nameNodeId) throws StorageException {
+        return latest(scan(RowKey.of(nameNodeId)));
+    }
+
+    @Override
+    public ServerlessNameNodeMeta getServerlessNameNodeByFunctionName(String functionName)
+            throws StorageException {
+        return latest(scanIndex(FUNCTION_NAME_INDEX, RowKey.of(functionName)));
+    }
+
+    @Override
+    public void addServerlessNameNode(ServerlessNameNodeMeta nameNode) throws StorageException {
+        save(nameNode);
+    }
+
+    @Override
+    public void replaceServerlessNameNode(ServerlessNameNodeMeta nameNode) throws StorageException {
+        removeServerlessNameNode(nameNode.getFunctionName());
+        addServerlessNameNode(nameNode);
+    }
+
+    @Override
+    public void removeServerlessNameNode(ServerlessNameNodeMeta nameNode) throws StorageException {
+        delete(nameNode);
+    }
+
+    @Override
+    public void removeServerlessNameNode(String functionName) throws StorageException {
+        for (ServerlessNameNodeMeta nameNode : scanIndex(FUNCTION_NAME_INDEX, RowKey.of(functionName)))
+            delete(nameNode);
+    }
+
+    @Override
+    public List<ServerlessNameNodeMeta> getAllServerlessNameNodes() throws StorageException {
+        return scanAll(nameNode -> true);
+    }
+
+    private static ServerlessNameNodeMeta latest(List<ServerlessNameNodeMeta> nameNodes) {
+        ServerlessNameNodeMeta latest = null;
+        for (ServerlessNameNodeMeta nameNode : nameNodes) {
+            if (latest == null || nameNode.getCreationTime() > latest.getCreationTime())
+                latest = nameNode;
+        }
+        return latest;
+    }
+}
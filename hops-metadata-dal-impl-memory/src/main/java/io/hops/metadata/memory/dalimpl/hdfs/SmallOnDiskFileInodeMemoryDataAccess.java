@@ -0,0 +1,16 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.SmallOnDiskInodeDataAccess;
+import io.hops.metadata.hdfs.entity.FileInodeData;
+
+/**
+ * In-memory version of the table that stores the data of small files that NDB keeps on disk.
+ */
+public class SmallOnDiskFileInodeMemoryDataAccess extends DBFileMemoryDataAccess
+        implements SmallOnDiskInodeDataAccess<FileInodeData>, TablesDef.FileInodeSmallDiskData {
+
+    public SmallOnDiskFileInodeMemoryDataAccess() {
+        super(TABLE_NAME, FileInodeData.Type.OnDiskFile, 2000);
+    }
+}
@@ -0,0 +1,42 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.StorageIdMapDataAccess;
+import io.hops.metadata.hdfs.entity.StorageId;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+
+/**
+ * In-memory version of the table that maps storage UUIDs to numeric storage IDs.
+ */
+public class StorageIdMapMemoryDataAccess extends MemoryEntityDataAccess<StorageId>
+        implements StorageIdMapDataAccess<StorageId>, TablesDef.StorageIdMapTableDef {
+
+    public StorageIdMapMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(StorageId storageId) {
+        return RowKey.of(storageId.getStorageId());
+    }
+
+    @Override
+    public void add(StorageId storageId) throws StorageException {
+        save(storageId);
+    }
+
+    @Override
+    public StorageId findByPk(String storageId) throws StorageException {
+        return find(RowKey.of(storageId));
+    }
+
+    @Override
+    public Collection<StorageId> findAll() throws StorageException {
+        return scanAll(storageId -> true);
+    }
+}
@@ -0,0 +1,54 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.StorageDataAccess;
+import io.hops.metadata.hdfs.entity.Storage;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory version of the storages table, keyed by numeric storage ID, with an index on the host.
+ */
+public class StorageMemoryDataAccess extends MemoryEntityDataAccess<Storage>
+        implements StorageDataAccess<Storage>, TablesDef.StoragesTableDef {
+    private static final String HOST_INDEX = "host";
+
+    public StorageMemoryDataAccess() {
+        super(new MemoryTable<Storage>(TABLE_NAME).withIndex(HOST_INDEX, storage -> RowKey.of(storage.getHostID())));
+    }
+
+    @Override
+    protected RowKey primaryKey(Storage storage) {
+        return RowKey.of(storage.getStorageID());
+    }
+
+    @Override
+    public void prepare(Collection<Storage> modified, Collection<Storage> removed) throws StorageException {
+        prepare(removed, null, modified);
+    }
+
+    @Override
+    public void add(Storage storage) throws StorageException {
+        save(storage);
+    }
+
+    @Override
+    public Storage findByPk(int sid) throws StorageException {
+        return find(RowKey.of(sid));
+    }
+
+    @Override
+    public List<Storage> findByHostUuid(String uuid) throws StorageException {
+        return scanIndex(HOST_INDEX, RowKey.of(uuid));
+    }
+
+    @Override
+    public Collection<Storage> findAll() throws StorageException {
+        return scanAll(storage -> true);
+    }
+}
@@ -0,0 +1,88 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.StorageReportDataAccess;
+import io.hops.metadata.hdfs.entity.StorageReport;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory version of the storage reports table. Rows are keyed by (datanodeUuid, groupId, reportId) rather than
+ * the (groupId, reportId, datanodeUuid) of the NDB table, so that the reports of a DataNode are contiguous and
+ * sorted by group.
+ */
+public class StorageReportMemoryDataAccess extends MemoryEntityDataAccess<StorageReport>
+        implements StorageReportDataAccess<StorageReport>, TablesDef.StorageReportsTableDef {
+
+    public StorageReportMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(StorageReport report) {
+        return RowKey.of(report.getDatanodeUuid(), report.getGroupId(), report.getReportId());
+    }
+
+    @Override
+    public StorageReport getStorageReport(long groupId, int reportId, String datanodeUuid) throws StorageException {
+        return find(RowKey.of(datanodeUuid, groupId, reportId));
+    }
+
+    @Override
+    public void removeStorageReport(long groupId, int reportId, String datanodeUuid) throws StorageException {
+        connector.delete(table, RowKey.of(datanodeUuid, groupId, reportId));
+    }
+
+    @Override
+    public int removeStorageReports(long groupId, String datanodeUuid) throws StorageException {
+        return deleteAll(getStorageReports(groupId, datanodeUuid));
+    }
+
+    @Override
+    public int removeStorageReports(String datanodeUuid) throws StorageException {
+        return deleteAll(scan(RowKey.of(datanodeUuid)));
+    }
+
+    @Override
+    public void addStorageReport(StorageReport report) throws StorageException {
+        save(report);
+    }
+
+    @Override
+    public List<StorageReport> getStorageReports(long groupId, String datanodeUuid) throws StorageException {
+        return scan(RowKey.of(datanodeUuid, groupId));
+    }
+
+    @Override
+    public List<StorageReport> getLatestStorageReports(String datanodeUuid) throws StorageException {
+        return getStorageReports(getLastGroupId(datanodeUuid), datanodeUuid);
+    }
+
+    @Override
+    public int getLastGroupId(String datanodeUuid) throws StorageException {
+        List<StorageReport> reports = scan(RowKey.of(datanodeUuid));
+        return reports.isEmpty() ? 0 : (int) reports.get(reports.size() - 1).getGroupId();
+    }
+
+    @Override
+    public List<StorageReport> getStorageReportsAfterGroupId(long groupId, String datanodeUuid)
+            throws StorageException {
+        List<StorageReport> reports = new ArrayList<>();
+        for (StorageReport report : scan(RowKey.of(datanodeUuid))) {
+            if (report.getGroupId() > groupId)
+                reports.add(report);
+        }
+        return reports;
+    }
+
+    private int deleteAll(List<StorageReport> reports) throws StorageException {
+        for (StorageReport report : reports)
+            delete(report);
+        return reports.size();
+    }
+}
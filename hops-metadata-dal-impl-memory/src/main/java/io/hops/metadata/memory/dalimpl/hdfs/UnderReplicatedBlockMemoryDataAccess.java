@@ -0,0 +1,105 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.UnderReplicatedBlockDataAccess;
+import io.hops.metadata.hdfs.entity.UnderReplicatedBlock;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory version of the under-replicated blocks table, keyed by (inodeId, blockId) like the NDB table, with an
+ * index on the priority level.
+ *
+ * The NDB table orders the blocks of a level by the time at which they were queued. The entity does not carry that
+ * timestamp, so the blocks of a level are returned in primary key order instead, which is just as stable for paging
+ * through a level with {@link #findByLevel(int, int, int)}.
+ */
+public class UnderReplicatedBlockMemoryDataAccess extends MemoryEntityDataAccess<UnderReplicatedBlock>
+        implements UnderReplicatedBlockDataAccess<UnderReplicatedBlock>, TablesDef.UnderReplicatedBlockTableDef {
+    private static final String LEVEL_INDEX = "level";
+
+    public UnderReplicatedBlockMemoryDataAccess() {
+        super(new MemoryTable<UnderReplicatedBlock>(TABLE_NAME)
+                .withIndex(LEVEL_INDEX, block -> RowKey.of(block.getLevel())));
+    }
+
+    @Override
+    protected RowKey primaryKey(UnderReplicatedBlock block) {
+        return RowKey.of(block.getInodeId(), block.getBlockId());
+    }
+
+    @Override
+    protected UnderReplicatedBlock copy(UnderReplicatedBlock block) {
+        return new UnderReplicatedBlock(block.getLevel(), block.getBlockId(), block.getInodeId(),
+                block.getExpectedReplicas());
+    }
+
+    @Override
+    public UnderReplicatedBlock findByPk(long blockId, long inodeId) throws StorageException {
+        return find(RowKey.of(inodeId, blockId));
+    }
+
+    @Override
+    public List<UnderReplicatedBlock> findByINodeId(long inodeId) throws StorageException {
+        return scan(RowKey.of(inodeId));
+    }
+
+    @Override
+    public List<UnderReplicatedBlock> findByINodeIds(long[] inodeIds) throws StorageException {
+        return scanEach(inodeIds);
+    }
+
+    @Override
+    public List<UnderReplicatedBlock> findAll() throws StorageException {
+        return scanAll(block -> true);
+    }
+
+    @Override
+    public List<UnderReplicatedBlock> findByLevel(int level) throws StorageException {
+        return scanIndex(LEVEL_INDEX, RowKey.of(level));
+    }
+
+    @Override
+    public List<UnderReplicatedBlock> findByLevel(int level, int offset, int count) throws StorageException {
+        List<UnderReplicatedBlock> blocks = findByLevel(level);
+        int from = Math.min(offset, blocks.size());
+        int to = (int) Math.min(blocks.size(), (long) from + count);
+        return blocks.subList(from, to);
+    }
+
+    @Override
+    public void prepare(Collection<UnderReplicatedBlock> removed, Collection<UnderReplicatedBlock> newed,
+                        Collection<UnderReplicatedBlock> modified) throws StorageException {
+        super.prepare(removed, newed, modified);
+    }
+
+    @Override
+    public void removeAll() throws StorageException {
+        removeAll(block -> true);
+    }
+
+    @Override
+    public int countAll() throws StorageException {
+        return count();
+    }
+
+    @Override
+    public int countByLevel(int level) throws StorageException {
+        return table.scanIndexKeys(LEVEL_INDEX, RowKey.of(level)).size();
+    }
+
+    @Override
+    public int countLessThanALevel(int level) throws StorageException {
+        return count(block -> block.getLevel() < level);
+    }
+
+    @Override
+    public int countReplOneBlocks(int level) throws StorageException {
+        return count(block -> block.getLevel() == level && block.getExpectedReplicas() == 1);
+    }
+}
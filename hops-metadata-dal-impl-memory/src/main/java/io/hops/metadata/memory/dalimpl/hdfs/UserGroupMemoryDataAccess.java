@@ -0,0 +1,84 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.UserGroupDataAccess;
+import io.hops.metadata.hdfs.entity.Group;
+import io.hops.metadata.hdfs.entity.User;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In-memory version of the users-groups table, keyed by (userId, groupId). Groups are looked up in the groups table
+ * of the given {@link GroupMemoryDataAccess}.
+ */
+public class UserGroupMemoryDataAccess extends MemoryEntityDataAccess<UserGroupMemoryDataAccess.Membership>
+        implements UserGroupDataAccess<User, Group>, TablesDef.UsersGroupsTableDef {
+    private final GroupMemoryDataAccess groupDataAccess;
+
+    public UserGroupMemoryDataAccess(GroupMemoryDataAccess groupDataAccess) {
+        super(new MemoryTable<>(TABLE_NAME));
+        this.groupDataAccess = groupDataAccess;
+    }
+
+    @Override
+    protected RowKey primaryKey(Membership membership) {
+        return RowKey.of(membership.userId, membership.groupId);
+    }
+
+    @Override
+    public void addUserToGroup(User user, Group group) throws StorageException {
+        addUserToGroup(user.getId(), group.getId());
+    }
+
+    @Override
+    public void addUserToGroup(int userId, int groupId) throws StorageException {
+        addUserToGroups(userId, Collections.singletonList(groupId));
+    }
+
+    @Override
+    public void addUserToGroups(int userId, List<Integer> groupIds) throws StorageException {
+        for (int groupId : groupIds)
+            save(new Membership(userId, groupId));
+    }
+
+    @Override
+    public List<Group> getGroupsForUser(User user) throws StorageException {
+        return getGroupsForUser(user.getId());
+    }
+
+    @Override
+    public List<Group> getGroupsForUser(int userId) throws StorageException {
+        List<Group> groups = new ArrayList<>();
+        for (Membership membership : scan(RowKey.of(userId))) {
+            Group group = groupDataAccess.getGroup(membership.groupId);
+            if (group != null)
+                groups.add(group);
+        }
+        return groups;
+    }
+
+    @Override
+    public void removeUserFromGroup(int userId, int groupId) throws StorageException {
+        delete(new Membership(userId, groupId));
+    }
+
+    /**
+     * A row of the table. The NDB implementation has no entity class for it either.
+     */
+    static final class Membership {
+        private final int userId;
+
+        private final int groupId;
+
+        Membership(int userId, int groupId) {
+            this.userId = userId;
+            this.groupId = groupId;
+        }
+    }
+}
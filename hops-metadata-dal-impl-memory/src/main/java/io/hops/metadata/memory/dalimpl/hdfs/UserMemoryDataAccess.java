@@ -0,0 +1,64 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.UserDataAccess;
+import io.hops.metadata.hdfs.entity.User;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory version of the users table, keyed by user ID. IDs are assigned from a counter, like the auto-increment
+ * column of the NDB table.
+ */
+public class UserMemoryDataAccess extends MemoryEntityDataAccess<User>
+        implements UserDataAccess<User>, TablesDef.UsersTableDef {
+    private static final String NAME_INDEX = "name";
+
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    public UserMemoryDataAccess() {
+        super(new MemoryTable<User>(TABLE_NAME).withIndex(NAME_INDEX, user -> RowKey.of(user.getName())));
+    }
+
+    @Override
+    protected RowKey primaryKey(User user) {
+        return RowKey.of(user.getId());
+    }
+
+    @Override
+    public User getUser(int userId) throws StorageException {
+        return find(RowKey.of(userId));
+    }
+
+    @Override
+    public User getUser(String userName) throws StorageException {
+        List<User> users = scanIndex(NAME_INDEX, RowKey.of(userName));
+        return users.size() == 1 ? users.get(0) : null;
+    }
+
+    @Override
+    public User addUser(String userName) throws StorageException {
+        User user = getUser(userName);
+        if (user == null) {
+            user = new User(nextId.getAndIncrement(), userName);
+            insert(user);
+        }
+        return user;
+    }
+
+    @Override
+    public void removeUser(int userId) throws StorageException {
+        connector.delete(table, RowKey.of(userId));
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        nextId.set(1);
+    }
+}
@@ -0,0 +1,82 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.common.entity.Variable;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.VariableDataAccess;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.Collection;
+
+/**
+ * In-memory version of the variables table, keyed by variable ID.
+ *
+ * Like formatting the NDB table, {@link #clear()} re-creates every variable with its registered default value.
+ * Variables without a default are left out, so reading one fails instead of returning a variable with no value.
+ */
+public class VariableMemoryDataAccess extends MemoryEntityDataAccess<Variable>
+        implements VariableDataAccess<Variable, Variable.Finder>, TablesDef.VariableTableDef {
+
+    public VariableMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    @Override
+    protected RowKey primaryKey(Variable var) {
+        return RowKey.of(var.getType().getId());
+    }
+
+    @Override
+    protected Variable copy(Variable var) {
+        return Variable.initVariable(var.getType(), var.getBytes());
+    }
+
+    @Override
+    public Variable getVariable(Variable.Finder varType) throws StorageException {
+        Variable var = find(RowKey.of(varType.getId()));
+        if (var == null)
+            throw new StorageException("There is no variable entry with id " + varType.getId());
+        return var;
+    }
+
+    @Override
+    public void setVariable(Variable var) throws StorageException {
+        checkSize(var);
+        save(var);
+    }
+
+    @Override
+    public void prepare(Collection<Variable> newVariables, Collection<Variable> updatedVariables,
+                        Collection<Variable> removedVariables) throws StorageException {
+        checkSize(newVariables);
+        checkSize(updatedVariables);
+        prepare(removedVariables, newVariables, updatedVariables);
+    }
+
+    private void checkSize(Collection<Variable> vars) throws StorageException {
+        if (vars != null) {
+            for (Variable var : vars)
+                checkSize(var);
+        }
+    }
+
+    private void checkSize(Variable var) throws StorageException {
+        int size = var.getBytes().length;
+        if (size > MAX_VARIABLE_SIZE)
+            throw new StorageException("wrong variable size" + size +
+                    ", variable size should be less or equal to " + MAX_VARIABLE_SIZE);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        for (Variable.Finder varType : Variable.Finder.values()) {
+            byte[] value = varType.getDefaultValue();
+            Variable var = value == null ? null : Variable.initVariable(varType, value);
+            if (var != null)
+                load(var);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.dal.WriteAcknowledgementDataAccess;
+import io.hops.metadata.hdfs.entity.WriteAcknowledgement;
+import io.hops.metadata.memory.MemoryConnector;
+import io.hops.metadata.memory.MemoryConnector.WriteMode;
+import io.hops.metadata.memory.MemoryDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory version of the per-deployment write acknowledgement tables, keyed by (nameNodeId, operationId) like the
+ * NDB tables. A secondary index on the operation ID serves the leader's lookup of all ACKs of an operation.
+ */
+public class WriteAcknowledgementMemoryDataAccess
+        implements WriteAcknowledgementDataAccess<WriteAcknowledgement>, MemoryDataAccess {
+    private static final Log LOG = LogFactory.getLog(WriteAcknowledgementMemoryDataAccess.class);
+
+    private static final String TABLE_NAME_PREFIX = "write_acks_deployment";
+
+    private static final String OPERATION_INDEX = "operation";
+
+    private final MemoryConnector connector = MemoryConnector.getInstance();
+
+    /**
+     * One table per deployment, created on first use.
+     */
+    private final ConcurrentHashMap<Integer, MemoryTable<WriteAcknowledgement>> tables = new ConcurrentHashMap<>();
+
+    private MemoryTable<WriteAcknowledgement> getTable(int deploymentNumber) {
+        if (deploymentNumber < 0)
+            throw new IllegalArgumentException("Deployment number must be non-negative. Specified value " +
+                    deploymentNumber + " is not.");
+
+        return tables.computeIfAbsent(deploymentNumber, n -> new MemoryTable<WriteAcknowledgement>(
+                TABLE_NAME_PREFIX + n).withIndex(OPERATION_INDEX, ack -> RowKey.of(ack.getOperationId())));
+    }
+
+    private static RowKey primaryKey(long nameNodeId, long operationId) {
+        return RowKey.of(nameNodeId, operationId);
+    }
+
+    private static RowKey primaryKey(WriteAcknowledgement writeAcknowledgement) {
+        return primaryKey(writeAcknowledgement.getNameNodeId(), writeAcknowledgement.getOperationId());
+    }
+
+    @Override
+    public WriteAcknowledgement getWriteAcknowledgement(long nameNodeId, long operationId, int deploymentNumber)
+            throws StorageException {
+        WriteAcknowledgement ack = connector.read(getTable(deploymentNumber), primaryKey(nameNodeId, operationId));
+        return ack == null ? null : copy(ack);
+    }
+
+    @Override
+    public List<WriteAcknowledgement> getPendingAcks(long nameNodeId, int deploymentNumber)
+            throws StorageException {
+        return getPendingAcks(nameNodeId, Long.MIN_VALUE, deploymentNumber);
+    }
+
+    // Only returns ACKs with an associated TX start-time >= the 'minTime' parameter.
+    @Override
+    public List<WriteAcknowledgement> getPendingAcks(long nameNodeId, long minTime, int deploymentNumber)
+            throws StorageException {
+        LOG.debug("CHECK PENDING ACKS - ID=" + nameNodeId + ", MinTime=" + minTime);
+        List<WriteAcknowledgement> pendingAcks = new ArrayList<>();
+        for (WriteAcknowledgement ack : connector.scan(getTable(deploymentNumber), RowKey.of(nameNodeId),
+                connector.obtainSession().getLockMode())) {
+            if (!ack.getAcknowledged() && ack.getTimestamp() >= minTime)
+                pendingAcks.add(copy(ack));
+        }
+        return pendingAcks;
+    }
+
+    @Override
+    public void addWriteAcknowledgement(WriteAcknowledgement writeAcknowledgement, int deploymentNumber)
+            throws StorageException {
+        connector.put(getTable(deploymentNumber), primaryKey(writeAcknowledgement), WriteMode.INSERT,
+                copy(writeAcknowledgement));
+    }
+
+    @Override
+    public void addWriteAcknowledgements(WriteAcknowledgement[] writeAcknowledgements, int deploymentNumber)
+            throws StorageException {
+        addWriteAcknowledgements(Arrays.asList(writeAcknowledgements), deploymentNumber);
+    }
+
+    @Override
+    public void addWriteAcknowledgements(Collection<WriteAcknowledgement> writeAcknowledgements,
+                                         int deploymentNumber) throws StorageException {
+        for (WriteAcknowledgement writeAcknowledgement : writeAcknowledgements)
+            addWriteAcknowledgement(writeAcknowledgement, deploymentNumber);
+    }
+
+    @Override
+    public void acknowledge(WriteAcknowledgement writeAcknowledgement, int deploymentNumber)
+            throws StorageException {
+        LOG.debug("ACK " + writeAcknowledgement.toString());
+        writeAcknowledgement.acknowledge();
+
+        // Throw exception if it does NOT exist.
+        connector.put(getTable(deploymentNumber), primaryKey(writeAcknowledgement), WriteMode.UPDATE,
+                copy(writeAcknowledgement));
+    }
+
+    @Override
+    public void acknowledge(List<WriteAcknowledgement> writeAcknowledgements, int deploymentNumber)
+            throws StorageException {
+        for (WriteAcknowledgement writeAcknowledgement : writeAcknowledgements)
+            acknowledge(writeAcknowledgement, deploymentNumber);
+    }
+
+    @Override
+    public void deleteAcknowledgement(WriteAcknowledgement writeAcknowledgement, int deploymentNumber)
+            throws StorageException {
+        connector.delete(getTable(deploymentNumber), primaryKey(writeAcknowledgement));
+    }
+
+    @Override
+    public void deleteAcknowledgements(Collection<WriteAcknowledgement> writeAcknowledgements)
+            throws StorageException {
+        for (WriteAcknowledgement writeAcknowledgement : writeAcknowledgements)
+            deleteAcknowledgement(writeAcknowledgement, writeAcknowledgement.getDeploymentNumber());
+    }
+
+    @Override
+    public List<WriteAcknowledgement> getWriteAcknowledgements(long operationId, int deploymentNumber)
+            throws StorageException {
+        List<WriteAcknowledgement> acks = new ArrayList<>();
+        for (WriteAcknowledgement ack : connector.scanIndex(getTable(deploymentNumber), OPERATION_INDEX,
+                RowKey.of(operationId), connector.obtainSession().getLockMode()))
+            acks.add(copy(ack));
+        return acks;
+    }
+
+    @Override
+    public void clear() {
+        for (MemoryTable<WriteAcknowledgement> table : tables.values())
+            table.clear();
+    }
+
+    private static WriteAcknowledgement copy(WriteAcknowledgement ack) {
+        return new WriteAcknowledgement(ack.getNameNodeId(), ack.getDeploymentNumber(), ack.getOperationId(),
+                ack.getAcknowledged(), ack.getTimestamp(), ack.getLeaderNameNodeId());
+    }
+}
@@ -0,0 +1,76 @@
+package io.hops.metadata.memory.dalimpl.hdfs;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.hdfs.TablesDef;
+import io.hops.metadata.hdfs.dal.XAttrDataAccess;
+import io.hops.metadata.hdfs.entity.StoredXAttr;
+import io.hops.metadata.memory.MemoryEntityDataAccess;
+import io.hops.metadata.memory.MemoryTable;
+import io.hops.metadata.memory.RowKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory version of the extended attributes table, keyed by (inodeId, namespace, name). The NDB table splits
+ * large values over several rows; here each attribute is a single row regardless of its size.
+ */
+public class XAttrMemoryDataAccess extends MemoryEntityDataAccess<StoredXAttr>
+        implements XAttrDataAccess<StoredXAttr, StoredXAttr.PrimaryKey>, TablesDef.XAttrTableDef {
+
+    public XAttrMemoryDataAccess() {
+        super(new MemoryTable<>(TABLE_NAME));
+    }
+
+    private static RowKey primaryKey(StoredXAttr.PrimaryKey pk) {
+        return RowKey.of(pk.getInodeId(), pk.getNamespace(), pk.getName());
+    }
+
+    @Override
+    protected RowKey primaryKey(StoredXAttr xattr) {
+        return RowKey.of(xattr.getInodeId(), xattr.getNamespace(), xattr.getName());
+    }
+
+    @Override
+    protected StoredXAttr copy(StoredXAttr xattr) {
+        byte[] value = xattr.getValue();
+        return new StoredXAttr(xattr.getInodeId(), xattr.getNamespace(), xattr.getName(),
+                value == null ? null : value.clone());
+    }
+
+    @Override
+    public List<StoredXAttr> getXAttrsByPrimaryKeyBatch(List<StoredXAttr.PrimaryKey> pks) throws StorageException {
+        List<StoredXAttr> xattrs = new ArrayList<>(pks.size());
+        for (StoredXAttr.PrimaryKey pk : pks) {
+            StoredXAttr xattr = find(primaryKey(pk));
+            if (xattr != null)
+                xattrs.add(xattr);
+        }
+        return xattrs;
+    }
+
+    @Override
+    public Collection<StoredXAttr> getXAttrsByInodeId(long inodeId) throws StorageException {
+        return scan(RowKey.of(inodeId));
+    }
+
+    @Override
+    public int removeXAttrsByInodeId(long inodeId) throws StorageException {
+        Collection<StoredXAttr> xattrs = getXAttrsByInodeId(inodeId);
+        for (StoredXAttr xattr : xattrs)
+            delete(xattr);
+        return xattrs.size();
+    }
+
+    @Override
+    public void prepare(Collection<StoredXAttr> removed, Collection<StoredXAttr> newed,
+                        Collection<StoredXAttr> modified) throws StorageException {
+        super.prepare(removed, newed, modified);
+    }
+
+    @Override
+    public int count() {
+        return super.count();
+    }
+}
@@ -0,0 +1,98 @@
+package io.hops.metadata.memory;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.memory.MemoryConnector.WriteMode;
+import io.hops.transaction.context.EntityContext.LockMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class TestMemoryConnector {
+    private static final String INDEX = "value";
+
+    private final MemoryConnector connector = MemoryConnector.getInstance();
+
+    private MemoryTable<String> table;
+
+    @Before
+    public void setUp() throws StorageException {
+        table = new MemoryTable<String>("test").withIndex(INDEX, RowKey::of);
+        connector.put(table, RowKey.of(1L, 1L), WriteMode.INSERT, "a");
+        connector.put(table, RowKey.of(1L, 2L), WriteMode.INSERT, "b");
+        connector.put(table, RowKey.of(2L, 1L), WriteMode.INSERT, "c");
+    }
+
+    @After
+    public void tearDown() throws StorageException {
+        connector.rollback();
+    }
+
+    @Test
+    public void testReadYourWrites() throws StorageException {
+        connector.beginTransaction();
+        connector.put(table, RowKey.of(1L, 3L), WriteMode.INSERT, "d");
+        connector.put(table, RowKey.of(1L, 1L), WriteMode.UPDATE, "e");
+        connector.delete(table, RowKey.of(1L, 2L));
+
+        assertEquals("d", connector.read(table, RowKey.of(1L, 3L), LockMode.READ_COMMITTED));
+        assertEquals("e", connector.read(table, RowKey.of(1L, 1L), LockMode.WRITE_LOCK));
+        assertNull(connector.read(table, RowKey.of(1L, 2L), LockMode.READ_LOCK));
+
+        // Nothing is visible outside of the transaction until it commits.
+        assertNull(table.get(RowKey.of(1L, 3L)));
+        assertEquals("a", table.get(RowKey.of(1L, 1L)));
+        assertEquals("b", table.get(RowKey.of(1L, 2L)));
+
+        connector.commit();
+        assertEquals("d", table.get(RowKey.of(1L, 3L)));
+        assertEquals("e", table.get(RowKey.of(1L, 1L)));
+        assertNull(table.get(RowKey.of(1L, 2L)));
+    }
+
+    @Test
+    public void testScanSeesWrites() throws StorageException {
+        connector.beginTransaction();
+        connector.put(table, RowKey.of(1L, 0L), WriteMode.INSERT, "d");
+        connector.put(table, RowKey.of(2L, 2L), WriteMode.INSERT, "e");
+        connector.delete(table, RowKey.of(1L, 1L));
+        connector.put(table, RowKey.of(1L, 2L), WriteMode.UPDATE, "f");
+
+        assertEquals(Arrays.asList("d", "f"), connector.scan(table, RowKey.of(1L), LockMode.READ_COMMITTED));
+        assertEquals(Arrays.asList("d", "f", "c", "e"), connector.scan(table, RowKey.of(), LockMode.READ_LOCK));
+        assertEquals(Collections.singletonList("f"),
+                connector.scan(table, RowKey.of(1L), RowKey.of(1L, 0L), 10, LockMode.READ_LOCK));
+        assertEquals(Arrays.asList("c", "e"),
+                connector.scan(table, RowKey.of(), RowKey.of(1L, 2L), 2, LockMode.READ_LOCK));
+    }
+
+    @Test
+    public void testIndexScanSeesWrites() throws StorageException {
+        connector.beginTransaction();
+        connector.put(table, RowKey.of(3L, 1L), WriteMode.INSERT, "a");
+        connector.put(table, RowKey.of(2L, 1L), WriteMode.UPDATE, "a");
+        connector.put(table, RowKey.of(1L, 1L), WriteMode.UPDATE, "b");
+
+        assertEquals(Arrays.asList("a", "a"), connector.scanIndex(table, INDEX, RowKey.of("a"), LockMode.READ_LOCK));
+        assertEquals(Arrays.asList("b", "b"), connector.scanIndex(table, INDEX, RowKey.of("b"), LockMode.READ_LOCK));
+        assertEquals(Collections.emptyList(), connector.scanIndex(table, INDEX, RowKey.of("c"), LockMode.READ_LOCK));
+    }
+
+    @Test
+    public void testRollbackDiscardsWrites() throws StorageException {
+        connector.beginTransaction();
+        connector.put(table, RowKey.of(1L, 3L), WriteMode.INSERT, "d");
+        connector.delete(table, RowKey.of(1L, 1L));
+        connector.rollback();
+
+        assertFalse(connector.isTransactionActive());
+        assertNull(connector.read(table, RowKey.of(1L, 3L)));
+        assertEquals(Arrays.asList("a", "b"), connector.scan(table, RowKey.of(1L), LockMode.READ_COMMITTED));
+    }
+}
@@ -0,0 +1,129 @@
+package io.hops.metadata.memory;
+
+import org.apache.curator.test.TestingServer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsConstantsClient;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.server.namenode.ServerlessNameNode;
+import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocols;
+import org.apache.hadoop.io.EnumSetWritable;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Boots a NameNode on the in-memory storage driver and runs the namespace operations of the NNThroughputBenchmark
+ * against it.
+ */
+public class TestMemoryNameNode {
+    private static final String CLIENT = "client";
+
+    private static TestingServer zooKeeper;
+
+    private Configuration conf;
+
+    private ServerlessNameNode nameNode;
+
+    @BeforeClass
+    public static void startZooKeeper() throws Exception {
+        zooKeeper = new TestingServer();
+    }
+
+    @AfterClass
+    public static void stopZooKeeper() throws Exception {
+        zooKeeper.close();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        File configFile = File.createTempFile("memory-config", ".properties");
+        configFile.deleteOnExit();
+
+        conf = new HdfsConfiguration();
+        conf.set(DFSConfigKeys.DFS_STORAGE_DRIVER_CLASS, MemoryStorageFactory.class.getName());
+        conf.set(DFSConfigKeys.DFS_STORAGE_DRIVER_CONFIG_FILE, configFile.getAbsolutePath());
+        conf.set(DFSConfigKeys.SERVERLESS_ZOOKEEPER_HOSTNAMES, zooKeeper.getConnectString());
+        conf.setInt(DFSConfigKeys.DFS_NAMENODE_MIN_BLOCK_SIZE_KEY, 0);
+
+        DFSTestUtil.formatNameNode(conf);
+        nameNode = startNameNode();
+    }
+
+    @After
+    public void tearDown() {
+        if (nameNode != null)
+            nameNode.stop();
+    }
+
+    private ServerlessNameNode startNameNode() throws Exception {
+        ServerlessNameNode nameNode = ServerlessNameNode.createNameNode(new String[0], conf, "namenode0", 1024, false);
+        if (nameNode.isInSafeMode())
+            nameNode.getNamesystem().leaveSafeMode();
+        return nameNode;
+    }
+
+    private void createFile(NamenodeProtocols rpc, String path) throws Exception {
+        rpc.create(path, FsPermission.getDefault(), CLIENT,
+                new EnumSetWritable<>(EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE)), true, (short) 3,
+                conf.getLongBytes(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, DFSConfigKeys.DFS_BLOCK_SIZE_DEFAULT), null);
+        assertTrue(rpc.complete(path, CLIENT, null, HdfsConstantsClient.GRANDFATHER_INODE_ID, null));
+    }
+
+    @Test
+    public void testNamespaceOperations() throws Exception {
+        NamenodeProtocols rpc = nameNode.getRpcServer();
+
+        assertTrue(rpc.mkdirs("/a/b", FsPermission.getDefault(), true));
+        createFile(rpc, "/a/f");
+        createFile(rpc, "/a/b/g");
+
+        assertTrue(rpc.getFileInfo("/a/b").isDir());
+        assertEquals(0, rpc.getFileInfo("/a/f").getLen());
+
+        DirectoryListing listing = rpc.getListing("/a", HdfsFileStatus.EMPTY_NAME, false);
+        assertEquals(2, listing.getPartialListing().length);
+
+        assertTrue(rpc.rename("/a/f", "/a/b/f"));
+        assertNull(rpc.getFileInfo("/a/f"));
+        assertNotNull(rpc.getFileInfo("/a/b/f"));
+        assertEquals(2, rpc.getListing("/a/b", HdfsFileStatus.EMPTY_NAME, false).getPartialListing().length);
+
+        assertTrue(rpc.delete("/a", true));
+        assertNull(rpc.getFileInfo("/a"));
+        assertNull(rpc.getFileInfo("/a/b/g"));
+    }
+
+    @Test
+    public void testRestartKeepsNamespace() throws Exception {
+        NamenodeProtocols rpc = nameNode.getRpcServer();
+        assertTrue(rpc.mkdirs("/a", FsPermission.getDefault(), true));
+        createFile(rpc, "/a/f");
+
+        // The tables outlive the NameNode, as they belong to the JVM.
+        nameNode.stop();
+        nameNode = startNameNode();
+
+        rpc = nameNode.getRpcServer();
+        assertNotNull(rpc.getFileInfo("/a/f"));
+        assertFalse(rpc.getFileInfo("/a/f").isDir());
+        createFile(rpc, "/a/g");
+        assertEquals(2, rpc.getListing("/a", HdfsFileStatus.EMPTY_NAME, false).getPartialListing().length);
+    }
+}
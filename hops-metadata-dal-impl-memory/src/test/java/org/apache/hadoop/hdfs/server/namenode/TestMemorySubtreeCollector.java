@@ -0,0 +1,302 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+import io.hops.common.INodeUtil;
+import io.hops.metadata.HdfsStorageFactory;
+import io.hops.metadata.hdfs.dal.INodeDataAccess;
+import io.hops.metadata.hdfs.entity.INodeIdentifier;
+import io.hops.metadata.hdfs.entity.ProjectedINode;
+import io.hops.metadata.memory.MemoryStorageFactory;
+import io.hops.transaction.context.EntityContext;
+import io.hops.transaction.handler.HDFSOperationType;
+import io.hops.transaction.handler.LightWeightRequestHandler;
+import org.apache.curator.test.TestingServer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.permission.AclEntry;
+import org.apache.hadoop.fs.permission.AclEntryScope;
+import org.apache.hadoop.fs.permission.AclEntryType;
+import org.apache.hadoop.fs.permission.FsAction;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants;
+import org.apache.hadoop.hdfs.protocol.HdfsConstantsClient;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockStoragePolicySuite;
+import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocols;
+import org.apache.hadoop.io.EnumSetWritable;
+import org.apache.hadoop.security.AccessControlException;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Walks a subtree on the in-memory storage driver, where each tree level has more directories than the subtree
+ * collector reads with a single query, and checks that the batched walk collects the same tree as a walk that reads
+ * the children of one directory at a time.
+ */
+public class TestMemorySubtreeCollector {
+    private static final String CLIENT = "client";
+
+    private static final int BATCH_SIZE = 4;
+
+    /**
+     * More sibling directories than fit in one batch, so that their children are read by several collectors.
+     */
+    private static final int SIBLINGS = 2 * BATCH_SIZE + 1;
+
+    /**
+     * The storage policy of each sibling directory, cycled through; null leaves the policy unspecified.
+     */
+    private static final String[] POLICIES = {
+            HdfsConstants.HOT_STORAGE_POLICY_NAME,
+            HdfsConstants.WARM_STORAGE_POLICY_NAME,
+            null,
+            HdfsConstants.COLD_STORAGE_POLICY_NAME,
+            HdfsConstants.ALLSSD_STORAGE_POLICY_NAME,
+            HdfsConstants.ONESSD_STORAGE_POLICY_NAME
+    };
+
+    private static final AclEntry BOB_DEFAULT = new AclEntry.Builder().setScope(AclEntryScope.DEFAULT)
+            .setType(AclEntryType.USER).setName("bob").setPermission(FsAction.READ_EXECUTE).build();
+
+    private static TestingServer zooKeeper;
+
+    private Configuration conf;
+
+    private ServerlessNameNode nameNode;
+
+    private final UserGroupInformation bob = UserGroupInformation.createUserForTesting("bob", new String[] { "bobs" });
+
+    @BeforeClass
+    public static void startZooKeeper() throws Exception {
+        zooKeeper = new TestingServer();
+    }
+
+    @AfterClass
+    public static void stopZooKeeper() throws Exception {
+        zooKeeper.close();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        File configFile = File.createTempFile("memory-config", ".properties");
+        configFile.deleteOnExit();
+
+        conf = new HdfsConfiguration();
+        conf.set(DFSConfigKeys.DFS_STORAGE_DRIVER_CLASS, MemoryStorageFactory.class.getName());
+        conf.set(DFSConfigKeys.DFS_STORAGE_DRIVER_CONFIG_FILE, configFile.getAbsolutePath());
+        conf.set(DFSConfigKeys.SERVERLESS_ZOOKEEPER_HOSTNAMES, zooKeeper.getConnectString());
+        conf.setInt(DFSConfigKeys.DFS_NAMENODE_MIN_BLOCK_SIZE_KEY, 0);
+        conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_ACLS_ENABLED_KEY, true);
+        conf.setInt(DFSConfigKeys.DFS_SUBTREE_COLLECTOR_BATCH_SIZE_KEY, BATCH_SIZE);
+
+        DFSTestUtil.formatNameNode(conf);
+        nameNode = startNameNode();
+    }
+
+    @After
+    public void tearDown() {
+        if (nameNode != null)
+            nameNode.stop();
+    }
+
+    private ServerlessNameNode startNameNode() throws Exception {
+        ServerlessNameNode nameNode = ServerlessNameNode.createNameNode(new String[0], conf, "namenode0", 1024, false);
+        if (nameNode.isInSafeMode())
+            nameNode.getNamesystem().leaveSafeMode();
+        return nameNode;
+    }
+
+    private void createFile(NamenodeProtocols rpc, String path) throws Exception {
+        rpc.create(path, FsPermission.getDefault(), CLIENT,
+                new EnumSetWritable<>(EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE)), true, (short) 3,
+                conf.getLongBytes(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, DFSConfigKeys.DFS_BLOCK_SIZE_DEFAULT), null);
+        assertTrue(rpc.complete(path, CLIENT, null, HdfsConstantsClient.GRANDFATHER_INODE_ID, null));
+    }
+
+    private static String sibling(int i) {
+        return "/t/s" + i;
+    }
+
+    /**
+     * Builds /t/s{i}/c/{f,g} for every sibling i. The even siblings grant bob access to their subtree with a default
+     * ACL only, as c and g are closed to others below them, while the odd siblings leave c and g open to others. The
+     * subtree is created before the ACLs are set, so that c and g have no ACL of their own and inherit the defaults.
+     */
+    private Map<String, Byte> createNamespace(NamenodeProtocols rpc) throws Exception {
+        BlockStoragePolicySuite suite = nameNode.getNamesystem().getFSDirectory().getBlockStoragePolicySuite();
+        FsPermission open = new FsPermission((short) 0755);
+
+        assertTrue(rpc.mkdirs("/t", open, true));
+        for (int i = 0; i < SIBLINGS; i++) {
+            FsPermission below = new FsPermission(i % 2 == 0 ? (short) 0070 : (short) 0075);
+            assertTrue(rpc.mkdirs(sibling(i) + "/c/g", open, true));
+            createFile(rpc, sibling(i) + "/c/f");
+            rpc.setPermission(sibling(i) + "/c", below);
+            rpc.setPermission(sibling(i) + "/c/g", below);
+        }
+
+        // The policy that each INode below /t is expected to inherit from its ancestors.
+        Map<String, Byte> inheritedPolicies = new HashMap<>();
+        for (int i = 0; i < SIBLINGS; i++) {
+            String policy = POLICIES[i % POLICIES.length];
+            byte policyId = HdfsConstantsClient.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED;
+            if (policy != null) {
+                rpc.setStoragePolicy(sibling(i), policy);
+                policyId = suite.getPolicy(policy).getId();
+            }
+            if (i % 2 == 0) {
+                rpc.modifyAclEntries(sibling(i), Collections.singletonList(BOB_DEFAULT));
+            }
+
+            inheritedPolicies.put(sibling(i), HdfsConstantsClient.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED);
+            inheritedPolicies.put(sibling(i) + "/c", policyId);
+            inheritedPolicies.put(sibling(i) + "/c/f", policyId);
+            inheritedPolicies.put(sibling(i) + "/c/g", policyId);
+        }
+        return inheritedPolicies;
+    }
+
+    /**
+     * Records, for every INode below the subtree root, its parent, its level and the storage policy that it inherits.
+     */
+    private static class RecordingFileTree extends AbstractFileTree.FileTree {
+        private final Map<Long, String> collected = new ConcurrentHashMap<>();
+
+        RecordingFileTree(FSNamesystem namesystem, INodeIdentifier subtreeRootId) throws AccessControlException {
+            super(namesystem, subtreeRootId, FsAction.READ_EXECUTE, false, Collections.<AclEntry>emptyList(),
+                    HdfsConstantsClient.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED);
+        }
+
+        @Override
+        protected void addChildNode(ProjectedINode parent, int level, ProjectedINode node,
+                BlockStoragePolicySuite bsps, byte inheritedStoragePolicy) {
+            collected.put(node.getId(), parent.getId() + "/" + level + "/" + inheritedStoragePolicy);
+            super.addChildNode(parent, level, node, bsps, inheritedStoragePolicy);
+        }
+    }
+
+    /**
+     * Walks /t as bob, checking that bob may list and traverse every directory below it.
+     */
+    private Map<Long, String> walk() throws Exception {
+        return bob.doAs((PrivilegedExceptionAction<Map<Long, String>>) () -> {
+            FSNamesystem namesystem = nameNode.getNamesystem();
+            LinkedList<INode> nodes = new LinkedList<>();
+            INodeUtil.resolvePathWithNoTransaction("/t", false, nodes);
+            INode root = nodes.getLast();
+            INodeIdentifier rootId = new INodeIdentifier(root.getId(), root.getParentId(), root.getLocalName(),
+                    root.getPartitionId());
+            rootId.setDepth((short) (INodeDirectory.ROOT_DIR_DEPTH + (nodes.size() - 1)));
+
+            RecordingFileTree fileTree = new RecordingFileTree(namesystem, rootId);
+            fileTree.buildUp(namesystem.getFSDirectory().getBlockStoragePolicySuite());
+            return fileTree.collected;
+        });
+    }
+
+    private Map<Long, String> expected(NamenodeProtocols rpc, Map<String, Byte> inheritedPolicies)
+            throws IOException {
+        Map<Long, String> expected = new HashMap<>();
+        for (Map.Entry<String, Byte> entry : inheritedPolicies.entrySet()) {
+            String path = entry.getKey();
+            String parent = path.substring(0, path.lastIndexOf('/'));
+            int level = path.split("/").length - 1;
+            expected.put(rpc.getFileInfo(path).getFileId(),
+                    rpc.getFileInfo(parent).getFileId() + "/" + level + "/" + entry.getValue());
+        }
+        return expected;
+    }
+
+    @Test
+    public void testBatchedWalkMatchesWalkOfOneDirectoryAtATime() throws Exception {
+        NamenodeProtocols rpc = nameNode.getRpcServer();
+        Map<Long, String> expected = expected(rpc, createNamespace(rpc));
+        assertEquals(4 * SIBLINGS, expected.size());
+
+        Map<Long, String> batched = walk();
+        assertEquals(expected, batched);
+
+        nameNode.stop();
+        conf.setInt(DFSConfigKeys.DFS_SUBTREE_COLLECTOR_BATCH_SIZE_KEY, 1);
+        nameNode = startNameNode();
+        assertEquals(1, nameNode.getNamesystem().getSubtreeCollectorBatchSize());
+        assertEquals(batched, walk());
+
+        // Without the default ACL of its sibling directory, bob may not list the subtree of the last sibling, which is
+        // collected in a batch of its own.
+        rpc = nameNode.getRpcServer();
+        rpc.removeDefaultAcl(sibling(SIBLINGS - 1));
+        try {
+            walk();
+            fail("bob must not be able to list " + sibling(SIBLINGS - 1) + "/c without the default ACL");
+        } catch (AccessControlException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testChildrenOfSeveralParentsAreReadTogether() throws Exception {
+        final NamenodeProtocols rpc = nameNode.getRpcServer();
+        createNamespace(rpc);
+
+        final long[] parentIds = new long[SIBLINGS];
+        for (int i = 0; i < SIBLINGS; i++) {
+            parentIds[i] = rpc.getFileInfo(sibling(i) + "/c").getFileId();
+        }
+
+        new LightWeightRequestHandler(HDFSOperationType.TEST) {
+            @Override
+            public Object performTask() throws IOException {
+                INodeDataAccess<INode> dataAccess =
+                        (INodeDataAccess) HdfsStorageFactory.getDataAccess(INodeDataAccess.class);
+
+                Set<Long> fullTableScan = new HashSet<>();
+                Set<Long> partitionScan = new HashSet<>();
+                for (long parentId : parentIds) {
+                    fullTableScan.addAll(ids(dataAccess.findInodesFTISTx(parentId,
+                            EntityContext.LockMode.READ_COMMITTED)));
+                    partitionScan.addAll(ids(dataAccess.findInodesPPISTx(parentId, parentId,
+                            EntityContext.LockMode.READ_COMMITTED)));
+                }
+                assertEquals(2 * SIBLINGS, fullTableScan.size());
+                assertEquals(fullTableScan, partitionScan);
+
+                assertEquals(fullTableScan, ids(dataAccess.findInodesFTISTx(parentIds,
+                        EntityContext.LockMode.READ_COMMITTED)));
+                assertEquals(partitionScan, ids(dataAccess.findInodesPPISTx(parentIds,
+                        EntityContext.LockMode.READ_COMMITTED)));
+                return null;
+            }
+        }.handle();
+    }
+
+    private static Set<Long> ids(List<ProjectedINode> inodes) {
+        Set<Long> ids = new HashSet<>();
+        for (ProjectedINode inode : inodes) {
+            assertTrue("Read " + inode.getName() + " twice", ids.add(inode.getId()));
+        }
+        return ids;
+    }
+}
@@ -78,6 +78,9 @@ CREATE TABLE `hdfs_inode_attributes` (
   `dsquota` bigint(20) DEFAULT NULL,
   `nscount` bigint(20) DEFAULT NULL,
   `diskspace` bigint(20) DEFAULT NULL,
+  `directory_count` bigint(20) NOT NULL DEFAULT '-1',
+  `symlink_count` bigint(20) NOT NULL DEFAULT '-1',
+  `length` bigint(20) NOT NULL DEFAULT '-1',
   PRIMARY KEY (`inodeId`)
 ) ENGINE=ndbcluster DEFAULT CHARSET=latin1 COLLATE=latin1_general_cs COMMENT='NDB_TABLE=READ_BACKUP=1'
 /*!50100 PARTITION BY KEY (inodeId) */$$
@@ -389,6 +392,9 @@ CREATE TABLE `hdfs_quota_update` (
   `inode_id` int(11) NOT NULL,
   `namespace_delta` bigint(20) DEFAULT NULL,
   `diskspace_delta` bigint(20) DEFAULT NULL,
+  `directory_delta` bigint(20) NOT NULL DEFAULT '0',
+  `symlink_delta` bigint(20) NOT NULL DEFAULT '0',
+  `length_delta` bigint(20) NOT NULL DEFAULT '0',
   PRIMARY KEY (`inode_id`,`id`)
 ) ENGINE=ndbcluster DEFAULT CHARSET=latin1 COLLATE=latin1_general_cs
 /*!50100 PARTITION BY KEY (inode_id) */$$
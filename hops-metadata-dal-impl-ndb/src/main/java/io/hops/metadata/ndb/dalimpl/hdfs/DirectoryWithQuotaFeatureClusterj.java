@@ -130,6 +130,21 @@ public interface INodeAttributesDTO {
     long getTypeSpaceUsedProvided();
 
     void setTypeSpaceUsedProvided(long used);
+
+    @Column(name = DIRECTORY_COUNT)
+    long getDirectoryCount();
+
+    void setDirectoryCount(long directoryCount);
+
+    @Column(name = SYMLINK_COUNT)
+    long getSymlinkCount();
+
+    void setSymlinkCount(long symlinkCount);
+
+    @Column(name = LENGTH)
+    long getLength();
+
+    void setLength(long length);
   }
 
   private ClusterjConnector connector = ClusterjConnector.getInstance();
@@ -228,6 +243,10 @@ private INodeAttributesDTO createPersistable(DirectoryWithQuotaFeature dir,
     dto.setTypeSpaceUsedDb(dir.getTypeUsed().get(QuotaUpdate.StorageType.DB));
     dto.setTypeSpaceUsedProvided(dir.getTypeUsed().get(QuotaUpdate.StorageType.PROVIDED));
 
+    dto.setDirectoryCount(dir.getDirectoryCount());
+    dto.setSymlinkCount(dir.getSymlinkCount());
+    dto.setLength(dir.getLength());
+
     return dto;
   }
 
@@ -253,7 +272,8 @@ private DirectoryWithQuotaFeature makeINodeAttributes(INodeAttributesDTO dto) {
 
     DirectoryWithQuotaFeature dir =
         new DirectoryWithQuotaFeature(dto.getId(), dto.getNSQuota(), dto.getNSCount(),
-            dto.getSSQuota(), dto.getStorageSpace(), typeQuota, typeUsed);
+            dto.getSSQuota(), dto.getStorageSpace(), typeQuota, typeUsed,
+            dto.getDirectoryCount(), dto.getSymlinkCount(), dto.getLength());
     return dir;
   }
 }
\ No newline at end of file
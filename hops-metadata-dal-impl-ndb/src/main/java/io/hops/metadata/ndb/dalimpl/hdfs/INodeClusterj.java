@@ -20,6 +20,7 @@
 
 import com.google.common.primitives.Longs;
 import com.mysql.clusterj.LockMode;
+import com.mysql.clusterj.Query;
 import com.mysql.clusterj.annotation.Column;
 import com.mysql.clusterj.annotation.Index;
 import com.mysql.clusterj.annotation.PartitionKey;
@@ -414,6 +415,43 @@ public List<INode> findInodesByParentIdAndPartitionIdPPIS(long parentId, long pa
     }
   }
 
+  @Override
+  public List<INode> findInodesByParentIdAndPartitionIdPPIS(long parentId, long partitionId, String startAfter,
+          int limit) throws StorageException {
+    printCallStackDebug("findInodesByParentIdAndPartitionIdPPIS(" + parentId + ", " +
+            partitionId + ", " + startAfter + ", " + limit + ")");
+
+    HopsSession session = connector.obtainSession();
+
+    HopsQueryBuilder qb = session.getQueryBuilder();
+    HopsQueryDomainType<InodeDTO> dobj =
+            qb.createQueryDefinition(InodeDTO.class);
+    HopsPredicate pred = dobj.get("partitionId").equal(dobj.param("partitionIDParam"))
+            .and(dobj.get("parentId").equal(dobj.param("parentIDParam")));
+    if (!startAfter.isEmpty()) {
+      pred = pred.and(dobj.get("name").greaterThan(dobj.param("nameParam")));
+    }
+    dobj.where(pred);
+    HopsQuery<InodeDTO> query = session.createQuery(dobj);
+    query.setParameter("partitionIDParam", partitionId);
+    query.setParameter("parentIDParam", parentId);
+    if (!startAfter.isEmpty()) {
+      query.setParameter("nameParam", startAfter);
+    }
+    // the primary key (partition_id, parent_id, name) is an ordered index, so this is a
+    // pruned range scan that stops after limit rows
+    query.setOrdering(Query.Ordering.ASCENDING, "partitionId", "parentId", "name");
+    query.setLimits(0, limit);
+
+    List<InodeDTO> results = null;
+    try {
+      results = query.getResultList();
+      return convert(results);
+    }finally{
+      session.release(results);
+    }
+  }
+
   @Override
   public List<ProjectedINode> findInodesFTISTx(
           long parentId, EntityContext.LockMode lock) throws StorageException {
@@ -572,6 +610,58 @@ public List<ProjectedINode> findInodesPPISTx(
     }
   }
 
+  @Override
+  public List<ProjectedINode> findInodesPPISTx(
+          long[] parentIds, EntityContext.LockMode lock) throws StorageException {
+    printCallStackDebug("findInodesPPISTx(" + Arrays.toString(parentIds) + ", " + lock.toString() + ")");
+    // the children of these directories are partitioned by their parent id, so this scans
+    // one range of the primary key per directory
+    return findInodesByParentIdsTx(parentIds, true, lock);
+  }
+
+  @Override
+  public List<ProjectedINode> findInodesFTISTx(
+          long[] parentIds, EntityContext.LockMode lock) throws StorageException {
+    printCallStackDebug("findInodesFTISTx(" + Arrays.toString(parentIds) + ", " + lock.toString() + ")");
+    return findInodesByParentIdsTx(parentIds, false, lock);
+  }
+
+  private List<ProjectedINode> findInodesByParentIdsTx(
+          long[] parentIds, boolean partitionedByParent, EntityContext.LockMode lock) throws StorageException {
+    HopsSession session = connector.obtainSession();
+    List<InodeDTO>  results = null;
+    try {
+      session.currentTransaction().begin();
+      session.setLockMode(getLock(lock));
+      HopsQueryBuilder qb = session.getQueryBuilder();
+      HopsQueryDomainType<InodeDTO> dobj =
+              qb.createQueryDefinition(InodeDTO.class);
+      HopsPredicate pred = dobj.get("parentId").in(dobj.param("parentIDParam"));
+      if (partitionedByParent) {
+        pred = dobj.get("partitionId").in(dobj.param("partitionIDParam")).and(pred);
+      }
+      dobj.where(pred);
+      HopsQuery<InodeDTO> query = session.createQuery(dobj);
+      query.setParameter("parentIDParam", Longs.asList(parentIds));
+      if (partitionedByParent) {
+        query.setParameter("partitionIDParam", Longs.asList(parentIds));
+      }
+
+      ArrayList<ProjectedINode> resultList = new ArrayList<>();
+      results = query.getResultList();
+      for (InodeDTO inode : results) {
+        resultList.add(createProjectedINode(inode));
+      }
+      session.currentTransaction().commit();
+      return resultList;
+    }catch(StorageException e){
+      session.currentTransaction().rollback();
+      throw e;
+    } finally {
+      session.release(results);
+    }
+  }
+
   @Override
   public INode findInodeByNameParentIdAndPartitionIdPK(String name, long parentId, long partitionId)
           throws StorageException {
@@ -106,6 +106,21 @@ public interface QuotaUpdateDTO {
     long getTypeSpaceDeltaProvided();
 
     void setTypeSpaceDeltaProvided(long delta);
+
+    @Column(name = DIRECTORY_DELTA)
+    long getDirectoryDelta();
+
+    void setDirectoryDelta(long delta);
+
+    @Column(name = SYMLINK_DELTA)
+    long getSymlinkDelta();
+
+    void setSymlinkDelta(long delta);
+
+    @Column(name = LENGTH_DELTA)
+    long getLengthDelta();
+
+    void setLengthDelta(long delta);
   }
 
   private ClusterjConnector connector = ClusterjConnector.getInstance();
@@ -178,7 +193,9 @@ public List<QuotaUpdate> findLimited(int limit) throws StorageException {
         typeSpaceDelta.put(QuotaUpdate.StorageType.DB, result.getLong(TYPESPACE_DELTA_DB));
         typeSpaceDelta.put(QuotaUpdate.StorageType.PROVIDED, result.getLong(TYPESPACE_DELTA_PROVIDED));
         resultList
-            .add(new QuotaUpdate(id, inodeId, namespaceDelta, diskspaceDelta, typeSpaceDelta));
+            .add(new QuotaUpdate(id, inodeId, namespaceDelta, diskspaceDelta, typeSpaceDelta,
+                result.getLong(DIRECTORY_DELTA), result.getLong(SYMLINK_DELTA),
+                result.getLong(LENGTH_DELTA)));
       }
     } catch (SQLException ex) {
       throw HopsSQLExceptionHelper.wrap(ex);
@@ -215,6 +232,9 @@ private QuotaUpdateDTO createPersistable(QuotaUpdate update,
     dto.setTypeSpaceDeltaArchive(update.getTypeSpaces().get(QuotaUpdate.StorageType.ARCHIVE));
     dto.setTypeSpaceDeltaDb(update.getTypeSpaces().get(QuotaUpdate.StorageType.DB));
     dto.setTypeSpaceDeltaProvided(update.getTypeSpaces().get(QuotaUpdate.StorageType.PROVIDED));
+    dto.setDirectoryDelta(update.getDirectoryDelta());
+    dto.setSymlinkDelta(update.getSymlinkDelta());
+    dto.setLengthDelta(update.getLengthDelta());
     return dto;
   }
 
@@ -236,7 +256,8 @@ private QuotaUpdate convertAndRelease(HopsSession session, QuotaUpdateDTO dto) t
       typeSpaceDelta.put(QuotaUpdate.StorageType.DB, dto.getTypeSpaceDeltaDb());
       typeSpaceDelta.put(QuotaUpdate.StorageType.PROVIDED, dto.getTypeSpaceDeltaProvided());
       QuotaUpdate result = new QuotaUpdate(dto.getId(), dto.getInodeId(),
-          dto.getNamespaceDelta(), dto.getStorageSpaceDelta(), typeSpaceDelta);
+          dto.getNamespaceDelta(), dto.getStorageSpaceDelta(), typeSpaceDelta,
+          dto.getDirectoryDelta(), dto.getSymlinkDelta(), dto.getLengthDelta());
       session.release(dto);
       return result;
   }
@@ -243,6 +243,9 @@ public interface DirectoryWithQuotaFeatureTableDef {
     String TYPESPACE_USED_ARCHIVE = "typespace_used_archive";
     String TYPESPACE_USED_DB = "typespace_used_db";
     String TYPESPACE_USED_PROVIDED = "typespace_used_provided";
+    String DIRECTORY_COUNT = "directory_count";
+    String SYMLINK_COUNT = "symlink_count";
+    String LENGTH = "length";
   }
 
   public interface ExcessReplicaTableDef {
@@ -364,6 +367,9 @@ public interface QuotaUpdateTableDef {
     String TYPESPACE_DELTA_ARCHIVE = "typespace_delta_archive";
     String TYPESPACE_DELTA_DB = "typespace_delta_db";
     String TYPESPACE_DELTA_PROVIDED = "typespace_delta_provided";
+    String DIRECTORY_DELTA = "directory_delta";
+    String SYMLINK_DELTA = "symlink_delta";
+    String LENGTH_DELTA = "length_delta";
 
   }
 
@@ -49,12 +49,33 @@
 
   List<T> findInodesByParentIdAndPartitionIdPPIS(long parentId, long partitionId) throws StorageException;
 
+  /**
+   * Return at most {@code limit} children of a directory whose names sort after {@code startAfter}, in index order.
+   * An empty {@code startAfter} returns the first children of the directory.
+   */
+  List<T> findInodesByParentIdAndPartitionIdPPIS(long parentId, long partitionId, String startAfter, int limit)
+          throws StorageException;
+
   List<ProjectedINode> findInodesPPISTx(long parentId, long partitionId, EntityContext.LockMode lock)
           throws StorageException;
 
   List<ProjectedINode> findInodesFTISTx(long parentId, EntityContext.LockMode lock)
           throws StorageException;
 
+  /**
+   * Return the children of all the given directories with a single scan, as {@link #findInodesPPISTx} does for
+   * each of them. The children of each directory must be partitioned by its ID.
+   */
+  List<ProjectedINode> findInodesPPISTx(long[] parentIds, EntityContext.LockMode lock)
+          throws StorageException;
+
+  /**
+   * Return the children of all the given directories with a single index scan, as {@link #findInodesFTISTx} does
+   * for each of them.
+   */
+  List<ProjectedINode> findInodesFTISTx(long[] parentIds, EntityContext.LockMode lock)
+          throws StorageException;
+
   T findInodeByNameParentIdAndPartitionIdPK(String name, long parentId, long partitionId)
           throws StorageException;
 
@@ -48,6 +48,9 @@ public class DirectoryWithQuotaFeature implements Comparable<DirectoryWithQuotaF
   private Long ssUsed;
   private Map<QuotaUpdate.StorageType, Long> typeQuota;
   private Map<QuotaUpdate.StorageType, Long> typeUsed;
+  private long directoryCount;
+  private long symlinkCount;
+  private long length;
 
   public DirectoryWithQuotaFeature(Long inodeId, Long nsQuota, Long nsCount,
       Long ssQuota, Long ssUsed, Map<QuotaUpdate.StorageType, Long> typeQuota,
@@ -61,6 +64,16 @@ public DirectoryWithQuotaFeature(Long inodeId, Long nsQuota, Long nsCount,
     this.typeUsed = typeUsed;
   }
 
+  public DirectoryWithQuotaFeature(Long inodeId, Long nsQuota, Long nsCount,
+      Long ssQuota, Long ssUsed, Map<QuotaUpdate.StorageType, Long> typeQuota,
+      Map<QuotaUpdate.StorageType, Long> typeUsed, long directoryCount,
+      long symlinkCount, long length) {
+    this(inodeId, nsQuota, nsCount, ssQuota, ssUsed, typeQuota, typeUsed);
+    this.directoryCount = directoryCount;
+    this.symlinkCount = symlinkCount;
+    this.length = length;
+  }
+
   public Long getInodeId() {
     return inodeId;
   }
@@ -117,6 +130,30 @@ public void setTypeUsed(Map<QuotaUpdate.StorageType, Long> typeUsed) {
     this.typeUsed = typeUsed;
   }
   
+  public long getDirectoryCount() {
+    return directoryCount;
+  }
+
+  public void setDirectoryCount(long directoryCount) {
+    this.directoryCount = directoryCount;
+  }
+
+  public long getSymlinkCount() {
+    return symlinkCount;
+  }
+
+  public void setSymlinkCount(long symlinkCount) {
+    this.symlinkCount = symlinkCount;
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  public void setLength(long length) {
+    this.length = length;
+  }
+
   public int compareTo(DirectoryWithQuotaFeature o) {
     throw new UnsupportedOperationException("Not supported yet.");
   }
@@ -129,6 +166,9 @@ public String toString() {
         ", nsCount=" + nsUsed +
         ", dsQuota=" + ssQuota +
         ", diskspace=" + ssUsed +
+        ", directoryCount=" + directoryCount +
+        ", symlinkCount=" + symlinkCount +
+        ", length=" + length +
         '}';
   }
 }
@@ -27,6 +27,9 @@ public class QuotaUpdate implements Serializable {
   private long namespaceDelta;
   private long storageSpaceDelta;
   private Map<StorageType, Long> typeSpaces;
+  private long directoryDelta;
+  private long symlinkDelta;
+  private long lengthDelta;
   
   public enum StorageType {
     DISK,
@@ -60,6 +63,15 @@ public QuotaUpdate(int id, long inodeId, long namespaceDelta,
     this.typeSpaces = typeSpaces;
   }
 
+  public QuotaUpdate(int id, long inodeId, long namespaceDelta,
+      long diskspaceDelta, Map<StorageType, Long> typeSpaces,
+      long directoryDelta, long symlinkDelta, long lengthDelta) {
+    this(id, inodeId, namespaceDelta, diskspaceDelta, typeSpaces);
+    this.directoryDelta = directoryDelta;
+    this.symlinkDelta = symlinkDelta;
+    this.lengthDelta = lengthDelta;
+  }
+
   public int getId() {
     return id;
   }
@@ -100,6 +112,30 @@ public void setTypeSpaces(Map<StorageType, Long> typeSpaces) {
     this.typeSpaces = typeSpaces;
   }
 
+  public long getDirectoryDelta() {
+    return directoryDelta;
+  }
+
+  public void setDirectoryDelta(long directoryDelta) {
+    this.directoryDelta = directoryDelta;
+  }
+
+  public long getSymlinkDelta() {
+    return symlinkDelta;
+  }
+
+  public void setSymlinkDelta(long symlinkDelta) {
+    this.symlinkDelta = symlinkDelta;
+  }
+
+  public long getLengthDelta() {
+    return lengthDelta;
+  }
+
+  public void setLengthDelta(long lengthDelta) {
+    this.lengthDelta = lengthDelta;
+  }
+
   @Override
   public String toString() {
     return "QuotaUpdate{" +
@@ -107,6 +143,9 @@ public String toString() {
         ", inodeId=" + inodeId +
         ", namespaceDelta=" + namespaceDelta +
         ", diskspaceDelta=" + storageSpaceDelta +
+        ", directoryDelta=" + directoryDelta +
+        ", symlinkDelta=" + symlinkDelta +
+        ", lengthDelta=" + lengthDelta +
         '}';
   }
 }
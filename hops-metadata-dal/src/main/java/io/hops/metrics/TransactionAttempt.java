@@ -93,6 +93,19 @@ public final class TransactionAttempt implements Serializable {
     private long consistencyCleanUpStart;
     private long consistencyCleanUpEnd;
 
+    /**
+     * The number of transactions that shared the round of INVs/ACKs that this attempt participated in.
+     * This is 1 unless consistency protocol batching (group commit) is enabled.
+     */
+    private int consistencyBatchSize = 1;
+
+    /**
+     * Indicates whether the consistency protocol was started right after the locks were acquired, so that it ran
+     * concurrently with in-memory processing. In that case, {@code consistencyProtocolStart} precedes
+     * {@code processingEnd}.
+     */
+    private boolean consistencyProtocolPipelined;
+
     public TransactionAttempt(int attemptNumber) {
         this.attemptNumber = attemptNumber;
     }
@@ -144,6 +157,53 @@ public void setConsistencyCleanUpTimes(long start, long end) {
         consistencyCleanUpEnd = end;
     }
 
+    /**
+     * Copy the consistency protocol phase timings from another attempt. This is used when several transactions
+     * share a single (batched) execution of the consistency protocol.
+     */
+    public void copyConsistencyPhaseTimes(TransactionAttempt other) {
+        setConsistencyPreprocessingTimes(other.consistencyPreprocessingStart, other.consistencyPreprocessingEnd);
+        setConsistencyComputeAckRecordTimes(other.consistencyComputeAckRecordsStart, other.consistencyComputeAckRecordsEnd);
+        setConsistencyJoinDeploymentsTimes(other.consistencyJoinDeploymentsStart, other.consistencyJoinDeploymentsEnd);
+        setConsistencySubscribeToAckEventsTimes(other.consistencySubscribeAckEventsStart, other.consistencySubscribeAckEventsEnd);
+        setConsistencyWriteAcksToStorageTimes(other.consistencyWriteAcksToStorageStart, other.consistencyWriteAcksToStorageEnd);
+        setConsistencyIssueInvalidationsTimes(other.consistencyIssueInvalidationsStart, other.consistencyIssueInvalidationsEnd);
+        setConsistencyEarlyUnsubscribeTimes(other.consistencyEarlyUnsubscribeStart, other.consistencyEarlyUnsubscribeEnd);
+        setConsistencyWaitForAcksTimes(other.consistencyWaitForAcksStart, other.consistencyWaitForAcksEnd);
+        setConsistencyCleanUpTimes(other.consistencyCleanUpStart, other.consistencyCleanUpEnd);
+    }
+
+    public int getConsistencyBatchSize() {
+        return consistencyBatchSize;
+    }
+
+    public void setConsistencyBatchSize(int consistencyBatchSize) {
+        this.consistencyBatchSize = consistencyBatchSize;
+    }
+
+    public boolean isConsistencyProtocolPipelined() {
+        return consistencyProtocolPipelined;
+    }
+
+    public void setConsistencyProtocolPipelined(boolean consistencyProtocolPipelined) {
+        this.consistencyProtocolPipelined = consistencyProtocolPipelined;
+    }
+
+    /**
+     * Return how long the transaction held its locks, from the start of lock acquisition until the end of the commit.
+     */
+    public long getLocksHeldDuration() {
+        return commitEnd - acquireLocksStart;
+    }
+
+    /**
+     * Return how long the transaction waited for the consistency protocol after in-memory processing finished.
+     * This is the part of the consistency protocol that extends the time for which the locks are held.
+     */
+    public long getConsistencyBlockingDuration() {
+        return commitStart - processingEnd;
+    }
+
     public long getAcquireLocksStart() {
         return acquireLocksStart;
     }
@@ -236,7 +296,9 @@ public void write(BufferedWriter writer) throws IOException {
                 consistencyIssueInvalidationsStart + "," + consistencyIssueInvalidationsEnd + "," + (consistencyIssueInvalidationsEnd - consistencyIssueInvalidationsStart) + "," +
                 consistencyEarlyUnsubscribeStart + "," + consistencyEarlyUnsubscribeEnd + "," + (consistencyEarlyUnsubscribeEnd - consistencyEarlyUnsubscribeStart) + "," +
                 consistencyWaitForAcksStart + "," + consistencyWaitForAcksEnd + "," + (consistencyWaitForAcksEnd - consistencyWaitForAcksStart) + "," +
-                consistencyCleanUpStart + "," + consistencyCleanUpEnd + "," + (consistencyCleanUpEnd - consistencyCleanUpStart));
+                consistencyCleanUpStart + "," + consistencyCleanUpEnd + "," + (consistencyCleanUpEnd - consistencyCleanUpStart) + "," +
+                consistencyBatchSize + "," + consistencyProtocolPipelined + "," + getLocksHeldDuration() + "," +
+                getConsistencyBlockingDuration());
     }
 
     public static String getHeader() {
@@ -250,7 +312,8 @@ public static String getHeader() {
                 "consistency_issue_invalidations_start,consistency_issue_invalidations_end,consistency_issue_invalidations_duration," +
                 "consistency_early_unsubscribe_start,consistency_early_unsubscribe_end,consistency_early_unsubscribe_duration," +
                 "consistency_wait_for_acks_start,consistency_wait_for_acks_end,consistency_wait_for_acks_duration," +
-                "consistency_clean_up_start,consistency_clean_up_end,consistency_clean_up_duration";
+                "consistency_clean_up_start,consistency_clean_up_end,consistency_clean_up_duration," +
+                "consistency_batch_size,consistency_pipelined,locks_held_duration,consistency_blocking_duration";
     }
 
     @Override
@@ -262,7 +325,8 @@ public String toString() {
                 ",consistencyProtocolStart=" + consistencyProtocolStart +
                 ",consistencyProtocolEnd=" + consistencyProtocolEnd +
                 ",commitStart=" + commitStart +
-                ",commitEnd=" + commitEnd + ")";
+                ",commitEnd=" + commitEnd +
+                ",consistencyProtocolPipelined=" + consistencyProtocolPipelined + ")";
     }
 
     public long getConsistencyPreprocessingStart() {
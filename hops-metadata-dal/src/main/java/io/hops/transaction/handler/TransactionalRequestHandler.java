@@ -70,6 +70,31 @@ public TransactionalRequestHandler(OperationType opType) {
    */
   protected abstract boolean consistencyProtocol(long txStartTime, TransactionAttempt attempt) throws IOException;
 
+  /**
+   * Override this function to start the consistency protocol early, right after the locks of the transaction have
+   * been acquired, so that the INVs are issued while in-memory processing is still going on. This shortens the time
+   * for which the locks are held. {@link #consistencyProtocol(long, TransactionAttempt)} is still called before the
+   * commit, and it must not return true until the protocol has completed for every INode that the transaction
+   * actually modified.
+   *
+   * @param txStartTime The time at which the transaction began. Used to order operations.
+   * @param attempt TransactionAttempt object, used to record metrics about the consistency protocol.
+   * @param locks The locks acquired by the transaction.
+   *
+   * @return True if the consistency protocol was started, otherwise false.
+   */
+  protected boolean startConsistencyProtocol(long txStartTime, TransactionAttempt attempt, TransactionLocks locks)
+          throws IOException {
+    return false;
+  }
+
+  /**
+   * Called when a transaction attempt for which {@link #startConsistencyProtocol} returned true fails before it
+   * commits, so that the early-started consistency protocol can be discarded.
+   */
+  protected void abandonConsistencyProtocol() {
+  }
+
   /**
    * Should be overridden by a class in the main codebase. This function should be used
    * to save the {@link TransactionEvent} (and the contained {@link TransactionAttempt} instances
@@ -109,6 +134,7 @@ protected Object execute(Object info) throws IOException {
       long commitTime = -1;
       long totalTime;
       TransactionLockAcquirer locksAcquirer = null;
+      boolean consistencyProtocolPipelined = false;
 
       tryCount++;
       ignoredException = null;
@@ -147,8 +173,13 @@ protected Object execute(Object info) throws IOException {
         // This actually acquires the locks and reads the metadata into memory from intermediate storage.
         locksAcquirer.acquire();
 
+        long locksAcquiredTime = System.currentTimeMillis();
+        acquireLockTime = (locksAcquiredTime - oldTime);
+
+        // If supported, start issuing INVs now so that the round trip overlaps with in-memory processing.
+        consistencyProtocolPipelined = startConsistencyProtocol(txStartTime, transactionAttempt,
+                locksAcquirer.getLocks());
         long inMemoryStart = System.currentTimeMillis();
-        acquireLockTime = (inMemoryStart - oldTime);
         if(requestHandlerLOG.isDebugEnabled()){
           requestHandlerLOG.debug("All Locks Acquired. Time " + acquireLockTime + " ms");
         }
@@ -184,6 +215,9 @@ protected Object execute(Object info) throws IOException {
         consistencyProtocolTime = (commitStart - oldTime);
         oldTime = System.currentTimeMillis();
 
+        // When pipelined, the consistency protocol began as soon as the locks were acquired.
+        long consistencyProtocolStart = consistencyProtocolPipelined ? locksAcquiredTime : consistencyStartTime;
+
         if (canProceed) {
           if (printSuccessMessage && requestHandlerLOG.isDebugEnabled())
             requestHandlerLOG.debug("Consistency protocol for TX " + operationId + " succeeded after " + consistencyProtocolTime + " ms");
@@ -191,12 +225,13 @@ protected Object execute(Object info) throws IOException {
           if (TX_EVENTS_ENABLED && transactionAttempt != null) {
             transactionAttempt.setCommitEnd(System.currentTimeMillis());
             transactionAttempt.setAcquireLocksStart(lockAcquireStartTime);
-            transactionAttempt.setAcquireLocksEnd(inMemoryStart);
+            transactionAttempt.setAcquireLocksEnd(locksAcquiredTime);
             transactionAttempt.setProcessingStart(inMemoryStart);
             transactionAttempt.setProcessingEnd(consistencyStartTime);
-            transactionAttempt.setConsistencyProtocolStart(consistencyStartTime);
+            transactionAttempt.setConsistencyProtocolStart(consistencyProtocolStart);
             transactionAttempt.setConsistencyProtocolEnd(commitStart);
             transactionAttempt.setConsistencyProtocolSucceeded(false);
+            transactionAttempt.setConsistencyProtocolPipelined(consistencyProtocolPipelined);
             transactionAttempt.setCommitStart(commitStart);
           }
           throw new IOException("Consistency protocol for TX " + operationId + " FAILED after " +
@@ -221,12 +256,13 @@ protected Object execute(Object info) throws IOException {
         if (TX_EVENTS_ENABLED && transactionAttempt != null) {
           transactionAttempt.setCommitEnd(System.currentTimeMillis());
           transactionAttempt.setAcquireLocksStart(lockAcquireStartTime);
-          transactionAttempt.setAcquireLocksEnd(inMemoryStart);
+          transactionAttempt.setAcquireLocksEnd(locksAcquiredTime);
           transactionAttempt.setProcessingStart(inMemoryStart);
           transactionAttempt.setProcessingEnd(consistencyStartTime);
-          transactionAttempt.setConsistencyProtocolStart(consistencyStartTime);
+          transactionAttempt.setConsistencyProtocolStart(consistencyProtocolStart);
           transactionAttempt.setConsistencyProtocolEnd(commitStart);
           transactionAttempt.setConsistencyProtocolSucceeded(canProceed);
+          transactionAttempt.setConsistencyProtocolPipelined(consistencyProtocolPipelined);
           transactionAttempt.setCommitStart(commitStart);
         }
 
@@ -289,6 +325,8 @@ protected Object execute(Object info) throws IOException {
       }
       finally {
         removeNDC();
+        if (!committed && consistencyProtocolPipelined)
+          abandonConsistencyProtocol();
         if (!committed && locksAcquirer != null) {
           try {
             requestHandlerLOG.warn("TX " + operationId + " Failed. Rolling back now...");